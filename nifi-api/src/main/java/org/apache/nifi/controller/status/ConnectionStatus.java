@@ -40,6 +40,7 @@ public class ConnectionStatus implements Cloneable {
     private long outputBytes;
     private int maxQueuedCount;
     private long maxQueuedBytes;
+    private LatencyStatus queuedDurationLatency = LatencyStatus.EMPTY;
 
     public String getId() {
         return id;
@@ -186,6 +187,17 @@ public class ConnectionStatus implements Cloneable {
         this.backPressureBytesThreshold = backPressureBytesThreshold;
     }
 
+    /**
+     * @return the distribution of the time that each FlowFile spent in this Connection's queue before being pulled from it
+     */
+    public LatencyStatus getQueuedDurationLatency() {
+        return queuedDurationLatency;
+    }
+
+    public void setQueuedDurationLatency(final LatencyStatus queuedDurationLatency) {
+        this.queuedDurationLatency = queuedDurationLatency;
+    }
+
     @Override
     public ConnectionStatus clone() {
         final ConnectionStatus clonedObj = new ConnectionStatus();
@@ -206,6 +218,7 @@ public class ConnectionStatus implements Cloneable {
         clonedObj.backPressureObjectThreshold = backPressureObjectThreshold;
         clonedObj.maxQueuedBytes = maxQueuedBytes;
         clonedObj.maxQueuedCount = maxQueuedCount;
+        clonedObj.queuedDurationLatency = queuedDurationLatency;
         return clonedObj;
     }
 
@@ -246,6 +259,8 @@ public class ConnectionStatus implements Cloneable {
         builder.append(maxQueuedCount);
         builder.append(", maxQueueBytes=");
         builder.append(maxQueuedBytes);
+        builder.append(", queuedDurationLatency=");
+        builder.append(queuedDurationLatency);
         builder.append("]");
         return builder.toString();
     }
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A summary of the distribution of latencies that were recorded for a component, such as the time taken by each of a Processor's tasks
+ * or the time that each FlowFile spent waiting in a Connection's queue. Percentiles are approximate: each one is accurate to within
+ * about 12.5% of the true value, and never exceeds the maximum latency that was recorded. Instances are immutable.
+ */
+public class LatencyStatus {
+    public static final LatencyStatus EMPTY = new LatencyStatus(0L, 0L, 0L, 0L, 0L, 0L);
+
+    private final long count;
+    private final long medianNanos;
+    private final long percentile90Nanos;
+    private final long percentile99Nanos;
+    private final long percentile999Nanos;
+    private final long maxNanos;
+
+    public LatencyStatus(final long count, final long medianNanos, final long percentile90Nanos, final long percentile99Nanos,
+                         final long percentile999Nanos, final long maxNanos) {
+        this.count = count;
+        this.medianNanos = medianNanos;
+        this.percentile90Nanos = percentile90Nanos;
+        this.percentile99Nanos = percentile99Nanos;
+        this.percentile999Nanos = percentile999Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * @return the number of latencies that were recorded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getMedian(final TimeUnit timeUnit) {
+        return timeUnit.convert(medianNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getPercentile90(final TimeUnit timeUnit) {
+        return timeUnit.convert(percentile90Nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getPercentile99(final TimeUnit timeUnit) {
+        return timeUnit.convert(percentile99Nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getPercentile999(final TimeUnit timeUnit) {
+        return timeUnit.convert(percentile999Nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMax(final TimeUnit timeUnit) {
+        return timeUnit.convert(maxNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Combines this status with another that was recorded separately, such as by another node in a cluster. The percentiles of the
+     * combined latencies cannot be derived from the percentiles alone, so each percentile of the result is the greater of the two,
+     * which is an upper bound of the true value.
+     *
+     * @param other the status to combine with this one
+     * @return a status that summarizes the latencies of both
+     */
+    public LatencyStatus merge(final LatencyStatus other) {
+        if (other == null || other.count == 0L) {
+            return this;
+        }
+        if (count == 0L) {
+            return other;
+        }
+
+        return new LatencyStatus(count + other.count, Math.max(medianNanos, other.medianNanos), Math.max(percentile90Nanos, other.percentile90Nanos),
+            Math.max(percentile99Nanos, other.percentile99Nanos), Math.max(percentile999Nanos, other.percentile999Nanos), Math.max(maxNanos, other.maxNanos));
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyStatus[count=" + count + ", median=" + medianNanos + " nanos, 90th percentile=" + percentile90Nanos
+            + " nanos, 99th percentile=" + percentile99Nanos + " nanos, 99.9th percentile=" + percentile999Nanos + " nanos, max=" + maxNanos + " nanos]";
+    }
+}
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  */
@@ -448,6 +449,7 @@ public class ProcessGroupStatus implements Cloneable {
             merged.setInputBytes(merged.getInputBytes() + statusToMerge.getInputBytes());
             merged.setOutputCount(merged.getOutputCount() + statusToMerge.getOutputCount());
             merged.setOutputBytes(merged.getOutputBytes() + statusToMerge.getOutputBytes());
+            merged.setQueuedDurationLatency(merged.getQueuedDurationLatency().merge(statusToMerge.getQueuedDurationLatency()));
         }
         target.setConnectionStatus(mergedConnectionMap.values());
 
@@ -474,6 +476,11 @@ public class ProcessGroupStatus implements Cloneable {
             merged.setOutputBytes(merged.getOutputBytes() + statusToMerge.getOutputBytes());
             merged.setOutputCount(merged.getOutputCount() + statusToMerge.getOutputCount());
             merged.setProcessingNanos(merged.getProcessingNanos() + statusToMerge.getProcessingNanos());
+            merged.setTaskDurationLatency(merged.getTaskDurationLatency().merge(statusToMerge.getTaskDurationLatency()));
+            merged.setSessionCommitLatency(merged.getSessionCommitLatency().merge(statusToMerge.getSessionCommitLatency()));
+            merged.setAutoTunedConcurrentTasks(merged.getAutoTunedConcurrentTasks() + statusToMerge.getAutoTunedConcurrentTasks());
+            merged.setAutoTunedRunDuration(Math.max(merged.getAutoTunedRunDuration(TimeUnit.NANOSECONDS), statusToMerge.getAutoTunedRunDuration(TimeUnit.NANOSECONDS)),
+                TimeUnit.NANOSECONDS);
             merged.setFlowFilesRemoved(merged.getFlowFilesRemoved() + statusToMerge.getFlowFilesRemoved());
 
             // if the status to merge is invalid allow it to take precedence. whether the
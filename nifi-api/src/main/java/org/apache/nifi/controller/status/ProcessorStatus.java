@@ -49,6 +49,10 @@ public class ProcessorStatus implements Cloneable {
     private int flowFilesSent;
     private long bytesSent;
     private Map<String, Long> counters;
+    private LatencyStatus taskDurationLatency = LatencyStatus.EMPTY;
+    private LatencyStatus sessionCommitLatency = LatencyStatus.EMPTY;
+    private int autoTunedConcurrentTasks;
+    private long autoTunedRunDurationNanos;
 
     public String getId() {
         return id;
@@ -162,6 +166,51 @@ public class ProcessorStatus implements Cloneable {
         this.processingNanos = processingNanos;
     }
 
+    /**
+     * @return the distribution of the time taken by each of the Processor's tasks
+     */
+    public LatencyStatus getTaskDurationLatency() {
+        return taskDurationLatency;
+    }
+
+    public void setTaskDurationLatency(final LatencyStatus taskDurationLatency) {
+        this.taskDurationLatency = taskDurationLatency;
+    }
+
+    /**
+     * @return the distribution of the time taken to commit each of the Processor's sessions
+     */
+    public LatencyStatus getSessionCommitLatency() {
+        return sessionCommitLatency;
+    }
+
+    public void setSessionCommitLatency(final LatencyStatus sessionCommitLatency) {
+        this.sessionCommitLatency = sessionCommitLatency;
+    }
+
+    /**
+     * @return the number of concurrent tasks that autotuning currently allows the Processor, or <code>0</code> if the Processor is not autotuned
+     */
+    public int getAutoTunedConcurrentTasks() {
+        return autoTunedConcurrentTasks;
+    }
+
+    public void setAutoTunedConcurrentTasks(final int autoTunedConcurrentTasks) {
+        this.autoTunedConcurrentTasks = autoTunedConcurrentTasks;
+    }
+
+    /**
+     * @param timeUnit the unit of the returned value
+     * @return the run duration that autotuning has currently chosen for the Processor, or <code>0</code> if the Processor is not autotuned
+     */
+    public long getAutoTunedRunDuration(final TimeUnit timeUnit) {
+        return timeUnit.convert(autoTunedRunDurationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void setAutoTunedRunDuration(final long duration, final TimeUnit timeUnit) {
+        this.autoTunedRunDurationNanos = timeUnit.toNanos(duration);
+    }
+
     public long getAverageLineageDuration(final TimeUnit timeUnit) {
         return TimeUnit.MILLISECONDS.convert(averageLineageDuration, timeUnit);
     }
@@ -268,6 +317,10 @@ public class ProcessorStatus implements Cloneable {
         clonedObj.executionNode = executionNode;
         clonedObj.type = type;
         clonedObj.counters = counters == null ? null : new HashMap<>(counters);
+        clonedObj.taskDurationLatency = taskDurationLatency;
+        clonedObj.sessionCommitLatency = sessionCommitLatency;
+        clonedObj.autoTunedConcurrentTasks = autoTunedConcurrentTasks;
+        clonedObj.autoTunedRunDurationNanos = autoTunedRunDurationNanos;
         return clonedObj;
     }
 
@@ -302,6 +355,10 @@ public class ProcessorStatus implements Cloneable {
         builder.append(invocations);
         builder.append(", processingNanos=");
         builder.append(processingNanos);
+        builder.append(", taskDurationLatency=");
+        builder.append(taskDurationLatency);
+        builder.append(", sessionCommitLatency=");
+        builder.append(sessionCommitLatency);
         builder.append(", activeThreadCount=");
         builder.append(activeThreadCount);
         builder.append(", terminatedThreadCount=");
@@ -52,6 +52,7 @@ public class StandardQueryResult implements QueryResult, ProgressiveResult {
     private Date expirationDate;
     private String error;
     private long queryTime;
+    private boolean replaceable = false;
     private final Object completionMonitor = new Object();
 
     private volatile boolean canceled = false;
@@ -125,7 +126,8 @@ public class StandardQueryResult implements QueryResult, ProgressiveResult {
     public boolean isFinished() {
         readLock.lock();
         try {
-            return numCompletedSteps >= numSteps || canceled || matchingRecords.size() >= query.getMaxResults();
+            // Once events have been replaced, reaching the max results no longer means that the results are final
+            return numCompletedSteps >= numSteps || canceled || (!replaceable && matchingRecords.size() >= query.getMaxResults());
         } finally {
             readLock.unlock();
         }
@@ -179,21 +181,41 @@ public class StandardQueryResult implements QueryResult, ProgressiveResult {
                 }
             }
 
-            numCompletedSteps++;
-            updateExpiration();
+            queryComplete = completeStep();
+        } finally {
+            writeLock.unlock();
+        }
 
-            if (numCompletedSteps >= numSteps || this.matchingRecords.size() >= query.getMaxResults()) {
-                final long searchNanos = System.nanoTime() - creationNanos;
-                queryTime = TimeUnit.MILLISECONDS.convert(searchNanos, TimeUnit.NANOSECONDS);
-                queryComplete = true;
+        if (queryComplete) {
+            synchronized (completionMonitor) {
+                completionMonitor.notifyAll();
+            }
+        }
+    }
 
-                if (numCompletedSteps >= numSteps) {
-                    logger.info("Completed {} comprised of {} steps in {} millis", query, numSteps, queryTime);
-                } else {
-                    logger.info("Completed {} comprised of {} steps in {} millis (only completed {} steps because the maximum number of results was reached)",
-                        query, numSteps, queryTime, numCompletedSteps);
-                }
+    /**
+     * Replaces all of the matching events with the given events, rather than adding to them, and completes one step of the query.
+     * This allows a query whose events may still be displaced by the steps that have not yet completed to publish its results as it
+     * progresses. Once this method has been called, the query is only finished when all of its steps have completed, even if the
+     * maximum number of results has been reached.
+     *
+     * @param events the events that now match the query, no more than the query's max results
+     * @param totalHits the total number of hits found so far
+     */
+    public void replaceMatchingEvents(final Collection<ProvenanceEventRecord> events, final long totalHits) {
+        boolean queryComplete = false;
+
+        writeLock.lock();
+        try {
+            if (isFinished()) {
+                return;
             }
+
+            replaceable = true;
+            matchingRecords.clear();
+            matchingRecords.addAll(events);
+
+            queryComplete = completeStep();
         } finally {
             writeLock.unlock();
         }
@@ -205,6 +227,32 @@ public class StandardQueryResult implements QueryResult, ProgressiveResult {
         }
     }
 
+    /**
+     * Must be called with write lock!
+     *
+     * @return <code>true</code> if the query is complete
+     */
+    private boolean completeStep() {
+        numCompletedSteps++;
+        updateExpiration();
+
+        if (numCompletedSteps >= numSteps || (!replaceable && matchingRecords.size() >= query.getMaxResults())) {
+            final long searchNanos = System.nanoTime() - creationNanos;
+            queryTime = TimeUnit.MILLISECONDS.convert(searchNanos, TimeUnit.NANOSECONDS);
+
+            if (numCompletedSteps >= numSteps) {
+                logger.info("Completed {} comprised of {} steps in {} millis", query, numSteps, queryTime);
+            } else {
+                logger.info("Completed {} comprised of {} steps in {} millis (only completed {} steps because the maximum number of results was reached)",
+                    query, numSteps, queryTime, numCompletedSteps);
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
     @Override
     public boolean awaitCompletion(final long time, final TimeUnit unit) throws InterruptedException {
         final long finishTime = System.currentTimeMillis() + unit.toMillis(time);
@@ -80,6 +80,12 @@ public abstract class NiFiProperties {
     public static final String PERSISTENT_STATE_DIRECTORY = "nifi.persistent.state.directory";
     public static final String BORED_YIELD_DURATION = "nifi.bored.yield.duration";
     public static final String PROCESSOR_SCHEDULING_TIMEOUT = "nifi.processor.scheduling.timeout";
+    public static final String BLOCKING_IO_MAX_THREADS = "nifi.blocking.io.max.threads";
+    public static final String TIMER_DRIVEN_SERVICE_MAX_THREADS = "nifi.timer.driven.service.max.threads";
+    public static final String AUTOTUNING_ENABLED = "nifi.components.autotuning.enabled";
+    public static final String AUTOTUNING_INTERVAL = "nifi.components.autotuning.interval";
+    public static final String AUTOTUNING_MAX_RUN_DURATION = "nifi.components.autotuning.max.run.duration";
+    public static final String AUTOTUNING_MAX_CPU_LOAD = "nifi.components.autotuning.max.cpu.load";
     public static final String BACKPRESSURE_COUNT = "nifi.queue.backpressure.count";
     public static final String BACKPRESSURE_SIZE = "nifi.queue.backpressure.size";
 
@@ -107,6 +113,7 @@ public abstract class NiFiProperties {
     public static final String SWAP_IN_PERIOD = "nifi.swap.in.period";
     public static final String SWAP_OUT_THREADS = "nifi.swap.out.threads";
     public static final String SWAP_OUT_PERIOD = "nifi.swap.out.period";
+    public static final String SWAP_COMPRESSION_ENABLED = "nifi.swap.compression.enabled";
 
     // provenance properties
     public static final String PROVENANCE_REPO_IMPLEMENTATION_CLASS = "nifi.provenance.repository.implementation";
@@ -127,6 +134,8 @@ public abstract class NiFiProperties {
     public static final String PROVENANCE_REPO_ENCRYPTION_KEY_PROVIDER_IMPLEMENTATION_CLASS = "nifi.provenance.repository.encryption.key.provider.implementation";
     public static final String PROVENANCE_REPO_ENCRYPTION_KEY_PROVIDER_LOCATION = "nifi.provenance.repository.encryption.key.provider.location";
     public static final String PROVENANCE_REPO_DEBUG_FREQUENCY = "nifi.provenance.repository.debug.frequency";
+    public static final String PROVENANCE_SAMPLING_COMPONENT_PREFIX = "nifi.provenance.sampling.component.";
+    public static final String PROVENANCE_SAMPLING_GROUP_PREFIX = "nifi.provenance.sampling.group.";
 
     // component status repository properties
     public static final String COMPONENT_STATUS_REPOSITORY_IMPLEMENTATION = "nifi.components.status.repository.implementation";
@@ -210,6 +219,7 @@ public abstract class NiFiProperties {
     public static final String LOAD_BALANCE_CONNECTIONS_PER_NODE = "nifi.cluster.load.balance.connections.per.node";
     public static final String LOAD_BALANCE_MAX_THREAD_COUNT = "nifi.cluster.load.balance.max.thread.count";
     public static final String LOAD_BALANCE_COMMS_TIMEOUT = "nifi.cluster.load.balance.comms.timeout";
+    public static final String LOAD_BALANCE_COMPRESSION_CODEC = "nifi.cluster.load.balance.compression.codec";
 
     // zookeeper properties
     public static final String ZOOKEEPER_CONNECT_STRING = "nifi.zookeeper.connect.string";
@@ -261,12 +271,18 @@ public abstract class NiFiProperties {
     public static final String DEFAULT_SWAP_OUT_PERIOD = "5 sec";
     public static final int DEFAULT_SWAP_IN_THREADS = 4;
     public static final int DEFAULT_SWAP_OUT_THREADS = 4;
+    public static final String DEFAULT_SWAP_COMPRESSION_ENABLED = "false";
     public static final long DEFAULT_BACKPRESSURE_COUNT = 10_000L;
     public static final String DEFAULT_BACKPRESSURE_SIZE = "1 GB";
     public static final String DEFAULT_ADMINISTRATIVE_YIELD_DURATION = "30 sec";
     public static final String DEFAULT_PERSISTENT_STATE_DIRECTORY = "./conf/state";
     public static final String DEFAULT_COMPONENT_STATUS_SNAPSHOT_FREQUENCY = "5 mins";
     public static final String DEFAULT_BORED_YIELD_DURATION = "10 millis";
+    public static final int DEFAULT_BLOCKING_IO_MAX_THREADS = 100;
+    public static final int DEFAULT_TIMER_DRIVEN_SERVICE_MAX_THREADS = 10;
+    public static final String DEFAULT_AUTOTUNING_INTERVAL = "5 secs";
+    public static final String DEFAULT_AUTOTUNING_MAX_RUN_DURATION = "100 millis";
+    public static final double DEFAULT_AUTOTUNING_MAX_CPU_LOAD = 0.8D;
     public static final String DEFAULT_ZOOKEEPER_CONNECT_TIMEOUT = "3 secs";
     public static final String DEFAULT_ZOOKEEPER_SESSION_TIMEOUT = "3 secs";
     public static final String DEFAULT_ZOOKEEPER_ROOT_NODE = "/nifi";
@@ -300,6 +316,7 @@ public abstract class NiFiProperties {
     public static final int DEFAULT_LOAD_BALANCE_CONNECTIONS_PER_NODE = 4;
     public static final int DEFAULT_LOAD_BALANCE_MAX_THREAD_COUNT = 8;
     public static final String DEFAULT_LOAD_BALANCE_COMMS_TIMEOUT = "30 sec";
+    public static final String DEFAULT_LOAD_BALANCE_COMPRESSION_CODEC = "GZIP";
 
 
     // state management defaults
@@ -408,6 +425,10 @@ public abstract class NiFiProperties {
         return getProperty(SWAP_OUT_PERIOD, DEFAULT_SWAP_OUT_PERIOD);
     }
 
+    public boolean isSwapCompressionEnabled() {
+        return Boolean.parseBoolean(getProperty(SWAP_COMPRESSION_ENABLED, DEFAULT_SWAP_COMPRESSION_ENABLED));
+    }
+
     public String getAdministrativeYieldDuration() {
         return getProperty(ADMINISTRATIVE_YIELD_DURATION, DEFAULT_ADMINISTRATIVE_YIELD_DURATION);
     }
@@ -1192,6 +1213,51 @@ public abstract class NiFiProperties {
         return getProperty(BORED_YIELD_DURATION, DEFAULT_BORED_YIELD_DURATION);
     }
 
+    /**
+     * @return the maximum number of threads that may concurrently run Processors that are annotated with @BlockingIO
+     */
+    public int getBlockingIOMaxThreads() {
+        return getIntegerProperty(BLOCKING_IO_MAX_THREADS, DEFAULT_BLOCKING_IO_MAX_THREADS);
+    }
+
+    /**
+     * @return the number of threads that run Reporting Tasks, CRON-driven Processors and the framework's own periodic tasks
+     */
+    public int getTimerDrivenServiceMaxThreads() {
+        return getIntegerProperty(TIMER_DRIVEN_SERVICE_MAX_THREADS, DEFAULT_TIMER_DRIVEN_SERVICE_MAX_THREADS);
+    }
+
+    /**
+     * @return whether or not the Timer-Driven scheduling agent adjusts the run duration and number of concurrent tasks of Processors according to their load
+     */
+    public boolean isAutoTuningEnabled() {
+        return Boolean.parseBoolean(getProperty(AUTOTUNING_ENABLED, "false"));
+    }
+
+    public String getAutoTuningInterval() {
+        return getProperty(AUTOTUNING_INTERVAL, DEFAULT_AUTOTUNING_INTERVAL);
+    }
+
+    public String getAutoTuningMaxRunDuration() {
+        return getProperty(AUTOTUNING_MAX_RUN_DURATION, DEFAULT_AUTOTUNING_MAX_RUN_DURATION);
+    }
+
+    /**
+     * @return the system load, per available processor, above which autotuning no longer adds concurrent tasks to Processors and starts removing them
+     */
+    public double getAutoTuningMaxCpuLoad() {
+        final String value = getProperty(AUTOTUNING_MAX_CPU_LOAD);
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_AUTOTUNING_MAX_CPU_LOAD;
+        }
+
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (final NumberFormatException nfe) {
+            return DEFAULT_AUTOTUNING_MAX_CPU_LOAD;
+        }
+    }
+
     public File getStateManagementConfigFile() {
         return new File(getProperty(STATE_MANAGEMENT_CONFIG_FILE, DEFAULT_STATE_MANAGEMENT_CONFIG_FILE));
     }
@@ -25,6 +25,8 @@ import org.wali.UpdateType;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
@@ -32,29 +34,127 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * <p>
+ * A Snapshot that holds the most recent version of each active record in memory and writes them to a file named <code>checkpoint</code>.
+ * </p>
+ *
+ * <p>
+ * If delta checkpoints are enabled, only the first checkpoint (and any checkpoint that follows recovery or a failed checkpoint) writes all
+ * records. Every other checkpoint writes only the records that were updated since the previous checkpoint to a delta file named
+ * <code>checkpoint.delta.&lt;sequence&gt;</code>, so that the cost of a checkpoint is proportional to the number of records that changed
+ * rather than the number of records in the repository. Records that were deleted or swapped out are written to the delta as well, so that
+ * they can be removed upon recovery. Once enough deltas have accumulated, they are merged into the <code>checkpoint</code> file in the
+ * background.
+ * </p>
+ */
 public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T> {
     private static final Logger logger = LoggerFactory.getLogger(HashMapSnapshot.class);
-    private static final int ENCODING_VERSION = 1;
+
+    // Version 1 writes all records as a single stream, which can be deserialized only sequentially.
+    // Version 2 writes the records in chunks that can each be deserialized independently of the others.
+    // Version 3 adds the sequence number that orders a Snapshot and the deltas that are applied to it.
+    private static final int ENCODING_VERSION = 3;
+    private static final int CHUNKED_ENCODING_VERSION = 2;
+    private static final int SEQUENCED_ENCODING_VERSION = 3;
+
+    // A chunk is written once it holds this many records or this many bytes, whichever comes first.
+    private static final int MAX_RECORDS_PER_CHUNK = 10_000;
+    private static final int MAX_BYTES_PER_CHUNK = 4 * 1024 * 1024;
+    private static final long PROGRESS_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10L);
+
+    // Deltas are compacted into the Snapshot once there are this many of them or once they are larger than half of the Snapshot
+    // (and large enough for compacting them to be worthwhile).
+    private static final int MAX_DELTA_FILES = 10;
+    private static final long MIN_DELTA_BYTES_TO_COMPACT = 1024 * 1024;
+    // Once more records than this (or than half of all records, whichever is greater) have changed since the last checkpoint, the changes
+    // are no longer tracked and the next checkpoint writes all records instead.
+    private static final int MIN_TRACKED_CHANGES = 10_000;
+
+    private static final Pattern DELTA_FILE_PATTERN = Pattern.compile("checkpoint\\.delta\\.(\\d+)");
+    private static final Pattern PARTIAL_DELTA_FILE_PATTERN = Pattern.compile("checkpoint\\.delta\\.\\d+\\.partial");
 
     private final ConcurrentMap<Object, T> recordMap = new ConcurrentHashMap<>();
     private final SerDeFactory<T> serdeFactory;
     private final Set<String> swapLocations = Collections.synchronizedSet(new HashSet<>());
     private final File storageDirectory;
+    private final int recoveryThreads;
+    private final RecoveryProgress recoveryProgress;
+    private final boolean deltaCheckpoints;
+
+    private final AtomicLong snapshotSequence = new AtomicLong(0L);
+    private final Lock snapshotFileLock = new ReentrantLock();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+    private volatile ConcurrentMap<Object, T> changes = new ConcurrentHashMap<>();
+    private volatile boolean fullSnapshotRequired = true;
+    private volatile boolean shutdown = false;
+
+    // guarded by synchronizing on 'this'
+    private long lastWrittenSequence = 0L;
+    private ExecutorService compactionExecutor;
 
     public HashMapSnapshot(final File storageDirectory, final SerDeFactory<T> serdeFactory) {
+        this(storageDirectory, serdeFactory, Runtime.getRuntime().availableProcessors(), new RecoveryProgress());
+    }
+
+    /**
+     * @param storageDirectory the directory in which the snapshot is stored
+     * @param serdeFactory the factory for the SerDe used to serialize and deserialize records
+     * @param recoveryThreads the number of threads to use for deserializing records when recovering the snapshot
+     * @param recoveryProgress the progress that is updated as the snapshot is recovered
+     */
+    public HashMapSnapshot(final File storageDirectory, final SerDeFactory<T> serdeFactory, final int recoveryThreads, final RecoveryProgress recoveryProgress) {
+        this(storageDirectory, serdeFactory, recoveryThreads, recoveryProgress, false);
+    }
+
+    /**
+     * @param storageDirectory the directory in which the snapshot is stored
+     * @param serdeFactory the factory for the SerDe used to serialize and deserialize records
+     * @param recoveryThreads the number of threads to use for deserializing records when recovering the snapshot
+     * @param recoveryProgress the progress that is updated as the snapshot is recovered
+     * @param deltaCheckpoints whether checkpoints should write only the records that changed since the previous checkpoint, when possible
+     */
+    public HashMapSnapshot(final File storageDirectory, final SerDeFactory<T> serdeFactory, final int recoveryThreads, final RecoveryProgress recoveryProgress,
+                           final boolean deltaCheckpoints) {
+        if (recoveryThreads < 1) {
+            throw new IllegalArgumentException("Number of recovery threads must be at least 1");
+        }
+
         this.serdeFactory = serdeFactory;
         this.storageDirectory = storageDirectory;
+        this.recoveryThreads = recoveryThreads;
+        this.recoveryProgress = recoveryProgress;
+        this.deltaCheckpoints = deltaCheckpoints;
     }
 
     private SnapshotHeader validateHeader(final DataInputStream dataIn) throws IOException {
@@ -72,7 +172,7 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
                 + snapshotVersion + " of the " + snapshotClass + " class; cannot restore using Version " + getVersion());
         }
 
-        final String serdeEncoding = dataIn.readUTF(); // ignore serde class name for now
+        final String serdeEncoding = dataIn.readUTF();
         logger.debug("Serde encoding for Snapshot at {} is {}", storageDirectory, serdeEncoding);
 
         final int serdeVersion = dataIn.readInt();
@@ -81,13 +181,26 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
         final long maxTransactionId = dataIn.readLong();
         logger.debug("Max Transaction ID for Snapshot at {} is {}", storageDirectory, maxTransactionId);
 
+        final long sequence = snapshotVersion >= SEQUENCED_ENCODING_VERSION ? dataIn.readLong() : 0L;
+        logger.debug("Sequence for Snapshot at {} is {}", storageDirectory, sequence);
+
         final int numRecords = dataIn.readInt();
         logger.debug("Number of Records for Snapshot at {} is {}", storageDirectory, numRecords);
 
         final SerDe<T> serde = serdeFactory.createSerDe(serdeEncoding);
-        serde.readHeader(dataIn);
 
-        return new SnapshotHeader(serde, serdeVersion, maxTransactionId, numRecords);
+        // In the chunked encoding, the SerDe header is length-delimited so that it can be replayed into the SerDe that decodes each chunk.
+        final byte[] serdeHeader;
+        if (snapshotVersion >= CHUNKED_ENCODING_VERSION) {
+            serdeHeader = new byte[dataIn.readInt()];
+            dataIn.readFully(serdeHeader);
+            serde.readHeader(new DataInputStream(new ByteArrayInputStream(serdeHeader)));
+        } else {
+            serdeHeader = null;
+            serde.readHeader(dataIn);
+        }
+
+        return new SnapshotHeader(serde, serdeEncoding, serdeHeader, serdeVersion, maxTransactionId, sequence, numRecords);
     }
 
     @Override
@@ -97,9 +210,18 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
         final boolean partialExists = partialFile.exists();
         final boolean snapshotExists = snapshotFile.exists();
 
+        // A partially written delta holds nothing that is not also in the journals, as the journals are only removed once the delta is complete.
+        for (final File partialDelta : listFiles(PARTIAL_DELTA_FILE_PATTERN)) {
+            Files.delete(partialDelta.toPath());
+        }
+
         // If there is no snapshot (which is the case before the first snapshot is ever created), then just
         // return an empty recovery.
         if (!partialExists && !snapshotExists) {
+            if (!listDeltaFiles().isEmpty()) {
+                throw new IOException("Cannot recover Write-Ahead Log Snapshot located at " + storageDirectory + " because Snapshot deltas exist but the Snapshot does not");
+            }
+
             return SnapshotRecovery.emptyRecovery();
         }
 
@@ -121,44 +243,214 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
 
         // At this point, we know the snapshotPath exists because if it didn't, then we either returned null
         // or we renamed partialPath to snapshotPath. So just Recover from snapshotPath.
-        try (final DataInputStream dataIn = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+        final Set<String> swapLocations = new HashSet<>();
+        final SnapshotHeader header = restoreFile(snapshotFile, false, swapLocations);
+        long maxTransactionId = header.getMaxTransactionId();
+
+        logger.info("{} restored {} Records and {} Swap Files from Snapshot, ending with Transaction ID {}",
+            new Object[] {this, header.getNumRecords(), swapLocations.size(), maxTransactionId});
+
+        // Apply each delta that was written after the Snapshot, in the order in which the deltas were written. Any delta whose sequence
+        // is not greater than that of the Snapshot was compacted into the Snapshot already but not yet deleted.
+        long sequence = header.getSequence();
+        int deltasApplied = 0;
+        for (final File deltaFile : listDeltaFiles()) {
+            final long deltaSequence = getDeltaSequence(deltaFile);
+            if (deltaSequence <= header.getSequence()) {
+                Files.delete(deltaFile.toPath());
+                continue;
+            }
+
+            if (deltaSequence != sequence + 1) {
+                throw new IOException("Cannot recover Write-Ahead Log Snapshot located at " + storageDirectory + " because Snapshot delta "
+                    + (sequence + 1) + " is missing but Snapshot delta " + deltaSequence + " exists");
+            }
+
+            final SnapshotHeader deltaHeader = restoreFile(deltaFile, true, swapLocations);
+            maxTransactionId = deltaHeader.getMaxTransactionId();
+            sequence = deltaSequence;
+            deltasApplied++;
+        }
+
+        if (deltasApplied > 0) {
+            logger.info("{} applied {} Snapshot deltas, resulting in {} Records and {} Swap Files, ending with Transaction ID {}",
+                new Object[] {this, deltasApplied, recordMap.size(), swapLocations.size(), maxTransactionId});
+        }
+
+        this.swapLocations.clear();
+        this.swapLocations.addAll(swapLocations);
+
+        // The journals are replayed on top of the recovered records without going through update(), so the next checkpoint must write all records.
+        snapshotSequence.set(sequence);
+        synchronized (this) {
+            lastWrittenSequence = sequence;
+        }
+        changes = new ConcurrentHashMap<>();
+        fullSnapshotRequired = true;
+
+        return new StandardSnapshotRecovery<>(recordMap, swapLocations, snapshotFile, maxTransactionId);
+    }
+
+    /**
+     * Restores the records in the given Snapshot or delta file into the record map and replaces the contents of the given set
+     * of swap locations with those in the file.
+     */
+    private SnapshotHeader restoreFile(final File file, final boolean delta, final Set<String> swapLocations) throws IOException {
+        try (final DataInputStream dataIn = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
             // Ensure that the header contains the information that we expect and retrieve the relevant information from the header.
             final SnapshotHeader header = validateHeader(dataIn);
 
             final SerDe<T> serde = header.getSerDe();
             final int serdeVersion = header.getSerDeVersion();
             final int numRecords = header.getNumRecords();
-            final long maxTransactionId = header.getMaxTransactionId();
+            if (delta) {
+                recoveryProgress.addSnapshotDeltaRecords(numRecords);
+            } else {
+                recoveryProgress.startSnapshot(numRecords);
+            }
 
             // Read all of the records that we expect to receive.
-            for (int i = 0; i < numRecords; i++) {
-                final T record = serde.deserializeRecord(dataIn, serdeVersion);
-                if (record == null) {
-                    throw new EOFException();
-                }
+            if (header.getSerDeHeader() == null) {
+                for (int i = 0; i < numRecords; i++) {
+                    final T record = serde.deserializeRecord(dataIn, serdeVersion);
+                    if (record == null) {
+                        throw new EOFException();
+                    }
 
-                final UpdateType updateType = serde.getUpdateType(record);
-                if (updateType == UpdateType.DELETE) {
-                    logger.warn("While recovering from snapshot, found record with type 'DELETE'; this record will not be restored");
-                    continue;
+                    restore(serde, record, delta);
+                    recoveryProgress.incrementSnapshotRecordsRecovered(1);
                 }
-
-                logger.trace("Recovered from snapshot: {}", record);
-                recordMap.put(serde.getRecordIdentifier(record), record);
+            } else {
+                recoverChunks(dataIn, header, delta);
             }
 
             // Determine the location of any swap files.
             final int numSwapRecords = dataIn.readInt();
-            final Set<String> swapLocations = new HashSet<>();
+            swapLocations.clear();
             for (int i = 0; i < numSwapRecords; i++) {
                 swapLocations.add(dataIn.readUTF());
             }
-            this.swapLocations.addAll(swapLocations);
 
-            logger.info("{} restored {} Records and {} Swap Files from Snapshot, ending with Transaction ID {}",
-                new Object[] {this, numRecords, swapLocations.size(), maxTransactionId});
+            return header;
+        }
+    }
+
+    private void restore(final SerDe<T> serde, final T record, final boolean delta) {
+        final UpdateType updateType = serde.getUpdateType(record);
+        if (delta && (updateType == UpdateType.DELETE || updateType == UpdateType.SWAP_OUT)) {
+            logger.trace("Removed by snapshot delta: {}", record);
+            recordMap.remove(serde.getRecordIdentifier(record));
+            return;
+        }
 
-            return new StandardSnapshotRecovery<>(recordMap, swapLocations, snapshotFile, maxTransactionId);
+        if (updateType == UpdateType.DELETE) {
+            logger.warn("While recovering from snapshot, found record with type 'DELETE'; this record will not be restored");
+            return;
+        }
+
+        logger.trace("Recovered from snapshot: {}", record);
+        recordMap.put(serde.getRecordIdentifier(record), record);
+    }
+
+    /**
+     * Reads each chunk of records from the given stream and deserializes the chunks in parallel. Chunks are restored in the order
+     * in which they were written, and the number of chunks that are read ahead of the oldest chunk that has not yet been restored is
+     * bounded, so that only a handful of chunks are held in memory at once.
+     */
+    private void recoverChunks(final DataInputStream dataIn, final SnapshotHeader header, final boolean delta) throws IOException {
+        final SerDe<T> serde = header.getSerDe();
+        final int numRecords = header.getNumRecords();
+
+        // If the SerDe Factory hands out a single SerDe, the chunks cannot be deserialized concurrently.
+        final boolean parallel = recoveryThreads > 1 && serdeFactory.createSerDe(header.getSerDeEncoding()) != serdeFactory.createSerDe(header.getSerDeEncoding());
+        final ForkJoinPool pool = parallel ? new ForkJoinPool(recoveryThreads, new RecoveryThreadFactory(), null, false) : null;
+        final int maxChunksInFlight = recoveryThreads * 4;
+        final Deque<Future<List<T>>> chunksInFlight = new ArrayDeque<>(maxChunksInFlight);
+
+        long nextProgressLogNanos = System.nanoTime() + PROGRESS_LOG_INTERVAL_NANOS;
+        try {
+            int recordsRead = 0;
+            while (recordsRead < numRecords) {
+                final int chunkRecords = dataIn.readInt();
+                final byte[] chunk = new byte[dataIn.readInt()];
+                dataIn.readFully(chunk);
+                recordsRead += chunkRecords;
+
+                if (pool == null) {
+                    restoreChunk(serde, decodeChunk(header, chunk, chunkRecords), delta);
+                } else {
+                    chunksInFlight.add(pool.submit(() -> decodeChunk(header, chunk, chunkRecords)));
+                    if (chunksInFlight.size() >= maxChunksInFlight) {
+                        restoreChunk(serde, getChunk(chunksInFlight.poll()), delta);
+                    }
+                }
+
+                if (System.nanoTime() > nextProgressLogNanos) {
+                    logger.info("{} recovered {} of {} Records from Snapshot", this, recoveryProgress.getSnapshotRecordsRecovered(), recoveryProgress.getSnapshotRecordCount());
+                    nextProgressLogNanos = System.nanoTime() + PROGRESS_LOG_INTERVAL_NANOS;
+                }
+            }
+
+            while (!chunksInFlight.isEmpty()) {
+                restoreChunk(serde, getChunk(chunksInFlight.poll()), delta);
+            }
+        } finally {
+            if (pool != null) {
+                chunksInFlight.forEach(future -> future.cancel(true));
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private List<T> decodeChunk(final SnapshotHeader header, final byte[] chunk, final int chunkRecords) throws IOException {
+        final SerDe<T> serde = serdeFactory.createSerDe(header.getSerDeEncoding());
+        try {
+            serde.readHeader(new DataInputStream(new ByteArrayInputStream(header.getSerDeHeader())));
+
+            final DataInputStream chunkIn = new DataInputStream(new ByteArrayInputStream(chunk));
+            final List<T> records = new ArrayList<>(chunkRecords);
+            for (int i = 0; i < chunkRecords; i++) {
+                final T record = serde.deserializeRecord(chunkIn, header.getSerDeVersion());
+                if (record == null) {
+                    throw new EOFException("Snapshot chunk contained fewer than the expected " + chunkRecords + " Records");
+                }
+
+                records.add(record);
+            }
+
+            return records;
+        } finally {
+            serde.close();
+        }
+    }
+
+    private void restoreChunk(final SerDe<T> serde, final List<T> records, final boolean delta) {
+        for (final T record : records) {
+            restore(serde, record, delta);
+        }
+
+        recoveryProgress.incrementSnapshotRecordsRecovered(records.size());
+    }
+
+    private List<T> getChunk(final Future<List<T>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while recovering Snapshot", ie);
+        } catch (final ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IOException("Failed to recover Snapshot", cause);
         }
     }
 
@@ -176,6 +468,7 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
             switch (updateType) {
                 case DELETE:
                     recordMap.remove(recordId);
+                    trackChange(recordId, record);
                     break;
                 case SWAP_OUT:
                     final String location = serdeFactory.getLocation(record);
@@ -186,6 +479,7 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
                     } else {
                         recordMap.remove(recordId);
                         this.swapLocations.add(location);
+                        trackChange(recordId, record);
                     }
                     break;
                 case SWAP_IN:
@@ -198,12 +492,30 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
                         swapLocations.remove(swapLocation);
                     }
                     recordMap.put(recordId, record);
+                    trackChange(recordId, record);
                     break;
                 default:
                     recordMap.put(recordId, record);
+                    trackChange(recordId, record);
                     break;
             }
         }
+
+        if (deltaCheckpoints && !fullSnapshotRequired) {
+            // If most of the records have changed, a delta would be about as large as a full Snapshot, so there is no point
+            // in holding on to the changes any longer.
+            final int changeCount = changes.size();
+            if (changeCount > MIN_TRACKED_CHANGES && changeCount > recordMap.size() / 2) {
+                fullSnapshotRequired = true;
+                changes = new ConcurrentHashMap<>();
+            }
+        }
+    }
+
+    private void trackChange(final Object recordId, final T record) {
+        if (deltaCheckpoints && !fullSnapshotRequired) {
+            changes.put(recordId, record);
+        }
     }
 
     @Override
@@ -223,7 +535,16 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
 
     @Override
     public SnapshotCapture<T> prepareSnapshot(final long maxTransactionId, final Set<String> swapFileLocations) {
-        return new Snapshot(new HashMap<>(recordMap), new HashSet<>(swapFileLocations), maxTransactionId);
+        final long sequence = snapshotSequence.incrementAndGet();
+        if (!deltaCheckpoints || fullSnapshotRequired) {
+            fullSnapshotRequired = false;
+            changes = new ConcurrentHashMap<>();
+            return new Snapshot(new HashMap<>(recordMap), new HashSet<>(swapFileLocations), maxTransactionId, sequence, false);
+        }
+
+        final Map<Object, T> changedRecords = changes;
+        changes = new ConcurrentHashMap<>();
+        return new Snapshot(changedRecords, new HashSet<>(swapFileLocations), maxTransactionId, sequence, true);
     }
 
     private int getVersion() {
@@ -238,63 +559,106 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
         return new File(storageDirectory, "checkpoint");
     }
 
+    private File getDeltaFile(final long sequence) {
+        return new File(storageDirectory, "checkpoint.delta." + sequence);
+    }
+
+    private static long getDeltaSequence(final File deltaFile) {
+        final Matcher matcher = DELTA_FILE_PATTERN.matcher(deltaFile.getName());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(deltaFile + " is not a Snapshot delta");
+        }
+
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private List<File> listFiles(final Pattern pattern) {
+        final File[] files = storageDirectory.listFiles(file -> pattern.matcher(file.getName()).matches());
+        return files == null ? Collections.emptyList() : Arrays.asList(files);
+    }
+
+    /**
+     * @return the delta files in the storage directory, ordered by their sequence
+     */
+    private List<File> listDeltaFiles() {
+        final List<File> deltaFiles = new ArrayList<>(listFiles(DELTA_FILE_PATTERN));
+        deltaFiles.sort(Comparator.comparingLong(HashMapSnapshot::getDeltaSequence));
+        return deltaFiles;
+    }
+
     @Override
-    public synchronized void writeSnapshot(final SnapshotCapture<T> snapshot) throws IOException {
-        final SerDe<T> serde = serdeFactory.createSerDe(null);
+    public void writeSnapshot(final SnapshotCapture<T> snapshot) throws IOException {
+        if (snapshot instanceof HashMapSnapshot.Snapshot) {
+            final Snapshot capture = (Snapshot) snapshot;
+            if (capture.isDelta()) {
+                writeDelta(capture);
+            } else {
+                writeFullSnapshot(capture, capture.getSequence() > 0 ? capture.getSequence() : snapshotSequence.incrementAndGet());
+            }
+        } else {
+            writeFullSnapshot(snapshot, snapshotSequence.incrementAndGet());
+        }
+    }
 
-        final File snapshotFile = getSnapshotFile();
-        final File partialFile = getPartialFile();
+    private void writeFullSnapshot(final SnapshotCapture<T> snapshot, final long sequence) throws IOException {
+        boolean written = false;
+        snapshotFileLock.lock();
+        try {
+            final File snapshotFile = getSnapshotFile();
+            final File partialFile = getPartialFile();
 
-        // We must ensure that we do not overwrite the existing Snapshot file directly because if NiFi were
-        // to be killed or crash when we are partially finished, we'd end up with no viable Snapshot file at all.
-        // To avoid this, we write to a 'partial' file, then delete the existing Snapshot file, if it exists, and
-        // rename 'partial' to Snaphsot. That way, if NiFi crashes, we can still restore the Snapshot by first looking
-        // for a Snapshot file and restoring it, if it exists. If it does not exist, then we restore from the partial file,
-        // assuming that NiFi crashed after deleting the Snapshot file and before renaming the partial file.
-        //
-        // If there is no Snapshot file currently but there is a Partial File, then this indicates
-        // that we have deleted the Snapshot file and failed to rename the Partial File. We don't want
-        // to overwrite the Partial file, because doing so could potentially lose data. Instead, we must
-        // first rename it to Snapshot and then write to the partial file.
-        if (!snapshotFile.exists() && partialFile.exists()) {
-            final boolean rename = partialFile.renameTo(snapshotFile);
-            if (!rename) {
-                throw new IOException("Failed to rename partial snapshot file " + partialFile + " to " + snapshotFile);
-            }
-        }
-
-        // Write to the partial file.
-        try (final FileOutputStream fileOut = new FileOutputStream(getPartialFile());
-            final OutputStream bufferedOut = new BufferedOutputStream(fileOut);
-            final DataOutputStream dataOut = new DataOutputStream(bufferedOut)) {
-
-            // Write out the header
-            dataOut.writeUTF(HashMapSnapshot.class.getName());
-            dataOut.writeInt(getVersion());
-            dataOut.writeUTF(serde.getClass().getName());
-            dataOut.writeInt(serde.getVersion());
-            dataOut.writeLong(snapshot.getMaxTransactionId());
-            dataOut.writeInt(snapshot.getRecords().size());
-            serde.writeHeader(dataOut);
-
-            // Serialize each record
-            for (final T record : snapshot.getRecords().values()) {
-                logger.trace("Checkpointing {}", record);
-                serde.serializeRecord(record, dataOut);
+            // We must ensure that we do not overwrite the existing Snapshot file directly because if NiFi were
+            // to be killed or crash when we are partially finished, we'd end up with no viable Snapshot file at all.
+            // To avoid this, we write to a 'partial' file, then delete the existing Snapshot file, if it exists, and
+            // rename 'partial' to Snaphsot. That way, if NiFi crashes, we can still restore the Snapshot by first looking
+            // for a Snapshot file and restoring it, if it exists. If it does not exist, then we restore from the partial file,
+            // assuming that NiFi crashed after deleting the Snapshot file and before renaming the partial file.
+            //
+            // If there is no Snapshot file currently but there is a Partial File, then this indicates
+            // that we have deleted the Snapshot file and failed to rename the Partial File. We don't want
+            // to overwrite the Partial file, because doing so could potentially lose data. Instead, we must
+            // first rename it to Snapshot and then write to the partial file.
+            if (!snapshotFile.exists() && partialFile.exists()) {
+                final boolean rename = partialFile.renameTo(snapshotFile);
+                if (!rename) {
+                    throw new IOException("Failed to rename partial snapshot file " + partialFile + " to " + snapshotFile);
+                }
             }
 
-            // Write out the number of swap locations, followed by the swap locations themselves.
-            dataOut.writeInt(snapshot.getSwapLocations().size());
-            for (final String swapLocation : snapshot.getSwapLocations()) {
-                dataOut.writeUTF(swapLocation);
+            // Write to the partial file.
+            try (final SnapshotWriter writer = new SnapshotWriter(partialFile, snapshot.getMaxTransactionId(), sequence, snapshot.getRecords().size())) {
+                for (final T record : snapshot.getRecords().values()) {
+                    logger.trace("Checkpointing {}", record);
+                    writer.write(record);
+                }
+
+                writer.finish(snapshot.getSwapLocations());
             }
 
-            // Ensure that we flush the Buffered Output Stream and then perform an fsync().
-            // This ensures that the data is fully written to disk before we delete the existing snapshot.
-            dataOut.flush();
-            fileOut.getChannel().force(false);
+            replaceSnapshot(partialFile, snapshotFile);
+            written = true;
+        } finally {
+            snapshotFileLock.unlock();
+
+            // If the Snapshot could not be written, the changes that it holds are not in any delta, so the next checkpoint must write all records.
+            if (!written) {
+                fullSnapshotRequired = true;
+            }
+        }
+
+        synchronized (this) {
+            lastWrittenSequence = Math.max(lastWrittenSequence, sequence);
         }
 
+        // Any delta written before this Snapshot is no longer needed.
+        for (final File deltaFile : listDeltaFiles()) {
+            if (getDeltaSequence(deltaFile) <= sequence) {
+                Files.deleteIfExists(deltaFile.toPath());
+            }
+        }
+    }
+
+    private void replaceSnapshot(final File partialFile, final File snapshotFile) throws IOException {
         // If the snapshot file exists, delete it
         if (snapshotFile.exists()) {
             if (!snapshotFile.delete()) {
@@ -309,18 +673,350 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
         }
     }
 
+    private void writeDelta(final Snapshot delta) throws IOException {
+        final long sequence = delta.getSequence();
+        final File deltaFile = getDeltaFile(sequence);
+        final File partialFile = new File(storageDirectory, deltaFile.getName() + ".partial");
+
+        boolean written = false;
+        try {
+            synchronized (this) {
+                // A delta can be applied only on top of the delta or Snapshot that was captured immediately before it. If that one was not
+                // written, the changes that it held exist only in the journals, so we must not allow those journals to be removed.
+                if (lastWrittenSequence != sequence - 1) {
+                    throw new IOException("Cannot write Snapshot delta " + sequence + " to " + storageDirectory
+                        + " because the previous checkpoint did not complete; the next checkpoint will write a full Snapshot instead");
+                }
+
+                try (final SnapshotWriter writer = new SnapshotWriter(partialFile, delta.getMaxTransactionId(), sequence, delta.getRecords().size())) {
+                    for (final T record : delta.getRecords().values()) {
+                        logger.trace("Checkpointing change {}", record);
+                        writer.write(record);
+                    }
+
+                    writer.finish(delta.getSwapLocations());
+                }
+
+                final boolean rename = partialFile.renameTo(deltaFile);
+                if (!rename) {
+                    throw new IOException("Failed to rename partial snapshot delta " + partialFile + " to " + deltaFile);
+                }
+
+                lastWrittenSequence = sequence;
+            }
+
+            written = true;
+        } finally {
+            if (!written) {
+                fullSnapshotRequired = true;
+                if (partialFile.exists() && !partialFile.delete()) {
+                    logger.warn("Unable to delete partial Snapshot delta {}", partialFile);
+                }
+            }
+        }
+
+        scheduleCompactionIfNecessary();
+    }
+
+    private void scheduleCompactionIfNecessary() {
+        final List<File> deltaFiles = listDeltaFiles();
+        final long deltaBytes = deltaFiles.stream().mapToLong(File::length).sum();
+        if (deltaFiles.size() < MAX_DELTA_FILES && (deltaBytes < MIN_DELTA_BYTES_TO_COMPACT || deltaBytes <= getSnapshotFile().length() / 2)) {
+            return;
+        }
+
+        if (!compactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        final ExecutorService executor = getCompactionExecutor();
+        if (executor == null) {
+            compactionScheduled.set(false);
+            return;
+        }
+
+        executor.submit(() -> {
+            try {
+                compact();
+            } catch (final Exception e) {
+                logger.error("Failed to compact Snapshot deltas into the Snapshot at {}; will try again after the next checkpoint", storageDirectory, e);
+            } finally {
+                compactionScheduled.set(false);
+            }
+        });
+    }
+
+    private synchronized ExecutorService getCompactionExecutor() {
+        if (shutdown) {
+            return null;
+        }
+
+        if (compactionExecutor == null) {
+            compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "Write-Ahead Log Snapshot Compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return compactionExecutor;
+    }
+
+    /**
+     * Merges all deltas into the Snapshot file, so that they no longer need to be applied upon recovery. The records in the Snapshot
+     * are copied one chunk at a time, so only the records in the deltas are held in memory.
+     *
+     * @return the number of deltas that were merged into the Snapshot
+     * @throws IOException if unable to read the Snapshot or its deltas or to write the new Snapshot
+     */
+    int compact() throws IOException {
+        final long start = System.nanoTime();
+        final List<File> mergedDeltas = new ArrayList<>();
+
+        snapshotFileLock.lock();
+        try {
+            final File snapshotFile = getSnapshotFile();
+            final File partialFile = getPartialFile();
+            if (!snapshotFile.exists()) {
+                return 0;
+            }
+
+            try (final DataInputStream snapshotIn = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+                final SnapshotHeader header = validateHeader(snapshotIn);
+
+                // Read the deltas into memory, with each change overriding any change to the same record in an earlier delta.
+                final Map<Object, T> changedRecords = new HashMap<>();
+                final Set<String> swapLocations = new HashSet<>();
+                long sequence = header.getSequence();
+                long maxTransactionId = header.getMaxTransactionId();
+                for (final File deltaFile : listDeltaFiles()) {
+                    final long deltaSequence = getDeltaSequence(deltaFile);
+                    if (deltaSequence <= header.getSequence()) {
+                        continue;
+                    }
+                    if (deltaSequence != sequence + 1) {
+                        break;
+                    }
+
+                    maxTransactionId = readDelta(deltaFile, changedRecords, swapLocations);
+                    sequence = deltaSequence;
+                    mergedDeltas.add(deltaFile);
+                }
+
+                if (mergedDeltas.isEmpty() || header.getSerDeHeader() == null) {
+                    return 0;
+                }
+
+                try (final SnapshotWriter writer = new SnapshotWriter(partialFile, maxTransactionId, sequence, header.getNumRecords())) {
+                    // Copy each record in the Snapshot that was not changed by a delta, and then each record that a delta created or updated.
+                    int recordsRead = 0;
+                    while (recordsRead < header.getNumRecords()) {
+                        final int chunkRecords = snapshotIn.readInt();
+                        final byte[] chunk = new byte[snapshotIn.readInt()];
+                        snapshotIn.readFully(chunk);
+                        recordsRead += chunkRecords;
+
+                        if (shutdown) {
+                            throw new IOException("Abandoned compaction of Snapshot deltas at " + storageDirectory + " because the Snapshot was shut down");
+                        }
+
+                        for (final T record : decodeChunk(header, chunk, chunkRecords)) {
+                            if (!changedRecords.containsKey(serdeFactory.getRecordIdentifier(record))) {
+                                writer.write(record);
+                            }
+                        }
+                    }
+
+                    for (final T record : changedRecords.values()) {
+                        final UpdateType updateType = serdeFactory.getUpdateType(record);
+                        if (updateType != UpdateType.DELETE && updateType != UpdateType.SWAP_OUT) {
+                            writer.write(record);
+                        }
+                    }
+
+                    writer.finish(swapLocations);
+                }
+            }
+
+            replaceSnapshot(partialFile, snapshotFile);
+
+            for (final File deltaFile : mergedDeltas) {
+                Files.deleteIfExists(deltaFile.toPath());
+            }
+        } finally {
+            snapshotFileLock.unlock();
+        }
+
+        logger.info("{} compacted {} Snapshot deltas into the Snapshot in {} milliseconds",
+            this, mergedDeltas.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return mergedDeltas.size();
+    }
+
+    /**
+     * Reads the records in the given delta file into the given map, keyed by record identifier, and replaces the contents of the given
+     * set of swap locations with those in the delta.
+     *
+     * @return the max transaction id of the delta
+     */
+    private long readDelta(final File deltaFile, final Map<Object, T> changedRecords, final Set<String> swapLocations) throws IOException {
+        try (final DataInputStream dataIn = new DataInputStream(new BufferedInputStream(new FileInputStream(deltaFile)))) {
+            final SnapshotHeader header = validateHeader(dataIn);
+
+            int recordsRead = 0;
+            while (recordsRead < header.getNumRecords()) {
+                final int chunkRecords = dataIn.readInt();
+                final byte[] chunk = new byte[dataIn.readInt()];
+                dataIn.readFully(chunk);
+                recordsRead += chunkRecords;
+
+                for (final T record : decodeChunk(header, chunk, chunkRecords)) {
+                    changedRecords.put(serdeFactory.getRecordIdentifier(record), record);
+                }
+            }
+
+            final int numSwapRecords = dataIn.readInt();
+            swapLocations.clear();
+            for (int i = 0; i < numSwapRecords; i++) {
+                swapLocations.add(dataIn.readUTF());
+            }
+
+            return header.getMaxTransactionId();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        final ExecutorService executor;
+        synchronized (this) {
+            shutdown = true;
+            executor = compactionExecutor;
+        }
+
+        if (executor == null) {
+            return;
+        }
+
+        // Compaction writes to a partial file, so it is safe to abandon; the deltas are simply applied upon recovery instead.
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("{} timed out waiting for compaction of Snapshot deltas to stop", this);
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes a Snapshot or delta file: the header, followed by the records in chunks, followed by the swap locations.
+     */
+    private class SnapshotWriter implements Closeable {
+        private final FileOutputStream fileOut;
+        private final DataOutputStream dataOut;
+        private final SerDe<T> serde;
+        private final ByteArrayDataOutputStream chunk = new ByteArrayDataOutputStream(MAX_BYTES_PER_CHUNK);
+        private final int numRecordsOffset;
+        private final int expectedRecords;
+        private int chunkRecords = 0;
+        private int recordsWritten = 0;
+
+        public SnapshotWriter(final File file, final long maxTransactionId, final long sequence, final int expectedRecords) throws IOException {
+            this.serde = serdeFactory.createSerDe(null);
+            this.expectedRecords = expectedRecords;
+            this.fileOut = new FileOutputStream(file);
+            this.dataOut = new DataOutputStream(new BufferedOutputStream(fileOut));
+
+            try {
+                // Write out the header
+                dataOut.writeUTF(HashMapSnapshot.class.getName());
+                dataOut.writeInt(getVersion());
+                dataOut.writeUTF(serde.getClass().getName());
+                dataOut.writeInt(serde.getVersion());
+                dataOut.writeLong(maxTransactionId);
+                dataOut.writeLong(sequence);
+                numRecordsOffset = dataOut.size();
+                dataOut.writeInt(expectedRecords);
+
+                final ByteArrayDataOutputStream serdeHeader = new ByteArrayDataOutputStream(1024);
+                serde.writeHeader(serdeHeader.getDataOutputStream());
+                dataOut.writeInt(serdeHeader.getByteArrayOutputStream().size());
+                serdeHeader.getByteArrayOutputStream().writeTo(dataOut);
+            } catch (final IOException | RuntimeException e) {
+                dataOut.close();
+                throw e;
+            }
+        }
+
+        public void write(final T record) throws IOException {
+            // Serialize each record into a chunk of records, writing out each chunk as it fills, preceded by its record count and length.
+            serde.serializeRecord(record, chunk.getDataOutputStream());
+            chunkRecords++;
+            recordsWritten++;
+
+            if (chunkRecords >= MAX_RECORDS_PER_CHUNK || chunk.getByteArrayOutputStream().size() >= MAX_BYTES_PER_CHUNK) {
+                writeChunk();
+            }
+        }
+
+        private void writeChunk() throws IOException {
+            dataOut.writeInt(chunkRecords);
+            dataOut.writeInt(chunk.getByteArrayOutputStream().size());
+            chunk.getByteArrayOutputStream().writeTo(dataOut);
+            chunk.getByteArrayOutputStream().reset();
+            chunkRecords = 0;
+        }
+
+        public void finish(final Collection<String> swapLocations) throws IOException {
+            if (chunkRecords > 0) {
+                writeChunk();
+            }
+
+            // Write out the number of swap locations, followed by the swap locations themselves.
+            dataOut.writeInt(swapLocations.size());
+            for (final String swapLocation : swapLocations) {
+                dataOut.writeUTF(swapLocation);
+            }
+
+            dataOut.flush();
+
+            // When compacting, the number of records is not known up front, so it is filled in once all records have been written.
+            if (recordsWritten != expectedRecords) {
+                final ByteBuffer numRecords = ByteBuffer.allocate(4).putInt(0, recordsWritten);
+                fileOut.getChannel().write(numRecords, numRecordsOffset);
+            }
+
+            // Perform an fsync() to ensure that the data is fully written to disk before we delete or replace anything that it supersedes.
+            fileOut.getChannel().force(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            dataOut.close();
+        }
+    }
 
     public class Snapshot implements SnapshotCapture<T> {
         private final Map<Object, T> records;
         private final long maxTransactionId;
         private final Set<String> swapLocations;
+        private final long sequence;
+        private final boolean delta;
 
         public Snapshot(final Map<Object, T> records, final Set<String> swapLocations, final long maxTransactionId) {
+            this(records, swapLocations, maxTransactionId, 0L, false);
+        }
+
+        private Snapshot(final Map<Object, T> records, final Set<String> swapLocations, final long maxTransactionId, final long sequence, final boolean delta) {
             this.records = records;
             this.swapLocations = swapLocations;
             this.maxTransactionId = maxTransactionId;
+            this.sequence = sequence;
+            this.delta = delta;
         }
 
+        /**
+         * @return all active records if this is a full Snapshot, or, if this is a delta, the most recent update to each record that changed since the previous checkpoint
+         */
         @Override
         public final Map<Object, T> getRecords() {
             return records;
@@ -335,18 +1031,33 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
         public Set<String> getSwapLocations() {
             return swapLocations;
         }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public boolean isDelta() {
+            return delta;
+        }
     }
 
     private class SnapshotHeader {
         private final SerDe<T> serde;
+        private final String serdeEncoding;
+        private final byte[] serdeHeader;
         private final int serdeVersion;
         private final int numRecords;
         private final long maxTransactionId;
+        private final long sequence;
 
-        public SnapshotHeader(final SerDe<T> serde, final int serdeVersion, final long maxTransactionId, final int numRecords) {
+        public SnapshotHeader(final SerDe<T> serde, final String serdeEncoding, final byte[] serdeHeader, final int serdeVersion, final long maxTransactionId,
+                              final long sequence, final int numRecords) {
             this.serde = serde;
+            this.serdeEncoding = serdeEncoding;
+            this.serdeHeader = serdeHeader;
             this.serdeVersion = serdeVersion;
             this.maxTransactionId = maxTransactionId;
+            this.sequence = sequence;
             this.numRecords = numRecords;
         }
 
@@ -354,6 +1065,17 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
             return serde;
         }
 
+        public String getSerDeEncoding() {
+            return serdeEncoding;
+        }
+
+        /**
+         * @return the bytes of the SerDe header, or <code>null</code> if the snapshot was not written using the chunked encoding
+         */
+        public byte[] getSerDeHeader() {
+            return serdeHeader;
+        }
+
         public int getSerDeVersion() {
             return serdeVersion;
         }
@@ -362,9 +1084,26 @@ public class HashMapSnapshot<T> implements WriteAheadSnapshot<T>, RecordLookup<T
             return maxTransactionId;
         }
 
+        /**
+         * @return for a Snapshot, the sequence of the last delta that it includes; for a delta, the sequence of the delta itself
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
         public int getNumRecords() {
             return numRecords;
         }
     }
 
+    private static class RecoveryThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        @Override
+        public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Write-Ahead Log Snapshot Recovery-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
 }
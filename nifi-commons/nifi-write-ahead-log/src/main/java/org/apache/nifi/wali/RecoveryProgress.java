@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.wali;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how far along the recovery of a Write-Ahead Log is, so that the progress of a long-running recovery can be reported.
+ * Recovery is performed by a single caller, but the progress may be read from any thread.
+ */
+public class RecoveryProgress {
+    private final AtomicLong snapshotRecordsRecovered = new AtomicLong(0L);
+    private final AtomicLong journalUpdatesRecovered = new AtomicLong(0L);
+    private final AtomicLong journalFilesRecovered = new AtomicLong(0L);
+
+    private volatile long startNanos = -1L;
+    private volatile long endNanos = -1L;
+    private volatile long snapshotRecordCount = -1L;
+    private volatile long snapshotEndNanos = -1L;
+    private volatile long journalFileCount = -1L;
+
+    void startRecovery() {
+        startNanos = System.nanoTime();
+    }
+
+    void startSnapshot(final long recordCount) {
+        snapshotRecordCount = recordCount;
+    }
+
+    void addSnapshotDeltaRecords(final long recordCount) {
+        snapshotRecordCount += recordCount;
+    }
+
+    void incrementSnapshotRecordsRecovered(final long recordCount) {
+        snapshotRecordsRecovered.addAndGet(recordCount);
+    }
+
+    void startJournals(final long journalFiles) {
+        snapshotEndNanos = System.nanoTime();
+        journalFileCount = journalFiles;
+    }
+
+    void journalFileRecovered(final long updateCount) {
+        journalUpdatesRecovered.addAndGet(updateCount);
+        journalFilesRecovered.incrementAndGet();
+    }
+
+    void finishRecovery() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the number of records in the snapshot and any deltas that are applied to it, or -1 if the snapshot has not yet been opened
+     */
+    public long getSnapshotRecordCount() {
+        return snapshotRecordCount;
+    }
+
+    public long getSnapshotRecordsRecovered() {
+        return snapshotRecordsRecovered.get();
+    }
+
+    /**
+     * @return the number of journal files that are to be recovered, or -1 if recovery of the journals has not yet started
+     */
+    public long getJournalFileCount() {
+        return journalFileCount;
+    }
+
+    public long getJournalFilesRecovered() {
+        return journalFilesRecovered.get();
+    }
+
+    public long getJournalUpdatesRecovered() {
+        return journalUpdatesRecovered.get();
+    }
+
+    public boolean isComplete() {
+        return endNanos > 0L;
+    }
+
+    /**
+     * @return the number of milliseconds that were spent recovering the snapshot, or -1 if the snapshot has not yet been recovered
+     */
+    public long getSnapshotRecoveryMillis() {
+        return snapshotEndNanos < 0L ? -1L : TimeUnit.NANOSECONDS.toMillis(snapshotEndNanos - startNanos);
+    }
+
+    /**
+     * @return the number of milliseconds that recovery has taken so far, or -1 if recovery has not started
+     */
+    public long getElapsedMillis() {
+        if (startNanos < 0L) {
+            return -1L;
+        }
+
+        final long end = endNanos < 0L ? System.nanoTime() : endNanos;
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "RecoveryProgress[snapshot records=" + getSnapshotRecordsRecovered() + "/" + getSnapshotRecordCount()
+            + ", journal files=" + getJournalFilesRecovered() + "/" + getJournalFileCount()
+            + ", journal updates=" + getJournalUpdatesRecovered() + ", elapsed=" + getElapsedMillis() + " millis]";
+    }
+}
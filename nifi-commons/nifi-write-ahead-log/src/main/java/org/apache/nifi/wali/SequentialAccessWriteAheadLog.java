@@ -78,6 +78,7 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
 
     private final WriteAheadSnapshot<T> snapshot;
     private final RecordLookup<T> recordLookup;
+    private final RecoveryProgress recoveryProgress = new RecoveryProgress();
     private SnapshotRecovery<T> snapshotRecovery;
 
     private volatile boolean recovered = false;
@@ -89,6 +90,17 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
     }
 
     public SequentialAccessWriteAheadLog(final File storageDirectory, final SerDeFactory<T> serdeFactory, final SyncListener syncListener) throws IOException {
+        this(storageDirectory, serdeFactory, syncListener, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param storageDirectory the directory in which to store the Write-Ahead Log
+     * @param serdeFactory the factory for the SerDe used to serialize and deserialize records
+     * @param syncListener the listener to notify when the Write-Ahead Log is synced to disk
+     * @param recoveryThreads the number of threads to use for deserializing the snapshot when recovering records
+     * @throws IOException if unable to create the storage directory
+     */
+    public SequentialAccessWriteAheadLog(final File storageDirectory, final SerDeFactory<T> serdeFactory, final SyncListener syncListener, final int recoveryThreads) throws IOException {
         if (!storageDirectory.exists() && !storageDirectory.mkdirs()) {
             throw new IOException("Directory " + storageDirectory + " does not exist and cannot be created");
         }
@@ -96,7 +108,7 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
             throw new IOException("File " + storageDirectory + " is a regular file and not a directory");
         }
 
-        final HashMapSnapshot<T> hashMapSnapshot = new HashMapSnapshot<>(storageDirectory, serdeFactory);
+        final HashMapSnapshot<T> hashMapSnapshot = new HashMapSnapshot<>(storageDirectory, serdeFactory, recoveryThreads, recoveryProgress, true);
         this.snapshot = hashMapSnapshot;
         this.recordLookup = hashMapSnapshot;
 
@@ -144,6 +156,7 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
         logger.info("Recovering records from Write-Ahead Log at {}", storageDirectory);
 
         final long recoverStart = System.nanoTime();
+        recoveryProgress.startRecovery();
         recovered = true;
         snapshotRecovery = snapshot.recover();
         this.recoveredSwapLocations.addAll(snapshotRecovery.getRecoveredSwapLocations());
@@ -178,6 +191,7 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
         });
 
         final long snapshotTransactionId = snapshotRecovery.getMaxTransactionId();
+        recoveryProgress.startJournals(orderedJournalFiles.stream().filter(file -> getMinTransactionId(file) >= snapshotTransactionId).count());
 
         int totalUpdates = 0;
         int journalFilesRecovered = 0;
@@ -203,6 +217,7 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
 
                 logger.debug("Recovered {} updates from journal {}", updates, journalFile);
                 totalUpdates += updates;
+                recoveryProgress.journalFileRecovered(updates);
                 maxTransactionId = Math.max(maxTransactionId, journalRecovery.getMaxTransactionId());
             }
         }
@@ -213,6 +228,7 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
 
         final long recoverNanos = System.nanoTime() - recoverStart;
         final long recoveryMillis = TimeUnit.MILLISECONDS.convert(recoverNanos, TimeUnit.NANOSECONDS);
+        recoveryProgress.finishRecovery();
         logger.info("Successfully recovered {} records in {} milliseconds. Now checkpointing to ensure that Write-Ahead Log is in a consistent state", recoveredRecords.size(), recoveryMillis);
 
         this.recoveredSwapLocations.addAll(swapLocations);
@@ -222,6 +238,13 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
         return recoveredRecords.values();
     }
 
+    /**
+     * @return the progress of recovering records, which may be polled while {@link #recoverRecords()} is in progress
+     */
+    public RecoveryProgress getRecoveryProgress() {
+        return recoveryProgress;
+    }
+
     private long getMinTransactionId(final File journalFile) {
         final String filename = journalFile.getName();
         final String numeral = filename.substring(0, filename.indexOf("."));
@@ -253,6 +276,7 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
 
     private int checkpoint(final Set<String> swapLocations) throws IOException {
         final SnapshotCapture<T> snapshotCapture;
+        final int recordCount;
 
         final long startNanos = System.nanoTime();
         final File[] existingJournals;
@@ -290,6 +314,7 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
             } else {
                 snapshotCapture = snapshot.prepareSnapshot(nextTransactionId - 1, swapLocations);
             }
+            recordCount = snapshot.getRecordCount();
 
 
             // Create a new journal. We name the journal file <next transaction id>.journal but it is possible
@@ -321,9 +346,9 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
         final long totalNanos = System.nanoTime() - startNanos;
         final long millis = TimeUnit.NANOSECONDS.toMillis(totalNanos);
         logger.info("Checkpointed Write-Ahead Log with {} Records and {} Swap Files in {} milliseconds (Stop-the-world time = {} milliseconds), max Transaction ID {}",
-            new Object[] {snapshotCapture.getRecords().size(), snapshotCapture.getSwapLocations().size(), millis, stopTheWorldMillis, snapshotCapture.getMaxTransactionId()});
+            new Object[] {recordCount, snapshotCapture.getSwapLocations().size(), millis, stopTheWorldMillis, snapshotCapture.getMaxTransactionId()});
 
-        return snapshotCapture.getRecords().size();
+        return recordCount;
     }
 
 
@@ -337,5 +362,7 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
         } finally {
             journalWriteLock.unlock();
         }
+
+        snapshot.shutdown();
     }
 }
@@ -33,4 +33,10 @@ public interface WriteAheadSnapshot<T> {
     void update(Collection<T> records);
 
     int getRecordCount();
+
+    /**
+     * Stops any work that the snapshot performs in the background. The snapshot must not be written to after it has been shut down.
+     */
+    default void shutdown() {
+    }
 }
@@ -18,10 +18,13 @@
 package org.apache.nifi.wali;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Collections;
@@ -35,6 +38,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.wali.DummyRecord;
 import org.wali.DummyRecordSerde;
+import org.wali.SerDe;
 import org.wali.SerDeFactory;
 import org.wali.SingletonSerDeFactory;
 import org.wali.UpdateType;
@@ -213,4 +217,206 @@ public class TestHashMapSnapshot {
         assertTrue(swapLocations.contains("SwapLocation-1"));
     }
 
+    @Test
+    public void testParallelRecoveryOfMultipleChunks() throws IOException {
+        // Create a new SerDe for each chunk so that the chunks can be deserialized concurrently
+        final SerDeFactory<DummyRecord> perChunkSerdeFactory = new SerDeFactory<DummyRecord>() {
+            @Override
+            public SerDe<DummyRecord> createSerDe(final String encodingName) {
+                return new DummyRecordSerde();
+            }
+
+            @Override
+            public Object getRecordIdentifier(final DummyRecord record) {
+                return serde.getRecordIdentifier(record);
+            }
+
+            @Override
+            public UpdateType getUpdateType(final DummyRecord record) {
+                return serde.getUpdateType(record);
+            }
+
+            @Override
+            public String getLocation(final DummyRecord record) {
+                return serde.getLocation(record);
+            }
+        };
+
+        final HashMapSnapshot<DummyRecord> snapshot = new HashMapSnapshot<>(storageDirectory, perChunkSerdeFactory, 4, new RecoveryProgress());
+        final int recordCount = 25_123;
+        for (int i = 0; i < recordCount; i++) {
+            final DummyRecord record = new DummyRecord(String.valueOf(i), UpdateType.CREATE);
+            record.setProperty("key", String.valueOf(i));
+            snapshot.update(Collections.singleton(record));
+        }
+
+        final SnapshotCapture<DummyRecord> capture = snapshot.prepareSnapshot(42L, Collections.singleton("swapFile-1"));
+        snapshot.writeSnapshot(capture);
+
+        final RecoveryProgress recoveryProgress = new RecoveryProgress();
+        final HashMapSnapshot<DummyRecord> recoverySnapshot = new HashMapSnapshot<>(storageDirectory, perChunkSerdeFactory, 4, recoveryProgress);
+        final SnapshotRecovery<DummyRecord> recovery = recoverySnapshot.recover();
+
+        assertEquals(42L, recovery.getMaxTransactionId());
+        assertEquals(Collections.singleton("swapFile-1"), recovery.getRecoveredSwapLocations());
+        assertEquals(capture.getRecords(), recovery.getRecords());
+        assertEquals(recordCount, recoveryProgress.getSnapshotRecordCount());
+        assertEquals(recordCount, recoveryProgress.getSnapshotRecordsRecovered());
+    }
+
+    @Test
+    public void testRecoverUnchunkedSnapshot() throws IOException {
+        // Write a snapshot using version 1 of the encoding, in which records are not chunked
+        try (final DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(storageDirectory, "checkpoint")))) {
+            out.writeUTF(HashMapSnapshot.class.getName());
+            out.writeInt(1);
+            out.writeUTF(serde.getClass().getName());
+            out.writeInt(serde.getVersion());
+            out.writeLong(17L);
+            out.writeInt(3);
+            serde.writeHeader(out);
+
+            for (int i = 0; i < 3; i++) {
+                final DummyRecord record = new DummyRecord(String.valueOf(i), UpdateType.CREATE);
+                record.setProperty("key", String.valueOf(i));
+                serde.serializeRecord(record, out);
+            }
+
+            out.writeInt(0);
+        }
+
+        final HashMapSnapshot<DummyRecord> snapshot = new HashMapSnapshot<>(storageDirectory, serdeFactory);
+        final SnapshotRecovery<DummyRecord> recovery = snapshot.recover();
+        assertEquals(17L, recovery.getMaxTransactionId());
+        assertTrue(recovery.getRecoveredSwapLocations().isEmpty());
+
+        final Map<Object, DummyRecord> records = recovery.getRecords();
+        assertEquals(3, records.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(String.valueOf(i), records.get(String.valueOf(i)).getProperty("key"));
+        }
+    }
+
+    @Test
+    public void testDeltaCheckpointsRoundTrip() throws IOException {
+        final HashMapSnapshot<DummyRecord> snapshot = new HashMapSnapshot<>(storageDirectory, serdeFactory, 1, new RecoveryProgress(), true);
+        for (int i = 0; i < 10; i++) {
+            snapshot.update(Collections.singleton(createRecord(i, "a")));
+        }
+
+        // The first checkpoint writes all records.
+        final SnapshotCapture<DummyRecord> fullCapture = snapshot.prepareSnapshot(10L);
+        assertEquals(10, fullCapture.getRecords().size());
+        snapshot.writeSnapshot(fullCapture);
+
+        snapshot.update(Collections.singleton(createRecord(1, "b")));
+        snapshot.update(Collections.singleton(new DummyRecord("2", UpdateType.DELETE)));
+        final DummyRecord swapOut3 = new DummyRecord("3", UpdateType.SWAP_OUT);
+        swapOut3.setSwapLocation("swapFile-1");
+        snapshot.update(Collections.singleton(swapOut3));
+        snapshot.update(Collections.singleton(createRecord(10, "a")));
+
+        // The second checkpoint writes only the records that changed.
+        final SnapshotCapture<DummyRecord> deltaCapture = snapshot.prepareSnapshot(20L);
+        assertEquals(4, deltaCapture.getRecords().size());
+        snapshot.writeSnapshot(deltaCapture);
+        assertTrue(new File(storageDirectory, "checkpoint.delta.2").exists());
+
+        snapshot.update(Collections.singleton(createRecord(1, "c")));
+        snapshot.update(Collections.singleton(new DummyRecord("10", UpdateType.DELETE)));
+        snapshot.writeSnapshot(snapshot.prepareSnapshot(30L));
+        assertTrue(new File(storageDirectory, "checkpoint.delta.3").exists());
+
+        final HashMapSnapshot<DummyRecord> recoverySnapshot = new HashMapSnapshot<>(storageDirectory, serdeFactory, 1, new RecoveryProgress(), true);
+        final SnapshotRecovery<DummyRecord> recovery = recoverySnapshot.recover();
+        assertEquals(30L, recovery.getMaxTransactionId());
+        assertEquals(Collections.singleton("swapFile-1"), recovery.getRecoveredSwapLocations());
+
+        final Map<Object, DummyRecord> records = recovery.getRecords();
+        assertEquals(8, records.size());
+        assertEquals("c", records.get("1").getProperty("value"));
+        assertEquals("a", records.get("0").getProperty("value"));
+        assertFalse(records.containsKey("2"));
+        assertFalse(records.containsKey("3"));
+        assertFalse(records.containsKey("10"));
+
+        // The journals are replayed on top of the recovered records, so the first checkpoint after recovery must write all records.
+        final SnapshotCapture<DummyRecord> capture = recoverySnapshot.prepareSnapshot(40L);
+        assertEquals(8, capture.getRecords().size());
+        recoverySnapshot.writeSnapshot(capture);
+        assertFalse(new File(storageDirectory, "checkpoint.delta.2").exists());
+        assertFalse(new File(storageDirectory, "checkpoint.delta.3").exists());
+    }
+
+    @Test
+    public void testCompactionMergesDeltasIntoSnapshot() throws IOException {
+        final HashMapSnapshot<DummyRecord> snapshot = new HashMapSnapshot<>(storageDirectory, serdeFactory, 1, new RecoveryProgress(), true);
+        for (int i = 0; i < 25_000; i++) {
+            snapshot.update(Collections.singleton(createRecord(i, "a")));
+        }
+        snapshot.writeSnapshot(snapshot.prepareSnapshot(1L));
+
+        for (int checkpoint = 0; checkpoint < 5; checkpoint++) {
+            snapshot.update(Collections.singleton(createRecord(checkpoint, "b")));
+            snapshot.update(Collections.singleton(new DummyRecord(String.valueOf(100 + checkpoint), UpdateType.DELETE)));
+            snapshot.update(Collections.singleton(createRecord(30_000 + checkpoint, "a")));
+            snapshot.writeSnapshot(snapshot.prepareSnapshot(2L + checkpoint, Collections.singleton("swapFile-" + checkpoint)));
+        }
+
+        assertEquals(5, snapshot.compact());
+        assertEquals(0, storageDirectory.listFiles((dir, name) -> name.startsWith("checkpoint.delta.")).length);
+
+        // A partially written delta is discarded upon recovery.
+        Files.write(new File(storageDirectory, "checkpoint.delta.7.partial").toPath(), new byte[] {1, 2, 3});
+
+        final HashMapSnapshot<DummyRecord> recoverySnapshot = new HashMapSnapshot<>(storageDirectory, serdeFactory, 1, new RecoveryProgress(), true);
+        final SnapshotRecovery<DummyRecord> recovery = recoverySnapshot.recover();
+        assertEquals(6L, recovery.getMaxTransactionId());
+        assertEquals(Collections.singleton("swapFile-4"), recovery.getRecoveredSwapLocations());
+        assertFalse(new File(storageDirectory, "checkpoint.delta.7.partial").exists());
+
+        final Map<Object, DummyRecord> records = recovery.getRecords();
+        assertEquals(25_000, records.size());
+        for (int checkpoint = 0; checkpoint < 5; checkpoint++) {
+            assertEquals("b", records.get(String.valueOf(checkpoint)).getProperty("value"));
+            assertFalse(records.containsKey(String.valueOf(100 + checkpoint)));
+            assertTrue(records.containsKey(String.valueOf(30_000 + checkpoint)));
+        }
+        assertEquals("a", records.get("5").getProperty("value"));
+    }
+
+    @Test
+    public void testFullSnapshotWrittenAfterDeltaFails() throws IOException {
+        final HashMapSnapshot<DummyRecord> snapshot = new HashMapSnapshot<>(storageDirectory, serdeFactory, 1, new RecoveryProgress(), true);
+        for (int i = 0; i < 10; i++) {
+            snapshot.update(Collections.singleton(createRecord(i, "a")));
+        }
+        snapshot.writeSnapshot(snapshot.prepareSnapshot(10L));
+
+        // The first delta is never written, so the second delta cannot be applied and must not be written either.
+        snapshot.update(Collections.singleton(createRecord(1, "b")));
+        snapshot.prepareSnapshot(20L);
+        snapshot.update(Collections.singleton(createRecord(2, "b")));
+        try {
+            snapshot.writeSnapshot(snapshot.prepareSnapshot(30L));
+            Assert.fail("Expected IOException");
+        } catch (final IOException expected) {
+            // expected
+        }
+
+        final SnapshotCapture<DummyRecord> capture = snapshot.prepareSnapshot(40L);
+        assertEquals(10, capture.getRecords().size());
+        snapshot.writeSnapshot(capture);
+
+        final SnapshotRecovery<DummyRecord> recovery = new HashMapSnapshot<>(storageDirectory, serdeFactory, 1, new RecoveryProgress(), true).recover();
+        assertEquals(40L, recovery.getMaxTransactionId());
+        assertEquals("b", recovery.getRecords().get("1").getProperty("value"));
+        assertEquals("b", recovery.getRecords().get("2").getProperty("value"));
+    }
+
+    private DummyRecord createRecord(final int id, final String value) {
+        final DummyRecord record = new DummyRecord(String.valueOf(id), UpdateType.CREATE);
+        record.setProperty("value", value);
+        return record;
+    }
 }
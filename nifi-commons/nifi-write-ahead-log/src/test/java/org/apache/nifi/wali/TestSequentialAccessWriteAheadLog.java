@@ -151,6 +151,36 @@ public class TestSequentialAccessWriteAheadLog {
         assertEquals(new HashSet<>(records), new HashSet<>(recovered));
     }
 
+    @Test
+    public void testRecoveryProgress() throws IOException {
+        final SequentialAccessWriteAheadLog<DummyRecord> repo = createWriteRepo();
+
+        final List<DummyRecord> records = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            records.add(new DummyRecord(String.valueOf(i), UpdateType.CREATE));
+        }
+
+        repo.update(records, false);
+        repo.checkpoint();
+        repo.update(Collections.singleton(new DummyRecord("10", UpdateType.CREATE)), false);
+        repo.update(Collections.singleton(new DummyRecord("3", UpdateType.DELETE)), false);
+        repo.shutdown();
+
+        final SequentialAccessWriteAheadLog<DummyRecord> recoveryRepo = createRecoveryRepo();
+        final RecoveryProgress progress = recoveryRepo.getRecoveryProgress();
+        assertFalse(progress.isComplete());
+
+        final Collection<DummyRecord> recovered = recoveryRepo.recoverRecords();
+        assertEquals(10, recovered.size());
+
+        assertTrue(progress.isComplete());
+        assertEquals(10L, progress.getSnapshotRecordCount());
+        assertEquals(10L, progress.getSnapshotRecordsRecovered());
+        assertEquals(1L, progress.getJournalFileCount());
+        assertEquals(1L, progress.getJournalFilesRecovered());
+        assertEquals(2L, progress.getJournalUpdatesRecovered());
+    }
+
     @Test
     public void testRecoverWithMultipleCheckpointsBetweenJournalUpdate() throws IOException {
         final SequentialAccessWriteAheadLog<DummyRecord> repo = createWriteRepo();
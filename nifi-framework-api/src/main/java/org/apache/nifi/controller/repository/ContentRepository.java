@@ -173,6 +173,22 @@ public interface ContentRepository {
      */
     long importFrom(Path content, ContentClaim claim) throws IOException;
 
+    /**
+     * Imports content from the given path creating a new content object and
+     * claim within the repository. If the file is not kept, because it will be
+     * deleted once it has been imported, the repository takes ownership of the
+     * file and may use it in place rather than copying it.
+     *
+     * @return the size of the claim
+     * @param content to import from
+     * @param claim the claim to write imported content to
+     * @param keepSource whether the file is kept, and may be modified, after it has been imported
+     * @throws IOException if failure to read given content
+     */
+    default long importFrom(Path content, ContentClaim claim, boolean keepSource) throws IOException {
+        return importFrom(content, claim);
+    }
+
     /**
      * Imports content from the given stream creating a new content object and
      * claim within the repository.
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.StandardFlowFileRecord;
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates FlowFiles and attribute maps that resemble those found in a production flow: a handful of
+ * core attributes plus a configurable number of user attributes whose names are shared across FlowFiles
+ * (as they would be when produced by the same Processor) and whose values are of a configurable length.
+ */
+public class BenchmarkFlowFiles {
+    private static final AtomicLong idGenerator = new AtomicLong(0L);
+    private static final char[] VALUE_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+
+    private final int attributeCount;
+    private final int attributeValueLength;
+    private final Random random = new Random(42L);
+
+    public BenchmarkFlowFiles(final int attributeCount, final int attributeValueLength) {
+        this.attributeCount = attributeCount;
+        this.attributeValueLength = attributeValueLength;
+    }
+
+    public Map<String, String> createAttributes() {
+        final Map<String, String> attributes = new HashMap<>();
+        for (int i = 0; i < attributeCount; i++) {
+            attributes.put(attributeName(i), createValue());
+        }
+        return attributes;
+    }
+
+    public FlowFileRecord createFlowFile(final ContentClaim claim, final long size) {
+        final Map<String, String> attributes = createAttributes();
+        attributes.put(CoreAttributes.UUID.key(), UUID.randomUUID().toString());
+        attributes.put(CoreAttributes.FILENAME.key(), "file-" + idGenerator.get() + ".dat");
+        attributes.put(CoreAttributes.PATH.key(), "./");
+
+        return new StandardFlowFileRecord.Builder()
+            .id(idGenerator.getAndIncrement())
+            .addAttributes(attributes)
+            .contentClaim(claim)
+            .size(size)
+            .build();
+    }
+
+    public FlowFileRecord createFlowFile() {
+        return createFlowFile(null, 0L);
+    }
+
+    public String createValue() {
+        final char[] value = new char[attributeValueLength];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = VALUE_CHARACTERS[random.nextInt(VALUE_CHARACTERS.length)];
+        }
+        return new String(value);
+    }
+
+    public static String attributeName(final int index) {
+        return "benchmark.attribute." + index;
+    }
+
+    public static byte[] createContent(final int length) {
+        final byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+}
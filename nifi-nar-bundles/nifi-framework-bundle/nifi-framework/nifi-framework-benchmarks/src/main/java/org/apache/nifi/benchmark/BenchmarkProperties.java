@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.util.NiFiProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates the NiFiProperties and working directories that are needed in order to stand up the
+ * repositories outside of a running NiFi instance. Every call creates a fresh, empty directory beneath
+ * the directory given by the <code>nifi.benchmark.dir</code> system property (defaulting to the system
+ * temp directory) so that runs do not interfere with one another.
+ */
+public class BenchmarkProperties {
+    public static final String BENCHMARK_DIRECTORY = "nifi.benchmark.dir";
+
+    public static File createWorkingDirectory(final String name) throws IOException {
+        final String baseDirectory = System.getProperty(BENCHMARK_DIRECTORY, System.getProperty("java.io.tmpdir"));
+        final File parent = new File(baseDirectory);
+        Files.createDirectories(parent.toPath());
+        return Files.createTempDirectory(parent.toPath(), "nifi-benchmark-" + name + "-").toFile();
+    }
+
+    public static NiFiProperties createProperties(final File workingDirectory, final Map<String, String> overrides) {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(NiFiProperties.REPOSITORY_CONTENT_PREFIX + "default", new File(workingDirectory, "content_repository").getAbsolutePath());
+        properties.put(NiFiProperties.FLOWFILE_REPOSITORY_DIRECTORY, new File(workingDirectory, "flowfile_repository").getAbsolutePath());
+        properties.put(NiFiProperties.CONTENT_ARCHIVE_ENABLED, "false");
+        properties.put(NiFiProperties.CONTENT_ARCHIVE_MAX_USAGE_PERCENTAGE, "50%");
+        properties.put(NiFiProperties.CONTENT_ARCHIVE_MAX_RETENTION_PERIOD, "12 hours");
+        properties.put(NiFiProperties.MAX_APPENDABLE_CLAIM_SIZE, "1 MB");
+        properties.put(NiFiProperties.MAX_FLOWFILES_PER_CLAIM, "100");
+        properties.put(NiFiProperties.FLOWFILE_REPOSITORY_CHECKPOINT_INTERVAL, "2 mins");
+        properties.put("nifi.provenance.repository.buffer.size", "100000");
+        if (overrides != null) {
+            properties.putAll(overrides);
+        }
+
+        return NiFiProperties.createBasicNiFiProperties(null, properties);
+    }
+
+    public static void deleteRecursively(final File directory) throws IOException {
+        if (directory == null || !directory.exists()) {
+            return;
+        }
+
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
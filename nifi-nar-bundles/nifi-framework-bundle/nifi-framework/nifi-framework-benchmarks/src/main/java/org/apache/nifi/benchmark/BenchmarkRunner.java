@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * Entry point for the framework benchmarks. This is the Main-Class of the self-contained
+ * <code>benchmarks.jar</code> that is produced when this module is packaged with the <code>benchmarks</code> profile,
+ * so the benchmarks can be run on a developer box without a NiFi installation:
+ * </p>
+ *
+ * <pre>
+ * mvn clean package -Pbenchmarks -pl nifi-nar-bundles/nifi-framework-bundle/nifi-framework/nifi-framework-benchmarks -am -DskipTests
+ * java -jar nifi-nar-bundles/nifi-framework-bundle/nifi-framework/nifi-framework-benchmarks/target/benchmarks.jar [JMH options] [benchmark regex]
+ * </pre>
+ *
+ * <p>
+ * All of the standard JMH command-line options are supported (for example <code>-t 32</code> to run with 32 threads,
+ * <code>-p attributeCount=30</code> to override a parameter, or <code>-rf json</code> to write machine-readable results).
+ * In addition to throughput, the GC profiler is always enabled so that the allocation rate
+ * (<code>gc.alloc.rate.norm</code>, in bytes per operation) is reported alongside ops/sec.
+ * </p>
+ */
+public class BenchmarkRunner {
+
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        final ChainedOptionsBuilder optionsBuilder = new OptionsBuilder()
+            .parent(commandLineOptions)
+            .addProfiler(GCProfiler.class);
+
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            optionsBuilder.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+        }
+
+        new Runner(optionsBuilder.build()).run();
+    }
+}
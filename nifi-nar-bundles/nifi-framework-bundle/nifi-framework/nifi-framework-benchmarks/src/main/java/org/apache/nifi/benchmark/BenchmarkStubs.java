@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Creates stub implementations of framework interfaces for the benchmarks. Each stub answers the methods that it is given
+ * by name, regardless of the arguments, and returns an empty value for every other method, so that the benchmarks do not
+ * need a mocking library at runtime.
+ */
+public class BenchmarkStubs<T> {
+    private final Class<T> type;
+    private final Map<String, Function<Object[], Object>> answers = new HashMap<>();
+
+    private BenchmarkStubs(final Class<T> type) {
+        this.type = type;
+    }
+
+    public static <T> BenchmarkStubs<T> of(final Class<T> type) {
+        return new BenchmarkStubs<>(type);
+    }
+
+    public static <T> T empty(final Class<T> type) {
+        return of(type).build();
+    }
+
+    public BenchmarkStubs<T> returning(final String methodName, final Object value) {
+        return answering(methodName, args -> value);
+    }
+
+    public BenchmarkStubs<T> answering(final String methodName, final Function<Object[], Object> answer) {
+        answers.put(methodName, answer);
+        return this;
+    }
+
+    public T build() {
+        final Map<String, Function<Object[], Object>> stubbedAnswers = new HashMap<>(answers);
+        final Object stub = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+
+            final Function<Object[], Object> answer = stubbedAnswers.get(method.getName());
+            if (answer != null) {
+                return answer.apply(args);
+            }
+
+            return emptyValue(method.getReturnType());
+        });
+
+        return type.cast(stub);
+    }
+
+    private Object invokeObjectMethod(final Object proxy, final Method method, final Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "Stub " + type.getSimpleName();
+        }
+    }
+
+    private static Object emptyValue(final Class<?> returnType) {
+        if (returnType == boolean.class) {
+            return false;
+        }
+        if (returnType == int.class) {
+            return 0;
+        }
+        if (returnType == long.class) {
+            return 0L;
+        }
+        if (returnType == double.class) {
+            return 0D;
+        }
+        if (returnType == float.class) {
+            return 0F;
+        }
+        if (returnType == short.class) {
+            return (short) 0;
+        }
+        if (returnType == byte.class) {
+            return (byte) 0;
+        }
+        if (returnType == char.class) {
+            return (char) 0;
+        }
+        if (returnType == List.class || returnType == Collection.class) {
+            return Collections.emptyList();
+        }
+        if (returnType == Set.class) {
+            return Collections.emptySet();
+        }
+        if (returnType == Map.class) {
+            return Collections.emptyMap();
+        }
+        if (returnType == Optional.class) {
+            return Optional.empty();
+        }
+
+        return null;
+    }
+}
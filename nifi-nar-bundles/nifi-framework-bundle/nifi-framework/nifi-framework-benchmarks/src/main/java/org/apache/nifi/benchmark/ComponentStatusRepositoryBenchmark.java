@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.controller.status.ProcessGroupStatus;
+import org.apache.nifi.controller.status.ProcessorStatus;
+import org.apache.nifi.controller.status.history.ComponentStatusRepository;
+import org.apache.nifi.controller.status.history.EmbeddedComponentStatusRepository;
+import org.apache.nifi.controller.status.history.StatusHistory;
+import org.apache.nifi.controller.status.history.VolatileComponentStatusRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to retrieve a day of status history for a single Processor, from a repository that holds a day of
+ * status history, captured once a minute, for a flow with the given number of Processors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ComponentStatusRepositoryBenchmark {
+    private static final int CAPTURE_COUNT = 1440;
+    private static final long CAPTURE_MILLIS = TimeUnit.MINUTES.toMillis(1L);
+
+    @Param({"volatile", "embedded"})
+    private String implementation;
+
+    @Param({"500"})
+    private int processorCount;
+
+    private File workingDirectory;
+    private ComponentStatusRepository repository;
+    private Date start;
+    private Date end;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workingDirectory = BenchmarkProperties.createWorkingDirectory("status");
+
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(VolatileComponentStatusRepository.NUM_DATA_POINTS_PROPERTY, String.valueOf(CAPTURE_COUNT));
+        properties.put(EmbeddedComponentStatusRepository.DIRECTORY_PROPERTY, new File(workingDirectory, "status_repository").getAbsolutePath());
+        if ("volatile".equals(implementation)) {
+            repository = new VolatileComponentStatusRepository(BenchmarkProperties.createProperties(workingDirectory, properties));
+        } else {
+            repository = new EmbeddedComponentStatusRepository(BenchmarkProperties.createProperties(workingDirectory, properties));
+        }
+
+        final long endTime = System.currentTimeMillis();
+        final long startTime = endTime - CAPTURE_COUNT * CAPTURE_MILLIS;
+        for (int i = 0; i < CAPTURE_COUNT; i++) {
+            repository.capture(createRootGroupStatus(), Collections.emptyList(), new Date(startTime + (i + 1) * CAPTURE_MILLIS));
+        }
+
+        start = new Date(startTime);
+        end = new Date(endTime);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() throws IOException {
+        BenchmarkProperties.deleteRecursively(workingDirectory);
+    }
+
+    @Benchmark
+    public StatusHistory processorStatusHistory() {
+        final String processorId = "processor-" + ThreadLocalRandom.current().nextInt(processorCount);
+        return repository.getProcessorStatusHistory(processorId, start, end, CAPTURE_COUNT, true);
+    }
+
+    private ProcessGroupStatus createRootGroupStatus() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final List<ProcessorStatus> processorStatuses = new ArrayList<>(processorCount);
+        for (int i = 0; i < processorCount; i++) {
+            final ProcessorStatus processorStatus = new ProcessorStatus();
+            processorStatus.setId("processor-" + i);
+            processorStatus.setGroupId("root");
+            processorStatus.setName("Processor " + i);
+            processorStatus.setType("GenerateFlowFile");
+            processorStatus.setInputCount(random.nextInt(10_000));
+            processorStatus.setInputBytes(random.nextLong(10_000_000L));
+            processorStatus.setOutputCount(random.nextInt(10_000));
+            processorStatus.setOutputBytes(random.nextLong(10_000_000L));
+            processorStatus.setBytesRead(random.nextLong(10_000_000L));
+            processorStatus.setBytesWritten(random.nextLong(10_000_000L));
+            processorStatus.setInvocations(random.nextInt(1000));
+            processorStatus.setProcessingNanos(random.nextLong(1_000_000_000L));
+            processorStatuses.add(processorStatus);
+        }
+
+        final ProcessGroupStatus groupStatus = new ProcessGroupStatus();
+        groupStatus.setId("root");
+        groupStatus.setName("Root");
+        groupStatus.setInputCount(0);
+        groupStatus.setInputContentSize(0L);
+        groupStatus.setOutputCount(0);
+        groupStatus.setOutputContentSize(0L);
+        groupStatus.setQueuedCount(0);
+        groupStatus.setQueuedContentSize(0L);
+        groupStatus.setBytesRead(0L);
+        groupStatus.setBytesWritten(0L);
+        groupStatus.setProcessorStatus(processorStatuses);
+        return groupStatus;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.controller.repository.FileSystemRepository;
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+import org.apache.nifi.controller.repository.claim.StandardContentClaim;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the throughput of writing content to and reading content from the {@link FileSystemRepository}. Written claims
+ * are released as soon as they have been written, in the same way that the FlowFile Repository would release them once the
+ * FlowFiles that reference them have been removed, so that the repository's background cleanup is exercised as well and the
+ * benchmark can run for an arbitrary amount of time without filling the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class FileSystemRepositoryBenchmark {
+    private static final int READ_CLAIM_COUNT = 1000;
+
+    @Param({"100", "10240", "1048576"})
+    private int contentSize;
+
+    @Param({"false"})
+    private boolean alwaysSync;
+
+    @Param({"0", "1000"})
+    private int mappedReadCacheSize;
+
+    private File workingDirectory;
+    private StandardResourceClaimManager claimManager;
+    private FileSystemRepository repository;
+    private byte[] content;
+    private ContentClaim[] readClaims;
+    private final AtomicInteger readIndex = new AtomicInteger(0);
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workingDirectory = BenchmarkProperties.createWorkingDirectory("content");
+        claimManager = new StandardResourceClaimManager();
+        final Map<String, String> properties = new HashMap<>();
+        properties.put("nifi.content.repository.always.sync", String.valueOf(alwaysSync));
+        properties.put(FileSystemRepository.MAPPED_READ_CACHE_SIZE, String.valueOf(mappedReadCacheSize));
+        repository = new FileSystemRepository(BenchmarkProperties.createProperties(workingDirectory, properties));
+        repository.initialize(claimManager);
+
+        content = BenchmarkFlowFiles.createContent(contentSize);
+
+        readClaims = new ContentClaim[READ_CLAIM_COUNT];
+        for (int i = 0; i < READ_CLAIM_COUNT; i++) {
+            final ContentClaim claim = repository.create(false);
+            try (final OutputStream out = repository.write(claim)) {
+                out.write(content);
+            }
+            readClaims[i] = recovered(claim);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() throws IOException {
+        repository.shutdown();
+        BenchmarkProperties.deleteRecursively(workingDirectory);
+    }
+
+    @Benchmark
+    public ContentClaim write() throws IOException {
+        final ContentClaim claim = repository.create(false);
+        try (final OutputStream out = repository.write(claim)) {
+            out.write(content);
+        }
+
+        release(claim);
+        return claim;
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        final ContentClaim claim = readClaims[(readIndex.getAndIncrement() & Integer.MAX_VALUE) % READ_CLAIM_COUNT];
+        final byte[] buffer = new byte[8192];
+
+        long total = 0L;
+        try (final InputStream in = repository.read(claim)) {
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                total += len;
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Returns a copy of the given claim whose Resource Claim can no longer be written to, as is the case for the content of
+     * FlowFiles that have been recovered from the FlowFile Repository, or that were written some time ago.
+     */
+    private ContentClaim recovered(final ContentClaim claim) {
+        final ResourceClaim resourceClaim = claim.getResourceClaim();
+        final ResourceClaim frozen = claimManager.newResourceClaim(resourceClaim.getContainer(), resourceClaim.getSection(), resourceClaim.getId(), false, false);
+        final StandardContentClaim recovered = new StandardContentClaim(frozen, claim.getOffset());
+        recovered.setLength(claim.getLength());
+        return recovered;
+    }
+
+    private void release(final ContentClaim claim) {
+        final ResourceClaim resourceClaim = claim.getResourceClaim();
+        if (repository.decrementClaimantCount(claim) == 0 && !resourceClaim.isInUse()) {
+            claimManager.markDestructable(resourceClaim);
+        }
+    }
+}
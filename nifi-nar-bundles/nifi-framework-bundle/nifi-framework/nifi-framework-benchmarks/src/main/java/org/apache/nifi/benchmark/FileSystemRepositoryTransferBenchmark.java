@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.controller.repository.FileSystemRepository;
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of importing large files into and exporting large files from the {@link FileSystemRepository}, as
+ * is done by Processors such as GetFile, FetchFile and PutFile. The source file and the export destination are placed in the
+ * same working directory as the repository, so that importing by hard link is possible when it is enabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class FileSystemRepositoryTransferBenchmark {
+
+    @Param({"16777216", "268435456"})
+    private long fileSize;
+
+    @Param({"false", "true"})
+    private boolean linkOnImport;
+
+    private File workingDirectory;
+    private StandardResourceClaimManager claimManager;
+    private FileSystemRepository repository;
+    private Path sourceFile;
+    private Path exportFile;
+    private ContentClaim exportClaim;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workingDirectory = BenchmarkProperties.createWorkingDirectory("content-transfer");
+        claimManager = new StandardResourceClaimManager();
+        repository = new FileSystemRepository(BenchmarkProperties.createProperties(workingDirectory,
+            Collections.singletonMap(FileSystemRepository.LINK_ON_IMPORT, String.valueOf(linkOnImport))));
+        repository.initialize(claimManager);
+
+        sourceFile = new File(workingDirectory, "source.dat").toPath();
+        exportFile = new File(workingDirectory, "export.dat").toPath();
+
+        final byte[] content = BenchmarkFlowFiles.createContent(1024 * 1024);
+        try (final OutputStream out = Files.newOutputStream(sourceFile)) {
+            for (long written = 0; written < fileSize; written += content.length) {
+                out.write(content, 0, (int) Math.min(content.length, fileSize - written));
+            }
+        }
+
+        exportClaim = repository.create(false);
+        try (final OutputStream out = repository.write(exportClaim)) {
+            Files.copy(sourceFile, out);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() throws IOException {
+        repository.shutdown();
+        BenchmarkProperties.deleteRecursively(workingDirectory);
+    }
+
+    @Benchmark
+    public long importFile() throws IOException {
+        final ContentClaim claim = repository.create(false);
+        final long imported = repository.importFrom(sourceFile, claim);
+        release(claim);
+        return imported;
+    }
+
+    @Benchmark
+    public long exportFile() throws IOException {
+        return repository.exportTo(exportClaim, exportFile, false);
+    }
+
+    private void release(final ContentClaim claim) {
+        final ResourceClaim resourceClaim = claim.getResourceClaim();
+        if (repository.decrementClaimantCount(claim) == 0 && !resourceClaim.isInUse()) {
+            claimManager.markDestructable(resourceClaim);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.controller.queue.QueueSize;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileSwapManager;
+import org.apache.nifi.controller.repository.SwapContents;
+import org.apache.nifi.controller.repository.SwapManagerInitializationContext;
+import org.apache.nifi.controller.repository.SwapSummary;
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+import org.apache.nifi.controller.swap.StandardSwapContents;
+import org.apache.nifi.controller.swap.StandardSwapSummary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * A FlowFileSwapManager that keeps "swapped out" FlowFiles on heap. This allows the queue benchmarks to exercise
+ * the swap-out and swap-in code paths of the queue without also measuring disk I/O, which is covered separately.
+ */
+public class InMemorySwapManager implements FlowFileSwapManager {
+    private final Map<String, List<FlowFileRecord>> swappedOut = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize(final SwapManagerInitializationContext initializationContext) {
+    }
+
+    @Override
+    public String swapOut(final List<FlowFileRecord> flowFiles, final FlowFileQueue flowFileQueue, final String partitionName) {
+        final String location = UUID.randomUUID().toString() + "." + partitionName;
+        swappedOut.put(location, new ArrayList<>(flowFiles));
+        return location;
+    }
+
+    @Override
+    public SwapContents peek(final String swapLocation, final FlowFileQueue flowFileQueue) {
+        return new StandardSwapContents(getSwapSummary(swapLocation), swappedOut.getOrDefault(swapLocation, Collections.emptyList()));
+    }
+
+    @Override
+    public SwapContents swapIn(final String swapLocation, final FlowFileQueue flowFileQueue) throws IOException {
+        final SwapSummary summary = getSwapSummary(swapLocation);
+        final List<FlowFileRecord> flowFiles = swappedOut.remove(swapLocation);
+        if (flowFiles == null) {
+            throw new IOException("No Swap File exists with location " + swapLocation);
+        }
+
+        return new StandardSwapContents(summary, flowFiles);
+    }
+
+    @Override
+    public List<String> recoverSwapLocations(final FlowFileQueue flowFileQueue, final String partitionName) {
+        return swappedOut.keySet().stream()
+            .filter(location -> location.endsWith("." + partitionName))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Set<String> getSwappedPartitionNames(final FlowFileQueue queue) {
+        return swappedOut.keySet().stream()
+            .map(location -> location.substring(location.indexOf('.') + 1))
+            .collect(Collectors.toSet());
+    }
+
+    @Override
+    public String changePartitionName(final String swapLocation, final String newPartitionName) throws IOException {
+        final List<FlowFileRecord> flowFiles = swappedOut.remove(swapLocation);
+        if (flowFiles == null) {
+            throw new IOException("No Swap File exists with location " + swapLocation);
+        }
+
+        final String newLocation = swapLocation.substring(0, swapLocation.indexOf('.')) + "." + newPartitionName;
+        swappedOut.put(newLocation, flowFiles);
+        return newLocation;
+    }
+
+    @Override
+    public SwapSummary getSwapSummary(final String swapLocation) {
+        final List<FlowFileRecord> flowFiles = swappedOut.get(swapLocation);
+        if (flowFiles == null) {
+            return StandardSwapSummary.EMPTY_SUMMARY;
+        }
+
+        long bytes = 0L;
+        Long maxId = null;
+        final List<ResourceClaim> resourceClaims = new ArrayList<>();
+        for (final FlowFileRecord flowFile : flowFiles) {
+            bytes += flowFile.getSize();
+            if (maxId == null || flowFile.getId() > maxId) {
+                maxId = flowFile.getId();
+            }
+            if (flowFile.getContentClaim() != null) {
+                resourceClaims.add(flowFile.getContentClaim().getResourceClaim());
+            }
+        }
+
+        return new StandardSwapSummary(new QueueSize(flowFiles.size(), bytes), maxId, resourceClaims);
+    }
+
+    @Override
+    public void purge() {
+        swappedOut.clear();
+    }
+}
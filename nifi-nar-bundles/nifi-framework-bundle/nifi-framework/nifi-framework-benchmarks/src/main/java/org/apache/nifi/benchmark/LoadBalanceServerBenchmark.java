@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.controller.queue.clustered.server.ConnectionLoadBalanceServer;
+import org.apache.nifi.controller.queue.clustered.server.LoadBalanceProtocol;
+import org.apache.nifi.controller.repository.FileSystemRepository;
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.stream.io.StreamUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many load balancing transactions the {@link ConnectionLoadBalanceServer} completes for a handful of active peers while many
+ * other peers hold open, idle connections, as is the case for a node in a large cluster. Each transaction sends the content of a FlowFile,
+ * which the server streams into a {@link FileSystemRepository} before acknowledging it. All peers run locally, over the loopback interface.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+public class LoadBalanceServerBenchmark {
+    private static final int SERVER_THREADS = 8;
+
+    @Param({"0", "500"})
+    private int idlePeers;
+
+    @Param({"4096"})
+    private int contentSize;
+
+    private File workingDirectory;
+    private StandardResourceClaimManager claimManager;
+    private FileSystemRepository repository;
+    private ConnectionLoadBalanceServer server;
+    private final List<Socket> idleSockets = new ArrayList<>();
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workingDirectory = BenchmarkProperties.createWorkingDirectory("load-balance-server");
+        claimManager = new StandardResourceClaimManager();
+        repository = new FileSystemRepository(BenchmarkProperties.createProperties(workingDirectory, null));
+        repository.initialize(claimManager);
+        content = BenchmarkFlowFiles.createContent(contentSize);
+
+        server = new ConnectionLoadBalanceServer("localhost", 0, null, SERVER_THREADS, new ReceiveContentProtocol(), BenchmarkStubs.empty(EventReporter.class), 30000);
+        server.start();
+
+        for (int i = 0; i < idlePeers; i++) {
+            idleSockets.add(new Socket("localhost", server.getPort()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() throws IOException {
+        for (final Socket socket : idleSockets) {
+            socket.close();
+        }
+        idleSockets.clear();
+
+        server.stop();
+        repository.shutdown();
+        BenchmarkProperties.deleteRecursively(workingDirectory);
+    }
+
+    @State(Scope.Thread)
+    public static class Peer {
+        private Socket socket;
+        private DataOutputStream out;
+        private InputStream in;
+
+        @Setup(Level.Trial)
+        public void setup(final LoadBalanceServerBenchmark benchmark) throws IOException {
+            socket = new Socket("localhost", benchmark.server.getPort());
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = socket.getInputStream();
+        }
+
+        @TearDown(Level.Trial)
+        public void shutdown() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Benchmark
+    public int transaction(final Peer peer) throws IOException {
+        peer.out.writeInt(content.length);
+        peer.out.write(content);
+        peer.out.flush();
+        return peer.in.read();
+    }
+
+    /**
+     * Reads a length-prefixed payload into a new Content Claim and acknowledges it, which mirrors the work done per FlowFile by the
+     * load balance protocol without requiring a FlowController.
+     */
+    private class ReceiveContentProtocol implements LoadBalanceProtocol {
+        @Override
+        public void receiveFlowFiles(final Socket socket) throws IOException {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            final int length;
+            try {
+                length = in.readInt();
+            } catch (final EOFException eof) {
+                socket.close();
+                return;
+            }
+
+            final ContentClaim claim = repository.create(false);
+            try (final OutputStream out = repository.write(claim)) {
+                StreamUtils.copy(in, out, length);
+            }
+
+            final ResourceClaim resourceClaim = claim.getResourceClaim();
+            if (repository.decrementClaimantCount(claim) == 0 && !resourceClaim.isInUse()) {
+                claimManager.markDestructable(resourceClaim);
+            }
+
+            final OutputStream out = socket.getOutputStream();
+            out.write(1);
+            out.flush();
+        }
+    }
+}
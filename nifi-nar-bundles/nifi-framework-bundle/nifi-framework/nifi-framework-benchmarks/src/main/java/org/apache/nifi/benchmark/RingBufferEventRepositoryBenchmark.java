@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.controller.repository.FlowFileEventRepository;
+import org.apache.nifi.controller.repository.LatencyMetric;
+import org.apache.nifi.controller.repository.RepositoryStatusReport;
+import org.apache.nifi.controller.repository.metrics.RingBufferEventRepository;
+import org.apache.nifi.controller.repository.metrics.StandardFlowFileEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link RingBufferEventRepository#updateRepository(org.apache.nifi.controller.repository.FlowFileEvent, String)},
+ * which is called for every session commit, of {@link RingBufferEventRepository#recordLatency(String, LatencyMetric, long)}, which is called
+ * for every task, session commit and dequeued FlowFile, and of {@link RingBufferEventRepository#reportTransferEvents(long)}, which is called
+ * each time that the status of the flow is computed. The event that is added is created once, so the allocation rate that is reported for an update
+ * is that of the repository alone. Run with <code>-t &lt;threads&gt;</code> in order to measure contention between concurrent tasks of the
+ * same component.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class RingBufferEventRepositoryBenchmark {
+
+    @Param({"1", "1000"})
+    private int componentCount;
+
+    private FlowFileEventRepository repository;
+    private String[] componentIds;
+    private StandardFlowFileEvent event;
+    private int componentIndex = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        repository = new RingBufferEventRepository(5);
+
+        componentIds = new String[componentCount];
+        for (int i = 0; i < componentCount; i++) {
+            componentIds[i] = "component-" + i;
+        }
+
+        event = new StandardFlowFileEvent();
+        event.setFlowFilesIn(1);
+        event.setFlowFilesOut(1);
+        event.setContentSizeIn(1024L);
+        event.setContentSizeOut(1024L);
+        event.setBytesRead(1024L);
+        event.setBytesWritten(1024L);
+        event.setProcessingNanos(100_000L);
+        event.setAggregateLineageMillis(1000L);
+        event.setInvocations(1);
+
+        for (final String componentId : componentIds) {
+            repository.updateRepository(event, componentId);
+            repository.recordLatency(componentId, LatencyMetric.TASK_DURATION, 100_000L);
+        }
+    }
+
+    @Benchmark
+    public void updateRepository() throws IOException {
+        // The index is shared by all threads without synchronization; it only serves to spread the updates across the components.
+        final int index = componentIndex;
+        componentIndex = index + 1 == componentCount ? 0 : index + 1;
+
+        repository.updateRepository(event, componentIds[index]);
+    }
+
+    @Benchmark
+    public void recordLatency() {
+        final int index = componentIndex;
+        componentIndex = index + 1 == componentCount ? 0 : index + 1;
+
+        repository.recordLatency(componentIds[index], LatencyMetric.TASK_DURATION, 100_000L + index);
+    }
+
+    @Benchmark
+    public RepositoryStatusReport reportTransferEvents() {
+        return repository.reportTransferEvents(System.currentTimeMillis());
+    }
+}
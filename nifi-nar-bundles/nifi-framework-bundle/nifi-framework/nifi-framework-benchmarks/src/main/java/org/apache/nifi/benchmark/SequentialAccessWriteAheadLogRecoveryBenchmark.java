@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.controller.repository.RepositoryRecord;
+import org.apache.nifi.controller.repository.StandardRepositoryRecord;
+import org.apache.nifi.controller.repository.StandardRepositoryRecordSerdeFactory;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.apache.nifi.wali.SequentialAccessWriteAheadLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wali.SyncListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes {@link SequentialAccessWriteAheadLog#recoverRecords()} to restore a FlowFile Repository that
+ * holds a given number of FlowFiles in its snapshot, using a given number of recovery threads.
+ * Each operation recovers the repository from scratch, as happens when NiFi is restarted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class SequentialAccessWriteAheadLogRecoveryBenchmark {
+
+    @Param({"500000"})
+    private int flowFileCount;
+
+    @Param({"10"})
+    private int attributeCount;
+
+    @Param({"32"})
+    private int attributeValueLength;
+
+    @Param({"1", "4"})
+    private int recoveryThreads;
+
+    private File workingDirectory;
+    private StandardRepositoryRecordSerdeFactory serdeFactory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workingDirectory = BenchmarkProperties.createWorkingDirectory("wal-recovery");
+
+        final FlowFileQueue queue = StandardFlowFileQueueBenchmark.createQueue(20000);
+        serdeFactory = new StandardRepositoryRecordSerdeFactory(new StandardResourceClaimManager());
+        serdeFactory.setQueueMap(Collections.singletonMap(queue.getIdentifier(), queue));
+
+        final SequentialAccessWriteAheadLog<RepositoryRecord> wal = createWriteAheadLog();
+        wal.recoverRecords();
+
+        final BenchmarkFlowFiles flowFiles = new BenchmarkFlowFiles(attributeCount, attributeValueLength);
+        final List<RepositoryRecord> records = new ArrayList<>();
+        for (int i = 0; i < flowFileCount; i++) {
+            final StandardRepositoryRecord record = new StandardRepositoryRecord(queue);
+            record.setWorking(flowFiles.createFlowFile());
+            record.setDestination(queue);
+            records.add(record);
+
+            if (records.size() >= 1000) {
+                wal.update(records, false);
+                records.clear();
+            }
+        }
+
+        wal.update(records, false);
+        wal.checkpoint();
+        wal.shutdown();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() throws IOException {
+        BenchmarkProperties.deleteRecursively(workingDirectory);
+    }
+
+    private SequentialAccessWriteAheadLog<RepositoryRecord> createWriteAheadLog() throws IOException {
+        return new SequentialAccessWriteAheadLog<>(workingDirectory, serdeFactory, SyncListener.NOP_SYNC_LISTENER, recoveryThreads);
+    }
+
+    @Benchmark
+    public Collection<RepositoryRecord> recoverRecords() throws IOException {
+        // Recovery ends by writing a new snapshot of the same records, so every operation recovers the same repository.
+        final SequentialAccessWriteAheadLog<RepositoryRecord> wal = createWriteAheadLog();
+        try {
+            return wal.recoverRecords();
+        } finally {
+            wal.shutdown();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.controller.ProcessScheduler;
+import org.apache.nifi.controller.queue.NopConnectionEventListener;
+import org.apache.nifi.controller.queue.StandardFlowFileQueue;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileRepository;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.apache.nifi.provenance.ProvenanceEventRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link StandardFlowFileQueue#put(FlowFileRecord)}, {@link StandardFlowFileQueue#poll(Set)} and
+ * {@link StandardFlowFileQueue#acknowledge(FlowFileRecord)} when the queue is already holding a given number of FlowFiles.
+ * Depths that are larger than the swap threshold cause FlowFiles to be swapped out and back in as the benchmark runs.
+ * Run with <code>-t &lt;threads&gt;</code> in order to measure contention between concurrent tasks.
+ * The <code>ordering</code> parameter compares the lock-free FIFO mode that is used when a connection has no prioritizers against
+ * the lock-based priority queue, which is used whenever a prioritizer is configured. The prioritizer that is configured for the latter
+ * considers all FlowFiles equal, so that FlowFiles are ordered just as they would be without a prioritizer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class StandardFlowFileQueueBenchmark {
+
+    @Param({"0", "10000", "100000"})
+    private int queueDepth;
+
+    @Param({"20000"})
+    private int swapThreshold;
+
+    @Param({"10", "30"})
+    private int attributeCount;
+
+    @Param({"32"})
+    private int attributeValueLength;
+
+    @Param({"fifo", "prioritized"})
+    private String ordering;
+
+    private StandardFlowFileQueue queue;
+    private BenchmarkFlowFiles flowFiles;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        flowFiles = new BenchmarkFlowFiles(attributeCount, attributeValueLength);
+        queue = createQueue(swapThreshold);
+        if ("prioritized".equals(ordering)) {
+            queue.setPriorities(Collections.singletonList((flowFile1, flowFile2) -> 0));
+        }
+
+        for (int i = 0; i < queueDepth; i++) {
+            queue.put(flowFiles.createFlowFile());
+        }
+    }
+
+    static StandardFlowFileQueue createQueue(final int swapThreshold) {
+        final ProcessScheduler scheduler = BenchmarkStubs.empty(ProcessScheduler.class);
+        final FlowFileRepository flowFileRepository = BenchmarkStubs.empty(FlowFileRepository.class);
+        final ProvenanceEventRepository provenanceRepository = BenchmarkStubs.empty(ProvenanceEventRepository.class);
+
+        return new StandardFlowFileQueue("benchmark-queue", new NopConnectionEventListener(), flowFileRepository, provenanceRepository,
+            new StandardResourceClaimManager(), scheduler, new InMemorySwapManager(), null, swapThreshold, 0L, "0 B");
+    }
+
+    @State(Scope.Thread)
+    public static class TaskState {
+        private final Set<FlowFileRecord> expired = new HashSet<>();
+        private final List<FlowFileRecord> batch = new ArrayList<>();
+        private FlowFileRecord next;
+
+        @Setup(Level.Trial)
+        public void setup(final StandardFlowFileQueueBenchmark benchmark) {
+            next = benchmark.flowFiles.createFlowFile();
+            for (int i = 0; i < 100; i++) {
+                batch.add(benchmark.flowFiles.createFlowFile());
+            }
+        }
+    }
+
+    @Benchmark
+    public FlowFileRecord putPollAcknowledge(final TaskState state) {
+        queue.put(state.next);
+
+        state.expired.clear();
+        final FlowFileRecord polled = queue.poll(state.expired);
+        if (polled == null) {
+            // Another thread took the FlowFile that we queued, so we need a new one for the next invocation.
+            state.next = flowFiles.createFlowFile();
+        } else {
+            queue.acknowledge(polled);
+            state.next = polled;
+        }
+
+        return polled;
+    }
+
+    @Benchmark
+    public List<FlowFileRecord> putAllPollBatchAcknowledge(final TaskState state) {
+        final int batchSize = state.batch.size();
+        queue.putAll(state.batch);
+
+        state.expired.clear();
+        final List<FlowFileRecord> polled = queue.poll(batchSize, state.expired);
+        queue.acknowledge(polled);
+
+        // Keep the batch size constant, even if other threads polled some of the FlowFiles that we queued.
+        state.batch.clear();
+        state.batch.addAll(polled);
+        while (state.batch.size() < batchSize) {
+            state.batch.add(flowFiles.createFlowFile());
+        }
+
+        return polled;
+    }
+}
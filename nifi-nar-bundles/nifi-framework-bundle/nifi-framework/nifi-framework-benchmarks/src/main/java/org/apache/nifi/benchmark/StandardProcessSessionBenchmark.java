@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.ConnectableType;
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.queue.StandardFlowFileQueue;
+import org.apache.nifi.controller.repository.FileSystemRepository;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.RepositoryContext;
+import org.apache.nifi.controller.repository.StandardCounterRepository;
+import org.apache.nifi.controller.repository.StandardProcessSession;
+import org.apache.nifi.controller.repository.WriteAheadFlowFileRepository;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.apache.nifi.controller.repository.metrics.RingBufferEventRepository;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.groups.ProcessGroup;
+import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.provenance.VolatileProvenanceRepository;
+import org.apache.nifi.util.NiFiProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Measures the throughput of a {@link StandardProcessSession} that pulls a batch of FlowFiles, updates them and commits the session,
+ * using the real FlowFile, Content, Provenance and FlowFile Event repositories. The component that owns the session is a self-loop,
+ * so each FlowFile is transferred back to the queue that it came from and the number of FlowFiles in the flow stays constant.
+ * </p>
+ *
+ * <p>
+ * Each benchmark operation is a single session, so the ops/sec that is reported is the number of session commits per second.
+ * Multiply by the batch size in order to obtain the number of FlowFiles per second.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class StandardProcessSessionBenchmark {
+    private static final Relationship REL_SUCCESS = new Relationship.Builder().name("success").build();
+
+    @Param({"10000"})
+    private int flowFileCount;
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    @Param({"10", "30"})
+    private int attributeCount;
+
+    @Param({"32"})
+    private int attributeValueLength;
+
+    @Param({"1024"})
+    private int contentSize;
+
+    private File workingDirectory;
+    private FileSystemRepository contentRepository;
+    private WriteAheadFlowFileRepository flowFileRepository;
+    private RingBufferEventRepository flowFileEventRepository;
+    private RepositoryContext repositoryContext;
+    private byte[] content;
+    private String updatedValue;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workingDirectory = BenchmarkProperties.createWorkingDirectory("session");
+        final NiFiProperties properties = BenchmarkProperties.createProperties(workingDirectory, null);
+
+        final StandardResourceClaimManager claimManager = new StandardResourceClaimManager();
+        contentRepository = new FileSystemRepository(properties);
+        contentRepository.initialize(claimManager);
+
+        final StandardFlowFileQueue queue = StandardFlowFileQueueBenchmark.createQueue(20000);
+        flowFileRepository = new WriteAheadFlowFileRepository(properties);
+        flowFileRepository.initialize(claimManager);
+        flowFileRepository.loadFlowFiles(() -> Collections.singleton(queue));
+
+        flowFileEventRepository = new RingBufferEventRepository(5);
+
+        final Connectable connectable = createSelfLoop(queue);
+        repositoryContext = new RepositoryContext(connectable, new AtomicLong(0L), contentRepository, flowFileRepository, flowFileEventRepository,
+            new StandardCounterRepository(), new VolatileProvenanceRepository(properties));
+
+        final BenchmarkFlowFiles flowFiles = new BenchmarkFlowFiles(attributeCount, attributeValueLength);
+        content = BenchmarkFlowFiles.createContent(contentSize);
+        updatedValue = flowFiles.createValue();
+
+        StandardProcessSession session = createSession();
+        for (int i = 0; i < flowFileCount; i++) {
+            FlowFile flowFile = session.create();
+            flowFile = session.putAllAttributes(flowFile, flowFiles.createAttributes());
+            flowFile = session.write(flowFile, out -> out.write(content));
+            session.transfer(flowFile, REL_SUCCESS);
+
+            if (i % 1000 == 999) {
+                session.commit();
+                session = createSession();
+            }
+        }
+        session.commit();
+    }
+
+    private Connectable createSelfLoop(final StandardFlowFileQueue queue) {
+        final ProcessGroup processGroup = BenchmarkStubs.of(ProcessGroup.class)
+            .returning("getIdentifier", "benchmark-group")
+            .build();
+
+        final Connectable[] self = new Connectable[1];
+        final Connection connection = BenchmarkStubs.of(Connection.class)
+            .returning("getIdentifier", "benchmark-connection")
+            .returning("getFlowFileQueue", queue)
+            .answering("getSource", args -> self[0])
+            .answering("getDestination", args -> self[0])
+            .answering("poll", args -> queue.poll((Set<FlowFileRecord>) args[0]))
+            .build();
+
+        final Connectable connectable = BenchmarkStubs.of(Connectable.class)
+            .returning("getIdentifier", "benchmark-component")
+            .returning("getName", "Benchmark Component")
+            .returning("getComponentType", "Benchmark")
+            .returning("getConnectableType", ConnectableType.INPUT_PORT)
+            .returning("getProcessGroup", processGroup)
+            .returning("hasIncomingConnection", true)
+            .returning("getIncomingConnections", Collections.singletonList(connection))
+            .returning("getConnections", Collections.singleton(connection))
+            .returning("getRelationships", Collections.singleton(REL_SUCCESS))
+            .build();
+        self[0] = connectable;
+
+        return connectable;
+    }
+
+    private StandardProcessSession createSession() {
+        return new StandardProcessSession(repositoryContext, () -> false);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() throws IOException {
+        flowFileRepository.close();
+        contentRepository.shutdown();
+        flowFileEventRepository.close();
+        BenchmarkProperties.deleteRecursively(workingDirectory);
+    }
+
+    @Benchmark
+    public int updateAttributesAndCommit() {
+        final StandardProcessSession session = createSession();
+        final List<FlowFile> flowFiles = session.get(batchSize);
+        for (FlowFile flowFile : flowFiles) {
+            flowFile = session.putAttribute(flowFile, BenchmarkFlowFiles.attributeName(0), updatedValue);
+            session.transfer(flowFile, REL_SUCCESS);
+        }
+
+        session.commit();
+        return flowFiles.size();
+    }
+
+    @Benchmark
+    public int writeContentAndCommit() {
+        final StandardProcessSession session = createSession();
+        final List<FlowFile> flowFiles = session.get(batchSize);
+        for (FlowFile flowFile : flowFiles) {
+            flowFile = session.write(flowFile, out -> out.write(content));
+            session.transfer(flowFile, REL_SUCCESS);
+        }
+
+        session.commit();
+        return flowFiles.size();
+    }
+
+    @Benchmark
+    public int cloneAndRemove() {
+        final StandardProcessSession session = createSession();
+        final List<FlowFile> flowFiles = session.get(batchSize);
+        for (final FlowFile flowFile : flowFiles) {
+            final Map<String, String> attributes = Collections.singletonMap(BenchmarkFlowFiles.attributeName(0), updatedValue);
+            final FlowFile clone = session.putAllAttributes(session.clone(flowFile), attributes);
+            session.transfer(clone, REL_SUCCESS);
+            session.remove(flowFile);
+        }
+
+        session.commit();
+        return flowFiles.size();
+    }
+}
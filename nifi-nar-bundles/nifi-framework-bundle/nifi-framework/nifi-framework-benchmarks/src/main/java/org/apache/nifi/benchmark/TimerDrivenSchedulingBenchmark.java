@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.engine.WorkStealingFlowEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures how long it takes a large flow, in which only a few of the components have work to do, to complete a fixed number of
+ * invocations of the components that have work. Each component is scheduled to run continuously, as a Processor with a run schedule
+ * of 0 seconds is, and is scheduled the way the Timer-Driven Scheduling Agent schedules it on the given engine:
+ * <ul>
+ *   <li><code>FlowEngine</code>: each component is a fixed-delay task on a shared ScheduledThreadPoolExecutor, and a component
+ *   that has no work to do is rescheduled to run again once the bored yield duration has elapsed.</li>
+ *   <li><code>WorkStealingFlowEngine</code>: each component resubmits itself to a work-stealing pool while it has work to do,
+ *   and a component that has no work to do waits to be notified that work is available.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TimerDrivenSchedulingBenchmark {
+
+    // The smallest scheduling period that a Processor Node reports, which is the period of a Processor scheduled to run continuously
+    private static final long MINIMUM_SCHEDULING_NANOS = 1L;
+    private static final long BORED_YIELD_NANOS = TimeUnit.MILLISECONDS.toNanos(10L);
+    private static final long IDLE_WAKEUP_NANOS = TimeUnit.SECONDS.toNanos(1L);
+
+    @Param({"3000"})
+    private int componentCount;
+
+    @Param({"30"})
+    private int busyComponentCount;
+
+    @Param({"8"})
+    private int threads;
+
+    @Param({"FlowEngine", "WorkStealingFlowEngine"})
+    private String engine;
+
+    @Param({"200000"})
+    private long invocations;
+
+    private final AtomicLong remaining = new AtomicLong();
+    private volatile CountDownLatch completed;
+    private volatile boolean running;
+
+    private FlowEngine flowEngine;
+    private WorkStealingFlowEngine workStealingEngine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        running = true;
+        remaining.set(Long.MAX_VALUE);
+        completed = new CountDownLatch(1);
+
+        if ("FlowEngine".equals(engine)) {
+            flowEngine = new FlowEngine(threads, "Benchmark Timer-Driven Process", true);
+            for (int i = 0; i < componentCount; i++) {
+                scheduleOnFlowEngine(i < busyComponentCount);
+            }
+        } else {
+            workStealingEngine = new WorkStealingFlowEngine(threads, "Benchmark Timer-Driven Process", true);
+            for (int i = 0; i < componentCount; i++) {
+                workStealingEngine.execute(new WorkStealingComponent(i < busyComponentCount));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        running = false;
+        if (flowEngine != null) {
+            flowEngine.shutdownNow();
+        }
+        if (workStealingEngine != null) {
+            workStealingEngine.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public void completeInvocations() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        completed = latch;
+        remaining.set(invocations);
+        latch.await();
+    }
+
+    /**
+     * Performs the work of a component that has work to do.
+     */
+    private void trigger() {
+        Blackhole.consumeCPU(500);
+        if (remaining.decrementAndGet() == 0L) {
+            completed.countDown();
+        }
+    }
+
+    private void scheduleOnFlowEngine(final boolean busy) {
+        final AtomicReference<ScheduledFuture<?>> futureRef = new AtomicReference<>();
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (busy) {
+                    trigger();
+                    return;
+                }
+
+                // As the Timer-Driven Scheduling Agent did, cancel the future of a component with no work and schedule it again after the bored yield.
+                final ScheduledFuture<?> future = futureRef.get();
+                if (future != null && running && future.cancel(false)) {
+                    futureRef.set(flowEngine.scheduleWithFixedDelay(this, BORED_YIELD_NANOS, MINIMUM_SCHEDULING_NANOS, TimeUnit.NANOSECONDS));
+                }
+            }
+        };
+
+        futureRef.set(flowEngine.scheduleWithFixedDelay(task, 0L, MINIMUM_SCHEDULING_NANOS, TimeUnit.NANOSECONDS));
+    }
+
+    private class WorkStealingComponent implements Runnable {
+        private final boolean busy;
+
+        public WorkStealingComponent(final boolean busy) {
+            this.busy = busy;
+        }
+
+        @Override
+        public void run() {
+            if (!running) {
+                return;
+            }
+
+            if (busy) {
+                trigger();
+                workStealingEngine.execute(this);
+            } else {
+                // A component with no work waits for an event; as no events occur in this flow, it runs again only when the idle wakeup elapses.
+                workStealingEngine.schedule(this, IDLE_WAKEUP_NANOS, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmark;
+
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.RepositoryRecord;
+import org.apache.nifi.controller.repository.StandardFlowFileRecord;
+import org.apache.nifi.controller.repository.StandardRepositoryRecord;
+import org.apache.nifi.controller.repository.WriteAheadFlowFileRepository;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the throughput of {@link WriteAheadFlowFileRepository#updateRepository(java.util.Collection)} for a repository that
+ * already holds a given number of FlowFiles. Each operation updates one attribute on each FlowFile in a batch, which is what
+ * the repository sees when a Processor modifies and transfers a batch of FlowFiles within a single session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class WriteAheadFlowFileRepositoryBenchmark {
+
+    @Param({"100000"})
+    private int flowFileCount;
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    @Param({"10", "30"})
+    private int attributeCount;
+
+    @Param({"32"})
+    private int attributeValueLength;
+
+    @Param({"false"})
+    private boolean alwaysSync;
+
+    private File workingDirectory;
+    private WriteAheadFlowFileRepository repository;
+    private FlowFileQueue queue;
+    private BenchmarkFlowFiles flowFiles;
+    private FlowFileRecord[] repositoryFlowFiles;
+    private final AtomicInteger threadCounter = new AtomicInteger(0);
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workingDirectory = BenchmarkProperties.createWorkingDirectory("flowfile");
+        repository = new WriteAheadFlowFileRepository(BenchmarkProperties.createProperties(workingDirectory,
+            Collections.singletonMap("nifi.flowfile.repository.always.sync", String.valueOf(alwaysSync))));
+        repository.initialize(new StandardResourceClaimManager());
+
+        queue = StandardFlowFileQueueBenchmark.createQueue(20000);
+        repository.loadFlowFiles(() -> Collections.singleton(queue));
+
+        flowFiles = new BenchmarkFlowFiles(attributeCount, attributeValueLength);
+        repositoryFlowFiles = new FlowFileRecord[flowFileCount];
+
+        final List<RepositoryRecord> records = new ArrayList<>();
+        for (int i = 0; i < flowFileCount; i++) {
+            final FlowFileRecord flowFile = flowFiles.createFlowFile();
+            repositoryFlowFiles[i] = flowFile;
+
+            final StandardRepositoryRecord record = new StandardRepositoryRecord(queue);
+            record.setWorking(flowFile);
+            record.setDestination(queue);
+            records.add(record);
+
+            if (records.size() >= 1000) {
+                repository.updateRepository(records);
+                records.clear();
+            }
+        }
+
+        repository.updateRepository(records);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() throws IOException {
+        repository.close();
+        BenchmarkProperties.deleteRecursively(workingDirectory);
+    }
+
+    @State(Scope.Thread)
+    public static class TaskState {
+        private final List<RepositoryRecord> records = new ArrayList<>();
+        private String updatedValue;
+        private int index;
+
+        @Setup(Level.Trial)
+        public void setup(final WriteAheadFlowFileRepositoryBenchmark benchmark) {
+            // Start each thread at a different offset so that concurrent threads generally update different FlowFiles.
+            index = benchmark.threadCounter.getAndIncrement() * 7919;
+            updatedValue = benchmark.flowFiles.createValue();
+        }
+    }
+
+    @Benchmark
+    public void updateRepository(final TaskState state) throws IOException {
+        final List<RepositoryRecord> records = state.records;
+        records.clear();
+
+        for (int i = 0; i < batchSize; i++) {
+            final int flowFileIndex = (state.index++ & Integer.MAX_VALUE) % flowFileCount;
+            final FlowFileRecord original = repositoryFlowFiles[flowFileIndex];
+            final FlowFileRecord updated = new StandardFlowFileRecord.Builder()
+                .fromFlowFile(original)
+                .addAttribute(BenchmarkFlowFiles.attributeName(0), state.updatedValue)
+                .build();
+
+            final StandardRepositoryRecord record = new StandardRepositoryRecord(queue, original);
+            record.setWorking(updated, BenchmarkFlowFiles.attributeName(0), state.updatedValue);
+            record.setDestination(queue);
+            records.add(record);
+        }
+
+        repository.updateRepository(records);
+    }
+}
@@ -21,6 +21,7 @@ import java.io.OutputStream;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.nifi.connectable.Connectable;
 import org.apache.nifi.connectable.Funnel;
@@ -169,6 +170,21 @@ public interface ProcessScheduler {
      */
     int getActiveThreadCount(Object scheduled);
 
+    /**
+     * @param scheduled scheduled component
+     * @return the number of concurrent tasks that autotuning currently allows
+     * the given component, or <code>0</code> if the component is not autotuned
+     */
+    int getAutoTunedConcurrentTasks(Object scheduled);
+
+    /**
+     * @param scheduled scheduled component
+     * @param timeUnit the unit of the returned value
+     * @return the run duration that autotuning has currently chosen for the
+     * given component, or <code>0</code> if the component is not autotuned
+     */
+    long getAutoTunedRunDuration(Object scheduled, TimeUnit timeUnit);
+
     /**
      * @param scheduled component to test
      * @return a boolean indicating whether or not the given object is scheduled
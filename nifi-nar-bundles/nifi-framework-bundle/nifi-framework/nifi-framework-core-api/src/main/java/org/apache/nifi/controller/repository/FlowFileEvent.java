@@ -16,6 +16,8 @@
  */
 package org.apache.nifi.controller.repository;
 
+import org.apache.nifi.controller.status.LatencyStatus;
+
 import java.util.Map;
 
 public interface FlowFileEvent {
@@ -54,4 +56,12 @@ public interface FlowFileEvent {
 
     Map<String, Long> getCounters();
 
+    /**
+     * @param metric the latency metric of interest
+     * @return the distribution of the latencies that were recorded for the given metric, or {@link LatencyStatus#EMPTY} if none were recorded
+     */
+    default LatencyStatus getLatency(LatencyMetric metric) {
+        return LatencyStatus.EMPTY;
+    }
+
 }
@@ -30,6 +30,18 @@ public interface FlowFileEventRepository extends Closeable {
      */
     void updateRepository(FlowFileEvent event, String componentIdentifier) throws IOException;
 
+    /**
+     * Records a single latency for the given component, so that the distribution of the latencies can be reported along with the
+     * component's events. Implementations must keep this cheap enough to be called for every task and every FlowFile. The default
+     * implementation does not record anything.
+     *
+     * @param componentIdentifier the ID of the component that the latency belongs to
+     * @param metric the metric that the latency is a sample of
+     * @param nanos the latency, in nanoseconds
+     */
+    default void recordLatency(String componentIdentifier, LatencyMetric metric, long nanos) {
+    }
+
     /**
      * @param now the current time
      * @return a report of processing activity since the given time
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+/**
+ * The latencies that are recorded in the {@link FlowFileEventRepository} for each component, in addition to the sums that make up a {@link FlowFileEvent}
+ */
+public enum LatencyMetric {
+    /**
+     * The time taken by each of a component's tasks, including the commit of its session
+     */
+    TASK_DURATION,
+
+    /**
+     * The time taken to commit each of a component's sessions
+     */
+    SESSION_COMMIT,
+
+    /**
+     * The time that each FlowFile spent in a Connection's queue before it was pulled from the queue
+     */
+    QUEUED_DURATION;
+}
@@ -36,6 +36,8 @@ public class LifecycleState {
     private final AtomicBoolean mustCallOnStoppedMethods = new AtomicBoolean(false);
     private volatile long lastStopTime = -1;
     private volatile boolean terminated = false;
+    private volatile int autoTunedConcurrentTasks = 0;
+    private volatile long autoTunedRunDurationNanos = 0L;
     private final Set<ActiveProcessSessionFactory> activeProcessSessionFactories = Collections.synchronizedSet(new HashSet<>());
 
     public synchronized int incrementActiveThreadCount(final ActiveProcessSessionFactory sessionFactory) {
@@ -83,6 +85,25 @@ public class LifecycleState {
         return lastStopTime;
     }
 
+    /**
+     * @return the number of concurrent tasks that autotuning currently allows the component, or <code>0</code> if the component is not autotuned
+     */
+    public int getAutoTunedConcurrentTasks() {
+        return autoTunedConcurrentTasks;
+    }
+
+    /**
+     * @return the run duration, in nanoseconds, that autotuning has currently chosen for the component, or <code>0</code> if the component is not autotuned
+     */
+    public long getAutoTunedRunDurationNanos() {
+        return autoTunedRunDurationNanos;
+    }
+
+    public void setAutoTuning(final int concurrentTasks, final long runDurationNanos) {
+        this.autoTunedConcurrentTasks = concurrentTasks;
+        this.autoTunedRunDurationNanos = runDurationNanos;
+    }
+
     @Override
     public String toString() {
         return new StringBuilder().append("activeThreads:").append(activeThreadCount.get()).append("; ")
@@ -151,18 +151,26 @@ public final class StandardConnection implements Connection, ConnectionEventList
 
     @Override
     public void triggerDestinationEvent() {
-        if (getDestination().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
+        if (isEventNotified(getDestination())) {
             scheduler.registerEvent(getDestination());
         }
     }
 
     @Override
     public void triggerSourceEvent() {
-        if (getSource().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
+        if (isEventNotified(getSource())) {
             scheduler.registerEvent(getSource());
         }
     }
 
+    /**
+     * Event-Driven components are run only when notified of an event, and Timer-Driven components that have no work to do wait for an
+     * event before running again, so both must be notified; CRON-Driven components run only according to their schedule.
+     */
+    private static boolean isEventNotified(final Connectable connectable) {
+        return connectable.getSchedulingStrategy() != SchedulingStrategy.CRON_DRIVEN;
+    }
+
     @Override
     public Authorizable getSourceAuthorizable() {
         final Connectable sourceConnectable = getSource();
@@ -21,91 +21,180 @@ import org.apache.nifi.connectable.Connection;
 import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.util.Connectables;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * Hands the Event-Driven components that have work to do to the threads that run them, without any lock: an event for a component
+ * increments the event count of its Worker and, unless the Worker is already waiting to be polled, places the Worker onto a lock-free
+ * ready queue. Each Worker carries its own flag indicating whether or not it is queued, so a component is queued at most once no matter
+ * how many events occur, and events for different components never contend with one another.
+ * </p>
+ *
+ * <p>
+ * A Worker that is polled but cannot run yet, for instance because it has yielded or its destination is full, is set aside until
+ * the next event occurs or a polling thread times out, at which point it is checked again. Threads that find nothing to do park
+ * until an event wakes one of them.
+ * </p>
+ */
 public class EventDrivenWorkerQueue implements WorkerQueue {
 
-    private final Object workMonitor = new Object();
+    private final ConcurrentMap<Connectable, Worker> workerMap = new ConcurrentHashMap<>();
+    private final Queue<Worker> readyQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Worker> deferredQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Thread> idleThreads = new ConcurrentLinkedQueue<>();
+    private final ProcessScheduler scheduler;
 
-    private final Map<Connectable, Worker> workerMap = new HashMap<>();   // protected by synchronizing on workMonitor
-    private final WorkerReadyQueue workerQueue;
+    private volatile boolean clustered;
+    private volatile boolean primary;
 
     public EventDrivenWorkerQueue(final boolean clustered, final boolean primary, final ProcessScheduler scheduler) {
-        workerQueue = new WorkerReadyQueue(scheduler);
-        workerQueue.setClustered(clustered);
-        workerQueue.setPrimary(primary);
+        this.scheduler = scheduler;
+        this.clustered = clustered;
+        this.primary = primary;
     }
 
     @Override
     public void setClustered(final boolean clustered) {
-        workerQueue.setClustered(clustered);
+        this.clustered = clustered;
     }
 
     @Override
     public void setPrimary(final boolean primary) {
-        workerQueue.setPrimary(primary);
+        this.primary = primary;
     }
 
     @Override
     public Worker poll(final long timeout, final TimeUnit timeUnit) {
-        final long maxTime = System.currentTimeMillis() + TimeUnit.MILLISECONDS.convert(timeout, timeUnit);
-        while (System.currentTimeMillis() < maxTime) {
-            synchronized (workMonitor) {
-                final Worker worker = workerQueue.poll();
-                if (worker == null) {
-                    // nothing to do. wait until we have something to do.
-                    final long timeLeft = maxTime - System.currentTimeMillis();
-                    if (timeLeft <= 0) {
-                        return null;
-                    }
+        final long maxTime = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (true) {
+            // Any Worker that could not run the last time that it was polled may be able to run now.
+            requeueDeferred();
+
+            final Worker worker = pollReady();
+            if (worker != null) {
+                return worker;
+            }
 
-                    try {
-                        workMonitor.wait(timeLeft);
-                    } catch (final InterruptedException ignored) {
-                        Thread.currentThread().interrupt();
-                        return null;
-                    }
-                } else {
-                    // Decrement the amount of work there is to do for this worker.
-                    final int workLeft = worker.decrementEventCount();
-                    if (workLeft > 0) {
-                        workerQueue.offer(worker);
-                    }
+            // nothing to do. wait until we have something to do.
+            final long timeLeft = maxTime - System.nanoTime();
+            if (timeLeft <= 0) {
+                return null;
+            }
 
-                    return worker;
+            final Thread thread = Thread.currentThread();
+            idleThreads.offer(thread);
+            try {
+                // A Worker may have been queued before this thread was registered as idle, in which case no thread was woken for it.
+                if (readyQueue.isEmpty()) {
+                    LockSupport.parkNanos(this, timeLeft);
                 }
+            } finally {
+                idleThreads.remove(thread);
+            }
+
+            if (thread.isInterrupted()) {
+                return null;
+            }
+        }
+    }
+
+    private Worker pollReady() {
+        Worker worker;
+        while ((worker = readyQueue.poll()) != null) {
+            if (workerMap.get(worker.getConnectable()) != worker) {
+                // The component's work was suspended after the Worker was queued.
+                continue;
+            }
+
+            final DelayProcessingReason reason = getDelayReason(worker);
+            if (reason == null) {
+                // The queued flag must be cleared before the event count is decremented so that an event occurring in between is not lost.
+                worker.queued.set(false);
+
+                // Decrement the amount of work there is to do for this worker.
+                final int workLeft = worker.decrementEventCount();
+                if (workLeft > 0) {
+                    enqueue(worker);
+                }
+
+                return worker;
+            }
+
+            // Worker is not ready. We may want to add him back to the queue, depending on the reason that he is unready.
+            switch (reason) {
+                case YIELDED:
+                case ISOLATED:
+                case DESTINATION_FULL:
+                case ALL_WORK_PENALIZED:
+                case NO_WORK:
+                case TOO_MANY_THREADS:
+                    // there will not be an event that triggers this to happen, so we check the worker again later.
+                    deferredQueue.offer(worker);
+                    break;
+                default:
+                case NOT_RUNNING:
+                    // There's no need to check if this worker is available again until a another event
+                    // occurs. Therefore, we keep him off of the queue and reset his work count
+                    worker.resetWorkCount();
+                    worker.queued.set(false);
+                    break;
             }
         }
 
         return null;
     }
 
+    private void requeueDeferred() {
+        Worker worker;
+        while ((worker = deferredQueue.poll()) != null) {
+            readyQueue.offer(worker);
+        }
+    }
+
+    private void enqueue(final Worker worker) {
+        if (worker.queued.compareAndSet(false, true)) {
+            readyQueue.offer(worker);
+            signal();
+        }
+    }
+
+    private void signal() {
+        final Thread idleThread = idleThreads.poll();
+        if (idleThread != null) {
+            LockSupport.unpark(idleThread);
+        }
+    }
+
     @Override
     public void offer(final Connectable connectable) {
-        synchronized (workMonitor) {
-            Worker worker = workerMap.get(connectable);
-            if (worker == null) {
-                // if worker is null, then it has not been scheduled to run; ignore the event.
-                return;
-            }
+        final Worker worker = workerMap.get(connectable);
+        if (worker == null) {
+            // if worker is null, then it has not been scheduled to run; ignore the event.
+            return;
+        }
 
-            final int countBefore = worker.incrementEventCount();
-            if (countBefore < 0) {
-                worker.setWorkCount(1);
-            }
-            if (countBefore <= 0) {
-                // If countBefore > 0 then it's already on the queue, so just incrementing its counter is sufficient.
-                workerQueue.offer(worker);
-            }
+        final int countBefore = worker.incrementEventCount();
+        if (countBefore < 0) {
+            worker.setWorkCount(1);
+        }
 
-            workMonitor.notify();
+        if (worker.queued.get()) {
+            // The Worker is already queued, either ready to run or waiting to be checked again. Give any Worker that has been set
+            // aside a chance to run now, since the event may be what it was waiting for.
+            if (!deferredQueue.isEmpty()) {
+                signal();
+            }
+        } else {
+            enqueue(worker);
         }
     }
 
@@ -119,36 +208,37 @@ public class EventDrivenWorkerQueue implements WorkerQueue {
 
     @Override
     public void resumeWork(final Connectable connectable) {
-        synchronized (workMonitor) {
-            final int workCount = getWorkCount(connectable);
-            final Worker worker = new Worker(connectable);
-            workerMap.put(connectable, worker);
-
-            if (workCount > 0) {
-                worker.setWorkCount(workCount);
-                workerQueue.offer(worker);
-                workMonitor.notify();
-            }
+        final int workCount = getWorkCount(connectable);
+        final Worker worker = new Worker(connectable);
+        if (workCount > 0) {
+            worker.setWorkCount(workCount);
+        }
+
+        workerMap.put(connectable, worker);
+
+        if (workCount > 0) {
+            enqueue(worker);
         }
     }
 
     @Override
     public void suspendWork(final Connectable connectable) {
-        synchronized (workMonitor) {
-            final Worker worker = this.workerMap.remove(connectable);
-            if (worker == null) {
-                return;
-            }
-
-            worker.resetWorkCount();
-            workerQueue.remove(worker);
+        final Worker worker = this.workerMap.remove(connectable);
+        if (worker == null) {
+            return;
         }
+
+        // A poller that has already taken the Worker from the queue discards it because it is no longer in the map.
+        worker.resetWorkCount();
+        readyQueue.remove(worker);
+        deferredQueue.remove(worker);
     }
 
     public static class Worker implements EventBasedWorker {
 
         private final Connectable connectable;
         private final AtomicInteger workCount = new AtomicInteger(0);
+        private final AtomicBoolean queued = new AtomicBoolean(false);
 
         public Worker(final Connectable connectable) {
             this.connectable = connectable;
@@ -178,144 +268,83 @@ public class EventDrivenWorkerQueue implements WorkerQueue {
         }
     }
 
-    @SuppressWarnings("serial")
-    private static class WorkerReadyQueue extends LinkedList<Worker> {
-
-        private final ProcessScheduler scheduler;
-
-        private volatile boolean clustered = false;
-        private volatile boolean primary = false;
-
-        public WorkerReadyQueue(final ProcessScheduler scheduler) {
-            this.scheduler = scheduler;
-        }
+    private DelayProcessingReason getDelayReason(final Worker worker) {
+        final Connectable connectable = worker.getConnectable();
 
-        public void setClustered(final boolean clustered) {
-            this.clustered = clustered;
+        if (ScheduledState.RUNNING != connectable.getScheduledState()) {
+            return DelayProcessingReason.NOT_RUNNING;
         }
 
-        public void setPrimary(final boolean primary) {
-            this.primary = primary;
+        if (connectable.getYieldExpiration() > System.currentTimeMillis()) {
+            return DelayProcessingReason.YIELDED;
         }
 
-        @Override
-        public Worker poll() {
-            final List<Worker> putBack = new ArrayList<>();
+        // For Remote Output Ports,
+        int availableRelationshipCount = 0;
+        if (!connectable.getRelationships().isEmpty()) {
+            availableRelationshipCount = getAvailableRelationshipCount(connectable);
 
-            Worker worker;
-            try {
-                while ((worker = super.poll()) != null) {
-                    final DelayProcessingReason reason = getDelayReason(worker);
-                    if (reason == null) {
-                        return worker;
-                    } else {
-                        // Worker is not ready. We may want to add him back to the queue, depending on the reason that he is unready.
-                        switch (reason) {
-                            case YIELDED:
-                            case ISOLATED:
-                            case DESTINATION_FULL:
-                            case ALL_WORK_PENALIZED:
-                            case NO_WORK:
-                            case TOO_MANY_THREADS:
-                                // there will not be an event that triggers this to happen, so we add this worker back to the queue.
-                                putBack.add(worker);
-                                break;
-                            default:
-                            case NOT_RUNNING:
-                                // There's no need to check if this worker is available again until a another event
-                                // occurs. Therefore, we keep him off of the queue and reset his work count
-                                worker.resetWorkCount();
-                                break;
-                        }
-                    }
-                }
-            } finally {
-                if (!putBack.isEmpty()) {
-                    super.addAll(putBack);
-                }
+            if (availableRelationshipCount == 0) {
+                return DelayProcessingReason.DESTINATION_FULL;
             }
-
-            return null;
         }
 
-        private DelayProcessingReason getDelayReason(final Worker worker) {
-            final Connectable connectable = worker.getConnectable();
-
-            if (ScheduledState.RUNNING != connectable.getScheduledState()) {
-                return DelayProcessingReason.NOT_RUNNING;
-            }
-
-            if (connectable.getYieldExpiration() > System.currentTimeMillis()) {
-                return DelayProcessingReason.YIELDED;
-            }
+        if (connectable.hasIncomingConnection() && !Connectables.flowFilesQueued(connectable)) {
+            return DelayProcessingReason.NO_WORK;
+        }
 
-            // For Remote Output Ports,
-            int availableRelationshipCount = 0;
-            if (!connectable.getRelationships().isEmpty()) {
-                availableRelationshipCount = getAvailableRelationshipCount(connectable);
+        final int activeThreadCount = scheduler.getActiveThreadCount(worker.getConnectable());
+        final int maxThreadCount = worker.getConnectable().getMaxConcurrentTasks();
+        if (maxThreadCount > 0 && activeThreadCount >= maxThreadCount) {
+            return DelayProcessingReason.TOO_MANY_THREADS;
+        }
 
-                if (availableRelationshipCount == 0) {
-                    return DelayProcessingReason.DESTINATION_FULL;
-                }
+        if (connectable instanceof ProcessorNode) {
+            final ProcessorNode procNode = (ProcessorNode) connectable;
+            if (procNode.isIsolated() && clustered && !primary) {
+                return DelayProcessingReason.ISOLATED;
             }
 
-            if (connectable.hasIncomingConnection() && !Connectables.flowFilesQueued(connectable)) {
-                return DelayProcessingReason.NO_WORK;
+            final boolean triggerWhenAnyAvailable = procNode.isTriggerWhenAnyDestinationAvailable();
+            final boolean allDestinationsAvailable = availableRelationshipCount == procNode.getRelationships().size();
+            if (!triggerWhenAnyAvailable && !allDestinationsAvailable) {
+                return DelayProcessingReason.DESTINATION_FULL;
             }
+        }
 
-            final int activeThreadCount = scheduler.getActiveThreadCount(worker.getConnectable());
-            final int maxThreadCount = worker.getConnectable().getMaxConcurrentTasks();
-            if (maxThreadCount > 0 && activeThreadCount >= maxThreadCount) {
-                return DelayProcessingReason.TOO_MANY_THREADS;
-            }
+        return null;
+    }
 
-            if (connectable instanceof ProcessorNode) {
-                final ProcessorNode procNode = (ProcessorNode) connectable;
-                if (procNode.isIsolated() && clustered && !primary) {
-                    return DelayProcessingReason.ISOLATED;
-                }
+    private int getAvailableRelationshipCount(final Connectable connectable) {
+        int count = 0;
+        for (final Relationship relationship : connectable.getRelationships()) {
+            final Collection<Connection> connections = connectable.getConnections(relationship);
 
-                final boolean triggerWhenAnyAvailable = procNode.isTriggerWhenAnyDestinationAvailable();
-                final boolean allDestinationsAvailable = availableRelationshipCount == procNode.getRelationships().size();
-                if (!triggerWhenAnyAvailable && !allDestinationsAvailable) {
-                    return DelayProcessingReason.DESTINATION_FULL;
+            if (connections == null || connections.isEmpty()) {
+                if (connectable.isAutoTerminated(relationship)) {
+                    // If the relationship is auto-terminated, consider it available.
+                    count++;
                 }
-            }
-
-            return null;
-        }
-
-        private int getAvailableRelationshipCount(final Connectable connectable) {
-            int count = 0;
-            for (final Relationship relationship : connectable.getRelationships()) {
-                final Collection<Connection> connections = connectable.getConnections(relationship);
-
-                if (connections == null || connections.isEmpty()) {
-                    if (connectable.isAutoTerminated(relationship)) {
-                        // If the relationship is auto-terminated, consider it available.
-                        count++;
-                    }
-                } else {
-                    boolean available = true;
-                    for (final Connection connection : connections) {
-                        if (connection.getSource() == connection.getDestination()) {
-                            // don't count self-loops
-                            continue;
-                        }
-
-                        if (connection.getFlowFileQueue().isFull()) {
-                            available = false;
-                        }
+            } else {
+                boolean available = true;
+                for (final Connection connection : connections) {
+                    if (connection.getSource() == connection.getDestination()) {
+                        // don't count self-loops
+                        continue;
                     }
 
-                    if (available) {
-                        count++;
+                    if (connection.getFlowFileQueue().isFull()) {
+                        available = false;
                     }
                 }
-            }
 
-            return count;
+                if (available) {
+                    count++;
+                }
+            }
         }
+
+        return count;
     }
 
     private static enum DelayProcessingReason {
@@ -111,6 +111,8 @@ public abstract class AbstractFlowFileQueue implements FlowFileQueue {
             final MaxQueueSize updatedSize = new MaxQueueSize(maxSize.getMaxSize(), maxSize.getMaxBytes(), threshold);
             updated = maxQueueSize.compareAndSet(maxSize, updatedSize);
         }
+
+        onBackPressureMayBeRelieved();
     }
 
     @Override
@@ -128,6 +130,8 @@ public abstract class AbstractFlowFileQueue implements FlowFileQueue {
             final MaxQueueSize updatedSize = new MaxQueueSize(maxDataSize, maxBytes, maxSize.getMaxCount());
             updated = maxQueueSize.compareAndSet(maxSize, updatedSize);
         }
+
+        onBackPressureMayBeRelieved();
     }
 
     @Override
@@ -284,7 +288,11 @@ public abstract class AbstractFlowFileQueue implements FlowFileQueue {
         final Thread t = new Thread(new Runnable() {
             @Override
             public void run() {
-                dropFlowFiles(dropRequest, requestor);
+                try {
+                    dropFlowFiles(dropRequest, requestor);
+                } finally {
+                    onBackPressureMayBeRelieved();
+                }
             }
         }, "Drop FlowFiles for Connection " + getIdentifier());
         t.setDaemon(true);
@@ -320,6 +328,13 @@ public abstract class AbstractFlowFileQueue implements FlowFileQueue {
      */
     protected abstract void dropFlowFiles(final DropFlowFileRequest dropRequest, final String requestor);
 
+    /**
+     * Called when the queue may have stopped applying back pressure without any FlowFile having been acknowledged, because its
+     * thresholds were raised or its FlowFiles were dropped, so that a source that is waiting for back pressure to be relieved can run
+     */
+    protected void onBackPressureMayBeRelieved() {
+    }
+
     @Override
     public void verifyCanList() throws IllegalStateException {
     }
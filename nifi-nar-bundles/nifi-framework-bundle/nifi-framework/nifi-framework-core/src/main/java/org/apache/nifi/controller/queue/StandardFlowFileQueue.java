@@ -33,6 +33,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -54,16 +55,25 @@ public class StandardFlowFileQueue extends AbstractFlowFileQueue implements Flow
     public StandardFlowFileQueue(final String identifier, final ConnectionEventListener eventListener, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
                                  final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final EventReporter eventReporter,
                                  final int swapThreshold, final long defaultBackPressureObjectThreshold, final String defaultBackPressureDataSizeThreshold) {
+        this(identifier, eventListener, flowFileRepo, provRepo, resourceClaimManager, scheduler, swapManager, eventReporter, swapThreshold, defaultBackPressureObjectThreshold,
+            defaultBackPressureDataSizeThreshold, null);
+    }
+
+    public StandardFlowFileQueue(final String identifier, final ConnectionEventListener eventListener, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
+                                 final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final EventReporter eventReporter,
+                                 final int swapThreshold, final long defaultBackPressureObjectThreshold, final String defaultBackPressureDataSizeThreshold,
+                                 final Executor swapInExecutor) {
 
         super(identifier, scheduler, flowFileRepo, provRepo, resourceClaimManager);
         this.swapManager = swapManager;
-        this.queue = new SwappablePriorityQueue(swapManager, swapThreshold, eventReporter, this, this::drop, null);
-        this.eventListener = eventListener;
+        this.queue = new SwappablePriorityQueue(swapManager, swapThreshold, eventReporter, this, this::drop, null, swapInExecutor);
 
         writeLock = new TimedLock(this.lock.writeLock(), getIdentifier() + " Write Lock", 100);
 
+        // The thresholds are set before the event listener, so that the connection that is creating this queue is not notified of them
         setBackPressureDataSizeThreshold(defaultBackPressureDataSizeThreshold);
         setBackPressureObjectThreshold(defaultBackPressureObjectThreshold);
+        this.eventListener = eventListener;
     }
 
     @Override
@@ -204,6 +214,13 @@ public class StandardFlowFileQueue extends AbstractFlowFileQueue implements Flow
         queue.dropFlowFiles(dropRequest, requestor);
     }
 
+    @Override
+    protected void onBackPressureMayBeRelieved() {
+        if (eventListener != null) {
+            eventListener.triggerSourceEvent();
+        }
+    }
+
 
     /**
      * Lock the queue so that other threads are unable to interact with the queue
@@ -40,12 +40,22 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -54,6 +64,8 @@ public class SwappablePriorityQueue {
     private static final Logger logger = LoggerFactory.getLogger(SwappablePriorityQueue.class);
     private static final int SWAP_RECORD_POLL_SIZE = 10_000;
     private static final int MAX_EXPIRED_RECORDS_PER_ITERATION = 10_000;
+    private static final Comparator<FlowFileRecord> PENALTY_EXPIRATION_ORDER = Comparator.comparingLong(FlowFileRecord::getPenaltyExpirationMillis)
+        .thenComparingLong(FlowFileRecord::getId);
 
     private final int swapThreshold;
     private final FlowFileSwapManager swapManager;
@@ -62,6 +74,7 @@ public class SwappablePriorityQueue {
     private final DropFlowFileAction dropAction;
     private final List<FlowFilePrioritizer> priorities = new ArrayList<>();
     private final String swapPartitionName;
+    private final Executor swapInExecutor;
 
     private final List<String> swapLocations = new ArrayList<>();
     private final AtomicReference<FlowFileQueueSize> size = new AtomicReference<>(new FlowFileQueueSize(0, 0L, 0, 0L, 0, 0, 0L));
@@ -80,11 +93,37 @@ public class SwappablePriorityQueue {
     // Guarded by lock.
     private PriorityQueue<FlowFileRecord> activeQueue;
     private ArrayList<FlowFileRecord> swapQueue;
-    private boolean swapMode = false;
+    private volatile boolean swapMode = false;
+
+    // When no prioritizers are configured, FlowFiles are handed out in the order in which they were enqueued, so there is no need
+    // to maintain a PriorityQueue. In this "FIFO mode," the active FlowFiles are held in 'fifoQueue' instead of 'activeQueue', which
+    // allows FlowFiles to be put and polled without obtaining the write lock, as long as we are not in swap mode. The write lock is still
+    // obtained in order to swap, to change the prioritizers, and for the less common operations such as polling with a filter, dropping
+    // FlowFiles, or rebalancing. A penalized FlowFile cannot be left at the head of the FIFO queue, since it would hold up all of the
+    // FlowFiles behind it, so it is instead moved to 'penalizedQueue' until its penalty has expired. The size of the queue is tracked
+    // in the same way, regardless of mode.
+    private volatile boolean fifoMode = true;
+    private final Deque<FlowFileRecord> fifoQueue = new ConcurrentLinkedDeque<>();
+    private final NavigableSet<FlowFileRecord> penalizedQueue = new ConcurrentSkipListSet<>(PENALTY_EXPIRATION_ORDER);
+
+    // If a Swap In Executor is provided, the next swap file is read in the background once the active queue starts to run low,
+    // so that by the time the FlowFiles are needed, polling does not have to wait on disk. When present, the prefetch is always
+    // for the first of the swap locations. Modified only with the write lock held.
+    private volatile SwapFilePrefetch prefetch;
 
     public SwappablePriorityQueue(final FlowFileSwapManager swapManager, final int swapThreshold, final EventReporter eventReporter, final FlowFileQueue flowFileQueue,
         final DropFlowFileAction dropAction, final String swapPartitionName) {
+        this(swapManager, swapThreshold, eventReporter, flowFileQueue, dropAction, swapPartitionName, null);
+    }
+
+    /**
+     * @param swapInExecutor the Executor to use for swapping in FlowFiles in the background, or <code>null</code> if FlowFiles
+     *            should only be swapped in synchronously, when they are needed
+     */
+    public SwappablePriorityQueue(final FlowFileSwapManager swapManager, final int swapThreshold, final EventReporter eventReporter, final FlowFileQueue flowFileQueue,
+        final DropFlowFileAction dropAction, final String swapPartitionName, final Executor swapInExecutor) {
         this.swapManager = swapManager;
+        this.swapInExecutor = swapInExecutor;
         this.swapThreshold = swapThreshold;
 
         this.activeQueue = new PriorityQueue<>(20, new QueuePrioritizer(Collections.emptyList()));
@@ -118,9 +157,26 @@ public class SwappablePriorityQueue {
             priorities.clear();
             priorities.addAll(newPriorities);
 
-            final PriorityQueue<FlowFileRecord> newQueue = new PriorityQueue<>(Math.max(20, activeQueue.size()), new QueuePrioritizer(newPriorities));
-            newQueue.addAll(activeQueue);
-            activeQueue = newQueue;
+            if (newPriorities.isEmpty()) {
+                if (!fifoMode) {
+                    // Hand the active FlowFiles over to the FIFO queue in their current order.
+                    FlowFileRecord flowFile;
+                    while ((flowFile = activeQueue.poll()) != null) {
+                        fifoQueue.add(flowFile);
+                    }
+
+                    activeQueue = new PriorityQueue<>(20, new QueuePrioritizer(newPriorities));
+                    fifoMode = true;
+                }
+            } else {
+                final PriorityQueue<FlowFileRecord> newQueue = new PriorityQueue<>(Math.max(20, getActiveQueueSize()), new QueuePrioritizer(newPriorities));
+                newQueue.addAll(activeQueue);
+                activeQueue = newQueue;
+
+                // Once FIFO mode is disabled, any FlowFile that is concurrently added to the FIFO queue will be migrated by the thread that added it.
+                fifoMode = false;
+                migrateFifoQueueToActive();
+            }
         } finally {
             writeLock.unlock("setPriorities");
         }
@@ -130,6 +186,12 @@ public class SwappablePriorityQueue {
     public LocalQueuePartitionDiagnostics getQueueDiagnostics() {
         readLock.lock();
         try {
+            if (fifoMode) {
+                final boolean anyPenalized = !penalizedQueue.isEmpty();
+                final boolean allPenalized = anyPenalized && fifoQueue.isEmpty();
+                return new StandardLocalQueuePartitionDiagnostics(getFlowFileQueueSize(), anyPenalized, allPenalized);
+            }
+
             final boolean anyPenalized = !activeQueue.isEmpty() && activeQueue.peek().isPenalized();
             final boolean allPenalized = anyPenalized && activeQueue.stream().anyMatch(FlowFileRecord::isPenalized);
 
@@ -142,6 +204,12 @@ public class SwappablePriorityQueue {
     public List<FlowFileRecord> getActiveFlowFiles() {
         readLock.lock();
         try {
+            if (fifoMode) {
+                final List<FlowFileRecord> activeFlowFiles = new ArrayList<>(fifoQueue);
+                activeFlowFiles.addAll(penalizedQueue);
+                return activeFlowFiles;
+            }
+
             return new ArrayList<>(activeQueue);
         } finally {
             readLock.unlock("getActiveFlowFiles");
@@ -162,6 +230,11 @@ public class SwappablePriorityQueue {
 
         migrateSwapToActive();
 
+        if (fifoMode) {
+            writeFifoSwapFiles();
+            return;
+        }
+
         final int numSwapFiles = swapQueue.size() / SWAP_RECORD_POLL_SIZE;
 
         int originalSwapQueueCount = swapQueue.size();
@@ -170,6 +243,12 @@ public class SwappablePriorityQueue {
             originalSwapQueueBytes += flowFile.getSize();
         }
 
+        final int originalActiveQueueCount = activeQueue.size();
+        long originalActiveQueueBytes = 0L;
+        for (final FlowFileRecord flowFile : activeQueue) {
+            originalActiveQueueBytes += flowFile.getSize();
+        }
+
         // Create a new Priority queue with the prioritizers that are set, but reverse the
         // prioritizers because we want to pull the lowest-priority FlowFiles to swap out
         final PriorityQueue<FlowFileRecord> tempQueue = new PriorityQueue<>(activeQueue.size() + swapQueue.size(), Collections.reverseOrder(new QueuePrioritizer(getPriorities())));
@@ -242,7 +321,11 @@ public class SwappablePriorityQueue {
             final int addedSwapRecords = swapQueue.size() - originalSwapQueueCount;
             final long addedSwapBytes = updatedSwapQueueBytes - originalSwapQueueBytes;
 
-            final FlowFileQueueSize newSize = new FlowFileQueueSize(activeQueue.size(), activeQueueBytes,
+            // Update the active size relative to what it was, rather than setting it outright, as a FlowFile that was added to
+            // the FIFO queue just before the prioritizers were set may have already been counted but not yet migrated.
+            final FlowFileQueueSize newSize = new FlowFileQueueSize(
+                originalSize.getActiveCount() + activeQueue.size() - originalActiveQueueCount,
+                originalSize.getActiveBytes() + activeQueueBytes - originalActiveQueueBytes,
                 originalSize.getSwappedCount() + addedSwapRecords + flowFilesSwappedOut,
                 originalSize.getSwappedBytes() + addedSwapBytes + bytesSwappedOut,
                 originalSize.getSwapFileCount() + numSwapFiles,
@@ -257,6 +340,49 @@ public class SwappablePriorityQueue {
         this.swapLocations.addAll(swapLocations);
     }
 
+    /**
+     * In FIFO mode, the FlowFiles on the swap queue are always newer than those in the FIFO queue and older than any that are
+     * added later, so we simply swap out the oldest FlowFiles of the swap queue, in order, and leave the remainder on the swap queue.
+     *
+     * This method MUST be called with the write lock held
+     */
+    private void writeFifoSwapFiles() {
+        final int numSwapFiles = swapQueue.size() / SWAP_RECORD_POLL_SIZE;
+        final List<String> swapLocations = new ArrayList<>(numSwapFiles);
+
+        int flowFilesSwappedOut = 0;
+        for (int i = 0; i < numSwapFiles; i++) {
+            final List<FlowFileRecord> toSwap = new ArrayList<>(swapQueue.subList(flowFilesSwappedOut, flowFilesSwappedOut + SWAP_RECORD_POLL_SIZE));
+
+            try {
+                final String swapLocation = swapManager.swapOut(toSwap, flowFileQueue, swapPartitionName);
+                swapLocations.add(swapLocation);
+                flowFilesSwappedOut += toSwap.size();
+            } catch (final IOException ioe) {
+                final int objectCount = getFlowFileCount();
+                logger.error("FlowFile Queue with identifier {} has {} FlowFiles queued up. Attempted to spill FlowFile information over to disk in order to avoid exhausting "
+                    + "the Java heap space but failed to write information to disk due to {}", getQueueIdentifier(), objectCount, ioe.toString());
+                logger.error("", ioe);
+                if (eventReporter != null) {
+                    eventReporter.reportEvent(Severity.ERROR, "Failed to Overflow to Disk", "Flowfile Queue with identifier " + getQueueIdentifier() + " has " + objectCount +
+                        " queued up. Attempted to spill FlowFile information over to disk in order to avoid exhausting the Java heap space but failed to write information to disk. "
+                        + "See logs for more information.");
+                }
+
+                break;
+            }
+        }
+
+        if (flowFilesSwappedOut == 0) {
+            return;
+        }
+
+        // FlowFiles on the swap queue are already accounted for as swapped, so only the number of swap files changes.
+        swapQueue.subList(0, flowFilesSwappedOut).clear();
+        incrementSwapQueueSize(0, 0L, swapLocations.size());
+        this.swapLocations.addAll(swapLocations);
+    }
+
     private int getFlowFileCount() {
         final FlowFileQueueSize size = getFlowFileQueueSize();
         return size.getActiveCount() + size.getSwappedCount() + size.getUnacknowledgedCount();
@@ -283,8 +409,9 @@ public class SwappablePriorityQueue {
         // Swap Queue to the Active Queue. However, we don't do this if there are FlowFiles already swapped out
         // to disk, because we want them to be swapped back in in the same order that they were swapped out.
 
-        final int activeQueueSize = activeQueue.size();
+        final int activeQueueSize = getActiveQueueSize();
         if (activeQueueSize > 0 && activeQueueSize > swapThreshold - SWAP_RECORD_POLL_SIZE) {
+            prefetchSwapFileIfNecessary(activeQueueSize);
             return;
         }
 
@@ -302,6 +429,7 @@ public class SwappablePriorityQueue {
         // of other checks for 99.999% of the cases.
         final FlowFileQueueSize size = getFlowFileQueueSize();
         if (size.getSwappedCount() == 0 && swapQueue.isEmpty()) {
+            swapMode = false;
             return;
         }
 
@@ -314,9 +442,10 @@ public class SwappablePriorityQueue {
         int recordsMigrated = 0;
         long bytesMigrated = 0L;
         final Iterator<FlowFileRecord> swapItr = swapQueue.iterator();
-        while (activeQueue.size() < swapThreshold && swapItr.hasNext()) {
+        final List<FlowFileRecord> migrated = new ArrayList<>();
+        while (activeQueueSize + recordsMigrated < swapThreshold && swapItr.hasNext()) {
             final FlowFileRecord toMigrate = swapItr.next();
-            activeQueue.add(toMigrate);
+            migrated.add(toMigrate);
             bytesMigrated += toMigrate.getSize();
             recordsMigrated++;
             swapItr.remove();
@@ -325,19 +454,128 @@ public class SwappablePriorityQueue {
         if (recordsMigrated > 0) {
             incrementActiveQueueSize(recordsMigrated, bytesMigrated);
             incrementSwapQueueSize(-recordsMigrated, -bytesMigrated, 0);
+            addToActiveQueue(migrated);
         }
 
-        if (size.getSwappedCount() == 0) {
+        if (getFlowFileQueueSize().getSwappedCount() == 0) {
             swapMode = false;
         }
     }
 
+    /**
+     * Called when polling in FIFO mode, without the write lock held. If there are swapped FlowFiles that ought to be brought
+     * into the FIFO queue, obtains the write lock in order to do so, unless another thread already holds it, in which case we
+     * just continue on with the FlowFiles that are already active.
+     */
+    private void migrateSwapToFifoQueue() {
+        final FlowFileQueueSize queueSize = getFlowFileQueueSize();
+        if (queueSize.getSwappedCount() == 0 && !swapMode) {
+            return;
+        }
+
+        final int activeCount = queueSize.getActiveCount();
+        if (activeCount > 0 && activeCount > swapThreshold - SWAP_RECORD_POLL_SIZE && !isSwapFilePrefetchNeeded(activeCount, queueSize.getSwapFileCount())) {
+            return;
+        }
+
+        if (!writeLock.tryLock()) {
+            return;
+        }
+
+        try {
+            migrateSwapToActive();
+        } finally {
+            writeLock.unlock("migrateSwapToFifoQueue");
+        }
+    }
+
+    private boolean isSwapFilePrefetchNeeded(final int activeQueueSize, final int swapFileCount) {
+        return swapInExecutor != null && prefetch == null && swapFileCount > 0 && activeQueueSize <= swapThreshold - SWAP_RECORD_POLL_SIZE / 2;
+    }
+
+    /**
+     * If a Swap In Executor has been provided, and the active queue has been drained to the point that the next swap file will be
+     * needed soon, begins swapping in the next swap file in the background.
+     *
+     * This method MUST be called with the write lock held.
+     */
+    private void prefetchSwapFileIfNecessary(final int activeQueueSize) {
+        if (swapLocations.isEmpty() || !isSwapFilePrefetchNeeded(activeQueueSize, swapLocations.size())) {
+            return;
+        }
+
+        final SwapFilePrefetch swapFilePrefetch = new SwapFilePrefetch(swapLocations.get(0));
+        try {
+            swapInExecutor.execute(swapFilePrefetch);
+        } catch (final RejectedExecutionException ree) {
+            logger.debug("Unable to swap in {} in the background for {}; will swap in when FlowFiles are needed", swapFilePrefetch.swapLocation, this, ree);
+            return;
+        }
+
+        prefetch = swapFilePrefetch;
+        logger.debug("Swapping in {} in the background for {}", swapFilePrefetch.swapLocation, this);
+    }
+
+    /**
+     * Swaps in the FlowFiles from the given swap location, using the results of the background prefetch if it is for the
+     * given location. If the prefetch is in progress, waits for it to complete.
+     *
+     * This method MUST be called with the write lock held.
+     */
+    private SwapContents readSwapFile(final String swapLocation) throws IOException {
+        final SwapFilePrefetch currentPrefetch = prefetch;
+        if (currentPrefetch == null || !currentPrefetch.swapLocation.equals(swapLocation)) {
+            return swapManager.swapIn(swapLocation, flowFileQueue);
+        }
+
+        try {
+            return currentPrefetch.getSwapContents();
+        } finally {
+            // If we were interrupted while waiting, the prefetch is still running, so we hold on to it for the next attempt.
+            if (currentPrefetch.isDone()) {
+                prefetch = null;
+            }
+        }
+    }
+
+    /**
+     * Moves any FlowFiles that are held in the FIFO queue into the active queue. This is necessary only when the prioritizers
+     * have been set, as a FlowFile may be added to the FIFO queue concurrently with FIFO mode being disabled.
+     *
+     * This method MUST be called with the write lock held.
+     */
+    private void migrateFifoQueueToActive() {
+        if (fifoMode) {
+            return;
+        }
+
+        FlowFileRecord flowFile;
+        while ((flowFile = fifoQueue.poll()) != null) {
+            activeQueue.add(flowFile);
+        }
+        while ((flowFile = penalizedQueue.pollFirst()) != null) {
+            activeQueue.add(flowFile);
+        }
+    }
+
+    private int getActiveQueueSize() {
+        return fifoMode ? getFlowFileQueueSize().getActiveCount() : activeQueue.size();
+    }
+
+    private void addToActiveQueue(final Collection<FlowFileRecord> flowFiles) {
+        if (fifoMode) {
+            fifoQueue.addAll(flowFiles);
+        } else {
+            activeQueue.addAll(flowFiles);
+        }
+    }
+
     private void swapIn() {
         final String swapLocation = swapLocations.get(0);
         boolean partialContents = false;
         SwapContents swapContents;
         try {
-            swapContents = swapManager.swapIn(swapLocation, flowFileQueue);
+            swapContents = readSwapFile(swapLocation);
             swapLocations.remove(0);
         } catch (final IncompleteSwapFileException isfe) {
             logger.error("Failed to swap in all FlowFiles from Swap File {}; Swap File ended prematurely. The records that were present will still be swapped in", swapLocation);
@@ -394,7 +632,23 @@ public class SwappablePriorityQueue {
             logger.debug("Successfully swapped in Swap File {}", swapLocation);
         }
 
-        activeQueue.addAll(swapContents.getFlowFiles());
+        addToActiveQueue(swapContents.getFlowFiles());
+    }
+
+    /**
+     * Removes and returns all FlowFiles from the FIFO queue, including those that are penalized.
+     */
+    private List<FlowFileRecord> drainFifoQueue() {
+        final List<FlowFileRecord> drained = new ArrayList<>();
+        FlowFileRecord flowFile;
+        while ((flowFile = penalizedQueue.pollFirst()) != null) {
+            drained.add(flowFile);
+        }
+        while ((flowFile = fifoQueue.poll()) != null) {
+            drained.add(flowFile);
+        }
+
+        return drained;
     }
 
     public QueueSize size() {
@@ -423,16 +677,25 @@ public class SwappablePriorityQueue {
 
 
     public void put(final FlowFileRecord flowFile) {
+        if (fifoMode && !swapMode && getFlowFileQueueSize().getActiveCount() < swapThreshold) {
+            incrementActiveQueueSize(1, flowFile.getSize());
+            fifoQueue.offer(flowFile);
+            onFifoQueueUpdated();
+
+            logger.debug("{} put to {}", flowFile, this);
+            return;
+        }
+
         writeLock.lock();
         try {
-            if (swapMode || activeQueue.size() >= swapThreshold) {
+            if (swapMode || getActiveQueueSize() >= swapThreshold) {
                 swapQueue.add(flowFile);
                 incrementSwapQueueSize(1, flowFile.getSize(), 0);
                 swapMode = true;
                 writeSwapFilesIfNecessary();
             } else {
                 incrementActiveQueueSize(1, flowFile.getSize());
-                activeQueue.add(flowFile);
+                addToActiveQueue(Collections.singleton(flowFile));
             }
 
             logger.debug("{} put to {}", flowFile, this);
@@ -448,16 +711,25 @@ public class SwappablePriorityQueue {
             bytes += flowFile.getSize();
         }
 
+        if (fifoMode && !swapMode && getFlowFileQueueSize().getActiveCount() < swapThreshold - numFiles) {
+            incrementActiveQueueSize(numFiles, bytes);
+            fifoQueue.addAll(flowFiles);
+            onFifoQueueUpdated();
+
+            logger.debug("{} put to {}", flowFiles, this);
+            return;
+        }
+
         writeLock.lock();
         try {
-            if (swapMode || activeQueue.size() >= swapThreshold - numFiles) {
+            if (swapMode || getActiveQueueSize() >= swapThreshold - numFiles) {
                 swapQueue.addAll(flowFiles);
                 incrementSwapQueueSize(numFiles, bytes, 0);
                 swapMode = true;
                 writeSwapFilesIfNecessary();
             } else {
                 incrementActiveQueueSize(numFiles, bytes);
-                activeQueue.addAll(flowFiles);
+                addToActiveQueue(flowFiles);
             }
 
             logger.debug("{} put to {}", flowFiles, this);
@@ -466,7 +738,28 @@ public class SwappablePriorityQueue {
         }
     }
 
+    /**
+     * Called after FlowFiles have been added to the FIFO queue without the write lock held. If the prioritizers were set
+     * concurrently, FIFO mode may have been disabled after we checked it, in which case we must move the FlowFiles to the active queue.
+     */
+    private void onFifoQueueUpdated() {
+        if (fifoMode) {
+            return;
+        }
+
+        writeLock.lock();
+        try {
+            migrateFifoQueueToActive();
+        } finally {
+            writeLock.unlock("migrateFifoQueueToActive");
+        }
+    }
+
     public FlowFileRecord poll(final Set<FlowFileRecord> expiredRecords, final long expirationMillis) {
+        if (fifoMode) {
+            return pollFifo(expiredRecords, expirationMillis);
+        }
+
         FlowFileRecord flowFile;
 
         // First check if we have any records Pre-Fetched.
@@ -490,6 +783,7 @@ public class SwappablePriorityQueue {
         FlowFileRecord flowFile;
         boolean isExpired;
 
+        migrateFifoQueueToActive();
         migrateSwapToActive();
 
         long expiredBytes = 0L;
@@ -523,15 +817,107 @@ public class SwappablePriorityQueue {
         return flowFile;
     }
 
+    private FlowFileRecord pollFifo(final Set<FlowFileRecord> expiredRecords, final long expirationMillis) {
+        migrateSwapToFifoQueue();
+
+        FlowFileRecord flowFile = null;
+        int expiredCount = 0;
+        long expiredBytes = 0L;
+        FlowFileRecord candidate;
+        while ((candidate = pollFifoCandidate()) != null) {
+            if (isExpired(candidate, expirationMillis)) {
+                expiredRecords.add(candidate);
+                expiredCount++;
+                expiredBytes += candidate.getSize();
+
+                if (expiredRecords.size() >= MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                    break;
+                }
+            } else if (candidate.isPenalized()) {
+                penalizedQueue.add(candidate);
+            } else {
+                flowFile = candidate;
+                break;
+            }
+        }
+
+        if (flowFile == null) {
+            if (expiredCount > 0) {
+                incrementActiveQueueSize(-expiredCount, -expiredBytes);
+            }
+
+            return null;
+        }
+
+        incrementActiveQueueSize(-1 - expiredCount, -flowFile.getSize() - expiredBytes);
+        incrementUnacknowledgedQueueSize(1, flowFile.getSize());
+        logger.debug("{} poll() returning {}", this, flowFile);
+        return flowFile;
+    }
+
+    /**
+     * @return the next FlowFile in FIFO order. A FlowFile whose penalty has expired is returned ahead of the FIFO queue's
+     * head, as it was enqueued before it.
+     */
+    private FlowFileRecord pollFifoCandidate() {
+        if (!penalizedQueue.isEmpty()) {
+            final Iterator<FlowFileRecord> penalizedItr = penalizedQueue.iterator();
+            if (penalizedItr.hasNext()) {
+                final FlowFileRecord penalized = penalizedItr.next();
+                if (!penalized.isPenalized() && penalizedQueue.remove(penalized)) {
+                    return penalized;
+                }
+            }
+        }
+
+        return fifoQueue.poll();
+    }
+
+    /**
+     * Returns the given FlowFiles, which were polled from the FIFO queue but not handed out, to the head of the FIFO queue in their original order.
+     */
+    private void requeueFifo(final List<FlowFileRecord> flowFiles) {
+        for (int i = flowFiles.size() - 1; i >= 0; i--) {
+            fifoQueue.offerFirst(flowFiles.get(i));
+        }
+    }
+
     public List<FlowFileRecord> poll(int maxResults, final Set<FlowFileRecord> expiredRecords, final long expirationMillis) {
         final List<FlowFileRecord> records = new ArrayList<>(Math.min(1, maxResults));
 
-        // First check if we have any records Pre-Fetched.
-        writeLock.lock();
-        try {
-            doPoll(records, maxResults, expiredRecords, expirationMillis);
-        } finally {
-            writeLock.unlock("poll(int, Set)");
+        if (fifoMode) {
+            migrateSwapToFifoQueue();
+
+            long bytesPolled = 0L;
+            long expiredBytes = 0L;
+            FlowFileRecord candidate;
+            while (records.size() < maxResults && (candidate = pollFifoCandidate()) != null) {
+                if (isExpired(candidate, expirationMillis)) {
+                    expiredRecords.add(candidate);
+                    expiredBytes += candidate.getSize();
+
+                    if (expiredRecords.size() >= MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                        break;
+                    }
+                } else if (candidate.isPenalized()) {
+                    penalizedQueue.add(candidate);
+                } else {
+                    records.add(candidate);
+                    bytesPolled += candidate.getSize();
+                }
+            }
+
+            if (!records.isEmpty() || !expiredRecords.isEmpty()) {
+                incrementActiveQueueSize(-(expiredRecords.size() + records.size()), -(bytesPolled + expiredBytes));
+                incrementUnacknowledgedQueueSize(records.size(), bytesPolled);
+            }
+        } else {
+            writeLock.lock();
+            try {
+                doPoll(records, maxResults, expiredRecords, expirationMillis);
+            } finally {
+                writeLock.unlock("poll(int, Set)");
+            }
         }
 
         if (!records.isEmpty()) {
@@ -547,13 +933,15 @@ public class SwappablePriorityQueue {
 
         writeLock.lock();
         try {
+            migrateFifoQueueToActive();
             migrateSwapToActive();
 
+            final boolean fifo = fifoMode;
             final List<FlowFileRecord> selectedFlowFiles = new ArrayList<>();
             final List<FlowFileRecord> unselected = new ArrayList<>();
 
             while (true) {
-                FlowFileRecord flowFile = this.activeQueue.poll();
+                FlowFileRecord flowFile = fifo ? pollFifoCandidate() : this.activeQueue.poll();
                 if (flowFile == null) {
                     break;
                 }
@@ -570,6 +958,11 @@ public class SwappablePriorityQueue {
                         continue;
                     }
                 } else if (flowFile.isPenalized()) {
+                    if (fifo) {
+                        penalizedQueue.add(flowFile);
+                        continue;
+                    }
+
                     this.activeQueue.add(flowFile);
                     break; // just stop searching because the rest are all penalized.
                 }
@@ -590,7 +983,11 @@ public class SwappablePriorityQueue {
                 }
             }
 
-            this.activeQueue.addAll(unselected);
+            if (fifo) {
+                requeueFifo(unselected);
+            } else {
+                this.activeQueue.addAll(unselected);
+            }
             incrementActiveQueueSize(-flowFilesPulled, -bytesPulled);
 
             if (!selectedFlowFiles.isEmpty()) {
@@ -604,6 +1001,7 @@ public class SwappablePriorityQueue {
     }
 
     private void doPoll(final List<FlowFileRecord> records, int maxResults, final Set<FlowFileRecord> expiredRecords, final long expirationMillis) {
+        migrateFifoQueueToActive();
         migrateSwapToActive();
 
         final long bytesDrained = drainQueue(activeQueue, records, maxResults, expiredRecords, expirationMillis);
@@ -675,7 +1073,8 @@ public class SwappablePriorityQueue {
         readLock.lock();
         try {
             // read through all of the FlowFiles in the queue, looking for the FlowFile with the given ID
-            for (final FlowFileRecord flowFile : activeQueue) {
+            final Collection<FlowFileRecord> activeFlowFiles = fifoMode ? getActiveFlowFiles() : activeQueue;
+            for (final FlowFileRecord flowFile : activeFlowFiles) {
                 if (flowFileUuid.equals(flowFile.getAttribute(CoreAttributes.UUID.key()))) {
                     return flowFile;
                 }
@@ -697,12 +1096,17 @@ public class SwappablePriorityQueue {
             logger.debug("For DropFlowFileRequest {}, original size is {}", requestIdentifier, size());
 
             try {
-                final List<FlowFileRecord> activeQueueRecords = new ArrayList<>(activeQueue);
+                // In FIFO mode, FlowFiles may be polled concurrently, so we must take ownership of the FlowFiles to drop by removing them up front.
+                final boolean fifo = fifoMode;
+                final List<FlowFileRecord> activeQueueRecords = fifo ? drainFifoQueue() : new ArrayList<>(activeQueue);
 
                 QueueSize droppedSize;
                 try {
                     if (dropRequest.getState() == DropFlowFileState.CANCELED) {
                         logger.info("Cancel requested for DropFlowFileRequest {}", requestIdentifier);
+                        if (fifo) {
+                            requeueFifo(activeQueueRecords);
+                        }
                         return;
                     }
 
@@ -712,6 +1116,9 @@ public class SwappablePriorityQueue {
                     logger.error("Failed to drop the FlowFiles from queue {} due to {}", getQueueIdentifier(), ioe.toString());
                     logger.error("", ioe);
 
+                    if (fifo) {
+                        requeueFifo(activeQueueRecords);
+                    }
                     dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + ioe.toString());
                     return;
                 }
@@ -758,7 +1165,7 @@ public class SwappablePriorityQueue {
                             return;
                         }
 
-                        swapContents = swapManager.swapIn(swapLocation, flowFileQueue);
+                        swapContents = readSwapFile(swapLocation);
                         droppedSize = dropAction.drop(swapContents.getFlowFiles(), requestor);
                     } catch (final IncompleteSwapFileException isfe) {
                         swapContents = isfe.getPartialContents();
@@ -780,7 +1187,7 @@ public class SwappablePriorityQueue {
 
                         dropRequest.setState(DropFlowFileState.FAILURE, "Failed to swap in FlowFiles from Swap File " + swapLocation + " due to " + ioe.toString());
                         if (swapContents != null) {
-                            activeQueue.addAll(swapContents.getFlowFiles()); // ensure that we don't lose the FlowFiles from our queue.
+                            addToActiveQueue(swapContents.getFlowFiles()); // ensure that we don't lose the FlowFiles from our queue.
                         }
 
                         return;
@@ -859,6 +1266,10 @@ public class SwappablePriorityQueue {
 
             incrementSwapQueueSize(swapFlowFileCount, swapByteCount, swapLocations.size());
             this.swapLocations.addAll(swapLocations);
+            if (!swapLocations.isEmpty()) {
+                // ensure that new FlowFiles queue up behind those that were swapped out rather than going directly to the active queue
+                swapMode = true;
+            }
         } finally {
             writeLock.unlock("Recover Swap Files");
         }
@@ -953,7 +1364,15 @@ public class SwappablePriorityQueue {
     public FlowFileQueueContents packageForRebalance(final String newPartitionName) {
         writeLock.lock();
         try {
-            final List<FlowFileRecord> activeRecords = new ArrayList<>(this.activeQueue);
+            // Swap files are renamed below, so we cannot leave one being swapped in by a background thread. Instead, we finish swapping it in.
+            if (prefetch != null) {
+                swapIn();
+            }
+
+            final boolean fifo = fifoMode;
+            final List<FlowFileRecord> activeRecords = fifo ? drainFifoQueue() : new ArrayList<>(this.activeQueue);
+            final int activeRecordCount = activeRecords.size();
+            final long activeRecordBytes = fifo ? activeRecords.stream().mapToLong(FlowFileRecord::getSize).sum() : 0L;
 
             final List<String> updatedSwapLocations = new ArrayList<>(swapLocations.size());
             for (final String swapLocation : swapLocations) {
@@ -981,7 +1400,10 @@ public class SwappablePriorityQueue {
                 final FlowFileQueueSize currentSize = getFlowFileQueueSize();
                 swapSize = new QueueSize(currentSize.getSwappedCount() - swapQueueCount, currentSize.getSwappedBytes() - swapQueueBytes);
 
-                final FlowFileQueueSize updatedSize = new FlowFileQueueSize(0, 0, 0, 0, 0, currentSize.getUnacknowledgedCount(), currentSize.getUnacknowledgedBytes());
+                // In FIFO mode, FlowFiles may be concurrently added to the FIFO queue, so we subtract what we took rather than zeroing out the active size.
+                final int activeCount = fifo ? currentSize.getActiveCount() - activeRecordCount : 0;
+                final long activeBytes = fifo ? currentSize.getActiveBytes() - activeRecordBytes : 0L;
+                final FlowFileQueueSize updatedSize = new FlowFileQueueSize(activeCount, activeBytes, 0, 0, 0, currentSize.getUnacknowledgedCount(), currentSize.getUnacknowledgedBytes());
                 updated = updateSize(currentSize, updatedSize);
             } while (!updated);
 
@@ -995,4 +1417,59 @@ public class SwappablePriorityQueue {
     public String toString() {
         return "SwappablePriorityQueue[queueId=" + flowFileQueue.getIdentifier() + "]";
     }
+
+    /**
+     * Swaps in a swap file in the background, holding on to the results until the active queue needs them. If the results are
+     * needed before the Executor has gotten around to running the prefetch, the thread that needs them swaps the file in itself.
+     */
+    private class SwapFilePrefetch implements Runnable {
+        private final String swapLocation;
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private final CompletableFuture<SwapContents> future = new CompletableFuture<>();
+
+        SwapFilePrefetch(final String swapLocation) {
+            this.swapLocation = swapLocation;
+        }
+
+        @Override
+        public void run() {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                future.complete(swapManager.swapIn(swapLocation, flowFileQueue));
+            } catch (final Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+
+        boolean isDone() {
+            return future.isDone();
+        }
+
+        SwapContents getSwapContents() throws IOException {
+            run();
+
+            try {
+                return future.get();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for FlowFiles to be swapped in from " + swapLocation, ie);
+            } catch (final ExecutionException ee) {
+                final Throwable cause = ee.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+
+                throw new IOException("Failed to swap in FlowFiles from " + swapLocation, cause);
+            }
+        }
+    }
 }
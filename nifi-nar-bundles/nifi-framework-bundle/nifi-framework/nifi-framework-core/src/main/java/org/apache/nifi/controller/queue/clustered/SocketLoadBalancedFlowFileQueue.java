@@ -84,6 +84,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -123,6 +124,14 @@ public class SocketLoadBalancedFlowFileQueue extends AbstractFlowFileQueue imple
                                            final ProvenanceEventRepository provRepo, final ContentRepository contentRepo, final ResourceClaimManager resourceClaimManager,
                                            final ClusterCoordinator clusterCoordinator, final AsyncLoadBalanceClientRegistry clientRegistry, final FlowFileSwapManager swapManager,
                                            final int swapThreshold, final EventReporter eventReporter) {
+        this(identifier, eventListener, scheduler, flowFileRepo, provRepo, contentRepo, resourceClaimManager, clusterCoordinator, clientRegistry, swapManager, swapThreshold,
+            eventReporter, null);
+    }
+
+    public SocketLoadBalancedFlowFileQueue(final String identifier, final ConnectionEventListener eventListener, final ProcessScheduler scheduler, final FlowFileRepository flowFileRepo,
+                                           final ProvenanceEventRepository provRepo, final ContentRepository contentRepo, final ResourceClaimManager resourceClaimManager,
+                                           final ClusterCoordinator clusterCoordinator, final AsyncLoadBalanceClientRegistry clientRegistry, final FlowFileSwapManager swapManager,
+                                           final int swapThreshold, final EventReporter eventReporter, final Executor swapInExecutor) {
 
         super(identifier, scheduler, flowFileRepo, provRepo, resourceClaimManager);
         this.eventListener = eventListener;
@@ -134,7 +143,7 @@ public class SocketLoadBalancedFlowFileQueue extends AbstractFlowFileQueue imple
         this.clusterCoordinator = clusterCoordinator;
         this.clientRegistry = clientRegistry;
 
-        localPartition = new SwappablePriorityQueueLocalPartition(swapManager, swapThreshold, eventReporter, this, this::drop);
+        localPartition = new SwappablePriorityQueueLocalPartition(swapManager, swapThreshold, eventReporter, this, this::drop, swapInExecutor);
         rebalancingPartition = new StandardRebalancingPartition(swapManager, swapThreshold, eventReporter, this, this::drop);
 
         // Create a RemoteQueuePartition for each node
@@ -202,7 +211,7 @@ public class SocketLoadBalancedFlowFileQueue extends AbstractFlowFileQueue imple
                 partitioner = new LocalPartitionPartitioner();
                 break;
             case PARTITION_BY_ATTRIBUTE:
-                partitioner = new CorrelationAttributePartitioner(partitioningAttribute);
+                partitioner = new CorrelationAttributePartitioner(partitioningAttribute, clusterCoordinator::getLocalNodeIdentifier);
                 break;
             case ROUND_ROBIN:
                 partitioner = new RoundRobinPartitioner();
@@ -671,6 +680,7 @@ public class SocketLoadBalancedFlowFileQueue extends AbstractFlowFileQueue imple
                         final FlowFileQueueContents partitionContents = existingPartition.packageForRebalance(localPartition.getSwapPartitionName());
                         logger.debug("Transferred data from {} to {}", existingPartition, localPartition);
                         localPartition.inheritQueueContents(partitionContents);
+                        eventListener.triggerDestinationEvent();
                     }
 
                     continue;
@@ -789,6 +799,7 @@ public class SocketLoadBalancedFlowFileQueue extends AbstractFlowFileQueue imple
                 // size has been updated to account for them and therefore we will not attempt to assign a negative queue size.
                 adjustSize(flowFiles.size(), flowFiles.stream().mapToLong(FlowFileRecord::getSize).sum());
                 localPartition.putAll(flowFiles);
+                eventListener.triggerDestinationEvent();
             }
         } finally {
             partitionReadLock.unlock();
@@ -823,7 +834,10 @@ public class SocketLoadBalancedFlowFileQueue extends AbstractFlowFileQueue imple
 
     @Override
     public void distributeToPartitions(final Collection<FlowFileRecord> flowFiles) {
-        distributeToPartitionsAndGet(flowFiles);
+        final Map<QueuePartition, List<FlowFileRecord>> partitionMap = distributeToPartitionsAndGet(flowFiles);
+        if (partitionMap.containsKey(localPartition)) {
+            eventListener.triggerDestinationEvent();
+        }
     }
 
     public Map<QueuePartition, List<FlowFileRecord>> distributeToPartitionsAndGet(final Collection<FlowFileRecord> flowFiles) {
@@ -996,6 +1010,11 @@ public class SocketLoadBalancedFlowFileQueue extends AbstractFlowFileQueue imple
         return localPartition.getListableFlowFiles();
     }
 
+    @Override
+    protected void onBackPressureMayBeRelieved() {
+        eventListener.triggerSourceEvent();
+    }
+
     @Override
     protected void dropFlowFiles(final DropFlowFileRequest dropRequest, final String requestor) {
         partitionReadLock.lock();
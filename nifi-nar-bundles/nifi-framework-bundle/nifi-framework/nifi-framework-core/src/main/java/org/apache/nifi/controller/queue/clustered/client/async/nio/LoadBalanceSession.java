@@ -21,6 +21,7 @@ import org.apache.nifi.controller.queue.LoadBalanceCompression;
 import org.apache.nifi.controller.queue.clustered.FlowFileContentAccess;
 import org.apache.nifi.controller.queue.clustered.TransactionThreshold;
 import org.apache.nifi.controller.queue.clustered.client.LoadBalanceFlowFileCodec;
+import org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceCompressionCodec;
 import org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants;
 import org.apache.nifi.controller.queue.clustered.server.TransactionAbortedException;
 import org.apache.nifi.controller.repository.ContentNotFoundException;
@@ -28,8 +29,6 @@ import org.apache.nifi.controller.repository.FlowFileRecord;
 import org.apache.nifi.remote.StandardVersionNegotiator;
 import org.apache.nifi.remote.VersionNegotiator;
 import org.apache.nifi.stream.io.ByteCountingOutputStream;
-import org.apache.nifi.stream.io.GZIPOutputStream;
-import org.apache.nifi.stream.io.StreamUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,10 +43,15 @@ import java.nio.channels.SelectionKey;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.OptionalInt;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Supplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.zip.CRC32;
 import java.util.zip.Checksum;
 
@@ -55,6 +59,8 @@ import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalancePro
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.ABORT_TRANSACTION;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.CONFIRM_CHECKSUM;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.CONFIRM_COMPLETE_TRANSACTION;
+import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.MORE_CONNECTIONS;
+import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.NO_MORE_CONNECTIONS;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.QUEUE_FULL;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.REJECT_CHECKSUM;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.REQEUST_DIFFERENT_VERSION;
@@ -65,27 +71,33 @@ import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalancePro
 public class LoadBalanceSession {
     private static final Logger logger = LoggerFactory.getLogger(LoadBalanceSession.class);
     static final int MAX_DATA_FRAME_SIZE = 65535;
+    // When content is compressed, fewer bytes are read per frame in order to leave room for the codec's worst-case overhead
+    // on incompressible data. Otherwise, the length of the compressed frame may not fit into the 2-byte frame length.
+    static final int MAX_COMPRESSIBLE_DATA_FRAME_SIZE = 65000;
     private static final long PENALTY_MILLIS = TimeUnit.SECONDS.toMillis(2L);
 
-    private final RegisteredPartition partition;
-    private final Supplier<FlowFileRecord> flowFileSupplier;
     private final FlowFileContentAccess flowFileContentAccess;
     private final LoadBalanceFlowFileCodec flowFileCodec;
+    private final LoadBalanceCompressionCodec compressionCodec;
+    private final Function<Predicate<RegisteredPartition>, RegisteredPartition> nextPartitionFunction;
     private final PeerChannel channel;
     private final int timeoutMillis;
     private final String peerDescription;
-    private final String connectionId;
     private final TransactionThreshold transactionThreshold;
 
-    final VersionNegotiator negotiator = new StandardVersionNegotiator(1);
-    private int protocolVersion = 1;
+    final VersionNegotiator negotiator;
+    private int protocolVersion;
 
     private final Checksum checksum = new CRC32();
 
     // guarded by synchronizing on 'this'
+    private RegisteredPartition partition;
+    private String connectionId;
     private ByteBuffer preparedFrame;
     private FlowFileRecord currentFlowFile;
     private List<FlowFileRecord> flowFilesSent = new ArrayList<>();
+    private final Map<RegisteredPartition, List<FlowFileRecord>> flowFilesSentByPartition = new LinkedHashMap<>();
+    private final Set<String> transactionConnectionIds = new HashSet<>();
     private TransactionPhase phase = TransactionPhase.RECOMMEND_PROTOCOL_VERSION;
     private InputStream flowFileInputStream;
     private byte[] byteBuffer = new byte[MAX_DATA_FRAME_SIZE];
@@ -93,13 +105,34 @@ public class LoadBalanceSession {
     private long readTimeout;
     private long penaltyExpiration = -1L;
 
+    /**
+     * Creates a session that sends FlowFiles for only the given partition, using version 1 of the Load Balance Protocol
+     */
     public LoadBalanceSession(final RegisteredPartition partition, final FlowFileContentAccess contentAccess, final LoadBalanceFlowFileCodec flowFileCodec, final PeerChannel peerChannel,
                               final int timeoutMillis, final TransactionThreshold transactionThreshold) {
-        this.partition = partition;
-        this.flowFileSupplier = partition.getFlowFileRecordSupplier();
-        this.connectionId = partition.getConnectionId();
+        this(partition, contentAccess, flowFileCodec, peerChannel, timeoutMillis, transactionThreshold, LoadBalanceCompressionCodec.GZIP, null, 1);
+    }
+
+    /**
+     * Creates a session that begins by sending FlowFiles for the given partition. If the peer supports version 2 of the Load Balance Protocol, the given compression
+     * codec is used, and once the partition has no more FlowFiles to send, the session uses the given function to obtain another partition whose FlowFiles are sent
+     * as part of the same transaction, until the Transaction Threshold is met. This avoids the protocol's round trips for each partition when many partitions have
+     * only a few small FlowFiles queued. The function is given a Predicate that the partition that it returns must satisfy and should return <code>null</code> if
+     * no such partition has data to send.
+     */
+    public LoadBalanceSession(final RegisteredPartition partition, final FlowFileContentAccess contentAccess, final LoadBalanceFlowFileCodec flowFileCodec, final PeerChannel peerChannel,
+                              final int timeoutMillis, final TransactionThreshold transactionThreshold, final LoadBalanceCompressionCodec compressionCodec,
+                              final Function<Predicate<RegisteredPartition>, RegisteredPartition> nextPartitionFunction) {
+        this(partition, contentAccess, flowFileCodec, peerChannel, timeoutMillis, transactionThreshold, compressionCodec, nextPartitionFunction, 2);
+    }
+
+    private LoadBalanceSession(final RegisteredPartition partition, final FlowFileContentAccess contentAccess, final LoadBalanceFlowFileCodec flowFileCodec, final PeerChannel peerChannel,
+                               final int timeoutMillis, final TransactionThreshold transactionThreshold, final LoadBalanceCompressionCodec compressionCodec,
+                               final Function<Predicate<RegisteredPartition>, RegisteredPartition> nextPartitionFunction, final int maxProtocolVersion) {
         this.flowFileContentAccess = contentAccess;
         this.flowFileCodec = flowFileCodec;
+        this.compressionCodec = compressionCodec;
+        this.nextPartitionFunction = nextPartitionFunction;
         this.channel = peerChannel;
         this.peerDescription = peerChannel.getPeerDescription();
 
@@ -108,12 +141,35 @@ public class LoadBalanceSession {
         }
         this.timeoutMillis = timeoutMillis;
         this.transactionThreshold = transactionThreshold;
+
+        this.negotiator = maxProtocolVersion > 1 ? new StandardVersionNegotiator(2, 1) : new StandardVersionNegotiator(1);
+        this.protocolVersion = maxProtocolVersion;
+
+        startPartition(partition);
+    }
+
+    private void startPartition(final RegisteredPartition partition) {
+        this.partition = partition;
+        this.connectionId = partition.getConnectionId();
+
+        transactionConnectionIds.add(connectionId);
+        flowFilesSentByPartition.put(partition, new ArrayList<>());
     }
 
-    public RegisteredPartition getPartition() {
+    /**
+     * @return the partition whose FlowFiles are currently being sent
+     */
+    public synchronized RegisteredPartition getPartition() {
         return partition;
     }
 
+    /**
+     * @return the FlowFiles that have been sent in this session for each partition whose FlowFiles are part of the transaction
+     */
+    public synchronized Map<RegisteredPartition, List<FlowFileRecord>> getFlowFilesSentByPartition() {
+        return Collections.unmodifiableMap(flowFilesSentByPartition);
+    }
+
     public synchronized int getDesiredReadinessFlag() {
         return phase.getRequiredSelectionKey();
     }
@@ -247,6 +303,8 @@ public class LoadBalanceSession {
                 return checkSpace();
             case GET_NEXT_FLOWFILE:
                 return getNextFlowFile();
+            case NEXT_PARTITION:
+                return getNextPartition();
             case SEND_FLOWFILE_DEFINITION:
             case SEND_FLOWFILE_CONTENTS:
                 return getFlowFileContent();
@@ -294,7 +352,8 @@ public class LoadBalanceSession {
                 flowFileInputStream = flowFileContentAccess.read(currentFlowFile);
             }
 
-            final int bytesRead = StreamUtils.fillBuffer(flowFileInputStream, byteBuffer, false);
+            final boolean compressContent = partition.getCompression() == LoadBalanceCompression.COMPRESS_ATTRIBUTES_AND_CONTENT;
+            final int bytesRead = fillDataFrame(flowFileInputStream, compressContent ? MAX_COMPRESSIBLE_DATA_FRAME_SIZE : MAX_DATA_FRAME_SIZE);
             if (bytesRead < 1) {
                 // If no data available, close the stream and move on to the next phase, returning a NO_DATA_FRAME buffer.
                 flowFileInputStream.close();
@@ -315,7 +374,7 @@ public class LoadBalanceSession {
             logger.trace("Sending Data Frame that is {} bytes long to Peer {}", bytesRead, peerDescription);
             final ByteBuffer buffer;
 
-            if (partition.getCompression() == LoadBalanceCompression.COMPRESS_ATTRIBUTES_AND_CONTENT) {
+            if (compressContent) {
                 final byte[] compressed = compressDataFrame(byteBuffer, bytesRead);
                 final int compressedMaxLen = compressed.length;
 
@@ -344,37 +403,54 @@ public class LoadBalanceSession {
         }
     }
 
+    private int fillDataFrame(final InputStream in, final int maxLength) throws IOException {
+        int bytesRead = 0;
+        int len;
+        while (bytesRead < maxLength && (len = in.read(byteBuffer, bytesRead, maxLength - bytesRead)) > 0) {
+            bytesRead += len;
+        }
+
+        return bytesRead;
+    }
+
     private byte[] compressDataFrame(final byte[] uncompressed, final int byteCount) throws IOException {
         try (final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             final OutputStream gzipOut = new GZIPOutputStream(baos, 1)) {
+             final OutputStream compressedOut = getCompressionCodec().compress(baos)) {
 
-            gzipOut.write(uncompressed, 0, byteCount);
-            gzipOut.close();
+            compressedOut.write(uncompressed, 0, byteCount);
+            compressedOut.close();
 
             return baos.toByteArray();
         }
     }
 
+    private LoadBalanceCompressionCodec getCompressionCodec() {
+        // Version 1 of the protocol supports only GZIP.
+        return protocolVersion > 1 ? compressionCodec : LoadBalanceCompressionCodec.GZIP;
+    }
+
     private ByteBuffer getNextFlowFile() throws IOException {
         if (transactionThreshold.isThresholdMet()) {
             currentFlowFile = null;
             logger.debug("Transaction Threshold reached sending to Peer {}; Transitioning phase to SEND_CHECKSUM", peerDescription);
         } else {
-            currentFlowFile = flowFileSupplier.get();
+            currentFlowFile = partition.getFlowFileRecordSupplier().get();
 
             if (currentFlowFile == null) {
-                logger.debug("No more FlowFiles to send to Peer {}; Transitioning phase to SEND_CHECKSUM", peerDescription);
+                logger.debug("No more FlowFiles to send to Peer {} for Connection {}", peerDescription, connectionId);
             }
         }
 
         if (currentFlowFile == null) {
-            phase = TransactionPhase.SEND_CHECKSUM;
+            // Beginning with version 2 of the protocol, FlowFiles for other Connections may follow in the same transaction.
+            phase = protocolVersion > 1 ? TransactionPhase.NEXT_PARTITION : TransactionPhase.SEND_CHECKSUM;
             return noMoreFlowFiles();
         }
 
         transactionThreshold.adjust(1, currentFlowFile.getSize());
         logger.debug("Next FlowFile to send to Peer {} is {}", peerDescription, currentFlowFile);
         flowFilesSent.add(currentFlowFile);
+        flowFilesSentByPartition.get(partition).add(currentFlowFile);
 
         final LoadBalanceCompression compression = partition.getCompression();
         final boolean compressAttributes = compression != LoadBalanceCompression.DO_NOT_COMPRESS;
@@ -383,8 +459,8 @@ public class LoadBalanceSession {
         final byte[] flowFileEncoded;
         try (final ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
             if (compressAttributes) {
-                try (final OutputStream gzipOut = new GZIPOutputStream(baos, 1);
-                     final ByteCountingOutputStream out = new ByteCountingOutputStream(gzipOut)) {
+                try (final OutputStream compressedOut = getCompressionCodec().compress(baos);
+                     final ByteCountingOutputStream out = new ByteCountingOutputStream(compressedOut)) {
 
                     flowFileCodec.encode(currentFlowFile, out);
                 }
@@ -519,9 +595,18 @@ public class LoadBalanceSession {
     private ByteBuffer getConnectionId() {
         logger.debug("Sending Connection ID {} to Peer {}", connectionId, peerDescription);
 
-        final ByteBuffer buffer = ByteBuffer.allocate(connectionId.length() + 2);
-        buffer.putShort((short) connectionId.length());
-        buffer.put(connectionId.getBytes(StandardCharsets.UTF_8));
+        final byte[] connectionIdBytes = connectionId.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer;
+        if (protocolVersion > 1) {
+            // Beginning with version 2 of the protocol, the compression codec precedes the first Connection ID.
+            buffer = ByteBuffer.allocate(connectionIdBytes.length + 3);
+            buffer.put((byte) compressionCodec.getId());
+        } else {
+            buffer = ByteBuffer.allocate(connectionIdBytes.length + 2);
+        }
+
+        buffer.putShort((short) connectionIdBytes.length);
+        buffer.put(connectionIdBytes);
         buffer.rewind();
 
         final byte[] frameBytes = buffer.array();
@@ -531,6 +616,40 @@ public class LoadBalanceSession {
         return buffer;
     }
 
+    private ByteBuffer getNextPartition() {
+        final RegisteredPartition nextPartition;
+        if (transactionThreshold.isThresholdMet() || nextPartitionFunction == null) {
+            nextPartition = null;
+        } else {
+            nextPartition = nextPartitionFunction.apply(candidate -> !transactionConnectionIds.contains(candidate.getConnectionId()));
+        }
+
+        final ByteBuffer buffer;
+        if (nextPartition == null) {
+            logger.debug("No more Connections with FlowFiles to send to Peer {}; Transitioning phase to SEND_CHECKSUM", peerDescription);
+
+            buffer = ByteBuffer.allocate(1);
+            buffer.put((byte) NO_MORE_CONNECTIONS);
+            phase = TransactionPhase.SEND_CHECKSUM;
+        } else {
+            startPartition(nextPartition);
+            logger.debug("Will send FlowFiles for Connection {} to Peer {} in the same transaction", connectionId, peerDescription);
+
+            final byte[] connectionIdBytes = connectionId.getBytes(StandardCharsets.UTF_8);
+            buffer = ByteBuffer.allocate(connectionIdBytes.length + 3);
+            buffer.put((byte) MORE_CONNECTIONS);
+            buffer.putShort((short) connectionIdBytes.length);
+            buffer.put(connectionIdBytes);
+            phase = TransactionPhase.CHECK_SPACE;
+        }
+
+        final byte[] frameBytes = buffer.array();
+        checksum.update(frameBytes, 0, frameBytes.length);
+
+        buffer.rewind();
+        return buffer;
+    }
+
     private ByteBuffer checkSpace() {
         logger.debug("Sending a 'Check Space' request to Peer {} to determine if there is space in the queue for more FlowFiles", peerDescription);
 
@@ -574,6 +693,12 @@ public class LoadBalanceSession {
         if (response == SPACE_AVAILABLE) {
             logger.debug("Peer {} has confirmed that space is available in Connection {}", peerDescription, connectionId);
             phase = TransactionPhase.GET_NEXT_FLOWFILE;
+        } else if (response == QUEUE_FULL && protocolVersion > 1) {
+            // Skip this Connection but continue the transaction, as there may be FlowFiles for other Connections to send.
+            logger.debug("Peer {} has confirmed that the queue is full for Connection {}; will not send FlowFiles for this Connection", peerDescription, connectionId);
+            flowFilesSentByPartition.remove(partition);
+            partition.penalize(PENALTY_MILLIS);
+            phase = TransactionPhase.NEXT_PARTITION;
         } else if (response == QUEUE_FULL) {
             logger.debug("Peer {} has confirmed that the queue is full for Connection {}", peerDescription, connectionId);
             phase = TransactionPhase.RECOMMEND_PROTOCOL_VERSION;
@@ -619,6 +744,8 @@ public class LoadBalanceSession {
 
         GET_NEXT_FLOWFILE(SelectionKey.OP_WRITE),
 
+        NEXT_PARTITION(SelectionKey.OP_WRITE),
+
         SEND_CHECKSUM(SelectionKey.OP_WRITE),
 
         VERIFY_CHECKSUM(SelectionKey.OP_READ),
@@ -26,6 +26,7 @@ import org.apache.nifi.controller.queue.clustered.client.LoadBalanceFlowFileCode
 import org.apache.nifi.controller.queue.clustered.client.async.AsyncLoadBalanceClient;
 import org.apache.nifi.controller.queue.clustered.client.async.TransactionCompleteCallback;
 import org.apache.nifi.controller.queue.clustered.client.async.TransactionFailureCallback;
+import org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceCompressionCodec;
 import org.apache.nifi.controller.repository.FlowFileRecord;
 import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.reporting.Severity;
@@ -65,6 +66,7 @@ public class NioAsyncLoadBalanceClient implements AsyncLoadBalanceClient {
     private final int timeoutMillis;
     private final FlowFileContentAccess flowFileContentAccess;
     private final LoadBalanceFlowFileCodec flowFileCodec;
+    private final LoadBalanceCompressionCodec compressionCodec;
     private final EventReporter eventReporter;
 
     private volatile boolean running = false;
@@ -89,11 +91,17 @@ public class NioAsyncLoadBalanceClient implements AsyncLoadBalanceClient {
 
     public NioAsyncLoadBalanceClient(final NodeIdentifier nodeIdentifier, final SSLContext sslContext, final int timeoutMillis, final FlowFileContentAccess flowFileContentAccess,
                                      final LoadBalanceFlowFileCodec flowFileCodec, final EventReporter eventReporter) {
+        this(nodeIdentifier, sslContext, timeoutMillis, flowFileContentAccess, flowFileCodec, LoadBalanceCompressionCodec.GZIP, eventReporter);
+    }
+
+    public NioAsyncLoadBalanceClient(final NodeIdentifier nodeIdentifier, final SSLContext sslContext, final int timeoutMillis, final FlowFileContentAccess flowFileContentAccess,
+                                     final LoadBalanceFlowFileCodec flowFileCodec, final LoadBalanceCompressionCodec compressionCodec, final EventReporter eventReporter) {
         this.nodeIdentifier = nodeIdentifier;
         this.sslContext = sslContext;
         this.timeoutMillis = timeoutMillis;
         this.flowFileContentAccess = flowFileContentAccess;
         this.flowFileCodec = flowFileCodec;
+        this.compressionCodec = compressionCodec;
         this.eventReporter = eventReporter;
     }
 
@@ -246,7 +254,9 @@ public class NioAsyncLoadBalanceClient implements AsyncLoadBalanceClient {
                         loadBalanceSession.getPartition().getConnectionId() + " due to " + e);
 
                     penalize();
-                    loadBalanceSession.getPartition().getFailureCallback().onTransactionFailed(loadBalanceSession.getFlowFilesSent(), e, TransactionFailureCallback.TransactionPhase.SENDING);
+                    for (final Map.Entry<RegisteredPartition, List<FlowFileRecord>> entry : loadBalanceSession.getFlowFilesSentByPartition().entrySet()) {
+                        entry.getKey().getFailureCallback().onTransactionFailed(entry.getValue(), e, TransactionFailureCallback.TransactionPhase.SENDING);
+                    }
                     close();
 
                     return false;
@@ -256,7 +266,9 @@ public class NioAsyncLoadBalanceClient implements AsyncLoadBalanceClient {
             } while (success);
 
             if (loadBalanceSession.isComplete()) {
-                loadBalanceSession.getPartition().getSuccessCallback().onTransactionComplete(loadBalanceSession.getFlowFilesSent(), nodeIdentifier);
+                for (final Map.Entry<RegisteredPartition, List<FlowFileRecord>> entry : loadBalanceSession.getFlowFilesSentByPartition().entrySet()) {
+                    entry.getKey().getSuccessCallback().onTransactionComplete(entry.getValue(), nodeIdentifier);
+                }
             }
 
             return anySuccess;
@@ -289,10 +301,12 @@ public class NioAsyncLoadBalanceClient implements AsyncLoadBalanceClient {
                 loadBalanceSession = null;
 
                 logger.debug("Node {} disconnected so will terminate the Load Balancing Session", nodeIdentifier);
-                final List<FlowFileRecord> flowFilesSent = session.getFlowFilesSent();
+                for (final Map.Entry<RegisteredPartition, List<FlowFileRecord>> entry : session.getFlowFilesSentByPartition().entrySet()) {
+                    final List<FlowFileRecord> flowFilesSent = entry.getValue();
 
-                if (!flowFilesSent.isEmpty()) {
-                    session.getPartition().getFailureCallback().onTransactionFailed(session.getFlowFilesSent(), TransactionFailureCallback.TransactionPhase.SENDING);
+                    if (!flowFilesSent.isEmpty()) {
+                        entry.getKey().getFailureCallback().onTransactionFailed(flowFilesSent, TransactionFailureCallback.TransactionPhase.SENDING);
+                    }
                 }
 
                 close();
@@ -347,7 +361,7 @@ public class NioAsyncLoadBalanceClient implements AsyncLoadBalanceClient {
         try {
             RegisteredPartition partition;
             while ((partition = partitionQueue.poll()) != null) {
-                if (partition.isEmpty() || !filter.test(partition)) {
+                if (partition.isEmpty() || partition.isPenalized() || !filter.test(partition)) {
                     polledPartitions.add(partition);
                     continue;
                 }
@@ -371,12 +385,26 @@ public class NioAsyncLoadBalanceClient implements AsyncLoadBalanceClient {
             return null;
         }
 
-        loadBalanceSession = new LoadBalanceSession(readyPartition, flowFileContentAccess, flowFileCodec, channel, timeoutMillis, newTransactionThreshold());
+        loadBalanceSession = new LoadBalanceSession(readyPartition, flowFileContentAccess, flowFileCodec, channel, timeoutMillis, newTransactionThreshold(),
+            compressionCodec, this::getNextPartition);
         partitionQueue.offer(readyPartition);
 
         return loadBalanceSession;
     }
 
+    /**
+     * Obtains the next partition that has data ready to be transmitted and satisfies the given filter, so that its FlowFiles can be sent as part of
+     * an active Load Balance Session
+     */
+    private synchronized RegisteredPartition getNextPartition(final Predicate<RegisteredPartition> filter) {
+        final RegisteredPartition readyPartition = getReadyPartition(filter);
+        if (readyPartition != null) {
+            partitionQueue.offer(readyPartition);
+        }
+
+        return readyPartition;
+    }
+
     private TransactionThreshold newTransactionThreshold() {
          return new SimpleLimitThreshold(1000, 10_000_000L);
     }
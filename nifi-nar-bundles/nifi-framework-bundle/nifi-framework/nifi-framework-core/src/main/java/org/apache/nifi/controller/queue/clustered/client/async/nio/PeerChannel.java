@@ -24,6 +24,7 @@ import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLException;
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
@@ -141,10 +142,15 @@ public class PeerChannel implements Closeable {
         }
 
         final int bytesRead = socketChannel.read(streamBuffer);
-        if (bytesRead < 1) {
+        if (bytesRead < 0) {
             return bytesRead;
         }
 
+        // Even if no new data is available, there may be complete TLS records left over from a previous read that have yet to be decrypted.
+        if (bytesRead == 0 && streamBuffer.position() == 0) {
+            return 0;
+        }
+
         if (bytesRead > 0) {
             logger.trace("Read {} bytes from SocketChannel", bytesRead);
         }
@@ -155,23 +161,30 @@ public class PeerChannel implements Closeable {
             if (sslEngine == null) {
                 cloneToApplicationBuffer(streamBuffer);
                 return copy(applicationBuffer, dst);
-            } else {
+            }
+
+            // A single read may contain several TLS records, and some records (such as TLS 1.3 post-handshake messages) contain no application data,
+            // so keep decrypting until we obtain application data or run out of complete records.
+            while (streamBuffer.hasRemaining()) {
                 final boolean decrypted = decrypt(streamBuffer);
                 logger.trace("Decryption after reading those bytes successful = {}", decrypted);
 
-                if (decrypted) {
+                if (!decrypted) {
+                    // Not enough data to decrypt. The buffer is compacted below so that we keep the data we have
+                    // but prepare the buffer to be written to again.
+                    logger.debug("Not enough data to decrypt. Will need to consume more data before decrypting");
+                    return 0;
+                }
+
+                if (destinationBuffer.hasRemaining()) {
                     cloneToApplicationBuffer(destinationBuffer);
                     logger.trace("Cloned destination buffer to application buffer");
 
                     return copy(applicationBuffer, dst);
-                } else {
-                    // Not enough data to decrypt. Compact the buffer so that we keep the data we have
-                    // but prepare the buffer to be written to again.
-                    logger.debug("Not enough data to decrypt. Will need to consume more data before decrypting");
-                    streamBuffer.compact();
-                    return 0;
                 }
             }
+
+            return 0;
         } finally {
             streamBuffer.compact();
         }
@@ -299,7 +312,9 @@ public class PeerChannel implements Closeable {
             switch (handshakeStatus) {
                 case FINISHED:
                 case NOT_HANDSHAKING:
+                    // Retain any data that the Peer sent immediately after the handshake so that it is available to the next read.
                     streamBuffer.clear();
+                    streamBuffer.put(unwrapBuffer);
                     destinationBuffer.clear();
                     logger.debug("Completed SSL Handshake with Peer {}", peerDescription);
                     return;
@@ -348,6 +363,10 @@ public class PeerChannel implements Closeable {
                         unwrapBuffer.compact();
                         final int bytesRead = socketChannel.read(unwrapBuffer);
                         unwrapBuffer.flip();
+                        if (bytesRead < 0) {
+                            throw new EOFException("Peer " + peerDescription + " closed the connection before the SSL Handshake could be completed");
+                        }
+
                         logger.debug("Read {} bytes for NEED_UNWRAP portion of Handshake", bytesRead);
                     }
 
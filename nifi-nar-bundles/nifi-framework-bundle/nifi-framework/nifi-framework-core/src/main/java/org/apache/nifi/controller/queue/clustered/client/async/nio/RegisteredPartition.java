@@ -33,6 +33,7 @@ public class RegisteredPartition {
     private final TransactionCompleteCallback successCallback;
     private final Supplier<LoadBalanceCompression> compressionSupplier;
     private final BooleanSupplier honorBackpressureSupplier;
+    private volatile long penaltyExpiration = -1L;
 
     public RegisteredPartition(final String connectionId, final BooleanSupplier emptySupplier, final Supplier<FlowFileRecord> flowFileSupplier, final TransactionFailureCallback failureCallback,
                                final TransactionCompleteCallback successCallback, final Supplier<LoadBalanceCompression> compressionSupplier, final BooleanSupplier honorBackpressureSupplier) {
@@ -72,4 +73,19 @@ public class RegisteredPartition {
     public boolean isHonorBackpressure() {
         return honorBackpressureSupplier.getAsBoolean();
     }
+
+    /**
+     * Indicates that no data should be sent for this partition until the given amount of time has elapsed, such as when the
+     * peer has indicated that its queue is full
+     *
+     * @param millis the number of milliseconds to penalize the partition for
+     */
+    public void penalize(final long millis) {
+        penaltyExpiration = System.currentTimeMillis() + millis;
+    }
+
+    public boolean isPenalized() {
+        final long expiration = penaltyExpiration;
+        return expiration > -1L && System.currentTimeMillis() < expiration;
+    }
 }
@@ -17,36 +17,106 @@
 
 package org.apache.nifi.controller.queue.clustered.partition;
 
+import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
+import org.apache.nifi.cluster.protocol.NodeIdentifier;
 import org.apache.nifi.controller.repository.FlowFileRecord;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Partitions FlowFiles by the value of a FlowFile attribute so that all FlowFiles with the same value are sent to the same node.
+ * </p>
+ *
+ * <p>
+ * Partitions are chosen using Rendezvous (Highest Random Weight) Hashing: every node is given a score for the attribute value, derived from
+ * the value and the node's address, and the node with the highest score is chosen. Because a node's score does not depend on which other nodes
+ * are in the cluster, or on the order of the partitions, adding a node only moves the values for which the new node now has the highest score, and
+ * removing a node only moves the values that belonged to that node. That is about 1/N of the values, rather than nearly all of them.
+ * </p>
+ */
 public class CorrelationAttributePartitioner implements FlowFilePartitioner {
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
     private final String partitioningAttribute;
+    private final Supplier<NodeIdentifier> localNodeIdentifierSupplier;
+    private volatile PartitionSeeds partitionSeeds;
 
-    public CorrelationAttributePartitioner(final String partitioningAttribute) {
+    /**
+     * @param partitioningAttribute the name of the attribute to partition by
+     * @param localNodeIdentifierSupplier supplies the identifier of this node, which is needed in order to score the local partition the same way
+     *            that the other nodes in the cluster score it
+     */
+    public CorrelationAttributePartitioner(final String partitioningAttribute, final Supplier<NodeIdentifier> localNodeIdentifierSupplier) {
         this.partitioningAttribute = partitioningAttribute;
+        this.localNodeIdentifierSupplier = localNodeIdentifierSupplier;
     }
 
     @Override
     public QueuePartition getPartition(final FlowFileRecord flowFile, final QueuePartition[] partitions,  final QueuePartition localPartition) {
-        final int hash = hash(flowFile);
-
-        // The consistentHash method appears to always return a bucket of '1' if there are 2 possible buckets,
-        // so in this case we will just use modulo division to avoid this. I suspect this is a bug with the Guava
-        // implementation, but it's not clear at this point.
-        final int index;
-        if (partitions.length < 3) {
-            index = Math.floorMod(hash, partitions.length);
-        } else {
-            index = Hashing.consistentHash(hash, partitions.length);
+        if (partitions.length == 1) {
+            return partitions[0];
+        }
+
+        final long[] seeds = getSeeds(partitions);
+        final long hash = hash(flowFile);
+
+        int index = 0;
+        long highestScore = Long.MIN_VALUE;
+        for (int i = 0; i < seeds.length; i++) {
+            final long score = score(hash, seeds[i]);
+            if (score > highestScore) {
+                highestScore = score;
+                index = i;
+            }
         }
 
         return partitions[index];
     }
 
-    protected int hash(final FlowFileRecord flowFile) {
+    protected long hash(final FlowFileRecord flowFile) {
         final String partitionAttributeValue = flowFile.getAttribute(partitioningAttribute);
-        return (partitionAttributeValue == null) ? 0 : partitionAttributeValue.hashCode();
+        return (partitionAttributeValue == null) ? 0L : HASH_FUNCTION.hashString(partitionAttributeValue, StandardCharsets.UTF_8).asLong();
+    }
+
+    private long[] getSeeds(final QueuePartition[] partitions) {
+        final NodeIdentifier localNodeId = localNodeIdentifierSupplier.get();
+
+        // The array of partitions is replaced whenever the cluster topology changes, so the seeds only need to be computed when a new array is given.
+        final PartitionSeeds cached = partitionSeeds;
+        if (cached != null && cached.partitions == partitions && cached.localNodeId == localNodeId) {
+            return cached.seeds;
+        }
+
+        final long[] seeds = new long[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            final Optional<NodeIdentifier> nodeId = partitions[i].getNodeIdentifier();
+            seeds[i] = seed(nodeId.isPresent() ? nodeId.get() : localNodeId);
+        }
+
+        partitionSeeds = new PartitionSeeds(partitions, localNodeId, seeds);
+        return seeds;
+    }
+
+    private static long seed(final NodeIdentifier nodeId) {
+        // Every node in the cluster must derive the same seed for a given node, so use the node's load-balance address, which identifies where its
+        // partition's data is sent, rather than a transient identifier.
+        final String nodeKey = nodeId == null ? "" : nodeId.getLoadBalanceAddress() + ":" + nodeId.getLoadBalancePort();
+        return HASH_FUNCTION.hashString(nodeKey, StandardCharsets.UTF_8).asLong();
+    }
+
+    private static long score(final long hash, final long seed) {
+        // MurmurHash3 64-bit finalizer, which ensures that every bit of the hash and seed affects every bit of the score.
+        long value = hash ^ seed;
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
     }
 
     @Override
@@ -58,4 +128,16 @@ public class CorrelationAttributePartitioner implements FlowFilePartitioner {
     public boolean isRebalanceOnFailure() {
         return false;
     }
+
+    private static class PartitionSeeds {
+        private final QueuePartition[] partitions;
+        private final NodeIdentifier localNodeId;
+        private final long[] seeds;
+
+        private PartitionSeeds(final QueuePartition[] partitions, final NodeIdentifier localNodeId, final long[] seeds) {
+            this.partitions = partitions;
+            this.localNodeId = localNodeId;
+            this.seeds = seeds;
+        }
+    }
 }
@@ -0,0 +1,449 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.queue.clustered.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A minimal implementation of the LZ4 block format (https://github.com/lz4/lz4/blob/dev/doc/lz4_Block_format.md), used by the Load Balance Protocol
+ * to compress data with much lower CPU cost than GZIP. Data written to a compressing stream is buffered and compressed in blocks of up to
+ * {@link #MAX_BLOCK_LENGTH} bytes, each of which is written along with its uncompressed and compressed lengths. The protocol compresses individual
+ * data frames and FlowFile attributes, so nearly all data fits in a single block.
+ */
+public final class LZ4BlockCodec {
+    /**
+     * The maximum uncompressed length of a block, which both sides of version 2 of the Load Balance Protocol agree upon. The lengths of a block
+     * are sent by the peer, so a block that claims to be larger is rejected before any memory is allocated for it.
+     */
+    public static final int MAX_BLOCK_LENGTH = 16 * 1024 * 1024;
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_LOG = 12;
+    private static final int RUN_MASK = 15;
+
+    // The hash table is reused across invocations without being cleared. Stale entries are harmless, as every candidate match is verified.
+    private static final ThreadLocal<int[]> hashTables = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    private LZ4BlockCodec() {
+    }
+
+    /**
+     * @param length the number of bytes to compress
+     * @return the maximum number of bytes that compressing the given number of bytes may produce
+     */
+    public static int maxCompressedLength(final int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses the given bytes into a single LZ4 block
+     *
+     * @param src the data to compress
+     * @param srcOff the offset into the source array
+     * @param srcLen the number of bytes to compress
+     * @param dest the destination, which must have at least {@link #maxCompressedLength(int)} bytes available after <code>destOff</code>
+     * @param destOff the offset into the destination array at which to begin writing
+     * @return the number of bytes written to the destination
+     */
+    public static int compress(final byte[] src, final int srcOff, final int srcLen, final byte[] dest, final int destOff) {
+        final int srcEnd = srcOff + srcLen;
+        final int matchLimit = srcEnd - LAST_LITERALS;
+        final int matchFindLimit = srcEnd - MATCH_FIND_LIMIT;
+
+        int anchor = srcOff;
+        int destIndex = destOff;
+
+        if (srcLen > MATCH_FIND_LIMIT) {
+            final int[] hashTable = hashTables.get();
+
+            int index = srcOff;
+            while (index < matchFindLimit) {
+                final int sequence = readInt(src, index);
+                final int hash = hash(sequence);
+                int reference = hashTable[hash];
+                hashTable[hash] = index;
+
+                if (reference < srcOff || reference >= index || index - reference > MAX_DISTANCE || readInt(src, reference) != sequence) {
+                    // Skip ahead faster the longer we go without finding a match, as the data is likely not compressible.
+                    index += 1 + ((index - anchor) >>> 6);
+                    continue;
+                }
+
+                // Extend the match backward, as long as we do not go beyond what we've already written.
+                while (index > anchor && reference > srcOff && src[index - 1] == src[reference - 1]) {
+                    index--;
+                    reference--;
+                }
+
+                int matchLength = MIN_MATCH;
+                while (index + matchLength < matchLimit && src[index + matchLength] == src[reference + matchLength]) {
+                    matchLength++;
+                }
+
+                destIndex = writeSequence(src, anchor, index - anchor, index - reference, matchLength, dest, destIndex);
+                index += matchLength;
+                anchor = index;
+
+                if (index < matchFindLimit) {
+                    hashTable[hash(readInt(src, index - 2))] = index - 2;
+                }
+            }
+        }
+
+        return writeLastLiterals(src, anchor, srcEnd - anchor, dest, destIndex) - destOff;
+    }
+
+    /**
+     * Decompresses a single LZ4 block
+     *
+     * @param src the compressed block
+     * @param srcOff the offset into the source array at which the block begins
+     * @param srcLen the length of the compressed block
+     * @param dest the destination for the decompressed data
+     * @param destOff the offset into the destination array at which to begin writing
+     * @param destLen the maximum number of bytes that may be written to the destination
+     * @return the number of bytes written to the destination
+     * @throws IOException if the block is malformed or decompresses to more than <code>destLen</code> bytes
+     */
+    public static int decompress(final byte[] src, final int srcOff, final int srcLen, final byte[] dest, final int destOff, final int destLen) throws IOException {
+        final int srcEnd = srcOff + srcLen;
+        final int destEnd = destOff + destLen;
+
+        int srcIndex = srcOff;
+        int destIndex = destOff;
+
+        while (true) {
+            if (srcIndex >= srcEnd) {
+                throw new EOFException("Malformed LZ4 block: block ended before final sequence");
+            }
+
+            final int token = src[srcIndex++] & 0xFF;
+
+            int literalLength = token >>> 4;
+            if (literalLength == RUN_MASK) {
+                int lengthByte;
+                do {
+                    if (srcIndex >= srcEnd) {
+                        throw new EOFException("Malformed LZ4 block: block ended while reading literal length");
+                    }
+
+                    lengthByte = src[srcIndex++] & 0xFF;
+                    literalLength += lengthByte;
+                } while (lengthByte == 255);
+            }
+
+            if (literalLength < 0 || literalLength > srcEnd - srcIndex || literalLength > destEnd - destIndex) {
+                throw new IOException("Malformed LZ4 block: invalid literal length of " + literalLength);
+            }
+
+            System.arraycopy(src, srcIndex, dest, destIndex, literalLength);
+            srcIndex += literalLength;
+            destIndex += literalLength;
+
+            // The final sequence consists only of literals.
+            if (srcIndex == srcEnd) {
+                return destIndex - destOff;
+            }
+
+            if (srcEnd - srcIndex < 2) {
+                throw new EOFException("Malformed LZ4 block: block ended while reading match offset");
+            }
+
+            final int offset = (src[srcIndex++] & 0xFF) | ((src[srcIndex++] & 0xFF) << 8);
+            final int reference = destIndex - offset;
+            if (offset == 0 || reference < destOff) {
+                throw new IOException("Malformed LZ4 block: invalid match offset of " + offset);
+            }
+
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK) {
+                int lengthByte;
+                do {
+                    if (srcIndex >= srcEnd) {
+                        throw new EOFException("Malformed LZ4 block: block ended while reading match length");
+                    }
+
+                    lengthByte = src[srcIndex++] & 0xFF;
+                    matchLength += lengthByte;
+                } while (lengthByte == 255);
+            }
+            matchLength += MIN_MATCH;
+
+            if (matchLength < 0 || matchLength > destEnd - destIndex) {
+                throw new IOException("Malformed LZ4 block: invalid match length of " + matchLength);
+            }
+
+            if (offset >= matchLength) {
+                System.arraycopy(dest, reference, dest, destIndex, matchLength);
+            } else {
+                // Overlapping match, such as a run of repeated bytes. Must be copied one byte at a time.
+                for (int i = 0; i < matchLength; i++) {
+                    dest[destIndex + i] = dest[reference + i];
+                }
+            }
+            destIndex += matchLength;
+        }
+    }
+
+    /**
+     * Returns an OutputStream that buffers the data written to it. Each time {@link #MAX_BLOCK_LENGTH} bytes have been buffered, and when the
+     * stream is closed, the buffered data is compressed as a single LZ4 block and written to the given stream, preceded by its 4-byte
+     * uncompressed length and 4-byte compressed length. Closing the stream closes the given stream.
+     *
+     * @param out the stream to write the compressed block to
+     * @return an OutputStream that compresses data
+     */
+    public static OutputStream compressingStream(final OutputStream out) {
+        return new CompressingOutputStream(out);
+    }
+
+    /**
+     * Returns an InputStream that provides the decompressed form of the data that was written by a stream created by {@link #compressingStream(OutputStream)}.
+     * Each block is read from the given stream in its entirety once all data of the previous block has been read. A block whose uncompressed
+     * length is greater than {@link #MAX_BLOCK_LENGTH} is rejected with an IOException.
+     *
+     * @param in the stream to read the compressed block from
+     * @return an InputStream that provides decompressed data
+     */
+    public static InputStream decompressingStream(final InputStream in) {
+        return new DecompressingInputStream(in);
+    }
+
+    private static int writeSequence(final byte[] src, final int literalOffset, final int literalLength, final int matchOffset, final int matchLength, final byte[] dest, final int destOff) {
+        final int tokenIndex = destOff;
+        int destIndex = destOff + 1;
+
+        int token;
+        if (literalLength >= RUN_MASK) {
+            token = RUN_MASK << 4;
+            destIndex = writeLength(literalLength - RUN_MASK, dest, destIndex);
+        } else {
+            token = literalLength << 4;
+        }
+
+        System.arraycopy(src, literalOffset, dest, destIndex, literalLength);
+        destIndex += literalLength;
+
+        dest[destIndex++] = (byte) matchOffset;
+        dest[destIndex++] = (byte) (matchOffset >>> 8);
+
+        final int encodedMatchLength = matchLength - MIN_MATCH;
+        if (encodedMatchLength >= RUN_MASK) {
+            token |= RUN_MASK;
+            destIndex = writeLength(encodedMatchLength - RUN_MASK, dest, destIndex);
+        } else {
+            token |= encodedMatchLength;
+        }
+
+        dest[tokenIndex] = (byte) token;
+        return destIndex;
+    }
+
+    private static int writeLastLiterals(final byte[] src, final int literalOffset, final int literalLength, final byte[] dest, final int destOff) {
+        int destIndex = destOff;
+        if (literalLength >= RUN_MASK) {
+            dest[destIndex++] = (byte) (RUN_MASK << 4);
+            destIndex = writeLength(literalLength - RUN_MASK, dest, destIndex);
+        } else {
+            dest[destIndex++] = (byte) (literalLength << 4);
+        }
+
+        System.arraycopy(src, literalOffset, dest, destIndex, literalLength);
+        return destIndex + literalLength;
+    }
+
+    private static int writeLength(final int length, final byte[] dest, final int destOff) {
+        int remaining = length;
+        int destIndex = destOff;
+        while (remaining >= 255) {
+            dest[destIndex++] = (byte) 255;
+            remaining -= 255;
+        }
+
+        dest[destIndex++] = (byte) remaining;
+        return destIndex;
+    }
+
+    private static int readInt(final byte[] src, final int offset) {
+        return (src[offset] & 0xFF) | ((src[offset + 1] & 0xFF) << 8) | ((src[offset + 2] & 0xFF) << 16) | ((src[offset + 3] & 0xFF) << 24);
+    }
+
+    private static int hash(final int value) {
+        return (value * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+
+    private static class CompressingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private byte[] compressed = new byte[0];
+        private boolean blockWritten = false;
+        private boolean closed = false;
+
+        public CompressingOutputStream(final OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            buffer.write(b);
+            if (buffer.size() >= MAX_BLOCK_LENGTH) {
+                writeBlock();
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            int offset = off;
+            int remaining = len;
+            while (remaining > 0) {
+                final int toWrite = Math.min(remaining, MAX_BLOCK_LENGTH - buffer.size());
+                buffer.write(b, offset, toWrite);
+                offset += toWrite;
+                remaining -= toWrite;
+
+                if (buffer.size() >= MAX_BLOCK_LENGTH) {
+                    writeBlock();
+                }
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            final int length = buffer.size();
+            final int maxCompressedLength = maxCompressedLength(length);
+            if (compressed.length < 8 + maxCompressedLength) {
+                compressed = new byte[8 + maxCompressedLength];
+            }
+
+            final int compressedLength = compress(buffer.toByteArray(), 0, length, compressed, 8);
+            writeInt(length, compressed, 0);
+            writeInt(compressedLength, compressed, 4);
+            out.write(compressed, 0, 8 + compressedLength);
+            buffer.reset();
+            blockWritten = true;
+        }
+
+        private void writeInt(final int value, final byte[] dest, final int destOff) {
+            dest[destOff] = (byte) (value >>> 24);
+            dest[destOff + 1] = (byte) (value >>> 16);
+            dest[destOff + 2] = (byte) (value >>> 8);
+            dest[destOff + 3] = (byte) value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            try {
+                // An empty stream is still written as a single, empty block.
+                if (buffer.size() > 0 || !blockWritten) {
+                    writeBlock();
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+
+    private static class DecompressingInputStream extends InputStream {
+        private final DataInputStream in;
+        private InputStream decompressed = new ByteArrayInputStream(new byte[0]);
+        private boolean finished = false;
+
+        public DecompressingInputStream(final InputStream in) {
+            this.in = new DataInputStream(in);
+        }
+
+        /**
+         * @return the decompressed data of the current block, reading the next block if all data of the current one has been read
+         */
+        private InputStream getDecompressed() throws IOException {
+            while (!finished && decompressed.available() == 0) {
+                final int firstByte = in.read();
+                if (firstByte < 0) {
+                    finished = true;
+                    break;
+                }
+
+                final int uncompressedLength = (firstByte << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+                if (uncompressedLength < 0) {
+                    throw new IOException("Malformed LZ4 block: invalid uncompressed length of " + uncompressedLength);
+                }
+                if (uncompressedLength > MAX_BLOCK_LENGTH) {
+                    throw new IOException("LZ4 block has an uncompressed length of " + uncompressedLength + " bytes, which exceeds the maximum block length of " + MAX_BLOCK_LENGTH + " bytes");
+                }
+
+                final int compressedLength = in.readInt();
+                final int maxCompressedLength = maxCompressedLength(uncompressedLength);
+                if (compressedLength < 0 || compressedLength > maxCompressedLength) {
+                    throw new IOException("Malformed LZ4 block: compressed length of " + compressedLength + " bytes is invalid, as " + uncompressedLength
+                        + " bytes compress to at most " + maxCompressedLength + " bytes");
+                }
+
+                final byte[] compressed = new byte[compressedLength];
+                in.readFully(compressed);
+
+                final byte[] uncompressed = new byte[uncompressedLength];
+                final int decompressedLength = decompress(compressed, 0, compressedLength, uncompressed, 0, uncompressedLength);
+                if (decompressedLength != uncompressedLength) {
+                    throw new IOException("Malformed LZ4 block: expected " + uncompressedLength + " bytes but block decompressed to " + decompressedLength + " bytes");
+                }
+
+                decompressed = new ByteArrayInputStream(uncompressed);
+            }
+
+            return decompressed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return getDecompressed().read();
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            return getDecompressed().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return decompressed.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
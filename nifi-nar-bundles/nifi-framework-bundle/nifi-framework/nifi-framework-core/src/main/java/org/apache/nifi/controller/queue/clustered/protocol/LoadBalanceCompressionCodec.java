@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.queue.clustered.protocol;
+
+import org.apache.nifi.stream.io.GZIPOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The codec that is used to compress FlowFile attributes and/or content when a connection is configured to compress data
+ * that is load balanced across the cluster. Prior to version 2 of the Load Balance Protocol, GZIP is always used. Beginning with
+ * version 2, the sending node indicates the codec by writing its identifier before the first Connection ID of a transaction.
+ */
+public enum LoadBalanceCompressionCodec {
+    /**
+     * GZIP compression at compression level 1. Offers a good compression ratio but typically limits throughput to well below
+     * the network bandwidth of a fast network.
+     */
+    GZIP(0x01) {
+        @Override
+        public OutputStream compress(final OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, 1);
+        }
+
+        @Override
+        public InputStream decompress(final InputStream in) throws IOException {
+            return new GZIPInputStream(in);
+        }
+    },
+
+    /**
+     * LZ4 block compression. Compresses less than GZIP but is an order of magnitude less expensive to compress and decompress.
+     */
+    LZ4(0x02) {
+        @Override
+        public OutputStream compress(final OutputStream out) {
+            return LZ4BlockCodec.compressingStream(out);
+        }
+
+        @Override
+        public InputStream decompress(final InputStream in) {
+            return LZ4BlockCodec.decompressingStream(in);
+        }
+    };
+
+    private final int id;
+
+    LoadBalanceCompressionCodec(final int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the identifier that is written to the wire in order to indicate which codec is in use
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns an OutputStream that compresses all data written to it and writes the compressed form to the given stream. The compressed
+     * data is guaranteed to be fully written only once the returned stream has been closed.
+     *
+     * @param out the stream to write compressed data to
+     * @return an OutputStream that compresses data
+     * @throws IOException if unable to create the stream
+     */
+    public abstract OutputStream compress(OutputStream out) throws IOException;
+
+    /**
+     * Returns an InputStream that decompresses data that was written by the stream returned from {@link #compress(OutputStream)}.
+     *
+     * @param in the stream of compressed data
+     * @return an InputStream that provides the decompressed data
+     * @throws IOException if unable to create the stream
+     */
+    public abstract InputStream decompress(InputStream in) throws IOException;
+
+    public static LoadBalanceCompressionCodec fromId(final int id) {
+        for (final LoadBalanceCompressionCodec codec : values()) {
+            if (codec.getId() == id) {
+                return codec;
+            }
+        }
+
+        return null;
+    }
+}
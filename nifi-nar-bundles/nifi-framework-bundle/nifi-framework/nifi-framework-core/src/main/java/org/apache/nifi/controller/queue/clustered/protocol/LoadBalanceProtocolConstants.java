@@ -34,6 +34,10 @@ public class LoadBalanceProtocolConstants {
     public static final int MORE_FLOWFILES = 0x31;
     public static final int NO_MORE_FLOWFILES = 0x32;
 
+    // Connection constants, used to send FlowFiles for multiple Connections in a single transaction (protocol version 2 and later)
+    public static final int MORE_CONNECTIONS = 0x51;
+    public static final int NO_MORE_CONNECTIONS = 0x52;
+
     // Backpressure / Space constants
     public static final int CHECK_SPACE = 0x61;
     public static final int SKIP_SPACE_CHECK = 0x62;
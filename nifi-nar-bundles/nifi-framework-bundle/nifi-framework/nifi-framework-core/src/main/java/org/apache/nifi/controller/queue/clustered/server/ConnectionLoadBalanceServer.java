@@ -24,21 +24,37 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.net.SocketTimeoutException;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.BlockingQueue;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
-
 
+/**
+ * <p>
+ * Receives FlowFiles that other nodes in the cluster are load balancing to this node. All connections are multiplexed over a single
+ * {@link Selector} so that a connection that is idle (which is the case for most connections, most of the time) does not tie up a thread.
+ * Only once a peer has begun sending a transaction is its connection handed to one of a small, fixed pool of worker threads, which runs the
+ * {@link LoadBalanceProtocol} against the connection and streams the data that is received into the repositories. Once the transaction
+ * completes, the connection is handed back to the Selector to wait for the next transaction.
+ * </p>
+ *
+ * <p>
+ * When an SSLContext is provided, TLS is layered over each accepted channel's Socket, so the {@link LoadBalanceProtocol} and the
+ * {@link LoadBalanceAuthorizer} continue to be given an {@link SSLSocket}. The handshake is performed by a worker thread when the
+ * peer first sends data.
+ * </p>
+ */
 public class ConnectionLoadBalanceServer {
     private static final Logger logger = LoggerFactory.getLogger(ConnectionLoadBalanceServer.class);
 
@@ -48,14 +64,12 @@ public class ConnectionLoadBalanceServer {
     private final ExecutorService threadPool;
     private final LoadBalanceProtocol loadBalanceProtocol;
     private final int connectionTimeoutMillis;
-    private final int numThreads;
     private final EventReporter eventReporter;
 
-    private volatile Set<CommunicateAction> communicationActions = Collections.emptySet();
-    private final BlockingQueue<Socket> connectionQueue = new LinkedBlockingQueue<>();
+    private final Queue<PeerConnection> connectionsToRegister = new ConcurrentLinkedQueue<>();
 
-    private volatile AcceptConnection acceptConnection;
-    private volatile ServerSocket serverSocket;
+    private volatile ServerSocketChannel serverChannel;
+    private volatile Selector selector;
     private volatile boolean stopped = true;
 
     public ConnectionLoadBalanceServer(final String hostname, final int port, final SSLContext sslContext, final int numThreads, final LoadBalanceProtocol loadBalanceProtocol,
@@ -65,7 +79,6 @@ public class ConnectionLoadBalanceServer {
         this.sslContext = sslContext;
         this.loadBalanceProtocol = loadBalanceProtocol;
         this.connectionTimeoutMillis = connectionTimeoutMillis;
-        this.numThreads = numThreads;
         this.eventReporter = eventReporter;
 
         threadPool = new FlowEngine(numThreads, "Load Balance Server");
@@ -77,171 +90,264 @@ public class ConnectionLoadBalanceServer {
         }
 
         stopped = false;
-        if (serverSocket != null) {
+        if (serverChannel != null) {
             return;
         }
 
         try {
-            serverSocket = createServerSocket();
+            serverChannel = createServerChannel();
+            selector = Selector.open();
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
         } catch (final Exception e) {
             throw new IOException("Could not begin listening for incoming connections in order to load balance data across the cluster. Please verify the values of the " +
                     "'nifi.cluster.load.balance.port' and 'nifi.cluster.load.balance.host' properties as well as the 'nifi.security.*' properties", e);
         }
 
-        final Set<CommunicateAction> actions = new HashSet<>(numThreads);
-        for (int i=0; i < numThreads; i++) {
-            final CommunicateAction action = new CommunicateAction(loadBalanceProtocol);
-            actions.add(action);
-            threadPool.submit(action);
-        }
-
-        this.communicationActions = actions;
-
-        acceptConnection = new AcceptConnection(serverSocket);
-        final Thread receiveConnectionThread = new Thread(acceptConnection);
-        receiveConnectionThread.setName("Receive Queue Load-Balancing Connections");
-        receiveConnectionThread.start();
+        final Thread selectorThread = new Thread(new SelectConnections());
+        selectorThread.setName("Receive Queue Load-Balancing Connections");
+        selectorThread.start();
     }
 
     public int getPort() {
-        return serverSocket.getLocalPort();
+        return serverChannel.socket().getLocalPort();
     }
 
     public void stop() {
-        stopped = false;
+        stopped = true;
         threadPool.shutdown();
 
-        if (acceptConnection != null) {
-            acceptConnection.stop();
+        final Selector selector = this.selector;
+        if (selector != null) {
+            selector.wakeup();
         }
+    }
 
-        communicationActions.forEach(CommunicateAction::stop);
+    private ServerSocketChannel createServerChannel() throws IOException {
+        final InetSocketAddress bindAddress = hostname == null ? new InetSocketAddress(port) : new InetSocketAddress(InetAddress.getByName(hostname), port);
 
-        Socket socket;
-        while ((socket = connectionQueue.poll()) != null) {
-            try {
-                socket.close();
-                logger.info("{} Closed connection to {} on Server stop", this, socket.getRemoteSocketAddress());
-            } catch (final IOException ioe) {
-                logger.warn("Failed to properly close socket to " + socket.getRemoteSocketAddress(), ioe);
-            }
+        final ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.bind(bindAddress, 50);
+            channel.configureBlocking(false);
+        } catch (final IOException ioe) {
+            channel.close();
+            throw ioe;
         }
+
+        return channel;
     }
 
-    private ServerSocket createServerSocket() throws IOException {
-        final InetAddress inetAddress = hostname == null ? null : InetAddress.getByName(hostname);
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
 
-        if (sslContext == null) {
-            return new ServerSocket(port, 50, InetAddress.getByName(hostname));
-        } else {
-            final ServerSocket serverSocket = sslContext.getServerSocketFactory().createServerSocket(port, 50, inetAddress);
-            ((SSLServerSocket) serverSocket).setNeedClientAuth(true);
-            return serverSocket;
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setSoTimeout(connectionTimeoutMillis);
+
+            final PeerConnection connection = new PeerConnection(channel);
+            channel.register(selector, SelectionKey.OP_READ, connection);
+            logger.debug("{} Accepted connection from {}", this, connection);
+        } catch (final IOException ioe) {
+            channel.close();
+            throw ioe;
         }
     }
 
+    private void registerPendingConnections() {
+        PeerConnection connection;
+        while ((connection = connectionsToRegister.poll()) != null) {
+            if (stopped) {
+                connection.close();
+                continue;
+            }
 
-    private class CommunicateAction implements Runnable {
-        private final LoadBalanceProtocol loadBalanceProtocol;
-        private volatile boolean stopped = false;
-
-        public CommunicateAction(final LoadBalanceProtocol loadBalanceProtocol) {
-            this.loadBalanceProtocol = loadBalanceProtocol;
+            try {
+                connection.getChannel().register(selector, SelectionKey.OP_READ, connection);
+            } catch (final Exception e) {
+                logger.warn("{} Failed to wait for further data from {}. Will close connection.", this, connection, e);
+                connection.close();
+            }
         }
+    }
 
-        public void stop() {
-            this.stopped = true;
+    private void recycle(final PeerConnection connection) {
+        if (stopped) {
+            connection.close();
+            return;
         }
 
+        connectionsToRegister.offer(connection);
+        selector.wakeup();
+    }
+
+
+    /**
+     * Waits for incoming connections and for data to become available on existing connections, handing each connection that has
+     * data available to the worker pool. While a worker owns a connection, the connection is not registered with the Selector.
+     */
+    private class SelectConnections implements Runnable {
         @Override
         public void run() {
-            String peerDescription = "<Unknown Client>";
-
             while (!stopped) {
-                Socket socket = null;
                 try {
-                    socket = connectionQueue.poll(1, TimeUnit.SECONDS);
-                    if (socket == null) {
-                        continue;
-                    }
+                    registerPendingConnections();
+                    selector.select(1000L);
 
-                    peerDescription = socket.getRemoteSocketAddress().toString();
+                    final List<PeerConnection> readyConnections = new ArrayList<>();
+                    final Iterator<SelectionKey> itr = selector.selectedKeys().iterator();
+                    while (itr.hasNext()) {
+                        final SelectionKey key = itr.next();
+                        itr.remove();
 
-                    if (socket.isClosed()) {
-                        logger.debug("Connection to Peer {} is closed. Will not attempt to communicate over this Socket.", peerDescription);
-                        continue;
-                    }
+                        if (!key.isValid()) {
+                            continue;
+                        }
 
-                    logger.debug("Receiving FlowFiles from Peer {}", peerDescription);
-                    loadBalanceProtocol.receiveFlowFiles(socket);
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isReadable()) {
+                            key.cancel();
+                            readyConnections.add((PeerConnection) key.attachment());
+                        }
+                    }
 
-                    if (socket.isConnected()) {
-                        logger.debug("Finished receiving FlowFiles from Peer {}. Will recycle connection.", peerDescription);
-                        connectionQueue.offer(socket);
-                    } else {
-                        logger.debug("Finished receiving FlowFiles from Peer {}. Socket is no longer connected so will not recycle connection.", peerDescription);
+                    if (readyConnections.isEmpty()) {
+                        continue;
                     }
-                } catch (final Exception e) {
-                    if (socket != null) {
-                        try {
-                            socket.close();
-                        } catch (final IOException ioe) {
-                            e.addSuppressed(ioe);
+
+                    // A channel cannot be placed back into blocking mode until its cancelled key has been deregistered, which happens on the next selection.
+                    selector.selectNow();
+                    for (final PeerConnection connection : readyConnections) {
+                        if (stopped) {
+                            connection.close();
+                        } else {
+                            threadPool.submit(new CommunicateAction(connection));
                         }
                     }
+                } catch (final Exception e) {
+                    logger.error("{} Failed to accept connection from other node in cluster", ConnectionLoadBalanceServer.this, e);
+                }
+            }
+
+            shutdown();
+        }
 
-                    logger.error("Failed to communicate with Peer {}", peerDescription, e);
-                    eventReporter.reportEvent(Severity.ERROR, "Load Balanced Connection", "Failed to receive FlowFiles for Load Balancing due to " + e);
+        private void shutdown() {
+            for (final SelectionKey key : selector.keys()) {
+                final Object attachment = key.attachment();
+                if (attachment instanceof PeerConnection) {
+                    ((PeerConnection) attachment).close();
+                    logger.info("{} Closed connection to {} on Server stop", ConnectionLoadBalanceServer.this, attachment);
                 }
             }
 
+            registerPendingConnections();
+
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (final Exception e) {
+                logger.warn("Failed to properly shutdown Server Socket for Load Balancing", e);
+            }
+
             logger.info("Connection Load Balance Server shutdown. Will no longer handle incoming requests.");
         }
     }
 
 
-    private class AcceptConnection implements Runnable {
-        private final ServerSocket serverSocket;
-        private volatile boolean stopped = false;
-
-        public AcceptConnection(final ServerSocket serverSocket) {
-            this.serverSocket = serverSocket;
-        }
+    private class CommunicateAction implements Runnable {
+        private final PeerConnection connection;
 
-        public void stop() {
-            stopped = true;
+        public CommunicateAction(final PeerConnection connection) {
+            this.connection = connection;
         }
 
         @Override
         public void run() {
             try {
-                serverSocket.setSoTimeout(1000);
+                final SocketChannel channel = connection.getChannel();
+                channel.configureBlocking(true);
+
+                final Socket socket = connection.getSocket();
+                logger.debug("Receiving FlowFiles from Peer {}", connection);
+                loadBalanceProtocol.receiveFlowFiles(socket);
+
+                if (socket.isClosed() || !channel.isOpen()) {
+                    logger.debug("Finished receiving FlowFiles from Peer {}. Socket is no longer connected so will not recycle connection.", connection);
+                    return;
+                }
+
+                logger.debug("Finished receiving FlowFiles from Peer {}. Will recycle connection.", connection);
+                channel.configureBlocking(false);
+                recycle(connection);
             } catch (final Exception e) {
-                logger.error("Failed to set soTimeout on Server Socket for Load Balancing data across cluster", e);
+                connection.close();
+
+                logger.error("Failed to communicate with Peer {}", connection, e);
+                eventReporter.reportEvent(Severity.ERROR, "Load Balanced Connection", "Failed to receive FlowFiles for Load Balancing due to " + e);
             }
+        }
+    }
 
-            while (!stopped) {
-                try {
-                    final Socket socket;
-                    try {
-                        socket = serverSocket.accept();
-                    } catch (final SocketTimeoutException ste) {
-                        continue;
-                    }
 
-                    socket.setSoTimeout(connectionTimeoutMillis);
-                    connectionQueue.offer(socket);
+    private class PeerConnection {
+        private final SocketChannel channel;
+        private final String peerDescription;
+        private Socket socket;
+
+        public PeerConnection(final SocketChannel channel) {
+            this.channel = channel;
+            this.peerDescription = String.valueOf(channel.socket().getRemoteSocketAddress());
+        }
+
+        public SocketChannel getChannel() {
+            return channel;
+        }
+
+        /**
+         * Returns the Socket that the protocol should communicate over. This must only be called while the channel is in blocking mode,
+         * as TLS is layered over the channel's Socket the first time that it is called.
+         */
+        public synchronized Socket getSocket() throws IOException {
+            if (socket == null) {
+                if (sslContext == null) {
+                    socket = channel.socket();
+                } else {
+                    final Socket plainSocket = channel.socket();
+                    final SSLSocket sslSocket = (SSLSocket) sslContext.getSocketFactory().createSocket(plainSocket, plainSocket.getInetAddress().getHostAddress(), plainSocket.getPort(), true);
+                    sslSocket.setUseClientMode(false);
+                    sslSocket.setNeedClientAuth(true);
+                    socket = sslSocket;
+                }
+            }
+
+            return socket;
+        }
+
+        public synchronized void close() {
+            if (socket != null && socket != channel.socket()) {
+                try {
+                    socket.close();
                 } catch (final Exception e) {
-                    logger.error("{} Failed to accept connection from other node in cluster", ConnectionLoadBalanceServer.this, e);
+                    // The TLS close_notify cannot be sent if the channel is not in blocking mode; closing the channel is sufficient.
+                    logger.debug("Failed to cleanly close TLS session with {}", peerDescription, e);
                 }
             }
 
             try {
-                serverSocket.close();
-            } catch (final Exception e) {
-                logger.warn("Failed to properly shutdown Server Socket for Load Balancing", e);
+                channel.close();
+            } catch (final IOException ioe) {
+                logger.warn("Failed to properly close socket to " + peerDescription, ioe);
             }
         }
+
+        @Override
+        public String toString() {
+            return peerDescription;
+        }
     }
 
     @Override
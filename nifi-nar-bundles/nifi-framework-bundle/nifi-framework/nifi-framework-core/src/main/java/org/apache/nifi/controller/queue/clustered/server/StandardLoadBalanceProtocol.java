@@ -22,6 +22,7 @@ import org.apache.nifi.controller.FlowController;
 import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.queue.LoadBalanceCompression;
 import org.apache.nifi.controller.queue.LoadBalancedFlowFileQueue;
+import org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceCompressionCodec;
 import org.apache.nifi.controller.repository.ContentRepository;
 import org.apache.nifi.controller.repository.FlowFileRecord;
 import org.apache.nifi.controller.repository.FlowFileRepository;
@@ -67,7 +68,6 @@ import java.util.stream.Collectors;
 import java.util.zip.CRC32;
 import java.util.zip.CheckedInputStream;
 import java.util.zip.Checksum;
-import java.util.zip.GZIPInputStream;
 
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.ABORT_PROTOCOL_NEGOTIATION;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.ABORT_TRANSACTION;
@@ -76,8 +76,10 @@ import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalancePro
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.CONFIRM_CHECKSUM;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.CONFIRM_COMPLETE_TRANSACTION;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.DATA_FRAME_FOLLOWS;
+import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.MORE_CONNECTIONS;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.MORE_FLOWFILES;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.NO_DATA_FRAME;
+import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.NO_MORE_CONNECTIONS;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.NO_MORE_FLOWFILES;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.QUEUE_FULL;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.REJECT_CHECKSUM;
@@ -140,7 +142,7 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
 
 
     protected int negotiateProtocolVersion(final InputStream in, final OutputStream out, final String peerDescription) throws IOException {
-        final VersionNegotiator negotiator = new StandardVersionNegotiator(1);
+        final VersionNegotiator negotiator = new StandardVersionNegotiator(2, 1);
 
         for (int i=0;; i++) {
             final int requestedVersion;
@@ -197,73 +199,60 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
         final InputStream checkedInput = new CheckedInputStream(in, checksum);
 
         final DataInputStream dataIn = new DataInputStream(checkedInput);
-        final String connectionId = getConnectionID(dataIn, peerDescription);
-        if (connectionId == null) {
-            logger.debug("Received no Connection ID from Peer {}. Will consider receipt of FlowFiles complete", peerDescription);
-            return;
-        }
-
-        final Connection connection = flowController.getFlowManager().getConnection(connectionId);
-        if (connection == null) {
-            logger.error("Attempted to receive FlowFiles from Peer {} for Connection with ID {} but no connection exists with that ID", peerDescription, connectionId);
-            throw new TransactionAbortedException("Attempted to receive FlowFiles from Peer " + peerDescription + " for Connection with ID " + connectionId + " but no Connection exists with that ID");
-        }
-
-        final FlowFileQueue flowFileQueue = connection.getFlowFileQueue();
-        if (!(flowFileQueue instanceof LoadBalancedFlowFileQueue)) {
-            throw new TransactionAbortedException("Attempted to receive FlowFiles from Peer " + peerDescription + " for Connection with ID " + connectionId + " but the Connection with that ID is " +
-                    "not configured to allow for Load Balancing");
-        }
 
-        final LoadBalancedFlowFileQueue loadBalancedFlowFileQueue = (LoadBalancedFlowFileQueue) flowFileQueue;
-
-        final int spaceCheck = dataIn.read();
-        if (spaceCheck < 0) {
-            throw new EOFException("Expected to receive a request to determine whether or not space was available for Connection with ID " + connectionId + " from Peer " + peerDescription);
+        // Beginning with version 2 of the protocol, the peer indicates which compression codec it uses. Version 1 always uses GZIP.
+        final LoadBalanceCompressionCodec codec = protocolVersion > 1 ? getCompressionCodec(dataIn, peerDescription) : LoadBalanceCompressionCodec.GZIP;
+        if (codec == null) {
+            logger.debug("Received no Compression Codec from Peer {}. Will consider receipt of FlowFiles complete", peerDescription);
+            return;
         }
 
-        if (spaceCheck == CHECK_SPACE) {
-            if (loadBalancedFlowFileQueue.isLocalPartitionFull()) {
-                logger.debug("Received a 'Check Space' request from Peer {} for Connection with ID {}; responding with QUEUE_FULL", peerDescription, connectionId);
-                out.write(QUEUE_FULL);
-                out.flush();
-                return; // we're finished receiving flowfiles for now, and we'll restart the communication process.
-            } else {
-                logger.debug("Received a 'Check Space' request from Peer {} for Connection with ID {}; responding with SPACE_AVAILABLE", peerDescription, connectionId);
-                out.write(SPACE_AVAILABLE);
-                out.flush();
-            }
-        } else if (spaceCheck != SKIP_SPACE_CHECK) {
-            throw new TransactionAbortedException("Expected to receive a request to determine whether or not space was available for Connection with ID "
-                + connectionId + " from Peer " + peerDescription + " but instead received value " + spaceCheck);
+        String connectionId = getConnectionID(dataIn, peerDescription);
+        if (connectionId == null) {
+            logger.debug("Received no Connection ID from Peer {}. Will consider receipt of FlowFiles complete", peerDescription);
+            return;
         }
 
-        final LoadBalanceCompression compression = connection.getFlowFileQueue().getLoadBalanceCompression();
-        logger.debug("Receiving FlowFiles from Peer {} for Connection {}; Compression = {}", peerDescription, connectionId, compression);
-
         ContentClaim contentClaim = null;
-        final List<RemoteFlowFileRecord> flowFilesReceived = new ArrayList<>();
+        final List<ConnectionFlowFiles> connectionFlowFilesReceived = new ArrayList<>();
         OutputStream contentClaimOut = null;
         long claimOffset = 0L;
 
         try {
             try {
-                while (isMoreFlowFiles(dataIn, protocolVersion)) {
-                    if (contentClaim == null) {
-                        contentClaim = contentRepository.create(false);
-                        contentClaimOut = contentRepository.write(contentClaim);
-                    }
+                while (connectionId != null) {
+                    final LoadBalancedFlowFileQueue flowFileQueue = getLoadBalancedFlowFileQueue(connectionId, peerDescription);
+
+                    if (isSpaceAvailable(dataIn, out, flowFileQueue, connectionId, peerDescription)) {
+                        final LoadBalanceCompression compression = flowFileQueue.getLoadBalanceCompression();
+                        logger.debug("Receiving FlowFiles from Peer {} for Connection {}; Compression = {}, Codec = {}", peerDescription, connectionId, compression, codec);
 
-                    final RemoteFlowFileRecord flowFile = receiveFlowFile(dataIn, contentClaimOut, contentClaim, claimOffset, protocolVersion, peerDescription, compression);
+                        final ConnectionFlowFiles connectionFlowFiles = new ConnectionFlowFiles(connectionId, flowFileQueue);
+                        connectionFlowFilesReceived.add(connectionFlowFiles);
 
-                    // The FlowFile's Content Claim will either be null or equal to the provided Content Claim.
-                    // Incrementing the FlowFile's content claim will increment the count for the provided Content Claim, if it was
-                    // assigned to the FlowFIle, or call incrementClaimantCount with an argument of null, which will do nothing.
-                    contentRepository.incrementClaimaintCount(flowFile.getFlowFile().getContentClaim());
+                        while (isMoreFlowFiles(dataIn, protocolVersion)) {
+                            if (contentClaim == null) {
+                                contentClaim = contentRepository.create(false);
+                                contentClaimOut = contentRepository.write(contentClaim);
+                            }
 
-                    flowFilesReceived.add(flowFile);
+                            final RemoteFlowFileRecord flowFile = receiveFlowFile(dataIn, contentClaimOut, contentClaim, claimOffset, protocolVersion, peerDescription, compression, codec);
 
-                    claimOffset += flowFile.getFlowFile().getSize();
+                            // The FlowFile's Content Claim will either be null or equal to the provided Content Claim.
+                            // Incrementing the FlowFile's content claim will increment the count for the provided Content Claim, if it was
+                            // assigned to the FlowFIle, or call incrementClaimantCount with an argument of null, which will do nothing.
+                            contentRepository.incrementClaimaintCount(flowFile.getFlowFile().getContentClaim());
+
+                            connectionFlowFiles.getFlowFiles().add(flowFile);
+
+                            claimOffset += flowFile.getFlowFile().getSize();
+                        }
+                    } else if (protocolVersion < 2) {
+                        return; // we're finished receiving flowfiles for now, and we'll restart the communication process.
+                    }
+
+                    // Beginning with version 2 of the protocol, FlowFiles for additional Connections may follow in the same transaction.
+                    connectionId = protocolVersion > 1 ? getNextConnectionID(dataIn, peerDescription) : null;
                 }
             } finally {
                 if (contentClaimOut != null) {
@@ -276,8 +265,8 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
             // we can go ahead and remove the Content Claim, since we know it's not being referenced.
             final int count = contentRepository.decrementClaimantCount(contentClaim);
 
-            verifyChecksum(checksum, in, out, peerDescription, flowFilesReceived.size());
-            completeTransaction(in, out, peerDescription, flowFilesReceived, connectionId, startTimestamp, (LoadBalancedFlowFileQueue) flowFileQueue);
+            verifyChecksum(checksum, in, out, peerDescription, getFlowFileCount(connectionFlowFilesReceived));
+            completeTransaction(in, out, peerDescription, connectionFlowFilesReceived, startTimestamp);
 
             if (count == 0) {
                 contentRepository.remove(contentClaim);
@@ -285,8 +274,10 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
         } catch (final Exception e) {
             // If any Exception occurs, we need to decrement the claimant counts for the Content Claims that we wrote to because
             // they are no longer needed.
-            for (final RemoteFlowFileRecord remoteFlowFile : flowFilesReceived) {
-                contentRepository.decrementClaimantCount(remoteFlowFile.getFlowFile().getContentClaim());
+            for (final ConnectionFlowFiles connectionFlowFiles : connectionFlowFilesReceived) {
+                for (final RemoteFlowFileRecord remoteFlowFile : connectionFlowFiles.getFlowFiles()) {
+                    contentRepository.decrementClaimantCount(remoteFlowFile.getFlowFile().getContentClaim());
+                }
             }
 
             contentRepository.remove(contentClaim);
@@ -294,11 +285,63 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
             throw e;
         }
 
-        logger.debug("Successfully received {} FlowFiles from Peer {} to Load Balance for Connection {}", flowFilesReceived.size(), peerDescription, connectionId);
+        logger.debug("Successfully received {} FlowFiles from Peer {} to Load Balance for {} Connection(s)", getFlowFileCount(connectionFlowFilesReceived), peerDescription,
+            connectionFlowFilesReceived.size());
+    }
+
+    private LoadBalancedFlowFileQueue getLoadBalancedFlowFileQueue(final String connectionId, final String peerDescription) throws IOException {
+        final Connection connection = flowController.getFlowManager().getConnection(connectionId);
+        if (connection == null) {
+            logger.error("Attempted to receive FlowFiles from Peer {} for Connection with ID {} but no connection exists with that ID", peerDescription, connectionId);
+            throw new TransactionAbortedException("Attempted to receive FlowFiles from Peer " + peerDescription + " for Connection with ID " + connectionId + " but no Connection exists with that ID");
+        }
+
+        final FlowFileQueue flowFileQueue = connection.getFlowFileQueue();
+        if (!(flowFileQueue instanceof LoadBalancedFlowFileQueue)) {
+            throw new TransactionAbortedException("Attempted to receive FlowFiles from Peer " + peerDescription + " for Connection with ID " + connectionId + " but the Connection with that ID is " +
+                    "not configured to allow for Load Balancing");
+        }
+
+        return (LoadBalancedFlowFileQueue) flowFileQueue;
+    }
+
+    private boolean isSpaceAvailable(final DataInputStream dataIn, final OutputStream out, final LoadBalancedFlowFileQueue loadBalancedFlowFileQueue, final String connectionId,
+                                     final String peerDescription) throws IOException {
+        final int spaceCheck = dataIn.read();
+        if (spaceCheck < 0) {
+            throw new EOFException("Expected to receive a request to determine whether or not space was available for Connection with ID " + connectionId + " from Peer " + peerDescription);
+        }
+
+        if (spaceCheck == CHECK_SPACE) {
+            if (loadBalancedFlowFileQueue.isLocalPartitionFull()) {
+                logger.debug("Received a 'Check Space' request from Peer {} for Connection with ID {}; responding with QUEUE_FULL", peerDescription, connectionId);
+                out.write(QUEUE_FULL);
+                out.flush();
+                return false;
+            } else {
+                logger.debug("Received a 'Check Space' request from Peer {} for Connection with ID {}; responding with SPACE_AVAILABLE", peerDescription, connectionId);
+                out.write(SPACE_AVAILABLE);
+                out.flush();
+            }
+        } else if (spaceCheck != SKIP_SPACE_CHECK) {
+            throw new TransactionAbortedException("Expected to receive a request to determine whether or not space was available for Connection with ID "
+                + connectionId + " from Peer " + peerDescription + " but instead received value " + spaceCheck);
+        }
+
+        return true;
+    }
+
+    private int getFlowFileCount(final List<ConnectionFlowFiles> connectionFlowFiles) {
+        int count = 0;
+        for (final ConnectionFlowFiles flowFiles : connectionFlowFiles) {
+            count += flowFiles.getFlowFiles().size();
+        }
+
+        return count;
     }
 
-    private void completeTransaction(final InputStream in, final OutputStream out, final String peerDescription, final List<RemoteFlowFileRecord> flowFilesReceived,
-                                     final String connectionId, final long startTimestamp, final LoadBalancedFlowFileQueue flowFileQueue) throws IOException {
+    private void completeTransaction(final InputStream in, final OutputStream out, final String peerDescription, final List<ConnectionFlowFiles> connectionFlowFilesReceived,
+                                     final long startTimestamp) throws IOException {
         final int completionIndicator = in.read();
         if (completionIndicator < 0) {
             throw new EOFException("Expected to receive a Transaction Completion Indicator from Peer " + peerDescription + " but encountered EOF");
@@ -317,52 +360,65 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
         }
 
         logger.debug("Received Complete Transaction indicator from Peer {}", peerDescription);
-        registerReceiveProvenanceEvents(flowFilesReceived, peerDescription, connectionId, startTimestamp);
-        updateFlowFileRepository(flowFilesReceived, flowFileQueue);
-        transferFlowFilesToQueue(flowFilesReceived, flowFileQueue);
+        registerReceiveProvenanceEvents(connectionFlowFilesReceived, peerDescription, startTimestamp);
+        updateFlowFileRepository(connectionFlowFilesReceived);
+        for (final ConnectionFlowFiles connectionFlowFiles : connectionFlowFilesReceived) {
+            transferFlowFilesToQueue(connectionFlowFiles.getFlowFiles(), connectionFlowFiles.getFlowFileQueue());
+        }
 
         out.write(CONFIRM_COMPLETE_TRANSACTION);
         out.flush();
     }
 
-    private void registerReceiveProvenanceEvents(final List<RemoteFlowFileRecord> flowFiles, final String nodeName, final String connectionId, final long startTimestamp) {
+    private void registerReceiveProvenanceEvents(final List<ConnectionFlowFiles> connectionFlowFilesReceived, final String nodeName, final long startTimestamp) {
         final long duration = System.currentTimeMillis() - startTimestamp;
 
-        final List<ProvenanceEventRecord> events = new ArrayList<>(flowFiles.size());
-        for (final RemoteFlowFileRecord remoteFlowFile : flowFiles) {
-            final FlowFileRecord flowFileRecord = remoteFlowFile.getFlowFile();
-
-            final ProvenanceEventBuilder provenanceEventBuilder = new StandardProvenanceEventRecord.Builder()
-                    .fromFlowFile(flowFileRecord)
-                    .setEventType(ProvenanceEventType.RECEIVE)
-                    .setTransitUri("nifi://" + nodeName + "/loadbalance/" + connectionId)
-                    .setSourceSystemFlowFileIdentifier(remoteFlowFile.getRemoteUuid())
-                    .setEventDuration(duration)
-                    .setComponentId(connectionId)
-                    .setComponentType("Load Balanced Connection");
-
-            final ContentClaim contentClaim = flowFileRecord.getContentClaim();
-            if (contentClaim != null) {
-                final ResourceClaim resourceClaim = contentClaim.getResourceClaim();
-                provenanceEventBuilder.setCurrentContentClaim(resourceClaim.getContainer(), resourceClaim.getSection(), resourceClaim.getId(),
-                    contentClaim.getOffset() + flowFileRecord.getContentClaimOffset(), flowFileRecord.getSize());
-            }
+        final List<ProvenanceEventRecord> events = new ArrayList<>(getFlowFileCount(connectionFlowFilesReceived));
+        for (final ConnectionFlowFiles connectionFlowFiles : connectionFlowFilesReceived) {
+            final String connectionId = connectionFlowFiles.getConnectionId();
 
-            final ProvenanceEventRecord provenanceEvent = provenanceEventBuilder.build();
-            events.add(provenanceEvent);
+            for (final RemoteFlowFileRecord remoteFlowFile : connectionFlowFiles.getFlowFiles()) {
+                events.add(createReceiveEvent(remoteFlowFile, nodeName, connectionId, duration));
+            }
         }
 
         provenanceRepository.registerEvents(events);
     }
 
-    private void updateFlowFileRepository(final List<RemoteFlowFileRecord> flowFiles, final FlowFileQueue flowFileQueue) throws IOException {
-        final List<RepositoryRecord> repoRecords = flowFiles.stream()
-                .map(remoteFlowFile -> {
-                    final StandardRepositoryRecord record = new StandardRepositoryRecord(flowFileQueue, remoteFlowFile.getFlowFile());
-                    record.setDestination(flowFileQueue);
-                    return record;
-                })
-                .collect(Collectors.toList());
+    private ProvenanceEventRecord createReceiveEvent(final RemoteFlowFileRecord remoteFlowFile, final String nodeName, final String connectionId, final long duration) {
+        final FlowFileRecord flowFileRecord = remoteFlowFile.getFlowFile();
+
+        final ProvenanceEventBuilder provenanceEventBuilder = new StandardProvenanceEventRecord.Builder()
+                .fromFlowFile(flowFileRecord)
+                .setEventType(ProvenanceEventType.RECEIVE)
+                .setTransitUri("nifi://" + nodeName + "/loadbalance/" + connectionId)
+                .setSourceSystemFlowFileIdentifier(remoteFlowFile.getRemoteUuid())
+                .setEventDuration(duration)
+                .setComponentId(connectionId)
+                .setComponentType("Load Balanced Connection");
+
+        final ContentClaim contentClaim = flowFileRecord.getContentClaim();
+        if (contentClaim != null) {
+            final ResourceClaim resourceClaim = contentClaim.getResourceClaim();
+            provenanceEventBuilder.setCurrentContentClaim(resourceClaim.getContainer(), resourceClaim.getSection(), resourceClaim.getId(),
+                contentClaim.getOffset() + flowFileRecord.getContentClaimOffset(), flowFileRecord.getSize());
+        }
+
+        return provenanceEventBuilder.build();
+    }
+
+    private void updateFlowFileRepository(final List<ConnectionFlowFiles> connectionFlowFilesReceived) throws IOException {
+        final List<RepositoryRecord> repoRecords = new ArrayList<>();
+        for (final ConnectionFlowFiles connectionFlowFiles : connectionFlowFilesReceived) {
+            final FlowFileQueue flowFileQueue = connectionFlowFiles.getFlowFileQueue();
+
+            for (final RemoteFlowFileRecord remoteFlowFile : connectionFlowFiles.getFlowFiles()) {
+                final StandardRepositoryRecord record = new StandardRepositoryRecord(flowFileQueue, remoteFlowFile.getFlowFile());
+                record.setDestination(flowFileQueue);
+                repoRecords.add(record);
+            }
+        }
+
         flowFileRepository.updateRepository(repoRecords);
     }
 
@@ -411,6 +467,39 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
         }
     }
 
+    private LoadBalanceCompressionCodec getCompressionCodec(final DataInputStream in, final String peerDescription) throws IOException {
+        final int codecId = in.read();
+        if (codecId < 0) {
+            logger.debug("Encountered End-of-File when trying to receive Compression Codec from Peer {}. Returning null for Compression Codec", peerDescription);
+            return null;
+        }
+
+        final LoadBalanceCompressionCodec codec = LoadBalanceCompressionCodec.fromId(codecId);
+        if (codec == null) {
+            throw new TransactionAbortedException("Peer " + peerDescription + " indicated that it will use Compression Codec with identifier " + codecId + " but no such codec is known");
+        }
+
+        return codec;
+    }
+
+    private String getNextConnectionID(final DataInputStream in, final String peerDescription) throws IOException {
+        final int indicator = in.read();
+        if (indicator < 0) {
+            throw new EOFException("Expected to receive 'More Connections' indicator or 'No More Connections' indicator from Peer " + peerDescription + " but encountered End-of-File");
+        }
+
+        if (indicator == NO_MORE_CONNECTIONS) {
+            logger.debug("Peer indicates that there are no more Connections in transaction");
+            return null;
+        }
+        if (indicator == MORE_CONNECTIONS) {
+            return in.readUTF();
+        }
+
+        throw new IOException("Expected to receive 'More Connections' indicator (" + MORE_CONNECTIONS
+            + ") or 'No More Connections' indicator (" + NO_MORE_CONNECTIONS + ") but received invalid value of " + indicator);
+    }
+
     private boolean isMoreFlowFiles(final DataInputStream in, final int protocolVersion) throws IOException {
         final int indicator = in.read();
         if (indicator < 0) {
@@ -431,12 +520,12 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
     }
 
     private RemoteFlowFileRecord receiveFlowFile(final DataInputStream dis, final OutputStream out, final ContentClaim contentClaim, final long claimOffset, final int protocolVersion,
-                                                 final String peerDescription, final LoadBalanceCompression compression) throws IOException {
+                                                 final String peerDescription, final LoadBalanceCompression compression, final LoadBalanceCompressionCodec codec) throws IOException {
         final int metadataLength = dis.readInt();
 
         DataInputStream metadataIn = new DataInputStream(new LimitingInputStream(dis, metadataLength));
         if (compression != LoadBalanceCompression.DO_NOT_COMPRESS) {
-            metadataIn = new DataInputStream(new GZIPInputStream(metadataIn));
+            metadataIn = new DataInputStream(codec.decompress(metadataIn));
         }
 
         final Map<String, String> attributes = readAttributes(metadataIn);
@@ -447,7 +536,8 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
         final long lineageStartDate = metadataIn.readLong();
         final long entryDate = metadataIn.readLong();
 
-        final ContentClaimTriple contentClaimTriple = consumeContent(dis, out, contentClaim, claimOffset, peerDescription, compression == LoadBalanceCompression.COMPRESS_ATTRIBUTES_AND_CONTENT);
+        final LoadBalanceCompressionCodec contentCodec = compression == LoadBalanceCompression.COMPRESS_ATTRIBUTES_AND_CONTENT ? codec : null;
+        final ContentClaimTriple contentClaimTriple = consumeContent(dis, out, contentClaim, claimOffset, peerDescription, contentCodec);
 
         final FlowFileRecord flowFileRecord = new StandardFlowFileRecord.Builder()
             .id(flowFileRepository.getNextFlowFileSequence())
@@ -486,7 +576,7 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
     }
 
     private ContentClaimTriple consumeContent(final DataInputStream in, final OutputStream out, final ContentClaim contentClaim, final long claimOffset,
-                                              final String peerDescription, final boolean compressed) throws IOException {
+                                              final String peerDescription, final LoadBalanceCompressionCodec codec) throws IOException {
         logger.debug("Consuming content from Peer {}", peerDescription);
 
         int dataFrameIndicator = in.read();
@@ -513,7 +603,7 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
         while (true) {
             final InputStream limitedIn = new LimitedInputStream(in, dataFrameLength);
             final ByteCountingInputStream bcis = new ByteCountingInputStream(limitedIn);
-            final InputStream contentIn = compressed ? new GZIPInputStream(bcis) : bcis;
+            final InputStream contentIn = codec == null ? bcis : codec.decompress(bcis);
             final int decompressedSize = StreamUtils.fillBuffer(contentIn, buffer, false);
 
             if (bcis.getBytesRead() < dataFrameLength) {
@@ -571,6 +661,29 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
         }
     }
 
+    private static class ConnectionFlowFiles {
+        private final String connectionId;
+        private final LoadBalancedFlowFileQueue flowFileQueue;
+        private final List<RemoteFlowFileRecord> flowFiles = new ArrayList<>();
+
+        public ConnectionFlowFiles(final String connectionId, final LoadBalancedFlowFileQueue flowFileQueue) {
+            this.connectionId = connectionId;
+            this.flowFileQueue = flowFileQueue;
+        }
+
+        public String getConnectionId() {
+            return connectionId;
+        }
+
+        public LoadBalancedFlowFileQueue getFlowFileQueue() {
+            return flowFileQueue;
+        }
+
+        public List<RemoteFlowFileRecord> getFlowFiles() {
+            return flowFiles;
+        }
+    }
+
     private static class RemoteFlowFileRecord {
         private final String remoteUuid;
         private final FlowFileRecord flowFile;
@@ -0,0 +1,508 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A time-ordered index of the files in the archive directories of a single container of the {@link FileSystemRepository}, so that
+ * the oldest archived files can be found without walking all of the archive directories and sorting their contents.
+ * </p>
+ *
+ * <p>
+ * Each archived file is recorded in a bucket file in the index directory, according to the minute of its timestamp. Recording a file
+ * is an append to its bucket file. Only the oldest bucket is ever read into memory, so removing the oldest entries from the index
+ * costs time proportional to the number of entries removed, no matter how many files have been archived.
+ * </p>
+ *
+ * <p>
+ * The bucket files are not synced to disk, so the index is only trusted on startup if it was closed cleanly. Otherwise, it must be
+ * rebuilt by walking the archive directories, which is done lazily via {@link #rebuildIfNecessary(int, String)} so that startup is not delayed.
+ * </p>
+ *
+ * <b>Thread Safe</b>
+ */
+class ArchiveIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveIndex.class);
+
+    static final String CLEAN_SHUTDOWN_FILENAME = "clean-shutdown";
+    private static final String BUCKET_FILE_SUFFIX = ".bucket";
+    private static final long BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(1L);
+
+    // When rebuilding, the number of entries to hold in memory before appending them to their bucket files
+    private static final int REBUILD_BATCH_SIZE = 100_000;
+
+    private static final Comparator<Entry> ENTRY_ORDER = Comparator.comparingLong(Entry::getTimestamp);
+
+    private final Path containerPath;
+    private final Path indexDirectory;
+    private final ToLongFunction<File> timestampFunction;
+
+    // All guarded by synchronizing on this
+    private final TreeSet<Long> buckets = new TreeSet<>();
+    private PriorityQueue<Entry> head;
+    private long headBucket = -1L;
+    private boolean headModified = false;
+    private DataOutputStream writer;
+    private long writerBucket = -1L;
+    private boolean closed = false;
+
+    private volatile boolean rebuildRequired;
+
+    /**
+     * Opens the index for the given container, creating the index directory if necessary.
+     *
+     * @param containerPath the path of the container whose archived files are indexed
+     * @param indexDirectory the directory in which to store the index
+     * @param timestampFunction provides the timestamp of an archived file, which determines the order in which files are expired
+     * @throws IOException if unable to read the index directory
+     */
+    ArchiveIndex(final Path containerPath, final Path indexDirectory, final ToLongFunction<File> timestampFunction) throws IOException {
+        this.containerPath = containerPath;
+        this.indexDirectory = indexDirectory;
+        this.timestampFunction = timestampFunction;
+
+        Files.createDirectories(indexDirectory);
+
+        final Path cleanShutdownFile = indexDirectory.resolve(CLEAN_SHUTDOWN_FILENAME);
+        if (Files.exists(cleanShutdownFile)) {
+            try (final DirectoryStream<Path> stream = Files.newDirectoryStream(indexDirectory, "*" + BUCKET_FILE_SUFFIX)) {
+                for (final Path bucketFile : stream) {
+                    final String filename = bucketFile.getFileName().toString();
+                    buckets.add(Long.parseLong(filename.substring(0, filename.length() - BUCKET_FILE_SUFFIX.length())));
+                }
+            }
+
+            // If we are not shut down cleanly, the index must not be trusted on the next startup.
+            Files.delete(cleanShutdownFile);
+            rebuildRequired = false;
+        } else {
+            logger.info("Archive Index for {} was not closed cleanly; it will be rebuilt when it is next used", containerPath);
+            rebuildRequired = true;
+        }
+    }
+
+    /**
+     * Records that a file has been moved into an archive directory of the container.
+     *
+     * @param archivedFile the archived file
+     * @param size the size of the archived file
+     * @throws IOException if unable to update the index, in which case the index will be rebuilt when it is next used
+     */
+    void add(final Path archivedFile, final long size) throws IOException {
+        final Entry entry = new Entry(timestampFunction.applyAsLong(archivedFile.toFile()), size, containerPath.relativize(archivedFile).toString());
+
+        synchronized (this) {
+            if (closed) {
+                // The file would be missing from the index, so ensure that the index is rebuilt on restart.
+                Files.deleteIfExists(indexDirectory.resolve(CLEAN_SHUTDOWN_FILENAME));
+                return;
+            }
+
+            try {
+                append(getBucket(entry.getTimestamp()), entry);
+            } catch (final IOException ioe) {
+                rebuildRequired = true;
+                throw ioe;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index from the contents of the archive directories, if the index was not closed cleanly or could not be updated.
+     *
+     * @param sectionCount the number of sections in the container
+     * @param archiveDirectoryName the name of the archive directory within each section
+     * @return <code>true</code> if the index was rebuilt, <code>false</code> if no rebuild was necessary
+     * @throws IOException if unable to rebuild the index, in which case it will be rebuilt when it is next used
+     */
+    boolean rebuildIfNecessary(final int sectionCount, final String archiveDirectoryName) throws IOException {
+        if (!rebuildRequired) {
+            return false;
+        }
+
+        final long start = System.nanoTime();
+        synchronized (this) {
+            // Files that are archived from here on will be appended to the index as usual. They may also be found by the walk below,
+            // in which case they will be indexed twice, but an index entry for a file that is already gone is simply skipped.
+            rebuildRequired = false;
+            deleteBuckets();
+        }
+
+        final Map<Long, List<Entry>> batch = new TreeMap<>();
+        final int[] batchCount = new int[1];
+        final long[] entryCount = new long[1];
+
+        try {
+            for (int i = 0; i < sectionCount; i++) {
+                final Path archiveDirectory = containerPath.resolve(String.valueOf(i)).resolve(archiveDirectoryName);
+                if (!Files.exists(archiveDirectory)) {
+                    continue;
+                }
+
+                Files.walkFileTree(archiveDirectory, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                        if (!attrs.isRegularFile()) {
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        final Entry entry = new Entry(timestampFunction.applyAsLong(file.toFile()), attrs.size(), containerPath.relativize(file).toString());
+                        batch.computeIfAbsent(getBucket(entry.getTimestamp()), bucket -> new ArrayList<>()).add(entry);
+                        entryCount[0]++;
+                        if (++batchCount[0] >= REBUILD_BATCH_SIZE) {
+                            appendBatch(batch);
+                            batchCount[0] = 0;
+                        }
+
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+                        logger.warn("Unable to read {} while rebuilding Archive Index; it will not be expired from the archive", file, exc);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+
+            appendBatch(batch);
+        } catch (final IOException ioe) {
+            rebuildRequired = true;
+            throw ioe;
+        }
+
+        logger.info("Rebuilt Archive Index for {} with {} archived files in {} millis", containerPath, entryCount[0], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return true;
+    }
+
+    private synchronized void appendBatch(final Map<Long, List<Entry>> batch) throws IOException {
+        for (final Map.Entry<Long, List<Entry>> bucketEntries : batch.entrySet()) {
+            append(bucketEntries.getKey(), bucketEntries.getValue());
+        }
+
+        batch.clear();
+    }
+
+    /**
+     * @return the oldest entry in the index, or <code>null</code> if the index is empty
+     * @throws IOException if unable to read the index
+     */
+    synchronized Entry peek() throws IOException {
+        return loadHead() ? head.peek() : null;
+    }
+
+    /**
+     * Removes and returns the oldest entry in the index. The removal is not persisted until {@link #checkpoint()} is called.
+     *
+     * @return the oldest entry in the index, or <code>null</code> if the index is empty
+     * @throws IOException if unable to read the index
+     */
+    synchronized Entry poll() throws IOException {
+        if (!loadHead()) {
+            return null;
+        }
+
+        headModified = true;
+        return head.poll();
+    }
+
+    /**
+     * Persists the removal of any entries that have been polled from the index.
+     *
+     * @throws IOException if unable to update the index
+     */
+    synchronized void checkpoint() throws IOException {
+        flushWriter();
+
+        if (head == null || !headModified) {
+            return;
+        }
+
+        if (head.isEmpty()) {
+            deleteBucket(headBucket);
+        } else {
+            closeWriter(headBucket);
+
+            final List<Entry> remaining = new ArrayList<>(head);
+            remaining.sort(ENTRY_ORDER);
+
+            final Path bucketFile = getBucketFile(headBucket);
+            final Path tempFile = bucketFile.resolveSibling(bucketFile.getFileName() + ".tmp");
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                for (final Entry entry : remaining) {
+                    entry.writeTo(out);
+                }
+            }
+
+            Files.move(tempFile, bucketFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            headModified = false;
+        }
+    }
+
+    /**
+     * Removes all entries from the index, for use when the archive directories have been emptied.
+     *
+     * @throws IOException if unable to clear the index
+     */
+    synchronized void clear() throws IOException {
+        Files.createDirectories(indexDirectory);
+        deleteBuckets();
+        rebuildRequired = false;
+    }
+
+    /**
+     * Persists the index and marks it as having been closed cleanly, so that it can be used without being rebuilt on restart.
+     *
+     * @throws IOException if unable to persist the index
+     */
+    synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        checkpoint();
+        closeWriter(writerBucket);
+
+        if (!rebuildRequired) {
+            Files.createFile(indexDirectory.resolve(CLEAN_SHUTDOWN_FILENAME));
+        }
+    }
+
+    // visible for testing
+    synchronized int getBucketCount() {
+        return buckets.size();
+    }
+
+    private long getBucket(final long timestamp) {
+        return timestamp - Math.floorMod(timestamp, BUCKET_MILLIS);
+    }
+
+    private Path getBucketFile(final long bucket) {
+        return indexDirectory.resolve(bucket + BUCKET_FILE_SUFFIX);
+    }
+
+    private void append(final long bucket, final Entry entry) throws IOException {
+        getWriter(bucket);
+        entry.writeTo(writer);
+        addToHead(bucket, entry);
+    }
+
+    private void append(final long bucket, final Collection<Entry> entries) throws IOException {
+        getWriter(bucket);
+        for (final Entry entry : entries) {
+            entry.writeTo(writer);
+            addToHead(bucket, entry);
+        }
+    }
+
+    private void getWriter(final long bucket) throws IOException {
+        if (writer != null && writerBucket == bucket) {
+            return;
+        }
+
+        closeWriter(writerBucket);
+        writer = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(getBucketFile(bucket), StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        writerBucket = bucket;
+        buckets.add(bucket);
+    }
+
+    private void addToHead(final long bucket, final Entry entry) throws IOException {
+        if (head == null) {
+            return;
+        }
+
+        if (bucket == headBucket) {
+            head.add(entry);
+        } else if (bucket < headBucket) {
+            // There is now an older bucket than the one in memory. Persist whatever has been removed from the head and let the
+            // next read load the older bucket instead.
+            checkpoint();
+            head = null;
+            headBucket = -1L;
+        }
+    }
+
+    private boolean loadHead() throws IOException {
+        while (head == null || head.isEmpty()) {
+            if (head != null) {
+                deleteBucket(headBucket);
+            }
+
+            if (buckets.isEmpty()) {
+                return false;
+            }
+
+            final long bucket = buckets.first();
+            if (writerBucket == bucket) {
+                flushWriter();
+            }
+
+            head = readBucket(bucket);
+            headBucket = bucket;
+            headModified = false;
+        }
+
+        return true;
+    }
+
+    private PriorityQueue<Entry> readBucket(final long bucket) throws IOException {
+        final PriorityQueue<Entry> entries = new PriorityQueue<>(ENTRY_ORDER);
+
+        try (final InputStream in = Files.newInputStream(getBucketFile(bucket));
+             final DataInputStream dis = new DataInputStream(new BufferedInputStream(in))) {
+            while (true) {
+                try {
+                    entries.add(Entry.readFrom(dis));
+                } catch (final EOFException eof) {
+                    break;
+                }
+            }
+        } catch (final IOException ioe) {
+            rebuildRequired = true;
+            throw ioe;
+        }
+
+        return entries;
+    }
+
+    private void flushWriter() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    private void closeWriter(final long bucket) throws IOException {
+        if (writer != null && writerBucket == bucket) {
+            final DataOutputStream toClose = writer;
+            writer = null;
+            writerBucket = -1L;
+            toClose.close();
+        }
+    }
+
+    private void deleteBucket(final long bucket) throws IOException {
+        closeWriter(bucket);
+        Files.deleteIfExists(getBucketFile(bucket));
+        buckets.remove(bucket);
+
+        if (bucket == headBucket) {
+            head = null;
+            headBucket = -1L;
+            headModified = false;
+        }
+    }
+
+    private void deleteBuckets() throws IOException {
+        closeWriter(writerBucket);
+        head = null;
+        headBucket = -1L;
+        headModified = false;
+        buckets.clear();
+
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(indexDirectory)) {
+            for (final Path file : stream) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * A file in one of the archive directories of the container
+     */
+    static class Entry {
+        private final long timestamp;
+        private final long size;
+        private final String relativePath;
+
+        Entry(final long timestamp, final long size, final String relativePath) {
+            this.timestamp = timestamp;
+            this.size = size;
+            this.relativePath = relativePath;
+        }
+
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the path of the archived file, relative to the container
+         */
+        String getRelativePath() {
+            return relativePath;
+        }
+
+        void writeTo(final DataOutputStream out) throws IOException {
+            out.writeLong(timestamp);
+            out.writeLong(size);
+            out.writeUTF(relativePath);
+        }
+
+        static Entry readFrom(final DataInputStream in) throws IOException {
+            final long timestamp = in.readLong();
+            final long size;
+            final String relativePath;
+            try {
+                size = in.readLong();
+                relativePath = in.readUTF();
+            } catch (final EOFException eof) {
+                throw new IOException("Archive Index bucket file is truncated", eof);
+            }
+
+            return new Entry(timestamp, size, relativePath);
+        }
+
+        @Override
+        public String toString() {
+            return relativePath;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * Coordinates syncing an append-only file to disk on behalf of many writers, so that writers that need their data to be
+ * durable at about the same time share a single sync rather than each issuing their own.
+ * </p>
+ *
+ * <p>
+ * A writer calls {@link #sync(long)} with the length of the file at the time that its data was written. If no sync is in progress,
+ * that writer syncs the file on behalf of itself and of every writer that requested a sync before it began. Writers that request a
+ * sync while one is in progress wait for it to complete; if it did not cover their data, one of them syncs the file again, on behalf
+ * of all of them. As a result, no matter how many writers are waiting, there is never more than one sync of the file in progress,
+ * and each sync covers everything that was requested while the previous one was in progress.
+ * </p>
+ *
+ * <b>Thread Safe</b>
+ */
+class FileSyncGroup {
+    private final SyncAction syncAction;
+
+    // All guarded by synchronizing on this
+    private long requestedLength = 0L;
+    private long syncedLength = 0L;
+    private boolean syncInProgress = false;
+    private boolean closed = false;
+
+    FileSyncGroup(final SyncAction syncAction) {
+        this.syncAction = syncAction;
+    }
+
+    /**
+     * Returns once the first <code>length</code> bytes of the file have been synced to disk, syncing the file if necessary.
+     *
+     * @param length the number of bytes at the start of the file that must be durable
+     * @throws IOException if unable to sync the file
+     */
+    void sync(final long length) throws IOException {
+        final long targetLength;
+        synchronized (this) {
+            requestedLength = Math.max(requestedLength, length);
+
+            while (syncedLength < length) {
+                if (closed) {
+                    throw new IOException("Cannot sync file because it has already been closed");
+                }
+
+                if (!syncInProgress) {
+                    break;
+                }
+
+                try {
+                    wait();
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for file to be synced to disk", ie);
+                }
+            }
+
+            if (syncedLength >= length) {
+                return;
+            }
+
+            // Sync on behalf of everyone who has requested a sync so far.
+            syncInProgress = true;
+            targetLength = requestedLength;
+        }
+
+        boolean synced = false;
+        try {
+            syncAction.sync();
+            synced = true;
+        } finally {
+            synchronized (this) {
+                if (synced) {
+                    syncedLength = Math.max(syncedLength, targetLength);
+                }
+
+                // If the sync failed, any waiting writer will try again.
+                syncInProgress = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Syncs the file, if any writer's data has not yet been synced, and prevents any further syncs. Must be called before the file
+     * is closed. Once this method returns, any call to {@link #sync(long)} whose data was not covered fails.
+     *
+     * @throws IOException if unable to sync the file
+     */
+    void close() throws IOException {
+        final long length;
+        synchronized (this) {
+            length = requestedLength;
+        }
+
+        try {
+            sync(length);
+        } finally {
+            synchronized (this) {
+                while (syncInProgress) {
+                    try {
+                        wait();
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+
+                closed = true;
+                notifyAll();
+            }
+        }
+    }
+
+    synchronized long getSyncedLength() {
+        return syncedLength;
+    }
+
+    interface SyncAction {
+        void sync() throws IOException;
+    }
+}
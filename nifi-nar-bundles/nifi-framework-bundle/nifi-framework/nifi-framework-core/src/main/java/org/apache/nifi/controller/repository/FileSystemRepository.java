@@ -17,27 +17,29 @@
 package org.apache.nifi.controller.repository;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -64,6 +66,7 @@ import org.apache.nifi.controller.repository.claim.ContentClaim;
 import org.apache.nifi.controller.repository.claim.ResourceClaim;
 import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
 import org.apache.nifi.controller.repository.claim.StandardContentClaim;
+import org.apache.nifi.controller.repository.io.ByteBufferInputStream;
 import org.apache.nifi.controller.repository.io.LimitedInputStream;
 import org.apache.nifi.engine.FlowEngine;
 import org.apache.nifi.processor.DataUnit;
@@ -72,7 +75,6 @@ import org.apache.nifi.stream.io.StreamUtils;
 import org.apache.nifi.stream.io.SynchronizedByteCountingOutputStream;
 import org.apache.nifi.util.FormatUtils;
 import org.apache.nifi.util.NiFiProperties;
-import org.apache.nifi.util.StopWatch;
 import org.apache.nifi.util.file.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -86,10 +88,13 @@ public class FileSystemRepository implements ContentRepository {
     public static final int SECTIONS_PER_CONTAINER = 1024;
     public static final long MIN_CLEANUP_INTERVAL_MILLIS = 1000;
     public static final String ARCHIVE_DIR_NAME = "archive";
+    private static final String ARCHIVE_INDEX_DIR_NAME = "archive-index";
     // 100 MB cap for the configurable NiFiProperties.MAX_APPENDABLE_CLAIM_SIZE property to prevent
     // unnecessarily large resource claim files
     public static final String APPENDABLE_CLAIM_LENGTH_CAP = "100 MB";
     public static final Pattern MAX_ARCHIVE_SIZE_PATTERN = Pattern.compile("\\d{1,2}%");
+    public static final String LINK_ON_IMPORT = "nifi.content.repository.link.on.import";
+    public static final String MAPPED_READ_CACHE_SIZE = "nifi.content.repository.mapped.read.cache.size";
     private static final Logger LOG = LoggerFactory.getLogger(FileSystemRepository.class);
 
     private final Logger archiveExpirationLog = LoggerFactory.getLogger(FileSystemRepository.class.getName() + ".archive.expiration");
@@ -109,6 +114,9 @@ public class FileSystemRepository implements ContentRepository {
     // the OutputStream that we can use for writing to the claim.
     private final BlockingQueue<ClaimLengthPair> writableClaimQueue;
     private final ConcurrentMap<ResourceClaim, ByteCountingOutputStream> writableClaimStreams = new ConcurrentHashMap<>(100);
+    // If 'always sync' is enabled, coordinates the syncing of each of the writable claim streams, so that Content Claims that are written to the
+    // same Resource Claim by different sessions at about the same time are made durable by a single sync.
+    private final ConcurrentMap<ResourceClaim, FileSyncGroup> syncGroups = new ConcurrentHashMap<>(100);
 
     private final boolean archiveData;
     // 1 MB default, as it means that we won't continually write to one
@@ -121,12 +129,16 @@ public class FileSystemRepository implements ContentRepository {
     private final long maxArchiveMillis;
     private final Map<String, Long> minUsableContainerBytesForArchive = new HashMap<>();
     private final boolean alwaysSync;
+    // Whether or not importFrom(Path, ContentClaim) may import a file by creating a hard link to it rather than copying it
+    private final boolean linkOnImport;
+    // Resource Claims that are being read via memory-mapping, or null if content should be read via FileInputStreams
+    private final MappedResourceClaimCache mappedClaimCache;
     private final ScheduledExecutorService containerCleanupExecutor;
 
     private ResourceClaimManager resourceClaimManager; // effectively final
 
-    // Map of container to archived files that should be deleted next.
-    private final Map<String, BlockingQueue<ArchiveInfo>> archivedFiles = new HashMap<>();
+    // Map of container to the index of its archived files, in the order that they should be deleted. Empty if archiving is disabled.
+    private final Map<String, ArchiveIndex> archiveIndexes = new HashMap<>();
 
     // guarded by synchronizing on this
     private final AtomicLong oldestArchiveDate = new AtomicLong(0L);
@@ -143,6 +155,8 @@ public class FileSystemRepository implements ContentRepository {
         archiveData = false;
         maxArchiveMillis = 0;
         alwaysSync = false;
+        linkOnImport = false;
+        mappedClaimCache = null;
         containerCleanupExecutor = null;
         nifiProperties = null;
         maxAppendableClaimLength = 0;
@@ -178,7 +192,6 @@ public class FileSystemRepository implements ContentRepository {
 
         for (final String containerName : containerNames) {
             reclaimable.put(containerName, new LinkedBlockingQueue<>(10000));
-            archivedFiles.put(containerName, new LinkedBlockingQueue<>(100000));
         }
 
         final String enableArchiving = nifiProperties.getProperty(NiFiProperties.CONTENT_ARCHIVE_ENABLED);
@@ -248,6 +261,18 @@ public class FileSystemRepository implements ContentRepository {
 
         this.alwaysSync = Boolean.parseBoolean(nifiProperties.getProperty("nifi.content.repository.always.sync"));
         LOG.info("Initializing FileSystemRepository with 'Always Sync' set to {}", alwaysSync);
+        this.linkOnImport = Boolean.parseBoolean(nifiProperties.getProperty(LINK_ON_IMPORT));
+
+        final String mappedReadCacheSize = nifiProperties.getProperty(MAPPED_READ_CACHE_SIZE);
+        final int maxMappedClaims = StringUtils.isBlank(mappedReadCacheSize) ? 0 : Integer.parseInt(mappedReadCacheSize.trim());
+        if (maxMappedClaims > 0) {
+            // Resource Claim files are closed once they reach the max appendable claim length, but the last Content Claim written
+            // may take the file past that length. Anything larger than twice that length is mostly a single, large Content Claim.
+            mappedClaimCache = new MappedResourceClaimCache(maxMappedClaims, 2 * maxAppendableClaimLength);
+            LOG.info("Initializing FileSystemRepository with up to {} Resource Claims to be read via memory-mapping", maxMappedClaims);
+        } else {
+            mappedClaimCache = null;
+        }
         initializeRepository();
 
         containerCleanupExecutor = new FlowEngine(containers.size(), "Cleanup FileSystemRepository Container", true);
@@ -279,6 +304,18 @@ public class FileSystemRepository implements ContentRepository {
         executor.shutdown();
         containerCleanupExecutor.shutdown();
 
+        if (mappedClaimCache != null) {
+            mappedClaimCache.clear();
+        }
+
+        for (final Map.Entry<String, ArchiveIndex> entry : archiveIndexes.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (final IOException ioe) {
+                LOG.warn("Failed to close Archive Index for Container {}; it will be rebuilt on restart", entry.getKey(), ioe);
+            }
+        }
+
         // Close any of the writable claim streams that are currently open.
         // Other threads may be writing to these streams, and that's okay.
         // If that happens, we will simply close the stream, resulting in an
@@ -327,6 +364,10 @@ public class FileSystemRepository implements ContentRepository {
 
             realPathMap.put(containerName, realPath);
 
+            if (archiveData) {
+                archiveIndexes.put(containerName, new ArchiveIndex(realPath, realPath.resolve(ARCHIVE_INDEX_DIR_NAME), this::getLastModTime));
+            }
+
             // We need to scan the archive directories to find out the oldest timestamp so that know whether or not we
             // will have to delete archived data based on time threshold. Scanning all of the directories can be very
             // expensive because of all of the disk accesses. So we do this in multiple threads. Since containers are
@@ -459,7 +500,7 @@ public class FileSystemRepository implements ContentRepository {
         if (Files.isDirectory(fileToRemove)) {
             final Path lastPathName = fileToRemove.subpath(1, fileToRemove.getNameCount());
             final String fileName = lastPathName.toFile().getName();
-            if (fileName.equals(ARCHIVE_DIR_NAME)) {
+            if (fileName.equals(ARCHIVE_DIR_NAME) || fileName.equals(ARCHIVE_INDEX_DIR_NAME)) {
                 return;
             }
 
@@ -485,11 +526,11 @@ public class FileSystemRepository implements ContentRepository {
 
         final ResourceClaim resourceClaim = resourceClaimManager.newResourceClaim(containerName, sectionName, id, false, false);
         if (resourceClaimManager.getClaimantCount(resourceClaim) == 0) {
-            removeIncompleteContent(fileToRemove);
+            removeIncompleteContent(containerName, fileToRemove);
         }
     }
 
-    private void removeIncompleteContent(final Path fileToRemove) {
+    private void removeIncompleteContent(final String containerName, final Path fileToRemove) {
         String fileDescription = null;
         try {
             fileDescription = fileToRemove.toFile().getAbsolutePath() + " (" + Files.size(fileToRemove) + " bytes)";
@@ -501,7 +542,9 @@ public class FileSystemRepository implements ContentRepository {
 
         try {
             if (archiveData) {
-                archive(fileToRemove);
+                if (archive(fileToRemove)) {
+                    indexArchivedFile(containerName, getArchivePath(fileToRemove));
+                }
             } else {
                 Files.delete(fileToRemove);
             }
@@ -591,8 +634,12 @@ public class FileSystemRepository implements ContentRepository {
             // and when we call create(), it will remove it from the Queue, which means that no other
             // thread will get the same Claim until we've finished writing to it.
             final File file = getPath(resourceClaim).toFile();
-            ByteCountingOutputStream claimStream = new SynchronizedByteCountingOutputStream(new FileOutputStream(file, true), file.length());
+            final FileOutputStream fos = new FileOutputStream(file, true);
+            ByteCountingOutputStream claimStream = new SynchronizedByteCountingOutputStream(fos, file.length());
             writableClaimStreams.put(resourceClaim, claimStream);
+            if (alwaysSync) {
+                syncGroups.put(resourceClaim, new FileSyncGroup(fos.getFD()::sync));
+            }
 
             incrementClaimantCount(resourceClaim, true);
         } else {
@@ -663,8 +710,13 @@ public class FileSystemRepository implements ContentRepository {
         } catch (final ContentNotFoundException cnfe) {
         }
 
+        if (mappedClaimCache != null) {
+            mappedClaimCache.evict(claim);
+        }
+
         // Ensure that we have no writable claim streams for this resource claim
         final ByteCountingOutputStream bcos = writableClaimStreams.remove(claim);
+        syncGroups.remove(claim);
 
         if (bcos != null) {
             try {
@@ -733,11 +785,72 @@ public class FileSystemRepository implements ContentRepository {
 
     @Override
     public long importFrom(final Path content, final ContentClaim claim) throws IOException {
-        try (final InputStream in = Files.newInputStream(content, StandardOpenOption.READ)) {
-            return importFrom(in, claim);
+        return importFrom(content, claim, true);
+    }
+
+    @Override
+    public long importFrom(final Path content, final ContentClaim claim, final boolean keepSource) throws IOException {
+        // A hard link shares the file with the caller, so the file is only linked if the caller will not keep, and so cannot modify, it
+        if (linkOnImport && !keepSource && importByLink(content, claim)) {
+            return claim.getLength();
+        }
+
+        try (final FileChannel in = FileChannel.open(content, StandardOpenOption.READ);
+             final ContentClaimOutputStream out = write(claim, false)) {
+            return out.transferFrom(in, 0L, in.size());
         }
     }
 
+    /**
+     * Attempts to import the given file by creating a hard link to it in place of the file that backs the Content Claim's
+     * Resource Claim. This is possible only if the Content Claim is the first to be written to a newly created Resource Claim
+     * and the given file is on the same file system as the Content Repository. The Resource Claim is frozen so that nothing is
+     * ever appended to it, as doing so would modify the file that was imported. The caller must not keep the file, as any change
+     * that it made to the file would change the content of the claim.
+     *
+     * @param content the file to import
+     * @param claim the claim to import the file into
+     * @return <code>true</code> if the file was imported, <code>false</code> if the file must be copied instead
+     */
+    private boolean importByLink(final Path content, final ContentClaim claim) throws IOException {
+        if (!(claim instanceof StandardContentClaim) || claim.getOffset() > 0L || claim.getLength() > 0L) {
+            return false;
+        }
+
+        final StandardContentClaim scc = (StandardContentClaim) claim;
+        final ResourceClaim resourceClaim = scc.getResourceClaim();
+        final ByteCountingOutputStream claimStream = writableClaimStreams.get(resourceClaim);
+        if (claimStream == null || claimStream.getBytesWritten() > 0L) {
+            return false;
+        }
+
+        final Path claimPath = getPath(resourceClaim);
+        final Path linkPath = claimPath.resolveSibling(resourceClaim.getId() + ".link");
+        try {
+            Files.createLink(linkPath, content);
+        } catch (final IOException | UnsupportedOperationException e) {
+            LOG.debug("Unable to create a hard link to {} for {}; will copy the file instead", content, claim, e);
+            return false;
+        }
+
+        // The Resource Claim will no longer be written to, so it must not be handed out by create() again.
+        writableClaimStreams.remove(resourceClaim);
+        syncGroups.remove(resourceClaim);
+        resourceClaimManager.freeze(resourceClaim);
+        claimStream.close();
+
+        try {
+            Files.move(linkPath, claimPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException ioe) {
+            Files.deleteIfExists(linkPath);
+            throw ioe;
+        }
+
+        scc.setLength(Files.size(claimPath));
+        LOG.debug("Imported {} into {} by creating a hard link", content, claim);
+        return true;
+    }
+
     @Override
     public long importFrom(final InputStream content, final ContentClaim claim) throws IOException {
         try (final OutputStream out = write(claim, false)) {
@@ -755,14 +868,7 @@ public class FileSystemRepository implements ContentRepository {
             return 0L;
         }
 
-        try (final InputStream in = read(claim);
-                final FileOutputStream fos = new FileOutputStream(destination.toFile(), append)) {
-            final long copied = StreamUtils.copy(in, fos);
-            if (alwaysSync) {
-                fos.getFD().sync();
-            }
-            return copied;
-        }
+        return exportTo(claim, destination, append, 0L, size(claim));
     }
 
     @Override
@@ -784,12 +890,21 @@ public class FileSystemRepository implements ContentRepository {
 
         }
 
-        try (final InputStream in = read(claim);
+        // Transfer the bytes directly from the Resource Claim's file to the destination rather than copying them through the heap.
+        try (final FileChannel in = FileChannel.open(getPath(claim, true), StandardOpenOption.READ);
                 final FileOutputStream fos = new FileOutputStream(destination.toFile(), append)) {
-            if (offset > 0) {
-                StreamUtils.skip(in, offset);
+            final FileChannel out = fos.getChannel();
+            final long startPosition = claim.getOffset() + offset;
+            long transferred = 0L;
+            while (transferred < length) {
+                final long bytesTransferred = in.transferTo(startPosition + transferred, length - transferred, out);
+                if (bytesTransferred <= 0) {
+                    throw new EOFException("Expected to export " + length + " bytes from " + claim + " but reached the end of its content after " + transferred + " bytes");
+                }
+
+                transferred += bytesTransferred;
             }
-            StreamUtils.copy(in, fos, length);
+
             if (alwaysSync) {
                 fos.getFD().sync();
             }
@@ -852,6 +967,13 @@ public class FileSystemRepository implements ContentRepository {
         if (claim == null) {
             return new ByteArrayInputStream(new byte[0]);
         }
+        if (mappedClaimCache != null) {
+            final InputStream mappedStream = readMapped(claim);
+            if (mappedStream != null) {
+                return mappedStream;
+            }
+        }
+
         final Path path = getPath(claim, true);
         final FileInputStream fis = new FileInputStream(path.toFile());
         if (claim.getOffset() > 0L) {
@@ -879,12 +1001,41 @@ public class FileSystemRepository implements ContentRepository {
         }
     }
 
+    /**
+     * Returns an InputStream that reads the given Content Claim from a memory-mapping of its Resource Claim's file. Only Content Claims
+     * whose Resource Claims will no longer be written to are read in this way, as a mapping does not reflect anything that is written
+     * to the file after it has been created.
+     *
+     * @param claim the Content Claim to read
+     * @return an InputStream for the Content Claim, or <code>null</code> if the Content Claim cannot be read via memory-mapping
+     */
+    private InputStream readMapped(final ContentClaim claim) throws IOException {
+        final ResourceClaim resourceClaim = claim.getResourceClaim();
+        final long length = claim.getLength();
+        if (length < 0 || resourceClaim.isWritable()) {
+            return null;
+        }
+
+        ByteBuffer buffer = mappedClaimCache.getBuffer(resourceClaim, claim.getOffset(), length);
+        if (buffer == null) {
+            // Archived content is rarely read, and the archive may be cleaned up at any time, so we don't keep it mapped.
+            final Path path = getPath(claim, true);
+            if (ARCHIVE_DIR_NAME.equals(path.getParent().toFile().getName())) {
+                return null;
+            }
+
+            buffer = mappedClaimCache.map(resourceClaim, path, claim.getOffset(), length);
+        }
+
+        return buffer == null ? null : new ByteBufferInputStream(buffer);
+    }
+
     @Override
     public OutputStream write(final ContentClaim claim) throws IOException {
         return write(claim, false);
     }
 
-    private OutputStream write(final ContentClaim claim, final boolean append) throws IOException {
+    private ContentClaimOutputStream write(final ContentClaim claim, final boolean append) throws IOException {
         if (claim == null) {
             throw new NullPointerException("ContentClaim cannot be null");
         }
@@ -903,139 +1054,7 @@ public class FileSystemRepository implements ContentRepository {
         ByteCountingOutputStream claimStream = writableClaimStreams.get(scc.getResourceClaim());
         final int initialLength = append ? (int) Math.max(0, scc.getLength()) : 0;
 
-        final ByteCountingOutputStream bcos = claimStream;
-        final OutputStream out = new OutputStream() {
-            private long bytesWritten = 0L;
-            private boolean recycle = true;
-            private boolean closed = false;
-
-            @Override
-            public String toString() {
-                return "FileSystemRepository Stream [" + scc + "]";
-            }
-
-            @Override
-            public synchronized void write(final int b) throws IOException {
-                if (closed) {
-                    throw new IOException("Stream is closed");
-                }
-
-                try {
-                    bcos.write(b);
-                } catch (final IOException ioe) {
-                    recycle = false;
-                    throw new IOException("Failed to write to " + this, ioe);
-                }
-
-                bytesWritten++;
-                scc.setLength(bytesWritten + initialLength);
-            }
-
-            @Override
-            public synchronized void write(final byte[] b) throws IOException {
-                if (closed) {
-                    throw new IOException("Stream is closed");
-                }
-
-                try {
-                    bcos.write(b);
-                } catch (final IOException ioe) {
-                    recycle = false;
-                    throw new IOException("Failed to write to " + this, ioe);
-                }
-
-                bytesWritten += b.length;
-                scc.setLength(bytesWritten + initialLength);
-            }
-
-            @Override
-            public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
-                if (closed) {
-                    throw new IOException("Stream is closed");
-                }
-
-                try {
-                    bcos.write(b, off, len);
-                } catch (final IOException ioe) {
-                    recycle = false;
-                    throw new IOException("Failed to write to " + this, ioe);
-                }
-
-                bytesWritten += len;
-
-                scc.setLength(bytesWritten + initialLength);
-            }
-
-            @Override
-            public synchronized void flush() throws IOException {
-                if (closed) {
-                    throw new IOException("Stream is closed");
-                }
-
-                bcos.flush();
-            }
-
-            @Override
-            public synchronized void close() throws IOException {
-                closed = true;
-
-                if (alwaysSync) {
-                    ((FileOutputStream) bcos.getWrappedStream()).getFD().sync();
-                }
-
-                if (scc.getLength() < 0) {
-                    // If claim was not written to, set length to 0
-                    scc.setLength(0L);
-                }
-
-                // if we've not yet hit the threshold for appending to a resource claim, add the claim
-                // to the writableClaimQueue so that the Resource Claim can be used again when create()
-                // is called. In this case, we don't have to actually close the file stream. Instead, we
-                // can just add it onto the queue and continue to use it for the next content claim.
-                final long resourceClaimLength = scc.getOffset() + scc.getLength();
-                if (recycle && resourceClaimLength < maxAppendableClaimLength) {
-                    final ClaimLengthPair pair = new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength);
-
-                    // We are checking that writableClaimStreams contains the resource claim as a key, as a sanity check.
-                    // It should always be there. However, we have encountered a bug before where we archived content before
-                    // we should have. As a result, the Resource Claim and the associated OutputStream were removed from the
-                    // writableClaimStreams map, and this caused a NullPointerException. Worse, the call here to
-                    // writableClaimQueue.offer() means that the ResourceClaim was then reused, which resulted in an endless
-                    // loop of NullPointerException's being thrown. As a result, we simply ensure that the Resource Claim does
-                    // in fact have an OutputStream associated with it before adding it back to the writableClaimQueue.
-                    final boolean enqueued = writableClaimStreams.get(scc.getResourceClaim()) != null && writableClaimQueue.offer(pair);
-
-                    if (enqueued) {
-                        LOG.debug("Claim length less than max; Adding {} back to Writable Claim Queue", this);
-                    } else {
-                        writableClaimStreams.remove(scc.getResourceClaim());
-                        resourceClaimManager.freeze(scc.getResourceClaim());
-
-                        bcos.close();
-
-                        LOG.debug("Claim length less than max; Closing {} because could not add back to queue", this);
-                        if (LOG.isTraceEnabled()) {
-                            LOG.trace("Stack trace: ", new RuntimeException("Stack Trace for closing " + this));
-                        }
-                    }
-                } else {
-                    // we've reached the limit for this claim. Don't add it back to our queue.
-                    // Instead, just remove it and move on.
-
-                    // Mark the claim as no longer being able to be written to
-                    resourceClaimManager.freeze(scc.getResourceClaim());
-
-                    // ensure that the claim is no longer on the queue
-                    writableClaimQueue.remove(new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength));
-
-                    bcos.close();
-                    LOG.debug("Claim lenth >= max; Closing {}", this);
-                    if (LOG.isTraceEnabled()) {
-                        LOG.trace("Stack trace: ", new RuntimeException("Stack Trace for closing " + this));
-                    }
-                }
-            }
-        };
+        final ContentClaimOutputStream out = new ContentClaimOutputStream(scc, claimStream, initialLength);
 
         LOG.debug("Writing to {}", out);
         if (LOG.isTraceEnabled()) {
@@ -1076,6 +1095,14 @@ public class FileSystemRepository implements ContentRepository {
             }
         }
 
+        for (final Map.Entry<String, ArchiveIndex> entry : archiveIndexes.entrySet()) {
+            try {
+                entry.getValue().clear();
+            } catch (final IOException ioe) {
+                throw new RepositoryPurgeException("Failed to clear Archive Index for Container " + entry.getKey(), ioe);
+            }
+        }
+
         resourceClaimManager.purge();
     }
 
@@ -1165,6 +1192,7 @@ public class FileSystemRepository implements ContentRepository {
         // claimant count is removed without writing to the claim (or more specifically, without closing the
         // OutputStream that is returned when calling write() ).
         final OutputStream out = writableClaimStreams.remove(claim);
+        syncGroups.remove(claim);
 
         if (out != null) {
             try {
@@ -1174,16 +1202,39 @@ public class FileSystemRepository implements ContentRepository {
             }
         }
 
+        if (mappedClaimCache != null) {
+            mappedClaimCache.evict(claim);
+        }
+
         final Path curPath = getPath(claim);
         if (curPath == null) {
             return false;
         }
 
         final boolean archived = archive(curPath);
+        if (archived) {
+            indexArchivedFile(claim.getContainer(), getArchivePath(curPath));
+        }
+
         LOG.debug("Successfully moved {} to archive", claim);
         return archived;
     }
 
+    private void indexArchivedFile(final String containerName, final Path archivePath) {
+        final ArchiveIndex archiveIndex = archiveIndexes.get(containerName);
+        if (archiveIndex == null) {
+            return;
+        }
+
+        try {
+            archiveIndex.add(archivePath, Files.size(archivePath));
+        } catch (final NoSuchFileException nsfe) {
+            // The file was already removed from the archive, so there is nothing to index.
+        } catch (final IOException ioe) {
+            LOG.warn("Failed to add {} to the Archive Index for Container {}; the index will be rebuilt before archived data is next expired", archivePath, containerName, ioe);
+        }
+    }
+
     protected int getOpenStreamCount() {
         return writableClaimStreams.size();
     }
@@ -1245,24 +1296,8 @@ public class FileSystemRepository implements ContentRepository {
         return getLastModTime(file.toFile());
     }
 
-    private boolean deleteBasedOnTimestamp(final BlockingQueue<ArchiveInfo> fileQueue, final long removalTimeThreshold) throws IOException {
-        // check next file's last mod time.
-        final ArchiveInfo nextFile = fileQueue.peek();
-        if (nextFile == null) {
-            // Continue on to queue up the files, in case the next file must be destroyed based on time.
-            return false;
-        }
-
-        // If the last mod time indicates that it should be removed, just continue loop.
-        final long oldestArchiveDate = getLastModTime(nextFile.toPath());
-        return (oldestArchiveDate <= removalTimeThreshold);
-    }
-
     private long destroyExpiredArchives(final String containerName, final Path container) throws IOException {
         archiveExpirationLog.debug("Destroying Expired Archives for Container {}", containerName);
-        final List<ArchiveInfo> notYetExceedingThreshold = new ArrayList<>();
-        long removalTimeThreshold = System.currentTimeMillis() - maxArchiveMillis;
-        long oldestArchiveDateFound = System.currentTimeMillis();
 
         // determine how much space we must have in order to stop deleting old data
         final Long minRequiredSpace = minUsableContainerBytesForArchive.get(containerName);
@@ -1274,10 +1309,21 @@ public class FileSystemRepository implements ContentRepository {
         final long usableSpace = getContainerUsableSpace(containerName);
         final ContainerState containerState = containerStateMap.get(containerName);
 
-        // First, delete files from our queue
+        // The Archive Index is only maintained when archiving is enabled. The archive may still hold data from a time when archiving
+        // was enabled, so in that case we fall back to scanning the archive directories for it.
+        final ArchiveIndex archiveIndex = archiveIndexes.get(containerName);
+        if (archiveIndex == null) {
+            return destroyExpiredArchivesByScan(containerName, container, usableSpace, minRequiredSpace, containerState);
+        }
+
+        // If the index could not be trusted on startup, or could not be updated, rebuild it from the archive directories.
+        // This is the only time that we have to scan the archive directories.
+        if (archiveIndex.rebuildIfNecessary(SECTIONS_PER_CONTAINER, ARCHIVE_DIR_NAME)) {
+            archiveExpirationLog.debug("Rebuilt Archive Index for Container {}", containerName);
+        }
+
         final long startNanos = System.nanoTime();
         final long toFree = minRequiredSpace - usableSpace;
-        final BlockingQueue<ArchiveInfo> fileQueue = archivedFiles.get(containerName);
         if (archiveExpirationLog.isDebugEnabled()) {
             if (toFree < 0) {
                 archiveExpirationLog.debug("Currently {} bytes free for Container {}; requirement is {} byte free, so no need to free space until an additional {} bytes are used",
@@ -1288,73 +1334,81 @@ public class FileSystemRepository implements ContentRepository {
             }
         }
 
-        ArchiveInfo toDelete;
+        // The index is ordered by timestamp, so we delete from the head of the index until we have freed enough space and the
+        // next file is not old enough to be destroyed based on time.
+        ArchiveIndex.Entry toDelete;
         int deleteCount = 0;
         long freed = 0L;
-        while ((toDelete = fileQueue.peek()) != null) {
-            try {
-                final long fileSize = toDelete.getSize();
-
-                removalTimeThreshold = System.currentTimeMillis() - maxArchiveMillis;
-
-                // we use fileQueue.peek above instead of fileQueue.poll() because we don't always want to
-                // remove the head of the queue. Instead, we want to remove it only if we plan to delete it.
-                // In order to accomplish this, we just peek at the head and check if it should be deleted.
-                // If so, then we call poll() to remove it
-                if (freed < toFree || getLastModTime(toDelete.toPath()) < removalTimeThreshold) {
-                    toDelete = fileQueue.poll(); // remove the head of the queue, which is already stored in 'toDelete'
-                    Files.deleteIfExists(toDelete.toPath());
-                    containerState.decrementArchiveCount();
-                    LOG.debug("Deleted archived ContentClaim with ID {} from Container {} because the archival size was exceeding the max configured size", toDelete.getName(), containerName);
-                    freed += fileSize;
-                    deleteCount++;
+        try {
+            while ((toDelete = archiveIndex.peek()) != null) {
+                final long removalTimeThreshold = System.currentTimeMillis() - maxArchiveMillis;
+                final boolean expired = toDelete.getTimestamp() < removalTimeThreshold;
+                if (freed >= toFree && !expired) {
+                    break;
                 }
 
-                // If we'd freed up enough space, we're done... unless the next file needs to be destroyed based on time.
-                if (freed >= toFree) {
-                    // If the last mod time indicates that it should be removed, just continue loop.
-                    if (deleteBasedOnTimestamp(fileQueue, removalTimeThreshold)) {
-                        archiveExpirationLog.debug("Freed enough space ({} bytes freed, needed to free {} bytes) but will continue to expire data based on timestamp", freed, toFree);
-                        continue;
-                    }
-
-                    archiveExpirationLog.debug("Freed enough space ({} bytes freed, needed to free {} bytes). Finished expiring data", freed, toFree);
+                archiveIndex.poll();
 
-                    final ArchiveInfo archiveInfo = fileQueue.peek();
-                    final long oldestArchiveDate = archiveInfo == null ? System.currentTimeMillis() : getLastModTime(archiveInfo.toPath());
-
-                    // Otherwise, we're done. Return the last mod time of the oldest file in the container's archive.
-                    final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
-                    if (deleteCount > 0) {
-                        LOG.info("Deleted {} files from archive for Container {}; oldest Archive Date is now {}; container cleanup took {} millis",
-                                deleteCount, containerName, new Date(oldestArchiveDate), millis);
-                    } else {
-                        LOG.debug("Deleted {} files from archive for Container {}; oldest Archive Date is now {}; container cleanup took {} millis",
-                                deleteCount, containerName, new Date(oldestArchiveDate), millis);
+                final Path path = container.resolve(toDelete.getRelativePath());
+                try {
+                    if (Files.deleteIfExists(path)) {
+                        containerState.decrementArchiveCount();
+                        freed += toDelete.getSize();
+                        deleteCount++;
+
+                        if (expired) {
+                            LOG.debug("Deleted archived ContentClaim with ID {} from Container {} because it was older than the configured max archival duration",
+                                    path.toFile().getName(), containerName);
+                        } else {
+                            LOG.debug("Deleted archived ContentClaim with ID {} from Container {} because the archival size was exceeding the max configured size",
+                                    path.toFile().getName(), containerName);
+                        }
+                    }
+                } catch (final IOException ioe) {
+                    LOG.warn("Failed to delete {} from archive due to {}", toDelete, ioe.toString());
+                    if (LOG.isDebugEnabled()) {
+                        LOG.warn("", ioe);
                     }
-
-                    return oldestArchiveDate;
-                }
-            } catch (final IOException ioe) {
-                LOG.warn("Failed to delete {} from archive due to {}", toDelete, ioe.toString());
-                if (LOG.isDebugEnabled()) {
-                    LOG.warn("", ioe);
                 }
             }
+        } finally {
+            archiveIndex.checkpoint();
+        }
+
+        final ArchiveIndex.Entry oldest = archiveIndex.peek();
+        final long oldestContainerArchive = oldest == null ? System.currentTimeMillis() : oldest.getTimestamp();
+
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (deleteCount > 0) {
+            LOG.info("Deleted {} files from archive for Container {}; oldest Archive Date is now {}; container cleanup took {} millis",
+                    deleteCount, containerName, new Date(oldestContainerArchive), millis);
+        } else {
+            LOG.debug("Deleted {} files from archive for Container {}; oldest Archive Date is now {}; container cleanup took {} millis",
+                    deleteCount, containerName, new Date(oldestContainerArchive), millis);
         }
 
-        // Go through each container and grab the archived data into a List
-        archiveExpirationLog.debug("Searching for more archived data to expire");
-        final StopWatch stopWatch = new StopWatch(true);
+        return oldestContainerArchive;
+    }
+
+    /**
+     * Destroys archived data by walking the archive directories of the given container, deleting any file that is older than the max
+     * archival duration and then, if more space is needed, the oldest of the remaining files
+     *
+     * @return the last modified time of the oldest file that remains in the container's archive
+     */
+    private long destroyExpiredArchivesByScan(final String containerName, final Path container, final long usableSpace, final long minRequiredSpace,
+                                              final ContainerState containerState) {
+        archiveExpirationLog.debug("Container {} has no Archive Index so will search the archive directories for data to expire", containerName);
+
+        final long removalTimeThreshold = System.currentTimeMillis() - maxArchiveMillis;
+        final List<ArchiveIndex.Entry> notYetExceedingThreshold = new ArrayList<>();
         for (int i = 0; i < SECTIONS_PER_CONTAINER; i++) {
-            final Path sectionContainer = container.resolve(String.valueOf(i));
-            final Path archive = sectionContainer.resolve("archive");
+            final Path archive = container.resolve(String.valueOf(i)).resolve(ARCHIVE_DIR_NAME);
             if (!Files.exists(archive)) {
                 continue;
             }
 
             try {
-                final long timestampThreshold = removalTimeThreshold;
                 Files.walkFileTree(archive, new SimpleFileVisitor<Path>() {
                     @Override
                     public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
@@ -1363,7 +1417,7 @@ public class FileSystemRepository implements ContentRepository {
                         }
 
                         final long lastModTime = getLastModTime(file);
-                        if (lastModTime < timestampThreshold) {
+                        if (lastModTime < removalTimeThreshold) {
                             try {
                                 Files.deleteIfExists(file);
                                 containerState.decrementArchiveCount();
@@ -1375,8 +1429,8 @@ public class FileSystemRepository implements ContentRepository {
                                     LOG.warn("", ioe);
                                 }
                             }
-                        } else if (usableSpace < minRequiredSpace) {
-                            notYetExceedingThreshold.add(new ArchiveInfo(container, file, attrs.size(), lastModTime));
+                        } else {
+                            notYetExceedingThreshold.add(new ArchiveIndex.Entry(lastModTime, attrs.size(), container.relativize(file).toString()));
                         }
 
                         return FileVisitResult.CONTINUE;
@@ -1389,70 +1443,31 @@ public class FileSystemRepository implements ContentRepository {
                 }
             }
         }
-        final long deleteExpiredMillis = stopWatch.getElapsed(TimeUnit.MILLISECONDS);
-
-        // Sort the list according to last modified time
-        Collections.sort(notYetExceedingThreshold, new Comparator<ArchiveInfo>() {
-            @Override
-            public int compare(final ArchiveInfo o1, final ArchiveInfo o2) {
-                return Long.compare(o1.getLastModTime(), o2.getLastModTime());
-            }
-        });
-
-        final long sortRemainingMillis = stopWatch.getElapsed(TimeUnit.MILLISECONDS) - deleteExpiredMillis;
 
-        // Delete the oldest data
-        archiveExpirationLog.debug("Deleting data based on timestamp");
-        final Iterator<ArchiveInfo> itr = notYetExceedingThreshold.iterator();
-        int counter = 0;
-        while (itr.hasNext()) {
-            final ArchiveInfo archiveInfo = itr.next();
+        notYetExceedingThreshold.sort(Comparator.comparingLong(ArchiveIndex.Entry::getTimestamp));
 
+        // Delete the oldest data until enough space has been freed
+        long freed = 0L;
+        int deleted = 0;
+        for (; deleted < notYetExceedingThreshold.size() && freed < minRequiredSpace - usableSpace; deleted++) {
+            final ArchiveIndex.Entry entry = notYetExceedingThreshold.get(deleted);
+            final Path path = container.resolve(entry.getRelativePath());
             try {
-                final Path path = archiveInfo.toPath();
-                Files.deleteIfExists(path);
-                containerState.decrementArchiveCount();
-                LOG.debug("Deleted archived ContentClaim with ID {} from Container {} because the archival size was exceeding the max configured size", archiveInfo.getName(), containerName);
-
-                // Check if we've freed enough space every 25 files that we destroy
-                if (++counter % 25 == 0) {
-                    if (getContainerUsableSpace(containerName) > minRequiredSpace) { // check if we can stop now
-                        LOG.debug("Finished cleaning up archive for Container {}", containerName);
-                        break;
-                    }
+                if (Files.deleteIfExists(path)) {
+                    containerState.decrementArchiveCount();
+                    freed += entry.getSize();
+                    LOG.debug("Deleted archived ContentClaim with ID {} from Container {} because the archival size was exceeding the max configured size",
+                            path.toFile().getName(), containerName);
                 }
             } catch (final IOException ioe) {
-                LOG.warn("Failed to delete {} from archive due to {}", archiveInfo, ioe.toString());
+                LOG.warn("Failed to delete {} from archive due to {}", path, ioe.toString());
                 if (LOG.isDebugEnabled()) {
                     LOG.warn("", ioe);
                 }
             }
-
-            itr.remove();
-        }
-
-        final long deleteOldestMillis = stopWatch.getElapsed(TimeUnit.MILLISECONDS) - sortRemainingMillis - deleteExpiredMillis;
-
-        long oldestContainerArchive;
-        if (notYetExceedingThreshold.isEmpty()) {
-            oldestContainerArchive = System.currentTimeMillis();
-        } else {
-            oldestContainerArchive = notYetExceedingThreshold.get(0).getLastModTime();
-        }
-
-        if (oldestContainerArchive < oldestArchiveDateFound) {
-            oldestArchiveDateFound = oldestContainerArchive;
-        }
-
-        // Queue up the files in the order that they should be destroyed so that we don't have to scan the directories for a while.
-        for (final ArchiveInfo toEnqueue : notYetExceedingThreshold.subList(0, Math.min(100000, notYetExceedingThreshold.size()))) {
-            fileQueue.offer(toEnqueue);
         }
 
-        final long cleanupMillis = stopWatch.getElapsed(TimeUnit.MILLISECONDS) - deleteOldestMillis - sortRemainingMillis - deleteExpiredMillis;
-        LOG.debug("Oldest Archive Date for Container {} is {}; delete expired = {} ms, sort remaining = {} ms, delete oldest = {} ms, cleanup = {} ms",
-                containerName, new Date(oldestContainerArchive), deleteExpiredMillis, sortRemainingMillis, deleteOldestMillis, cleanupMillis);
-        return oldestContainerArchive;
+        return deleted < notYetExceedingThreshold.size() ? notYetExceedingThreshold.get(deleted).getTimestamp() : System.currentTimeMillis();
     }
 
     private class ArchiveOrDestroyDestructableClaims implements Runnable {
@@ -1520,39 +1535,6 @@ public class FileSystemRepository implements ContentRepository {
         }
     }
 
-    private static class ArchiveInfo {
-
-        private final Path containerPath;
-        private final String relativePath;
-        private final String name;
-        private final long size;
-        private final long lastModTime;
-
-        public ArchiveInfo(final Path containerPath, final Path path, final long size, final long lastModTime) {
-            this.containerPath = containerPath;
-            this.relativePath = containerPath.relativize(path).toString();
-            this.name = path.toFile().getName();
-            this.size = size;
-            this.lastModTime = lastModTime;
-        }
-
-        public String getName() {
-            return name;
-        }
-
-        public long getSize() {
-            return size;
-        }
-
-        public long getLastModTime() {
-            return lastModTime;
-        }
-
-        public Path toPath() {
-            return containerPath.resolve(relativePath);
-        }
-    }
-
     private class DestroyExpiredArchiveClaims implements Runnable {
 
         private final String containerName;
@@ -1713,6 +1695,226 @@ public class FileSystemRepository implements ContentRepository {
         }
     }
 
+    /**
+     * The OutputStream that is used to write to a single Content Claim. All Content Claims that share a Resource Claim are written through
+     * the same underlying FileOutputStream, but only one Content Claim at a time, as the Resource Claim is not handed out by create()
+     * again until the stream for the previous Content Claim has been closed.
+     */
+    private class ContentClaimOutputStream extends OutputStream {
+        private final StandardContentClaim scc;
+        private final ByteCountingOutputStream bcos;
+        private final long initialLength;
+        private long bytesWritten = 0L;
+        private boolean recycle = true;
+        private boolean closed = false;
+
+        ContentClaimOutputStream(final StandardContentClaim scc, final ByteCountingOutputStream bcos, final long initialLength) {
+            this.scc = scc;
+            this.bcos = bcos;
+            this.initialLength = initialLength;
+        }
+
+        @Override
+        public String toString() {
+            return "FileSystemRepository Stream [" + scc + "]";
+        }
+
+        @Override
+        public synchronized void write(final int b) throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+
+            try {
+                bcos.write(b);
+            } catch (final IOException ioe) {
+                recycle = false;
+                throw new IOException("Failed to write to " + this, ioe);
+            }
+
+            bytesWritten++;
+            scc.setLength(bytesWritten + initialLength);
+        }
+
+        @Override
+        public synchronized void write(final byte[] b) throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+
+            try {
+                bcos.write(b);
+            } catch (final IOException ioe) {
+                recycle = false;
+                throw new IOException("Failed to write to " + this, ioe);
+            }
+
+            bytesWritten += b.length;
+            scc.setLength(bytesWritten + initialLength);
+        }
+
+        @Override
+        public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+
+            try {
+                bcos.write(b, off, len);
+            } catch (final IOException ioe) {
+                recycle = false;
+                throw new IOException("Failed to write to " + this, ioe);
+            }
+
+            bytesWritten += len;
+
+            scc.setLength(bytesWritten + initialLength);
+        }
+
+        /**
+         * Appends the given number of bytes from the given FileChannel, starting at the given position, to the Content Claim.
+         * The bytes are transferred by the operating system directly from one file to the other, rather than being copied through
+         * the JVM's heap.
+         *
+         * @param source the channel to read from
+         * @param position the position in the source channel to start reading from
+         * @param count the number of bytes to transfer
+         * @return the number of bytes transferred, which is less than <code>count</code> only if the end of the source was reached
+         * @throws IOException if unable to read from the source or write to the Content Claim
+         */
+        public synchronized long transferFrom(final FileChannel source, final long position, final long count) throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+
+            long transferred = 0L;
+            try {
+                // Hold the lock on the underlying stream so that nothing else can write to it while we are bypassing it.
+                synchronized (bcos) {
+                    bcos.flush();
+                    final FileChannel destination = ((FileOutputStream) bcos.getWrappedStream()).getChannel();
+
+                    while (transferred < count) {
+                        final long bytesTransferred = source.transferTo(position + transferred, count - transferred, destination);
+                        if (bytesTransferred <= 0) {
+                            break;
+                        }
+
+                        transferred += bytesTransferred;
+                    }
+                }
+            } catch (final IOException ioe) {
+                recycle = false;
+                throw new IOException("Failed to write to " + this, ioe);
+            } finally {
+                bytesWritten += transferred;
+                scc.setLength(bytesWritten + initialLength);
+            }
+
+            return transferred;
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+
+            bcos.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            closed = true;
+
+            if (scc.getLength() < 0) {
+                // If claim was not written to, set length to 0
+                scc.setLength(0L);
+            }
+
+            // if we've not yet hit the threshold for appending to a resource claim, add the claim
+            // to the writableClaimQueue so that the Resource Claim can be used again when create()
+            // is called. In this case, we don't have to actually close the file stream. Instead, we
+            // can just add it onto the queue and continue to use it for the next content claim.
+            final long resourceClaimLength = scc.getOffset() + scc.getLength();
+            final FileSyncGroup syncGroup = alwaysSync ? syncGroups.get(scc.getResourceClaim()) : null;
+            if (recycle && resourceClaimLength < maxAppendableClaimLength) {
+                final ClaimLengthPair pair = new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength);
+
+                // We are checking that writableClaimStreams contains the resource claim as a key, as a sanity check.
+                // It should always be there. However, we have encountered a bug before where we archived content before
+                // we should have. As a result, the Resource Claim and the associated OutputStream were removed from the
+                // writableClaimStreams map, and this caused a NullPointerException. Worse, the call here to
+                // writableClaimQueue.offer() means that the ResourceClaim was then reused, which resulted in an endless
+                // loop of NullPointerException's being thrown. As a result, we simply ensure that the Resource Claim does
+                // in fact have an OutputStream associated with it before adding it back to the writableClaimQueue.
+                final boolean enqueued = writableClaimStreams.get(scc.getResourceClaim()) != null && writableClaimQueue.offer(pair);
+
+                if (enqueued) {
+                    LOG.debug("Claim length less than max; Adding {} back to Writable Claim Queue", this);
+
+                    // The Resource Claim has already been made available to other writers, so that if another writer appends to it
+                    // while we are syncing, its data can be made durable by the next sync, along with that of any other writers.
+                    syncClaimStream(syncGroup, resourceClaimLength);
+                } else {
+                    writableClaimStreams.remove(scc.getResourceClaim());
+                    resourceClaimManager.freeze(scc.getResourceClaim());
+
+                    closeClaimStream(syncGroup, resourceClaimLength);
+
+                    LOG.debug("Claim length less than max; Closing {} because could not add back to queue", this);
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("Stack trace: ", new RuntimeException("Stack Trace for closing " + this));
+                    }
+                }
+            } else {
+                // we've reached the limit for this claim. Don't add it back to our queue.
+                // Instead, just remove it and move on.
+
+                // Mark the claim as no longer being able to be written to
+                resourceClaimManager.freeze(scc.getResourceClaim());
+
+                // ensure that the claim is no longer on the queue
+                writableClaimQueue.remove(new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength));
+
+                closeClaimStream(syncGroup, resourceClaimLength);
+                LOG.debug("Claim lenth >= max; Closing {}", this);
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Stack trace: ", new RuntimeException("Stack Trace for closing " + this));
+                }
+            }
+        }
+
+        /**
+         * If 'always sync' is enabled, returns once the Resource Claim has been synced to disk up to the given length.
+         */
+        private void syncClaimStream(final FileSyncGroup syncGroup, final long resourceClaimLength) throws IOException {
+            if (syncGroup != null) {
+                syncGroup.sync(resourceClaimLength);
+            } else if (alwaysSync) {
+                ((FileOutputStream) bcos.getWrappedStream()).getFD().sync();
+            }
+        }
+
+        /**
+         * Closes the underlying stream for the Resource Claim, first syncing it to disk if 'always sync' is enabled.
+         */
+        private void closeClaimStream(final FileSyncGroup syncGroup, final long resourceClaimLength) throws IOException {
+            try {
+                syncClaimStream(syncGroup, resourceClaimLength);
+            } finally {
+                try {
+                    if (syncGroup != null) {
+                        syncGroups.remove(scc.getResourceClaim(), syncGroup);
+                        syncGroup.close();
+                    }
+                } finally {
+                    bcos.close();
+                }
+            }
+        }
+    }
+
     private static class ClaimLengthPair {
 
         private final ResourceClaim claim;
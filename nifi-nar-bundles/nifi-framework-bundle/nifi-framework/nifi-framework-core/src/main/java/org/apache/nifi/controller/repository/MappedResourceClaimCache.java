@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+
+/**
+ * <p>
+ * A cache of memory-mapped Resource Claim files, which allows the content of small, frequently read Content Claims to be served
+ * without opening a file and issuing a read for each time that the content is read. The cache holds at most a configured number of
+ * mappings, evicting the least recently used mapping when full.
+ * </p>
+ *
+ * <p>
+ * Only Resource Claims that will no longer be written to should be mapped, as a mapping does not reflect anything that is appended
+ * to the file after it was created. A mapping is released when it is evicted and no stream is reading from it any longer; Java provides
+ * no way to unmap a file explicitly, so the memory is returned once the mapping has been garbage collected.
+ * </p>
+ */
+class MappedResourceClaimCache {
+    private final int maxMappings;
+    private final long maxMappedFileSize;
+    private final Map<ResourceClaim, MappedByteBuffer> mappings;
+
+    /**
+     * @param maxMappings the maximum number of Resource Claim files to keep mapped at any one time
+     * @param maxMappedFileSize the size of the largest file that will be mapped. Larger files are generally made up of a single,
+     *            large Content Claim, which does not benefit from being mapped
+     */
+    MappedResourceClaimCache(final int maxMappings, final long maxMappedFileSize) {
+        this.maxMappings = maxMappings;
+        this.maxMappedFileSize = maxMappedFileSize;
+        this.mappings = new LinkedHashMap<ResourceClaim, MappedByteBuffer>(maxMappings, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<ResourceClaim, MappedByteBuffer> eldest) {
+                return size() > MappedResourceClaimCache.this.maxMappings;
+            }
+        };
+    }
+
+    /**
+     * Returns a read-only buffer containing the given range of the file that backs the given Resource Claim, if the file is
+     * already mapped.
+     *
+     * @param resourceClaim the Resource Claim whose file is to be read
+     * @param offset the offset into the file of the first byte to read
+     * @param length the number of bytes to read
+     * @return a buffer whose remaining bytes are the requested range, or <code>null</code> if the file is not mapped
+     */
+    ByteBuffer getBuffer(final ResourceClaim resourceClaim, final long offset, final long length) {
+        final MappedByteBuffer mapping;
+        synchronized (this) {
+            mapping = mappings.get(resourceClaim);
+        }
+
+        return mapping == null ? null : slice(mapping, offset, length);
+    }
+
+    /**
+     * Maps the file that backs the given Resource Claim and returns a read-only buffer containing the given range of the file.
+     *
+     * @param resourceClaim the Resource Claim whose file is to be read
+     * @param path the path of the file that backs the Resource Claim
+     * @param offset the offset into the file of the first byte to read
+     * @param length the number of bytes to read
+     * @return a buffer whose remaining bytes are the requested range, or <code>null</code> if the file is too large to be mapped or does
+     *         not contain the requested range
+     * @throws IOException if unable to map the file
+     */
+    ByteBuffer map(final ResourceClaim resourceClaim, final Path path, final long offset, final long length) throws IOException {
+        // Map the file without holding the lock. If two threads map the same file concurrently, the last mapping to be cached wins.
+        final MappedByteBuffer mapping;
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if (fileSize > maxMappedFileSize || offset + length > fileSize) {
+                return null;
+            }
+
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0L, fileSize);
+        }
+
+        synchronized (this) {
+            mappings.put(resourceClaim, mapping);
+        }
+
+        return slice(mapping, offset, length);
+    }
+
+    private ByteBuffer slice(final MappedByteBuffer mapping, final long offset, final long length) {
+        if (offset + length > mapping.capacity()) {
+            return null;
+        }
+
+        final ByteBuffer buffer = mapping.asReadOnlyBuffer();
+        buffer.position((int) offset);
+        buffer.limit((int) (offset + length));
+        return buffer;
+    }
+
+    /**
+     * Removes the mapping for the given Resource Claim, if there is one. This should be called when the Resource Claim's file is
+     * removed or archived.
+     *
+     * @param resourceClaim the Resource Claim whose mapping should be removed
+     */
+    synchronized void evict(final ResourceClaim resourceClaim) {
+        mappings.remove(resourceClaim);
+    }
+
+    synchronized void clear() {
+        mappings.clear();
+    }
+
+    synchronized int size() {
+        return mappings.size();
+    }
+}
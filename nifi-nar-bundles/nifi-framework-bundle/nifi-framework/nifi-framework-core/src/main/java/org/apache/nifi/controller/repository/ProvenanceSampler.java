@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.groups.ProcessGroup;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.util.NiFiProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the {@link ProvenanceSamplingPolicy Provenance Sampling Policies} that are configured in nifi.properties, by component and by Process Group.
+ * A policy is configured by a set of properties of the form <code>nifi.provenance.sampling.component.&lt;component id&gt;.&lt;setting&gt;</code> or
+ * <code>nifi.provenance.sampling.group.&lt;process group id&gt;.&lt;setting&gt;</code>, where the setting is one of:
+ *
+ * <ul>
+ * <li><code>event.types</code> - a comma-separated list of the event types to register</li>
+ * <li><code>ratio</code> - register the events of one out of every N FlowFiles</li>
+ * <li><code>max.rate</code> - the maximum number of events to register per second</li>
+ * </ul>
+ *
+ * A policy that is configured for a component applies to it. Otherwise, the policy of the nearest enclosing Process Group that has one applies.
+ */
+public class ProvenanceSampler {
+    private static final Logger logger = LoggerFactory.getLogger(ProvenanceSampler.class);
+
+    public static final String DROPPED_EVENTS_COUNTER = "Provenance Events Dropped by Sampling";
+
+    static final String EVENT_TYPES = "event.types";
+    static final String RATIO = "ratio";
+    static final String MAX_RATE = "max.rate";
+
+    private final Map<String, ProvenanceSamplingPolicy> componentPolicies;
+    private final Map<String, ProvenanceSamplingPolicy> groupPolicies;
+
+    public ProvenanceSampler(final Map<String, ProvenanceSamplingPolicy> componentPolicies, final Map<String, ProvenanceSamplingPolicy> groupPolicies) {
+        this.componentPolicies = Collections.unmodifiableMap(new HashMap<>(componentPolicies));
+        this.groupPolicies = Collections.unmodifiableMap(new HashMap<>(groupPolicies));
+    }
+
+    public static ProvenanceSampler create(final NiFiProperties properties) {
+        final Map<String, ProvenanceSamplingPolicy> componentPolicies = createPolicies(properties, NiFiProperties.PROVENANCE_SAMPLING_COMPONENT_PREFIX);
+        final Map<String, ProvenanceSamplingPolicy> groupPolicies = createPolicies(properties, NiFiProperties.PROVENANCE_SAMPLING_GROUP_PREFIX);
+
+        for (final Map.Entry<String, ProvenanceSamplingPolicy> entry : componentPolicies.entrySet()) {
+            logger.info("Provenance Events for component {} will be sampled using {}", entry.getKey(), entry.getValue());
+        }
+        for (final Map.Entry<String, ProvenanceSamplingPolicy> entry : groupPolicies.entrySet()) {
+            logger.info("Provenance Events for Process Group {} will be sampled using {}", entry.getKey(), entry.getValue());
+        }
+
+        return new ProvenanceSampler(componentPolicies, groupPolicies);
+    }
+
+    private static Map<String, ProvenanceSamplingPolicy> createPolicies(final NiFiProperties properties, final String prefix) {
+        final Map<String, Map<String, String>> settingsById = new HashMap<>();
+        for (final String propertyName : properties.getPropertyKeys()) {
+            if (!propertyName.startsWith(prefix)) {
+                continue;
+            }
+
+            final String remainder = propertyName.substring(prefix.length());
+            final int dotIndex = remainder.indexOf('.');
+            if (dotIndex < 1) {
+                throw new IllegalArgumentException("Invalid Provenance Sampling property " + propertyName + ": expected " + prefix + "<id>.<setting>");
+            }
+
+            final String id = remainder.substring(0, dotIndex);
+            final String setting = remainder.substring(dotIndex + 1);
+            final String value = properties.getProperty(propertyName);
+            if (value == null || value.trim().isEmpty()) {
+                continue;
+            }
+
+            settingsById.computeIfAbsent(id, key -> new HashMap<>()).put(setting, value.trim());
+        }
+
+        final Map<String, ProvenanceSamplingPolicy> policies = new HashMap<>();
+        for (final Map.Entry<String, Map<String, String>> entry : settingsById.entrySet()) {
+            policies.put(entry.getKey(), createPolicy(prefix + entry.getKey() + ".", entry.getValue()));
+        }
+
+        return policies;
+    }
+
+    private static ProvenanceSamplingPolicy createPolicy(final String propertyPrefix, final Map<String, String> settings) {
+        Set<ProvenanceEventType> eventTypes = null;
+        int ratio = 1;
+        long maxRate = -1L;
+
+        for (final Map.Entry<String, String> entry : settings.entrySet()) {
+            final String propertyName = propertyPrefix + entry.getKey();
+            final String value = entry.getValue();
+
+            switch (entry.getKey()) {
+                case EVENT_TYPES:
+                    eventTypes = EnumSet.noneOf(ProvenanceEventType.class);
+                    for (final String typeName : value.split(",")) {
+                        if (typeName.trim().isEmpty()) {
+                            continue;
+                        }
+
+                        try {
+                            eventTypes.add(ProvenanceEventType.valueOf(typeName.trim().toUpperCase()));
+                        } catch (final IllegalArgumentException iae) {
+                            throw new IllegalArgumentException("Invalid value for " + propertyName + ": " + typeName.trim() + " is not a Provenance Event Type");
+                        }
+                    }
+                    break;
+                case RATIO:
+                    ratio = parsePositive(propertyName, value);
+                    break;
+                case MAX_RATE:
+                    maxRate = parsePositive(propertyName, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid Provenance Sampling property " + propertyName + ": expected one of "
+                        + EVENT_TYPES + ", " + RATIO + " or " + MAX_RATE);
+            }
+        }
+
+        return new ProvenanceSamplingPolicy(eventTypes, ratio, maxRate);
+    }
+
+    private static int parsePositive(final String propertyName, final String value) {
+        final int parsed;
+        try {
+            parsed = Integer.parseInt(value);
+        } catch (final NumberFormatException nfe) {
+            throw new IllegalArgumentException("Invalid value for " + propertyName + ": " + value + " is not an integer");
+        }
+
+        if (parsed < 1) {
+            throw new IllegalArgumentException("Invalid value for " + propertyName + ": must be at least 1");
+        }
+        return parsed;
+    }
+
+    /**
+     * @param connectable the component
+     * @return the policy that applies to the given component, or <code>null</code> if all of its events are to be registered
+     */
+    public ProvenanceSamplingPolicy getPolicy(final Connectable connectable) {
+        if (componentPolicies.isEmpty() && groupPolicies.isEmpty()) {
+            return null;
+        }
+
+        final ProvenanceSamplingPolicy componentPolicy = componentPolicies.get(connectable.getIdentifier());
+        if (componentPolicy != null) {
+            return componentPolicy;
+        }
+
+        if (groupPolicies.isEmpty()) {
+            return null;
+        }
+
+        ProcessGroup group = connectable.getProcessGroup();
+        while (group != null) {
+            final ProvenanceSamplingPolicy groupPolicy = groupPolicies.get(group.getIdentifier());
+            if (groupPolicy != null) {
+                return groupPolicy;
+            }
+
+            group = group.getParent();
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+
+/**
+ * <p>
+ * Determines which of the Provenance Events that are generated by a component are registered with the Provenance Repository.
+ * A policy may limit the events to a set of event types, keep only one out of every N FlowFiles, and cap the number of events
+ * that are registered per second. A policy that is configured for a Process Group is shared by all components within that group,
+ * so its rate limit applies to the group as a whole.
+ * </p>
+ *
+ * <p>
+ * Events that create, join, split or remove FlowFiles (CREATE, FORK, JOIN, CLONE, DROP, EXPIRE and REPLAY) are always registered,
+ * regardless of the policy, so that lineage remains connected. The ratio is applied to the FlowFile's UUID rather than to a running
+ * count, so that all events for a FlowFile are either kept or dropped across all components that use the same ratio.
+ * </p>
+ */
+public class ProvenanceSamplingPolicy {
+    private static final Set<ProvenanceEventType> ALWAYS_REGISTERED = Collections.unmodifiableSet(EnumSet.of(ProvenanceEventType.CREATE,
+        ProvenanceEventType.FORK, ProvenanceEventType.JOIN, ProvenanceEventType.CLONE, ProvenanceEventType.DROP, ProvenanceEventType.EXPIRE,
+        ProvenanceEventType.REPLAY));
+
+    private final Set<ProvenanceEventType> eventTypes;
+    private final int ratio;
+    private final long maxEventsPerSecond;
+    private final LongSupplier nanoTime;
+
+    private final AtomicLong currentSecond = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong eventsThisSecond = new AtomicLong(0L);
+
+    /**
+     * @param eventTypes the types of events that are registered, or <code>null</code> to register events of all types
+     * @param ratio register the events of one out of every <code>ratio</code> FlowFiles
+     * @param maxEventsPerSecond the maximum number of events to register per second, or a value less than 1 for no limit
+     */
+    public ProvenanceSamplingPolicy(final Set<ProvenanceEventType> eventTypes, final int ratio, final long maxEventsPerSecond) {
+        this(eventTypes, ratio, maxEventsPerSecond, System::nanoTime);
+    }
+
+    ProvenanceSamplingPolicy(final Set<ProvenanceEventType> eventTypes, final int ratio, final long maxEventsPerSecond, final LongSupplier nanoTime) {
+        if (ratio < 1) {
+            throw new IllegalArgumentException("Sampling ratio must be at least 1 but was " + ratio);
+        }
+
+        this.eventTypes = eventTypes == null ? null : Collections.unmodifiableSet(EnumSet.copyOf(eventTypes));
+        this.ratio = ratio;
+        this.maxEventsPerSecond = maxEventsPerSecond;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @param event the event to check
+     * @return <code>true</code> if the event should be registered with the Provenance Repository, <code>false</code> if it should be dropped
+     */
+    public boolean isRegistered(final ProvenanceEventRecord event) {
+        final ProvenanceEventType eventType = event.getEventType();
+        if (ALWAYS_REGISTERED.contains(eventType)) {
+            return true;
+        }
+
+        if (eventTypes != null && !eventTypes.contains(eventType)) {
+            return false;
+        }
+
+        if (ratio > 1 && !isSampledFlowFile(event.getFlowFileUuid())) {
+            return false;
+        }
+
+        return maxEventsPerSecond < 1 || tryAcquire();
+    }
+
+    private boolean isSampledFlowFile(final String flowFileUuid) {
+        if (flowFileUuid == null) {
+            return true;
+        }
+
+        // Spread the bits of the hash code, as UUID Strings that differ only in their last characters have similar hash codes
+        int hash = flowFileUuid.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return (hash & Integer.MAX_VALUE) % ratio == 0;
+    }
+
+    private boolean tryAcquire() {
+        final long second = TimeUnit.NANOSECONDS.toSeconds(nanoTime.getAsLong());
+        final long previousSecond = currentSecond.get();
+        if (second != previousSecond && currentSecond.compareAndSet(previousSecond, second)) {
+            // Events that race with the reset may be counted against the previous second. The limit is approximate, but no locking is needed.
+            eventsThisSecond.set(0L);
+        }
+
+        return eventsThisSecond.incrementAndGet() <= maxEventsPerSecond;
+    }
+
+    public Set<ProvenanceEventType> getEventTypes() {
+        return eventTypes;
+    }
+
+    public int getRatio() {
+        return ratio;
+    }
+
+    public long getMaxEventsPerSecond() {
+        return maxEventsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "ProvenanceSamplingPolicy[eventTypes=" + (eventTypes == null ? "ALL" : eventTypes) + ", ratio=1:" + ratio
+            + ", maxEventsPerSecond=" + (maxEventsPerSecond < 1 ? "unlimited" : maxEventsPerSecond) + "]";
+    }
+}
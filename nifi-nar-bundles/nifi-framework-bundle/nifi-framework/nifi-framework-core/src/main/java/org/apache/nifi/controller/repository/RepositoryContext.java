@@ -31,6 +31,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class RepositoryContext {
 
@@ -40,17 +41,26 @@ public class RepositoryContext {
     private final FlowFileEventRepository flowFileEventRepo;
     private final CounterRepository counterRepo;
     private final ProvenanceEventRepository provenanceRepo;
+    private final ProvenanceSampler provenanceSampler;
     private final AtomicLong connectionIndex;
+    private final LongAdder sessionCommitNanos = new LongAdder();
 
     public RepositoryContext(final Connectable connectable, final AtomicLong connectionIndex, final ContentRepository contentRepository,
             final FlowFileRepository flowFileRepository, final FlowFileEventRepository flowFileEventRepository,
             final CounterRepository counterRepository, final ProvenanceEventRepository provenanceRepository) {
+        this(connectable, connectionIndex, contentRepository, flowFileRepository, flowFileEventRepository, counterRepository, provenanceRepository, null);
+    }
+
+    public RepositoryContext(final Connectable connectable, final AtomicLong connectionIndex, final ContentRepository contentRepository,
+            final FlowFileRepository flowFileRepository, final FlowFileEventRepository flowFileEventRepository,
+            final CounterRepository counterRepository, final ProvenanceEventRepository provenanceRepository, final ProvenanceSampler provenanceSampler) {
         this.connectable = connectable;
         contentRepo = contentRepository;
         flowFileRepo = flowFileRepository;
         flowFileEventRepo = flowFileEventRepository;
         counterRepo = counterRepository;
         provenanceRepo = provenanceRepository;
+        this.provenanceSampler = provenanceSampler;
 
         this.connectionIndex = connectionIndex;
     }
@@ -144,6 +154,25 @@ public class RepositoryContext {
         return provenanceRepo;
     }
 
+    /**
+     * @return the policy that determines which of the component's Provenance Events are registered, or <code>null</code> if all of them are
+     */
+    ProvenanceSamplingPolicy getProvenanceSamplingPolicy() {
+        return provenanceSampler == null ? null : provenanceSampler.getPolicy(connectable);
+    }
+
+    void recordSessionCommit(final long commitNanos) {
+        sessionCommitNanos.add(commitNanos);
+        flowFileEventRepo.recordLatency(connectable.getIdentifier(), LatencyMetric.SESSION_COMMIT, commitNanos);
+    }
+
+    /**
+     * @return the total number of nanoseconds that the component has spent committing sessions that were created with this context
+     */
+    public long getSessionCommitNanos() {
+        return sessionCommitNanos.sum();
+    }
+
     long getNextFlowFileSequence() {
         return flowFileRepo.getNextFlowFileSequence();
     }
@@ -445,11 +445,13 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
             acknowledgeRecords();
             resetState();
 
+            final long commitNanos = System.nanoTime() - commitStartNanos;
+            context.recordSessionCommit(commitNanos);
+
             if (LOG.isDebugEnabled()) {
                 final StringBuilder timingInfo = new StringBuilder();
                 timingInfo.append("Session commit for ").append(this).append(" [").append(connectableDescription).append("]").append(" took ");
 
-                final long commitNanos = System.nanoTime() - commitStartNanos;
                 formatNanos(commitNanos, timingInfo);
                 timingInfo.append("; FlowFile Repository Update took ");
                 formatNanos(flowFileRepoUpdateNanos, timingInfo);
@@ -720,6 +722,23 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
             }
         }
 
+        // Drop any events that the component's Provenance Sampling Policy does not call for before they are enriched and serialized.
+        final ProvenanceSamplingPolicy samplingPolicy = context.getProvenanceSamplingPolicy();
+        if (samplingPolicy != null) {
+            int droppedEvents = 0;
+            final Iterator<ProvenanceEventRecord> recordsToSubmitItr = recordsToSubmit.iterator();
+            while (recordsToSubmitItr.hasNext()) {
+                if (!samplingPolicy.isRegistered(recordsToSubmitItr.next())) {
+                    recordsToSubmitItr.remove();
+                    droppedEvents++;
+                }
+            }
+
+            if (droppedEvents > 0) {
+                adjustCounter(ProvenanceSampler.DROPPED_EVENTS_COUNTER, droppedEvents, checkpoint.countersOnCommit);
+            }
+        }
+
         // We want to submit the 'recordsToSubmit' collection, followed by the auto-terminated events to the Provenance Repository.
         // We want to do this with a single call to ProvenanceEventRepository#registerEvents because it may be much more efficient
         // to do so.
@@ -1494,6 +1513,12 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
         set.add(flowFile);
 
         incrementConnectionOutputCounts(connection, flowFile);
+
+        final Long lastQueueDate = flowFile.getLastQueueDate();
+        if (lastQueueDate != null) {
+            final long queuedMillis = System.currentTimeMillis() - lastQueueDate;
+            context.getFlowFileEventRepository().recordLatency(connection.getIdentifier(), LatencyMetric.QUEUED_DURATION, TimeUnit.MILLISECONDS.toNanos(queuedMillis));
+        }
     }
 
     private void handleConflictingId(final FlowFileRecord flowFile, final Connection connection, final StandardRepositoryRecord conflict) {
@@ -3056,7 +3081,7 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
         claimOffset = 0L;
         long newSize = 0L;
         try {
-            newSize = context.getContentRepository().importFrom(source, newClaim);
+            newSize = context.getContentRepository().importFrom(source, newClaim, keepSourceFile);
             bytesWritten += newSize;
             bytesRead += newSize;
         } catch (final Throwable t) {
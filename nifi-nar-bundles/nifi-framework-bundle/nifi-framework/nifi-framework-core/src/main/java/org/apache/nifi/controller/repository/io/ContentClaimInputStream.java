@@ -37,6 +37,7 @@ public class ContentClaimInputStream extends InputStream {
     private long bytesConsumed;
     private long currentOffset; // offset into the Content Claim; will differ from bytesRead if reset() is called after reading at least one byte or if claimOffset > 0
     private long markOffset;
+    private boolean delegateMarked; // true if the delegate itself can return to the mark, so that reset() need not read the claim from the repository again
 
     public ContentClaimInputStream(final ContentRepository contentRepository, final ContentClaim contentClaim, final long claimOffset) {
         this.contentRepository = contentRepository;
@@ -123,6 +124,12 @@ public class ContentClaimInputStream extends InputStream {
     @Override
     public void mark(final int readlimit) {
         markOffset = currentOffset;
+
+        // A delegate that reads from a memory-mapped Resource Claim ignores the read limit, so it can always be reset to the mark.
+        delegateMarked = delegate instanceof ByteBufferInputStream;
+        if (delegateMarked) {
+            delegate.mark(readlimit);
+        }
     }
 
     @Override
@@ -132,9 +139,13 @@ public class ContentClaimInputStream extends InputStream {
         }
 
         if (currentOffset != markOffset) {
-            delegate.close();
-            formDelegate();
-            StreamUtils.skip(delegate, markOffset - claimOffset);
+            if (delegateMarked) {
+                delegate.reset();
+            } else {
+                delegate.close();
+                formDelegate();
+                StreamUtils.skip(delegate, markOffset - claimOffset);
+            }
             currentOffset = markOffset;
         }
     }
@@ -152,6 +163,7 @@ public class ContentClaimInputStream extends InputStream {
         }
 
         delegate = contentRepository.read(contentClaim);
+        delegateMarked = false;
         StreamUtils.skip(delegate, claimOffset);
         currentOffset = claimOffset;
     }
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository.metrics;
+
+import org.apache.nifi.controller.status.LatencyStatus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * Records the distribution of latencies over a sliding window of time, in the manner of an HdrHistogram. Each power of two is divided into
+ * eight buckets of equal width, so a value is counted in a bucket whose bounds are within 12.5% of the value, and recording a value requires
+ * only a few bit operations and an atomic increment, without any locking.
+ * </p>
+ *
+ * <p>
+ * The window is made up of a number of slices, each of which covers a fixed interval of time. A slice is created when the first value in its
+ * interval is recorded, replacing the slice for the interval that it overwrites, so the memory that is used by a component that is idle
+ * does not grow and values never need to be subtracted.
+ * </p>
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // Values of 2^42 nanoseconds (about 73 minutes) or more are all counted in the last bucket.
+    private static final int MAX_EXPONENT = 42;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final long sliceMillis;
+    private final int sliceCount;
+    private final AtomicReferenceArray<Slice> slices;
+
+    /**
+     * @param sliceMillis the number of milliseconds that each slice of the window covers
+     * @param sliceCount the number of slices that make up the window
+     */
+    public LatencyHistogram(final long sliceMillis, final int sliceCount) {
+        this.sliceMillis = sliceMillis;
+        this.sliceCount = sliceCount;
+        this.slices = new AtomicReferenceArray<>(sliceCount);
+    }
+
+    /**
+     * Records the given latency
+     *
+     * @param nanos the latency, in nanoseconds. Negative values are recorded as 0.
+     * @param timestamp the time at which the latency was observed, in milliseconds since epoch
+     */
+    public void record(final long nanos, final long timestamp) {
+        final long sliceIndex = timestamp / sliceMillis;
+        final int arrayIndex = (int) (sliceIndex % sliceCount);
+
+        Slice slice = slices.get(arrayIndex);
+        while (slice == null || slice.sliceIndex != sliceIndex) {
+            if (slice != null && slice.sliceIndex > sliceIndex) {
+                // The value was observed before the slice was replaced by a newer one, so it falls outside of the window.
+                return;
+            }
+
+            final Slice replacement = new Slice(sliceIndex);
+            if (slices.compareAndSet(arrayIndex, slice, replacement)) {
+                slice = replacement;
+            } else {
+                slice = slices.get(arrayIndex);
+            }
+        }
+
+        slice.record(Math.max(0L, nanos));
+    }
+
+    /**
+     * @param timestamp the current time, in milliseconds since epoch
+     * @return a summary of the latencies that were recorded within the window that ends at the given time
+     */
+    public LatencyStatus getStatus(final long timestamp) {
+        final long oldestSliceIndex = timestamp / sliceMillis - sliceCount + 1;
+        final long[] counts = new long[BUCKET_COUNT];
+        long totalCount = 0L;
+        long maxNanos = 0L;
+
+        for (int i = 0; i < sliceCount; i++) {
+            final Slice slice = slices.get(i);
+            if (slice == null || slice.sliceIndex < oldestSliceIndex) {
+                continue;
+            }
+
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                final long count = slice.counts.get(bucket);
+                counts[bucket] += count;
+                totalCount += count;
+            }
+            maxNanos = Math.max(maxNanos, slice.max.get());
+        }
+
+        if (totalCount == 0L) {
+            return LatencyStatus.EMPTY;
+        }
+
+        return new LatencyStatus(totalCount, getPercentile(counts, totalCount, maxNanos, 0.5D), getPercentile(counts, totalCount, maxNanos, 0.9D),
+            getPercentile(counts, totalCount, maxNanos, 0.99D), getPercentile(counts, totalCount, maxNanos, 0.999D), maxNanos);
+    }
+
+    private static long getPercentile(final long[] counts, final long totalCount, final long maxNanos, final double percentile) {
+        final long rank = Math.max(1L, (long) Math.ceil(percentile * totalCount));
+
+        long cumulativeCount = 0L;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            cumulativeCount += counts[bucket];
+            if (cumulativeCount >= rank) {
+                return Math.min(getHighestEquivalentValue(bucket), maxNanos);
+            }
+        }
+
+        return maxNanos;
+    }
+
+    static int getBucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long getHighestEquivalentValue(final int bucketIndex) {
+        if (bucketIndex < SUB_BUCKET_COUNT) {
+            return bucketIndex;
+        }
+        if (bucketIndex == BUCKET_COUNT - 1) {
+            // The last bucket has no upper bound, so the maximum value that was recorded is used instead.
+            return Long.MAX_VALUE;
+        }
+
+        final int shift = bucketIndex / SUB_BUCKET_COUNT - 1;
+        final long lowestValue = (long) (SUB_BUCKET_COUNT + bucketIndex % SUB_BUCKET_COUNT) << shift;
+        return lowestValue + (1L << shift) - 1;
+    }
+
+    private static class Slice {
+        private final long sliceIndex;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong max = new AtomicLong(0L);
+
+        Slice(final long sliceIndex) {
+            this.sliceIndex = sliceIndex;
+        }
+
+        void record(final long nanos) {
+            counts.incrementAndGet(getBucketIndex(nanos));
+
+            // Avoid the compare-and-set loop unless the value is a new maximum, which is rarely the case once the slice has a few values.
+            if (nanos > max.get()) {
+                max.accumulateAndGet(nanos, Math::max);
+            }
+        }
+    }
+}
@@ -18,15 +18,23 @@ package org.apache.nifi.controller.repository.metrics;
 
 import org.apache.nifi.controller.repository.FlowFileEvent;
 import org.apache.nifi.controller.repository.FlowFileEventRepository;
+import org.apache.nifi.controller.repository.LatencyMetric;
 import org.apache.nifi.controller.repository.StandardRepositoryStatusReport;
+import org.apache.nifi.controller.status.LatencyStatus;
 
 import java.io.IOException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class RingBufferEventRepository implements FlowFileEventRepository {
+    private static final long LATENCY_SLICE_MILLIS = TimeUnit.MINUTES.toMillis(1L);
+    private static final LatencyMetric[] LATENCY_METRICS = LatencyMetric.values();
+
     private final int numMinutes;
     private final ConcurrentMap<String, EventContainer> componentEventMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicReferenceArray<LatencyHistogram>> componentLatencyMap = new ConcurrentHashMap<>();
 
     public RingBufferEventRepository(final int numMinutes) {
         this.numMinutes = numMinutes;
@@ -38,18 +46,69 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
 
     @Override
     public void updateRepository(final FlowFileEvent event, final String componentId) {
-        final EventContainer eventContainer = componentEventMap.computeIfAbsent(componentId, id -> new SecondPrecisionEventContainer(numMinutes));
+        // Look up the container before falling back to computeIfAbsent, which would create a capturing lambda on every call.
+        EventContainer eventContainer = componentEventMap.get(componentId);
+        if (eventContainer == null) {
+            eventContainer = componentEventMap.computeIfAbsent(componentId, id -> new SecondPrecisionEventContainer(numMinutes));
+        }
+
         eventContainer.addEvent(event);
     }
 
+    @Override
+    public void recordLatency(final String componentId, final LatencyMetric metric, final long nanos) {
+        AtomicReferenceArray<LatencyHistogram> histograms = componentLatencyMap.get(componentId);
+        if (histograms == null) {
+            histograms = componentLatencyMap.computeIfAbsent(componentId, id -> new AtomicReferenceArray<>(LATENCY_METRICS.length));
+        }
+
+        // Most components record only some of the metrics, so each histogram is created only once a latency is recorded for it.
+        LatencyHistogram histogram = histograms.get(metric.ordinal());
+        if (histogram == null) {
+            histograms.compareAndSet(metric.ordinal(), null, new LatencyHistogram(LATENCY_SLICE_MILLIS, numMinutes));
+            histogram = histograms.get(metric.ordinal());
+        }
+
+        histogram.record(nanos, System.currentTimeMillis());
+    }
+
     @Override
     public StandardRepositoryStatusReport reportTransferEvents(final long sinceEpochMillis) {
         final StandardRepositoryStatusReport report = new StandardRepositoryStatusReport();
+        final long now = System.currentTimeMillis();
+
+        componentEventMap.forEach((componentId, container) -> {
+            final FlowFileEvent event = container.generateReport(sinceEpochMillis);
+            final AtomicReferenceArray<LatencyHistogram> histograms = componentLatencyMap.get(componentId);
+            report.addReportEntry(histograms == null ? event : addLatencies(event, histograms, now), componentId);
+        });
 
-        componentEventMap.forEach((componentId, container) -> report.addReportEntry(container.generateReport(sinceEpochMillis), componentId));
         return report;
     }
 
+    private FlowFileEvent addLatencies(final FlowFileEvent event, final AtomicReferenceArray<LatencyHistogram> histograms, final long now) {
+        StandardFlowFileEvent eventWithLatencies = null;
+
+        for (final LatencyMetric metric : LATENCY_METRICS) {
+            final LatencyHistogram histogram = histograms.get(metric.ordinal());
+            if (histogram == null) {
+                continue;
+            }
+
+            final LatencyStatus latency = histogram.getStatus(now);
+            if (latency.getCount() == 0L) {
+                continue;
+            }
+
+            if (eventWithLatencies == null) {
+                eventWithLatencies = event instanceof StandardFlowFileEvent ? (StandardFlowFileEvent) event : new StandardFlowFileEvent();
+            }
+            eventWithLatencies.setLatency(metric, latency);
+        }
+
+        return eventWithLatencies == null ? event : eventWithLatencies;
+    }
+
     @Override
     public void purgeTransferEvents(final long cutoffEpochMilliseconds) {
         // This is done so that if a processor is removed from the graph, its events
@@ -62,6 +121,7 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
     @Override
     public void purgeTransferEvents(String componentIdentifier) {
         componentEventMap.remove(componentIdentifier);
+        componentLatencyMap.remove(componentIdentifier);
     }
 
 }
@@ -14,35 +14,82 @@ e * Licensed to the Apache Software Foundation (ASF) under one or more
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.apache.nifi.controller.repository.metrics;
 
 import org.apache.nifi.controller.repository.FlowFileEvent;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * <p>
+ * Keeps the sum of the FlowFile Events for a component over a sliding window of seconds, without allocating any objects for each event.
+ * </p>
+ *
+ * <p>
+ * Events are first added to a stripe: one of a small number of sets of primitive counters, each guarded by a lock that a thread only ever
+ * tries to acquire, so that threads updating the same component at the same time use different stripes instead of contending with one
+ * another. Each stripe holds the totals for a single second. The totals are moved from the stripes into a ring of per-second bins, and
+ * into the sum of all bins, whenever a report is generated or a stripe moves on to a new second; this is done while holding the monitor
+ * of the container, so a report includes either all of the values of an event or none of them.
+ * </p>
+ */
 public class SecondPrecisionEventContainer implements EventContainer {
-    private static final Logger logger = LoggerFactory.getLogger(SecondPrecisionEventContainer.class);
+    private static final int FLOWFILES_IN = 0;
+    private static final int FLOWFILES_OUT = 1;
+    private static final int FLOWFILES_REMOVED = 2;
+    private static final int FLOWFILES_RECEIVED = 3;
+    private static final int FLOWFILES_SENT = 4;
+    private static final int CONTENT_SIZE_IN = 5;
+    private static final int CONTENT_SIZE_OUT = 6;
+    private static final int CONTENT_SIZE_REMOVED = 7;
+    private static final int BYTES_READ = 8;
+    private static final int BYTES_WRITTEN = 9;
+    private static final int BYTES_RECEIVED = 10;
+    private static final int BYTES_SENT = 11;
+    private static final int PROCESSING_NANOS = 12;
+    private static final int AGGREGATE_LINEAGE_MILLIS = 13;
+    private static final int INVOCATIONS = 14;
+    private static final int METRIC_COUNT = 15;
+
+    private static final long NO_SECOND = Long.MIN_VALUE;
+    private static final int MAX_STRIPES = 16;
+    private static final int STRIPE_MASK = stripeCount() - 1;
 
     private final int numBins;
-    private final EventSum[] sums;
-    private final EventSumValue aggregateValue = new EventSumValue(0L);
-    private final AtomicLong lastUpdateSecond = new AtomicLong(System.currentTimeMillis() / 1000L);
+    private final AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<>(STRIPE_MASK + 1);
+
+    // All of the following are protected by synchronizing on this.
+    private final long[][] bins;
+    private final long[] binSeconds;
+    private final Map<String, Long>[] binCounters;
+    private final long[] aggregate = new long[METRIC_COUNT];
+    private final Map<String, Long> aggregateCounters = new HashMap<>();
+    private int populatedBins = 0;
 
+    @SuppressWarnings("unchecked")
     public SecondPrecisionEventContainer(final int numMinutes) {
         // number of bins is number of seconds in 'numMinutes' plus 1. We add one because
         // we want to have the 'current bin' that we are adding values to, in addition to the
         // previous (X = numMinutes * 60) bins of values that have completed
         numBins = numMinutes * 60 + 1;
-        sums = new EventSum[numBins];
+        bins = new long[numBins][];
+        binSeconds = new long[numBins];
+        binCounters = new Map[numBins];
 
         for (int i = 0; i < numBins; i++) {
-            sums[i] = new EventSum();
+            binSeconds[i] = NO_SECOND;
         }
     }
 
+    private static int stripeCount() {
+        final int processors = Math.min(Runtime.getRuntime().availableProcessors(), MAX_STRIPES);
+        return Integer.highestOneBit(Math.max(1, processors * 2 - 1));
+    }
+
     @Override
     public void addEvent(final FlowFileEvent event) {
         addEvent(event, System.currentTimeMillis());
@@ -50,57 +97,173 @@ public class SecondPrecisionEventContainer implements EventContainer {
 
     protected void addEvent(final FlowFileEvent event, final long timestamp) {
         final long second = timestamp / 1000;
-        final int binIdx = (int) (second % numBins);
-        final EventSum sum = sums[binIdx];
+        final Map<String, Long> counters = event.getCounters();
 
-        final EventSumValue replaced = sum.addOrReset(event, timestamp);
+        // Counters are kept per bin rather than per stripe, so an event that has any is added while holding the monitor.
+        if (counters != null && !counters.isEmpty()) {
+            synchronized (this) {
+                final Stripe stripe = lockStripe();
+                try {
+                    addToStripe(stripe, event, second);
+                } finally {
+                    stripe.unlock();
+                }
 
-        aggregateValue.add(event);
+                addCounters(second, counters);
+            }
+            return;
+        }
 
-        if (replaced == null) {
-            logger.debug("Updated bin {}. Did NOT replace.", binIdx);
-        } else {
-            logger.debug("Replaced bin {}", binIdx);
-            aggregateValue.subtract(replaced);
+        final Stripe stripe = lockStripe();
+        if (stripe.second == second || stripe.second == NO_SECOND) {
+            try {
+                stripe.second = second;
+                stripe.add(event);
+            } finally {
+                stripe.unlock();
+            }
+            return;
         }
 
-        // If there are any buckets that have expired, we need to update our aggregate value to reflect that.
-        processExpiredBuckets(second);
+        // The stripe holds the totals of another second, which must be moved into their bin. This requires the monitor, which may not be
+        // acquired while holding the lock of a stripe, because a thread generating a report holds the monitor while locking each stripe.
+        stripe.unlock();
+        synchronized (this) {
+            final Stripe lockedStripe = lockStripe();
+            try {
+                addToStripe(lockedStripe, event, second);
+            } finally {
+                lockedStripe.unlock();
+            }
+        }
     }
 
-    private void processExpiredBuckets(final long currentSecond) {
-        final long lastUpdate = lastUpdateSecond.get();
-        if (currentSecond > lastUpdate) {
-            final boolean updated = lastUpdateSecond.compareAndSet(lastUpdate, currentSecond);
-            if (updated) {
-                if (lastUpdate == 0L) {
-                    // First update, so nothing to expire
-                    return;
-                }
+    /**
+     * Adds the given event to the given stripe, first moving any totals that the stripe holds for another second into their bin.
+     * Must be called while holding the monitor and the lock of the stripe.
+     */
+    private void addToStripe(final Stripe stripe, final FlowFileEvent event, final long second) {
+        if (stripe.second != second) {
+            flush(stripe);
+            stripe.second = second;
+        }
 
-                final int secondsElapsed = (int) (currentSecond - lastUpdate);
+        stripe.add(event);
+    }
 
-                int index = (int) (currentSecond % numBins);
-                final long expirationTimestamp = 1000 * (currentSecond - numBins);
+    private Stripe lockStripe() {
+        int index = (int) Thread.currentThread().getId() & STRIPE_MASK;
+        while (true) {
+            Stripe stripe = stripes.get(index);
+            if (stripe == null) {
+                stripes.compareAndSet(index, null, new Stripe());
+                stripe = stripes.get(index);
+            }
 
-                int expired = 0;
-                for (int i=0; i < secondsElapsed; i++) {
-                    index--;
-                    if (index < 0) {
-                        index = sums.length - 1;
-                    }
+            if (stripe.tryLock()) {
+                return stripe;
+            }
 
-                    final EventSum expiredSum = sums[index];
-                    final EventSumValue expiredValue = expiredSum.reset(expirationTimestamp);
-                    if (expiredValue != null) {
-                        aggregateValue.subtract(expiredValue);
-                        expired++;
-                    }
-                }
+            index = (index + 1) & STRIPE_MASK;
+        }
+    }
+
+    /**
+     * Moves the totals of the given stripe into the bin for the stripe's second. Must be called while holding the monitor and the lock of the stripe.
+     */
+    private void flush(final Stripe stripe) {
+        if (!stripe.populated) {
+            return;
+        }
 
-                logger.debug("Expired {} bins", expired);
+        final long[] values = stripe.values;
+        final long[] bin = getBin(stripe.second);
+        if (bin != null) {
+            for (int i = 0; i < METRIC_COUNT; i++) {
+                bin[i] += values[i];
+                aggregate[i] += values[i];
             }
         }
+
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            values[i] = 0L;
+        }
+        stripe.populated = false;
+    }
+
+    private void addCounters(final long second, final Map<String, Long> counters) {
+        final int binIndex = (int) (second % numBins);
+        if (getBin(second) == null) {
+            return;
+        }
+
+        Map<String, Long> countersForBin = binCounters[binIndex];
+        if (countersForBin == null) {
+            countersForBin = new HashMap<>();
+            binCounters[binIndex] = countersForBin;
+        }
+
+        for (final Map.Entry<String, Long> entry : counters.entrySet()) {
+            final Long counterValue = entry.getValue();
+            countersForBin.merge(entry.getKey(), counterValue, Long::sum);
+            aggregateCounters.merge(entry.getKey(), counterValue, Long::sum);
+        }
+    }
+
+    /**
+     * Returns the bin for the given second, emptying the bin first if it holds the values of an earlier second. Returns null if
+     * the bin holds the values of a later second, meaning that the given second has already left the window.
+     * Must be called while holding the monitor.
+     */
+    private long[] getBin(final long second) {
+        final int binIndex = (int) (second % numBins);
+        final long binSecond = binSeconds[binIndex];
+        if (binSecond == second) {
+            return bins[binIndex];
+        }
+        if (binSecond != NO_SECOND && binSecond > second) {
+            return null;
+        }
+
+        expire(binIndex);
+
+        long[] bin = bins[binIndex];
+        if (bin == null) {
+            bin = new long[METRIC_COUNT];
+            bins[binIndex] = bin;
+        }
+
+        binSeconds[binIndex] = second;
+        populatedBins++;
+        return bin;
+    }
+
+    /**
+     * Removes the values of the given bin from the aggregate and empties the bin, keeping its array so that it can be reused.
+     * Must be called while holding the monitor.
+     */
+    private void expire(final int binIndex) {
+        if (binSeconds[binIndex] == NO_SECOND) {
+            return;
+        }
+
+        final long[] bin = bins[binIndex];
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            aggregate[i] -= bin[i];
+            bin[i] = 0L;
+        }
+
+        final Map<String, Long> countersForBin = binCounters[binIndex];
+        if (countersForBin != null) {
+            for (final Map.Entry<String, Long> entry : countersForBin.entrySet()) {
+                final Long counterValue = entry.getValue();
+                aggregateCounters.compute(entry.getKey(), (key, value) -> value == null ? -counterValue : value - counterValue);
+            }
+            binCounters[binIndex] = null;
+        }
+
+        binSeconds[binIndex] = NO_SECOND;
+        populatedBins--;
     }
 
     @Override
@@ -109,17 +272,96 @@ public class SecondPrecisionEventContainer implements EventContainer {
     }
 
     @Override
-    public FlowFileEvent generateReport(final long now) {
-        final long second = now / 1000 + 1;
-        final long lastUpdate = lastUpdateSecond.get();
-        final long secondsSinceUpdate = second - lastUpdate;
-        if (secondsSinceUpdate > numBins) {
-            logger.debug("EventContainer hasn't been updated in {} seconds so will generate report as Empty FlowFile Event", secondsSinceUpdate);
+    public synchronized FlowFileEvent generateReport(final long now) {
+        for (int i = 0; i < stripes.length(); i++) {
+            final Stripe stripe = stripes.get(i);
+            if (stripe == null) {
+                continue;
+            }
+
+            stripe.lock();
+            try {
+                flush(stripe);
+            } finally {
+                stripe.unlock();
+            }
+        }
+
+        // Anything older than the window, which ends with the bin that is currently being added to, has expired.
+        final long cutoffSecond = now / 1000 + 1 - numBins;
+        if (populatedBins > 0) {
+            for (int i = 0; i < numBins; i++) {
+                if (binSeconds[i] != NO_SECOND && binSeconds[i] < cutoffSecond) {
+                    expire(i);
+                }
+            }
+        }
+
+        if (populatedBins == 0) {
             return EmptyFlowFileEvent.INSTANCE;
         }
 
-        logger.debug("Will expire up to {} bins", secondsSinceUpdate);
-        processExpiredBuckets(second);
-        return aggregateValue.toFlowFileEvent();
+        final StandardFlowFileEvent event = new StandardFlowFileEvent();
+        event.setFlowFilesIn((int) aggregate[FLOWFILES_IN]);
+        event.setFlowFilesOut((int) aggregate[FLOWFILES_OUT]);
+        event.setFlowFilesRemoved((int) aggregate[FLOWFILES_REMOVED]);
+        event.setFlowFilesReceived((int) aggregate[FLOWFILES_RECEIVED]);
+        event.setFlowFilesSent((int) aggregate[FLOWFILES_SENT]);
+        event.setContentSizeIn(aggregate[CONTENT_SIZE_IN]);
+        event.setContentSizeOut(aggregate[CONTENT_SIZE_OUT]);
+        event.setContentSizeRemoved(aggregate[CONTENT_SIZE_REMOVED]);
+        event.setBytesRead(aggregate[BYTES_READ]);
+        event.setBytesWritten(aggregate[BYTES_WRITTEN]);
+        event.setBytesReceived(aggregate[BYTES_RECEIVED]);
+        event.setBytesSent(aggregate[BYTES_SENT]);
+        event.setProcessingNanos(aggregate[PROCESSING_NANOS]);
+        event.setAggregateLineageMillis(aggregate[AGGREGATE_LINEAGE_MILLIS]);
+        event.setInvocations((int) aggregate[INVOCATIONS]);
+        event.setCounters(aggregateCounters.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(aggregateCounters)));
+        return event;
+    }
+
+    /**
+     * The totals of the events that were added to the container during a single second by the threads that were able to lock this stripe.
+     */
+    private static class Stripe {
+        private final AtomicInteger lock = new AtomicInteger(0);
+        private final long[] values = new long[METRIC_COUNT];
+        private long second = NO_SECOND;
+        private boolean populated = false;
+
+        boolean tryLock() {
+            return lock.get() == 0 && lock.compareAndSet(0, 1);
+        }
+
+        void lock() {
+            while (!tryLock()) {
+                Thread.yield();
+            }
+        }
+
+        void unlock() {
+            lock.set(0);
+        }
+
+        void add(final FlowFileEvent event) {
+            final long[] values = this.values;
+            values[FLOWFILES_IN] += event.getFlowFilesIn();
+            values[FLOWFILES_OUT] += event.getFlowFilesOut();
+            values[FLOWFILES_REMOVED] += event.getFlowFilesRemoved();
+            values[FLOWFILES_RECEIVED] += event.getFlowFilesReceived();
+            values[FLOWFILES_SENT] += event.getFlowFilesSent();
+            values[CONTENT_SIZE_IN] += event.getContentSizeIn();
+            values[CONTENT_SIZE_OUT] += event.getContentSizeOut();
+            values[CONTENT_SIZE_REMOVED] += event.getContentSizeRemoved();
+            values[BYTES_READ] += event.getBytesRead();
+            values[BYTES_WRITTEN] += event.getBytesWritten();
+            values[BYTES_RECEIVED] += event.getBytesReceived();
+            values[BYTES_SENT] += event.getBytesSent();
+            values[PROCESSING_NANOS] += event.getProcessingNanoseconds();
+            values[AGGREGATE_LINEAGE_MILLIS] += event.getAggregateLineageMillis();
+            values[INVOCATIONS] += event.getInvocations();
+            populated = true;
+        }
     }
 }
@@ -17,7 +17,10 @@
 package org.apache.nifi.controller.repository.metrics;
 
 import org.apache.nifi.controller.repository.FlowFileEvent;
+import org.apache.nifi.controller.repository.LatencyMetric;
+import org.apache.nifi.controller.status.LatencyStatus;
 
+import java.util.EnumMap;
 import java.util.Map;
 
 public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
@@ -38,6 +41,7 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
     private long bytesSent;
     private int invocations;
     private Map<String, Long> counters;
+    private Map<LatencyMetric, LatencyStatus> latencies;
 
     public StandardFlowFileEvent() {
     }
@@ -194,4 +198,17 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
     public void setCounters(final Map<String, Long> counters) {
         this.counters = counters;
     }
+
+    @Override
+    public LatencyStatus getLatency(final LatencyMetric metric) {
+        final LatencyStatus latency = latencies == null ? null : latencies.get(metric);
+        return latency == null ? LatencyStatus.EMPTY : latency;
+    }
+
+    public void setLatency(final LatencyMetric metric, final LatencyStatus latency) {
+        if (latencies == null) {
+            latencies = new EnumMap<>(LatencyMetric.class);
+        }
+        latencies.put(metric, latency);
+    }
 }
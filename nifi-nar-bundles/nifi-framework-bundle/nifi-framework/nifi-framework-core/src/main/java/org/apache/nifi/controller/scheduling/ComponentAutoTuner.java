@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Adjusts the number of concurrent tasks and the run duration of a single component according to its load, within the bounds set by the
+ * operator. The number of concurrent tasks ranges from 1 to the component's configured number of concurrent tasks, and the run duration
+ * from the component's configured run duration to the maximum run duration that autotuning is allowed to choose.
+ * </p>
+ *
+ * <p>
+ * Each time that {@link #evaluate(TuningSample)} is called, the tuner compares what the component did since the previous evaluation with
+ * the state of its queues and of the system:
+ * </p>
+ * <ul>
+ * <li>A concurrent task is added if FlowFiles are backing up in front of the component, its tasks were busy for most of the time, nothing
+ * downstream is applying back pressure, and the system's CPUs are not saturated.</li>
+ * <li>A concurrent task is removed if back pressure is applied downstream, the system's CPUs are saturated, or the component's tasks were
+ * mostly idle.</li>
+ * <li>If the component supports batching, its run duration is doubled if FlowFiles are backing up and committing sessions takes a
+ * significant share of its time, so that the cost of each commit is shared by more FlowFiles. It is halved if the component's queues are
+ * empty, so that FlowFiles are not held back waiting for a batch to complete, or if back pressure is applied downstream.</li>
+ * </ul>
+ *
+ * <p>
+ * Only one concurrent task is added or removed at a time, so that the effect of each change can be seen before the next one is made.
+ * </p>
+ */
+public class ComponentAutoTuner {
+    static final double BUSY_THRESHOLD = 0.75D;
+    static final double IDLE_THRESHOLD = 0.25D;
+    static final double COMMIT_SHARE_THRESHOLD = 0.10D;
+    static final long MIN_TUNED_RUN_DURATION_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    private final int maxConcurrentTasks;
+    private final long minRunDurationNanos;
+    private final long maxRunDurationNanos;
+    private final boolean runDurationTunable;
+    private final double maxCpuLoad;
+
+    private volatile int concurrentTasks;
+    private volatile long runDurationNanos;
+    private long previousQueuedCount = -1L;
+
+    /**
+     * @param maxConcurrentTasks the number of concurrent tasks that the operator configured for the component, which is the most that the tuner allows
+     * @param configuredRunDurationNanos the run duration that the operator configured for the component, which is the least that the tuner chooses
+     * @param maxRunDurationNanos the longest run duration that the tuner may choose
+     * @param runDurationTunable whether or not the component supports batching, so that its run duration has any effect
+     * @param maxCpuLoad the system load, per available processor, above which no concurrent tasks are added
+     */
+    public ComponentAutoTuner(final int maxConcurrentTasks, final long configuredRunDurationNanos, final long maxRunDurationNanos, final boolean runDurationTunable,
+                              final double maxCpuLoad) {
+        this.maxConcurrentTasks = Math.max(1, maxConcurrentTasks);
+        this.minRunDurationNanos = configuredRunDurationNanos;
+        this.maxRunDurationNanos = Math.max(configuredRunDurationNanos, maxRunDurationNanos);
+        this.runDurationTunable = runDurationTunable;
+        this.maxCpuLoad = maxCpuLoad;
+
+        // Start out as configured, so that enabling autotuning never makes a component slower to begin with
+        this.concurrentTasks = this.maxConcurrentTasks;
+        this.runDurationNanos = configuredRunDurationNanos;
+    }
+
+    public int getConcurrentTasks() {
+        return concurrentTasks;
+    }
+
+    public long getRunDuration(final TimeUnit timeUnit) {
+        return timeUnit.convert(runDurationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adjusts the number of concurrent tasks and the run duration of the component according to the given sample
+     *
+     * @param sample what the component did since the previous evaluation, and the current state of its queues and of the system
+     * @return <code>true</code> if either the number of concurrent tasks or the run duration changed
+     */
+    public synchronized boolean evaluate(final TuningSample sample) {
+        final int currentTasks = concurrentTasks;
+        final long currentRunDuration = runDurationNanos;
+
+        final double busy = sample.getElapsedNanos() <= 0L ? 0D : (double) sample.getTaskNanos() / ((double) sample.getElapsedNanos() * currentTasks);
+        final double commitShare = sample.getTaskNanos() <= 0L ? 0D : (double) sample.getSessionCommitNanos() / sample.getTaskNanos();
+        final boolean cpuSaturated = !Double.isNaN(sample.getCpuLoad()) && sample.getCpuLoad() >= maxCpuLoad;
+
+        // A component without incoming connections always has work to do, so its tasks being busy is the only sign of a backlog
+        final long queued = sample.getQueuedCount();
+        final boolean backlog = queued < 0L ? busy >= BUSY_THRESHOLD : queued > 0L && queued >= previousQueuedCount;
+        previousQueuedCount = queued;
+
+        int tasks = currentTasks;
+        if (sample.isBackPressureEngaged() || cpuSaturated || busy < IDLE_THRESHOLD) {
+            tasks = Math.max(1, currentTasks - 1);
+        } else if (backlog && busy >= BUSY_THRESHOLD) {
+            tasks = Math.min(maxConcurrentTasks, currentTasks + 1);
+        }
+
+        long runDuration = currentRunDuration;
+        if (runDurationTunable) {
+            if (sample.isBackPressureEngaged() || queued == 0L) {
+                runDuration = currentRunDuration / 2;
+                if (runDuration < MIN_TUNED_RUN_DURATION_NANOS) {
+                    runDuration = minRunDurationNanos;
+                }
+            } else if (backlog && commitShare >= COMMIT_SHARE_THRESHOLD) {
+                runDuration = Math.max(MIN_TUNED_RUN_DURATION_NANOS, currentRunDuration * 2);
+            }
+
+            runDuration = Math.max(minRunDurationNanos, Math.min(maxRunDurationNanos, runDuration));
+        }
+
+        if (tasks == currentTasks && runDuration == currentRunDuration) {
+            return false;
+        }
+
+        concurrentTasks = tasks;
+        runDurationNanos = runDuration;
+        return true;
+    }
+
+    /**
+     * What a component did between two evaluations, and the state of its queues and of the system at the time of the later one
+     */
+    public static class TuningSample {
+        private final long elapsedNanos;
+        private final long taskNanos;
+        private final long sessionCommitNanos;
+        private final long queuedCount;
+        private final boolean backPressureEngaged;
+        private final double cpuLoad;
+
+        /**
+         * @param elapsedNanos the time since the previous evaluation
+         * @param taskNanos the total time that the component's tasks ran for since the previous evaluation
+         * @param sessionCommitNanos the total time that the component spent committing sessions since the previous evaluation
+         * @param queuedCount the number of FlowFiles queued in the component's incoming connections, or -1 if it has none
+         * @param backPressureEngaged whether or not any of the component's outgoing connections is applying back pressure
+         * @param cpuLoad the system load per available processor, or {@link Double#NaN} if it is not known
+         */
+        public TuningSample(final long elapsedNanos, final long taskNanos, final long sessionCommitNanos, final long queuedCount, final boolean backPressureEngaged,
+                            final double cpuLoad) {
+            this.elapsedNanos = elapsedNanos;
+            this.taskNanos = taskNanos;
+            this.sessionCommitNanos = sessionCommitNanos;
+            this.queuedCount = queuedCount;
+            this.backPressureEngaged = backPressureEngaged;
+            this.cpuLoad = cpuLoad;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getTaskNanos() {
+            return taskNanos;
+        }
+
+        public long getSessionCommitNanos() {
+            return sessionCommitNanos;
+        }
+
+        public long getQueuedCount() {
+            return queuedCount;
+        }
+
+        public boolean isBackPressureEngaged() {
+            return backPressureEngaged;
+        }
+
+        public double getCpuLoad() {
+            return cpuLoad;
+        }
+    }
+}
@@ -434,6 +434,16 @@ public final class StandardProcessScheduler implements ProcessScheduler {
         return getLifecycleState(scheduled, false).getActiveThreadCount();
     }
 
+    @Override
+    public int getAutoTunedConcurrentTasks(final Object scheduled) {
+        return getLifecycleState(scheduled, false).getAutoTunedConcurrentTasks();
+    }
+
+    @Override
+    public long getAutoTunedRunDuration(final Object scheduled, final TimeUnit timeUnit) {
+        return timeUnit.convert(getLifecycleState(scheduled, false).getAutoTunedRunDurationNanos(), TimeUnit.NANOSECONDS);
+    }
+
     @Override
     public void startPort(final Port port) {
         if (!port.isValid()) {
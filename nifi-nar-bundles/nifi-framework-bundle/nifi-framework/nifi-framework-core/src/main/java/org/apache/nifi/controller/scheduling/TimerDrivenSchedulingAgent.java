@@ -16,39 +16,78 @@
  */
 package org.apache.nifi.controller.scheduling;
 
+import org.apache.nifi.annotation.behavior.BlockingIO;
 import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.Connection;
 import org.apache.nifi.controller.FlowController;
+import org.apache.nifi.controller.ProcessorNode;
 import org.apache.nifi.controller.ReportingTaskNode;
 import org.apache.nifi.controller.tasks.ConnectableTask;
 import org.apache.nifi.controller.tasks.InvocationResult;
 import org.apache.nifi.controller.tasks.ReportingTaskWrapper;
 import org.apache.nifi.encrypt.StringEncryptor;
 import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.engine.WorkStealingFlowEngine;
+import org.apache.nifi.events.BulletinFactory;
+import org.apache.nifi.reporting.Severity;
 import org.apache.nifi.util.FormatUtils;
 import org.apache.nifi.util.NiFiProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class TimerDrivenSchedulingAgent extends AbstractSchedulingAgent {
 
     private static final Logger logger = LoggerFactory.getLogger(TimerDrivenSchedulingAgent.class);
+    private static final long BLOCKING_IO_SATURATION_WARNING_MILLIS = TimeUnit.MINUTES.toMillis(1L);
     private final long noWorkYieldNanos;
+    private final boolean autoTuningEnabled;
+    private final long autoTuningMaxRunDurationNanos;
+    private final double autoTuningMaxCpuLoad;
 
     private final FlowController flowController;
     private final RepositoryContextFactory contextFactory;
     private final StringEncryptor encryptor;
+    private final WorkStealingFlowEngine componentEngine;
+    private final WorkStealingFlowEngine blockingIOEngine;
+    private final AtomicLong blockingIOSaturationCount = new AtomicLong(0L);
+    private final AtomicLong lastBlockingIOSaturationWarning = new AtomicLong(0L);
+    private final ConcurrentMap<Connectable, ScheduledConnectable> scheduledConnectables = new ConcurrentHashMap<>();
 
     private volatile String adminYieldDuration = "1 sec";
 
     public TimerDrivenSchedulingAgent(final FlowController flowController, final FlowEngine flowEngine, final RepositoryContextFactory contextFactory,
             final StringEncryptor encryptor, final NiFiProperties nifiProperties) {
+        this(flowController, flowEngine, new WorkStealingFlowEngine(flowEngine.getCorePoolSize(), "Timer-Driven Process"),
+            new WorkStealingFlowEngine(nifiProperties.getBlockingIOMaxThreads(), "Blocking I/O Process"), contextFactory, encryptor, nifiProperties);
+    }
+
+    /**
+     * @param flowController the flow controller
+     * @param flowEngine the engine that runs Reporting Tasks
+     * @param componentEngine the engine that runs Processors, Ports, Funnels and Remote Process Groups
+     * @param blockingIOEngine the engine that runs Processors that are annotated with @BlockingIO
+     * @param contextFactory the factory for the repository context of each component
+     * @param encryptor the encryptor for sensitive properties
+     * @param nifiProperties the NiFi properties
+     */
+    public TimerDrivenSchedulingAgent(final FlowController flowController, final FlowEngine flowEngine, final WorkStealingFlowEngine componentEngine,
+            final WorkStealingFlowEngine blockingIOEngine, final RepositoryContextFactory contextFactory, final StringEncryptor encryptor,
+            final NiFiProperties nifiProperties) {
         super(flowEngine);
+        this.componentEngine = componentEngine;
+        this.blockingIOEngine = blockingIOEngine;
         this.flowController = flowController;
         this.contextFactory = contextFactory;
         this.encryptor = encryptor;
@@ -59,11 +98,35 @@ public class TimerDrivenSchedulingAgent extends AbstractSchedulingAgent {
         } catch (final IllegalArgumentException e) {
             throw new RuntimeException("Failed to create SchedulingAgent because the " + NiFiProperties.BORED_YIELD_DURATION + " property is set to an invalid time duration: " + boredYieldDuration);
         }
+
+        autoTuningEnabled = nifiProperties.isAutoTuningEnabled();
+        autoTuningMaxCpuLoad = nifiProperties.getAutoTuningMaxCpuLoad();
+        try {
+            autoTuningMaxRunDurationNanos = FormatUtils.getTimeDuration(nifiProperties.getAutoTuningMaxRunDuration(), TimeUnit.NANOSECONDS);
+        } catch (final IllegalArgumentException e) {
+            throw new RuntimeException("Failed to create SchedulingAgent because the " + NiFiProperties.AUTOTUNING_MAX_RUN_DURATION + " property is set to an invalid time duration: "
+                + nifiProperties.getAutoTuningMaxRunDuration());
+        }
+
+        if (autoTuningEnabled) {
+            final long autoTuningIntervalNanos;
+            try {
+                autoTuningIntervalNanos = FormatUtils.getTimeDuration(nifiProperties.getAutoTuningInterval(), TimeUnit.NANOSECONDS);
+            } catch (final IllegalArgumentException e) {
+                throw new RuntimeException("Failed to create SchedulingAgent because the " + NiFiProperties.AUTOTUNING_INTERVAL + " property is set to an invalid time duration: "
+                    + nifiProperties.getAutoTuningInterval());
+            }
+
+            flowEngine.scheduleWithFixedDelay(this::autoTune, autoTuningIntervalNanos, autoTuningIntervalNanos, TimeUnit.NANOSECONDS);
+            logger.info("Autotuning of the run duration and concurrent tasks of Timer-Driven Processors is enabled");
+        }
     }
 
     @Override
     public void shutdown() {
         flowEngine.shutdown();
+        componentEngine.shutdown();
+        blockingIOEngine.shutdown();
     }
 
     @Override
@@ -81,107 +144,51 @@ public class TimerDrivenSchedulingAgent extends AbstractSchedulingAgent {
 
     @Override
     public void doSchedule(final Connectable connectable, final LifecycleState scheduleState) {
-        final List<ScheduledFuture<?>> futures = new ArrayList<>();
-        final ConnectableTask connectableTask = new ConnectableTask(this, connectable, flowController, contextFactory, scheduleState, encryptor);
-
-        for (int i = 0; i < connectable.getMaxConcurrentTasks(); i++) {
-            // Determine the task to run and create it.
-            final AtomicReference<ScheduledFuture<?>> futureRef = new AtomicReference<>();
-
-            final Runnable trigger = createTrigger(connectableTask, scheduleState, futureRef);
-
-            // Schedule the task to run
-            final ScheduledFuture<?> future = flowEngine.scheduleWithFixedDelay(trigger, 0L,
-                connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
-
-            // now that we have the future, set the atomic reference so that if the component is yielded we
-            // are able to then cancel this future.
-            futureRef.set(future);
-
-            // Keep track of the futures so that we can update the ScheduleState.
-            futures.add(future);
+        final ComponentAutoTuner autoTuner = createAutoTuner(connectable);
+        final ConnectableTask connectableTask = new ConnectableTask(this, connectable, flowController, contextFactory, scheduleState, encryptor, autoTuner);
+        final boolean blockingIO = isBlockingIO(connectable);
+        final ScheduledConnectable scheduledConnectable = new ScheduledConnectable(connectableTask, connectable.getMaxConcurrentTasks(),
+            blockingIO ? blockingIOEngine : componentEngine, blockingIO, autoTuner, scheduleState);
+
+        final ScheduledConnectable previous = scheduledConnectables.put(connectable, scheduledConnectable);
+        if (previous != null) {
+            previous.cancel();
         }
 
-        scheduleState.setFutures(futures);
-        logger.info("Scheduled {} to run with {} threads", connectable, connectable.getMaxConcurrentTasks());
+        scheduledConnectable.start();
+        logger.info("Scheduled {} to run with {} threads{}{}", connectable, connectable.getMaxConcurrentTasks(), blockingIO ? " from the Blocking I/O thread pool" : "",
+            autoTuner == null ? "" : " at most, autotuned");
     }
 
+    /**
+     * @return a tuner for the given component, or <code>null</code> if autotuning is disabled or could make no difference to the component
+     */
+    private ComponentAutoTuner createAutoTuner(final Connectable connectable) {
+        if (!autoTuningEnabled || !(connectable instanceof ProcessorNode)) {
+            return null;
+        }
 
-    private Runnable createTrigger(final ConnectableTask connectableTask, final LifecycleState scheduleState, final AtomicReference<ScheduledFuture<?>> futureRef) {
-        final Connectable connectable = connectableTask.getConnectable();
-        final Runnable yieldDetectionRunnable = new Runnable() {
-            @Override
-            public void run() {
-                // Call the task. It will return a boolean indicating whether or not we should yield
-                // based on a lack of work for to do for the component.
-                final InvocationResult invocationResult = connectableTask.invoke();
-                if (invocationResult.isYield()) {
-                    logger.debug("Yielding {} due to {}", connectable, invocationResult.getYieldExplanation());
-                }
+        final boolean runDurationTunable = connectable.isSessionBatchingSupported();
+        if (connectable.getMaxConcurrentTasks() < 2 && !runDurationTunable) {
+            return null;
+        }
 
-                // If the component is yielded, cancel its future and re-submit it to run again
-                // after the yield has expired.
-                final long newYieldExpiration = connectable.getYieldExpiration();
-                final long now = System.currentTimeMillis();
-                if (newYieldExpiration > now) {
-                    final long yieldMillis = newYieldExpiration - now;
-                    final long scheduleMillis = connectable.getSchedulingPeriod(TimeUnit.MILLISECONDS);
-                    final ScheduledFuture<?> scheduledFuture = futureRef.get();
-                    if (scheduledFuture == null) {
-                        return;
-                    }
-
-                    // If we are able to cancel the future, create a new one and update the ScheduleState so that it has
-                    // an accurate accounting of which futures are outstanding; we must then also update the futureRef
-                    // so that we can do this again the next time that the component is yielded.
-                    if (scheduledFuture.cancel(false)) {
-                        final long yieldNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(scheduleMillis), TimeUnit.MILLISECONDS.toNanos(yieldMillis));
-
-                        synchronized (scheduleState) {
-                            if (scheduleState.isScheduled()) {
-                                final long schedulingNanos = connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS);
-                                final ScheduledFuture<?> newFuture = flowEngine.scheduleWithFixedDelay(this, yieldNanos, schedulingNanos, TimeUnit.NANOSECONDS);
-
-                                scheduleState.replaceFuture(scheduledFuture, newFuture);
-                                futureRef.set(newFuture);
-                            }
-                        }
-                    }
-                } else if (noWorkYieldNanos > 0L && invocationResult.isYield()) {
-                    // Component itself didn't yield but there was no work to do, so the framework will choose
-                    // to yield the component automatically for a short period of time.
-                    final ScheduledFuture<?> scheduledFuture = futureRef.get();
-                    if (scheduledFuture == null) {
-                        return;
-                    }
-
-                    // If we are able to cancel the future, create a new one and update the ScheduleState so that it has
-                    // an accurate accounting of which futures are outstanding; we must then also update the futureRef
-                    // so that we can do this again the next time that the component is yielded.
-                    if (scheduledFuture.cancel(false)) {
-                        synchronized (scheduleState) {
-                            if (scheduleState.isScheduled()) {
-                                final ScheduledFuture<?> newFuture = flowEngine.scheduleWithFixedDelay(this, noWorkYieldNanos,
-                                    connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
-
-                                scheduleState.replaceFuture(scheduledFuture, newFuture);
-                                futureRef.set(newFuture);
-                            }
-                        }
-                    }
-                }
-            }
-        };
+        return new ComponentAutoTuner(connectable.getMaxConcurrentTasks(), connectable.getRunDuration(TimeUnit.NANOSECONDS), autoTuningMaxRunDurationNanos,
+            runDurationTunable, autoTuningMaxCpuLoad);
+    }
 
-        return yieldDetectionRunnable;
+    private static boolean isBlockingIO(final Connectable connectable) {
+        return connectable instanceof ProcessorNode && ((ProcessorNode) connectable).getProcessor().getClass().isAnnotationPresent(BlockingIO.class);
     }
 
     @Override
     public void doUnschedule(final Connectable connectable, final LifecycleState scheduleState) {
-        for (final ScheduledFuture<?> future : scheduleState.getFutures()) {
-            // stop scheduling to run but do not interrupt currently running tasks.
-            future.cancel(false);
+        // stop scheduling to run but do not interrupt currently running tasks.
+        final ScheduledConnectable scheduledConnectable = scheduledConnectables.remove(connectable);
+        if (scheduledConnectable != null) {
+            scheduledConnectable.cancel();
         }
+        scheduleState.setAutoTuning(0, 0L);
 
         logger.info("Stopped scheduling {} to run", connectable);
     }
@@ -211,21 +218,337 @@ public class TimerDrivenSchedulingAgent extends AbstractSchedulingAgent {
         return FormatUtils.getTimeDuration(adminYieldDuration, timeUnit);
     }
 
+    /**
+     * Called when FlowFiles are added to one of the component's incoming connections or are removed from one of its outgoing connections.
+     * Wakes any of the component's tasks that are waiting because the component had no work to do or because back pressure was applied.
+     */
     @Override
     public void onEvent(final Connectable connectable) {
+        final ScheduledConnectable scheduledConnectable = scheduledConnectables.get(connectable);
+        if (scheduledConnectable != null) {
+            scheduledConnectable.signal();
+        }
     }
 
     @Override
     public void setMaxThreadCount(final int maxThreads) {
+        // The FlowEngine is sized by its own property, so that Reporting Tasks and the framework's tasks are not starved by busy components
+        componentEngine.setParallelism(maxThreads);
     }
 
     @Override
     public void incrementMaxThreadCount(int toAdd) {
+        final int parallelism = componentEngine.getParallelism();
         final int corePoolSize = flowEngine.getCorePoolSize();
-        if (toAdd < 0 && corePoolSize + toAdd < 1) {
-            throw new IllegalStateException("Cannot remove " + (-toAdd) + " threads from pool because there are only " + corePoolSize + " threads in the pool");
+        if (toAdd < 0 && Math.min(parallelism, corePoolSize) + toAdd < 1) {
+            throw new IllegalStateException("Cannot remove " + (-toAdd) + " threads from pool because there are only " + Math.min(parallelism, corePoolSize) + " threads in the pool");
         }
 
+        componentEngine.setParallelism(parallelism + toAdd);
         flowEngine.setCorePoolSize(corePoolSize + toAdd);
     }
+
+    /**
+     * @return the number of threads that are currently running components, including Processors that are annotated with @BlockingIO
+     */
+    public int getActiveThreadCount() {
+        return componentEngine.getActiveCount() + blockingIOEngine.getActiveCount();
+    }
+
+    /**
+     * @return the number of times that a task of a Processor annotated with @BlockingIO was queued while every thread of the Blocking I/O
+     *         thread pool was busy, and so had to wait for one of those threads
+     */
+    public long getBlockingIOSaturationCount() {
+        return blockingIOSaturationCount.get();
+    }
+
+    private void autoTune() {
+        try {
+            final double cpuLoad = getCpuLoad();
+            for (final ScheduledConnectable scheduledConnectable : scheduledConnectables.values()) {
+                if (scheduledConnectable.autoTuner != null && !scheduledConnectable.cancelled) {
+                    scheduledConnectable.autoTune(cpuLoad);
+                }
+            }
+        } catch (final Exception e) {
+            logger.error("Failed to autotune Processors", e);
+        }
+    }
+
+    /**
+     * @return the system load average per available processor, or {@link Double#NaN} if the load average is not available on this platform
+     */
+    private static double getCpuLoad() {
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        final double loadAverage = os.getSystemLoadAverage();
+        return loadAverage < 0D ? Double.NaN : loadAverage / os.getAvailableProcessors();
+    }
+
+    private static long getQueuedCount(final Connectable connectable) {
+        long queued = -1L;
+        for (final Connection connection : connectable.getIncomingConnections()) {
+            if (connection.getSource() != connectable) {
+                queued = Math.max(queued, 0L) + connection.getFlowFileQueue().size().getObjectCount();
+            }
+        }
+
+        return queued;
+    }
+
+    private static boolean isBackPressureEngaged(final Connectable connectable) {
+        for (final Connection connection : connectable.getConnections()) {
+            if (connection.getFlowFileQueue().isFull()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void onBlockingIOSaturated(final Connectable connectable) {
+        blockingIOSaturationCount.incrementAndGet();
+
+        final long now = System.currentTimeMillis();
+        final long lastWarning = lastBlockingIOSaturationWarning.get();
+        if (now - lastWarning > BLOCKING_IO_SATURATION_WARNING_MILLIS && lastBlockingIOSaturationWarning.compareAndSet(lastWarning, now)) {
+            final String message = String.format("All %d threads of the Blocking I/O thread pool are busy, so %s must wait for a thread to become available; "
+                + "this has happened %d times. If this persists, consider increasing the value of the '%s' property.",
+                blockingIOEngine.getParallelism(), connectable, blockingIOSaturationCount.get(), NiFiProperties.BLOCKING_IO_MAX_THREADS);
+            logger.warn(message);
+            flowController.getBulletinRepository().addBulletin(BulletinFactory.createBulletin(connectable, "Blocking I/O", Severity.WARNING.name(), message));
+        }
+    }
+
+    /**
+     * The tasks that run a scheduled component, one for each of its concurrent tasks. Scheduling a component again creates a new
+     * ScheduledConnectable, so that tasks belonging to a previous schedule stop once they see that they have been cancelled.
+     */
+    private class ScheduledConnectable {
+        private final ConnectableTask connectableTask;
+        private final Connectable connectable;
+        private final WorkStealingFlowEngine engine;
+        private final boolean blockingIO;
+        private final List<TaskSlot> slots;
+        private final ComponentAutoTuner autoTuner;
+        private final LifecycleState scheduleState;
+        private volatile int activeSlots;
+        private volatile boolean cancelled = false;
+
+        // Only accessed by the autotuning task
+        private long lastTuningNanos = System.nanoTime();
+        private long lastProcessingNanos = 0L;
+        private long lastSessionCommitNanos = 0L;
+
+        public ScheduledConnectable(final ConnectableTask connectableTask, final int concurrentTasks, final WorkStealingFlowEngine engine, final boolean blockingIO,
+                                    final ComponentAutoTuner autoTuner, final LifecycleState scheduleState) {
+            this.connectableTask = connectableTask;
+            this.connectable = connectableTask.getConnectable();
+            this.engine = engine;
+            this.blockingIO = blockingIO;
+            this.autoTuner = autoTuner;
+            this.scheduleState = scheduleState;
+
+            final List<TaskSlot> slots = new ArrayList<>(concurrentTasks);
+            for (int i = 0; i < concurrentTasks; i++) {
+                slots.add(new TaskSlot(this, i));
+            }
+            this.slots = slots;
+            this.activeSlots = autoTuner == null ? concurrentTasks : autoTuner.getConcurrentTasks();
+
+            if (autoTuner != null) {
+                scheduleState.setAutoTuning(autoTuner.getConcurrentTasks(), autoTuner.getRunDuration(TimeUnit.NANOSECONDS));
+            }
+        }
+
+        public void start() {
+            slots.forEach(this::execute);
+        }
+
+        public void execute(final TaskSlot slot) {
+            if (blockingIO && engine.getActiveCount() >= engine.getParallelism()) {
+                onBlockingIOSaturated(connectable);
+            }
+
+            engine.execute(slot);
+        }
+
+        public void signal() {
+            for (final TaskSlot slot : slots) {
+                slot.signal();
+            }
+        }
+
+        public void cancel() {
+            cancelled = true;
+            slots.forEach(TaskSlot::cancelTimer);
+        }
+
+        /**
+         * @return whether or not the given slot is one of those that the component is currently allowed to run
+         */
+        public boolean isActive(final TaskSlot slot) {
+            return slot.index < activeSlots;
+        }
+
+        public void autoTune(final double cpuLoad) {
+            final long now = System.nanoTime();
+            final long processingNanos = connectableTask.getProcessingNanos();
+            final long sessionCommitNanos = connectableTask.getSessionCommitNanos();
+            final ComponentAutoTuner.TuningSample sample = new ComponentAutoTuner.TuningSample(now - lastTuningNanos, processingNanos - lastProcessingNanos,
+                sessionCommitNanos - lastSessionCommitNanos, getQueuedCount(connectable), isBackPressureEngaged(connectable), cpuLoad);
+
+            lastTuningNanos = now;
+            lastProcessingNanos = processingNanos;
+            lastSessionCommitNanos = sessionCommitNanos;
+
+            if (!autoTuner.evaluate(sample)) {
+                return;
+            }
+
+            final int concurrentTasks = autoTuner.getConcurrentTasks();
+            final long runDurationNanos = autoTuner.getRunDuration(TimeUnit.NANOSECONDS);
+            scheduleState.setAutoTuning(concurrentTasks, runDurationNanos);
+            logger.debug("Autotuned {} to run with {} concurrent tasks and a run duration of {} nanos", connectable, concurrentTasks, runDurationNanos);
+
+            activeSlots = concurrentTasks;
+            for (int i = 0; i < concurrentTasks; i++) {
+                slots.get(i).unpark();
+            }
+        }
+    }
+
+    /**
+     * One of the concurrent tasks of a scheduled component. Whenever the task is not running, it is waiting in one of two ways: for a
+     * period of time (its run schedule, or the time for which the component has yielded), or for an event that indicates the component
+     * may have work to do. If autotuning has reduced the number of concurrent tasks of the component below the index of the task, the
+     * task is parked until autotuning allows it to run again.
+     */
+    private class TaskSlot implements Runnable {
+        private static final int QUEUED = 0;
+        private static final int WAITING = 1;
+        private static final int IDLE = 2;
+        private static final int PARKED = 3;
+
+        private final ScheduledConnectable scheduled;
+        private final int index;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private volatile boolean signalled = false;
+        private volatile ScheduledFuture<?> timerFuture;
+
+        public TaskSlot(final ScheduledConnectable scheduled, final int index) {
+            this.scheduled = scheduled;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            if (scheduled.cancelled) {
+                return;
+            }
+
+            if (!scheduled.isActive(this)) {
+                state.set(PARKED);
+
+                // If the slot was allowed to run again before it was parked, it will not be unparked, so run it now.
+                if (scheduled.isActive(this)) {
+                    unpark();
+                }
+                return;
+            }
+
+            // Any event that occurs from this point on may not be seen by the component while it runs, so it must wake the task again if it goes idle.
+            signalled = false;
+
+            // Call the task. It will return a boolean indicating whether or not we should yield
+            // based on a lack of work for to do for the component.
+            final Connectable connectable = scheduled.connectable;
+            final InvocationResult invocationResult = scheduled.connectableTask.invoke();
+            if (invocationResult.isYield()) {
+                logger.debug("Yielding {} due to {}", connectable, invocationResult.getYieldExplanation());
+            }
+
+            if (scheduled.cancelled) {
+                return;
+            }
+
+            // If the component is yielded, run again after the yield has expired.
+            final long schedulingNanos = connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS);
+            final long yieldExpiration = connectable.getYieldExpiration();
+            final long now = System.currentTimeMillis();
+            if (yieldExpiration > now) {
+                waitFor(Math.max(schedulingNanos, TimeUnit.MILLISECONDS.toNanos(yieldExpiration - now)));
+            } else if (noWorkYieldNanos > 0L && invocationResult.isYield()) {
+                // Component itself didn't yield but there was no work to do. If the component is to run continuously, wait until
+                // FlowFiles are queued for it or back pressure is relieved rather than running it again periodically.
+                if (schedulingNanos > 0L) {
+                    waitFor(Math.max(schedulingNanos, noWorkYieldNanos));
+                } else {
+                    waitForEvent();
+                }
+            } else if (schedulingNanos > 0L) {
+                waitFor(schedulingNanos);
+            } else {
+                // The thread running this task is about to become free, so the task is not counted as waiting for a thread.
+                scheduled.engine.execute(this);
+            }
+        }
+
+        private void waitFor(final long nanos) {
+            state.set(WAITING);
+            schedule(() -> {
+                if (state.compareAndSet(WAITING, QUEUED)) {
+                    run();
+                }
+            }, nanos);
+        }
+
+        private void waitForEvent() {
+            // No timer is armed: the task is parked until FlowFiles are queued for the component, back pressure is relieved, or
+            // one of the component's connections is added or removed, each of which results in an event.
+            state.set(IDLE);
+
+            // If an event occurred while the component was running, it may not have been seen, so run again.
+            if (signalled) {
+                wake();
+            }
+        }
+
+        private void schedule(final Runnable task, final long nanos) {
+            try {
+                timerFuture = scheduled.engine.schedule(task, nanos, TimeUnit.NANOSECONDS);
+            } catch (final RejectedExecutionException ree) {
+                // Once the engine has been shut down, the task simply stops running.
+                if (!scheduled.engine.isShutdown()) {
+                    throw ree;
+                }
+
+                logger.debug("Will not run {} again because the engine has been shut down", scheduled.connectable);
+            }
+        }
+
+        public void signal() {
+            signalled = true;
+            wake();
+        }
+
+        public void unpark() {
+            if (state.compareAndSet(PARKED, QUEUED)) {
+                scheduled.execute(this);
+            }
+        }
+
+        private void wake() {
+            if (state.compareAndSet(IDLE, QUEUED)) {
+                scheduled.execute(this);
+            }
+        }
+
+        public void cancelTimer() {
+            final ScheduledFuture<?> future = timerFuture;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
 }
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The samples of a single component within a segment of the {@link EmbeddedComponentStatusRepository}. Each metric is held in its own
+ * {@link EncodedColumn}, along with a column of the indexes of the segment's captures that the samples belong to; a component that was
+ * idle during a capture has no sample for it.
+ */
+class ComponentSeries {
+    private final StatusComponentType type;
+    private final String componentId;
+    private ComponentDetails details;
+    private final EncodedColumn captureIndexes;
+    private final EncodedColumn[] metrics;
+    private final Map<String, EncodedColumn> counters;
+
+    ComponentSeries(final StatusComponentType type, final String componentId) {
+        this.type = type;
+        this.componentId = componentId;
+        this.captureIndexes = new EncodedColumn();
+        this.metrics = new EncodedColumn[type.getMetricCount()];
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] = new EncodedColumn();
+        }
+        this.counters = new LinkedHashMap<>();
+    }
+
+    private ComponentSeries(final StatusComponentType type, final String componentId, final ComponentDetails details, final EncodedColumn captureIndexes,
+                            final EncodedColumn[] metrics, final Map<String, EncodedColumn> counters) {
+        this.type = type;
+        this.componentId = componentId;
+        this.details = details;
+        this.captureIndexes = captureIndexes;
+        this.metrics = metrics;
+        this.counters = counters;
+    }
+
+    /**
+     * Adds the given sample to the series. A sample without values only updates the details of the component.
+     *
+     * @param captureIndex the index of the segment's capture that the sample belongs to
+     * @param sample the sample to add
+     * @return <code>true</code> if the sample changed the details of the component, <code>false</code> otherwise
+     */
+    boolean add(final int captureIndex, final StatusSample sample) {
+        final boolean detailsChanged = sample.getDetails() != null && !isSameDetails(details, sample.getDetails());
+        if (detailsChanged) {
+            details = sample.getDetails();
+        }
+
+        final long[] values = sample.getValues();
+        if (values == null) {
+            return detailsChanged;
+        }
+
+        final int previousSampleCount = getSampleCount();
+        captureIndexes.append(captureIndex);
+
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i].append(i < values.length ? values[i] : 0L);
+        }
+
+        final Map<String, Long> sampleCounters = sample.getCounters() == null ? Collections.emptyMap() : sample.getCounters();
+        for (final Map.Entry<String, EncodedColumn> entry : counters.entrySet()) {
+            final Long value = sampleCounters.get(entry.getKey());
+            entry.getValue().append(value == null ? 0L : value);
+        }
+        for (final Map.Entry<String, Long> entry : sampleCounters.entrySet()) {
+            if (counters.containsKey(entry.getKey())) {
+                continue;
+            }
+
+            // A counter that was first incremented after earlier samples of the component were added was zero in those samples.
+            final EncodedColumn column = new EncodedColumn();
+            for (int i = 0; i < previousSampleCount; i++) {
+                column.append(0L);
+            }
+            column.append(entry.getValue() == null ? 0L : entry.getValue());
+            counters.put(entry.getKey(), column);
+        }
+
+        return detailsChanged;
+    }
+
+    private static boolean isSameDetails(final ComponentDetails first, final ComponentDetails second) {
+        if (first == null || second == null) {
+            return first == second;
+        }
+
+        return Objects.equals(first.getComponentId(), second.getComponentId())
+            && Objects.equals(first.getGroupId(), second.getGroupId())
+            && Objects.equals(first.getComponentName(), second.getComponentName())
+            && Objects.equals(first.getComponentType(), second.getComponentType())
+            && Objects.equals(first.getSourceName(), second.getSourceName())
+            && Objects.equals(first.getDestinationName(), second.getDestinationName())
+            && Objects.equals(first.getTargetUri(), second.getTargetUri());
+    }
+
+    StatusComponentType getType() {
+        return type;
+    }
+
+    String getComponentId() {
+        return componentId;
+    }
+
+    ComponentDetails getDetails() {
+        return details;
+    }
+
+    int getSampleCount() {
+        return captureIndexes.getCount();
+    }
+
+    long[] getCaptureIndexes() {
+        return captureIndexes.decode();
+    }
+
+    /**
+     * @param metricIndex the index of the metric
+     * @return the values of the metric, one for each sample. A metric that was added after the series was written has a value of 0 in each sample.
+     */
+    long[] getMetricValues(final int metricIndex) {
+        if (metricIndex >= metrics.length) {
+            return new long[getSampleCount()];
+        }
+
+        return metrics[metricIndex].decode();
+    }
+
+    Map<String, long[]> getCounterValues() {
+        final Map<String, long[]> counterValues = new LinkedHashMap<>();
+        counters.forEach((name, column) -> counterValues.put(name, column.decode()));
+        return counterValues;
+    }
+
+    ComponentSeries copy() {
+        final EncodedColumn[] metricsCopy = new EncodedColumn[metrics.length];
+        for (int i = 0; i < metrics.length; i++) {
+            metricsCopy[i] = metrics[i].copy();
+        }
+
+        final Map<String, EncodedColumn> countersCopy = new LinkedHashMap<>();
+        counters.forEach((name, column) -> countersCopy.put(name, column.copy()));
+
+        return new ComponentSeries(type, componentId, details, captureIndexes.copy(), metricsCopy, countersCopy);
+    }
+
+    void writeTo(final DataOutputStream out) throws IOException {
+        out.writeByte(type.ordinal());
+        out.writeUTF(componentId);
+
+        out.writeBoolean(details != null);
+        if (details != null) {
+            writeNullableString(out, details.getGroupId());
+            writeNullableString(out, details.getComponentName());
+            writeNullableString(out, details.getComponentType());
+            writeNullableString(out, details.getSourceName());
+            writeNullableString(out, details.getDestinationName());
+            writeNullableString(out, details.getTargetUri());
+        }
+
+        captureIndexes.writeTo(out);
+
+        out.writeInt(metrics.length);
+        for (final EncodedColumn metric : metrics) {
+            metric.writeTo(out);
+        }
+
+        out.writeInt(counters.size());
+        for (final Map.Entry<String, EncodedColumn> entry : counters.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().writeTo(out);
+        }
+    }
+
+    static ComponentSeries readFrom(final DataInputStream in) throws IOException {
+        final StatusComponentType type = StatusComponentType.values()[in.readByte()];
+        final String componentId = in.readUTF();
+
+        ComponentDetails details = null;
+        if (in.readBoolean()) {
+            details = new ComponentDetails(componentId, readNullableString(in), readNullableString(in), readNullableString(in),
+                readNullableString(in), readNullableString(in), readNullableString(in));
+        }
+
+        final EncodedColumn captureIndexes = EncodedColumn.readFrom(in);
+
+        final EncodedColumn[] metrics = new EncodedColumn[in.readInt()];
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] = EncodedColumn.readFrom(in);
+        }
+
+        final int counterCount = in.readInt();
+        final Map<String, EncodedColumn> counters = new LinkedHashMap<>();
+        for (int i = 0; i < counterCount; i++) {
+            counters.put(in.readUTF(), EncodedColumn.readFrom(in));
+        }
+
+        return new ComponentSeries(type, componentId, details, captureIndexes, metrics, counters);
+    }
+
+    static void writeNullableString(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readNullableString(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
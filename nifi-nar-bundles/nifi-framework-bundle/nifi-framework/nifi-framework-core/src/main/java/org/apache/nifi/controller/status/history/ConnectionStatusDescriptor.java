@@ -20,6 +20,8 @@ package org.apache.nifi.controller.status.history;
 import org.apache.nifi.controller.status.ConnectionStatus;
 import org.apache.nifi.controller.status.history.MetricDescriptor.Formatter;
 
+import java.util.concurrent.TimeUnit;
+
 public enum ConnectionStatusDescriptor {
     INPUT_BYTES(
         "inputBytes",
@@ -61,7 +63,20 @@ public enum ConnectionStatusDescriptor {
         "Queued Count",
         "The number of FlowFiles queued in this Connection",
         Formatter.COUNT,
-        s -> Long.valueOf(s.getQueuedCount()));
+        s -> Long.valueOf(s.getQueuedCount())),
+
+    QUEUED_DURATION_99TH_PERCENTILE(
+        "queuedDuration99thPercentile",
+        "Time in Queue, 99th Percentile (5 mins)",
+        "The amount of time within which 99% of the FlowFiles that were pulled from this Connection in the past 5 minutes had been pulled after entering the queue",
+        Formatter.DURATION,
+        s -> s.getQueuedDurationLatency().getPercentile99(TimeUnit.MILLISECONDS),
+        new MaxReducer() {
+            @Override
+            protected MetricDescriptor<?> getDescriptor() {
+                return QUEUED_DURATION_99TH_PERCENTILE.getDescriptor();
+            }
+        });
 
 
     private MetricDescriptor<ConnectionStatus> descriptor;
@@ -69,7 +84,14 @@ public enum ConnectionStatusDescriptor {
     ConnectionStatusDescriptor(final String field, final String label, final String description,
                               final MetricDescriptor.Formatter formatter, final ValueMapper<ConnectionStatus> valueFunction) {
 
-        this.descriptor = new StandardMetricDescriptor<>(this::ordinal, field, label, description, formatter, valueFunction);
+        this(field, label, description, formatter, valueFunction, null);
+    }
+
+    ConnectionStatusDescriptor(final String field, final String label, final String description,
+                              final MetricDescriptor.Formatter formatter, final ValueMapper<ConnectionStatus> valueFunction,
+                              final ValueReducer<StatusSnapshot, Long> reducer) {
+
+        this.descriptor = new StandardMetricDescriptor<>(this::ordinal, field, label, description, formatter, valueFunction, reducer);
     }
 
     public String getField() {
@@ -0,0 +1,702 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import org.apache.nifi.controller.status.ConnectionStatus;
+import org.apache.nifi.controller.status.ProcessGroupStatus;
+import org.apache.nifi.controller.status.ProcessorStatus;
+import org.apache.nifi.controller.status.RemoteProcessGroupStatus;
+import org.apache.nifi.util.ComponentMetrics;
+import org.apache.nifi.util.FormatUtils;
+import org.apache.nifi.util.NiFiProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * A {@link ComponentStatusRepository} that stores the status history of components on disk, so that it survives a restart and can be kept
+ * for days without holding it in the heap.
+ * </p>
+ *
+ * <p>
+ * Captures are grouped into segments of one hour. The segment of the current hour is held in memory as a set of columns, one for each metric
+ * of each component, in which each value is stored as a variable-length difference from the previous one, so a metric that does not change
+ * takes about one byte per capture. Each capture is also appended to a journal, from which the segment is recovered after a restart. Once the
+ * hour is over, the segment is written to an immutable file, with an index that allows the history of a single component to be read with a
+ * single seek per segment. Once a whole day is older than the full resolution retention period, the segments of that day are downsampled
+ * into a single file; segments that are older than the retention period are deleted.
+ * </p>
+ */
+public class EmbeddedComponentStatusRepository implements ComponentStatusRepository {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedComponentStatusRepository.class);
+
+    public static final String DIRECTORY_PROPERTY = "nifi.components.status.repository.directory";
+    public static final String DEFAULT_DIRECTORY = "./status_repository";
+    public static final String FULL_RESOLUTION_RETENTION_PROPERTY = "nifi.components.status.repository.full.resolution.retention";
+    public static final String DEFAULT_FULL_RESOLUTION_RETENTION = "1 day";
+    public static final String RETENTION_PROPERTY = "nifi.components.status.repository.retention";
+    public static final String DEFAULT_RETENTION = "7 days";
+    public static final String DOWNSAMPLE_INTERVAL_PROPERTY = "nifi.components.status.repository.downsample.interval";
+    public static final String DEFAULT_DOWNSAMPLE_INTERVAL = "15 mins";
+
+    static final long SEGMENT_MILLIS = TimeUnit.HOURS.toMillis(1L);
+    static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1L);
+
+    private static final String FULL_RESOLUTION_PREFIX = "full-";
+    private static final String DOWNSAMPLED_PREFIX = "downsampled-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long fullResolutionRetentionMillis;
+    private final long retentionMillis;
+    private final long downsampleIntervalMillis;
+
+    // Guarded by synchronizing on this. The list is never modified; it is replaced whenever segments are added or removed.
+    private List<StatusSegmentFile> segmentFiles = Collections.emptyList();
+    private OpenStatusSegment openSegment;
+    private StatusJournal journal;
+    private volatile long lastCaptureTime = 0L;
+
+    /**
+     * Default no args constructor for service loading only
+     */
+    public EmbeddedComponentStatusRepository() {
+        directory = null;
+        fullResolutionRetentionMillis = 0L;
+        retentionMillis = 0L;
+        downsampleIntervalMillis = 0L;
+    }
+
+    public EmbeddedComponentStatusRepository(final NiFiProperties nifiProperties) {
+        this(new File(nifiProperties.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY)),
+            FormatUtils.getTimeDuration(nifiProperties.getProperty(FULL_RESOLUTION_RETENTION_PROPERTY, DEFAULT_FULL_RESOLUTION_RETENTION), TimeUnit.MILLISECONDS),
+            FormatUtils.getTimeDuration(nifiProperties.getProperty(RETENTION_PROPERTY, DEFAULT_RETENTION), TimeUnit.MILLISECONDS),
+            FormatUtils.getTimeDuration(nifiProperties.getProperty(DOWNSAMPLE_INTERVAL_PROPERTY, DEFAULT_DOWNSAMPLE_INTERVAL), TimeUnit.MILLISECONDS));
+    }
+
+    EmbeddedComponentStatusRepository(final File directory, final long fullResolutionRetentionMillis, final long retentionMillis, final long downsampleIntervalMillis) {
+        if (downsampleIntervalMillis <= 0L || DAY_MILLIS % downsampleIntervalMillis != 0L) {
+            throw new IllegalArgumentException("The downsample interval of the Component Status Repository must evenly divide one day");
+        }
+
+        this.directory = directory;
+        this.fullResolutionRetentionMillis = fullResolutionRetentionMillis;
+        this.retentionMillis = retentionMillis;
+        this.downsampleIntervalMillis = downsampleIntervalMillis;
+
+        try {
+            recover();
+        } catch (final IOException ioe) {
+            throw new RuntimeException("Unable to recover Component Status Repository from " + directory, ioe);
+        }
+    }
+
+    private synchronized void recover() throws IOException {
+        Files.createDirectories(directory.toPath());
+
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list the contents of " + directory);
+        }
+
+        final List<StatusSegmentFile> segments = new ArrayList<>();
+        final List<File> journalFiles = new ArrayList<>();
+        for (final File file : files) {
+            final String filename = file.getName();
+            if (filename.endsWith(TEMP_SUFFIX)) {
+                // Left behind when NiFi was stopped while a segment was being written; the data is still in the journal or in the segments that it replaces.
+                Files.delete(file.toPath());
+            } else if (filename.endsWith(JOURNAL_SUFFIX)) {
+                journalFiles.add(file);
+            } else if (filename.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    segments.add(StatusSegmentFile.open(file));
+                } catch (final IOException ioe) {
+                    logger.warn("Unable to read Status History segment {}; the status history that it holds will not be available", file, ioe);
+                }
+            }
+        }
+
+        // If NiFi was stopped after a day was downsampled but before its full resolution segments were deleted, delete them now.
+        final Set<Long> downsampledDays = new TreeSet<>();
+        for (final StatusSegmentFile segment : segments) {
+            if (isDownsampled(segment)) {
+                downsampledDays.add(segment.getStartTime());
+            }
+        }
+        segments.removeIf(segment -> {
+            if (!isDownsampled(segment) && downsampledDays.contains(getDayStart(segment.getStartTime()))) {
+                delete(segment);
+                return true;
+            }
+            return false;
+        });
+
+        journalFiles.sort(Comparator.comparing(File::getName));
+        for (int i = 0; i < journalFiles.size(); i++) {
+            final File journalFile = journalFiles.get(i);
+            final OpenStatusSegment segment = StatusJournal.recover(journalFile);
+
+            final boolean alreadyWritten = segments.stream().anyMatch(written -> written.getStartTime() == segment.getStartTime());
+            if (alreadyWritten) {
+                // NiFi was stopped after the segment was written but before its journal was deleted.
+                Files.delete(journalFile.toPath());
+            } else if (i < journalFiles.size() - 1) {
+                // Only the most recent journal can belong to the segment that is still open.
+                if (segment.getCaptureCount() > 0) {
+                    segments.add(StatusSegmentFile.write(segment, getSegmentFile(FULL_RESOLUTION_PREFIX, segment.getStartTime())));
+                }
+                Files.delete(journalFile.toPath());
+            } else {
+                openSegment = segment;
+                journal = StatusJournal.openForAppend(journalFile);
+                lastCaptureTime = Math.max(lastCaptureTime, segment.getLastTimestamp());
+            }
+        }
+
+        segments.sort(Comparator.comparing(StatusSegmentFile::getStartTime));
+        for (final StatusSegmentFile segment : segments) {
+            final long[] timestamps = segment.getTimestamps();
+            if (timestamps.length > 0) {
+                lastCaptureTime = Math.max(lastCaptureTime, timestamps[timestamps.length - 1]);
+            }
+        }
+
+        segmentFiles = Collections.unmodifiableList(segments);
+        logger.info("Recovered {} Status History segments from {}", segments.size() + (openSegment == null ? 0 : 1), directory);
+    }
+
+    private File getSegmentFile(final String prefix, final long startTime) {
+        return new File(directory, prefix + startTime + SEGMENT_SUFFIX);
+    }
+
+    private File getJournalFile(final long startTime) {
+        return new File(directory, FULL_RESOLUTION_PREFIX + startTime + JOURNAL_SUFFIX);
+    }
+
+    private static boolean isDownsampled(final StatusSegmentFile segment) {
+        return segment.getFile().getName().startsWith(DOWNSAMPLED_PREFIX);
+    }
+
+    private static long getDayStart(final long timestamp) {
+        return timestamp - Math.floorMod(timestamp, DAY_MILLIS);
+    }
+
+    private void delete(final StatusSegmentFile segment) {
+        try {
+            Files.deleteIfExists(segment.getFile().toPath());
+        } catch (final IOException ioe) {
+            logger.warn("Unable to delete Status History segment {}", segment.getFile(), ioe);
+        }
+    }
+
+    @Override
+    public void capture(final ProcessGroupStatus rootGroupStatus, final List<GarbageCollectionStatus> gcStatus) {
+        capture(rootGroupStatus, gcStatus, new Date());
+    }
+
+    @Override
+    public synchronized void capture(final ProcessGroupStatus rootGroupStatus, final List<GarbageCollectionStatus> gcStatus, final Date timestamp) {
+        final long captureTime = timestamp.getTime();
+        if (openSegment != null && captureTime >= openSegment.getEndTime()) {
+            rollOver(captureTime);
+        }
+
+        if (captureTime <= lastCaptureTime) {
+            logger.warn("Will not capture status history at {} because status history has already been captured at {}", timestamp, new Date(lastCaptureTime));
+            return;
+        }
+
+        if (openSegment == null) {
+            startSegment(captureTime);
+        }
+
+        final List<StatusSample> samples = new ArrayList<>();
+        collectSamples(rootGroupStatus, timestamp, samples);
+        if (gcStatus != null) {
+            for (final GarbageCollectionStatus status : gcStatus) {
+                final long[] values = new long[StatusComponentType.GARBAGE_COLLECTOR.getMetricCount()];
+                values[StatusComponentType.GC_COLLECTION_COUNT] = status.getCollectionCount();
+                values[StatusComponentType.GC_COLLECTION_MILLIS] = status.getCollectionMillis();
+                samples.add(new StatusSample(StatusComponentType.GARBAGE_COLLECTOR, status.getMemoryManagerName(), null, values, null));
+            }
+        }
+
+        final int captureIndex = openSegment.addCapture(captureTime);
+        final List<StatusSample> journaledSamples = new ArrayList<>(samples.size());
+        final boolean[] detailsChanged = new boolean[samples.size()];
+        for (final StatusSample sample : samples) {
+            final boolean changed = openSegment.add(captureIndex, sample);
+
+            // The sample of an idle component only needs to be journaled if it changed the component's details
+            if (sample.getValues() != null || changed) {
+                detailsChanged[journaledSamples.size()] = changed;
+                journaledSamples.add(sample);
+            }
+        }
+
+        if (journal != null) {
+            try {
+                journal.write(captureTime, journaledSamples, detailsChanged);
+            } catch (final IOException ioe) {
+                logger.error("Failed to journal status history to {}; status history of the current hour will be lost if NiFi is restarted", directory, ioe);
+                closeJournal();
+            }
+        }
+
+        lastCaptureTime = captureTime;
+        logger.debug("Captured metrics for {} components", samples.size());
+    }
+
+    private void startSegment(final long timestamp) {
+        final long startTime = timestamp - Math.floorMod(timestamp, SEGMENT_MILLIS);
+        openSegment = new OpenStatusSegment(startTime, startTime + SEGMENT_MILLIS);
+
+        try {
+            journal = StatusJournal.create(getJournalFile(startTime), openSegment);
+        } catch (final IOException ioe) {
+            logger.error("Failed to create Status History journal in {}; status history of the current hour will be lost if NiFi is restarted", directory, ioe);
+            journal = null;
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            journal.close();
+        } catch (final IOException ioe) {
+            logger.warn("Failed to close Status History journal", ioe);
+        }
+        journal = null;
+    }
+
+    private void rollOver(final long now) {
+        final OpenStatusSegment segment = openSegment;
+        closeJournal();
+
+        final List<StatusSegmentFile> segments = new ArrayList<>(segmentFiles);
+        if (segment.getCaptureCount() > 0) {
+            try {
+                segments.add(StatusSegmentFile.write(segment, getSegmentFile(FULL_RESOLUTION_PREFIX, segment.getStartTime())));
+            } catch (final IOException ioe) {
+                logger.error("Failed to write Status History segment to {}; status history from {} to {} will be lost", directory,
+                    new Date(segment.getStartTime()), new Date(segment.getEndTime()), ioe);
+            }
+        }
+
+        try {
+            Files.deleteIfExists(getJournalFile(segment.getStartTime()).toPath());
+        } catch (final IOException ioe) {
+            logger.warn("Failed to delete Status History journal for segment starting at {}", new Date(segment.getStartTime()), ioe);
+        }
+
+        openSegment = null;
+        segmentFiles = Collections.unmodifiableList(expireAndDownsample(segments, now));
+    }
+
+    private List<StatusSegmentFile> expireAndDownsample(final List<StatusSegmentFile> segments, final long now) {
+        final long retentionCutoff = now - retentionMillis;
+        final long fullResolutionCutoff = now - fullResolutionRetentionMillis;
+
+        final List<StatusSegmentFile> retained = new ArrayList<>();
+        final Map<Long, List<StatusSegmentFile>> segmentsToDownsample = new TreeMap<>();
+        for (final StatusSegmentFile segment : segments) {
+            if (segment.getEndTime() <= retentionCutoff) {
+                delete(segment);
+                continue;
+            }
+
+            final long dayStart = getDayStart(segment.getStartTime());
+            if (fullResolutionRetentionMillis < retentionMillis && !isDownsampled(segment) && dayStart + DAY_MILLIS <= fullResolutionCutoff) {
+                segmentsToDownsample.computeIfAbsent(dayStart, day -> new ArrayList<>()).add(segment);
+            } else {
+                retained.add(segment);
+            }
+        }
+
+        for (final Map.Entry<Long, List<StatusSegmentFile>> entry : segmentsToDownsample.entrySet()) {
+            final long dayStart = entry.getKey();
+            final List<StatusSegmentFile> daySegments = entry.getValue();
+
+            // A day is normally downsampled all at once, but if any of its segments were written afterwards, such as when NiFi was stopped
+            // across midnight, they are merged with the day's existing downsampled segment.
+            for (final StatusSegmentFile segment : new ArrayList<>(retained)) {
+                if (isDownsampled(segment) && segment.getStartTime() == dayStart) {
+                    daySegments.add(0, segment);
+                    retained.remove(segment);
+                }
+            }
+
+            try {
+                final OpenStatusSegment downsampled = downsample(daySegments, dayStart, dayStart + DAY_MILLIS);
+                retained.add(StatusSegmentFile.write(downsampled, getSegmentFile(DOWNSAMPLED_PREFIX, dayStart)));
+
+                for (final StatusSegmentFile segment : daySegments) {
+                    if (!isDownsampled(segment)) {
+                        delete(segment);
+                    }
+                }
+
+                logger.info("Downsampled {} Status History segments for the day starting at {}", daySegments.size(), new Date(dayStart));
+            } catch (final IOException ioe) {
+                logger.error("Failed to downsample Status History for the day starting at {}; will retain the segments at full resolution", new Date(dayStart), ioe);
+                retained.addAll(daySegments);
+            }
+        }
+
+        retained.sort(Comparator.comparing(StatusSegmentFile::getStartTime));
+        return retained;
+    }
+
+    /**
+     * Combines the given segments into a single segment, in which the samples of each component within each downsample interval are replaced by
+     * a single sample. Each metric of that sample is the average of the metric's values in the interval, or the largest of them for those metrics
+     * for which an average is meaningless.
+     */
+    private OpenStatusSegment downsample(final List<StatusSegmentFile> segments, final long startTime, final long endTime) throws IOException {
+        final TreeSet<Long> intervals = new TreeSet<>();
+        for (final StatusSegmentFile segment : segments) {
+            for (final long timestamp : segment.getTimestamps()) {
+                intervals.add(getInterval(timestamp, startTime));
+            }
+        }
+
+        final OpenStatusSegment downsampled = new OpenStatusSegment(startTime, endTime);
+        final Map<Long, Integer> captureIndexes = new HashMap<>();
+        for (final Long interval : intervals) {
+            captureIndexes.put(interval, downsampled.addCapture(startTime + interval * downsampleIntervalMillis));
+        }
+
+        for (final StatusComponentType type : StatusComponentType.values()) {
+            final Set<String> componentIds = new LinkedHashSet<>();
+            segments.forEach(segment -> componentIds.addAll(segment.getComponentIds(type)));
+
+            for (final String componentId : componentIds) {
+                final Map<Long, DownsampledValues> valuesByInterval = new TreeMap<>();
+                ComponentDetails details = null;
+
+                for (final StatusSegmentFile segment : segments) {
+                    final ComponentSeries series = segment.getSeries(componentId);
+                    if (series == null) {
+                        continue;
+                    }
+                    if (series.getDetails() != null) {
+                        details = series.getDetails();
+                    }
+
+                    final long[] timestamps = segment.getTimestamps();
+                    final long[] sampleCaptureIndexes = series.getCaptureIndexes();
+                    final long[][] metricValues = new long[type.getMetricCount()][];
+                    for (int i = 0; i < metricValues.length; i++) {
+                        metricValues[i] = series.getMetricValues(i);
+                    }
+                    final Map<String, long[]> counterValues = series.getCounterValues();
+
+                    for (int sample = 0; sample < sampleCaptureIndexes.length; sample++) {
+                        final long interval = getInterval(timestamps[(int) sampleCaptureIndexes[sample]], startTime);
+                        valuesByInterval.computeIfAbsent(interval, key -> new DownsampledValues(type)).add(metricValues, counterValues, sample);
+                    }
+                }
+
+                for (final Map.Entry<Long, DownsampledValues> entry : valuesByInterval.entrySet()) {
+                    downsampled.add(captureIndexes.get(entry.getKey()), entry.getValue().toSample(componentId, details));
+                }
+            }
+        }
+
+        return downsampled;
+    }
+
+    private long getInterval(final long timestamp, final long startTime) {
+        return (timestamp - startTime) / downsampleIntervalMillis;
+    }
+
+    private static class DownsampledValues {
+        private final StatusComponentType type;
+        private final long[] values;
+        private final Map<String, Long> counterSums = new HashMap<>();
+        private int count = 0;
+
+        DownsampledValues(final StatusComponentType type) {
+            this.type = type;
+            this.values = new long[type.getMetricCount()];
+        }
+
+        void add(final long[][] metricValues, final Map<String, long[]> counterValues, final int sample) {
+            for (int i = 0; i < values.length; i++) {
+                final long value = metricValues[i][sample];
+                values[i] = type.isDownsampledByMax(i) ? Math.max(values[i], value) : values[i] + value;
+            }
+
+            counterValues.forEach((name, counterValue) -> counterSums.merge(name, counterValue[sample], Long::sum));
+            count++;
+        }
+
+        StatusSample toSample(final String componentId, final ComponentDetails details) {
+            final long[] sampleValues = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                sampleValues[i] = type.isDownsampledByMax(i) ? values[i] : values[i] / count;
+            }
+
+            Map<String, Long> counters = null;
+            if (!counterSums.isEmpty()) {
+                counters = new HashMap<>();
+                for (final Map.Entry<String, Long> entry : counterSums.entrySet()) {
+                    counters.put(entry.getKey(), entry.getValue() / count);
+                }
+            }
+
+            return new StatusSample(type, componentId, details, sampleValues, counters);
+        }
+    }
+
+    private void collectSamples(final ProcessGroupStatus groupStatus, final Date timestamp, final List<StatusSample> samples) {
+        addSample(StatusComponentType.PROCESS_GROUP, groupStatus.getId(), ComponentDetails.forProcessGroup(groupStatus),
+            ComponentMetrics.createSnapshot(groupStatus, timestamp), samples);
+
+        for (final ProcessorStatus processorStatus : groupStatus.getProcessorStatus()) {
+            addSample(StatusComponentType.PROCESSOR, processorStatus.getId(), ComponentDetails.forProcessor(processorStatus),
+                ComponentMetrics.createSnapshot(processorStatus, timestamp), samples);
+        }
+
+        for (final ConnectionStatus connectionStatus : groupStatus.getConnectionStatus()) {
+            addSample(StatusComponentType.CONNECTION, connectionStatus.getId(), ComponentDetails.forConnection(connectionStatus),
+                ComponentMetrics.createSnapshot(connectionStatus, timestamp), samples);
+        }
+
+        for (final RemoteProcessGroupStatus rpgStatus : groupStatus.getRemoteProcessGroupStatus()) {
+            addSample(StatusComponentType.REMOTE_PROCESS_GROUP, rpgStatus.getId(), ComponentDetails.forRemoteProcessGroup(rpgStatus),
+                ComponentMetrics.createSnapshot(rpgStatus, timestamp), samples);
+        }
+
+        for (final ProcessGroupStatus childStatus : groupStatus.getProcessGroupStatus()) {
+            collectSamples(childStatus, timestamp, samples);
+        }
+    }
+
+    private void addSample(final StatusComponentType type, final String componentId, final ComponentDetails details, final StatusSnapshot snapshot,
+                           final List<StatusSample> samples) {
+        // As with the volatile repository, the values of a component that was idle are not kept, and are shown as empty snapshots
+        if (snapshot == null) {
+            samples.add(new StatusSample(type, componentId, details, null, null));
+            return;
+        }
+
+        final List<MetricDescriptor<?>> descriptors = type.getDescriptors();
+        final long[] values = new long[descriptors.size()];
+        for (int i = 0; i < values.length; i++) {
+            final Long value = snapshot.getStatusMetric(descriptors.get(i));
+            values[i] = value == null ? 0L : value;
+        }
+
+        Map<String, Long> counters = null;
+        for (final MetricDescriptor<?> descriptor : snapshot.getMetricDescriptors()) {
+            if (descriptor.isCounter()) {
+                if (counters == null) {
+                    counters = new HashMap<>();
+                }
+                counters.put(descriptor.getField(), snapshot.getStatusMetric(descriptor));
+            }
+        }
+
+        samples.add(new StatusSample(type, componentId, details, values, counters));
+    }
+
+    @Override
+    public Date getLastCaptureDate() {
+        return new Date(lastCaptureTime);
+    }
+
+    @Override
+    public StatusHistory getProcessorStatusHistory(final String processorId, final Date start, final Date end, final int preferredDataPoints, final boolean includeCounters) {
+        return getStatusHistory(processorId, StatusComponentType.PROCESSOR, start, end, preferredDataPoints, includeCounters);
+    }
+
+    @Override
+    public StatusHistory getConnectionStatusHistory(final String connectionId, final Date start, final Date end, final int preferredDataPoints) {
+        return getStatusHistory(connectionId, StatusComponentType.CONNECTION, start, end, preferredDataPoints, true);
+    }
+
+    @Override
+    public StatusHistory getProcessGroupStatusHistory(final String processGroupId, final Date start, final Date end, final int preferredDataPoints) {
+        return getStatusHistory(processGroupId, StatusComponentType.PROCESS_GROUP, start, end, preferredDataPoints, true);
+    }
+
+    @Override
+    public StatusHistory getRemoteProcessGroupStatusHistory(final String remoteGroupId, final Date start, final Date end, final int preferredDataPoints) {
+        return getStatusHistory(remoteGroupId, StatusComponentType.REMOTE_PROCESS_GROUP, start, end, preferredDataPoints, true);
+    }
+
+    private synchronized List<StatusSegment> getSegments() {
+        final List<StatusSegment> segments = new ArrayList<>(segmentFiles);
+        if (openSegment != null) {
+            segments.add(openSegment);
+        }
+        return segments;
+    }
+
+    private StatusHistory getStatusHistory(final String componentId, final StatusComponentType type, final Date start, final Date end,
+                                           final int preferredDataPoints, final boolean includeCounters) {
+        final long startTime = start == null ? Long.MIN_VALUE : start.getTime();
+        final long endTime = end == null ? Long.MAX_VALUE : end.getTime();
+
+        final List<StatusSnapshot> snapshots = new ArrayList<>();
+        ComponentDetails details = null;
+
+        for (final StatusSegment segment : getSegments()) {
+            if (segment.getEndTime() <= startTime || segment.getStartTime() > endTime) {
+                continue;
+            }
+
+            final ComponentSeries series;
+            try {
+                series = segment.getSeries(componentId);
+            } catch (final IOException ioe) {
+                logger.warn("Unable to read status history of component {} from {}", componentId, segment, ioe);
+                continue;
+            }
+
+            if (series != null && series.getDetails() != null) {
+                details = series.getDetails();
+            }
+
+            addSnapshots(segment.getTimestamps(), series, type, startTime, endTime, includeCounters, snapshots);
+        }
+
+        if (details == null) {
+            return createEmptyStatusHistory();
+        }
+
+        return new StandardStatusHistory(reduceDataPoints(snapshots, preferredDataPoints), details.toMap(), new Date());
+    }
+
+    private void addSnapshots(final long[] timestamps, final ComponentSeries series, final StatusComponentType type, final long startTime, final long endTime,
+                              final boolean includeCounters, final List<StatusSnapshot> snapshots) {
+        final List<MetricDescriptor<?>> descriptors = type.getDescriptors();
+        final long[] sampleCaptureIndexes = series == null ? new long[0] : series.getCaptureIndexes();
+        final long[][] metricValues = new long[descriptors.size()][];
+        for (int i = 0; series != null && i < metricValues.length; i++) {
+            metricValues[i] = series.getMetricValues(i);
+        }
+        final Map<String, long[]> counterValues = series == null || !includeCounters ? Collections.emptyMap() : series.getCounterValues();
+
+        int sample = 0;
+        for (int captureIndex = 0; captureIndex < timestamps.length; captureIndex++) {
+            final long timestamp = timestamps[captureIndex];
+            final boolean sampled = sample < sampleCaptureIndexes.length && sampleCaptureIndexes[sample] == captureIndex;
+
+            if (timestamp >= startTime && timestamp <= endTime) {
+                if (sampled) {
+                    final StandardStatusSnapshot snapshot = new StandardStatusSnapshot(type.getDescriptorSet());
+                    snapshot.setTimestamp(new Date(timestamp));
+                    for (int i = 0; i < metricValues.length; i++) {
+                        snapshot.addStatusMetric(descriptors.get(i), metricValues[i][sample]);
+                    }
+                    for (final Map.Entry<String, long[]> entry : counterValues.entrySet()) {
+                        snapshot.addStatusMetric(ComponentMetrics.createCounterDescriptor(entry.getKey()), entry.getValue()[sample]);
+                    }
+                    snapshots.add(snapshot);
+                } else {
+                    snapshots.add(new EmptyStatusSnapshot(new Date(timestamp), type.getDescriptorSet()));
+                }
+            }
+
+            if (sampled) {
+                sample++;
+            }
+        }
+    }
+
+    /**
+     * Keeps only the last snapshot of each run of consecutive snapshots, so that no more than the preferred number of snapshots are returned
+     */
+    private List<StatusSnapshot> reduceDataPoints(final List<StatusSnapshot> snapshots, final int preferredDataPoints) {
+        if (preferredDataPoints <= 0 || snapshots.size() <= preferredDataPoints) {
+            return snapshots;
+        }
+
+        final int runLength = (snapshots.size() + preferredDataPoints - 1) / preferredDataPoints;
+        final List<StatusSnapshot> reduced = new ArrayList<>(preferredDataPoints);
+        for (int i = snapshots.size() - 1; i >= 0; i -= runLength) {
+            reduced.add(snapshots.get(i));
+        }
+
+        Collections.reverse(reduced);
+        return reduced;
+    }
+
+    private StatusHistory createEmptyStatusHistory() {
+        return new StandardStatusHistory(Collections.emptyList(), Collections.emptyMap(), new Date());
+    }
+
+    @Override
+    public GarbageCollectionHistory getGarbageCollectionHistory(final Date start, final Date end) {
+        final StandardGarbageCollectionHistory history = new StandardGarbageCollectionHistory();
+        final long startTime = start.getTime();
+        final long endTime = end.getTime();
+
+        for (final StatusSegment segment : getSegments()) {
+            if (segment.getEndTime() <= startTime || segment.getStartTime() > endTime) {
+                continue;
+            }
+
+            final long[] timestamps = segment.getTimestamps();
+            for (final String managerName : segment.getComponentIds(StatusComponentType.GARBAGE_COLLECTOR)) {
+                final ComponentSeries series;
+                try {
+                    series = segment.getSeries(managerName);
+                } catch (final IOException ioe) {
+                    logger.warn("Unable to read garbage collection history of {} from {}", managerName, segment, ioe);
+                    continue;
+                }
+
+                final long[] sampleCaptureIndexes = series.getCaptureIndexes();
+                final long[] collectionCounts = series.getMetricValues(StatusComponentType.GC_COLLECTION_COUNT);
+                final long[] collectionMillis = series.getMetricValues(StatusComponentType.GC_COLLECTION_MILLIS);
+                for (int sample = 0; sample < sampleCaptureIndexes.length; sample++) {
+                    final long timestamp = timestamps[(int) sampleCaptureIndexes[sample]];
+                    if (timestamp >= startTime && timestamp <= endTime) {
+                        history.addGarbageCollectionStatus(new StandardGarbageCollectionStatus(managerName, new Date(timestamp), collectionCounts[sample], collectionMillis[sample]));
+                    }
+                }
+            }
+        }
+
+        return history;
+    }
+}
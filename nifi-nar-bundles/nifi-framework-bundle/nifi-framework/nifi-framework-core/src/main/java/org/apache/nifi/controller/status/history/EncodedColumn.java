@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A column of long values that is encoded as it is appended to. Each value is stored as the difference from the previous value, zig-zag
+ * encoded so that small negative differences are also small, and written as a variable-length integer. Metrics of a component usually
+ * change little or not at all from one snapshot to the next, so most values take a single byte. The same encoding is used in memory and
+ * on disk, so a column can be written without being re-encoded.
+ */
+class EncodedColumn {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private byte[] bytes;
+    private int length = 0;
+    private int count = 0;
+    private long lastValue = 0L;
+
+    EncodedColumn() {
+        bytes = new byte[INITIAL_CAPACITY];
+    }
+
+    private EncodedColumn(final byte[] bytes, final int count) {
+        this.bytes = bytes;
+        this.length = bytes.length;
+        this.count = count;
+
+        final long[] values = decode();
+        this.lastValue = count == 0 ? 0L : values[count - 1];
+    }
+
+    void append(final long value) {
+        final long delta = value - lastValue;
+        lastValue = value;
+        count++;
+
+        long zigZag = (delta << 1) ^ (delta >> 63);
+        ensureCapacity(length + 10);
+        while ((zigZag & ~0x7FL) != 0L) {
+            bytes[length++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        bytes[length++] = (byte) zigZag;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long[] decode() {
+        final long[] values = new long[count];
+
+        long value = 0L;
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            long zigZag = 0L;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                zigZag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            value += (zigZag >>> 1) ^ -(zigZag & 1);
+            values[i] = value;
+        }
+
+        return values;
+    }
+
+    EncodedColumn copy() {
+        return new EncodedColumn(Arrays.copyOf(bytes, length), count);
+    }
+
+    void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(count);
+        out.writeInt(length);
+        out.write(bytes, 0, length);
+    }
+
+    static EncodedColumn readFrom(final DataInput in) throws IOException {
+        final int count = in.readInt();
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new EncodedColumn(bytes, count);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import java.util.List;
+
+/**
+ * Reduces a metric to the largest of its values. This is used for percentiles of latencies, which cannot be summed, and whose
+ * largest value is an upper bound of the percentile over all of the snapshots.
+ */
+abstract class MaxReducer implements ValueReducer<StatusSnapshot, Long> {
+
+    /**
+     * @return the descriptor of the metric to reduce. This is a method, rather than a constructor argument, so that an enum
+     *         constant can create a reducer for its own descriptor.
+     */
+    protected abstract MetricDescriptor<?> getDescriptor();
+
+    @Override
+    public Long reduce(final List<StatusSnapshot> values) {
+        final MetricDescriptor<?> descriptor = getDescriptor();
+
+        long max = 0L;
+        for (final StatusSnapshot snapshot : values) {
+            final Long value = snapshot.getStatusMetric(descriptor);
+            if (value != null) {
+                max = Math.max(max, value);
+            }
+        }
+
+        return max;
+    }
+}
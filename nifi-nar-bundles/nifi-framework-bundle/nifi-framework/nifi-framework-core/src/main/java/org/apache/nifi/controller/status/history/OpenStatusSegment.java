@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The segment of the {@link EmbeddedComponentStatusRepository} to which captures are currently being added. Its columns are encoded as
+ * they grow, so it holds roughly as much memory as it will take on disk once it is written out as a {@link StatusSegmentFile}.
+ */
+class OpenStatusSegment implements StatusSegment {
+    private final long startTime;
+    private final long endTime;
+    private final EncodedColumn timestamps = new EncodedColumn();
+    private final Map<String, ComponentSeries> seriesMap = new HashMap<>();
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    OpenStatusSegment(final long startTime, final long endTime) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    @Override
+    public long getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Adds a capture to the segment
+     *
+     * @param timestamp the time of the capture, which must be later than that of any capture already in the segment
+     * @return the index of the capture, to which the capture's samples are to be added
+     */
+    synchronized int addCapture(final long timestamp) {
+        if (timestamp <= lastTimestamp) {
+            throw new IllegalArgumentException("Cannot add capture at " + timestamp + " because a capture at " + lastTimestamp + " has already been added");
+        }
+
+        lastTimestamp = timestamp;
+        timestamps.append(timestamp);
+        return timestamps.getCount() - 1;
+    }
+
+    synchronized long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * @param captureIndex the index of the capture that the sample belongs to
+     * @param sample the sample to add
+     * @return <code>true</code> if the sample changed the details of the component, in which case the details must be journaled along with the sample
+     */
+    synchronized boolean add(final int captureIndex, final StatusSample sample) {
+        final ComponentSeries series = seriesMap.computeIfAbsent(sample.getComponentId(), id -> new ComponentSeries(sample.getType(), id));
+        return series.add(captureIndex, sample);
+    }
+
+    @Override
+    public synchronized long[] getTimestamps() {
+        return timestamps.decode();
+    }
+
+    synchronized int getCaptureCount() {
+        return timestamps.getCount();
+    }
+
+    @Override
+    public synchronized ComponentSeries getSeries(final String componentId) {
+        final ComponentSeries series = seriesMap.get(componentId);
+        return series == null ? null : series.copy();
+    }
+
+    /**
+     * @return all of the series in the segment. The series are not copied, so this must only be called once no more captures will be added.
+     */
+    synchronized List<ComponentSeries> getAllSeries() {
+        return new ArrayList<>(seriesMap.values());
+    }
+
+    @Override
+    public synchronized List<String> getComponentIds(final StatusComponentType type) {
+        final List<String> componentIds = new ArrayList<>();
+        for (final ComponentSeries series : seriesMap.values()) {
+            if (series.getType() == type) {
+                componentIds.add(series.getComponentId());
+            }
+        }
+
+        return componentIds;
+    }
+}
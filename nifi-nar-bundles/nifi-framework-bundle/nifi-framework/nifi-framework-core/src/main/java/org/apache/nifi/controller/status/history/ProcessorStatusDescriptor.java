@@ -164,7 +164,63 @@ public enum ProcessorStatusDescriptor {
             }
         },
         true
-    );
+    ),
+
+    TASK_DURATION_99TH_PERCENTILE(
+        "taskDuration99thPercentile",
+        "Task Duration, 99th Percentile (nanoseconds)",
+        "The number of nanoseconds within which 99% of this Processor's tasks were completed, over the past 5 minutes",
+        Formatter.COUNT,
+        s -> s.getTaskDurationLatency().getPercentile99(TimeUnit.NANOSECONDS),
+        new MaxReducer() {
+            @Override
+            protected MetricDescriptor<?> getDescriptor() {
+                return TASK_DURATION_99TH_PERCENTILE.getDescriptor();
+            }
+        },
+        true),
+
+    SESSION_COMMIT_99TH_PERCENTILE(
+        "sessionCommit99thPercentile",
+        "Session Commit Duration, 99th Percentile (nanoseconds)",
+        "The number of nanoseconds within which 99% of this Processor's sessions were committed, over the past 5 minutes",
+        Formatter.COUNT,
+        s -> s.getSessionCommitLatency().getPercentile99(TimeUnit.NANOSECONDS),
+        new MaxReducer() {
+            @Override
+            protected MetricDescriptor<?> getDescriptor() {
+                return SESSION_COMMIT_99TH_PERCENTILE.getDescriptor();
+            }
+        },
+        true),
+
+    AUTO_TUNED_CONCURRENT_TASKS(
+        "autoTunedConcurrentTasks",
+        "Concurrent Tasks (Auto-Tuned)",
+        "The number of concurrent tasks that autotuning allowed this Processor, or 0 if the Processor is not autotuned",
+        Formatter.COUNT,
+        s -> Long.valueOf(s.getAutoTunedConcurrentTasks()),
+        new MaxReducer() {
+            @Override
+            protected MetricDescriptor<?> getDescriptor() {
+                return AUTO_TUNED_CONCURRENT_TASKS.getDescriptor();
+            }
+        },
+        false),
+
+    AUTO_TUNED_RUN_DURATION(
+        "autoTunedRunDuration",
+        "Run Duration (Auto-Tuned)",
+        "The run duration that autotuning chose for this Processor, or 0 if the Processor is not autotuned",
+        Formatter.DURATION,
+        s -> s.getAutoTunedRunDuration(TimeUnit.MILLISECONDS),
+        new MaxReducer() {
+            @Override
+            protected MetricDescriptor<?> getDescriptor() {
+                return AUTO_TUNED_RUN_DURATION.getDescriptor();
+            }
+        },
+        false);
 
 
 
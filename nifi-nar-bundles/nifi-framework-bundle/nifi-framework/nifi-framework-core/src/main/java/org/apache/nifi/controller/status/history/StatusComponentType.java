@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The types of series that are stored by the {@link EmbeddedComponentStatusRepository}, along with the metrics that make up each of them.
+ * The metrics of a component are stored in the order of their descriptors' identifiers, so descriptors may be added but must not be reordered.
+ */
+enum StatusComponentType {
+    PROCESSOR(Arrays.stream(ProcessorStatusDescriptor.values()).map(ProcessorStatusDescriptor::getDescriptor).collect(Collectors.toList())),
+    CONNECTION(Arrays.stream(ConnectionStatusDescriptor.values()).map(ConnectionStatusDescriptor::getDescriptor).collect(Collectors.toList())),
+    PROCESS_GROUP(Arrays.stream(ProcessGroupStatusDescriptor.values()).map(ProcessGroupStatusDescriptor::getDescriptor).collect(Collectors.toList())),
+    REMOTE_PROCESS_GROUP(Arrays.stream(RemoteProcessGroupStatusDescriptor.values()).map(RemoteProcessGroupStatusDescriptor::getDescriptor).collect(Collectors.toList())),
+
+    /**
+     * The collection count and the collection time of a garbage collector, both of which are cumulative
+     */
+    GARBAGE_COLLECTOR(Collections.emptyList());
+
+    static final int GC_COLLECTION_COUNT = 0;
+    static final int GC_COLLECTION_MILLIS = 1;
+
+    private final List<MetricDescriptor<?>> descriptors;
+    private final Set<MetricDescriptor<?>> descriptorSet;
+
+    StatusComponentType(final List<MetricDescriptor<?>> descriptors) {
+        this.descriptors = descriptors;
+        this.descriptorSet = Collections.unmodifiableSet(new LinkedHashSet<>(descriptors));
+    }
+
+    List<MetricDescriptor<?>> getDescriptors() {
+        return descriptors;
+    }
+
+    Set<MetricDescriptor<?>> getDescriptorSet() {
+        return descriptorSet;
+    }
+
+    int getMetricCount() {
+        return this == GARBAGE_COLLECTOR ? 2 : descriptors.size();
+    }
+
+    /**
+     * @param metricIndex the index of the metric
+     * @return <code>true</code> if the metric is downsampled by taking the largest of its values, <code>false</code> if it is downsampled by
+     *         taking the average. Cumulative values and percentiles of latencies use the largest value, since an average of either is meaningless.
+     */
+    boolean isDownsampledByMax(final int metricIndex) {
+        if (this == GARBAGE_COLLECTOR) {
+            return true;
+        }
+
+        return descriptors.get(metricIndex).getValueReducer() instanceof MaxReducer;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only journal of the captures that have been added to the {@link OpenStatusSegment}, so that the segment can be recovered
+ * if NiFi is restarted before the segment is written out as a {@link StatusSegmentFile}. Each capture is appended as a single record.
+ * The details of a component are journaled only when they change, so a typical record holds little more than the IDs of the components
+ * and their values.
+ */
+class StatusJournal implements Closeable {
+    private static final int MAGIC = 0x4E53484A;
+
+    private final DataOutputStream out;
+
+    private StatusJournal(final File file, final boolean append) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append), 65536));
+    }
+
+    /**
+     * Creates a new, empty journal for the given segment
+     *
+     * @param file the file to journal to
+     * @param segment the segment whose captures will be journaled
+     * @return the journal
+     * @throws IOException if unable to create the journal
+     */
+    static StatusJournal create(final File file, final OpenStatusSegment segment) throws IOException {
+        final StatusJournal journal = new StatusJournal(file, false);
+        journal.out.writeInt(MAGIC);
+        journal.out.writeLong(segment.getStartTime());
+        journal.out.writeLong(segment.getEndTime());
+        journal.out.flush();
+        return journal;
+    }
+
+    /**
+     * Opens an existing journal, to which further captures are to be appended. The journal must first have been recovered.
+     *
+     * @param file the journal's file
+     * @return the journal
+     * @throws IOException if unable to open the journal
+     */
+    static StatusJournal openForAppend(final File file) throws IOException {
+        return new StatusJournal(file, true);
+    }
+
+    /**
+     * Recovers the segment from the given journal. If NiFi was stopped while a capture was being journaled, the incomplete record
+     * is truncated, so that the journal can be appended to.
+     *
+     * @param file the journal's file
+     * @return the segment, holding every capture that was completely journaled
+     * @throws IOException if unable to read the journal or if the file is not a journal
+     */
+    static OpenStatusSegment recover(final File file) throws IOException {
+        final byte[] bytes = Files.readAllBytes(file.toPath());
+        final ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+        final DataInputStream in = new DataInputStream(bais);
+
+        final OpenStatusSegment segment;
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("File " + file + " is not a Status History journal");
+            }
+            segment = new OpenStatusSegment(in.readLong(), in.readLong());
+        } catch (final EOFException eof) {
+            throw new IOException("File " + file + " is not a complete Status History journal", eof);
+        }
+
+        int validLength = bytes.length - bais.available();
+        while (bais.available() > 0) {
+            final long timestamp;
+            final List<StatusSample> samples;
+            try {
+                timestamp = in.readLong();
+                samples = readSamples(in);
+            } catch (final EOFException eof) {
+                break;
+            }
+
+            final int captureIndex = segment.addCapture(timestamp);
+            for (final StatusSample sample : samples) {
+                segment.add(captureIndex, sample);
+            }
+            validLength = bytes.length - bais.available();
+        }
+
+        if (validLength < bytes.length) {
+            try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+
+        return segment;
+    }
+
+    private static List<StatusSample> readSamples(final DataInputStream in) throws IOException {
+        final int sampleCount = in.readInt();
+        final List<StatusSample> samples = new ArrayList<>(sampleCount);
+
+        for (int i = 0; i < sampleCount; i++) {
+            final StatusComponentType type = StatusComponentType.values()[in.readByte()];
+            final String componentId = in.readUTF();
+
+            ComponentDetails details = null;
+            if (in.readBoolean()) {
+                details = new ComponentDetails(componentId, ComponentSeries.readNullableString(in), ComponentSeries.readNullableString(in),
+                    ComponentSeries.readNullableString(in), ComponentSeries.readNullableString(in), ComponentSeries.readNullableString(in),
+                    ComponentSeries.readNullableString(in));
+            }
+
+            final int valueCount = in.readInt();
+            final long[] values = valueCount < 0 ? null : new long[valueCount];
+            for (int j = 0; j < valueCount; j++) {
+                values[j] = readVarLong(in);
+            }
+
+            final int counterCount = in.readInt();
+            Map<String, Long> counters = null;
+            if (counterCount > 0) {
+                counters = new HashMap<>(counterCount);
+                for (int j = 0; j < counterCount; j++) {
+                    counters.put(in.readUTF(), readVarLong(in));
+                }
+            }
+
+            samples.add(new StatusSample(type, componentId, details, values, counters));
+        }
+
+        return samples;
+    }
+
+    /**
+     * Appends a capture to the journal
+     *
+     * @param timestamp the time of the capture
+     * @param samples the samples of the capture
+     * @param includeDetails for each sample, whether or not the details of the component are to be journaled
+     * @throws IOException if unable to write to the journal
+     */
+    void write(final long timestamp, final List<StatusSample> samples, final boolean[] includeDetails) throws IOException {
+        out.writeLong(timestamp);
+        out.writeInt(samples.size());
+
+        for (int i = 0; i < samples.size(); i++) {
+            final StatusSample sample = samples.get(i);
+            out.writeByte(sample.getType().ordinal());
+            out.writeUTF(sample.getComponentId());
+
+            final ComponentDetails details = includeDetails[i] ? sample.getDetails() : null;
+            out.writeBoolean(details != null);
+            if (details != null) {
+                ComponentSeries.writeNullableString(out, details.getGroupId());
+                ComponentSeries.writeNullableString(out, details.getComponentName());
+                ComponentSeries.writeNullableString(out, details.getComponentType());
+                ComponentSeries.writeNullableString(out, details.getSourceName());
+                ComponentSeries.writeNullableString(out, details.getDestinationName());
+                ComponentSeries.writeNullableString(out, details.getTargetUri());
+            }
+
+            final long[] values = sample.getValues();
+            out.writeInt(values == null ? -1 : values.length);
+            if (values != null) {
+                for (final long value : values) {
+                    writeVarLong(out, value);
+                }
+            }
+
+            final Map<String, Long> counters = sample.getCounters();
+            out.writeInt(counters == null ? 0 : counters.size());
+            if (counters != null) {
+                for (final Map.Entry<String, Long> entry : counters.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    writeVarLong(out, entry.getValue() == null ? 0L : entry.getValue());
+                }
+            }
+        }
+
+        out.flush();
+    }
+
+    private static void writeVarLong(final DataOutputStream out, final long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0L) {
+            out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    private static long readVarLong(final DataInputStream in) throws IOException {
+        long zigZag = 0L;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
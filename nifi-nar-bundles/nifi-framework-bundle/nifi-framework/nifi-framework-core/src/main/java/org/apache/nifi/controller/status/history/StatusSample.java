@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import java.util.Map;
+
+/**
+ * The values of a single component's metrics at the time of a capture
+ */
+class StatusSample {
+    private final StatusComponentType type;
+    private final String componentId;
+    private final ComponentDetails details;
+    private final long[] values;
+    private final Map<String, Long> counters;
+
+    StatusSample(final StatusComponentType type, final String componentId, final ComponentDetails details, final long[] values, final Map<String, Long> counters) {
+        this.type = type;
+        this.componentId = componentId;
+        this.details = details;
+        this.values = values;
+        this.counters = counters;
+    }
+
+    StatusComponentType getType() {
+        return type;
+    }
+
+    String getComponentId() {
+        return componentId;
+    }
+
+    /**
+     * @return the details of the component, or <code>null</code> if they are unchanged since the previous sample of the component
+     */
+    ComponentDetails getDetails() {
+        return details;
+    }
+
+    /**
+     * @return the values of the component's metrics, or <code>null</code> if the component was idle, in which case the sample only records its details
+     */
+    long[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return the values of the component's counters, or <code>null</code> if the component has none
+     */
+    Map<String, Long> getCounters() {
+        return counters;
+    }
+}
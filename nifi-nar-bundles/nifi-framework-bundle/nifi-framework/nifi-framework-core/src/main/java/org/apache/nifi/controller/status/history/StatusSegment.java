@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A range of time in the {@link EmbeddedComponentStatusRepository}, holding the timestamps of the captures that were made during that range
+ * and a {@link ComponentSeries} for each component that had a sample in any of them.
+ */
+interface StatusSegment {
+
+    /**
+     * @return the start of the range of time, in milliseconds since epoch, inclusive
+     */
+    long getStartTime();
+
+    /**
+     * @return the end of the range of time, in milliseconds since epoch, exclusive
+     */
+    long getEndTime();
+
+    /**
+     * @return the timestamps of the captures in the segment, in ascending order
+     */
+    long[] getTimestamps();
+
+    /**
+     * @param componentId the ID of the component
+     * @return the series of the component, or <code>null</code> if the component had no samples in the segment
+     * @throws IOException if unable to read the series
+     */
+    ComponentSeries getSeries(String componentId) throws IOException;
+
+    /**
+     * @param type the type of component
+     * @return the IDs of all components of the given type that have a series in the segment
+     */
+    List<String> getComponentIds(StatusComponentType type);
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>
+ * An immutable segment of the {@link EmbeddedComponentStatusRepository} that is stored in a file. The file holds the timestamps of the
+ * segment's captures, followed by one block for each component, which holds the columns of the component's {@link ComponentSeries}, and
+ * an index of the blocks, sorted by component ID:
+ * </p>
+ *
+ * <pre>
+ * int magic, int version, long start time, long end time, timestamps column
+ * component blocks
+ * int component count, (UTF component ID, byte component type, long block offset) for each component
+ * long index offset, int magic
+ * </pre>
+ *
+ * <p>
+ * Only the timestamps and the index are held in memory, so reading the history of one component requires a single seek per segment.
+ * </p>
+ */
+class StatusSegmentFile implements StatusSegment {
+    private static final int MAGIC = 0x4E534853;
+    private static final int VERSION = 1;
+    private static final int TRAILER_LENGTH = 12;
+
+    private final File file;
+    private final long startTime;
+    private final long endTime;
+    private final long[] timestamps;
+    private final String[] componentIds;
+    private final byte[] componentTypes;
+    private final long[] offsets;
+
+    private StatusSegmentFile(final File file, final long startTime, final long endTime, final long[] timestamps, final String[] componentIds,
+                              final byte[] componentTypes, final long[] offsets) {
+        this.file = file;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.timestamps = timestamps;
+        this.componentIds = componentIds;
+        this.componentTypes = componentTypes;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Writes the given segment to the given file. The segment is written to a temporary file, which is then renamed, so that a file
+     * with the given name is always complete.
+     *
+     * @param segment the segment to write
+     * @param file the file to write to
+     * @return the segment that was written
+     * @throws IOException if unable to write the file
+     */
+    static StatusSegmentFile write(final OpenStatusSegment segment, final File file) throws IOException {
+        final List<ComponentSeries> seriesList = segment.getAllSeries();
+        seriesList.sort(Comparator.comparing(ComponentSeries::getComponentId));
+
+        final String[] componentIds = new String[seriesList.size()];
+        final byte[] componentTypes = new byte[seriesList.size()];
+        final long[] offsets = new long[seriesList.size()];
+        final long[] timestamps = segment.getTimestamps();
+
+        final File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (final FileOutputStream fos = new FileOutputStream(tempFile);
+             final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 65536))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(segment.getStartTime());
+            out.writeLong(segment.getEndTime());
+
+            final EncodedColumn timestampColumn = new EncodedColumn();
+            for (final long timestamp : timestamps) {
+                timestampColumn.append(timestamp);
+            }
+            timestampColumn.writeTo(out);
+
+            for (int i = 0; i < seriesList.size(); i++) {
+                final ComponentSeries series = seriesList.get(i);
+                componentIds[i] = series.getComponentId().intern();
+                componentTypes[i] = (byte) series.getType().ordinal();
+                offsets[i] = out.size();
+                series.writeTo(out);
+            }
+
+            final long indexOffset = out.size();
+            out.writeInt(componentIds.length);
+            for (int i = 0; i < componentIds.length; i++) {
+                out.writeUTF(componentIds[i]);
+                out.writeByte(componentTypes[i]);
+                out.writeLong(offsets[i]);
+            }
+
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+            out.flush();
+            fos.getFD().sync();
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new StatusSegmentFile(file, segment.getStartTime(), segment.getEndTime(), timestamps, componentIds, componentTypes, offsets);
+    }
+
+    /**
+     * Reads the timestamps and the index of the segment that is stored in the given file
+     *
+     * @param file the file
+     * @return the segment
+     * @throws IOException if unable to read the file or if the file is not a complete segment
+     */
+    static StatusSegmentFile open(final File file) throws IOException {
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < TRAILER_LENGTH) {
+                throw new IOException("File " + file + " is not a Status History segment because it is only " + raf.length() + " bytes long");
+            }
+
+            raf.seek(raf.length() - TRAILER_LENGTH);
+            final long indexOffset = raf.readLong();
+            if (raf.readInt() != MAGIC) {
+                throw new IOException("File " + file + " is not a complete Status History segment");
+            }
+
+            raf.seek(0L);
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(raf.getChannel())));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("File " + file + " is not a Status History segment");
+            }
+
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("File " + file + " is a Status History segment of version " + version + ", which is not supported");
+            }
+
+            final long startTime = in.readLong();
+            final long endTime = in.readLong();
+            final long[] timestamps = EncodedColumn.readFrom(in).decode();
+
+            raf.seek(indexOffset);
+            final DataInputStream indexIn = new DataInputStream(new BufferedInputStream(Channels.newInputStream(raf.getChannel())));
+            final int componentCount = indexIn.readInt();
+            final String[] componentIds = new String[componentCount];
+            final byte[] componentTypes = new byte[componentCount];
+            final long[] offsets = new long[componentCount];
+            for (int i = 0; i < componentCount; i++) {
+                componentIds[i] = indexIn.readUTF().intern();
+                componentTypes[i] = indexIn.readByte();
+                offsets[i] = indexIn.readLong();
+            }
+
+            return new StatusSegmentFile(file, startTime, endTime, timestamps, componentIds, componentTypes, offsets);
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    @Override
+    public long getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public long getEndTime() {
+        return endTime;
+    }
+
+    @Override
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    @Override
+    public ComponentSeries getSeries(final String componentId) throws IOException {
+        final int index = Arrays.binarySearch(componentIds, componentId);
+        if (index < 0) {
+            return null;
+        }
+
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(offsets[index]);
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(raf.getChannel())));
+            return ComponentSeries.readFrom(in);
+        }
+    }
+
+    @Override
+    public List<String> getComponentIds(final StatusComponentType type) {
+        final List<String> ids = new ArrayList<>();
+        for (int i = 0; i < componentIds.length; i++) {
+            if (componentTypes[i] == type.ordinal()) {
+                ids.add(componentIds[i]);
+            }
+        }
+
+        return ids;
+    }
+
+    @Override
+    public String toString() {
+        return "StatusSegmentFile[file=" + file + ", components=" + componentIds.length + ", captures=" + timestamps.length + "]";
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.swap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+
+/**
+ * Writes the same content as the {@link SchemaSwapSerializer}, compressed using DEFLATE at its fastest setting. Swap files consist
+ * largely of repeated attribute names and values, so they compress well even at the fastest setting, and the reduction in disk I/O
+ * generally more than pays for the compression.
+ */
+public class CompressedSchemaSwapSerializer implements SwapSerializer {
+    static final String SERIALIZATION_NAME = "Compressed Schema Swap Serialization";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SwapSerializer delegate = new SchemaSwapSerializer();
+
+    @Override
+    public void serializeFlowFiles(final List<FlowFileRecord> toSwap, final FlowFileQueue queue, final String swapLocation, final OutputStream destination) throws IOException {
+        // Finish the compressed stream rather than closing it, as the caller is responsible for syncing and closing the destination.
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            final DeflaterOutputStream compressed = new DeflaterOutputStream(destination, deflater, BUFFER_SIZE);
+            delegate.serializeFlowFiles(toSwap, queue, swapLocation, compressed);
+            compressed.finish();
+            destination.flush();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public String getSerializationName() {
+        return SERIALIZATION_NAME;
+    }
+}
@@ -27,11 +27,13 @@ import org.apache.nifi.controller.lifecycle.TaskTerminationAwareStateManager;
 import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.repository.ActiveProcessSessionFactory;
 import org.apache.nifi.controller.repository.BatchingSessionFactory;
+import org.apache.nifi.controller.repository.LatencyMetric;
 import org.apache.nifi.controller.repository.RepositoryContext;
 import org.apache.nifi.controller.repository.StandardProcessSession;
 import org.apache.nifi.controller.repository.StandardProcessSessionFactory;
 import org.apache.nifi.controller.repository.WeakHashMapProcessSessionFactory;
 import org.apache.nifi.controller.repository.metrics.StandardFlowFileEvent;
+import org.apache.nifi.controller.scheduling.ComponentAutoTuner;
 import org.apache.nifi.controller.scheduling.ConnectableProcessContext;
 import org.apache.nifi.controller.scheduling.LifecycleState;
 import org.apache.nifi.controller.scheduling.RepositoryContextFactory;
@@ -52,6 +54,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Continually runs a <code>{@link Connectable}</code> component as long as the component has work to do.
@@ -68,13 +71,25 @@ public class ConnectableTask {
     private final ProcessContext processContext;
     private final FlowController flowController;
     private final int numRelationships;
+    private final ComponentAutoTuner autoTuner;
+    private final LongAdder processingNanos = new LongAdder();
 
 
     public ConnectableTask(final SchedulingAgent schedulingAgent, final Connectable connectable,
             final FlowController flowController, final RepositoryContextFactory contextFactory, final LifecycleState scheduleState,
             final StringEncryptor encryptor) {
+        this(schedulingAgent, connectable, flowController, contextFactory, scheduleState, encryptor, null);
+    }
+
+    /**
+     * @param autoTuner the tuner that chooses the component's run duration, or <code>null</code> if the component's configured run duration is to be used
+     */
+    public ConnectableTask(final SchedulingAgent schedulingAgent, final Connectable connectable,
+            final FlowController flowController, final RepositoryContextFactory contextFactory, final LifecycleState scheduleState,
+            final StringEncryptor encryptor, final ComponentAutoTuner autoTuner) {
 
         this.schedulingAgent = schedulingAgent;
+        this.autoTuner = autoTuner;
         this.connectable = connectable;
         this.scheduleState = scheduleState;
         this.numRelationships = connectable.getRelationships().size();
@@ -94,6 +109,20 @@ public class ConnectableTask {
         return connectable;
     }
 
+    /**
+     * @return the total number of nanoseconds that this task has spent running the component
+     */
+    public long getProcessingNanos() {
+        return processingNanos.sum();
+    }
+
+    /**
+     * @return the total number of nanoseconds that this task has spent committing the component's sessions
+     */
+    public long getSessionCommitNanos() {
+        return repositoryContext.getSessionCommitNanos();
+    }
+
     private boolean isRunOnCluster(final FlowController flowController) {
         return !connectable.isIsolated() || !flowController.isConfiguredForClustering() || flowController.isPrimary();
     }
@@ -182,7 +211,7 @@ public class ConnectableTask {
 
         logger.debug("Triggering {}", connectable);
 
-        final long batchNanos = connectable.getRunDuration(TimeUnit.NANOSECONDS);
+        final long batchNanos = autoTuner == null ? connectable.getRunDuration(TimeUnit.NANOSECONDS) : autoTuner.getRunDuration(TimeUnit.NANOSECONDS);
         final ProcessSessionFactory sessionFactory;
         final StandardProcessSession rawSession;
         final boolean batch;
@@ -274,6 +303,10 @@ public class ConnectableTask {
                 }
 
                 final long processingNanos = System.nanoTime() - startNanos;
+                this.processingNanos.add(processingNanos);
+                if (invocationCount > 0) {
+                    repositoryContext.getFlowFileEventRepository().recordLatency(connectable.getIdentifier(), LatencyMetric.TASK_DURATION, processingNanos);
+                }
 
                 try {
                     final StandardFlowFileEvent procEvent = new StandardFlowFileEvent();
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import org.apache.nifi.nar.NarThreadContextClassLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Runs tasks on a work-stealing {@link ForkJoinPool}. Each thread of a {@link FlowEngine} takes its tasks from a single delay queue,
+ * which every thread must lock in order to take a task or to reschedule one. Each thread of this engine instead keeps its own queue:
+ * a task that is submitted from one of the engine's threads is placed onto that thread's queue, and a thread whose queue is empty
+ * steals tasks from the other threads.
+ * </p>
+ *
+ * <p>
+ * Tasks that are to run after a delay are held by a single timer thread until they are due and are then handed to the pool, so the
+ * timer's queue holds only those tasks that are waiting, rather than every task in the engine.
+ * </p>
+ */
+public final class WorkStealingFlowEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkStealingFlowEngine.class);
+
+    private final String threadNamePrefix;
+    private final boolean daemon;
+    private final AtomicInteger threadIndex = new AtomicInteger(0);
+    private final AtomicInteger activeCount = new AtomicInteger(0);
+    private final FlowEngine timer;
+    private final List<ForkJoinPool> retiredPools = new CopyOnWriteArrayList<>();
+    private volatile ForkJoinPool pool;
+    private volatile boolean shutdown = false;
+
+    /**
+     * Creates a new instance of WorkStealingFlowEngine
+     *
+     * @param parallelism the number of threads available to tasks running in the engine
+     * @param threadNamePrefix for naming the threads
+     */
+    public WorkStealingFlowEngine(final int parallelism, final String threadNamePrefix) {
+        this(parallelism, threadNamePrefix, false);
+    }
+
+    /**
+     * Creates a new instance of WorkStealingFlowEngine
+     *
+     * @param parallelism the number of threads available to tasks running in the engine
+     * @param threadNamePrefix for naming the threads
+     * @param daemon if true, the engine will be populated with daemon threads, otherwise the threads will not be marked as daemon.
+     */
+    public WorkStealingFlowEngine(final int parallelism, final String threadNamePrefix, final boolean daemon) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+
+        this.threadNamePrefix = threadNamePrefix;
+        this.daemon = daemon;
+        this.timer = new FlowEngine(1, threadNamePrefix + " Timer", true);
+        this.pool = createPool(parallelism);
+    }
+
+    private ForkJoinPool createPool(final int parallelism) {
+        // Async mode makes each thread's queue first-in-first-out, so a task that resubmits itself goes behind the tasks that are already queued.
+        return new ForkJoinPool(parallelism, this::newThread, null, true);
+    }
+
+    private ForkJoinWorkerThread newThread(final ForkJoinPool forkJoinPool) {
+        final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+        thread.setName(threadNamePrefix + " Thread-" + threadIndex.incrementAndGet());
+        thread.setDaemon(daemon);
+        return thread;
+    }
+
+    /**
+     * Runs the given task as soon as a thread is available. If called from one of the engine's threads, the task is queued on that
+     * thread's own queue, from which other threads may steal it.
+     *
+     * @param task the task to run
+     */
+    public void execute(final Runnable task) {
+        final ForkJoinTask<?> forkJoinTask = ForkJoinTask.adapt(wrap(task));
+
+        while (true) {
+            final ForkJoinPool currentPool = pool;
+            final Thread thread = Thread.currentThread();
+            if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == currentPool) {
+                forkJoinTask.fork();
+                return;
+            }
+
+            try {
+                currentPool.execute(forkJoinTask);
+                return;
+            } catch (final RejectedExecutionException ree) {
+                // The pool was shut down, either because the engine was shut down or because the pool was replaced by one with a
+                // different number of threads. In the latter case, submit the task to the new pool.
+                if (shutdown) {
+                    logger.debug("Will not run {} because the engine has been shut down", task);
+                    return;
+                }
+                if (currentPool == pool) {
+                    throw ree;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the given task once the given delay has elapsed.
+     *
+     * @param task the task to run
+     * @param delay the time to wait before running the task
+     * @param unit the unit of the delay
+     * @return a future that can be used to cancel the task before it is handed to a thread
+     */
+    public ScheduledFuture<?> schedule(final Runnable task, final long delay, final TimeUnit unit) {
+        return timer.schedule(() -> execute(task), delay, unit);
+    }
+
+    private Runnable wrap(final Runnable runnable) {
+        return () -> {
+            activeCount.incrementAndGet();
+            try {
+                // Ensure classloader is correct
+                Thread.currentThread().setContextClassLoader(NarThreadContextClassLoader.getInstance());
+                runnable.run();
+            } catch (final Throwable t) {
+                logger.error("Uncaught Exception in Runnable task", t);
+            } finally {
+                activeCount.decrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * @return the number of threads that are currently running tasks
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Changes the number of threads available to tasks. Because the number of threads in a {@link ForkJoinPool} is fixed, a new pool
+     * is created; the tasks that are already queued in the previous pool still run there, and any task that they submit runs in the new pool.
+     *
+     * @param parallelism the number of threads available to tasks running in the engine
+     */
+    public synchronized void setParallelism(final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        if (shutdown || parallelism == pool.getParallelism()) {
+            return;
+        }
+
+        final ForkJoinPool previousPool = pool;
+        pool = createPool(parallelism);
+        previousPool.shutdown();
+
+        retiredPools.removeIf(ForkJoinPool::isTerminated);
+        retiredPools.add(previousPool);
+    }
+
+    public synchronized void shutdown() {
+        shutdown = true;
+        timer.shutdown();
+        pool.shutdown();
+    }
+
+    public synchronized void shutdownNow() {
+        shutdown = true;
+        timer.shutdownNow();
+        pool.shutdownNow();
+        retiredPools.forEach(ForkJoinPool::shutdownNow);
+    }
+
+    /**
+     * @return whether or not the engine has been shut down, after which it rejects any task that is to run after a delay
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    public boolean isTerminated() {
+        return timer.isTerminated() && pool.isTerminated() && retiredPools.stream().allMatch(ForkJoinPool::isTerminated);
+    }
+
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!timer.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        if (!pool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        for (final ForkJoinPool retiredPool : retiredPools) {
+            if (!retiredPool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -1070,11 +1070,26 @@ public final class StandardProcessGroup implements ProcessGroup {
             connections.put(connection.getIdentifier(), connection);
             flowManager.onConnectionAdded(connection);
             onComponentModified();
+
+            notifyConnectionChanged(source, destination);
         } finally {
             writeLock.unlock();
         }
     }
 
+    /**
+     * A Timer-Driven component that had no work to do waits for an event before it runs again. Adding or removing a connection can give it
+     * work without any FlowFile being queued, for instance by making it a source or by removing a connection that was applying back pressure.
+     */
+    private void notifyConnectionChanged(final Connectable source, final Connectable destination) {
+        for (final Connectable connectable : new Connectable[] {source, destination}) {
+            final SchedulingStrategy schedulingStrategy = connectable.getSchedulingStrategy();
+            if (schedulingStrategy == SchedulingStrategy.TIMER_DRIVEN || schedulingStrategy == SchedulingStrategy.PRIMARY_NODE_ONLY) {
+                scheduler.registerEvent(connectable);
+            }
+        }
+    }
+
     @Override
     public Connectable getConnectable(final String id) {
         readLock.lock();
@@ -1134,6 +1149,7 @@ public final class StandardProcessGroup implements ProcessGroup {
             onComponentModified();
 
             flowManager.onConnectionRemoved(connection);
+            notifyConnectionChanged(source, dest);
         } finally {
             writeLock.unlock();
         }
@@ -35,6 +35,7 @@ import org.apache.nifi.controller.ScheduledState;
 import org.apache.nifi.controller.queue.QueueSize;
 import org.apache.nifi.controller.repository.FlowFileEvent;
 import org.apache.nifi.controller.repository.FlowFileEventRepository;
+import org.apache.nifi.controller.repository.LatencyMetric;
 import org.apache.nifi.controller.repository.RepositoryStatusReport;
 import org.apache.nifi.controller.repository.metrics.EmptyFlowFileEvent;
 import org.apache.nifi.controller.status.ConnectionStatus;
@@ -333,6 +334,7 @@ public class StandardEventAccess implements UserAwareEventAccess {
                 connStatus.setInputCount(connectionStatusReport.getFlowFilesIn());
                 connStatus.setOutputBytes(connectionStatusReport.getContentSizeOut());
                 connStatus.setOutputCount(connectionStatusReport.getFlowFilesOut());
+                connStatus.setQueuedDurationLatency(connectionStatusReport.getLatency(LatencyMetric.QUEUED_DURATION));
 
                 flowFilesTransferred += connectionStatusReport.getFlowFilesIn() + connectionStatusReport.getFlowFilesOut();
                 bytesTransferred += connectionStatusReport.getContentSizeIn() + connectionStatusReport.getContentSizeOut();
@@ -652,6 +654,8 @@ public class StandardEventAccess implements UserAwareEventAccess {
 
             status.setProcessingNanos(entry.getProcessingNanoseconds());
             status.setInvocations(entry.getInvocations());
+            status.setTaskDurationLatency(entry.getLatency(LatencyMetric.TASK_DURATION));
+            status.setSessionCommitLatency(entry.getLatency(LatencyMetric.SESSION_COMMIT));
 
             status.setAverageLineageDuration(entry.getAverageLineageMillis());
 
@@ -685,6 +689,8 @@ public class StandardEventAccess implements UserAwareEventAccess {
         status.setExecutionNode(procNode.getExecutionNode());
         status.setTerminatedThreadCount(procNode.getTerminatedThreadCount());
         status.setActiveThreadCount(processScheduler.getActiveThreadCount(procNode));
+        status.setAutoTunedConcurrentTasks(processScheduler.getAutoTunedConcurrentTasks(procNode));
+        status.setAutoTunedRunDuration(processScheduler.getAutoTunedRunDuration(procNode, TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
 
         return status;
     }
@@ -79,19 +79,23 @@ public class ComponentMetrics {
         final Map<String, Long> counters = status.getCounters();
         if (counters != null) {
             for (final Map.Entry<String, Long> entry : counters.entrySet()) {
-                final String counterName = entry.getKey();
-
-                final String label = entry.getKey() + " (5 mins)";
-                final MetricDescriptor<ProcessorStatus> metricDescriptor = new CounterMetricDescriptor<>(entry.getKey(), label, label, MetricDescriptor.Formatter.COUNT,
-                        s -> s.getCounters() == null ? null : s.getCounters().get(counterName));
-
-                snapshot.addStatusMetric(metricDescriptor, entry.getValue());
+                snapshot.addStatusMetric(createCounterDescriptor(entry.getKey()), entry.getValue());
             }
         }
 
         return snapshot;
     }
 
+    /**
+     * @param counterName the name of a Processor's counter
+     * @return the descriptor of the metric that holds the value of the counter
+     */
+    public static MetricDescriptor<ProcessorStatus> createCounterDescriptor(final String counterName) {
+        final String label = counterName + " (5 mins)";
+        return new CounterMetricDescriptor<>(counterName, label, label, MetricDescriptor.Formatter.COUNT,
+                s -> s.getCounters() == null ? null : s.getCounters().get(counterName));
+    }
+
     public static boolean isEmpty(final ProcessorStatus status) {
         for (final ProcessorStatusDescriptor descriptor : ProcessorStatusDescriptor.values()) {
             if (descriptor.isVisible()) {
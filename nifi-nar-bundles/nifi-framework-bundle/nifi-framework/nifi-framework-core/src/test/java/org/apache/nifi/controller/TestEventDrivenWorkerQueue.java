@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import org.apache.nifi.connectable.Connectable;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestEventDrivenWorkerQueue {
+
+    private EventDrivenWorkerQueue workerQueue;
+
+    @Before
+    public void setup() {
+        workerQueue = new EventDrivenWorkerQueue(false, false, Mockito.mock(ProcessScheduler.class));
+    }
+
+    private Connectable createConnectable(final ScheduledState scheduledState) {
+        final Connectable connectable = Mockito.mock(Connectable.class);
+        Mockito.when(connectable.getScheduledState()).thenReturn(scheduledState);
+        Mockito.when(connectable.getRelationships()).thenReturn(Collections.emptySet());
+        Mockito.when(connectable.getIncomingConnections()).thenReturn(Collections.emptyList());
+        Mockito.when(connectable.hasIncomingConnection()).thenReturn(false);
+        return connectable;
+    }
+
+    @Test
+    public void testEventIgnoredIfWorkNotResumed() {
+        final Connectable connectable = createConnectable(ScheduledState.RUNNING);
+        workerQueue.offer(connectable);
+
+        assertNull(workerQueue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testWorkerPolledOncePerEvent() {
+        final Connectable connectable = createConnectable(ScheduledState.RUNNING);
+        workerQueue.resumeWork(connectable);
+
+        for (int i = 0; i < 3; i++) {
+            workerQueue.offer(connectable);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            final EventBasedWorker worker = workerQueue.poll(10, TimeUnit.MILLISECONDS);
+            assertSame(connectable, worker.getConnectable());
+        }
+
+        assertNull(workerQueue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testSuspendedWorkerNotPolled() {
+        final Connectable connectable = createConnectable(ScheduledState.RUNNING);
+        workerQueue.resumeWork(connectable);
+        workerQueue.offer(connectable);
+        workerQueue.suspendWork(connectable);
+
+        assertNull(workerQueue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testWorkerNotPolledIfNotRunning() {
+        final Connectable connectable = createConnectable(ScheduledState.STOPPED);
+        workerQueue.resumeWork(connectable);
+        workerQueue.offer(connectable);
+
+        assertNull(workerQueue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testYieldedWorkerPolledAfterYieldExpires() {
+        final Connectable connectable = createConnectable(ScheduledState.RUNNING);
+        Mockito.when(connectable.getYieldExpiration()).thenReturn(System.currentTimeMillis() + 100L);
+        workerQueue.resumeWork(connectable);
+        workerQueue.offer(connectable);
+
+        assertNull(workerQueue.poll(10, TimeUnit.MILLISECONDS));
+
+        final EventBasedWorker worker = workerQueue.poll(5, TimeUnit.SECONDS);
+        assertSame(connectable, worker.getConnectable());
+    }
+
+    @Test(timeout = 10000)
+    public void testPollingThreadWokenByEvent() throws Exception {
+        final Connectable connectable = createConnectable(ScheduledState.RUNNING);
+        workerQueue.resumeWork(connectable);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<EventBasedWorker> future = executor.submit(() -> workerQueue.poll(30, TimeUnit.SECONDS));
+            Thread.sleep(50L);
+
+            final long start = System.nanoTime();
+            workerQueue.offer(connectable);
+            assertSame(connectable, future.get().getConnectable());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5L));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testNoEventsLostWithConcurrentOffersAndPolls() throws Exception {
+        final int connectableCount = 50;
+        final int offerThreads = 4;
+        final int pollThreads = 4;
+        final int eventsPerThread = 10_000;
+
+        final List<Connectable> connectables = new ArrayList<>();
+        for (int i = 0; i < connectableCount; i++) {
+            final Connectable connectable = createConnectable(ScheduledState.RUNNING);
+            connectables.add(connectable);
+            workerQueue.resumeWork(connectable);
+        }
+
+        final AtomicLong polled = new AtomicLong(0L);
+        final AtomicInteger offersComplete = new AtomicInteger(0);
+        final ExecutorService executor = Executors.newFixedThreadPool(offerThreads + pollThreads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < pollThreads; i++) {
+                futures.add(executor.submit(() -> {
+                    while (true) {
+                        final EventBasedWorker worker = workerQueue.poll(100, TimeUnit.MILLISECONDS);
+                        if (worker != null) {
+                            polled.incrementAndGet();
+                        } else if (offersComplete.get() == offerThreads) {
+                            return;
+                        }
+                    }
+                }));
+            }
+
+            for (int i = 0; i < offerThreads; i++) {
+                final int threadIndex = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < eventsPerThread; j++) {
+                        workerQueue.offer(connectables.get((threadIndex + j) % connectableCount));
+                    }
+                    offersComplete.incrementAndGet();
+                }));
+            }
+
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals((long) offerThreads * eventsPerThread, polled.get());
+    }
+}
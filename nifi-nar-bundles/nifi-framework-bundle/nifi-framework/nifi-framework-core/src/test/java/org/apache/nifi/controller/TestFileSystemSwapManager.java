@@ -19,6 +19,7 @@ package org.apache.nifi.controller;
 import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.repository.FlowFileRecord;
 import org.apache.nifi.controller.repository.FlowFileRepository;
+import org.apache.nifi.controller.repository.StandardFlowFileRecord;
 import org.apache.nifi.controller.repository.SwapContents;
 import org.apache.nifi.controller.repository.SwapManagerInitializationContext;
 import org.apache.nifi.controller.repository.claim.ResourceClaim;
@@ -40,10 +41,14 @@ import java.io.OutputStream;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.when;
@@ -151,8 +156,60 @@ public class TestFileSystemSwapManager {
         return createSwapManager(flowFileRepo);
     }
 
+    @Test
+    public void testCompressedSwapFiles() throws IOException {
+        final FlowFileQueue flowFileQueue = Mockito.mock(FlowFileQueue.class);
+        when(flowFileQueue.getIdentifier()).thenReturn("87bb99fe-412c-49f6-a441-d1b0af4e20b4");
+
+        final FlowFileRepository flowFileRepo = Mockito.mock(FlowFileRepository.class);
+        when(flowFileRepo.isValidSwapLocationSuffix(anyString())).thenReturn(true);
+
+        final File uncompressedDir = new File("target/testCompressedSwapFiles/uncompressed");
+        final File compressedDir = new File("target/testCompressedSwapFiles/compressed");
+        final FileSystemSwapManager uncompressedSwapManager = initialize(new FileSystemSwapManager(uncompressedDir.toPath(), false), flowFileRepo);
+        final FileSystemSwapManager compressedSwapManager = initialize(new FileSystemSwapManager(compressedDir.toPath(), true), flowFileRepo);
+
+        final List<FlowFileRecord> flowFileRecords = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put("filename", "file-" + i + ".txt");
+            attributes.put("mime.type", "application/json");
+            flowFileRecords.add(new StandardFlowFileRecord.Builder()
+                .id(i)
+                .addAttributes(attributes)
+                .size(i)
+                .entryDate(System.currentTimeMillis())
+                .lineageStart(System.currentTimeMillis(), 0L)
+                .lastQueued(System.currentTimeMillis(), i)
+                .build());
+        }
+
+        final String uncompressedLocation = uncompressedSwapManager.swapOut(flowFileRecords, flowFileQueue, null);
+        final String compressedLocation = compressedSwapManager.swapOut(flowFileRecords, flowFileQueue, null);
+        assertTrue(new File(compressedLocation).length() < new File(uncompressedLocation).length() / 2);
+
+        // Either Swap Manager must be able to read either format
+        assertEquals(10000, compressedSwapManager.getSwapSummary(uncompressedLocation).getQueueSize().getObjectCount());
+        assertEquals(10000, uncompressedSwapManager.getSwapSummary(compressedLocation).getQueueSize().getObjectCount());
+
+        final SwapContents swapContents = uncompressedSwapManager.swapIn(compressedLocation, flowFileQueue);
+        final List<FlowFileRecord> swappedIn = swapContents.getFlowFiles();
+        assertEquals(10000, swappedIn.size());
+        for (int i = 0; i < swappedIn.size(); i++) {
+            assertEquals(flowFileRecords.get(i).getId(), swappedIn.get(i).getId());
+            assertEquals(flowFileRecords.get(i).getAttributes(), swappedIn.get(i).getAttributes());
+        }
+
+        assertFalse(new File(compressedLocation).exists());
+        compressedSwapManager.purge();
+        uncompressedSwapManager.purge();
+    }
+
     private FileSystemSwapManager createSwapManager(final FlowFileRepository flowFileRepo) {
-        final FileSystemSwapManager swapManager = new FileSystemSwapManager();
+        return initialize(new FileSystemSwapManager(), flowFileRepo);
+    }
+
+    private FileSystemSwapManager initialize(final FileSystemSwapManager swapManager, final FlowFileRepository flowFileRepo) {
         final ResourceClaimManager resourceClaimManager = new NopResourceClaimManager();
         swapManager.initialize(new SwapManagerInitializationContext() {
             @Override
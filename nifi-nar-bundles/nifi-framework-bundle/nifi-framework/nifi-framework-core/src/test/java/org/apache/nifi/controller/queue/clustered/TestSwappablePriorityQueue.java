@@ -39,6 +39,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -495,4 +496,181 @@ public class TestSwappablePriorityQueue {
 
         assertTrue(swapManager.swappedOut.isEmpty());
     }
+
+    @Test
+    public void testFifoOrderPreservedWhenSwapping() {
+        for (int i = 0; i < 35000; i++) {
+            queue.put(new MockFlowFile(i));
+        }
+
+        assertTrue(swapManager.swapOutCalledCount > 0);
+        assertEquals(35000, queue.size().getObjectCount());
+
+        final Set<FlowFileRecord> expiredRecords = new HashSet<>();
+        for (int i = 0; i < 35000; i++) {
+            final FlowFileRecord polled = queue.poll(expiredRecords, 500000L);
+            assertEquals(i, polled.getId());
+            queue.acknowledge(polled);
+        }
+
+        assertNull(queue.poll(expiredRecords, 500000L));
+        assertTrue(queue.isEmpty());
+        assertTrue(swapManager.swappedOut.isEmpty());
+    }
+
+    @Test
+    public void testPenalizedFlowFileDoesNotBlockFifoQueue() {
+        final FlowFileRecord penalizedFlowFile = mock(FlowFileRecord.class);
+        when(penalizedFlowFile.getId()).thenReturn(1L);
+        when(penalizedFlowFile.getEntryDate()).thenReturn(System.currentTimeMillis());
+        when(penalizedFlowFile.getPenaltyExpirationMillis()).thenReturn(System.currentTimeMillis() + 60000L);
+        when(penalizedFlowFile.isPenalized()).thenReturn(true);
+        queue.put(penalizedFlowFile);
+
+        final MockFlowFile unpenalizedFlowFile = new MockFlowFile(2L);
+        queue.put(unpenalizedFlowFile);
+
+        final Set<FlowFileRecord> expiredRecords = new HashSet<>();
+        assertSame(unpenalizedFlowFile, queue.poll(expiredRecords, 500000L));
+        assertNull(queue.poll(expiredRecords, 500000L));
+        assertEquals(1, queue.getQueueDiagnostics().getActiveQueueSize().getObjectCount());
+        assertTrue(queue.getQueueDiagnostics().isAnyActiveFlowFilePenalized());
+        assertEquals(Collections.singletonList(penalizedFlowFile), queue.getActiveFlowFiles());
+
+        // Once the penalty expires, the FlowFile should be handed out ahead of those that were queued after it.
+        when(penalizedFlowFile.isPenalized()).thenReturn(false);
+        queue.put(new MockFlowFile(3L));
+        assertSame(penalizedFlowFile, queue.poll(expiredRecords, 500000L));
+        assertEquals(3L, queue.poll(expiredRecords, 500000L).getId());
+        assertTrue(expiredRecords.isEmpty());
+    }
+
+    @Test
+    public void testSwitchBetweenFifoAndPrioritizedOrder() {
+        for (int i = 0; i < 100; i++) {
+            queue.put(new MockFlowFile(100 - i));
+        }
+
+        final Set<FlowFileRecord> expiredRecords = new HashSet<>();
+        assertEquals(100L, queue.poll(expiredRecords, 500000L).getId());
+
+        final FlowFilePrioritizer prioritizer = (o1, o2) -> Long.compare(o1.getId(), o2.getId());
+        queue.setPriorities(Collections.singletonList(prioritizer));
+        assertEquals(1L, queue.poll(expiredRecords, 500000L).getId());
+        assertEquals(2L, queue.poll(expiredRecords, 500000L).getId());
+
+        queue.setPriorities(Collections.emptyList());
+        queue.put(new MockFlowFile(0L));
+        for (int i = 3; i < 100; i++) {
+            assertEquals(i, queue.poll(expiredRecords, 500000L).getId());
+        }
+
+        assertEquals(0L, queue.poll(expiredRecords, 500000L).getId());
+        assertNull(queue.poll(expiredRecords, 500000L));
+        assertEquals(0, queue.getQueueDiagnostics().getActiveQueueSize().getObjectCount());
+        assertEquals(101, queue.getFlowFileQueueSize().getUnacknowledgedCount());
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentPutAndPollInFifoMode() throws InterruptedException {
+        final int threadCount = 4;
+        final int flowFilesPerThread = 25000;
+        final AtomicInteger polledCount = new AtomicInteger(0);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < flowFilesPerThread; i++) {
+                    queue.put(new MockFlowFileRecord(1L));
+                }
+            }));
+
+            threads.add(new Thread(() -> {
+                final Set<FlowFileRecord> expiredRecords = new HashSet<>();
+                while (polledCount.get() < threadCount * flowFilesPerThread) {
+                    final List<FlowFileRecord> polled = queue.poll(100, expiredRecords, 500000L);
+                    if (!polled.isEmpty()) {
+                        queue.acknowledge(polled);
+                        polledCount.addAndGet(polled.size());
+                    }
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(threadCount * flowFilesPerThread, polledCount.get());
+        assertTrue(queue.isEmpty());
+        assertEquals(0L, queue.size().getByteCount());
+        assertEquals(0, queue.getFlowFileQueueSize().getUnacknowledgedCount());
+        assertTrue(swapManager.swappedOut.isEmpty());
+    }
+
+    @Test
+    public void testSwapFilePrefetchedInBackground() {
+        final List<Runnable> prefetchTasks = new ArrayList<>();
+        queue = new SwappablePriorityQueue(swapManager, 10000, eventReporter, flowFileQueue, dropAction, "local", prefetchTasks::add);
+
+        for (int i = 0; i < 30000; i++) {
+            queue.put(new MockFlowFile(i));
+        }
+        assertEquals(2, swapManager.swappedOut.size());
+
+        // Nothing should be prefetched until the active queue has been drained far enough that the next swap file will be needed soon.
+        final Set<FlowFileRecord> expiredRecords = new HashSet<>();
+        int nextId = 0;
+        while (prefetchTasks.isEmpty()) {
+            final FlowFileRecord polled = queue.poll(expiredRecords, 500000L);
+            assertEquals(nextId++, polled.getId());
+            queue.acknowledge(polled);
+        }
+
+        assertTrue(queue.getQueueDiagnostics().getActiveQueueSize().getObjectCount() <= 7500);
+        assertEquals(1, prefetchTasks.size());
+        assertEquals(0, swapManager.swapInCalledCount);
+
+        prefetchTasks.remove(0).run();
+        assertEquals(1, swapManager.swapInCalledCount);
+
+        for (; nextId < 30000; nextId++) {
+            if (!prefetchTasks.isEmpty()) {
+                prefetchTasks.remove(0).run();
+            }
+
+            final FlowFileRecord polled = queue.poll(expiredRecords, 500000L);
+            assertEquals(nextId, polled.getId());
+            queue.acknowledge(polled);
+        }
+
+        // Each swap file must have been swapped in exactly once, whether or not it was prefetched.
+        assertEquals(2, swapManager.swapInCalledCount);
+        assertTrue(swapManager.swappedOut.isEmpty());
+        assertNull(queue.poll(expiredRecords, 500000L));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout = 120000)
+    public void testDropWhilePrefetchPending() {
+        final List<Runnable> prefetchTasks = new ArrayList<>();
+        queue = new SwappablePriorityQueue(swapManager, 10000, eventReporter, flowFileQueue, dropAction, "local", prefetchTasks::add);
+
+        for (int i = 0; i < 30000; i++) {
+            queue.put(new MockFlowFile(i));
+        }
+
+        final Set<FlowFileRecord> expiredRecords = new HashSet<>();
+        while (prefetchTasks.isEmpty()) {
+            queue.acknowledge(queue.poll(expiredRecords, 500000L));
+        }
+
+        // The prefetch has not yet run, so the drop must read the swap file itself.
+        final DropFlowFileRequest request = new DropFlowFileRequest("Unit Test");
+        queue.dropFlowFiles(request, "Unit Test");
+        assertEquals(0, queue.size().getObjectCount());
+        assertEquals(2, swapManager.swapInCalledCount);
+        assertTrue(swapManager.swappedOut.isEmpty());
+    }
 }
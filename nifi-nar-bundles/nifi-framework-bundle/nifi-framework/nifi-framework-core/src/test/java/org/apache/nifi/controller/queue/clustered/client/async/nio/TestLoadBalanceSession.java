@@ -23,6 +23,7 @@ import org.apache.nifi.controller.queue.clustered.FlowFileContentAccess;
 import org.apache.nifi.controller.queue.clustered.SimpleLimitThreshold;
 import org.apache.nifi.controller.queue.clustered.client.StandardLoadBalanceFlowFileCodec;
 import org.apache.nifi.controller.queue.clustered.client.async.TransactionFailureCallback;
+import org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceCompressionCodec;
 import org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants;
 import org.apache.nifi.controller.repository.FlowFileRecord;
 import org.junit.After;
@@ -47,6 +48,7 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.zip.CRC32;
 import java.util.zip.CheckedOutputStream;
+import java.util.stream.Stream;
 import java.util.zip.Checksum;
 
 import static org.junit.Assert.assertArrayEquals;
@@ -270,4 +272,104 @@ public class TestLoadBalanceSession {
 
         assertEquals(Arrays.asList(flowFile1), transaction.getFlowFilesSent());
     }
+
+    @Test(timeout = 10000)
+    public void testMultiplePartitionsInTransaction() throws InterruptedException, IOException {
+        final Queue<FlowFileRecord> flowFiles1 = new LinkedList<>();
+        final FlowFileRecord flowFile1 = new MockFlowFileRecord(5);
+        flowFiles1.offer(flowFile1);
+
+        final Queue<FlowFileRecord> flowFiles2 = new LinkedList<>();
+        final FlowFileRecord flowFile2 = new MockFlowFileRecord(8);
+        flowFiles2.offer(flowFile2);
+
+        final Map<FlowFileRecord, InputStream> contentMap = new HashMap<>();
+        contentMap.put(flowFile1, new ByteArrayInputStream("hello".getBytes()));
+        contentMap.put(flowFile2, new ByteArrayInputStream("good-bye".getBytes()));
+
+        final FlowFileContentAccess contentAccess = contentMap::get;
+
+        final RegisteredPartition partition1 = new RegisteredPartition("connection-1", flowFiles1::isEmpty,
+            flowFiles1::poll, NOP_FAILURE_CALLBACK, (ff, nodeId) -> {}, () -> LoadBalanceCompression.DO_NOT_COMPRESS, () -> true);
+        final RegisteredPartition partition2 = new RegisteredPartition("connection-2", flowFiles2::isEmpty,
+            flowFiles2::poll, NOP_FAILURE_CALLBACK, (ff, nodeId) -> {}, () -> LoadBalanceCompression.DO_NOT_COMPRESS, () -> false);
+
+        final SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress("localhost", port));
+
+        socketChannel.configureBlocking(false);
+        final PeerChannel peerChannel = new PeerChannel(socketChannel, null, "unit-test");
+        final LoadBalanceSession transaction = new LoadBalanceSession(partition1, contentAccess, new StandardLoadBalanceFlowFileCodec(), peerChannel, 30000,
+            new SimpleLimitThreshold(100, 10_000_000), LoadBalanceCompressionCodec.LZ4,
+            filter -> Stream.of(partition1, partition2).filter(partition -> !partition.isEmpty()).filter(filter).findFirst().orElse(null));
+
+        Thread.sleep(100L);
+
+        while (transaction.communicate()) {
+        }
+
+        assertTrue(transaction.isComplete());
+        socketChannel.close();
+
+        final Checksum expectedChecksum = new CRC32();
+        final ByteArrayOutputStream expectedOut = new ByteArrayOutputStream();
+        expectedOut.write(2); // Protocol Version
+
+        final DataOutputStream expectedDos = new DataOutputStream(new CheckedOutputStream(expectedOut, expectedChecksum));
+        expectedDos.write(LoadBalanceCompressionCodec.LZ4.getId());
+        expectedDos.writeUTF("connection-1");
+
+        expectedDos.write(LoadBalanceProtocolConstants.CHECK_SPACE);
+        expectedDos.write(LoadBalanceProtocolConstants.MORE_FLOWFILES);
+        expectedDos.writeInt(68); // metadata length
+        expectedDos.writeInt(1); // 1 attribute
+        expectedDos.writeInt(4); // length of attribute
+        expectedDos.write("uuid".getBytes());
+        expectedDos.writeInt(flowFile1.getAttribute("uuid").length());
+        expectedDos.write(flowFile1.getAttribute("uuid").getBytes());
+        expectedDos.writeLong(flowFile1.getLineageStartDate()); // lineage start date
+        expectedDos.writeLong(flowFile1.getEntryDate()); // entry date
+        expectedDos.write(LoadBalanceProtocolConstants.DATA_FRAME_FOLLOWS);
+        expectedDos.writeShort(5);
+        expectedDos.write("hello".getBytes());
+        expectedDos.write(LoadBalanceProtocolConstants.NO_DATA_FRAME);
+        expectedDos.write(LoadBalanceProtocolConstants.NO_MORE_FLOWFILES);
+
+        expectedDos.write(LoadBalanceProtocolConstants.MORE_CONNECTIONS);
+        expectedDos.writeUTF("connection-2");
+        expectedDos.write(LoadBalanceProtocolConstants.SKIP_SPACE_CHECK);
+        expectedDos.write(LoadBalanceProtocolConstants.MORE_FLOWFILES);
+        expectedDos.writeInt(68); // metadata length
+        expectedDos.writeInt(1); // 1 attribute
+        expectedDos.writeInt(4); // length of attribute
+        expectedDos.write("uuid".getBytes());
+        expectedDos.writeInt(flowFile2.getAttribute("uuid").length());
+        expectedDos.write(flowFile2.getAttribute("uuid").getBytes());
+        expectedDos.writeLong(flowFile2.getLineageStartDate()); // lineage start date
+        expectedDos.writeLong(flowFile2.getEntryDate()); // entry date
+        expectedDos.write(LoadBalanceProtocolConstants.DATA_FRAME_FOLLOWS);
+        expectedDos.writeShort(8);
+        expectedDos.write("good-bye".getBytes());
+        expectedDos.write(LoadBalanceProtocolConstants.NO_DATA_FRAME);
+        expectedDos.write(LoadBalanceProtocolConstants.NO_MORE_FLOWFILES);
+
+        expectedDos.write(LoadBalanceProtocolConstants.NO_MORE_CONNECTIONS);
+        expectedDos.writeLong(expectedChecksum.getValue());
+        expectedDos.write(LoadBalanceProtocolConstants.COMPLETE_TRANSACTION);
+
+        final byte[] expectedSent = expectedOut.toByteArray();
+
+        while (received.size() < expectedSent.length) {
+            Thread.sleep(10L);
+        }
+        final byte[] dataSent = received.toByteArray();
+
+        assertArrayEquals(expectedSent, dataSent);
+
+        assertEquals(Arrays.asList(flowFile1, flowFile2), transaction.getFlowFilesSent());
+
+        final Map<RegisteredPartition, List<FlowFileRecord>> flowFilesSentByPartition = transaction.getFlowFilesSentByPartition();
+        assertEquals(2, flowFilesSentByPartition.size());
+        assertEquals(Arrays.asList(flowFile1), flowFilesSentByPartition.get(partition1));
+        assertEquals(Arrays.asList(flowFile2), flowFilesSentByPartition.get(partition2));
+    }
 }
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.controller.queue.clustered.partition;
+
+import org.apache.nifi.cluster.protocol.NodeIdentifier;
+import org.apache.nifi.controller.MockFlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestCorrelationAttributePartitioner {
+    private static final String ATTRIBUTE = "correlation.id";
+
+    private final Map<QueuePartition, String> partitionNodes = new HashMap<>();
+    private List<FlowFileRecord> flowFiles;
+
+    @Before
+    public void setup() {
+        // Simulate a queue of FlowFiles that are spread across 2,000 correlation keys and that vary in size.
+        final Random random = new Random(42L);
+        flowFiles = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put(ATTRIBUTE, "key-" + random.nextInt(2000));
+            flowFiles.add(new MockFlowFileRecord(attributes, 1 + random.nextInt(1024 * 1024)));
+        }
+    }
+
+    private NodeIdentifier createNodeId(final String hostname) {
+        return createNodeId(hostname, hostname, 8080);
+    }
+
+    private NodeIdentifier createNodeId(final String hostname, final String apiAddress, final int apiPort) {
+        return new NodeIdentifier(hostname, apiAddress, apiPort, hostname, 8081, hostname, 6342, null, null, null, false, null);
+    }
+
+    private QueuePartition createPartition(final String hostname, final boolean local) {
+        final QueuePartition partition = Mockito.mock(QueuePartition.class);
+        Mockito.when(partition.getNodeIdentifier()).thenReturn(local ? Optional.empty() : Optional.of(createNodeId(hostname)));
+        partitionNodes.put(partition, hostname);
+        return partition;
+    }
+
+    private QueuePartition[] createPartitions(final List<String> hostnames, final String localHostname) {
+        return hostnames.stream()
+            .sorted()
+            .map(hostname -> createPartition(hostname, hostname.equals(localHostname)))
+            .toArray(QueuePartition[]::new);
+    }
+
+    private List<String> assign(final List<String> hostnames, final String localHostname) {
+        final QueuePartition[] partitions = createPartitions(hostnames, localHostname);
+        final QueuePartition localPartition = Arrays.stream(partitions)
+            .filter(partition -> localHostname.equals(partitionNodes.get(partition)))
+            .findFirst()
+            .get();
+
+        final NodeIdentifier localNodeId = createNodeId(localHostname);
+        final CorrelationAttributePartitioner partitioner = new CorrelationAttributePartitioner(ATTRIBUTE, () -> localNodeId);
+
+        final List<String> assignments = new ArrayList<>(flowFiles.size());
+        for (final FlowFileRecord flowFile : flowFiles) {
+            assignments.add(partitionNodes.get(partitioner.getPartition(flowFile, partitions, localPartition)));
+        }
+
+        return assignments;
+    }
+
+    @Test
+    public void testSameValueAlwaysSamePartition() {
+        final QueuePartition[] partitions = createPartitions(listOf("node-1", "node-2", "node-3"), "node-1");
+        final CorrelationAttributePartitioner partitioner = new CorrelationAttributePartitioner(ATTRIBUTE, () -> createNodeId("node-1"));
+
+        final FlowFileRecord first = createFlowFile("abc", 10L);
+        final FlowFileRecord second = createFlowFile("abc", 20L);
+        assertSame(partitioner.getPartition(first, partitions, partitions[0]), partitioner.getPartition(second, partitions, partitions[0]));
+    }
+
+    @Test
+    public void testAllNodesAgreeOnAssignment() {
+        final List<String> hostnames = listOf("node-1", "node-2", "node-3", "node-4");
+
+        // Each node sees itself as the local partition and every other node as a remote partition, but all must choose the same node.
+        final List<String> expected = assign(hostnames, "node-1");
+        for (final String hostname : hostnames) {
+            assertEquals(expected, assign(hostnames, hostname));
+        }
+    }
+
+    @Test
+    public void testAssignmentFollowsLoadBalanceAddress() {
+        final List<String> hostnames = listOf("node-1", "node-2", "node-3", "node-4");
+        final List<String> expected = assign(hostnames, "node-1");
+
+        // The UI/API address is not where the partition's data is sent, so changing it must not move any correlation key.
+        final QueuePartition[] partitions = hostnames.stream()
+            .map(hostname -> {
+                final QueuePartition partition = Mockito.mock(QueuePartition.class);
+                Mockito.when(partition.getNodeIdentifier()).thenReturn(Optional.of(createNodeId(hostname, "api-" + hostname, 9443)));
+                partitionNodes.put(partition, hostname);
+                return partition;
+            })
+            .toArray(QueuePartition[]::new);
+
+        final CorrelationAttributePartitioner partitioner = new CorrelationAttributePartitioner(ATTRIBUTE, () -> createNodeId("node-1"));
+        for (int i = 0; i < flowFiles.size(); i++) {
+            assertEquals(expected.get(i), partitionNodes.get(partitioner.getPartition(flowFiles.get(i), partitions, partitions[0])));
+        }
+    }
+
+    @Test
+    public void testEvenDistribution() {
+        final List<String> hostnames = listOf("node-1", "node-2", "node-3", "node-4", "node-5");
+        final List<String> assignments = assign(hostnames, "node-1");
+
+        final double fairShare = (double) flowFiles.size() / hostnames.size();
+        for (final String hostname : hostnames) {
+            final long count = assignments.stream().filter(hostname::equals).count();
+            assertTrue("Node " + hostname + " was assigned " + count + " FlowFiles", Math.abs(count - fairShare) < fairShare * 0.2);
+        }
+    }
+
+    @Test
+    public void testNodeAddedRebalancesOnlyItsShare() {
+        final List<String> before = assign(listOf("node-1", "node-2", "node-4", "node-5", "node-6"), "node-1");
+
+        // The new node sorts into the middle of the partitions, which shifts the index of every partition after it.
+        final List<String> after = assign(listOf("node-1", "node-2", "node-3", "node-4", "node-5", "node-6"), "node-1");
+
+        final double bytesRebalanced = getFractionOfBytesRebalanced(before, after);
+        assertTrue("Rebalanced " + bytesRebalanced + " of the data", bytesRebalanced > 0.10 && bytesRebalanced < 0.25);
+
+        for (int i = 0; i < flowFiles.size(); i++) {
+            if (!before.get(i).equals(after.get(i))) {
+                assertEquals("node-3", after.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testNodeRemovedRebalancesOnlyItsData() {
+        final List<String> before = assign(listOf("node-1", "node-2", "node-3", "node-4", "node-5", "node-6"), "node-1");
+        final List<String> after = assign(listOf("node-1", "node-2", "node-4", "node-5", "node-6"), "node-1");
+
+        final double bytesRebalanced = getFractionOfBytesRebalanced(before, after);
+        assertTrue("Rebalanced " + bytesRebalanced + " of the data", bytesRebalanced > 0.10 && bytesRebalanced < 0.25);
+
+        for (int i = 0; i < flowFiles.size(); i++) {
+            if (!before.get(i).equals(after.get(i))) {
+                assertEquals("node-3", before.get(i));
+            }
+        }
+    }
+
+    private double getFractionOfBytesRebalanced(final List<String> before, final List<String> after) {
+        long totalBytes = 0L;
+        long bytesRebalanced = 0L;
+        for (int i = 0; i < flowFiles.size(); i++) {
+            final long size = flowFiles.get(i).getSize();
+            totalBytes += size;
+            if (!before.get(i).equals(after.get(i))) {
+                bytesRebalanced += size;
+            }
+        }
+
+        return (double) bytesRebalanced / totalBytes;
+    }
+
+    private static FlowFileRecord createFlowFile(final String correlationValue, final long size) {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put(ATTRIBUTE, correlationValue);
+        return new MockFlowFileRecord(attributes, size);
+    }
+
+    private static List<String> listOf(final String... values) {
+        final List<String> list = new ArrayList<>();
+        Collections.addAll(list, values);
+        return list;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.queue.clustered.protocol;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestLZ4BlockCodec {
+
+    @Test
+    public void testRoundTripEmptyAndShortInput() throws IOException {
+        for (int length = 0; length < 32; length++) {
+            final byte[] data = new byte[length];
+            Arrays.fill(data, (byte) 'A');
+            assertArrayEquals(data, roundTrip(data));
+        }
+    }
+
+    @Test
+    public void testRoundTripRandomData() throws IOException {
+        final Random random = new Random(1L);
+        for (int i = 0; i < 100; i++) {
+            final byte[] data = new byte[random.nextInt(70000)];
+            random.nextBytes(data);
+            assertArrayEquals(data, roundTrip(data));
+        }
+    }
+
+    @Test
+    public void testRoundTripCompressibleData() throws IOException {
+        final Random random = new Random(1L);
+        final StringBuilder sb = new StringBuilder();
+        while (sb.length() < 65000) {
+            sb.append("{\"id\":").append(random.nextInt(1000)).append(",\"name\":\"user-").append(random.nextInt(10)).append("\"}\n");
+        }
+
+        final byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+        final byte[] compressed = new byte[LZ4BlockCodec.maxCompressedLength(data.length)];
+        final int compressedLength = LZ4BlockCodec.compress(data, 0, data.length, compressed, 0);
+        assertTrue(compressedLength < data.length / 2);
+
+        assertArrayEquals(data, roundTrip(data));
+    }
+
+    @Test
+    public void testRoundTripRepeatedBytes() throws IOException {
+        // Runs of repeated bytes produce overlapping matches, which must be copied byte by byte
+        final byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i / 1000 % 3);
+        }
+
+        assertArrayEquals(data, roundTrip(data));
+    }
+
+    @Test
+    public void testStreams() throws IOException {
+        final byte[] data = "hello hello hello hello hello hello hello".getBytes(StandardCharsets.UTF_8);
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (final OutputStream out = LZ4BlockCodec.compressingStream(baos)) {
+            out.write(data, 0, 10);
+            out.write(data, 10, data.length - 10);
+        }
+
+        final byte[] compressed = baos.toByteArray();
+        assertEquals(data.length, new DataInputStream(new ByteArrayInputStream(compressed)).readInt());
+        assertTrue(compressed.length < data.length + 8);
+
+        try (final InputStream in = LZ4BlockCodec.decompressingStream(new ByteArrayInputStream(compressed))) {
+            final byte[] decompressed = new byte[data.length];
+            new DataInputStream(in).readFully(decompressed);
+            assertArrayEquals(data, decompressed);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedBlock() throws IOException {
+        final byte[] data = "hello hello hello hello hello hello hello".getBytes(StandardCharsets.UTF_8);
+        final byte[] compressed = new byte[LZ4BlockCodec.maxCompressedLength(data.length)];
+        final int compressedLength = LZ4BlockCodec.compress(data, 0, data.length, compressed, 0);
+
+        LZ4BlockCodec.decompress(compressed, 0, compressedLength - 1, new byte[data.length], 0, data.length);
+    }
+
+    @Test(expected = IOException.class)
+    public void testDestinationTooSmall() throws IOException {
+        final byte[] data = "hello hello hello hello hello hello hello".getBytes(StandardCharsets.UTF_8);
+        final byte[] compressed = new byte[LZ4BlockCodec.maxCompressedLength(data.length)];
+        final int compressedLength = LZ4BlockCodec.compress(data, 0, data.length, compressed, 0);
+
+        LZ4BlockCodec.decompress(compressed, 0, compressedLength, new byte[data.length - 1], 0, data.length - 1);
+    }
+
+    @Test
+    public void testUncompressedLengthAboveMaximumRejected() throws IOException {
+        for (final int uncompressedLength : new int[] {LZ4BlockCodec.MAX_BLOCK_LENGTH + 1, Integer.MAX_VALUE}) {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final DataOutputStream dos = new DataOutputStream(baos);
+            dos.writeInt(uncompressedLength);
+            dos.writeInt(2);
+            dos.write(new byte[] {0x10, 'A'});
+
+            try (final InputStream in = LZ4BlockCodec.decompressingStream(new ByteArrayInputStream(baos.toByteArray()))) {
+                in.read();
+                fail("Expected block with uncompressed length of " + uncompressedLength + " to be rejected");
+            } catch (final IOException expected) {
+                assertTrue(expected.getMessage().contains("exceeds the maximum block length"));
+            }
+        }
+    }
+
+    @Test
+    public void testStreamLargerThanMaxBlockLengthSplitIntoBlocks() throws IOException {
+        final byte[] data = new byte[LZ4BlockCodec.MAX_BLOCK_LENGTH * 2 + 100];
+        new Random(1L).nextBytes(data);
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (final OutputStream out = LZ4BlockCodec.compressingStream(baos)) {
+            out.write(data, 0, 10);
+            out.write(data, 10, data.length - 10);
+        }
+
+        final byte[] compressed = baos.toByteArray();
+        assertEquals(LZ4BlockCodec.MAX_BLOCK_LENGTH, new DataInputStream(new ByteArrayInputStream(compressed)).readInt());
+
+        try (final InputStream in = LZ4BlockCodec.decompressingStream(new ByteArrayInputStream(compressed))) {
+            final byte[] decompressed = new byte[data.length];
+            new DataInputStream(in).readFully(decompressed);
+            assertArrayEquals(data, decompressed);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCompressedBlockLongerThanPossibleRejected() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeInt(4);
+        dos.writeInt(LZ4BlockCodec.maxCompressedLength(4) + 1);
+        dos.write(new byte[LZ4BlockCodec.maxCompressedLength(4) + 1]);
+
+        try (final InputStream in = LZ4BlockCodec.decompressingStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            in.read();
+        }
+    }
+
+    private byte[] roundTrip(final byte[] data) throws IOException {
+        final byte[] compressed = new byte[LZ4BlockCodec.maxCompressedLength(data.length)];
+        final int compressedLength = LZ4BlockCodec.compress(data, 0, data.length, compressed, 0);
+
+        final byte[] decompressed = new byte[data.length];
+        final int decompressedLength = LZ4BlockCodec.decompress(compressed, 0, compressedLength, decompressed, 0, decompressed.length);
+        assertEquals(data.length, decompressedLength);
+        return decompressed;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.controller.queue.clustered.server;
+
+import org.apache.nifi.events.EventReporter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestConnectionLoadBalanceServer {
+    private final AtomicInteger transactionCount = new AtomicInteger(0);
+    private final List<Socket> clientSockets = new ArrayList<>();
+    private ConnectionLoadBalanceServer server;
+
+    @Before
+    public void setup() throws IOException {
+        // Simple protocol that reads a single byte and responds with that byte incremented by one.
+        final LoadBalanceProtocol protocol = socket -> {
+            final int request = socket.getInputStream().read();
+            if (request < 0) {
+                socket.close();
+                return;
+            }
+
+            transactionCount.incrementAndGet();
+            final OutputStream out = socket.getOutputStream();
+            out.write(request + 1);
+            out.flush();
+        };
+
+        server = new ConnectionLoadBalanceServer("localhost", 0, null, 1, protocol, Mockito.mock(EventReporter.class), 30000);
+        server.start();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        for (final Socket socket : clientSockets) {
+            socket.close();
+        }
+
+        server.stop();
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket("localhost", server.getPort());
+        socket.setSoTimeout(10000);
+        clientSockets.add(socket);
+        return socket;
+    }
+
+    private int transact(final Socket socket, final int request) throws IOException {
+        socket.getOutputStream().write(request);
+        socket.getOutputStream().flush();
+        return socket.getInputStream().read();
+    }
+
+    @Test(timeout = 20000)
+    public void testIdleConnectionsDoNotOccupyWorkerThreads() throws IOException {
+        // With only a single worker thread, any of these idle connections would previously have blocked the active peer until the connection timeout elapsed.
+        for (int i = 0; i < 20; i++) {
+            connect();
+        }
+
+        final Socket activePeer = connect();
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i + 1, transact(activePeer, i));
+        }
+
+        assertEquals(50, transactionCount.get());
+    }
+
+    @Test(timeout = 20000)
+    public void testConnectionsAreRecycledAcrossPeers() throws IOException {
+        final List<Socket> peers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            peers.add(connect());
+        }
+
+        for (int round = 0; round < 5; round++) {
+            for (final Socket peer : peers) {
+                assertEquals(round + 1, transact(peer, round));
+            }
+        }
+
+        assertEquals(50, transactionCount.get());
+    }
+
+    @Test(timeout = 20000)
+    public void testPeerClosingConnection() throws IOException {
+        final Socket closingPeer = connect();
+        assertEquals(8, transact(closingPeer, 7));
+        closingPeer.shutdownOutput();
+
+        final InputStream in = closingPeer.getInputStream();
+        assertEquals(-1, in.read());
+
+        final Socket otherPeer = connect();
+        assertEquals(4, transact(otherPeer, 3));
+        assertEquals(2, transactionCount.get());
+    }
+}
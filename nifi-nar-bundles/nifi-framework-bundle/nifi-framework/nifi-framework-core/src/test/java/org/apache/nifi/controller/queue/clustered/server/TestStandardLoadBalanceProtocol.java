@@ -22,6 +22,7 @@ import org.apache.nifi.controller.FlowController;
 import org.apache.nifi.controller.flow.FlowManager;
 import org.apache.nifi.controller.queue.LoadBalanceCompression;
 import org.apache.nifi.controller.queue.LoadBalancedFlowFileQueue;
+import org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceCompressionCodec;
 import org.apache.nifi.controller.repository.ContentRepository;
 import org.apache.nifi.controller.repository.FlowFileRecord;
 import org.apache.nifi.controller.repository.FlowFileRepository;
@@ -64,9 +65,12 @@ import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalancePro
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.CONFIRM_CHECKSUM;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.CONFIRM_COMPLETE_TRANSACTION;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.DATA_FRAME_FOLLOWS;
+import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.MORE_CONNECTIONS;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.MORE_FLOWFILES;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.NO_DATA_FRAME;
+import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.NO_MORE_CONNECTIONS;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.NO_MORE_FLOWFILES;
+import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.QUEUE_FULL;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.REJECT_CHECKSUM;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.SKIP_SPACE_CHECK;
 import static org.apache.nifi.controller.queue.clustered.protocol.LoadBalanceProtocolConstants.SPACE_AVAILABLE;
@@ -616,6 +620,111 @@ public class TestStandardLoadBalanceProtocol {
         Mockito.verify(flowFileQueue, times(1)).receiveFromPeer(anyCollection());
     }
 
+    @Test
+    public void testMultipleConnectionsInTransactionWithLZ4() throws IOException {
+        final StandardLoadBalanceProtocol protocol = new StandardLoadBalanceProtocol(flowFileRepo, contentRepo, provenanceRepo, flowController, ALWAYS_AUTHORIZED);
+        when(flowFileQueue.getLoadBalanceCompression()).thenReturn(LoadBalanceCompression.COMPRESS_ATTRIBUTES_AND_CONTENT);
+        when(flowFileQueue.isLocalPartitionFull()).thenReturn(false, true);
+
+        final PipedInputStream serverInput = new PipedInputStream();
+        final PipedOutputStream serverContentSource = new PipedOutputStream();
+        serverInput.connect(serverContentSource);
+
+        final ByteArrayOutputStream serverOutput = new ByteArrayOutputStream();
+
+        // Write compression codec and connection ID
+        final Checksum checksum = new CRC32();
+        final OutputStream checkedOutput = new CheckedOutputStream(serverContentSource, checksum);
+        final DataOutputStream dos = new DataOutputStream(checkedOutput);
+        dos.write(LoadBalanceCompressionCodec.LZ4.getId());
+        dos.writeUTF("connection-1");
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", "unit-test-id");
+
+        dos.write(CHECK_SPACE);
+        dos.write(MORE_FLOWFILES);
+        writeAttributes(attributes, dos, LoadBalanceCompressionCodec.LZ4);
+        writeContent("hello".getBytes(), dos, LoadBalanceCompressionCodec.LZ4);
+        dos.write(NO_MORE_FLOWFILES);
+
+        // Second connection's queue is full, so no FlowFiles are sent for it
+        dos.write(MORE_CONNECTIONS);
+        dos.writeUTF("connection-2");
+        dos.write(CHECK_SPACE);
+
+        dos.write(MORE_CONNECTIONS);
+        dos.writeUTF("connection-3");
+        dos.write(SKIP_SPACE_CHECK);
+        dos.write(MORE_FLOWFILES);
+        writeAttributes(attributes, dos, LoadBalanceCompressionCodec.LZ4);
+        writeContent("good-bye".getBytes(), dos, LoadBalanceCompressionCodec.LZ4);
+        dos.write(NO_MORE_FLOWFILES);
+        dos.write(NO_MORE_CONNECTIONS);
+
+        dos.writeLong(checksum.getValue());
+        dos.write(COMPLETE_TRANSACTION);
+
+        protocol.receiveFlowFiles(serverInput, serverOutput, "Unit Test", 2);
+
+        final byte[] serverResponse = serverOutput.toByteArray();
+        assertEquals(4, serverResponse.length);
+        assertEquals(SPACE_AVAILABLE, serverResponse[0]);
+        assertEquals(QUEUE_FULL, serverResponse[1]);
+        assertEquals(CONFIRM_CHECKSUM, serverResponse[2]);
+        assertEquals(CONFIRM_COMPLETE_TRANSACTION, serverResponse[3]);
+
+        // FlowFiles for all Connections share a single Content Claim
+        assertEquals(1, claimContents.size());
+        assertArrayEquals("hellogood-bye".getBytes(), claimContents.values().iterator().next());
+
+        Mockito.verify(flowFileRepo, times(1)).updateRepository(anyCollection());
+        assertEquals(2, flowFileRepoUpdateRecords.size());
+        Mockito.verify(provenanceRepo, times(1)).registerEvents(anyList());
+        assertEquals(2, provRepoUpdateRecords.size());
+        assertEquals("connection-1", provRepoUpdateRecords.get(0).getComponentId());
+        assertEquals("connection-3", provRepoUpdateRecords.get(1).getComponentId());
+        Mockito.verify(flowFileQueue, times(2)).receiveFromPeer(anyCollection());
+        assertEquals(2, flowFileQueueReceiveRecords.size());
+        assertEquals(5L, flowFileQueueReceiveRecords.get(0).getSize());
+        assertEquals(8L, flowFileQueueReceiveRecords.get(1).getSize());
+    }
+
+    private void writeAttributes(final Map<String, String> attributes, final DataOutputStream dos, final LoadBalanceCompressionCodec codec) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(codec.compress(compressed))) {
+            out.writeInt(attributes.size());
+
+            for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+                final byte[] key = entry.getKey().getBytes();
+                out.writeInt(key.length);
+                out.write(key);
+
+                final byte[] value = entry.getValue().getBytes();
+                out.writeInt(value.length);
+                out.write(value);
+            }
+
+            out.writeLong(0L); // lineage start date
+            out.writeLong(0L); // entry date
+        }
+
+        dos.writeInt(compressed.size());
+        compressed.writeTo(dos);
+    }
+
+    private void writeContent(final byte[] content, final DataOutputStream dos, final LoadBalanceCompressionCodec codec) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final OutputStream out = codec.compress(compressed)) {
+            out.write(content);
+        }
+
+        dos.write(DATA_FRAME_FOLLOWS);
+        dos.writeShort(compressed.size());
+        compressed.writeTo(dos);
+        dos.write(NO_DATA_FRAME);
+    }
+
     private void writeAttributes(final Map<String, String> attributes, final DataOutputStream dos) throws IOException {
         try (final ByteArrayOutputStream baos = new ByteArrayOutputStream();
              final DataOutputStream out = new DataOutputStream(baos)) {
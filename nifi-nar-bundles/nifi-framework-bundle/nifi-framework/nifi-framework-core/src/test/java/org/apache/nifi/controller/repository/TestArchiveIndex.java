@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.controller.repository.util.DiskUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestArchiveIndex {
+
+    private static final long BASE_TIME = TimeUnit.DAYS.toMillis(365L * 40);
+
+    private final File containerDir = new File("target/archive-index-test");
+    private Path containerPath;
+    private Path indexPath;
+
+    @Before
+    public void setup() throws IOException {
+        if (containerDir.exists()) {
+            DiskUtils.deleteRecursively(containerDir);
+        }
+
+        containerPath = containerDir.toPath();
+        indexPath = containerPath.resolve("archive-index");
+    }
+
+    private ArchiveIndex openIndex() throws IOException {
+        return new ArchiveIndex(containerPath, indexPath, TestArchiveIndex::getTimestamp);
+    }
+
+    private static long getTimestamp(final File file) {
+        final String filename = file.getName();
+        return Long.parseLong(filename.substring(0, filename.indexOf('-')));
+    }
+
+    private Path archive(final int section, final long timestamp, final int size) throws IOException {
+        final Path archiveDir = containerPath.resolve(String.valueOf(section)).resolve(FileSystemRepository.ARCHIVE_DIR_NAME);
+        Files.createDirectories(archiveDir);
+        final Path file = archiveDir.resolve(timestamp + "-" + section);
+        Files.write(file, new byte[size]);
+        return file;
+    }
+
+    @Test
+    public void testEntriesReturnedOldestFirst() throws IOException {
+        final ArchiveIndex index = openIndex();
+        assertTrue(index.rebuildIfNecessary(4, FileSystemRepository.ARCHIVE_DIR_NAME));
+        assertNull(index.peek());
+
+        final long[] timestamps = new long[] {BASE_TIME + 5000L, BASE_TIME + TimeUnit.MINUTES.toMillis(10), BASE_TIME + 1000L, BASE_TIME + TimeUnit.MINUTES.toMillis(3)};
+        for (int i = 0; i < timestamps.length; i++) {
+            index.add(archive(i, timestamps[i], 10 + i), 10 + i);
+        }
+
+        assertEquals(3, index.getBucketCount());
+        assertEquals(BASE_TIME + 1000L, index.peek().getTimestamp());
+        assertEquals(BASE_TIME + 1000L, index.poll().getTimestamp());
+        assertEquals(BASE_TIME + 5000L, index.poll().getTimestamp());
+
+        // The first bucket has been exhausted, so reading the next entry moves on to the next bucket.
+        final ArchiveIndex.Entry entry = index.poll();
+        assertEquals(BASE_TIME + TimeUnit.MINUTES.toMillis(3), entry.getTimestamp());
+        assertEquals(13L, entry.getSize());
+        assertTrue(Files.exists(containerPath.resolve(entry.getRelativePath())));
+        assertEquals(2, index.getBucketCount());
+
+        // An entry that is older than the oldest bucket in memory must still be returned first.
+        index.add(archive(0, BASE_TIME, 1), 1);
+        assertEquals(BASE_TIME, index.poll().getTimestamp());
+        assertEquals(BASE_TIME + TimeUnit.MINUTES.toMillis(10), index.poll().getTimestamp());
+        assertNull(index.poll());
+
+        index.checkpoint();
+        assertEquals(0, index.getBucketCount());
+    }
+
+    @Test
+    public void testIndexRestoredAfterCleanShutdown() throws IOException {
+        final ArchiveIndex index = openIndex();
+        index.rebuildIfNecessary(2, FileSystemRepository.ARCHIVE_DIR_NAME);
+
+        for (int i = 0; i < 5; i++) {
+            index.add(archive(0, BASE_TIME + i, 1), 1);
+        }
+
+        assertEquals(BASE_TIME, index.poll().getTimestamp());
+        assertEquals(BASE_TIME + 1, index.poll().getTimestamp());
+        index.close();
+        assertTrue(Files.exists(indexPath.resolve(ArchiveIndex.CLEAN_SHUTDOWN_FILENAME)));
+
+        // Files that were polled before the checkpoint must not be returned again, even though they were never deleted.
+        final ArchiveIndex reopened = openIndex();
+        assertFalse(Files.exists(indexPath.resolve(ArchiveIndex.CLEAN_SHUTDOWN_FILENAME)));
+        assertFalse(reopened.rebuildIfNecessary(2, FileSystemRepository.ARCHIVE_DIR_NAME));
+        assertEquals(BASE_TIME + 2, reopened.poll().getTimestamp());
+        assertEquals(BASE_TIME + 3, reopened.poll().getTimestamp());
+        assertEquals(BASE_TIME + 4, reopened.poll().getTimestamp());
+        assertNull(reopened.poll());
+    }
+
+    @Test
+    public void testIndexRebuiltAfterUncleanShutdown() throws IOException {
+        final ArchiveIndex index = openIndex();
+        index.rebuildIfNecessary(2, FileSystemRepository.ARCHIVE_DIR_NAME);
+        index.add(archive(0, BASE_TIME + 2, 1), 1);
+
+        // Files archived while the index was not being updated are found by rebuilding it.
+        archive(1, BASE_TIME + 1, 2);
+        archive(1, BASE_TIME + TimeUnit.HOURS.toMillis(2), 3);
+
+        final ArchiveIndex reopened = openIndex();
+        assertNull(reopened.peek());
+        assertTrue(reopened.rebuildIfNecessary(2, FileSystemRepository.ARCHIVE_DIR_NAME));
+        assertFalse(reopened.rebuildIfNecessary(2, FileSystemRepository.ARCHIVE_DIR_NAME));
+
+        final ArchiveIndex.Entry first = reopened.poll();
+        assertEquals(BASE_TIME + 1, first.getTimestamp());
+        assertEquals(2L, first.getSize());
+        assertEquals(BASE_TIME + 2, reopened.poll().getTimestamp());
+        assertEquals(BASE_TIME + TimeUnit.HOURS.toMillis(2), reopened.poll().getTimestamp());
+        assertNull(reopened.poll());
+    }
+
+    @Test
+    public void testAddAfterCloseForcesRebuild() throws IOException {
+        final ArchiveIndex index = openIndex();
+        index.rebuildIfNecessary(1, FileSystemRepository.ARCHIVE_DIR_NAME);
+        index.close();
+
+        index.add(archive(0, BASE_TIME, 1), 1);
+        assertFalse(Files.exists(indexPath.resolve(ArchiveIndex.CLEAN_SHUTDOWN_FILENAME)));
+
+        final ArchiveIndex reopened = openIndex();
+        assertTrue(reopened.rebuildIfNecessary(1, FileSystemRepository.ARCHIVE_DIR_NAME));
+        assertEquals(BASE_TIME, reopened.poll().getTimestamp());
+    }
+}
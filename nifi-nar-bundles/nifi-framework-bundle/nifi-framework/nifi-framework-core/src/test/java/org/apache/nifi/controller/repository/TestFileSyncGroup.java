@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TestFileSyncGroup {
+
+    @Test
+    public void testSyncNotRepeatedForSyncedData() throws IOException {
+        final AtomicInteger syncCount = new AtomicInteger(0);
+        final FileSyncGroup syncGroup = new FileSyncGroup(syncCount::incrementAndGet);
+
+        syncGroup.sync(100L);
+        assertEquals(1, syncCount.get());
+        assertEquals(100L, syncGroup.getSyncedLength());
+
+        syncGroup.sync(50L);
+        assertEquals(1, syncCount.get());
+
+        syncGroup.sync(101L);
+        assertEquals(2, syncCount.get());
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentSyncsShared() throws InterruptedException {
+        final int threadCount = 16;
+        final int syncsPerThread = 50;
+        final AtomicLong fileLength = new AtomicLong(0L);
+        final AtomicLong durableLength = new AtomicLong(0L);
+        final AtomicInteger syncCount = new AtomicInteger(0);
+
+        final FileSyncGroup syncGroup = new FileSyncGroup(() -> {
+            final long length = fileLength.get();
+            try {
+                Thread.sleep(2L);
+            } catch (final InterruptedException ie) {
+                throw new IOException(ie);
+            }
+            durableLength.accumulateAndGet(length, Math::max);
+            syncCount.incrementAndGet();
+        });
+
+        final AtomicInteger failures = new AtomicInteger(0);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < syncsPerThread; i++) {
+                    final long written = fileLength.incrementAndGet();
+                    try {
+                        syncGroup.sync(written);
+                    } catch (final IOException ioe) {
+                        failures.incrementAndGet();
+                    }
+
+                    // Once sync returns, the data must be durable
+                    if (durableLength.get() < written) {
+                        failures.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, failures.get());
+        assertTrue("Expected syncs to be shared but there were " + syncCount.get() + " syncs", syncCount.get() < threadCount * syncsPerThread);
+    }
+
+    @Test
+    public void testFailedSyncRetried() throws IOException {
+        final AtomicInteger attempts = new AtomicInteger(0);
+        final FileSyncGroup syncGroup = new FileSyncGroup(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IOException("Intentional failure for unit test");
+            }
+        });
+
+        try {
+            syncGroup.sync(10L);
+            fail("Expected IOException");
+        } catch (final IOException expected) {
+        }
+
+        assertEquals(0L, syncGroup.getSyncedLength());
+        syncGroup.sync(10L);
+        assertEquals(2, attempts.get());
+        assertEquals(10L, syncGroup.getSyncedLength());
+    }
+
+    @Test
+    public void testSyncAfterCloseCoveredByClose() throws IOException {
+        final AtomicInteger syncCount = new AtomicInteger(0);
+        final FileSyncGroup syncGroup = new FileSyncGroup(syncCount::incrementAndGet);
+
+        syncGroup.sync(20L);
+        syncGroup.close();
+        syncGroup.sync(10L);
+        assertEquals(1, syncCount.get());
+
+        try {
+            syncGroup.sync(30L);
+            fail("Expected IOException");
+        } catch (final IOException expected) {
+        }
+    }
+}
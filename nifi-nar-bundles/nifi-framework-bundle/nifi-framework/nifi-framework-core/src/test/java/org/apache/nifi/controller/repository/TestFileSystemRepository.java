@@ -24,11 +24,14 @@ import org.apache.nifi.controller.repository.claim.ContentClaim;
 import org.apache.nifi.controller.repository.claim.StandardContentClaim;
 import org.apache.nifi.controller.repository.claim.StandardResourceClaim;
 import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.apache.nifi.controller.repository.io.ByteBufferInputStream;
+import org.apache.nifi.controller.repository.io.ContentClaimInputStream;
 import org.apache.nifi.controller.repository.util.DiskUtils;
 import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.stream.io.StreamUtils;
 import org.apache.nifi.util.NiFiProperties;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -41,6 +44,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -50,10 +54,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertArrayEquals;
@@ -164,6 +170,52 @@ public class TestFileSystemRepository {
         assertTrue(messageFound);
     }
 
+    @Test(timeout = 30000)
+    public void testArchiveCleanupWithArchivingDisabled() throws Exception {
+        shutdown();
+
+        final Logger logger = (Logger) LoggerFactory.getLogger(FileSystemRepository.class);
+        final ListAppender<ILoggingEvent> testAppender = new ListAppender<>();
+        testAppender.setName("Test");
+        testAppender.start();
+        logger.addAppender(testAppender);
+
+        try {
+            final Map<String, String> addProps = new HashMap<>();
+            addProps.put(NiFiProperties.CONTENT_ARCHIVE_ENABLED, "false");
+            addProps.put(NiFiProperties.CONTENT_ARCHIVE_MAX_USAGE_PERCENTAGE, "50%");
+            addProps.put(NiFiProperties.CONTENT_ARCHIVE_CLEANUP_FREQUENCY, "1 sec");
+            addProps.put(NiFiProperties.CONTENT_ARCHIVE_MAX_RETENTION_PERIOD, "1 hour");
+            final NiFiProperties localProps = NiFiProperties.createBasicNiFiProperties(null, addProps);
+            repository = new FileSystemRepository(localProps);
+            repository.initialize(new StandardResourceClaimManager());
+            repository.purge();
+
+            final ContentClaim claim = repository.create(false);
+            try (final OutputStream out = repository.write(claim)) {
+                out.write("Hello".getBytes());
+            }
+
+            // Data that was archived while archiving was enabled must still be expired
+            final Path archivedFile = FileSystemRepository.getArchivePath(getPath(claim)).resolveSibling("archived-before-restart");
+            Files.createDirectories(archivedFile.getParent());
+            Files.write(archivedFile, "Hello".getBytes());
+            assertTrue(archivedFile.toFile().setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2L)));
+
+            // Allow the cleanup task to run for each container a couple of times
+            Thread.sleep(2500L);
+            assertFalse(Files.exists(archivedFile));
+
+            synchronized (testAppender) {
+                for (final ILoggingEvent event : testAppender.list) {
+                    assertFalse("Unexpected log message: " + event.getFormattedMessage(), event.getLevel().isGreaterOrEqual(Level.ERROR));
+                }
+            }
+        } finally {
+            logger.detachAppender(testAppender);
+        }
+    }
+
     @Test
     public void testBogusFile() throws IOException {
         repository.shutdown();
@@ -375,6 +427,129 @@ public class TestFileSystemRepository {
         assertTrue(Arrays.equals(expected, baos.toByteArray()));
     }
 
+    @Test
+    public void testImportFromFileThenWriteToSameResourceClaim() throws IOException {
+        final Path path = new File("target/testImportFromFileThenWriteToSameResourceClaim").toPath();
+        Files.copy(helloWorldFile.toPath(), path, StandardCopyOption.REPLACE_EXISTING);
+        final byte[] expected = Files.readAllBytes(helloWorldFile.toPath());
+
+        final ContentClaim importedClaim = repository.create(false);
+        assertEquals(expected.length, repository.importFrom(path, importedClaim));
+        assertEquals(expected.length, importedClaim.getLength());
+
+        // The imported content should not prevent the Resource Claim from being appended to.
+        final ContentClaim writtenClaim = repository.create(false);
+        assertEquals(importedClaim.getResourceClaim(), writtenClaim.getResourceClaim());
+        assertEquals(expected.length, writtenClaim.getOffset());
+        try (final OutputStream out = repository.write(writtenClaim)) {
+            out.write("goodbye".getBytes());
+        }
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        repository.exportTo(importedClaim, baos);
+        assertTrue(Arrays.equals(expected, baos.toByteArray()));
+
+        baos.reset();
+        repository.exportTo(writtenClaim, baos);
+        assertEquals("goodbye", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void testImportFromFileByLink() throws IOException {
+        shutdown();
+
+        final NiFiProperties localProps = NiFiProperties.createBasicNiFiProperties(null, Collections.singletonMap(FileSystemRepository.LINK_ON_IMPORT, "true"));
+        repository = new FileSystemRepository(localProps);
+        repository.initialize(new StandardResourceClaimManager());
+        repository.purge();
+
+        final Path path = new File("target/testImportFromFileByLink").toPath();
+        Files.copy(helloWorldFile.toPath(), path, StandardCopyOption.REPLACE_EXISTING);
+        final byte[] expected = Files.readAllBytes(helloWorldFile.toPath());
+
+        // Both claims start new Resource Claims, but a file that the caller keeps may be modified later, so it is copied rather than linked
+        final ContentClaim keptClaim = repository.create(false);
+        final ContentClaim claim = repository.create(false);
+        assertEquals(expected.length, repository.importFrom(path, keptClaim, true));
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("unix")) {
+            assertEquals(1, Files.getAttribute(path, "unix:nlink"));
+        }
+
+        assertEquals(expected.length, repository.importFrom(path, claim, false));
+        assertEquals(expected.length, claim.getLength());
+        assertTrue(Files.exists(path));
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("unix")) {
+            assertEquals(2, Files.getAttribute(path, "unix:nlink"));
+        }
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        repository.exportTo(claim, baos);
+        assertTrue(Arrays.equals(expected, baos.toByteArray()));
+
+        // The Resource Claim must never be appended to, as that would modify the imported file
+        assertTrue(claim.getResourceClaim().isInUse());
+        final ContentClaim nextClaim = repository.create(false);
+        assertNotSame(claim.getResourceClaim(), nextClaim.getResourceClaim());
+        try (final OutputStream out = repository.write(nextClaim)) {
+            out.write("goodbye".getBytes());
+        }
+        assertTrue(Arrays.equals(expected, Files.readAllBytes(path)));
+
+        // A Content Claim that does not start a new Resource Claim cannot be imported by link but must still be imported.
+        final ContentClaim appendedClaim = repository.create(false);
+        assertEquals(nextClaim.getResourceClaim(), appendedClaim.getResourceClaim());
+        assertEquals(expected.length, repository.importFrom(path, appendedClaim, false));
+
+        baos.reset();
+        repository.exportTo(appendedClaim, baos);
+        assertTrue(Arrays.equals(expected, baos.toByteArray()));
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentWritesWithAlwaysSync() throws IOException, InterruptedException {
+        shutdown();
+
+        final NiFiProperties localProps = NiFiProperties.createBasicNiFiProperties(null, Collections.singletonMap("nifi.content.repository.always.sync", "true"));
+        repository = new FileSystemRepository(localProps);
+        repository.initialize(new StandardResourceClaimManager());
+        repository.purge();
+
+        final int threadCount = 8;
+        final int claimsPerThread = 50;
+        final List<ContentClaim> claims = Collections.synchronizedList(new ArrayList<>());
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final int threadIndex = t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < claimsPerThread; i++) {
+                        final ContentClaim claim = repository.create(false);
+                        try (final OutputStream out = repository.write(claim)) {
+                            out.write((threadIndex + "-" + i).getBytes());
+                        }
+                        claims.add(claim);
+                    }
+                } catch (final IOException ioe) {
+                    throw new RuntimeException(ioe);
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(threadCount * claimsPerThread, claims.size());
+        final Set<String> contents = new HashSet<>();
+        for (final ContentClaim claim : claims) {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            repository.exportTo(claim, baos);
+            contents.add(new String(baos.toByteArray()));
+        }
+        assertEquals(threadCount * claimsPerThread, contents.size());
+    }
+
     @Test
     public void testImportFromStream() throws IOException {
         final ContentClaim claim = repository.create(false);
@@ -423,6 +598,30 @@ public class TestFileSystemRepository {
         assertTrue(Arrays.equals(doubleExpected, Files.readAllBytes(outPath)));
     }
 
+    @Test
+    public void testExportToFileWithOffset() throws IOException {
+        final ContentClaim firstClaim = repository.create(false);
+        try (final OutputStream out = repository.write(firstClaim)) {
+            out.write("0123456789".getBytes());
+        }
+
+        // The second claim shares the Resource Claim, so its content does not begin at the start of the file.
+        final ContentClaim claim = repository.create(false);
+        assertEquals(10, claim.getOffset());
+        try (final OutputStream out = repository.write(claim)) {
+            out.write("abcdefghij".getBytes());
+        }
+
+        final Path outPath = new File("target/testExportToFileWithOffset").toPath();
+        Files.deleteIfExists(outPath);
+
+        assertEquals(4L, repository.exportTo(claim, outPath, false, 3L, 4L));
+        assertEquals("defg", new String(Files.readAllBytes(outPath)));
+
+        assertEquals(10L, repository.exportTo(claim, outPath, true));
+        assertEquals("defgabcdefghij", new String(Files.readAllBytes(outPath)));
+    }
+
     @Test
     public void testSize() throws IOException {
         final ContentClaim claim = repository.create(true);
@@ -490,6 +689,57 @@ public class TestFileSystemRepository {
         }
     }
 
+    @Test
+    public void testReadMapped() throws IOException {
+        shutdown();
+
+        final NiFiProperties localProps = NiFiProperties.createBasicNiFiProperties(null, Collections.singletonMap(FileSystemRepository.MAPPED_READ_CACHE_SIZE, "10"));
+        claimManager = new StandardResourceClaimManager();
+        repository = new FileSystemRepository(localProps);
+        repository.initialize(claimManager);
+        repository.purge();
+
+        final ContentClaim firstClaim = repository.create(false);
+        try (final OutputStream out = repository.write(firstClaim)) {
+            out.write("The quick brown fox".getBytes());
+        }
+        final ContentClaim secondClaim = repository.create(false);
+        try (final OutputStream out = repository.write(secondClaim)) {
+            out.write(" jumps over the lazy dog".getBytes());
+        }
+
+        // While the Resource Claim may still be written to, it must not be mapped
+        try (final InputStream in = repository.read(secondClaim)) {
+            assertFalse(in instanceof ByteBufferInputStream);
+            assertEquals(" jumps over the lazy dog", new String(readFully(in, 100)));
+        }
+
+        claimManager.freeze(secondClaim.getResourceClaim());
+        try (final InputStream in = repository.read(secondClaim)) {
+            assertTrue(in instanceof ByteBufferInputStream);
+            assertEquals(" jumps over the lazy dog", new String(readFully(in, 100)));
+        }
+
+        try (final InputStream in = new ContentClaimInputStream(repository, firstClaim, 4L)) {
+            in.mark(100);
+            final byte[] firstWord = new byte[5];
+            StreamUtils.fillBuffer(in, firstWord);
+            assertEquals("quick", new String(firstWord));
+            in.reset();
+            assertEquals("quick brown fox", new String(readFully(in, 100)));
+        }
+
+        // Once the content has been removed, it must no longer be readable
+        repository.decrementClaimantCount(firstClaim);
+        repository.decrementClaimantCount(secondClaim);
+        assertTrue(repository.remove(secondClaim));
+        try {
+            repository.read(secondClaim);
+            Assert.fail("Expected ContentNotFoundException");
+        } catch (final ContentNotFoundException expected) {
+        }
+    }
+
     private boolean isWindowsEnvironment() {
         return System.getProperty("os.name").toLowerCase().startsWith("windows");
     }
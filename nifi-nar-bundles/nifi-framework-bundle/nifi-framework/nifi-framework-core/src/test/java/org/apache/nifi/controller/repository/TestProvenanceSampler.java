@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.groups.ProcessGroup;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.util.NiFiProperties;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestProvenanceSampler {
+
+    @Test
+    public void testPoliciesCreatedFromProperties() {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(NiFiProperties.PROVENANCE_SAMPLING_COMPONENT_PREFIX + "proc-1.event.types", "send, receive");
+        properties.put(NiFiProperties.PROVENANCE_SAMPLING_COMPONENT_PREFIX + "proc-1.max.rate", "500");
+        properties.put(NiFiProperties.PROVENANCE_SAMPLING_GROUP_PREFIX + "group-1.ratio", "10");
+
+        final ProvenanceSampler sampler = ProvenanceSampler.create(NiFiProperties.createBasicNiFiProperties(null, properties));
+
+        final ProcessGroup root = createGroup("root", null);
+        final ProcessGroup group = createGroup("group-1", root);
+        final ProcessGroup child = createGroup("child", group);
+
+        final ProvenanceSamplingPolicy componentPolicy = sampler.getPolicy(createConnectable("proc-1", child));
+        assertEquals(EnumSet.of(ProvenanceEventType.SEND, ProvenanceEventType.RECEIVE), componentPolicy.getEventTypes());
+        assertEquals(1, componentPolicy.getRatio());
+        assertEquals(500L, componentPolicy.getMaxEventsPerSecond());
+
+        // A component without a policy of its own uses the policy of the nearest enclosing group that has one
+        final ProvenanceSamplingPolicy groupPolicy = sampler.getPolicy(createConnectable("proc-2", child));
+        assertNull(groupPolicy.getEventTypes());
+        assertEquals(10, groupPolicy.getRatio());
+        assertSame(groupPolicy, sampler.getPolicy(createConnectable("proc-3", group)));
+
+        assertNull(sampler.getPolicy(createConnectable("proc-4", root)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownEventTypeRejected() {
+        final Map<String, String> properties = Collections.singletonMap(NiFiProperties.PROVENANCE_SAMPLING_COMPONENT_PREFIX + "proc-1.event.types", "SEND,SENT");
+        ProvenanceSampler.create(NiFiProperties.createBasicNiFiProperties(null, properties));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownSettingRejected() {
+        final Map<String, String> properties = Collections.singletonMap(NiFiProperties.PROVENANCE_SAMPLING_COMPONENT_PREFIX + "proc-1.rate", "100");
+        ProvenanceSampler.create(NiFiProperties.createBasicNiFiProperties(null, properties));
+    }
+
+    @Test
+    public void testEventTypesAndLineageEvents() {
+        final ProvenanceSamplingPolicy policy = new ProvenanceSamplingPolicy(EnumSet.of(ProvenanceEventType.SEND), 1, -1L);
+
+        assertTrue(policy.isRegistered(createEvent(ProvenanceEventType.SEND, "1")));
+        assertFalse(policy.isRegistered(createEvent(ProvenanceEventType.RECEIVE, "1")));
+        assertFalse(policy.isRegistered(createEvent(ProvenanceEventType.ATTRIBUTES_MODIFIED, "1")));
+
+        // Events that make up the lineage of FlowFiles are never dropped
+        assertTrue(policy.isRegistered(createEvent(ProvenanceEventType.FORK, "1")));
+        assertTrue(policy.isRegistered(createEvent(ProvenanceEventType.DROP, "1")));
+    }
+
+    @Test
+    public void testRatioIsConsistentPerFlowFile() {
+        final ProvenanceSamplingPolicy policy = new ProvenanceSamplingPolicy(null, 10, -1L);
+
+        int registered = 0;
+        for (int i = 0; i < 10_000; i++) {
+            final String uuid = UUID.randomUUID().toString();
+            final boolean routeRegistered = policy.isRegistered(createEvent(ProvenanceEventType.ROUTE, uuid));
+            assertEquals(routeRegistered, policy.isRegistered(createEvent(ProvenanceEventType.SEND, uuid)));
+
+            if (routeRegistered) {
+                registered++;
+            }
+        }
+
+        assertTrue("Registered events for " + registered + " FlowFiles", registered > 700 && registered < 1300);
+    }
+
+    @Test
+    public void testRateLimit() {
+        final AtomicLong nanoTime = new AtomicLong(TimeUnit.SECONDS.toNanos(100L));
+        final ProvenanceSamplingPolicy policy = new ProvenanceSamplingPolicy(null, 1, 5L, nanoTime::get);
+
+        assertEquals(5, countRegistered(policy, 20));
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(500L));
+        assertEquals(0, countRegistered(policy, 20));
+
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(500L));
+        assertEquals(5, countRegistered(policy, 20));
+
+        // Lineage events do not count against the limit
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(1L));
+        assertTrue(policy.isRegistered(createEvent(ProvenanceEventType.CLONE, "1")));
+        assertEquals(5, countRegistered(policy, 20));
+    }
+
+    private int countRegistered(final ProvenanceSamplingPolicy policy, final int events) {
+        int registered = 0;
+        for (int i = 0; i < events; i++) {
+            if (policy.isRegistered(createEvent(ProvenanceEventType.RECEIVE, String.valueOf(i)))) {
+                registered++;
+            }
+        }
+        return registered;
+    }
+
+    private ProvenanceEventRecord createEvent(final ProvenanceEventType eventType, final String flowFileUuid) {
+        final ProvenanceEventRecord event = Mockito.mock(ProvenanceEventRecord.class);
+        when(event.getEventType()).thenReturn(eventType);
+        when(event.getFlowFileUuid()).thenReturn(flowFileUuid);
+        return event;
+    }
+
+    private ProcessGroup createGroup(final String id, final ProcessGroup parent) {
+        final ProcessGroup group = Mockito.mock(ProcessGroup.class);
+        when(group.getIdentifier()).thenReturn(id);
+        when(group.getParent()).thenReturn(parent);
+        return group;
+    }
+
+    private Connectable createConnectable(final String id, final ProcessGroup group) {
+        final Connectable connectable = Mockito.mock(Connectable.class);
+        when(connectable.getIdentifier()).thenReturn(id);
+        when(connectable.getProcessGroup()).thenReturn(group);
+        return connectable;
+    }
+}
@@ -1712,6 +1712,31 @@ public class TestStandardProcessSession {
         assertEquals(ProvenanceEventType.CREATE, event.getEventType());
     }
 
+    @Test
+    public void testProvenanceSamplingPolicyOfProcessGroupApplied() throws IOException {
+        final Map<String, ProvenanceSamplingPolicy> groupPolicies = Collections.singletonMap("proc-group-identifier-1",
+            new ProvenanceSamplingPolicy(Collections.singleton(ProvenanceEventType.SEND), 1, -1L));
+        final ProvenanceSampler sampler = new ProvenanceSampler(Collections.emptyMap(), groupPolicies);
+        final CounterRepository counterRepo = Mockito.mock(CounterRepository.class);
+        context = new RepositoryContext(connectable, new AtomicLong(0L), contentRepo, flowFileRepo, Mockito.mock(FlowFileEventRepository.class),
+            counterRepo, provenanceRepo, sampler);
+        session = new StandardProcessSession(context, () -> false);
+
+        FlowFile flowFile = session.create();
+        session.getProvenanceReporter().receive(flowFile, "nifi://unit-test");
+        flowFile = session.putAttribute(flowFile, "attr", "a");
+        session.getProvenanceReporter().route(flowFile, new Relationship.Builder().name("A").build());
+        session.getProvenanceReporter().send(flowFile, "nifi://unit-test");
+        session.transfer(flowFile, new Relationship.Builder().name("A").build());
+        session.commit();
+
+        final List<ProvenanceEventRecord> events = provenanceRepo.getEvents(0L, 10000);
+        assertEquals(1, events.size());
+        assertEquals(ProvenanceEventType.SEND, events.get(0).getEventType());
+
+        Mockito.verify(counterRepo, Mockito.atLeastOnce()).adjustCounter(Mockito.anyString(), Mockito.eq(ProvenanceSampler.DROPPED_EVENTS_COUNTER), Mockito.eq(2L));
+    }
+
     @Test
     public void testContentModifiedNotEmittedForCreate() throws IOException {
         FlowFile newFlowFile = session.create();
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class TestByteBufferInputStream {
+
+    private final ByteBuffer buffer = ByteBuffer.wrap("0123456789".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    public void testReadsOnlyRemainingBytes() throws IOException {
+        buffer.position(2);
+        buffer.limit(6);
+
+        final ByteBufferInputStream in = new ByteBufferInputStream(buffer);
+        assertEquals(4, in.available());
+        assertEquals('2', in.read());
+
+        final byte[] bytes = new byte[10];
+        assertEquals(3, in.read(bytes, 0, bytes.length));
+        assertArrayEquals("345".getBytes(StandardCharsets.UTF_8), new byte[] {bytes[0], bytes[1], bytes[2]});
+        assertEquals(-1, in.read());
+        assertEquals(-1, in.read(bytes, 0, bytes.length));
+
+        // The given buffer must not be modified
+        assertEquals(2, buffer.position());
+        assertEquals(6, buffer.limit());
+    }
+
+    @Test
+    public void testSkipAndReset() throws IOException {
+        final ByteBufferInputStream in = new ByteBufferInputStream(buffer);
+        assertEquals(3L, in.skip(3L));
+        in.mark(100);
+        assertEquals('3', in.read());
+        assertEquals(6L, in.skip(100L));
+        assertEquals(0L, in.skip(1L));
+        in.reset();
+        assertEquals('3', in.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void testResetWithoutMark() throws IOException {
+        final ByteBufferInputStream in = new ByteBufferInputStream(buffer);
+        assertEquals('0', in.read());
+        in.reset();
+    }
+}
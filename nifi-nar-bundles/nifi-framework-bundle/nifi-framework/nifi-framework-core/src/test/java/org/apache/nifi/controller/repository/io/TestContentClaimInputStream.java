@@ -25,6 +25,8 @@ import org.mockito.Mockito;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
@@ -160,6 +162,32 @@ public class TestContentClaimInputStream {
     }
 
 
+    @Test
+    public void testRereadMappedClaimWithoutReadingFromRepositoryAgain() throws IOException {
+        Mockito.when(repo.read(contentClaim)).thenAnswer(invocation -> new ByteBufferInputStream(ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8))));
+        final ContentClaimInputStream in = new ContentClaimInputStream(repo, contentClaim, 1L);
+
+        final byte[] buff = new byte[3];
+        assertEquals('e', in.read());
+        in.mark(1);
+
+        final int invocations = 10;
+        for (int i=0; i < invocations; i++) {
+            StreamUtils.fillBuffer(in, buff, true);
+            assertEquals("llo", new String(buff, StandardCharsets.UTF_8));
+            assertEquals(5, in.getCurrentOffset());
+            assertEquals(-1, in.read());
+
+            in.reset();
+            assertEquals(2, in.getCurrentOffset());
+        }
+
+        Mockito.verify(repo, Mockito.times(1)).read(contentClaim);
+        Mockito.verifyNoMoreInteractions(repo);
+        in.close();
+    }
+
+
     @Test
     public void testRereadWithOffset() throws IOException {
         final ContentClaimInputStream in = new ContentClaimInputStream(repo, contentClaim, 3L);
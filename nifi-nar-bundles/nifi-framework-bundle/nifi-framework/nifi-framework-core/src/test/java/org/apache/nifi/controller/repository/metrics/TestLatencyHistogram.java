@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository.metrics;
+
+import org.apache.nifi.controller.repository.FlowFileEvent;
+import org.apache.nifi.controller.repository.LatencyMetric;
+import org.apache.nifi.controller.status.LatencyStatus;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testBucketBoundsAreWithinPrecision() {
+        int previousBucket = -1;
+        for (long value = 0; value < 1_000_000L; value++) {
+            final int bucket = LatencyHistogram.getBucketIndex(value);
+            assertTrue(bucket == previousBucket || bucket == previousBucket + 1);
+            previousBucket = bucket;
+
+            final long highestEquivalentValue = LatencyHistogram.getHighestEquivalentValue(bucket);
+            assertTrue(highestEquivalentValue >= value);
+            assertTrue("Bucket for " + value + " extends to " + highestEquivalentValue, highestEquivalentValue - value <= value / 8);
+        }
+
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.getBucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram(60_000L, 5);
+        final long now = System.currentTimeMillis();
+
+        // 9,989 fast tasks and 11 slow ones: the slow tasks appear in the 99.9th percentile but not in the 99th.
+        for (int i = 0; i < 9_989; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100 + i % 10), now);
+        }
+        for (int i = 0; i < 11; i++) {
+            histogram.record(TimeUnit.SECONDS.toNanos(2), now);
+        }
+
+        final LatencyStatus status = histogram.getStatus(now);
+        assertEquals(10_000L, status.getCount());
+        assertEquals(100L, status.getMedian(TimeUnit.MICROSECONDS), 13L);
+        assertEquals(109L, status.getPercentile99(TimeUnit.MICROSECONDS), 14L);
+        assertEquals(2L, status.getPercentile999(TimeUnit.SECONDS));
+        assertEquals(TimeUnit.SECONDS.toNanos(2), status.getMax(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testPercentilesDoNotExceedMax() {
+        final LatencyHistogram histogram = new LatencyHistogram(60_000L, 5);
+        final long now = System.currentTimeMillis();
+        histogram.record(1_000_001L, now);
+        assertEquals(1_000_001L, histogram.getStatus(now).getMedian(TimeUnit.NANOSECONDS));
+
+        histogram.record(Long.MAX_VALUE, now);
+        assertEquals(Long.MAX_VALUE, histogram.getStatus(now).getPercentile99(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testOldSlicesExpire() {
+        final LatencyHistogram histogram = new LatencyHistogram(60_000L, 5);
+        final long start = 1_000_000L * 60_000L;
+
+        for (int minute = 0; minute < 10; minute++) {
+            histogram.record(minute + 1, start + minute * 60_000L);
+        }
+
+        // Only the values from the last 5 minutes remain in the window, including the minute that reused the slice of minute 4.
+        final LatencyStatus status = histogram.getStatus(start + 9 * 60_000L);
+        assertEquals(5L, status.getCount());
+        assertEquals(10L, status.getMax(TimeUnit.NANOSECONDS));
+        assertEquals(8L, status.getMedian(TimeUnit.NANOSECONDS), 1L);
+
+        // A value that belongs to a slice that has already been replaced is ignored.
+        histogram.record(1_000L, start + 4 * 60_000L);
+        assertEquals(5L, histogram.getStatus(start + 9 * 60_000L).getCount());
+
+        assertSame(LatencyStatus.EMPTY, histogram.getStatus(start + 20 * 60_000L));
+    }
+
+    @Test
+    public void testLatenciesReportedByRepository() {
+        final RingBufferEventRepository repository = new RingBufferEventRepository(5);
+        final StandardFlowFileEvent event = new StandardFlowFileEvent();
+        event.setInvocations(1);
+        repository.updateRepository(event, "processor");
+        repository.updateRepository(event, "idle-processor");
+
+        repository.recordLatency("processor", LatencyMetric.TASK_DURATION, 500L);
+        repository.recordLatency("processor", LatencyMetric.SESSION_COMMIT, 200L);
+
+        final FlowFileEvent reported = repository.reportTransferEvents(System.currentTimeMillis()).getReportEntry("processor");
+        assertEquals(1, reported.getInvocations());
+        assertEquals(1L, reported.getLatency(LatencyMetric.TASK_DURATION).getCount());
+        assertEquals(500L, reported.getLatency(LatencyMetric.TASK_DURATION).getMax(TimeUnit.NANOSECONDS));
+        assertEquals(200L, reported.getLatency(LatencyMetric.SESSION_COMMIT).getMax(TimeUnit.NANOSECONDS));
+        assertSame(LatencyStatus.EMPTY, reported.getLatency(LatencyMetric.QUEUED_DURATION));
+
+        final FlowFileEvent idle = repository.reportTransferEvents(System.currentTimeMillis()).getReportEntry("idle-processor");
+        assertSame(LatencyStatus.EMPTY, idle.getLatency(LatencyMetric.TASK_DURATION));
+
+        repository.purgeTransferEvents("processor");
+        repository.updateRepository(event, "processor");
+        final FlowFileEvent purged = repository.reportTransferEvents(System.currentTimeMillis()).getReportEntry("processor");
+        assertSame(LatencyStatus.EMPTY, purged.getLatency(LatencyMetric.TASK_DURATION));
+    }
+}
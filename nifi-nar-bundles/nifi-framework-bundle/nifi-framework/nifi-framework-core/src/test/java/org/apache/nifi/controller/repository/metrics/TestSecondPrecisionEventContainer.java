@@ -19,7 +19,15 @@ package org.apache.nifi.controller.repository.metrics;
 import org.apache.nifi.controller.repository.FlowFileEvent;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class TestSecondPrecisionEventContainer {
 
@@ -132,4 +140,72 @@ public class TestSecondPrecisionEventContainer {
         assertEquals(0, resultsAt5MinsPlus600seconds.getBytesWritten());
     }
 
+    @Test
+    public void testCountersExpire() {
+        final SecondPrecisionEventContainer container = new SecondPrecisionEventContainer(5);
+        final long startTime = System.currentTimeMillis();
+
+        final StandardFlowFileEvent event = new StandardFlowFileEvent();
+        event.setInvocations(1);
+        event.setCounters(Collections.singletonMap("counter", 2L));
+
+        for (int j=0; j < 10; j++) {
+            container.addEvent(event, startTime + (j * 1000));
+        }
+
+        final FlowFileEvent resultAt5Mins = container.generateReport(startTime + 300_000);
+        assertEquals(10, resultAt5Mins.getInvocations());
+        assertEquals(Long.valueOf(20L), resultAt5Mins.getCounters().get("counter"));
+
+        final FlowFileEvent resultAt5MinsPlus5Seconds = container.generateReport(startTime + 305_000);
+        assertEquals(5, resultAt5MinsPlus5Seconds.getInvocations());
+        assertEquals(Long.valueOf(10L), resultAt5MinsPlus5Seconds.getCounters().get("counter"));
+
+        assertSame(EmptyFlowFileEvent.INSTANCE, container.generateReport(startTime + 310_000));
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentUpdatesAreNotLost() throws Exception {
+        final SecondPrecisionEventContainer container = new SecondPrecisionEventContainer(5);
+        final int threads = 8;
+        final int eventsPerThread = 100_000;
+
+        final StandardFlowFileEvent event = new StandardFlowFileEvent();
+        event.setFlowFilesIn(1);
+        event.setBytesRead(100L);
+        event.setInvocations(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < eventsPerThread; j++) {
+                        container.addEvent(event);
+                    }
+                }));
+            }
+
+            // Generate reports while the events are being added. Every event is added as a whole, so the values of a report must agree.
+            final Future<?> reporter = executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    final FlowFileEvent report = container.generateReport(System.currentTimeMillis());
+                    assertEquals(report.getFlowFilesIn(), report.getInvocations());
+                    assertEquals(report.getFlowFilesIn() * 100L, report.getBytesRead());
+                }
+            });
+
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            reporter.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final FlowFileEvent result = container.generateReport(System.currentTimeMillis());
+        assertEquals(threads * eventsPerThread, result.getFlowFilesIn());
+        assertEquals(threads * eventsPerThread, result.getInvocations());
+        assertEquals(threads * eventsPerThread * 100L, result.getBytesRead());
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import org.apache.nifi.controller.scheduling.ComponentAutoTuner.TuningSample;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestComponentAutoTuner {
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5L);
+    private static final long MAX_RUN_DURATION_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
+
+    @Test
+    public void testStartsAsConfigured() {
+        final ComponentAutoTuner tuner = new ComponentAutoTuner(4, 0L, MAX_RUN_DURATION_NANOS, true, 0.8D);
+        assertEquals(4, tuner.getConcurrentTasks());
+        assertEquals(0L, tuner.getRunDuration(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testConcurrencyFollowsLoadWithinBounds() {
+        final ComponentAutoTuner tuner = new ComponentAutoTuner(3, 0L, MAX_RUN_DURATION_NANOS, false, 0.8D);
+
+        // Idle tasks are removed one at a time, but the component always keeps one
+        assertTrue(tuner.evaluate(sample(3, 0.0D, 0L, 0L, false, 0.1D)));
+        assertEquals(2, tuner.getConcurrentTasks());
+        assertTrue(tuner.evaluate(sample(2, 0.0D, 0L, 0L, false, 0.1D)));
+        assertEquals(1, tuner.getConcurrentTasks());
+        assertFalse(tuner.evaluate(sample(1, 0.0D, 0L, 0L, false, 0.1D)));
+        assertEquals(1, tuner.getConcurrentTasks());
+
+        // A growing backlog with busy tasks adds tasks, up to the configured number
+        assertTrue(tuner.evaluate(sample(1, 0.9D, 0L, 100L, false, 0.1D)));
+        assertEquals(2, tuner.getConcurrentTasks());
+        assertTrue(tuner.evaluate(sample(2, 0.9D, 0L, 200L, false, 0.1D)));
+        assertEquals(3, tuner.getConcurrentTasks());
+        assertFalse(tuner.evaluate(sample(3, 0.9D, 0L, 300L, false, 0.1D)));
+        assertEquals(3, tuner.getConcurrentTasks());
+    }
+
+    @Test
+    public void testConcurrencyNotAddedWhenBacklogShrinking() {
+        final ComponentAutoTuner tuner = new ComponentAutoTuner(4, 0L, MAX_RUN_DURATION_NANOS, false, 0.8D);
+        tuner.evaluate(sample(4, 0.0D, 0L, 0L, false, 0.1D));
+        assertEquals(3, tuner.getConcurrentTasks());
+
+        tuner.evaluate(sample(3, 0.9D, 0L, 1000L, false, 0.1D));
+        assertEquals(4, tuner.getConcurrentTasks());
+
+        // The backlog is draining with the current number of tasks, so there is no need for more
+        tuner.evaluate(sample(4, 0.5D, 0L, 500L, false, 0.1D));
+        assertEquals(4, tuner.getConcurrentTasks());
+    }
+
+    @Test
+    public void testConcurrencyReducedWhenCpuSaturatedOrBackPressureApplied() {
+        final ComponentAutoTuner tuner = new ComponentAutoTuner(4, 0L, MAX_RUN_DURATION_NANOS, false, 0.8D);
+
+        tuner.evaluate(sample(4, 0.9D, 0L, 1000L, false, 0.95D));
+        assertEquals(3, tuner.getConcurrentTasks());
+
+        tuner.evaluate(sample(3, 0.9D, 0L, 2000L, true, 0.1D));
+        assertEquals(2, tuner.getConcurrentTasks());
+
+        // CPU load that is not known does not count as saturated
+        tuner.evaluate(sample(2, 0.9D, 0L, 3000L, false, Double.NaN));
+        assertEquals(3, tuner.getConcurrentTasks());
+    }
+
+    @Test
+    public void testSourceComponentConsideredBackloggedWhenBusy() {
+        final ComponentAutoTuner tuner = new ComponentAutoTuner(2, 0L, MAX_RUN_DURATION_NANOS, false, 0.8D);
+        tuner.evaluate(sample(2, 0.1D, 0L, -1L, false, 0.1D));
+        assertEquals(1, tuner.getConcurrentTasks());
+
+        tuner.evaluate(sample(1, 0.9D, 0L, -1L, false, 0.1D));
+        assertEquals(2, tuner.getConcurrentTasks());
+    }
+
+    @Test
+    public void testRunDurationFollowsCommitCost() {
+        final ComponentAutoTuner tuner = new ComponentAutoTuner(1, 0L, MAX_RUN_DURATION_NANOS, true, 0.8D);
+
+        // Commits take a fifth of the time while FlowFiles back up, so batching is increased up to the maximum
+        long expected = TimeUnit.MILLISECONDS.toNanos(1L);
+        long queued = 100L;
+        while (expected < MAX_RUN_DURATION_NANOS) {
+            assertTrue(tuner.evaluate(sample(1, 0.9D, 0.2D, queued, false, 0.1D)));
+            assertEquals(expected, tuner.getRunDuration(TimeUnit.NANOSECONDS));
+            expected *= 2;
+            queued += 100L;
+        }
+
+        assertTrue(tuner.evaluate(sample(1, 0.9D, 0.2D, queued, false, 0.1D)));
+        assertEquals(MAX_RUN_DURATION_NANOS, tuner.getRunDuration(TimeUnit.NANOSECONDS));
+        assertFalse(tuner.evaluate(sample(1, 0.9D, 0.2D, queued + 100L, false, 0.1D)));
+
+        // Cheap commits are no reason to batch more
+        final ComponentAutoTuner cheapCommits = new ComponentAutoTuner(1, 0L, MAX_RUN_DURATION_NANOS, true, 0.8D);
+        assertFalse(cheapCommits.evaluate(sample(1, 0.9D, 0.01D, 100L, false, 0.1D)));
+        assertEquals(0L, cheapCommits.getRunDuration(TimeUnit.NANOSECONDS));
+
+        // Once the queue is empty, the run duration is halved until it returns to the configured run duration
+        int evaluations = 0;
+        while (tuner.getRunDuration(TimeUnit.NANOSECONDS) > 0L) {
+            tuner.evaluate(sample(1, 0.9D, 0.2D, 0L, false, 0.1D));
+            evaluations++;
+        }
+        assertEquals(7, evaluations);
+    }
+
+    @Test
+    public void testRunDurationNeverBelowConfigured() {
+        final long configured = TimeUnit.MILLISECONDS.toNanos(25L);
+        final ComponentAutoTuner tuner = new ComponentAutoTuner(1, configured, MAX_RUN_DURATION_NANOS, true, 0.8D);
+
+        assertFalse(tuner.evaluate(sample(1, 0.9D, 0.2D, 0L, false, 0.1D)));
+        assertEquals(configured, tuner.getRunDuration(TimeUnit.NANOSECONDS));
+
+        tuner.evaluate(sample(1, 0.9D, 0.2D, 100L, false, 0.1D));
+        assertEquals(2 * configured, tuner.getRunDuration(TimeUnit.NANOSECONDS));
+
+        tuner.evaluate(sample(1, 0.9D, 0.2D, 200L, true, 0.1D));
+        assertEquals(configured, tuner.getRunDuration(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testRunDurationNotTunedUnlessBatchingSupported() {
+        final ComponentAutoTuner tuner = new ComponentAutoTuner(1, 0L, MAX_RUN_DURATION_NANOS, false, 0.8D);
+        assertFalse(tuner.evaluate(sample(1, 0.9D, 0.5D, 100L, false, 0.1D)));
+        assertEquals(0L, tuner.getRunDuration(TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * @param tasks the number of concurrent tasks that ran the component
+     * @param busy the fraction of the interval for which each task was running the component
+     * @param commitShare the fraction of the running time that was spent committing sessions
+     */
+    private TuningSample sample(final int tasks, final double busy, final double commitShare, final long queued, final boolean backPressure, final double cpuLoad) {
+        final long taskNanos = (long) (INTERVAL_NANOS * tasks * busy);
+        return new TuningSample(INTERVAL_NANOS, taskNanos, (long) (taskNanos * commitShare), queued, backPressure, cpuLoad);
+    }
+}
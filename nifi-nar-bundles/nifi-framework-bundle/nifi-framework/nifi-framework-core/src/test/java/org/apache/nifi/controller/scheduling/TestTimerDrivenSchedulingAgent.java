@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.apache.nifi.annotation.behavior.BlockingIO;
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.ConnectableType;
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.FlowController;
+import org.apache.nifi.controller.ProcessorNode;
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.engine.WorkStealingFlowEngine;
+import org.apache.nifi.processor.AbstractProcessor;
+import org.apache.nifi.processor.ProcessContext;
+import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.processor.Processor;
+import org.apache.nifi.reporting.Bulletin;
+import org.apache.nifi.reporting.BulletinRepository;
+import org.apache.nifi.util.NiFiProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestTimerDrivenSchedulingAgent {
+    private FlowController flowController;
+    private BulletinRepository bulletinRepository;
+    private FlowEngine flowEngine;
+    private WorkStealingFlowEngine componentEngine;
+    private WorkStealingFlowEngine blockingIOEngine;
+    private TimerDrivenSchedulingAgent agent;
+
+    @Before
+    public void setup() {
+        flowController = Mockito.mock(FlowController.class, Mockito.RETURNS_DEEP_STUBS);
+        bulletinRepository = Mockito.mock(BulletinRepository.class);
+        when(flowController.getBulletinRepository()).thenReturn(bulletinRepository);
+
+        final NiFiProperties nifiProperties = NiFiProperties.createBasicNiFiProperties(TestTimerDrivenSchedulingAgent.class.getResource("/conf/nifi.properties").getFile(), null);
+        flowEngine = new FlowEngine(1, "Unit Test", true);
+        componentEngine = new WorkStealingFlowEngine(2, "Timer-Driven Process", true);
+        blockingIOEngine = new WorkStealingFlowEngine(1, "Blocking I/O Process", true);
+        agent = new TimerDrivenSchedulingAgent(flowController, flowEngine, componentEngine, blockingIOEngine, Mockito.mock(RepositoryContextFactory.class),
+            null, nifiProperties);
+    }
+
+    @After
+    public void shutdown() {
+        agent.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void testProcessorsRunOnEngineForBlockingIO() throws InterruptedException {
+        final Set<String> blockingThreadNames = ConcurrentHashMap.newKeySet();
+        final CountDownLatch blockingLatch = new CountDownLatch(2);
+        agent.schedule(createProcessorNode(new BlockingProcessor(), 2, blockingThreadNames, blockingLatch), new LifecycleState());
+
+        final Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        final CountDownLatch latch = new CountDownLatch(2);
+        agent.schedule(createProcessorNode(new NonBlockingProcessor(), 2, threadNames, latch), new LifecycleState());
+
+        assertTrue(blockingLatch.await(5, TimeUnit.SECONDS));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, blockingThreadNames.size());
+        assertTrue(blockingThreadNames.iterator().next().startsWith("Blocking I/O Process Thread-"));
+        for (final String threadName : threadNames) {
+            assertTrue(threadName, threadName.startsWith("Timer-Driven Process Thread-"));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockingIOSaturationCountedAndReported() throws InterruptedException {
+        // Occupy the only thread of the Blocking I/O pool
+        final CountDownLatch occupied = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        blockingIOEngine.execute(() -> {
+            occupied.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(occupied.await(5, TimeUnit.SECONDS));
+        while (blockingIOEngine.getActiveCount() < 1) {
+            Thread.sleep(10L);
+        }
+
+        final CountDownLatch latch = new CountDownLatch(2);
+        agent.schedule(createProcessorNode(new BlockingProcessor(), 2, ConcurrentHashMap.newKeySet(), latch), new LifecycleState());
+        assertEquals(2L, agent.getBlockingIOSaturationCount());
+
+        // The warning is rate-limited, so only one bulletin is created
+        verify(bulletinRepository, times(1)).addBulletin(any(Bulletin.class));
+
+        release.countDown();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        final CountDownLatch nonBlockingLatch = new CountDownLatch(1);
+        agent.schedule(createProcessorNode(new NonBlockingProcessor(), 1, ConcurrentHashMap.newKeySet(), nonBlockingLatch), new LifecycleState());
+        assertTrue(nonBlockingLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(2L, agent.getBlockingIOSaturationCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleTaskRunsAgainOnlyWhenSignalled() throws InterruptedException {
+        final AtomicInteger checks = new AtomicInteger(0);
+        final FlowFileQueue queue = Mockito.mock(FlowFileQueue.class);
+        when(queue.isActiveQueueEmpty()).thenAnswer(invocation -> {
+            checks.incrementAndGet();
+            return true;
+        });
+
+        final Connection connection = Mockito.mock(Connection.class);
+        when(connection.getSource()).thenReturn(Mockito.mock(Connectable.class));
+        when(connection.getFlowFileQueue()).thenReturn(queue);
+
+        final ProcessorNode procNode = Mockito.mock(ProcessorNode.class);
+        when(procNode.getIdentifier()).thenReturn("idle");
+        when(procNode.getProcessor()).thenReturn(new NonBlockingProcessor());
+        when(procNode.getConnectableType()).thenReturn(ConnectableType.PROCESSOR);
+        when(procNode.getMaxConcurrentTasks()).thenReturn(1);
+        when(procNode.hasIncomingConnection()).thenReturn(true);
+        when(procNode.getIncomingConnections()).thenReturn(Collections.singletonList(connection));
+
+        agent.schedule(procNode, new LifecycleState());
+        while (checks.get() == 0) {
+            Thread.sleep(10L);
+        }
+
+        // The bored yield duration is 10 millis, but an idle task is parked until it is signalled rather than polling on a timer
+        Thread.sleep(250L);
+        final int checksWhileIdle = checks.get();
+        Thread.sleep(250L);
+        assertEquals(checksWhileIdle, checks.get());
+
+        agent.onEvent(procNode);
+        while (checks.get() == checksWhileIdle) {
+            Thread.sleep(10L);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTaskStopsQuietlyAfterShutdown() throws InterruptedException {
+        final Logger logger = (Logger) LoggerFactory.getLogger(WorkStealingFlowEngine.class);
+        final ListAppender<ILoggingEvent> testAppender = new ListAppender<>();
+        testAppender.setName("Test");
+        testAppender.start();
+        logger.addAppender(testAppender);
+
+        try {
+            // Hold the task while it runs, so that it is rescheduled only once the engines have been shut down
+            final CountDownLatch running = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final ProcessorNode procNode = createProcessorNode(new NonBlockingProcessor(), 1, ConcurrentHashMap.newKeySet(), new CountDownLatch(1));
+            when(procNode.getSchedulingPeriod(TimeUnit.NANOSECONDS)).thenAnswer(invocation -> {
+                running.countDown();
+                release.await();
+                return TimeUnit.SECONDS.toNanos(1L);
+            });
+
+            agent.schedule(procNode, new LifecycleState());
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            agent.shutdown();
+            release.countDown();
+
+            assertTrue(componentEngine.awaitTermination(5, TimeUnit.SECONDS));
+            for (final ILoggingEvent event : testAppender.list) {
+                assertFalse("Unexpected log message: " + event.getFormattedMessage(), event.getLevel().isGreaterOrEqual(Level.ERROR));
+            }
+        } finally {
+            logger.detachAppender(testAppender);
+        }
+    }
+
+    @Test
+    public void testMaxThreadCountAppliedToEngines() {
+        // The FlowEngine is sized by its own property, so only the engine that runs components follows the maximum thread count
+        agent.setMaxThreadCount(20);
+        assertEquals(1, flowEngine.getCorePoolSize());
+        assertEquals(20, componentEngine.getParallelism());
+
+        // A thread that is lost to a terminated Processor is replaced in both engines
+        agent.incrementMaxThreadCount(2);
+        assertEquals(3, flowEngine.getCorePoolSize());
+        assertEquals(22, componentEngine.getParallelism());
+
+        agent.incrementMaxThreadCount(-2);
+        assertEquals(1, flowEngine.getCorePoolSize());
+        assertEquals(20, componentEngine.getParallelism());
+    }
+
+    /**
+     * Creates a Processor Node that is always yielded, so that each of its tasks runs once, records the name of its thread and then waits
+     * for the yield to expire
+     */
+    private ProcessorNode createProcessorNode(final Processor processor, final int concurrentTasks, final Set<String> threadNames, final CountDownLatch latch) {
+        final ProcessorNode procNode = Mockito.mock(ProcessorNode.class);
+        when(procNode.getIdentifier()).thenReturn(processor.getClass().getSimpleName());
+        when(procNode.getProcessor()).thenReturn(processor);
+        when(procNode.getConnectableType()).thenReturn(ConnectableType.PROCESSOR);
+        when(procNode.getMaxConcurrentTasks()).thenReturn(concurrentTasks);
+        when(procNode.getYieldExpiration()).thenAnswer(invocation -> {
+            threadNames.add(Thread.currentThread().getName());
+            latch.countDown();
+            return System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1L);
+        });
+        return procNode;
+    }
+
+    @BlockingIO
+    public static class BlockingProcessor extends AbstractProcessor {
+        @Override
+        public void onTrigger(final ProcessContext context, final ProcessSession session) {
+        }
+    }
+
+    public static class NonBlockingProcessor extends AbstractProcessor {
+        @Override
+        public void onTrigger(final ProcessContext context, final ProcessSession session) {
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.status.history;
+
+import org.apache.nifi.controller.status.LatencyStatus;
+import org.apache.nifi.controller.status.ProcessGroupStatus;
+import org.apache.nifi.controller.status.ProcessorStatus;
+import org.apache.nifi.util.file.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestEmbeddedComponentStatusRepository {
+    // Midnight, UTC
+    private static final long START_TIME = 1_500_076_800_000L;
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1L);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1L);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1L);
+
+    private static final MetricDescriptor<?> BYTES_READ = ProcessorStatusDescriptor.BYTES_READ.getDescriptor();
+    private static final MetricDescriptor<?> TASK_DURATION_99TH_PERCENTILE = ProcessorStatusDescriptor.TASK_DURATION_99TH_PERCENTILE.getDescriptor();
+
+    private final File directory = new File("target/status-repository");
+
+    @Before
+    @After
+    public void deleteDirectory() throws IOException {
+        if (directory.exists()) {
+            FileUtils.deleteFile(directory, true);
+        }
+    }
+
+    @Test
+    public void testCaptureAndQuery() {
+        final EmbeddedComponentStatusRepository repository = createRepository(DAY, 7 * DAY);
+        capture(repository, START_TIME, 100L, 0L, Collections.singletonMap("Records", 3L));
+        capture(repository, START_TIME + MINUTE, 0L, 0L, null);
+        capture(repository, START_TIME + 2 * MINUTE, 300L, 0L, null);
+
+        assertEquals(new Date(START_TIME + 2 * MINUTE), repository.getLastCaptureDate());
+
+        final StatusHistory history = repository.getProcessorStatusHistory("proc", new Date(START_TIME), new Date(START_TIME + HOUR), Integer.MAX_VALUE, true);
+        assertEquals("Processor", history.getComponentDetails().get(ComponentStatusRepository.COMPONENT_DETAIL_NAME));
+
+        final List<StatusSnapshot> snapshots = history.getStatusSnapshots();
+        assertEquals(3, snapshots.size());
+        assertEquals(Long.valueOf(100L), snapshots.get(0).getStatusMetric(BYTES_READ));
+        assertEquals(Long.valueOf(3L), getCounter(snapshots.get(0), "Records"));
+        assertTrue(snapshots.get(1) instanceof EmptyStatusSnapshot);
+        assertEquals(new Date(START_TIME + MINUTE), snapshots.get(1).getTimestamp());
+        assertEquals(Long.valueOf(300L), snapshots.get(2).getStatusMetric(BYTES_READ));
+        assertEquals(Long.valueOf(0L), getCounter(snapshots.get(2), "Records"));
+
+        final StatusHistory withoutCounters = repository.getProcessorStatusHistory("proc", new Date(START_TIME), new Date(START_TIME + HOUR), Integer.MAX_VALUE, false);
+        assertEquals(null, getCounter(withoutCounters.getStatusSnapshots().get(0), "Records"));
+
+        final StatusHistory reduced = repository.getProcessorStatusHistory("proc", new Date(START_TIME), new Date(START_TIME + HOUR), 2, true);
+        assertEquals(2, reduced.getStatusSnapshots().size());
+        assertEquals(new Date(START_TIME + 2 * MINUTE), reduced.getStatusSnapshots().get(1).getTimestamp());
+
+        final StatusHistory unknown = repository.getProcessorStatusHistory("unknown", new Date(START_TIME), new Date(START_TIME + HOUR), Integer.MAX_VALUE, true);
+        assertTrue(unknown.getStatusSnapshots().isEmpty());
+    }
+
+    @Test
+    public void testIdleComponentHasEmptyHistory() {
+        final EmbeddedComponentStatusRepository repository = createRepository(DAY, 7 * DAY);
+        capture(repository, START_TIME, 0L, 0L, null);
+        capture(repository, START_TIME + MINUTE, 0L, 0L, null);
+
+        final StatusHistory history = repository.getProcessorStatusHistory("proc", new Date(START_TIME), new Date(START_TIME + HOUR), Integer.MAX_VALUE, true);
+        assertEquals("Processor", history.getComponentDetails().get(ComponentStatusRepository.COMPONENT_DETAIL_NAME));
+        assertEquals(2, history.getStatusSnapshots().size());
+        assertTrue(history.getStatusSnapshots().stream().allMatch(snapshot -> snapshot instanceof EmptyStatusSnapshot));
+    }
+
+    @Test
+    public void testRecoverFromJournal() {
+        final EmbeddedComponentStatusRepository repository = createRepository(DAY, 7 * DAY);
+        capture(repository, START_TIME, 100L, 0L, Collections.singletonMap("Records", 3L));
+        capture(repository, START_TIME + MINUTE, 200L, 0L, null);
+
+        final EmbeddedComponentStatusRepository recovered = createRepository(DAY, 7 * DAY);
+        assertEquals(new Date(START_TIME + MINUTE), recovered.getLastCaptureDate());
+
+        capture(recovered, START_TIME + 2 * MINUTE, 300L, 0L, null);
+
+        final List<StatusSnapshot> snapshots = recovered.getProcessorStatusHistory("proc", new Date(START_TIME), new Date(START_TIME + HOUR), Integer.MAX_VALUE, true)
+            .getStatusSnapshots();
+        assertEquals(3, snapshots.size());
+        assertEquals(Long.valueOf(100L), snapshots.get(0).getStatusMetric(BYTES_READ));
+        assertEquals(Long.valueOf(3L), getCounter(snapshots.get(0), "Records"));
+        assertEquals(Long.valueOf(200L), snapshots.get(1).getStatusMetric(BYTES_READ));
+        assertEquals(Long.valueOf(300L), snapshots.get(2).getStatusMetric(BYTES_READ));
+
+        // The capture after recovery must have been appended to the same journal
+        final EmbeddedComponentStatusRepository recoveredAgain = createRepository(DAY, 7 * DAY);
+        assertEquals(3, recoveredAgain.getProcessorStatusHistory("proc", new Date(START_TIME), new Date(START_TIME + HOUR), Integer.MAX_VALUE, true)
+            .getStatusSnapshots().size());
+    }
+
+    @Test
+    public void testSegmentWrittenOnRollOver() {
+        final EmbeddedComponentStatusRepository repository = createRepository(DAY, 7 * DAY);
+        for (int i = 0; i < 120; i++) {
+            capture(repository, START_TIME + i * MINUTE, i, 0L, null);
+        }
+
+        assertTrue(new File(directory, "full-" + START_TIME + ".seg").exists());
+        assertFalse(new File(directory, "full-" + START_TIME + ".journal").exists());
+        assertTrue(new File(directory, "full-" + (START_TIME + HOUR) + ".journal").exists());
+
+        final EmbeddedComponentStatusRepository recovered = createRepository(DAY, 7 * DAY);
+        final List<StatusSnapshot> snapshots = recovered.getProcessorStatusHistory("proc", new Date(START_TIME), new Date(START_TIME + 2 * HOUR), Integer.MAX_VALUE, true)
+            .getStatusSnapshots();
+
+        // The processor is idle in the first capture
+        assertEquals(120, snapshots.size());
+        assertTrue(snapshots.get(0) instanceof EmptyStatusSnapshot);
+        for (int i = 1; i < 120; i++) {
+            assertEquals(new Date(START_TIME + i * MINUTE), snapshots.get(i).getTimestamp());
+            assertEquals(Long.valueOf(i), snapshots.get(i).getStatusMetric(BYTES_READ));
+        }
+
+        final List<StatusSnapshot> secondHour = recovered.getProcessorStatusHistory("proc", new Date(START_TIME + HOUR + 30 * MINUTE), null, Integer.MAX_VALUE, true)
+            .getStatusSnapshots();
+        assertEquals(30, secondHour.size());
+        assertEquals(Long.valueOf(90L), secondHour.get(0).getStatusMetric(BYTES_READ));
+    }
+
+    @Test
+    public void testDownsampledAfterFullResolutionRetention() {
+        final EmbeddedComponentStatusRepository repository = createRepository(DAY, 7 * DAY);
+        for (int i = 0; i < 60; i += 5) {
+            capture(repository, START_TIME + i * MINUTE, i + 1, i * 1000L, null);
+        }
+
+        // Roll over a segment more than a day after the end of the first day, so that the first day is downsampled
+        capture(repository, START_TIME + 2 * DAY, 1L, 0L, null);
+        capture(repository, START_TIME + 2 * DAY + HOUR, 1L, 0L, null);
+
+        assertTrue(new File(directory, "downsampled-" + START_TIME + ".seg").exists());
+        assertFalse(new File(directory, "full-" + START_TIME + ".seg").exists());
+
+        final List<StatusSnapshot> snapshots = repository.getProcessorStatusHistory("proc", new Date(START_TIME), new Date(START_TIME + DAY), Integer.MAX_VALUE, true)
+            .getStatusSnapshots();
+        assertEquals(4, snapshots.size());
+        for (int interval = 0; interval < 4; interval++) {
+            final long firstMinute = interval * 15L;
+            assertEquals(new Date(START_TIME + firstMinute * MINUTE), snapshots.get(interval).getTimestamp());
+
+            // Bytes Read is averaged over the captures of the interval, while the percentile is the largest of the interval
+            assertEquals(Long.valueOf(firstMinute + 6L), snapshots.get(interval).getStatusMetric(BYTES_READ));
+            assertEquals(Long.valueOf((firstMinute + 10L) * 1000L), snapshots.get(interval).getStatusMetric(TASK_DURATION_99TH_PERCENTILE));
+        }
+
+        // The downsampled segment must be found after a restart, and the full resolution segments must not be downsampled twice
+        final EmbeddedComponentStatusRepository recovered = createRepository(DAY, 7 * DAY);
+        assertEquals(4, recovered.getProcessorStatusHistory("proc", new Date(START_TIME), new Date(START_TIME + DAY), Integer.MAX_VALUE, true)
+            .getStatusSnapshots().size());
+    }
+
+    @Test
+    public void testExpiredAfterRetention() {
+        final EmbeddedComponentStatusRepository repository = createRepository(HOUR, 2 * DAY);
+        capture(repository, START_TIME, 1L, 0L, null);
+        capture(repository, START_TIME + DAY, 2L, 0L, null);
+        capture(repository, START_TIME + 3 * DAY, 3L, 0L, null);
+        capture(repository, START_TIME + 3 * DAY + HOUR, 4L, 0L, null);
+
+        assertFalse(new File(directory, "downsampled-" + START_TIME + ".seg").exists());
+        assertTrue(new File(directory, "downsampled-" + (START_TIME + DAY) + ".seg").exists());
+
+        final List<StatusSnapshot> snapshots = repository.getProcessorStatusHistory("proc", new Date(START_TIME), new Date(START_TIME + 4 * DAY), Integer.MAX_VALUE, true)
+            .getStatusSnapshots();
+        assertEquals(3, snapshots.size());
+        assertEquals(Long.valueOf(2L), snapshots.get(0).getStatusMetric(BYTES_READ));
+        assertEquals(Long.valueOf(4L), snapshots.get(2).getStatusMetric(BYTES_READ));
+    }
+
+    @Test
+    public void testGarbageCollectionHistory() {
+        final EmbeddedComponentStatusRepository repository = createRepository(DAY, 7 * DAY);
+        for (int i = 0; i < 3; i++) {
+            final Date timestamp = new Date(START_TIME + i * 30 * MINUTE);
+            final List<GarbageCollectionStatus> gcStatus = new ArrayList<>();
+            gcStatus.add(new StandardGarbageCollectionStatus("G1 Young Generation", timestamp, 10L * i, 100L * i));
+            gcStatus.add(new StandardGarbageCollectionStatus("G1 Old Generation", timestamp, i, 1000L * i));
+            repository.capture(createRootGroupStatus(0L, 0L, null), gcStatus, timestamp);
+        }
+
+        final GarbageCollectionHistory history = repository.getGarbageCollectionHistory(new Date(START_TIME), new Date(START_TIME + HOUR));
+        assertEquals(2, history.getMemoryManagerNames().size());
+
+        final List<GarbageCollectionStatus> youngStatuses = history.getGarbageCollectionStatuses("G1 Young Generation");
+        assertEquals(3, youngStatuses.size());
+        assertEquals(new Date(START_TIME + HOUR), youngStatuses.get(2).getTimestamp());
+        assertEquals(20L, youngStatuses.get(2).getCollectionCount());
+        assertEquals(200L, youngStatuses.get(2).getCollectionMillis());
+
+        final List<GarbageCollectionStatus> oldStatuses = history.getGarbageCollectionStatuses("G1 Old Generation");
+        assertEquals(3, oldStatuses.size());
+        assertEquals(1000L, oldStatuses.get(1).getCollectionMillis());
+    }
+
+    private EmbeddedComponentStatusRepository createRepository(final long fullResolutionRetentionMillis, final long retentionMillis) {
+        return new EmbeddedComponentStatusRepository(directory, fullResolutionRetentionMillis, retentionMillis, TimeUnit.MINUTES.toMillis(15L));
+    }
+
+    private void capture(final EmbeddedComponentStatusRepository repository, final long timestamp, final long bytesRead, final long taskDuration99thPercentile,
+                         final Map<String, Long> counters) {
+        repository.capture(createRootGroupStatus(bytesRead, taskDuration99thPercentile, counters), Collections.emptyList(), new Date(timestamp));
+    }
+
+    private ProcessGroupStatus createRootGroupStatus(final long bytesRead, final long taskDuration99thPercentile, final Map<String, Long> counters) {
+        final ProcessorStatus processorStatus = new ProcessorStatus();
+        processorStatus.setId("proc");
+        processorStatus.setGroupId("root");
+        processorStatus.setName("Processor");
+        processorStatus.setType("GenerateFlowFile");
+        processorStatus.setBytesRead(bytesRead);
+        processorStatus.setCounters(counters);
+        processorStatus.setTaskDurationLatency(new LatencyStatus(1L, 0L, 0L, taskDuration99thPercentile, 0L, 0L));
+
+        final ProcessGroupStatus groupStatus = new ProcessGroupStatus();
+        groupStatus.setId("root");
+        groupStatus.setName("Root");
+        groupStatus.setBytesRead(bytesRead);
+        groupStatus.setBytesWritten(0L);
+        groupStatus.setInputCount(0);
+        groupStatus.setInputContentSize(0L);
+        groupStatus.setOutputCount(0);
+        groupStatus.setOutputContentSize(0L);
+        groupStatus.setQueuedCount(0);
+        groupStatus.setQueuedContentSize(0L);
+        groupStatus.setProcessorStatus(Collections.singletonList(processorStatus));
+        return groupStatus;
+    }
+
+    private Long getCounter(final StatusSnapshot snapshot, final String counterName) {
+        return snapshot.getMetricDescriptors().stream()
+            .filter(descriptor -> descriptor.isCounter() && descriptor.getField().equals(counterName))
+            .findFirst()
+            .map(snapshot::getStatusMetric)
+            .orElse(null);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestWorkStealingFlowEngine {
+
+    private WorkStealingFlowEngine engine;
+
+    @Before
+    public void setup() {
+        engine = new WorkStealingFlowEngine(2, "Test Engine", true);
+    }
+
+    @After
+    public void cleanup() throws InterruptedException {
+        engine.shutdownNow();
+        engine.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test(timeout = 10000)
+    public void testTasksResubmittedFromEngineThreadsRun() throws InterruptedException {
+        final AtomicInteger invocations = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(1);
+        engine.execute(new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(Thread.currentThread().getName().startsWith("Test Engine Thread-"));
+                if (invocations.incrementAndGet() < 1000) {
+                    engine.execute(this);
+                } else {
+                    latch.countDown();
+                }
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1000, invocations.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testScheduledTaskRunsAfterDelay() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        engine.schedule(latch::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test(timeout = 10000)
+    public void testTasksMoveToNewPoolWhenParallelismChanges() throws InterruptedException {
+        final AtomicInteger invocations = new AtomicInteger(0);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        engine.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                if (invocations.incrementAndGet() < 100_000) {
+                    engine.execute(this);
+                } else {
+                    finished.countDown();
+                }
+            }
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        engine.setParallelism(4);
+        assertEquals(4, engine.getParallelism());
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(100_000, invocations.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testExceptionDoesNotStopEngine() throws InterruptedException {
+        engine.execute(() -> {
+            throw new RuntimeException("Intentional Unit Test Exception");
+        });
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        engine.execute(latch::countDown);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        engine.shutdown();
+        assertTrue(engine.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(engine.isTerminated());
+        assertFalse(engine.getActiveCount() > 0);
+    }
+}
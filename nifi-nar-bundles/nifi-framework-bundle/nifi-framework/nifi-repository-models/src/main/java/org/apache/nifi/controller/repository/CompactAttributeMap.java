@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * An immutable Map of FlowFile attributes that is designed to keep the heap footprint of queued FlowFiles small.
+ * </p>
+ *
+ * <p>
+ * A map is either <i>flat</i>, in which case its entries are stored in parallel arrays (with a hash index
+ * only if the map is large), or it is a <i>delta</i>, in which case it stores only the entries that differ from
+ * a parent map, which it shares with the FlowFile that it was derived from. A removed attribute is stored in a delta
+ * as a <code>null</code> value. Deriving a new map by calling {@link #update(Map)} therefore costs time and space
+ * proportional to the number of changed attributes rather than to the total number of attributes. In order to keep
+ * lookups cheap, a delta is flattened once the chain of parents becomes too deep or once the delta grows large relative
+ * to the size of the map.
+ * </p>
+ *
+ * <p>
+ * Attribute names are interned, as the same handful of names is generally shared by millions of FlowFiles.
+ * </p>
+ *
+ * <b>Immutable - Thread Safe</b>
+ */
+final class CompactAttributeMap extends AbstractMap<String, String> {
+    static final CompactAttributeMap EMPTY = new CompactAttributeMap(null, new String[0], new String[0], new int[0], 0, 0);
+
+    // Maps with more than this many entries are indexed by a HashMap rather than scanned linearly.
+    static final int MAX_LINEAR_SCAN_SIZE = 48;
+    // Maximum number of delta maps that may be chained together before the map is flattened.
+    static final int MAX_DEPTH = 8;
+    // Maximum number of distinct attribute names that will be interned. Beyond this, names are simply not interned,
+    // which protects the heap from flows that generate attribute names dynamically.
+    static final int MAX_INTERNED_KEYS = 25_000;
+
+    private static final ConcurrentMap<String, String> internedKeys = new ConcurrentHashMap<>();
+
+    static {
+        for (final CoreAttributes coreAttribute : CoreAttributes.values()) {
+            internKey(coreAttribute.key());
+        }
+    }
+
+    private final CompactAttributeMap parent;
+    private final String[] keys;
+    private final String[] values;
+    private final int[] hashes;
+    private final Map<String, Integer> index;
+    private final int size;
+    private final int depth;
+
+    private Set<Entry<String, String>> entrySet;
+
+    private CompactAttributeMap(final CompactAttributeMap parent, final String[] keys, final String[] values, final int[] hashes, final int size, final int depth) {
+        this.parent = parent;
+        this.keys = keys;
+        this.values = values;
+        this.hashes = hashes;
+        this.size = size;
+        this.depth = depth;
+
+        if (keys.length > MAX_LINEAR_SCAN_SIZE) {
+            index = new HashMap<>(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                index.put(keys[i], i);
+            }
+        } else {
+            index = null;
+        }
+    }
+
+    /**
+     * Returns a CompactAttributeMap that contains the same entries as the given map. Entries with a <code>null</code> key or value are ignored.
+     *
+     * @param attributes the attributes to copy
+     * @return a CompactAttributeMap with the same entries as the given map
+     */
+    static CompactAttributeMap of(final Map<String, String> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return EMPTY;
+        }
+        if (attributes instanceof CompactAttributeMap) {
+            return (CompactAttributeMap) attributes;
+        }
+
+        return flatten(EMPTY, attributes);
+    }
+
+    /**
+     * Returns a map that consists of all of the entries of this map, updated with the given changes. A <code>null</code> value
+     * in the given changes indicates that the attribute is to be removed. This map is not modified.
+     *
+     * @param changes the attributes to add, update or (by mapping to <code>null</code>) remove
+     * @return a map reflecting the given changes, which may be this map if the changes do not alter any attributes
+     */
+    CompactAttributeMap update(final Map<String, String> changes) {
+        if (changes == null || changes.isEmpty()) {
+            return this;
+        }
+
+        // Determine which of the changes actually have an effect so that we don't grow the delta needlessly.
+        int effectiveChanges = 0;
+        int newSize = size;
+        for (final Map.Entry<String, String> entry : changes.entrySet()) {
+            final String key = entry.getKey();
+            if (key == null) {
+                continue;
+            }
+
+            final String currentValue = get(key);
+            final String newValue = entry.getValue();
+            if (newValue == null) {
+                if (currentValue != null) {
+                    effectiveChanges++;
+                    newSize--;
+                }
+            } else if (currentValue == null) {
+                effectiveChanges++;
+                newSize++;
+            } else if (!currentValue.equals(newValue)) {
+                effectiveChanges++;
+            }
+        }
+
+        if (effectiveChanges == 0) {
+            return this;
+        }
+
+        if (depth >= MAX_DEPTH || effectiveChanges > MAX_LINEAR_SCAN_SIZE || effectiveChanges * 2 > newSize) {
+            return flatten(this, changes);
+        }
+
+        final String[] deltaKeys = new String[effectiveChanges];
+        final String[] deltaValues = new String[effectiveChanges];
+        final int[] deltaHashes = new int[effectiveChanges];
+        int i = 0;
+        for (final Map.Entry<String, String> entry : changes.entrySet()) {
+            final String key = entry.getKey();
+            if (key == null) {
+                continue;
+            }
+
+            final String currentValue = get(key);
+            final String newValue = entry.getValue();
+            if (newValue == null ? currentValue == null : newValue.equals(currentValue)) {
+                continue;
+            }
+
+            deltaKeys[i] = internKey(key);
+            deltaValues[i] = newValue;
+            deltaHashes[i] = key.hashCode();
+            i++;
+        }
+
+        return new CompactAttributeMap(this, deltaKeys, deltaValues, deltaHashes, newSize, depth + 1);
+    }
+
+    private static CompactAttributeMap flatten(final CompactAttributeMap base, final Map<String, String> changes) {
+        final Map<String, String> merged = new HashMap<>(base);
+        for (final Map.Entry<String, String> entry : changes.entrySet()) {
+            final String key = entry.getKey();
+            if (key == null) {
+                continue;
+            }
+
+            if (entry.getValue() == null) {
+                merged.remove(key);
+            } else {
+                merged.put(key, entry.getValue());
+            }
+        }
+
+        final int mergedSize = merged.size();
+        if (mergedSize == 0) {
+            return EMPTY;
+        }
+
+        final String[] flatKeys = new String[mergedSize];
+        final String[] flatValues = new String[mergedSize];
+        final int[] flatHashes = new int[mergedSize];
+        int i = 0;
+        for (final Map.Entry<String, String> entry : merged.entrySet()) {
+            flatKeys[i] = internKey(entry.getKey());
+            flatValues[i] = entry.getValue();
+            flatHashes[i] = entry.getKey().hashCode();
+            i++;
+        }
+
+        return new CompactAttributeMap(null, flatKeys, flatValues, flatHashes, mergedSize, 0);
+    }
+
+    static String internKey(final String key) {
+        final String interned = internedKeys.get(key);
+        if (interned != null) {
+            return interned;
+        }
+
+        if (internedKeys.size() >= MAX_INTERNED_KEYS) {
+            return key;
+        }
+
+        final String existing = internedKeys.putIfAbsent(key, key);
+        return existing == null ? key : existing;
+    }
+
+    private int indexOf(final String key, final int hash) {
+        if (index != null) {
+            final Integer position = index.get(key);
+            return position == null ? -1 : position;
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            final String candidate = keys[i];
+            if (candidate == key || (hashes[i] == hash && candidate.equals(key))) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public String get(final Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        final String stringKey = (String) key;
+        final int hash = stringKey.hashCode();
+
+        CompactAttributeMap map = this;
+        while (map != null) {
+            final int position = map.indexOf(stringKey, hash);
+            if (position > -1) {
+                return map.values[position];
+            }
+
+            map = map.parent;
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        return entrySet;
+    }
+
+    /**
+     * Iterates over the entries of this map, starting with the entries held locally and then moving up the chain of
+     * parents, skipping any entry whose key has already been visited (i.e., is overridden or removed by a descendant).
+     */
+    private class EntryIterator implements Iterator<Entry<String, String>> {
+        private CompactAttributeMap current = CompactAttributeMap.this;
+        private int position = -1;
+        private Entry<String, String> next = advance();
+
+        private Entry<String, String> advance() {
+            while (current != null) {
+                position++;
+                if (position >= current.keys.length) {
+                    current = current.parent;
+                    position = -1;
+                    continue;
+                }
+
+                final String key = current.keys[position];
+                final String value = current.values[position];
+                if (value == null || isShadowed(key, current.hashes[position])) {
+                    continue;
+                }
+
+                return new SimpleImmutableEntry<>(key, value);
+            }
+
+            return null;
+        }
+
+        private boolean isShadowed(final String key, final int hash) {
+            CompactAttributeMap map = CompactAttributeMap.this;
+            while (map != current) {
+                if (map.indexOf(key, hash) > -1) {
+                    return true;
+                }
+
+                map = map.parent;
+            }
+
+            return false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            final Entry<String, String> entry = next;
+            next = advance();
+            return entry;
+        }
+    }
+}
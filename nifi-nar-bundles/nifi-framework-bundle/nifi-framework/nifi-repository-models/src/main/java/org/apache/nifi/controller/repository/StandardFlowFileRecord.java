@@ -16,10 +16,8 @@
  */
 package org.apache.nifi.controller.repository;
 
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -49,7 +47,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
     private final long lineageStartIndex;
     private final long size;
     private final long penaltyExpirationMs;
-    private final Map<String, String> attributes;
+    private final CompactAttributeMap attributes;
     private final ContentClaim claim;
     private final long claimOffset;
     private final long lastQueueDate;
@@ -57,7 +55,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
     private StandardFlowFileRecord(final Builder builder) {
         this.id = builder.bId;
-        this.attributes = builder.bAttributes == null ? Collections.emptyMap() : builder.bAttributes;
+        this.attributes = builder.buildAttributes();
         this.entryDate = builder.bEntryDate;
         this.lineageStartDate = builder.bLineageStartDate;
         this.lineageStartIndex = builder.bLineageStartIndex;
@@ -106,7 +104,8 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
     @Override
     public Map<String, String> getAttributes() {
-        return Collections.unmodifiableMap(this.attributes);
+        // CompactAttributeMap is immutable, so there is no need to wrap it.
+        return this.attributes;
     }
 
     @Override
@@ -180,8 +179,9 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
         private long bClaimOffset = 0L;
         private long bLastQueueDate = System.currentTimeMillis();
         private long bQueueDateIndex = 0L;
+        // The attributes of the FlowFile that this builder was created from, which are never modified, and the changes to apply to them.
         private Map<String, String> bAttributes;
-        private boolean bAttributesCopied = false;
+        private Map<String, String> bUpdatedAttributes;
 
         public Builder id(final long id) {
             bId = id;
@@ -211,37 +211,33 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
             return this;
         }
 
-        private Map<String, String> initializeAttributes() {
-            if (bAttributes == null) {
-                bAttributes = new HashMap<>();
-                bAttributesCopied = true;
-            } else if (!bAttributesCopied) {
-                bAttributes = new HashMap<>(bAttributes);
-                bAttributesCopied = true;
+        private Map<String, String> initializeUpdatedAttributes() {
+            if (bUpdatedAttributes == null) {
+                bUpdatedAttributes = new HashMap<>();
             }
 
-            return bAttributes;
+            return bUpdatedAttributes;
         }
 
         public Builder addAttribute(final String key, final String value) {
             if (key != null && value != null) {
-                initializeAttributes().put(FlowFile.KeyValidator.validateKey(key), value);
+                initializeUpdatedAttributes().put(FlowFile.KeyValidator.validateKey(key), value);
             }
             return this;
         }
 
         public Builder addAttributes(final Map<String, String> attributes) {
-            final Map<String, String> initializedAttributes = initializeAttributes();
-
             if (null != attributes) {
                 for (final String key : attributes.keySet()) {
                     FlowFile.KeyValidator.validateKey(key);
                 }
+
+                final Map<String, String> updatedAttributes = initializeUpdatedAttributes();
                 for (final Map.Entry<String, String> entry : attributes.entrySet()) {
                     final String key = entry.getKey();
                     final String value = entry.getValue();
                     if (key != null && value != null) {
-                        initializedAttributes.put(key, value);
+                        updatedAttributes.put(key, value);
                     }
                 }
             }
@@ -255,7 +251,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
                         continue;
                     }
 
-                    initializeAttributes().remove(key);
+                    removeAttribute(key);
                 }
             }
             return this;
@@ -268,7 +264,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
                         continue;
                     }
 
-                    initializeAttributes().remove(key);
+                    removeAttribute(key);
                 }
             }
             return this;
@@ -276,22 +272,36 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
         public Builder removeAttributes(final Pattern keyPattern) {
             if (keyPattern != null) {
-                final Iterator<String> iterator = initializeAttributes().keySet().iterator();
-                while (iterator.hasNext()) {
-                    final String key = iterator.next();
+                final Set<String> candidateKeys = new HashSet<>();
+                if (bAttributes != null) {
+                    candidateKeys.addAll(bAttributes.keySet());
+                }
+                if (bUpdatedAttributes != null) {
+                    candidateKeys.addAll(bUpdatedAttributes.keySet());
+                }
 
+                for (final String key : candidateKeys) {
                     if (CoreAttributes.UUID.key().equals(key)) {
                         continue;
                     }
 
                     if (keyPattern.matcher(key).matches()) {
-                        iterator.remove();
+                        removeAttribute(key);
                     }
                 }
             }
             return this;
         }
 
+        private void removeAttribute(final String key) {
+            if (key == null) {
+                return;
+            }
+
+            // A null value indicates to CompactAttributeMap that the attribute is to be removed.
+            initializeUpdatedAttributes().put(key, null);
+        }
+
         public Builder contentClaim(final ContentClaim claim) {
             this.bClaim = claim;
             return this;
@@ -325,7 +335,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
             // Map is wrapped thousands of times until it hits a StackOverflowError. We want the getter to return
             // UnmodifiableMap, though, so that Processors cannot directly modify that Map.
             bAttributes = specFlowFile instanceof StandardFlowFileRecord ? ((StandardFlowFileRecord) specFlowFile).attributes : specFlowFile.getAttributes();
-            bAttributesCopied = false;
+            bUpdatedAttributes = null;
             bClaim = specFlowFile.getContentClaim();
             bClaimOffset = specFlowFile.getContentClaimOffset();
             bLastQueueDate = specFlowFile.getLastQueueDate();
@@ -334,6 +344,10 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
             return this;
         }
 
+        private CompactAttributeMap buildAttributes() {
+            return CompactAttributeMap.of(bAttributes).update(bUpdatedAttributes);
+        }
+
         public FlowFileRecord build() {
             return new StandardFlowFileRecord(this);
         }
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestCompactAttributeMap {
+
+    private Map<String, String> createAttributes(final int count) {
+        final Map<String, String> attributes = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            attributes.put("attribute-" + i, "value-" + i);
+        }
+        return attributes;
+    }
+
+    @Test
+    public void testCopyOfMap() {
+        for (final int count : new int[] {0, 1, 30, CompactAttributeMap.MAX_LINEAR_SCAN_SIZE + 10}) {
+            final Map<String, String> attributes = createAttributes(count);
+            final CompactAttributeMap map = CompactAttributeMap.of(attributes);
+
+            assertEquals(attributes, map);
+            assertEquals(map, attributes);
+            assertEquals(attributes.hashCode(), map.hashCode());
+            assertEquals(count, map.size());
+            assertNull(map.get("attribute-" + count));
+        }
+    }
+
+    @Test
+    public void testUpdateCreatesDeltaSharingParent() {
+        final CompactAttributeMap parent = CompactAttributeMap.of(createAttributes(30));
+
+        final Map<String, String> changes = new HashMap<>();
+        changes.put("attribute-1", "updated");
+        changes.put("new-attribute", "new");
+        changes.put("attribute-2", null);
+        final CompactAttributeMap child = parent.update(changes);
+
+        assertEquals(1, child.getDepth());
+        assertEquals(30, child.size());
+        assertEquals("updated", child.get("attribute-1"));
+        assertEquals("new", child.get("new-attribute"));
+        assertNull(child.get("attribute-2"));
+        assertFalse(child.containsKey("attribute-2"));
+        assertEquals("value-3", child.get("attribute-3"));
+
+        final Map<String, String> expected = createAttributes(30);
+        expected.put("attribute-1", "updated");
+        expected.put("new-attribute", "new");
+        expected.remove("attribute-2");
+        assertEquals(expected, child);
+        assertEquals(expected, new HashMap<>(child));
+
+        // parent must be unaffected
+        assertEquals(createAttributes(30), parent);
+    }
+
+    @Test
+    public void testUpdateWithNoEffectiveChangesReturnsSameMap() {
+        final CompactAttributeMap map = CompactAttributeMap.of(createAttributes(10));
+        assertSame(map, map.update(null));
+        assertSame(map, map.update(Collections.emptyMap()));
+        assertSame(map, map.update(Collections.singletonMap("attribute-1", "value-1")));
+        assertSame(map, map.update(Collections.singletonMap("not-there", null)));
+    }
+
+    @Test
+    public void testDeepChainsAreFlattened() {
+        CompactAttributeMap map = CompactAttributeMap.of(createAttributes(30));
+        final Map<String, String> expected = createAttributes(30);
+
+        for (int i = 0; i < 100; i++) {
+            final String value = UUID.randomUUID().toString();
+            map = map.update(Collections.singletonMap("attribute-" + (i % 30), value));
+            expected.put("attribute-" + (i % 30), value);
+
+            assertTrue(map.getDepth() <= CompactAttributeMap.MAX_DEPTH);
+            assertEquals(expected, map);
+        }
+    }
+
+    @Test
+    public void testLargeDeltaIsFlattened() {
+        final CompactAttributeMap map = CompactAttributeMap.of(createAttributes(4));
+        final CompactAttributeMap updated = map.update(createAttributes(20));
+        assertEquals(0, updated.getDepth());
+        assertEquals(createAttributes(20), updated);
+    }
+
+    @Test
+    public void testRandomUpdatesMatchHashMap() {
+        final Random random = new Random(12345L);
+        CompactAttributeMap map = CompactAttributeMap.EMPTY;
+        final Map<String, String> expected = new HashMap<>();
+
+        for (int i = 0; i < 2000; i++) {
+            final Map<String, String> changes = new HashMap<>();
+            final int numChanges = random.nextInt(4) + 1;
+            for (int j = 0; j < numChanges; j++) {
+                final String key = "key-" + random.nextInt(80);
+                final String value = random.nextInt(4) == 0 ? null : "value-" + random.nextInt(1000);
+                changes.put(key, value);
+            }
+
+            map = map.update(changes);
+            for (final Map.Entry<String, String> entry : changes.entrySet()) {
+                if (entry.getValue() == null) {
+                    expected.remove(entry.getKey());
+                } else {
+                    expected.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected, map);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        CompactAttributeMap.of(createAttributes(5)).put("hello", "world");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutableThroughKeySet() {
+        CompactAttributeMap.of(createAttributes(5)).keySet().remove("attribute-1");
+    }
+
+    @Test
+    public void testKeysAreInterned() {
+        final String key = new String("interned.attribute.name");
+        final String otherKey = new String("interned.attribute.name");
+
+        final CompactAttributeMap first = CompactAttributeMap.of(Collections.singletonMap(key, "a"));
+        final CompactAttributeMap second = CompactAttributeMap.of(Collections.singletonMap(otherKey, "b"));
+
+        assertSame(first.keySet().iterator().next(), second.keySet().iterator().next());
+    }
+
+    @Test
+    public void testFlowFileRecordBuilderSharesAttributes() {
+        final Map<String, String> attributes = createAttributes(30);
+        attributes.put("uuid", UUID.randomUUID().toString());
+        final FlowFileRecord original = new StandardFlowFileRecord.Builder().addAttributes(attributes).build();
+
+        final FlowFileRecord clone = new StandardFlowFileRecord.Builder()
+            .fromFlowFile(original)
+            .addAttribute("uuid", UUID.randomUUID().toString())
+            .build();
+
+        assertEquals(1, ((CompactAttributeMap) clone.getAttributes()).getDepth());
+        assertEquals(attributes.get("attribute-7"), clone.getAttribute("attribute-7"));
+        assertEquals(31, clone.getAttributes().size());
+        assertEquals(attributes, original.getAttributes());
+
+        final FlowFileRecord removed = new StandardFlowFileRecord.Builder()
+            .fromFlowFile(clone)
+            .removeAttributes(Pattern.compile("attribute-1.*"))
+            .removeAttributes("uuid")
+            .build();
+
+        assertEquals(20, removed.getAttributes().size());
+        assertEquals(clone.getAttribute("uuid"), removed.getAttribute("uuid"));
+        assertNull(removed.getAttribute("attribute-15"));
+        assertEquals(31, clone.getAttributes().size());
+    }
+}
@@ -92,6 +92,11 @@ public class EncryptedWriteAheadProvenanceRepository extends WriteAheadProvenanc
             throw new IOException("The provided configuration does not support a encrypted repository");
         }
 
+        // Columnar segments are written in plaintext, so they cannot replace the encrypted event files
+        if (getConfig().isColumnarEventFiles()) {
+            throw new IOException("The encrypted repository does not support the COLUMNAR value for " + RepositoryConfiguration.EVENT_FILE_LAYOUT);
+        }
+
         // Build a factory using lambda which injects the encryptor
         final RecordWriterFactory recordWriterFactory = (file, idGenerator, compressed, createToc) -> {
             try {
@@ -39,6 +39,9 @@ public class RepositoryConfiguration {
 
     public static final String CONCURRENT_MERGE_THREADS = "nifi.provenance.repository.concurrent.merge.threads";
     public static final String WARM_CACHE_FREQUENCY = "nifi.provenance.repository.warm.cache.frequency";
+    public static final String EVENT_FILE_LAYOUT = "nifi.provenance.repository.event.file.layout";
+    public static final String LINEAGE_INDEX_MAX_EVENT_IDS = "nifi.provenance.repository.lineage.index.max.event.ids";
+    public static final String LINEAGE_CACHE_MAX_EVENTS = "nifi.provenance.repository.lineage.cache.max.events";
 
     private final Map<String, File> storageDirectories = new LinkedHashMap<>();
     private long recordLifeMillis = TimeUnit.MILLISECONDS.convert(24, TimeUnit.HOURS);
@@ -60,12 +63,15 @@ public class RepositoryConfiguration {
     private List<SearchableField> searchableFields = new ArrayList<>();
     private List<SearchableField> searchableAttributes = new ArrayList<>();
     private boolean compress = true;
+    private boolean columnarEventFiles = false;
     private boolean alwaysSync = false;
     private int queryThreadPoolSize = 2;
     private int indexThreadPoolSize = 1;
     private boolean allowRollover = true;
     private int concurrentMergeThreads = 4;
     private Integer warmCacheFrequencyMinutes = null;
+    private int lineageIndexMaxEventIds = 1_000_000;
+    private int lineageCacheMaxEvents = 10_000;
 
     public void setAllowRollover(final boolean allow) {
         this.allowRollover = allow;
@@ -230,6 +236,22 @@ public class RepositoryConfiguration {
         this.compress = compress;
     }
 
+    /**
+     * @return whether or not event files will be rewritten as compressed, columnar segments when they
+     * are rolled over
+     */
+    public boolean isColumnarEventFiles() {
+        return columnarEventFiles;
+    }
+
+    /**
+     * @param columnarEventFiles if true, event files will be rewritten as columnar segments when rolled over,
+     * regardless of whether or not compression on rollover is enabled
+     */
+    public void setColumnarEventFiles(final boolean columnarEventFiles) {
+        this.columnarEventFiles = columnarEventFiles;
+    }
+
     /**
      * @return the number of threads to use to query the repo
      */
@@ -366,6 +388,36 @@ public class RepositoryConfiguration {
         return Optional.ofNullable(warmCacheFrequencyMinutes);
     }
 
+    /**
+     * @return the maximum number of Event ID's that are held in memory in order to compute lineage without querying the index, or 0 if
+     *         lineage is always computed by querying the index
+     */
+    public int getLineageIndexMaxEventIds() {
+        return lineageIndexMaxEventIds;
+    }
+
+    public void setLineageIndexMaxEventIds(final int lineageIndexMaxEventIds) {
+        if (lineageIndexMaxEventIds < 0) {
+            throw new IllegalArgumentException("Maximum number of Event ID's for the lineage index cannot be negative");
+        }
+        this.lineageIndexMaxEventIds = lineageIndexMaxEventIds;
+    }
+
+    /**
+     * @return the maximum number of events that are cached in memory in order to compute lineage without reading them from disk, or 0 if
+     *         such events are not cached
+     */
+    public int getLineageCacheMaxEvents() {
+        return lineageCacheMaxEvents;
+    }
+
+    public void setLineageCacheMaxEvents(final int lineageCacheMaxEvents) {
+        if (lineageCacheMaxEvents < 0) {
+            throw new IllegalArgumentException("Maximum number of events for the lineage cache cannot be negative");
+        }
+        this.lineageCacheMaxEvents = lineageCacheMaxEvents;
+    }
+
     public boolean supportsEncryption() {
         boolean keyProviderIsConfigured = CryptoUtils.isValidKeyProvider(keyProviderImplementation, keyProviderLocation, keyId, encryptionKeys);
 
@@ -431,6 +483,8 @@ public class RepositoryConfiguration {
         final int journalCount = nifiProperties.getIntegerProperty(NiFiProperties.PROVENANCE_JOURNAL_COUNT, 16);
         final int concurrentMergeThreads = nifiProperties.getIntegerProperty(CONCURRENT_MERGE_THREADS, 2);
         final String warmCacheFrequency = nifiProperties.getProperty(WARM_CACHE_FREQUENCY);
+        final int lineageIndexMaxEventIds = nifiProperties.getIntegerProperty(LINEAGE_INDEX_MAX_EVENT_IDS, 1_000_000);
+        final int lineageCacheMaxEvents = nifiProperties.getIntegerProperty(LINEAGE_CACHE_MAX_EVENTS, 10_000);
 
         final long storageMillis = FormatUtils.getTimeDuration(storageTime, TimeUnit.MILLISECONDS);
         final long maxStorageBytes = DataUnit.parseDataSize(storageSize, DataUnit.B).longValue();
@@ -438,6 +492,11 @@ public class RepositoryConfiguration {
         final long rolloverBytes = DataUnit.parseDataSize(rolloverSize, DataUnit.B).longValue();
 
         final boolean compressOnRollover = Boolean.parseBoolean(nifiProperties.getProperty(NiFiProperties.PROVENANCE_COMPRESS_ON_ROLLOVER));
+        final String eventFileLayout = nifiProperties.getProperty(EVENT_FILE_LAYOUT, "ROW").trim();
+        final boolean columnarEventFiles = "COLUMNAR".equalsIgnoreCase(eventFileLayout);
+        if (!columnarEventFiles && !"ROW".equalsIgnoreCase(eventFileLayout)) {
+            logger.warn("Found " + EVENT_FILE_LAYOUT + " property set to " + eventFileLayout + " but valid values are ROW and COLUMNAR; using ROW instead");
+        }
         final String indexedFieldString = nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEXED_FIELDS);
         final String indexedAttrString = nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEXED_ATTRIBUTES);
 
@@ -471,6 +530,7 @@ public class RepositoryConfiguration {
             config.addStorageDirectory(entry.getKey(), entry.getValue().toFile());
         }
         config.setCompressOnRollover(compressOnRollover);
+        config.setColumnarEventFiles(columnarEventFiles);
         config.setSearchableFields(searchableFields);
         config.setSearchableAttributes(searchableAttributes);
         config.setMaxEventFileCapacity(rolloverBytes);
@@ -482,6 +542,8 @@ public class RepositoryConfiguration {
         config.setJournalCount(journalCount);
         config.setMaxAttributeChars(maxAttrChars);
         config.setConcurrentMergeThreads(concurrentMergeThreads);
+        config.setLineageIndexMaxEventIds(lineageIndexMaxEventIds);
+        config.setLineageCacheMaxEvents(lineageCacheMaxEvents);
 
         if (warmCacheFrequency != null && !warmCacheFrequency.trim().equals("")) {
             config.setWarmCacheFrequencyMinutes((int) FormatUtils.getTimeDuration(warmCacheFrequency, TimeUnit.MINUTES));
@@ -0,0 +1,597 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.columnar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+
+/**
+ * <p>
+ * A block of Provenance Events that is laid out column by column rather than event by event. All of the Event IDs are
+ * written first, then all of the Event Times, then all of the Component IDs, and so on. Each column is encoded according
+ * to the shape of its data:
+ * </p>
+ *
+ * <ul>
+ * <li>Event IDs and Event Times are delta-encoded against the previous event, and the FlowFile Entry Date and Lineage Start Date
+ * are delta-encoded against the Event Time. All are written as variable-length integers, so they typically take 1-3 bytes each.</li>
+ * <li>Every String (Component IDs, FlowFile UUIDs, attribute keys and values, content claims, etc.) is dictionary-encoded: each
+ * distinct value is written once at the start of the block and every occurrence is written as an index into that dictionary.</li>
+ * </ul>
+ *
+ * <p>
+ * Because the values within a column tend to be very similar, the encoded block compresses far better than the same events
+ * written one after another.
+ * </p>
+ */
+public class ColumnarEventBlock {
+    private static final int NULL_INDEX = 0;
+
+    private final byte[] encoded;
+    private final int[] dictionaryOffsets;
+    private final int[] dictionaryLengths;
+    private final String[] dictionary;
+
+    private final int eventCount;
+    private final long[] eventIds;
+    private final int[] eventTypes;
+    private final long[] eventTimes;
+    private final long[] entryDates;
+    private final long[] lineageStartDates;
+    private final long[] eventDurations;
+    private final int[] componentIds;
+    private final int[] componentTypes;
+    private final int[] flowFileUuids;
+    private final int[] sourceQueueIds;
+    private final int[] transitUris;
+    private final int[] sourceSystemFlowFileIds;
+    private final int[] alternateIdentifierUris;
+    private final int[] details;
+    private final int[] relationships;
+    private final int[] contentClaimContainers;
+    private final int[] contentClaimSections;
+    private final int[] contentClaimIdentifiers;
+    private final Long[] contentClaimOffsets;
+    private final long[] fileSizes;
+    private final Long[] previousFileSizes;
+    private final int[] previousClaimContainers;
+    private final int[] previousClaimSections;
+    private final int[] previousClaimIdentifiers;
+    private final Long[] previousClaimOffsets;
+    private final int[][] parentUuids;
+    private final int[][] childUuids;
+    private final int[][] previousAttributes;
+    private final int[][] updatedAttributes;
+
+    private ColumnarEventBlock(final byte[] encoded, final int[] dictionaryOffsets, final int[] dictionaryLengths, final int eventCount) {
+        this.encoded = encoded;
+        this.dictionaryOffsets = dictionaryOffsets;
+        this.dictionaryLengths = dictionaryLengths;
+        this.dictionary = new String[dictionaryOffsets.length];
+        this.eventCount = eventCount;
+        eventIds = new long[eventCount];
+        eventTypes = new int[eventCount];
+        eventTimes = new long[eventCount];
+        entryDates = new long[eventCount];
+        lineageStartDates = new long[eventCount];
+        eventDurations = new long[eventCount];
+        componentIds = new int[eventCount];
+        componentTypes = new int[eventCount];
+        flowFileUuids = new int[eventCount];
+        sourceQueueIds = new int[eventCount];
+        transitUris = new int[eventCount];
+        sourceSystemFlowFileIds = new int[eventCount];
+        alternateIdentifierUris = new int[eventCount];
+        details = new int[eventCount];
+        relationships = new int[eventCount];
+        contentClaimContainers = new int[eventCount];
+        contentClaimSections = new int[eventCount];
+        contentClaimIdentifiers = new int[eventCount];
+        contentClaimOffsets = new Long[eventCount];
+        fileSizes = new long[eventCount];
+        previousFileSizes = new Long[eventCount];
+        previousClaimContainers = new int[eventCount];
+        previousClaimSections = new int[eventCount];
+        previousClaimIdentifiers = new int[eventCount];
+        previousClaimOffsets = new Long[eventCount];
+        parentUuids = new int[eventCount][];
+        childUuids = new int[eventCount][];
+        previousAttributes = new int[eventCount][];
+        updatedAttributes = new int[eventCount][];
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public long getEventId(final int index) {
+        return eventIds[index];
+    }
+
+    /**
+     * Returns the index of the first event, at or after the given index, whose Event ID is at least the given Event ID
+     *
+     * @param eventId the minimum Event ID
+     * @param fromIndex the index of the first event to consider
+     * @return the index of the event, or <code>-1</code> if no event in this block at or after <code>fromIndex</code> has a large enough Event ID
+     */
+    public int indexOf(final long eventId, final int fromIndex) {
+        for (int i = Math.max(0, fromIndex); i < eventCount; i++) {
+            if (eventIds[i] >= eventId) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Creates the Provenance Event that is stored at the given index of this block
+     *
+     * @param index the index of the event within the block
+     * @param storageFilename the name of the file that the block was read from
+     * @param storageByteOffset the offset into the file at which the block begins
+     * @param maxAttributeChars the maximum number of characters to return for any attribute value
+     * @return the Provenance Event
+     */
+    public StandardProvenanceEventRecord getEvent(final int index, final String storageFilename, final long storageByteOffset, final int maxAttributeChars) {
+        ProvenanceEventType eventType;
+        try {
+            eventType = ProvenanceEventType.valueOf(string(eventTypes[index]));
+        } catch (final Exception e) {
+            eventType = ProvenanceEventType.UNKNOWN;
+        }
+
+        final StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventId(eventIds[index]);
+        builder.setEventType(eventType);
+        builder.setEventTime(eventTimes[index]);
+        builder.setFlowFileEntryDate(entryDates[index]);
+        builder.setLineageStartDate(lineageStartDates[index]);
+        builder.setEventDuration(eventDurations[index]);
+        builder.setComponentId(string(componentIds[index]));
+        builder.setComponentType(string(componentTypes[index]));
+        builder.setFlowFileUUID(string(flowFileUuids[index]));
+        builder.setSourceQueueIdentifier(string(sourceQueueIds[index]));
+        builder.setTransitUri(string(transitUris[index]));
+        builder.setSourceSystemFlowFileIdentifier(string(sourceSystemFlowFileIds[index]));
+        builder.setAlternateIdentifierUri(string(alternateIdentifierUris[index]));
+        builder.setDetails(string(details[index]));
+        builder.setRelationship(string(relationships[index]));
+        builder.setParentUuids(toList(parentUuids[index]));
+        builder.setChildUuids(toList(childUuids[index]));
+        builder.setPreviousAttributes(toMap(previousAttributes[index], maxAttributeChars));
+        builder.setUpdatedAttributes(toMap(updatedAttributes[index], maxAttributeChars));
+
+        final Long previousFileSize = previousFileSizes[index];
+        if (previousFileSize != null) {
+            builder.setPreviousContentClaim(string(previousClaimContainers[index]), string(previousClaimSections[index]), string(previousClaimIdentifiers[index]),
+                previousClaimOffsets[index], previousFileSize);
+        }
+
+        builder.setCurrentContentClaim(string(contentClaimContainers[index]), string(contentClaimSections[index]), string(contentClaimIdentifiers[index]),
+            contentClaimOffsets[index], fileSizes[index]);
+        builder.setStorageLocation(storageFilename, storageByteOffset);
+
+        return builder.build();
+    }
+
+    /**
+     * Dictionary entries are only turned into Strings when an event that uses them is materialized, since looking up a single
+     * event typically needs a small fraction of the dictionary.
+     */
+    private String string(final int index) {
+        if (index == NULL_INDEX) {
+            return null;
+        }
+
+        String value = dictionary[index];
+        if (value == null) {
+            value = new String(encoded, dictionaryOffsets[index], dictionaryLengths[index], StandardCharsets.UTF_8);
+            dictionary[index] = value;
+        }
+
+        return value;
+    }
+
+    private List<String> toList(final int[] indices) {
+        final List<String> list = new ArrayList<>(indices.length);
+        for (final int index : indices) {
+            list.add(string(index));
+        }
+
+        return list;
+    }
+
+    private Map<String, String> toMap(final int[] keysAndValues, final int maxAttributeChars) {
+        final Map<String, String> map = new HashMap<>(keysAndValues.length);
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            final String value = string(keysAndValues[i + 1]);
+            map.put(string(keysAndValues[i]), value == null || value.length() <= maxAttributeChars ? value : value.substring(0, maxAttributeChars));
+        }
+
+        return map;
+    }
+
+    /**
+     * Encodes the given events, which must be ordered by Event ID, into a single block
+     *
+     * @param events the events to encode
+     * @param firstEventId the Event ID of the first event
+     * @return the encoded block
+     */
+    public static byte[] encode(final List<? extends ProvenanceEventRecord> events, final long firstEventId) {
+        final Dictionary dictionary = new Dictionary();
+        final ByteArrayOutputStream columns = new ByteArrayOutputStream(events.size() * 256);
+
+        long previousId = firstEventId;
+        for (final ProvenanceEventRecord event : events) {
+            writeSignedVarLong(columns, event.getEventId() - previousId);
+            previousId = event.getEventId();
+        }
+
+        for (final ProvenanceEventRecord event : events) {
+            writeVarLong(columns, dictionary.indexOf(event.getEventType().name()));
+        }
+
+        long previousTime = 0L;
+        for (final ProvenanceEventRecord event : events) {
+            writeSignedVarLong(columns, event.getEventTime() - previousTime);
+            previousTime = event.getEventTime();
+        }
+
+        for (final ProvenanceEventRecord event : events) {
+            writeSignedVarLong(columns, event.getEventTime() - event.getFlowFileEntryDate());
+        }
+        for (final ProvenanceEventRecord event : events) {
+            writeSignedVarLong(columns, event.getEventTime() - event.getLineageStartDate());
+        }
+        for (final ProvenanceEventRecord event : events) {
+            writeSignedVarLong(columns, event.getEventDuration());
+        }
+
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getComponentId);
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getComponentType);
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getFlowFileUuid);
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getSourceQueueIdentifier);
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getTransitUri);
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getSourceSystemFlowFileIdentifier);
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getAlternateIdentifierUri);
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getDetails);
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getRelationship);
+
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getContentClaimContainer);
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getContentClaimSection);
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getContentClaimIdentifier);
+        for (final ProvenanceEventRecord event : events) {
+            writeNullableLong(columns, event.getContentClaimOffset());
+        }
+        for (final ProvenanceEventRecord event : events) {
+            writeVarLong(columns, event.getFileSize());
+        }
+
+        for (final ProvenanceEventRecord event : events) {
+            writeNullableLong(columns, event.getPreviousFileSize());
+        }
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getPreviousContentClaimContainer);
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getPreviousContentClaimSection);
+        writeStringColumn(columns, dictionary, events, ProvenanceEventRecord::getPreviousContentClaimIdentifier);
+        for (final ProvenanceEventRecord event : events) {
+            writeNullableLong(columns, event.getPreviousContentClaimOffset());
+        }
+
+        for (final ProvenanceEventRecord event : events) {
+            writeStringList(columns, dictionary, event.getParentUuids());
+        }
+        for (final ProvenanceEventRecord event : events) {
+            writeStringList(columns, dictionary, event.getChildUuids());
+        }
+        for (final ProvenanceEventRecord event : events) {
+            writeStringMap(columns, dictionary, event.getPreviousAttributes());
+        }
+        for (final ProvenanceEventRecord event : events) {
+            writeStringMap(columns, dictionary, event.getUpdatedAttributes());
+        }
+
+        final byte[] columnBytes = columns.toByteArray();
+        final ByteArrayOutputStream block = new ByteArrayOutputStream(columnBytes.length + dictionary.getEncodedSize() + 8);
+        dictionary.writeTo(block);
+        block.write(columnBytes, 0, columnBytes.length);
+        return block.toByteArray();
+    }
+
+    /**
+     * Decodes a block that was created by {@link #encode(List, long)}
+     *
+     * @param encoded the encoded block
+     * @param eventCount the number of events in the block
+     * @param firstEventId the Event ID of the first event in the block
+     * @return the decoded block
+     * @throws IOException if the block cannot be decoded
+     */
+    public static ColumnarEventBlock decode(final byte[] encoded, final int eventCount, final long firstEventId) throws IOException {
+        final BlockInput in = new BlockInput(encoded);
+        final int dictionarySize = in.readVarInt() + 1;
+        final int[] dictionaryOffsets = new int[dictionarySize];
+        final int[] dictionaryLengths = new int[dictionarySize];
+        for (int i = 1; i < dictionarySize; i++) {
+            dictionaryLengths[i] = in.readVarInt();
+            dictionaryOffsets[i] = in.skipBytes(dictionaryLengths[i]);
+        }
+
+        final ColumnarEventBlock block = new ColumnarEventBlock(encoded, dictionaryOffsets, dictionaryLengths, eventCount);
+
+        long previousId = firstEventId;
+        for (int i = 0; i < eventCount; i++) {
+            previousId += in.readSignedVarLong();
+            block.eventIds[i] = previousId;
+        }
+
+        readStringColumn(in, dictionarySize, block.eventTypes);
+
+        long previousTime = 0L;
+        for (int i = 0; i < eventCount; i++) {
+            previousTime += in.readSignedVarLong();
+            block.eventTimes[i] = previousTime;
+        }
+
+        for (int i = 0; i < eventCount; i++) {
+            block.entryDates[i] = block.eventTimes[i] - in.readSignedVarLong();
+        }
+        for (int i = 0; i < eventCount; i++) {
+            block.lineageStartDates[i] = block.eventTimes[i] - in.readSignedVarLong();
+        }
+        for (int i = 0; i < eventCount; i++) {
+            block.eventDurations[i] = in.readSignedVarLong();
+        }
+
+        readStringColumn(in, dictionarySize, block.componentIds);
+        readStringColumn(in, dictionarySize, block.componentTypes);
+        readStringColumn(in, dictionarySize, block.flowFileUuids);
+        readStringColumn(in, dictionarySize, block.sourceQueueIds);
+        readStringColumn(in, dictionarySize, block.transitUris);
+        readStringColumn(in, dictionarySize, block.sourceSystemFlowFileIds);
+        readStringColumn(in, dictionarySize, block.alternateIdentifierUris);
+        readStringColumn(in, dictionarySize, block.details);
+        readStringColumn(in, dictionarySize, block.relationships);
+
+        readStringColumn(in, dictionarySize, block.contentClaimContainers);
+        readStringColumn(in, dictionarySize, block.contentClaimSections);
+        readStringColumn(in, dictionarySize, block.contentClaimIdentifiers);
+        for (int i = 0; i < eventCount; i++) {
+            block.contentClaimOffsets[i] = in.readNullableLong();
+        }
+        for (int i = 0; i < eventCount; i++) {
+            block.fileSizes[i] = in.readVarLong();
+        }
+
+        for (int i = 0; i < eventCount; i++) {
+            block.previousFileSizes[i] = in.readNullableLong();
+        }
+        readStringColumn(in, dictionarySize, block.previousClaimContainers);
+        readStringColumn(in, dictionarySize, block.previousClaimSections);
+        readStringColumn(in, dictionarySize, block.previousClaimIdentifiers);
+        for (int i = 0; i < eventCount; i++) {
+            block.previousClaimOffsets[i] = in.readNullableLong();
+        }
+
+        for (int i = 0; i < eventCount; i++) {
+            block.parentUuids[i] = readStrings(in, dictionarySize, in.readVarInt());
+        }
+        for (int i = 0; i < eventCount; i++) {
+            block.childUuids[i] = readStrings(in, dictionarySize, in.readVarInt());
+        }
+        for (int i = 0; i < eventCount; i++) {
+            block.previousAttributes[i] = readStrings(in, dictionarySize, in.readVarInt() * 2);
+        }
+        for (int i = 0; i < eventCount; i++) {
+            block.updatedAttributes[i] = readStrings(in, dictionarySize, in.readVarInt() * 2);
+        }
+
+        return block;
+    }
+
+
+    private interface StringField {
+        String get(ProvenanceEventRecord event);
+    }
+
+    private static void writeStringColumn(final ByteArrayOutputStream out, final Dictionary dictionary, final List<? extends ProvenanceEventRecord> events, final StringField field) {
+        for (final ProvenanceEventRecord event : events) {
+            writeVarLong(out, dictionary.indexOf(field.get(event)));
+        }
+    }
+
+    private static void writeStringList(final ByteArrayOutputStream out, final Dictionary dictionary, final List<String> values) {
+        if (values == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+
+        writeVarLong(out, values.size());
+        for (final String value : values) {
+            writeVarLong(out, dictionary.indexOf(value));
+        }
+    }
+
+    private static void writeStringMap(final ByteArrayOutputStream out, final Dictionary dictionary, final Map<String, String> values) {
+        if (values == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+
+        writeVarLong(out, values.size());
+        for (final Map.Entry<String, String> entry : values.entrySet()) {
+            writeVarLong(out, dictionary.indexOf(entry.getKey()));
+            writeVarLong(out, dictionary.indexOf(entry.getValue()));
+        }
+    }
+
+    private static void writeNullableLong(final ByteArrayOutputStream out, final Long value) {
+        writeVarLong(out, value == null ? 0L : zigZag(value) + 1);
+    }
+
+    private static void writeSignedVarLong(final ByteArrayOutputStream out, final long value) {
+        writeVarLong(out, zigZag(value));
+    }
+
+    private static void writeVarLong(final ByteArrayOutputStream out, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0L) {
+            out.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+
+        out.write((int) remaining);
+    }
+
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void readStringColumn(final BlockInput in, final int dictionarySize, final int[] column) throws IOException {
+        for (int i = 0; i < column.length; i++) {
+            column[i] = lookup(dictionarySize, in.readVarInt());
+        }
+    }
+
+    private static int[] readStrings(final BlockInput in, final int dictionarySize, final int count) throws IOException {
+        final int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = lookup(dictionarySize, in.readVarInt());
+        }
+
+        return values;
+    }
+
+    private static int lookup(final int dictionarySize, final int index) throws IOException {
+        if (index < 0 || index >= dictionarySize) {
+            throw new IOException("Columnar Event Block references dictionary entry " + index + " but the dictionary has only " + (dictionarySize - 1) + " entries");
+        }
+
+        return index;
+    }
+
+
+    /**
+     * The distinct Strings of a block, in the order in which they were first encountered. Index 0 is reserved for <code>null</code>.
+     */
+    private static class Dictionary {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<byte[]> values = new ArrayList<>();
+        private int encodedSize = 0;
+
+        int indexOf(final String value) {
+            if (value == null) {
+                return NULL_INDEX;
+            }
+
+            final Integer existing = indices.get(value);
+            if (existing != null) {
+                return existing;
+            }
+
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            values.add(bytes);
+            encodedSize += bytes.length + 5;
+
+            final int index = values.size();
+            indices.put(value, index);
+            return index;
+        }
+
+        int getEncodedSize() {
+            return encodedSize;
+        }
+
+        void writeTo(final ByteArrayOutputStream out) {
+            writeVarLong(out, values.size());
+            for (final byte[] value : values) {
+                writeVarLong(out, value.length);
+                out.write(value, 0, value.length);
+            }
+        }
+    }
+
+    private static class BlockInput {
+        private final byte[] buffer;
+        private int position = 0;
+
+        BlockInput(final byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= buffer.length) {
+                    throw new EOFException("Reached end of Columnar Event Block while reading a value");
+                }
+
+                final byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IOException("Columnar Event Block contains a malformed variable-length integer");
+        }
+
+        int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        long readSignedVarLong() throws IOException {
+            final long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        Long readNullableLong() throws IOException {
+            final long value = readVarLong();
+            if (value == 0L) {
+                return null;
+            }
+
+            final long zigZagged = value - 1;
+            return (zigZagged >>> 1) ^ -(zigZagged & 1);
+        }
+
+        /**
+         * Skips over the given number of bytes, returning the position at which the skipped bytes start
+         */
+        int skipBytes(final int length) throws IOException {
+            if (length < 0 || position + length > buffer.length) {
+                throw new EOFException("Reached end of Columnar Event Block while reading a String of length " + length);
+            }
+
+            final int start = position;
+            position += length;
+            return start;
+        }
+    }
+}
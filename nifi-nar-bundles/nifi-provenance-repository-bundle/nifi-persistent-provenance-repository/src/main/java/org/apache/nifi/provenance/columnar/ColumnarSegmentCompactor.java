@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.columnar;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.provenance.lucene.LuceneUtil;
+import org.apache.nifi.provenance.serialization.EventFileCompressor;
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.serialization.RecordReaders;
+import org.apache.nifi.provenance.store.EventFileManager;
+import org.apache.nifi.provenance.toc.TocReader;
+import org.apache.nifi.provenance.toc.TocWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link EventFileCompressor} that, rather than GZIP'ing each block of a rolled-over event file, rewrites the events
+ * into a {@link ColumnarSegmentWriter columnar segment}. The same locking and Table-of-Contents handling applies, so readers
+ * that are in the middle of reading the original event file are unaffected.
+ */
+public class ColumnarSegmentCompactor extends EventFileCompressor {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarSegmentCompactor.class);
+
+    public ColumnarSegmentCompactor(final BlockingQueue<File> filesToCompress, final EventFileManager eventFileManager) {
+        super(filesToCompress, eventFileManager);
+    }
+
+    @Override
+    protected File getCompressedFile(final File uncompressedEventFile) {
+        final String baseName = LuceneUtil.substringBefore(uncompressedEventFile.getName(), ".prov");
+        return new File(uncompressedEventFile.getParentFile(), baseName + ColumnarSegmentWriter.FILE_EXTENSION);
+    }
+
+    @Override
+    protected void compressFile(final File input, final TocReader tocReader, final File output, final TocWriter tocWriter) throws IOException {
+        compact(input, output, tocWriter);
+    }
+
+    public static void compact(final File input, final File output, final TocWriter tocWriter) throws IOException {
+        try (final RecordReader reader = RecordReaders.newRecordReader(input, Collections.emptyList(), Integer.MAX_VALUE);
+            final ColumnarSegmentWriter writer = new ColumnarSegmentWriter(new BufferedOutputStream(new FileOutputStream(output), 65536), tocWriter)) {
+
+            writer.writeHeader();
+
+            StandardProvenanceEventRecord event;
+            while (true) {
+                try {
+                    event = reader.nextRecord();
+                } catch (final EOFException eof) {
+                    // This can happen if NiFi was stopped while the last record was being written. That event was never
+                    // acknowledged, so there is nothing to lose by stopping here.
+                    logger.warn("{} ends with an incomplete Provenance Event; it will not be included in {}", input, output);
+                    break;
+                }
+
+                if (event == null) {
+                    break;
+                }
+
+                writer.addEvent(event);
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.columnar;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.toc.TocReader;
+import org.apache.nifi.stream.io.ByteCountingInputStream;
+import org.apache.nifi.stream.io.StreamUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the events of a segment that was written by {@link ColumnarSegmentWriter}. Blocks are decompressed and decoded one
+ * at a time, and an event is only materialized when it is returned to the caller, so looking up a single Event ID costs one
+ * block rather than every event that precedes it.
+ */
+public class ColumnarSegmentReader implements RecordReader {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarSegmentReader.class);
+
+    private final ByteCountingInputStream rawInputStream;
+    private final DataInputStream dis;
+    private final String filename;
+    private final TocReader tocReader;
+    private final int maxAttributeChars;
+    private final Inflater inflater = new Inflater(true);
+
+    private ColumnarEventBlock block;
+    private long blockOffset;
+    private int blockIndex = -1;
+    private int eventIndex = 0;
+
+    private StandardProvenanceEventRecord materializedEvent;
+    private int materializedIndex = -1;
+
+    public ColumnarSegmentReader(final InputStream in, final String filename, final TocReader tocReader, final int maxAttributeChars) throws IOException {
+        logger.trace("Creating Columnar Segment Reader for {}", filename);
+
+        this.rawInputStream = new ByteCountingInputStream(in);
+        this.dis = new DataInputStream(rawInputStream);
+        this.filename = filename;
+        this.tocReader = tocReader;
+        this.maxAttributeChars = maxAttributeChars;
+
+        final String serializationName = dis.readUTF();
+        final int serializationVersion = dis.readInt();
+        if (!ColumnarSegmentWriter.SERIALIZATION_NAME.equals(serializationName)) {
+            throw new IOException("Cannot read " + filename + " as a Columnar Event Segment because it was written using the " + serializationName + " serializer");
+        }
+        if (serializationVersion > ColumnarSegmentWriter.SERIALIZATION_VERSION) {
+            throw new IOException("Unable to read " + filename + " because the serialization version is " + serializationVersion
+                + " and supported versions are 1-" + ColumnarSegmentWriter.SERIALIZATION_VERSION);
+        }
+    }
+
+    private boolean readNextBlock() throws IOException {
+        final long offset = rawInputStream.getBytesConsumed();
+
+        final int eventCount;
+        try {
+            eventCount = dis.readInt();
+        } catch (final EOFException eof) {
+            block = null;
+            return false;
+        }
+
+        final long firstEventId = dis.readLong();
+        final int uncompressedLength = dis.readInt();
+        final int compressedLength = dis.readInt();
+
+        final byte[] compressed = new byte[compressedLength];
+        StreamUtils.fillBuffer(dis, compressed);
+
+        final byte[] encoded = new byte[uncompressedLength];
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int length = 0;
+            while (length < uncompressedLength && !inflater.finished()) {
+                final int inflated = inflater.inflate(encoded, length, uncompressedLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                length += inflated;
+            }
+
+            if (length != uncompressedLength) {
+                throw new IOException("Block " + (blockIndex + 1) + " of " + filename + " should contain " + uncompressedLength + " bytes but only " + length + " could be decompressed");
+            }
+        } catch (final DataFormatException dfe) {
+            throw new IOException("Block " + (blockIndex + 1) + " of " + filename + " is corrupt", dfe);
+        }
+
+        block = ColumnarEventBlock.decode(encoded, eventCount, firstEventId);
+        blockOffset = offset;
+        blockIndex++;
+        eventIndex = 0;
+        return true;
+    }
+
+    private boolean ensureEventAvailable() throws IOException {
+        while (block == null || eventIndex >= block.getEventCount()) {
+            if (!readNextBlock()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private StandardProvenanceEventRecord materialize(final int index) {
+        if (materializedIndex != index || materializedEvent == null || materializedEvent.getEventId() != block.getEventId(index)) {
+            materializedEvent = block.getEvent(index, filename, blockOffset, maxAttributeChars);
+            materializedIndex = index;
+        }
+
+        return materializedEvent;
+    }
+
+    @Override
+    public StandardProvenanceEventRecord nextRecord() throws IOException {
+        if (!ensureEventAvailable()) {
+            return null;
+        }
+
+        return materialize(eventIndex++);
+    }
+
+    @Override
+    public void skip(final long bytesToSkip) {
+        throw new UnsupportedOperationException("Events in a Columnar Event Segment cannot be located by byte offset");
+    }
+
+    @Override
+    public void skipTo(final long position) {
+        throw new UnsupportedOperationException("Events in a Columnar Event Segment cannot be located by byte offset");
+    }
+
+    @Override
+    public void skipToBlock(final int blockIndex) throws IOException {
+        if (tocReader == null) {
+            throw new IllegalStateException("Cannot skip to block " + blockIndex + " for Columnar Event Segment " + filename + " because no Table-of-Contents file was found for this Segment");
+        }
+
+        if (blockIndex < 0) {
+            throw new IllegalArgumentException("Cannot skip to block " + blockIndex + " because the value is negative");
+        }
+
+        if (block != null && blockIndex == this.blockIndex) {
+            return;
+        }
+
+        final long offset = tocReader.getBlockOffset(blockIndex);
+        if (offset < 0) {
+            throw new IOException("Unable to find block " + blockIndex + " in Columnar Event Segment " + filename);
+        }
+
+        final long bytesToSkip = offset - rawInputStream.getBytesConsumed();
+        if (bytesToSkip < 0) {
+            // The block has already been read; as with the row-oriented readers, we do not rewind.
+            return;
+        }
+
+        try {
+            StreamUtils.skip(rawInputStream, bytesToSkip);
+        } catch (final EOFException eof) {
+            throw new EOFException("Attempted to skip to byte offset " + offset + " for " + filename + " but file does not have that many bytes (TOC Reader=" + tocReader + ")");
+        }
+
+        this.blockIndex = blockIndex - 1;
+        readNextBlock();
+    }
+
+    @Override
+    public Optional<ProvenanceEventRecord> skipToEvent(final long eventId) throws IOException {
+        if (tocReader != null) {
+            final Integer eventBlockIndex = tocReader.getBlockIndexForEventId(eventId);
+            if (eventBlockIndex != null && eventBlockIndex > blockIndex) {
+                skipToBlock(eventBlockIndex);
+            }
+        }
+
+        while (ensureEventAvailable()) {
+            final int index = block.indexOf(eventId, eventIndex);
+            if (index >= 0) {
+                // Leave the event in place so that the next call to nextRecord() returns it.
+                eventIndex = index;
+                return Optional.of(materialize(index));
+            }
+
+            eventIndex = block.getEventCount();
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public int getBlockIndex() {
+        if (tocReader == null) {
+            throw new IllegalStateException("Cannot determine Block Index because no Table-of-Contents could be found for Columnar Event Segment " + filename);
+        }
+
+        return Math.max(0, blockIndex);
+    }
+
+    @Override
+    public boolean isBlockIndexAvailable() {
+        return tocReader != null;
+    }
+
+    @Override
+    public TocReader getTocReader() {
+        return tocReader;
+    }
+
+    @Override
+    public long getBytesConsumed() {
+        return rawInputStream.getBytesConsumed();
+    }
+
+    @Override
+    public long getMaxEventId() throws IOException {
+        if (tocReader != null) {
+            final long lastBlockOffset = tocReader.getLastBlockOffset();
+            if (lastBlockOffset >= 0) {
+                skipToBlock(tocReader.getBlockIndex(lastBlockOffset));
+            }
+        }
+
+        long maxEventId = -1L;
+        while (ensureEventAvailable()) {
+            maxEventId = block.getEventId(block.getEventCount() - 1);
+            eventIndex = block.getEventCount();
+        }
+
+        return maxEventId;
+    }
+
+    @Override
+    public boolean isData() {
+        try {
+            return ensureEventAvailable();
+        } catch (final IOException ioe) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        logger.trace("Closing Columnar Segment Reader for {}", filename);
+
+        inflater.end();
+        try {
+            dis.close();
+        } finally {
+            if (tocReader != null) {
+                tocReader.close();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarSegmentReader[file=" + filename + "]";
+    }
+}
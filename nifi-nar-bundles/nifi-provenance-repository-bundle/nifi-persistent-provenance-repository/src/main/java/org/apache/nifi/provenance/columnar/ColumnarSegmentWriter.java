@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.columnar;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.toc.TocWriter;
+import org.apache.nifi.stream.io.ByteCountingOutputStream;
+
+/**
+ * <p>
+ * Writes an immutable, columnar Event Segment. A segment begins with the serialization name and version, followed by any number of
+ * blocks. Each block holds up to {@link #DEFAULT_EVENTS_PER_BLOCK} events encoded by {@link ColumnarEventBlock} and then deflated.
+ * The offset and first Event ID of each block are recorded in the Table of Contents so that a reader can jump directly to the
+ * block that holds a given event.
+ * </p>
+ *
+ * <p>
+ * Segments are not written to directly by the repository. The repository always appends events to a row-oriented event file so that
+ * they are available as soon as they are written; that file is converted into a segment once it has been rolled over.
+ * </p>
+ */
+public class ColumnarSegmentWriter implements Closeable {
+    public static final String SERIALIZATION_NAME = "ColumnarEventSegment";
+    public static final int SERIALIZATION_VERSION = 1;
+    public static final String FILE_EXTENSION = ".prov.col";
+    public static final int DEFAULT_EVENTS_PER_BLOCK = 256;
+
+    private final ByteCountingOutputStream byteCountingOut;
+    private final DataOutputStream out;
+    private final TocWriter tocWriter;
+    private final int eventsPerBlock;
+    private final List<ProvenanceEventRecord> blockEvents;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private byte[] compressionBuffer = new byte[65536];
+
+    public ColumnarSegmentWriter(final OutputStream out, final TocWriter tocWriter) {
+        this(out, tocWriter, DEFAULT_EVENTS_PER_BLOCK);
+    }
+
+    public ColumnarSegmentWriter(final OutputStream out, final TocWriter tocWriter, final int eventsPerBlock) {
+        this.byteCountingOut = new ByteCountingOutputStream(out);
+        this.out = new DataOutputStream(byteCountingOut);
+        this.tocWriter = tocWriter;
+        this.eventsPerBlock = eventsPerBlock;
+        this.blockEvents = new ArrayList<>(eventsPerBlock);
+    }
+
+    public void writeHeader() throws IOException {
+        out.writeUTF(SERIALIZATION_NAME);
+        out.writeInt(SERIALIZATION_VERSION);
+    }
+
+    /**
+     * Adds the given event to the segment. Events must be added in the order of their Event IDs.
+     *
+     * @param event the event to add
+     * @throws IOException if unable to write to the underlying stream
+     */
+    public void addEvent(final ProvenanceEventRecord event) throws IOException {
+        blockEvents.add(event);
+        if (blockEvents.size() >= eventsPerBlock) {
+            writeBlock();
+        }
+    }
+
+    public long getBytesWritten() {
+        return byteCountingOut.getBytesWritten();
+    }
+
+    private void writeBlock() throws IOException {
+        if (blockEvents.isEmpty()) {
+            return;
+        }
+
+        final long firstEventId = blockEvents.get(0).getEventId();
+        final byte[] encoded = ColumnarEventBlock.encode(blockEvents, firstEventId);
+        final int compressedLength = compress(encoded);
+
+        if (tocWriter != null) {
+            tocWriter.addBlockOffset(byteCountingOut.getBytesWritten(), firstEventId);
+        }
+
+        out.writeInt(blockEvents.size());
+        out.writeLong(firstEventId);
+        out.writeInt(encoded.length);
+        out.writeInt(compressedLength);
+        out.write(compressionBuffer, 0, compressedLength);
+
+        blockEvents.clear();
+    }
+
+    private int compress(final byte[] data) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressionBuffer.length) {
+                final byte[] larger = new byte[compressionBuffer.length * 2];
+                System.arraycopy(compressionBuffer, 0, larger, 0, length);
+                compressionBuffer = larger;
+            }
+
+            length += deflater.deflate(compressionBuffer, length, compressionBuffer.length - length);
+        }
+
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+            out.flush();
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+}
@@ -103,15 +103,7 @@ public class ConvertEventToLuceneDocument {
             } else if (eventType == ProvenanceEventType.RECEIVE && record.getSourceSystemFlowFileIdentifier() != null) {
                 // If we get a receive with a Source System FlowFile Identifier, we add another Document that shows the UUID
                 // that the Source System uses to refer to the data.
-                final String sourceIdentifier = record.getSourceSystemFlowFileIdentifier();
-                final String sourceFlowFileUUID;
-                final int lastColon = sourceIdentifier.lastIndexOf(":");
-                if (lastColon > -1 && lastColon < sourceIdentifier.length() - 2) {
-                    sourceFlowFileUUID = sourceIdentifier.substring(lastColon + 1);
-                } else {
-                    sourceFlowFileUUID = null;
-                }
-
+                final String sourceFlowFileUUID = getSourceFlowFileUuid(record.getSourceSystemFlowFileIdentifier());
                 if (sourceFlowFileUUID != null) {
                     addField(doc, SearchableFields.FlowFileUUID, sourceFlowFileUUID);
                 }
@@ -123,6 +115,19 @@ public class ConvertEventToLuceneDocument {
         return null;
     }
 
+    /**
+     * @param sourceSystemFlowFileIdentifier the Source System FlowFile Identifier of a RECEIVE event
+     * @return the UUID that the Source System uses to refer to the data, or <code>null</code> if the identifier does not contain one
+     */
+    static String getSourceFlowFileUuid(final String sourceSystemFlowFileIdentifier) {
+        final int lastColon = sourceSystemFlowFileIdentifier.lastIndexOf(":");
+        if (lastColon > -1 && lastColon < sourceSystemFlowFileIdentifier.length() - 2) {
+            return sourceSystemFlowFileIdentifier.substring(lastColon + 1);
+        }
+
+        return null;
+    }
+
     private static class UnIndexedLongField extends Field {
         static final FieldType TYPE = new FieldType();
         static {
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.index.lucene;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+
+/**
+ * <p>
+ * An in-memory, bounded index of the Event ID's that pertain to each FlowFile UUID, populated as events are indexed. An event pertains
+ * to the same FlowFile UUID's for which it would be found by a Lucene lineage query: the event's own FlowFile, the children of a FORK,
+ * CLONE, or REPLAY event, the parents of a JOIN event, and the Source System FlowFile of a RECEIVE event. This allows a lineage graph to be
+ * expanded by one level with a single lookup instead of a Lucene query against every index directory.
+ * </p>
+ *
+ * <p>
+ * Because the index only sees events that were indexed since it was created, and because it evicts the FlowFiles that it has known about
+ * the longest without an event once it is full, it does not know about every event for every FlowFile. It therefore only answers for a FlowFile when it
+ * knows that the FlowFile was created after the last point at which the index could have missed an event, and otherwise returns an empty
+ * Optional so that the caller falls back to querying Lucene.
+ * </p>
+ */
+public class FlowFileEventIndex {
+    private static final long UNKNOWN_CREATION_TIME = Long.MIN_VALUE;
+
+    private final int maxEventIds;
+
+    // guarded by synchronizing on 'this'. Ordered by access so that the FlowFiles that have gone the longest without an event are evicted first.
+    private final LinkedHashMap<String, FlowFileEvents> eventsByUuid = new LinkedHashMap<>(16, 0.75f, true);
+    private long eventIdCount = 0L;
+    private long incompleteUntil;
+
+    public FlowFileEventIndex(final int maxEventIds) {
+        this.maxEventIds = maxEventIds;
+
+        // Any event that occurred before the index was created may not have been added to it.
+        this.incompleteUntil = System.currentTimeMillis();
+    }
+
+    /**
+     * Adds the given event to the index
+     *
+     * @param event the event to add
+     * @param eventId the ID of the event
+     * @return the FlowFile UUID's that the event pertains to
+     */
+    public Set<String> update(final ProvenanceEventRecord event, final long eventId) {
+        final Map<String, Long> creationTimes = getCreationTimes(event);
+
+        synchronized (this) {
+            for (final Map.Entry<String, Long> entry : creationTimes.entrySet()) {
+                FlowFileEvents flowFileEvents = eventsByUuid.get(entry.getKey());
+                if (flowFileEvents == null) {
+                    // We only know about every event for this FlowFile if it was created after the last time that an event may have been missed.
+                    final long creationTime = entry.getValue();
+                    final boolean complete = creationTime != UNKNOWN_CREATION_TIME && creationTime > incompleteUntil;
+                    flowFileEvents = new FlowFileEvents(complete);
+                    eventsByUuid.put(entry.getKey(), flowFileEvents);
+                }
+
+                flowFileEvents.add(eventId, event.getEventTime());
+                eventIdCount++;
+            }
+
+            evict();
+        }
+
+        return creationTimes.keySet();
+    }
+
+    private void evict() {
+        final Iterator<FlowFileEvents> itr = eventsByUuid.values().iterator();
+        while (eventIdCount > maxEventIds && itr.hasNext()) {
+            final FlowFileEvents evicted = itr.next();
+            itr.remove();
+
+            eventIdCount -= evicted.size();
+
+            // If we see this FlowFile again, or any FlowFile that existed when this one last had an event, we will not know about all of its events.
+            incompleteUntil = Math.max(incompleteUntil, evicted.getLatestEventTime());
+        }
+    }
+
+    /**
+     * Returns the Event ID's of all events that pertain to each of the given FlowFile UUID's, if they are all known
+     *
+     * @param flowFileUuids the FlowFile UUID's
+     * @return the Event ID's for each FlowFile UUID, in ascending order, or an empty Optional if the index does not know about every event for
+     *         all of the given FlowFiles
+     */
+    public synchronized Optional<Map<String, List<Long>>> getEventIds(final Collection<String> flowFileUuids) {
+        final Map<String, List<Long>> eventIds = new LinkedHashMap<>();
+        for (final String flowFileUuid : flowFileUuids) {
+            final FlowFileEvents flowFileEvents = eventsByUuid.get(flowFileUuid);
+            if (flowFileEvents == null || !flowFileEvents.isComplete()) {
+                return Optional.empty();
+            }
+
+            eventIds.put(flowFileUuid, flowFileEvents.getEventIds());
+        }
+
+        return Optional.of(eventIds);
+    }
+
+    /**
+     * @return the FlowFile UUID's that the given event pertains to, mapped to the time at which the FlowFile is known to have been created,
+     *         or {@link #UNKNOWN_CREATION_TIME} if that cannot be determined from the event
+     */
+    private static Map<String, Long> getCreationTimes(final ProvenanceEventRecord event) {
+        final Map<String, Long> creationTimes = new LinkedHashMap<>();
+        creationTimes.put(event.getFlowFileUuid(), event.getFlowFileEntryDate());
+
+        final ProvenanceEventType eventType = event.getEventType();
+        if (eventType == ProvenanceEventType.FORK || eventType == ProvenanceEventType.CLONE || eventType == ProvenanceEventType.REPLAY) {
+            // The children are created by the event itself.
+            for (final String uuid : event.getChildUuids()) {
+                creationTimes.putIfAbsent(uuid, event.getEventTime());
+            }
+        } else if (eventType == ProvenanceEventType.JOIN) {
+            for (final String uuid : event.getParentUuids()) {
+                creationTimes.putIfAbsent(uuid, UNKNOWN_CREATION_TIME);
+            }
+        } else if (eventType == ProvenanceEventType.RECEIVE && event.getSourceSystemFlowFileIdentifier() != null) {
+            final String sourceFlowFileUuid = ConvertEventToLuceneDocument.getSourceFlowFileUuid(event.getSourceSystemFlowFileIdentifier());
+            if (sourceFlowFileUuid != null) {
+                creationTimes.putIfAbsent(sourceFlowFileUuid, UNKNOWN_CREATION_TIME);
+            }
+        }
+
+        return creationTimes;
+    }
+
+    private static class FlowFileEvents {
+        private final boolean complete;
+        private long[] eventIds = new long[2];
+        private int size = 0;
+        private long latestEventTime = Long.MIN_VALUE;
+
+        FlowFileEvents(final boolean complete) {
+            this.complete = complete;
+        }
+
+        void add(final long eventId, final long eventTime) {
+            if (size == eventIds.length) {
+                eventIds = Arrays.copyOf(eventIds, size * 2);
+            }
+
+            eventIds[size++] = eventId;
+            latestEventTime = Math.max(latestEventTime, eventTime);
+        }
+
+        boolean isComplete() {
+            return complete;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long getLatestEventTime() {
+            return latestEventTime;
+        }
+
+        List<Long> getEventIds() {
+            // Events from different partitions are not necessarily indexed in order of their ID's.
+            return LongStream.of(Arrays.copyOf(eventIds, size)).sorted().boxed().collect(Collectors.toList());
+        }
+    }
+}
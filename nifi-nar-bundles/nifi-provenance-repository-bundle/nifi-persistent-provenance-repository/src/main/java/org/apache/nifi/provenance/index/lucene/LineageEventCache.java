@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.index.lucene;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+
+/**
+ * A bounded, least-recently-used cache of the events that pertain to a FlowFile UUID, so that lineage graphs that are requested repeatedly,
+ * or that are expanded one level at a time, do not need to read the same events from the Event Store each time. The events are cached as
+ * they are stored, before any authorization is applied, so callers must authorize them for each request.
+ */
+public class LineageEventCache {
+    private final int maxEvents;
+
+    // guarded by synchronizing on 'this'
+    private final LinkedHashMap<String, CachedEvents> eventsByUuid = new LinkedHashMap<>(16, 0.75f, true);
+    private int eventCount = 0;
+
+    public LineageEventCache(final int maxEvents) {
+        this.maxEvents = maxEvents;
+    }
+
+    /**
+     * Returns the cached events for the given FlowFile UUID, provided that they were cached from exactly the given Event ID's. This guards
+     * against returning events that were cached concurrently with the arrival of a new event for the FlowFile.
+     *
+     * @param flowFileUuid the FlowFile UUID
+     * @param eventIds the ID's of all events that are currently known to pertain to the FlowFile
+     * @return the cached events, or an empty Optional if they are not cached or are out of date
+     */
+    public synchronized Optional<List<ProvenanceEventRecord>> get(final String flowFileUuid, final List<Long> eventIds) {
+        final CachedEvents cached = eventsByUuid.get(flowFileUuid);
+        if (cached == null || !cached.eventIds.equals(eventIds)) {
+            return Optional.empty();
+        }
+
+        return Optional.of(cached.events);
+    }
+
+    /**
+     * Caches the given events for a FlowFile UUID
+     *
+     * @param flowFileUuid the FlowFile UUID
+     * @param eventIds the ID's of the events that were read from the Event Store
+     * @param events the events that were found. This may be fewer than the number of ID's, if some events have aged off
+     */
+    public synchronized void put(final String flowFileUuid, final List<Long> eventIds, final List<ProvenanceEventRecord> events) {
+        if (events.size() > maxEvents) {
+            return;
+        }
+
+        final CachedEvents previous = eventsByUuid.put(flowFileUuid, new CachedEvents(eventIds, events));
+        if (previous != null) {
+            eventCount -= previous.events.size();
+        }
+        eventCount += events.size();
+
+        final Iterator<CachedEvents> itr = eventsByUuid.values().iterator();
+        while (eventCount > maxEvents && itr.hasNext()) {
+            eventCount -= itr.next().events.size();
+            itr.remove();
+        }
+    }
+
+    /**
+     * Removes any cached events for the given FlowFile UUID's, because a new event has been indexed for them
+     *
+     * @param flowFileUuids the FlowFile UUID's
+     */
+    public synchronized void invalidate(final Collection<String> flowFileUuids) {
+        if (eventsByUuid.isEmpty()) {
+            return;
+        }
+
+        for (final String flowFileUuid : flowFileUuids) {
+            final CachedEvents removed = eventsByUuid.remove(flowFileUuid);
+            if (removed != null) {
+                eventCount -= removed.events.size();
+            }
+        }
+    }
+
+    private static class CachedEvents {
+        private final List<Long> eventIds;
+        private final List<ProvenanceEventRecord> events;
+
+        CachedEvents(final List<Long> eventIds, final List<ProvenanceEventRecord> events) {
+            this.eventIds = eventIds;
+            this.events = events;
+        }
+    }
+}
@@ -62,10 +62,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -76,6 +81,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 
 public class LuceneEventIndex implements EventIndex {
@@ -105,6 +111,8 @@ public class LuceneEventIndex implements EventIndex {
     private final EventReporter eventReporter;
 
     private final List<CachedQuery> cachedQueries = new ArrayList<>();
+    private final FlowFileEventIndex flowFileEventIndex; // null if disabled
+    private final LineageEventCache lineageEventCache; // null if disabled
 
     private ScheduledExecutorService maintenanceExecutor; // effectively final
     private ScheduledExecutorService cacheWarmerExecutor;
@@ -147,6 +155,10 @@ public class LuceneEventIndex implements EventIndex {
         this.config = config;
         this.indexManager = indexManager;
         this.eventConverter = new ConvertEventToLuceneDocument(config.getSearchableFields(), config.getSearchableAttributes());
+
+        // The lineage index is what tells us which events to cache, so there is no point in caching events without it.
+        this.flowFileEventIndex = config.getLineageIndexMaxEventIds() > 0 ? new FlowFileEventIndex(config.getLineageIndexMaxEventIds()) : null;
+        this.lineageEventCache = flowFileEventIndex != null && config.getLineageCacheMaxEvents() > 0 ? new LineageEventCache(config.getLineageCacheMaxEvents()) : null;
     }
 
     @Override
@@ -256,6 +268,7 @@ public class LuceneEventIndex implements EventIndex {
             for (final CachedQuery cachedQuery : cachedQueries) {
                 cachedQuery.update(event, summary);
             }
+            updateLineageIndex(event, summary);
 
             final Document document = eventConverter.convert(event, summary);
             if (document == null) {
@@ -301,6 +314,7 @@ public class LuceneEventIndex implements EventIndex {
         for (final CachedQuery cachedQuery : cachedQueries) {
             cachedQuery.update(event, location);
         }
+        updateLineageIndex(event, location);
 
         final Document document = eventConverter.convert(event, location);
         if (document == null) {
@@ -334,6 +348,17 @@ public class LuceneEventIndex implements EventIndex {
         }
     }
 
+    private void updateLineageIndex(final ProvenanceEventRecord event, final StorageSummary location) {
+        if (flowFileEventIndex == null) {
+            return;
+        }
+
+        final Set<String> flowFileUuids = flowFileEventIndex.update(event, location.getEventId());
+        if (lineageEventCache != null) {
+            lineageEventCache.invalidate(flowFileUuids);
+        }
+    }
+
     private void incrementAndReportStats() {
         final long fiveMinutesAgo = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(5);
         final TimestampedLong nanosLastFive = queuePauseNanos.getAggregateValue(fiveMinutesAgo);
@@ -391,6 +416,22 @@ public class LuceneEventIndex implements EventIndex {
     private ComputeLineageSubmission submitLineageComputation(final Collection<String> flowFileUuids, final NiFiUser user, final EventAuthorizer eventAuthorizer,
         final LineageComputationType computationType, final Long eventId, final long startTimestamp, final long endTimestamp) {
 
+        // If we know the ID of every event for these FlowFiles, there is no need to query Lucene at all.
+        final Optional<Map<String, List<Long>>> indexedEventIds = flowFileEventIndex == null ? Optional.empty() : flowFileEventIndex.getEventIds(flowFileUuids);
+        if (indexedEventIds.isPresent()) {
+            final AsyncLineageSubmission submission = new AsyncLineageSubmission(computationType, eventId, flowFileUuids, 1, user == null ? null : user.getIdentity());
+            lineageSubmissionMap.put(submission.getLineageIdentifier(), submission);
+            queryExecutor.submit(() -> computeLineageFromIndex(indexedEventIds.get(), submission, eventAuthorizer));
+
+            try {
+                submission.getResult().awaitCompletion(500, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+
+            return submission;
+        }
+
         final List<File> indexDirs = directoryManager.getDirectories(startTimestamp, endTimestamp);
         final AsyncLineageSubmission submission = new AsyncLineageSubmission(computationType, eventId, flowFileUuids, indexDirs.size(), user == null ? null : user.getIdentity());
         lineageSubmissionMap.put(submission.getLineageIdentifier(), submission);
@@ -420,6 +461,72 @@ public class LuceneEventIndex implements EventIndex {
         return submission;
     }
 
+    private void computeLineageFromIndex(final Map<String, List<Long>> eventIdsByUuid, final AsyncLineageSubmission submission, final EventAuthorizer eventAuthorizer) {
+        try {
+            // Read any events that are not already cached from the Event Store in a single pass, without authorizing them, so that they can be cached for any user.
+            final Map<String, List<ProvenanceEventRecord>> eventsByUuid = new HashMap<>();
+            final List<Long> eventIdsToFetch = new ArrayList<>();
+            for (final Map.Entry<String, List<Long>> entry : eventIdsByUuid.entrySet()) {
+                final Optional<List<ProvenanceEventRecord>> cachedEvents = lineageEventCache == null ? Optional.empty() : lineageEventCache.get(entry.getKey(), entry.getValue());
+                if (cachedEvents.isPresent()) {
+                    eventsByUuid.put(entry.getKey(), cachedEvents.get());
+                } else {
+                    eventIdsToFetch.addAll(entry.getValue());
+                }
+            }
+
+            if (!eventIdsToFetch.isEmpty()) {
+                final Map<Long, ProvenanceEventRecord> fetchedEvents = new HashMap<>();
+                for (final ProvenanceEventRecord event : eventStore.getEvents(eventIdsToFetch, EventAuthorizer.GRANT_ALL, EventTransformer.EMPTY_TRANSFORMER)) {
+                    fetchedEvents.put(event.getEventId(), event);
+                }
+
+                for (final Map.Entry<String, List<Long>> entry : eventIdsByUuid.entrySet()) {
+                    if (eventsByUuid.containsKey(entry.getKey())) {
+                        continue;
+                    }
+
+                    final List<ProvenanceEventRecord> events = entry.getValue().stream()
+                        .map(fetchedEvents::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+
+                    if (lineageEventCache != null) {
+                        lineageEventCache.put(entry.getKey(), entry.getValue(), events);
+                    }
+                    eventsByUuid.put(entry.getKey(), events);
+                }
+            }
+
+            // An event may pertain to several of the FlowFiles, such as a FORK that pertains to both the parent and its children.
+            final SortedMap<Long, ProvenanceEventRecord> lineageEvents = new TreeMap<>();
+            for (final List<ProvenanceEventRecord> events : eventsByUuid.values()) {
+                for (final ProvenanceEventRecord event : events) {
+                    if (lineageEvents.size() < MAX_LINEAGE_NODES || event.getEventId() < lineageEvents.lastKey()) {
+                        lineageEvents.put(event.getEventId(), event);
+                        if (lineageEvents.size() > MAX_LINEAGE_NODES) {
+                            lineageEvents.remove(lineageEvents.lastKey());
+                        }
+                    }
+                }
+            }
+
+            final List<ProvenanceEventRecord> authorizedEvents = new ArrayList<>(lineageEvents.size());
+            for (final ProvenanceEventRecord event : lineageEvents.values()) {
+                if (eventAuthorizer.isAuthorized(event)) {
+                    authorizedEvents.add(event);
+                } else {
+                    EventTransformer.PLACEHOLDER_TRANSFORMER.transform(event).ifPresent(authorizedEvents::add);
+                }
+            }
+
+            submission.getResult().update(authorizedEvents, authorizedEvents.size());
+        } catch (final Exception e) {
+            logger.error("Failed to compute lineage for FlowFiles {}", eventIdsByUuid.keySet(), e);
+            submission.getResult().setError("Failed to compute lineage due to " + e + "; see logs for more details");
+        }
+    }
+
     private BooleanQuery buildLineageQuery(final Collection<String> flowFileUuids) {
         // Create a query for all Events related to the FlowFiles of interest. We do this by adding all ID's as
         // "SHOULD" clauses and then setting the minimum required to 1.
@@ -478,7 +585,8 @@ public class LuceneEventIndex implements EventIndex {
             query.getStartDate() == null ? null : query.getStartDate().getTime(),
             query.getEndDate() == null ? null : query.getEndDate().getTime());
 
-        final AsyncQuerySubmission submission = new AsyncQuerySubmission(query, indexDirectories.size(), userId);
+        // One step for each index directory that is searched, plus one for retrieving the events that make up the merged results.
+        final AsyncQuerySubmission submission = new AsyncQuerySubmission(query, indexDirectories.size() + 1, userId);
         querySubmissionMap.put(query.getIdentifier(), submission);
 
         final org.apache.lucene.search.Query luceneQuery = LuceneUtil.convertQuery(query);
@@ -489,9 +597,11 @@ public class LuceneEventIndex implements EventIndex {
         } else {
             Collections.sort(indexDirectories, DirectoryUtils.NEWEST_INDEX_FIRST);
 
+            final MultiShardQuery multiShardQuery = new MultiShardQuery(luceneQuery, submission.getResult(), query.getMaxResults(), indexDirectories.size(),
+                indexManager, eventStore, authorizer, EventTransformer.EMPTY_TRANSFORMER);
+
             for (final File indexDir : indexDirectories) {
-                queryExecutor.submit(new QueryTask(luceneQuery, submission.getResult(), query.getMaxResults(), indexManager, indexDir,
-                    eventStore, authorizer, EventTransformer.EMPTY_TRANSFORMER));
+                queryExecutor.submit(multiShardQuery.createShardTask(indexDir));
             }
         }
 
@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.index.lucene;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.SearchableFields;
+import org.apache.nifi.provenance.StandardQueryResult;
+import org.apache.nifi.provenance.authorization.EventAuthorizer;
+import org.apache.nifi.provenance.authorization.EventTransformer;
+import org.apache.nifi.provenance.index.EventIndexSearcher;
+import org.apache.nifi.provenance.lucene.IndexManager;
+import org.apache.nifi.provenance.store.EventStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Executes a single Provenance Query against many index directories ("shards") in parallel. Rather than having each shard read its
+ * matching events from the Event Store, as {@link QueryTask} does, each shard only contributes the Event ID and Event Time of its newest
+ * hits. These are merged into a single top-N, and only the events that make it into that top-N are then read from the Event Store, in a
+ * single batch, so that each Event File is opened once for the entire query rather than once per shard.
+ * </p>
+ *
+ * <p>
+ * As each shard completes, the events of the merged top-N are published to the {@link StandardQueryResult}, replacing those that were
+ * published before, because any hit may still be displaced by newer hits from a shard that has not yet completed. Events that were read
+ * for an earlier shard are not read again. The result must be created with one step for each shard plus one final step, which is completed
+ * once the last shard has completed.
+ * </p>
+ */
+public class MultiShardQuery {
+    private static final Logger logger = LoggerFactory.getLogger(MultiShardQuery.class);
+    private static final Set<String> LUCENE_FIELDS_TO_LOAD = Collections.singleton(SearchableFields.Identifier.getSearchableFieldName());
+    private static final Sort NEWEST_EVENTS_FIRST = new Sort(new SortField(SearchableFields.EventTime.getSearchableFieldName(), FieldCache.NUMERIC_UTILS_LONG_PARSER, true));
+    private static final Comparator<EventHit> OLDEST_HIT_FIRST = Comparator.comparingLong(EventHit::getEventTime).thenComparingLong(EventHit::getEventId);
+
+    private final Query query;
+    private final StandardQueryResult queryResult;
+    private final int maxResults;
+    private final IndexManager indexManager;
+    private final EventStore eventStore;
+    private final EventAuthorizer authorizer;
+    private final EventTransformer transformer;
+
+    // guarded by synchronizing on 'this'
+    private final PriorityQueue<EventHit> topHits;
+    private int remainingShards;
+    private long totalHits = 0L;
+
+    // guarded by synchronizing on 'publishMonitor', so that the results are always replaced by newer ones
+    private final Object publishMonitor = new Object();
+    private final Map<Long, ProvenanceEventRecord> fetchedEvents = new HashMap<>();
+    private final Set<Long> fetchedEventIds = new HashSet<>();
+
+    public MultiShardQuery(final Query query, final StandardQueryResult result, final int maxResults, final int shardCount, final IndexManager indexManager,
+        final EventStore eventStore, final EventAuthorizer authorizer, final EventTransformer transformer) {
+        this.query = query;
+        this.queryResult = result;
+        this.maxResults = maxResults;
+        this.remainingShards = shardCount;
+        this.indexManager = indexManager;
+        this.eventStore = eventStore;
+        this.authorizer = authorizer;
+        this.transformer = transformer;
+        this.topHits = new PriorityQueue<>(Math.max(1, maxResults), OLDEST_HIT_FIRST);
+    }
+
+    /**
+     * Creates a task that searches the given index directory. Exactly one task must be created and run for each of the shards that
+     * this query was created with.
+     *
+     * @param indexDir the index directory to search
+     * @return a task that searches the given index directory and merges its hits into this query's results
+     */
+    public Runnable createShardTask(final File indexDir) {
+        return () -> {
+            if (queryResult.isFinished()) {
+                logger.debug("Will not query lucene index {} because the query is already finished", indexDir);
+                shardComplete(indexDir, Collections.emptyList(), 0, true);
+                return;
+            }
+
+            final List<EventHit> hits = new ArrayList<>();
+            final int shardHitCount;
+            try {
+                shardHitCount = searchShard(indexDir, hits);
+            } catch (final Exception e) {
+                logger.error("Failed to query Lucene for index " + indexDir, e);
+                queryResult.setError("Failed to query Lucene for index " + indexDir + " due to " + e);
+                shardComplete(indexDir, Collections.emptyList(), 0, false);
+                return;
+            }
+
+            shardComplete(indexDir, hits, shardHitCount, true);
+        };
+    }
+
+    /**
+     * Searches the given index directory for the newest events that match the query, adding them to the given List
+     *
+     * @return the total number of hits in the shard
+     */
+    private int searchShard(final File indexDir, final List<EventHit> hits) throws IOException {
+        final long borrowStart = System.nanoTime();
+        final EventIndexSearcher searcher;
+        try {
+            searcher = indexManager.borrowIndexSearcher(indexDir);
+        } catch (final FileNotFoundException fnfe) {
+            // As with QueryTask, the index may have just been created or may have aged off, so this is not considered an error.
+            logger.info("Attempted to search Provenance Index {} but could not find the directory or the directory did not contain a valid Lucene index. "
+                + "This usually indicates that either the index was just created and hasn't fully been initialized, or that the index was recently aged off.", indexDir);
+            return 0;
+        }
+
+        try {
+            final long borrowMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - borrowStart);
+            logger.debug("Borrowing index searcher for {} took {} ms", indexDir, borrowMillis);
+
+            final long startNanos = System.nanoTime();
+            final TopFieldDocs topDocs = searcher.getIndexSearcher().search(getShardQuery(), maxResults, NEWEST_EVENTS_FIRST);
+            final long searchMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            logger.debug("Querying Lucene for index {} took {} ms", indexDir, searchMillis);
+
+            final IndexReader indexReader = searcher.getIndexSearcher().getIndexReader();
+            for (final ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                final long eventId = indexReader.document(scoreDoc.doc, LUCENE_FIELDS_TO_LOAD)
+                    .getField(SearchableFields.Identifier.getSearchableFieldName()).numericValue().longValue();
+                final long eventTime = (Long) ((FieldDoc) scoreDoc).fields[0];
+                hits.add(new EventHit(eventId, eventTime));
+            }
+
+            return topDocs.totalHits;
+        } finally {
+            indexManager.returnIndexSearcher(searcher);
+        }
+    }
+
+    /**
+     * Once the maximum number of hits has been found, there is no need for any other shard to return a hit that is older than the
+     * oldest of them, so the query is narrowed down to avoid sorting hits that would be discarded anyway.
+     */
+    private Query getShardQuery() {
+        final Long oldestEventTime;
+        synchronized (this) {
+            oldestEventTime = topHits.size() < maxResults ? null : topHits.peek().getEventTime();
+        }
+
+        if (oldestEventTime == null) {
+            return query;
+        }
+
+        final BooleanQuery narrowedQuery = new BooleanQuery();
+        narrowedQuery.add(query, Occur.MUST);
+        narrowedQuery.add(NumericRangeQuery.newLongRange(SearchableFields.EventTime.getSearchableFieldName(), oldestEventTime, null, true, true), Occur.MUST);
+        return narrowedQuery;
+    }
+
+    // visible for testing
+    void shardComplete(final File indexDir, final List<EventHit> hits, final int shardHitCount, final boolean updateResult) {
+        final boolean lastShard;
+
+        synchronized (this) {
+            totalHits += shardHitCount;
+            for (final EventHit hit : hits) {
+                if (topHits.size() < maxResults) {
+                    topHits.add(hit);
+                } else if (OLDEST_HIT_FIRST.compare(hit, topHits.peek()) > 0) {
+                    topHits.poll();
+                    topHits.add(hit);
+                }
+            }
+
+            lastShard = --remainingShards == 0;
+        }
+
+        if (updateResult) {
+            final List<ProvenanceEventRecord> events = publishTopHits();
+            if (events != null) {
+                logger.debug("Queried index {} for query {}; found {} hits and published {} events", indexDir, query, shardHitCount, events.size());
+            }
+        }
+
+        if (lastShard) {
+            final long hitCount;
+            synchronized (this) {
+                hitCount = totalHits;
+            }
+
+            // The events of the merged top-N have already been published, so this only completes the final step
+            queryResult.update(Collections.emptyList(), hitCount);
+            logger.info("Successfully queried all indices for query {}; found a total of {} hits", query, hitCount);
+        }
+    }
+
+    /**
+     * Replaces the events of the query result with those of the current top-N, reading only the events that have not been read before
+     *
+     * @return the events that were published, or <code>null</code> if they could not be retrieved or the query is already finished
+     */
+    private List<ProvenanceEventRecord> publishTopHits() {
+        synchronized (publishMonitor) {
+            if (queryResult.isFinished()) {
+                return null;
+            }
+
+            final List<Long> eventIds = new ArrayList<>();
+            final long hitCount;
+            synchronized (this) {
+                for (final EventHit hit : topHits) {
+                    eventIds.add(hit.getEventId());
+                }
+
+                hitCount = totalHits;
+            }
+
+            final List<Long> eventIdsToFetch = new ArrayList<>();
+            for (final Long eventId : eventIds) {
+                if (!fetchedEventIds.contains(eventId)) {
+                    eventIdsToFetch.add(eventId);
+                }
+            }
+
+            final List<ProvenanceEventRecord> newEvents = fetchEvents(eventIdsToFetch);
+            if (newEvents == null) {
+                return null;
+            }
+
+            // Events that the user is not authorized to see are not returned, so remember which events were asked for as well
+            fetchedEventIds.addAll(eventIdsToFetch);
+            for (final ProvenanceEventRecord event : newEvents) {
+                fetchedEvents.put(event.getEventId(), event);
+            }
+
+            // Hits that have been displaced can never return to the top-N, so their events need not be kept
+            fetchedEventIds.retainAll(eventIds);
+            fetchedEvents.keySet().retainAll(eventIds);
+
+            final List<ProvenanceEventRecord> events = Collections.unmodifiableList(new ArrayList<>(fetchedEvents.values()));
+            queryResult.replaceMatchingEvents(events, hitCount);
+            return events;
+        }
+    }
+
+    /**
+     * @return the events with the given IDs, or <code>null</code> if the events could not be retrieved, in which case the error has
+     *         already been recorded in the query result
+     */
+    private List<ProvenanceEventRecord> fetchEvents(final List<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final List<ProvenanceEventRecord> events = eventStore.getEvents(eventIds, authorizer, transformer);
+            final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            logger.debug("Fetching {} events from Event Store took {} ms ({} events actually fetched)", eventIds.size(), millis, events.size());
+            return events;
+        } catch (final Exception e) {
+            logger.error("Failed to retrieve Provenance Events from store", e);
+            queryResult.setError("Failed to retrieve Provenance Events from store; see logs for more details");
+            return null;
+        }
+    }
+
+    // visible for testing
+    static class EventHit {
+        private final long eventId;
+        private final long eventTime;
+
+        EventHit(final long eventId, final long eventTime) {
+            this.eventId = eventId;
+            this.eventTime = eventTime;
+        }
+
+        long getEventId() {
+            return eventId;
+        }
+
+        long getEventTime() {
+            return eventTime;
+        }
+    }
+}
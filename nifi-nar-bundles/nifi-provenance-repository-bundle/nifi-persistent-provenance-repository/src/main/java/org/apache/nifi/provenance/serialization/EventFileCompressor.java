@@ -82,6 +82,7 @@ public class EventFileCompressor implements Runnable {
                 File outputFile = null;
                 long bytesBefore = 0L;
                 StandardTocReader tocReader = null;
+                boolean compressed = false;
 
                 File tmpTocFile = null;
                 eventFileManager.obtainReadLock(uncompressedEventFile);
@@ -99,12 +100,13 @@ public class EventFileCompressor implements Runnable {
                     bytesBefore = uncompressedEventFile.length();
 
                     try {
-                        outputFile = new File(uncompressedEventFile.getParentFile(), uncompressedEventFile.getName() + ".gz");
+                        outputFile = getCompressedFile(uncompressedEventFile);
                         try {
                             tmpTocFile = new File(tocFile.getParentFile(), tocFile.getName() + ".tmp");
                             tocWriter = new StandardTocWriter(tmpTocFile, true, false);
-                            compress(uncompressedEventFile, tocReader, outputFile, tocWriter);
+                            compressFile(uncompressedEventFile, tocReader, outputFile, tocWriter);
                             tocWriter.close();
+                            compressed = true;
                         } catch (final IOException ioe) {
                             logger.error("Failed to compress {} on rollover", uncompressedEventFile, ioe);
                         }
@@ -115,6 +117,17 @@ public class EventFileCompressor implements Runnable {
                     eventFileManager.releaseReadLock(uncompressedEventFile);
                 }
 
+                if (!compressed) {
+                    // Keep the original event file, which is still readable, and discard whatever was partially written.
+                    if (outputFile != null && outputFile.exists() && !outputFile.delete()) {
+                        logger.warn("Failed to delete {}; this file should be cleaned up manually", outputFile);
+                    }
+                    if (tmpTocFile != null && tmpTocFile.exists() && !tmpTocFile.delete()) {
+                        logger.warn("Failed to delete {}; this file should be cleaned up manually", tmpTocFile);
+                    }
+                    continue;
+                }
+
                 eventFileManager.obtainWriteLock(uncompressedEventFile);
                 try {
                     // Attempt to delete the input file and associated toc file
@@ -151,6 +164,27 @@ public class EventFileCompressor implements Runnable {
         }
     }
 
+    /**
+     * @param uncompressedEventFile the event file that was rolled over
+     * @return the file that the compressed form of the given event file should be written to
+     */
+    protected File getCompressedFile(final File uncompressedEventFile) {
+        return new File(uncompressedEventFile.getParentFile(), uncompressedEventFile.getName() + ".gz");
+    }
+
+    /**
+     * Writes the compressed form of the given event file, adding an entry to the given Table of Contents for each block that is written
+     *
+     * @param input the event file that was rolled over
+     * @param tocReader the Table of Contents of the event file
+     * @param output the file to write to
+     * @param tocWriter the Table of Contents of the output file
+     * @throws IOException if unable to read the event file or write the output file
+     */
+    protected void compressFile(final File input, final TocReader tocReader, final File output, final TocWriter tocWriter) throws IOException {
+        compress(input, tocReader, output, tocWriter);
+    }
+
     public static void compress(final File input, final TocReader tocReader, final File output, final TocWriter tocWriter) throws IOException {
         try (final InputStream fis = new FileInputStream(input);
             final OutputStream fos = new FileOutputStream(output);
@@ -34,6 +34,8 @@ import org.apache.nifi.provenance.EncryptedSchemaRecordReader;
 import org.apache.nifi.provenance.EventIdFirstSchemaRecordReader;
 import org.apache.nifi.provenance.EventIdFirstSchemaRecordWriter;
 import org.apache.nifi.provenance.StandardRecordReader;
+import org.apache.nifi.provenance.columnar.ColumnarSegmentReader;
+import org.apache.nifi.provenance.columnar.ColumnarSegmentWriter;
 import org.apache.nifi.provenance.lucene.LuceneUtil;
 import org.apache.nifi.provenance.toc.StandardTocReader;
 import org.apache.nifi.provenance.toc.TocReader;
@@ -92,11 +94,11 @@ public class RecordReaders {
                 final File dir = file.getParentFile();
                 final String baseName = LuceneUtil.substringBefore(file.getName(), ".prov");
 
-                // depending on which rollover actions have occurred, we could have 2 possibilities for the
-                // filename that we need. The majority of the time, we will use the extension ".prov.gz"
-                // because most often we are compressing on rollover and most often we have already finished
-                // compressing by the time that we are querying the data.
-                for (final String extension : new String[]{".prov.gz", ".prov"}) {
+                // depending on which rollover actions have occurred, we could have 3 possibilities for the
+                // filename that we need. The majority of the time, we will use the extension ".prov.gz" (or ".prov.col"
+                // when event files are rewritten as columnar segments) because most often we are compressing on rollover
+                // and most often we have already finished compressing by the time that we are querying the data.
+                for (final String extension : new String[]{".prov.gz", ColumnarSegmentWriter.FILE_EXTENSION, ".prov"}) {
                     file = new File(dir, baseName + extension);
                     if (file.exists()) {
                         try {
@@ -159,6 +161,14 @@ public class RecordReaders {
                     final TocReader tocReader = new StandardTocReader(tocFile);
                     return new EventIdFirstSchemaRecordReader(bufferedInStream, filename, tocReader, maxAttributeChars);
                 }
+                case ColumnarSegmentWriter.SERIALIZATION_NAME: {
+                    if (!tocFile.exists()) {
+                        throw new FileNotFoundException("Cannot create TOC Reader because the file " + tocFile + " does not exist");
+                    }
+
+                    final TocReader tocReader = new StandardTocReader(tocFile);
+                    return new ColumnarSegmentReader(bufferedInStream, filename, tocReader, maxAttributeChars);
+                }
                 case EncryptedSchemaRecordReader.SERIALIZATION_NAME: {
                     if (!tocFile.exists()) {
                         throw new FileNotFoundException("Cannot create TOC Reader because the file " + tocFile + " does not exist");
@@ -34,6 +34,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.provenance.RepositoryConfiguration;
+import org.apache.nifi.provenance.columnar.ColumnarSegmentCompactor;
 import org.apache.nifi.provenance.index.EventIndex;
 import org.apache.nifi.provenance.serialization.EventFileCompressor;
 
@@ -58,7 +59,7 @@ public class PartitionedWriteAheadEventStore extends PartitionedEventStore {
         this.fileManager = fileManager;
 
         // Creates tasks to compress data on rollover
-        if (repoConfig.isCompressOnRollover()) {
+        if (repoConfig.isCompressOnRollover() || repoConfig.isColumnarEventFiles()) {
             compressionExecutor = Executors.newFixedThreadPool(repoConfig.getIndexThreadPoolSize(), new NamedThreadFactory("Compress Provenance Logs"));
         } else {
             compressionExecutor = null;
@@ -86,9 +87,12 @@ public class PartitionedWriteAheadEventStore extends PartitionedEventStore {
 
     @Override
     public void initialize() throws IOException {
-        if (repoConfig.isCompressOnRollover()) {
+        if (repoConfig.isCompressOnRollover() || repoConfig.isColumnarEventFiles()) {
             for (int i = 0; i < repoConfig.getIndexThreadPoolSize(); i++) {
-                final EventFileCompressor compressor = new EventFileCompressor(filesToCompress, fileManager);
+                // Columnar segments are always compressed, so they take the place of GZIP'ed event files.
+                final EventFileCompressor compressor = repoConfig.isColumnarEventFiles()
+                    ? new ColumnarSegmentCompactor(filesToCompress, fileManager)
+                    : new EventFileCompressor(filesToCompress, fileManager);
                 compressionExecutor.submit(compressor);
                 fileCompressors.add(compressor);
             }
@@ -47,6 +47,7 @@ import org.apache.nifi.provenance.ProvenanceEventRecord;
 import org.apache.nifi.provenance.RepositoryConfiguration;
 import org.apache.nifi.provenance.StandardProvenanceEventRecord;
 import org.apache.nifi.provenance.authorization.EventAuthorizer;
+import org.apache.nifi.provenance.columnar.ColumnarSegmentWriter;
 import org.apache.nifi.provenance.index.EventIndex;
 import org.apache.nifi.provenance.serialization.RecordReader;
 import org.apache.nifi.provenance.serialization.RecordWriter;
@@ -142,7 +143,7 @@ public class WriteAheadStorePartition implements EventStorePartition {
         this.maxEventId.set(maxEventId);
 
         // If configured to compress, compress any files that are not yet compressed.
-        if (config.isCompressOnRollover()) {
+        if (config.isCompressOnRollover() || config.isColumnarEventFiles()) {
             final File[] uncompressedFiles = partitionDirectory.listFiles(f -> f.getName().endsWith(".prov"));
             if (uncompressedFiles != null) {
                 for (final File file : uncompressedFiles) {
@@ -153,6 +154,11 @@ public class WriteAheadStorePartition implements EventStorePartition {
                     if (compressed.exists()) {
                         compressed.delete();
                     }
+
+                    final File segment = new File(file.getParentFile(), DirectoryUtils.getMinId(file) + ColumnarSegmentWriter.FILE_EXTENSION);
+                    if (segment.exists()) {
+                        segment.delete();
+                    }
                 }
             }
         }
@@ -276,7 +282,7 @@ public class WriteAheadStorePartition implements EventStorePartition {
             minEventIdToPathMap.put(nextEventId, updatedEventFile);
         }
 
-        if (config.isCompressOnRollover() && lease != null && lease.getWriter() != null) {
+        if ((config.isCompressOnRollover() || config.isColumnarEventFiles()) && lease != null && lease.getWriter() != null) {
             boolean offered = false;
             while (!offered && !closed) {
                 try {
@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.columnar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.provenance.EventIdFirstSchemaRecordWriter;
+import org.apache.nifi.provenance.IdentifierLookup;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.serialization.RecordReaders;
+import org.apache.nifi.provenance.toc.StandardTocReader;
+import org.apache.nifi.provenance.toc.StandardTocWriter;
+import org.apache.nifi.provenance.toc.TocUtil;
+import org.apache.nifi.provenance.toc.TocWriter;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestColumnarSegmentReaderWriter {
+    private File segmentFile;
+    private File tocFile;
+
+    @Before
+    public void setup() {
+        final File dir = new File("target/storage/" + UUID.randomUUID().toString());
+        segmentFile = new File(dir, "0" + ColumnarSegmentWriter.FILE_EXTENSION);
+        tocFile = TocUtil.getTocFile(segmentFile);
+        dir.mkdirs();
+    }
+
+    private void writeSegment(final List<ProvenanceEventRecord> events, final int eventsPerBlock) throws IOException {
+        try (final TocWriter tocWriter = new StandardTocWriter(tocFile, true, false);
+            final ColumnarSegmentWriter writer = new ColumnarSegmentWriter(new FileOutputStream(segmentFile), tocWriter, eventsPerBlock)) {
+            writer.writeHeader();
+            for (final ProvenanceEventRecord event : events) {
+                writer.addEvent(event);
+            }
+        }
+    }
+
+    private ColumnarSegmentReader createReader(final int maxAttributeChars) throws IOException {
+        return new ColumnarSegmentReader(new FileInputStream(segmentFile), segmentFile.getName(), new StandardTocReader(tocFile), maxAttributeChars);
+    }
+
+    @Test
+    public void testRoundTripPreservesAllFields() throws IOException {
+        final List<ProvenanceEventRecord> events = new ArrayList<>();
+        long eventId = 40L;
+        for (int i = 0; i < 250; i++) {
+            events.add(createEvent(eventId, ProvenanceEventType.values()[i % 4 == 0 ? 0 : i % ProvenanceEventType.values().length]));
+            eventId += 1 + i % 3;
+        }
+
+        writeSegment(events, 64);
+
+        try (final RecordReader reader = createReader(Integer.MAX_VALUE)) {
+            for (final ProvenanceEventRecord expected : events) {
+                assertEventsEqual(expected, reader.nextRecord());
+            }
+
+            assertNull(reader.nextRecord());
+        }
+    }
+
+    @Test
+    public void testSkipToEventAcrossBlocks() throws IOException {
+        final List<ProvenanceEventRecord> events = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            // Leave a gap at every tenth Event ID, as would happen when IDs are shared across partitions.
+            final long eventId = i + i / 9;
+            events.add(createEvent(eventId, ProvenanceEventType.CONTENT_MODIFIED));
+        }
+
+        writeSegment(events, 100);
+
+        try (final RecordReader reader = createReader(Integer.MAX_VALUE)) {
+            for (final int index : new int[] {0, 1, 99, 100, 101, 2500, 4999}) {
+                final ProvenanceEventRecord expected = events.get(index);
+                final Optional<ProvenanceEventRecord> skippedTo = reader.skipToEvent(expected.getEventId());
+                assertTrue(skippedTo.isPresent());
+                assertEventsEqual(expected, skippedTo.get());
+
+                // The event that was skipped to must be the next one returned.
+                assertEventsEqual(expected, reader.nextRecord());
+            }
+
+            assertFalse(reader.skipToEvent(events.get(4999).getEventId() + 1).isPresent());
+        }
+
+        // An Event ID that falls in a gap should return the next event
+        try (final RecordReader reader = createReader(Integer.MAX_VALUE)) {
+            final Optional<ProvenanceEventRecord> skippedTo = reader.skipToEvent(9L);
+            assertTrue(skippedTo.isPresent());
+            assertEquals(10L, skippedTo.get().getEventId());
+        }
+
+        try (final RecordReader reader = createReader(Integer.MAX_VALUE)) {
+            assertEquals(events.get(4999).getEventId(), reader.getMaxEventId());
+        }
+    }
+
+    @Test
+    public void testAttributesTruncated() throws IOException {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", UUID.randomUUID().toString());
+        attributes.put("long", "0123456789012345678901234567890123456789012345678901234567890123456789");
+
+        final ProvenanceEventRecord event = new StandardProvenanceEventRecord.Builder()
+            .setEventId(0L)
+            .setEventType(ProvenanceEventType.CREATE)
+            .setAttributes(Collections.emptyMap(), attributes)
+            .setComponentId("component-1")
+            .setComponentType("unit test")
+            .setEventTime(System.currentTimeMillis())
+            .setFlowFileUUID(attributes.get("uuid"))
+            .setCurrentContentClaim(null, null, null, null, 0L)
+            .build();
+        writeSegment(Collections.singletonList(event), 64);
+
+        try (final RecordReader reader = createReader(40)) {
+            final ProvenanceEventRecord read = reader.nextRecord();
+            assertEquals(attributes.get("long").substring(0, 40), read.getAttribute("long"));
+            assertEquals(attributes.get("uuid"), read.getAttribute("uuid"));
+        }
+    }
+
+    @Test
+    public void testCompactEventFile() throws IOException {
+        final File eventFile = new File(segmentFile.getParentFile(), "0.prov");
+        final List<ProvenanceEventRecord> events = new ArrayList<>();
+        final AtomicLong idGenerator = new AtomicLong(0L);
+
+        try (final EventIdFirstSchemaRecordWriter writer = new EventIdFirstSchemaRecordWriter(eventFile, idGenerator,
+            new StandardTocWriter(TocUtil.getTocFile(eventFile), false, false), false, 32 * 1024, IdentifierLookup.EMPTY)) {
+            writer.writeHeader(0L);
+            for (int i = 0; i < 3000; i++) {
+                final ProvenanceEventRecord event = createEvent(-1L, ProvenanceEventType.ATTRIBUTES_MODIFIED);
+                final long eventId = writer.writeRecord(event).getEventId();
+                events.add(new StandardProvenanceEventRecord.Builder().fromEvent(event).setEventId(eventId).build());
+            }
+        }
+
+        // Replace the Table of Contents of the event file, as is done on rollover
+        tocFile.delete();
+        try (final TocWriter tocWriter = new StandardTocWriter(tocFile, true, false)) {
+            ColumnarSegmentCompactor.compact(eventFile, segmentFile, tocWriter);
+        }
+        eventFile.delete();
+
+        try (final RecordReader reader = RecordReaders.newRecordReader(eventFile, Collections.emptyList(), Integer.MAX_VALUE)) {
+            assertTrue(reader instanceof ColumnarSegmentReader);
+            for (final ProvenanceEventRecord expected : events) {
+                assertEventsEqual(expected, reader.nextRecord());
+            }
+
+            assertNull(reader.nextRecord());
+        }
+    }
+
+    private ProvenanceEventRecord createEvent(final long eventId, final ProvenanceEventType eventType) {
+        final String uuid = UUID.randomUUID().toString();
+        final Map<String, String> previousAttributes = new HashMap<>();
+        previousAttributes.put("uuid", uuid);
+        previousAttributes.put("filename", uuid + ".txt");
+        previousAttributes.put("path", "./");
+        previousAttributes.put("mime.type", "application/json");
+
+        final Map<String, String> updatedAttributes = new HashMap<>();
+        updatedAttributes.put("updated", "true");
+        updatedAttributes.put("path", null);
+
+        final StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder()
+            .setEventType(eventType)
+            .setAttributes(previousAttributes, updatedAttributes)
+            .setComponentId("component-" + (uuid.hashCode() & 3))
+            .setComponentType("unit test")
+            .setEventTime(System.currentTimeMillis() - 100 + (uuid.hashCode() & 7))
+            .setFlowFileEntryDate(System.currentTimeMillis() - 500)
+            .setLineageStartDate(System.currentTimeMillis() - 1000)
+            .setEventDuration(uuid.hashCode() & 0xFF)
+            .setFlowFileUUID(uuid)
+            .setSourceQueueIdentifier("queue-1")
+            .setTransitUri("nifi://unit-test")
+            .setSourceSystemFlowFileIdentifier("urn:nifi:" + uuid)
+            .setAlternateIdentifierUri("alternate://" + uuid)
+            .setDetails("details")
+            .setRelationship("success")
+            .setParentUuids(Arrays.asList(uuid, UUID.randomUUID().toString()))
+            .setChildUuids(Arrays.asList(uuid, UUID.randomUUID().toString()))
+            .setPreviousContentClaim("container", "section", "previous-id", 5L, 100L)
+            .setCurrentContentClaim("container", "section", "unit-test-id", 100L, 1024L);
+
+        if (eventId >= 0) {
+            builder.setEventId(eventId);
+        }
+
+        return builder.build();
+    }
+
+    private void assertEventsEqual(final ProvenanceEventRecord expected, final ProvenanceEventRecord actual) {
+        assertEquals(expected.getEventId(), actual.getEventId());
+        assertEquals(expected.getEventType(), actual.getEventType());
+        assertEquals(expected.getEventTime(), actual.getEventTime());
+        assertEquals(expected.getFlowFileEntryDate(), actual.getFlowFileEntryDate());
+        assertEquals(expected.getLineageStartDate(), actual.getLineageStartDate());
+        assertEquals(expected.getEventDuration(), actual.getEventDuration());
+        assertEquals(expected.getComponentId(), actual.getComponentId());
+        assertEquals(expected.getComponentType(), actual.getComponentType());
+        assertEquals(expected.getFlowFileUuid(), actual.getFlowFileUuid());
+        assertEquals(expected.getSourceQueueIdentifier(), actual.getSourceQueueIdentifier());
+        assertEquals(expected.getTransitUri(), actual.getTransitUri());
+        assertEquals(expected.getSourceSystemFlowFileIdentifier(), actual.getSourceSystemFlowFileIdentifier());
+        assertEquals(expected.getAlternateIdentifierUri(), actual.getAlternateIdentifierUri());
+        assertEquals(expected.getDetails(), actual.getDetails());
+        assertEquals(expected.getRelationship(), actual.getRelationship());
+        assertEquals(expected.getParentUuids(), actual.getParentUuids());
+        assertEquals(expected.getChildUuids(), actual.getChildUuids());
+        assertEquals(expected.getPreviousAttributes(), actual.getPreviousAttributes());
+        assertEquals(expected.getUpdatedAttributes(), actual.getUpdatedAttributes());
+        assertEquals(expected.getContentClaimContainer(), actual.getContentClaimContainer());
+        assertEquals(expected.getContentClaimSection(), actual.getContentClaimSection());
+        assertEquals(expected.getContentClaimIdentifier(), actual.getContentClaimIdentifier());
+        assertEquals(expected.getContentClaimOffset(), actual.getContentClaimOffset());
+        assertEquals(expected.getFileSize(), actual.getFileSize());
+        assertEquals(expected.getPreviousContentClaimContainer(), actual.getPreviousContentClaimContainer());
+        assertEquals(expected.getPreviousContentClaimSection(), actual.getPreviousContentClaimSection());
+        assertEquals(expected.getPreviousContentClaimIdentifier(), actual.getPreviousContentClaimIdentifier());
+        assertEquals(expected.getPreviousContentClaimOffset(), actual.getPreviousContentClaimOffset());
+        assertEquals(expected.getPreviousFileSize(), actual.getPreviousFileSize());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.index.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.junit.Test;
+
+public class TestFlowFileEventIndex {
+
+    private final long future = System.currentTimeMillis() + 60_000L;
+
+    @Test
+    public void testEventIdsReturnedInOrder() {
+        final FlowFileEventIndex index = new FlowFileEventIndex(100);
+        index.update(createEvent(ProvenanceEventType.CREATE, "A", future), 5L);
+        index.update(createEvent(ProvenanceEventType.ATTRIBUTES_MODIFIED, "A", future), 3L);
+        index.update(createEvent(ProvenanceEventType.DROP, "A", future), 8L);
+        index.update(createEvent(ProvenanceEventType.CREATE, "B", future), 4L);
+
+        final Optional<Map<String, List<Long>>> eventIds = index.getEventIds(Collections.singleton("A"));
+        assertTrue(eventIds.isPresent());
+        assertEquals(Arrays.asList(3L, 5L, 8L), eventIds.get().get("A"));
+    }
+
+    @Test
+    public void testFlowFileCreatedBeforeIndexIsNotAnswered() {
+        final FlowFileEventIndex index = new FlowFileEventIndex(100);
+        index.update(createEvent(ProvenanceEventType.ATTRIBUTES_MODIFIED, "A", System.currentTimeMillis() - 60_000L), 1L);
+        index.update(createEvent(ProvenanceEventType.CREATE, "B", future), 2L);
+
+        assertFalse(index.getEventIds(Collections.singleton("A")).isPresent());
+        assertFalse(index.getEventIds(Arrays.asList("A", "B")).isPresent());
+        assertTrue(index.getEventIds(Collections.singleton("B")).isPresent());
+        assertFalse(index.getEventIds(Collections.singleton("C")).isPresent());
+    }
+
+    @Test
+    public void testForkChildrenAndJoinParents() {
+        final FlowFileEventIndex index = new FlowFileEventIndex(100);
+
+        final ProvenanceEventRecord fork = createEventBuilder(ProvenanceEventType.FORK, "parent", future, future)
+            .addChildUuid("child-1")
+            .addChildUuid("child-2")
+            .build();
+        assertEquals(new HashSet<>(Arrays.asList("parent", "child-1", "child-2")), index.update(fork, 1L));
+
+        // The children were created by the FORK, so every one of their events is known.
+        final Optional<Map<String, List<Long>>> childEventIds = index.getEventIds(Arrays.asList("child-1", "child-2"));
+        assertTrue(childEventIds.isPresent());
+        assertEquals(Collections.singletonList(1L), childEventIds.get().get("child-1"));
+
+        // The JOIN references a parent that we have never seen an event for, so its earlier events are not known.
+        final ProvenanceEventRecord join = createEventBuilder(ProvenanceEventType.JOIN, "merged", future, future)
+            .addParentUuid("child-1")
+            .addParentUuid("unknown-parent")
+            .build();
+        index.update(join, 2L);
+
+        assertEquals(Arrays.asList(1L, 2L), index.getEventIds(Collections.singleton("child-1")).get().get("child-1"));
+        assertFalse(index.getEventIds(Collections.singleton("unknown-parent")).isPresent());
+    }
+
+    @Test
+    public void testEvictedFlowFileIsNotAnsweredWhenSeenAgain() {
+        final FlowFileEventIndex index = new FlowFileEventIndex(3);
+        index.update(createEvent(ProvenanceEventType.CREATE, "A", future, future), 1L);
+        index.update(createEvent(ProvenanceEventType.CREATE, "B", future, future + 10), 2L);
+        index.update(createEvent(ProvenanceEventType.CREATE, "C", future + 20, future + 20), 3L);
+
+        // Adding a fourth Event ID evicts A, which has gone the longest without an event.
+        index.update(createEvent(ProvenanceEventType.CREATE, "D", future + 30, future + 30), 4L);
+        assertFalse(index.getEventIds(Collections.singleton("A")).isPresent());
+        assertTrue(index.getEventIds(Collections.singleton("D")).isPresent());
+
+        // A's first events were evicted, so if it shows up again, we must not claim to know all of its events.
+        index.update(createEvent(ProvenanceEventType.DROP, "A", future, future + 40), 5L);
+        assertFalse(index.getEventIds(Collections.singleton("A")).isPresent());
+    }
+
+    private ProvenanceEventRecord createEvent(final ProvenanceEventType type, final String uuid, final long entryDate) {
+        return createEvent(type, uuid, entryDate, entryDate);
+    }
+
+    private ProvenanceEventRecord createEvent(final ProvenanceEventType type, final String uuid, final long entryDate, final long eventTime) {
+        return createEventBuilder(type, uuid, entryDate, eventTime).build();
+    }
+
+    private StandardProvenanceEventRecord.Builder createEventBuilder(final ProvenanceEventType type, final String uuid, final long entryDate, final long eventTime) {
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventType(type)
+            .setComponentId("component-1")
+            .setComponentType("unit test")
+            .setEventTime(eventTime)
+            .setFlowFileEntryDate(entryDate)
+            .setLineageStartDate(entryDate)
+            .setFlowFileUUID(uuid)
+            .setCurrentContentClaim("container", "section", "unit-test-id", 0L, 1024L);
+    }
+}
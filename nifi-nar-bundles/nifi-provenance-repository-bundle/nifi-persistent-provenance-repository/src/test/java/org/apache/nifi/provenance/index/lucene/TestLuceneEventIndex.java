@@ -16,15 +16,18 @@
  */
 package org.apache.nifi.provenance.index.lucene;
 
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.nifi.authorization.AccessDeniedException;
 import org.apache.nifi.authorization.user.NiFiUser;
 import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.provenance.AsyncQuerySubmission;
 import org.apache.nifi.provenance.ProvenanceEventRecord;
 import org.apache.nifi.provenance.ProvenanceEventType;
 import org.apache.nifi.provenance.RepositoryConfiguration;
 import org.apache.nifi.provenance.SearchableFields;
 import org.apache.nifi.provenance.StandardProvenanceEventRecord;
 import org.apache.nifi.provenance.authorization.EventAuthorizer;
+import org.apache.nifi.provenance.authorization.EventTransformer;
 import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
 import org.apache.nifi.provenance.lineage.LineageNode;
 import org.apache.nifi.provenance.lineage.LineageNodeType;
@@ -50,6 +53,7 @@ import org.mockito.stubbing.Answer;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -61,10 +65,14 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
 
 public class TestLuceneEventIndex {
 
@@ -491,6 +499,190 @@ public class TestLuceneEventIndex {
         assertEquals(event, matchingEvents.get(0));
     }
 
+    @Test(timeout = 60000)
+    public void testQueryReturnsNewestEventsAcrossIndexDirectories() throws InterruptedException {
+        assumeFalse(isWindowsEnvironment());
+        final RepositoryConfiguration repoConfig = createConfig(2);
+        final IndexManager indexManager = new SimpleIndexManager(repoConfig);
+
+        final ArrayListEventStore eventStore = new ArrayListEventStore();
+        final LuceneEventIndex index = new LuceneEventIndex(repoConfig, indexManager, 1, EventReporter.NO_OP);
+        index.initialize(eventStore);
+
+        // Spread the events across both partitions, and therefore across two index directories, with the newest events
+        // having the largest Event ID's.
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < 20; i++) {
+            final ProvenanceEventRecord event = createEvent(now + i);
+            eventStore.addEvent(event);
+            index.addEvent(event, new StorageSummary(event.getEventId(), "1.prov", String.valueOf(i % 2 + 1), 1, 2L, 2L));
+        }
+
+        // Search on an attribute that every event has, so that the query is not answered by the cached Latest Events query.
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.newSearchableAttribute("updated"), "true"));
+        query.setMaxResults(5);
+
+        List<ProvenanceEventRecord> matchingEvents = Collections.emptyList();
+        while (matchingEvents.size() < 5 || matchingEvents.get(0).getEventId() != 19L) {
+            final QuerySubmission submission = index.submitQuery(query, EventAuthorizer.GRANT_ALL, "unit test user");
+            assertTrue(submission.getResult().awaitCompletion(5, TimeUnit.SECONDS));
+            assertNull(submission.getResult().getError());
+
+            matchingEvents = submission.getResult().getMatchingEvents();
+            Thread.sleep(25L);
+        }
+
+        final List<Long> eventIds = matchingEvents.stream().map(ProvenanceEventRecord::getEventId).collect(Collectors.toList());
+        assertEquals(Arrays.asList(19L, 18L, 17L, 16L, 15L), eventIds);
+    }
+
+    @Test
+    public void testMultiShardQueryPublishesOnlyMergedTopHits() {
+        final ArrayListEventStore eventStore = new ArrayListEventStore();
+
+        // Events are considered equal when one of them has an Event ID of 0, so start with an event that is never a hit.
+        eventStore.addEvent(createEvent(50L));
+        final List<MultiShardQuery.EventHit> newerHits = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final ProvenanceEventRecord event = createEvent(200L + i);
+            eventStore.addEvent(event);
+            newerHits.add(new MultiShardQuery.EventHit(event.getEventId(), event.getEventTime()));
+        }
+
+        // The older hits have larger Event ID's, as can happen when events are written to different partitions.
+        final List<MultiShardQuery.EventHit> olderHits = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            final ProvenanceEventRecord event = createEvent(100L + i);
+            eventStore.addEvent(event);
+            olderHits.add(new MultiShardQuery.EventHit(event.getEventId(), event.getEventTime()));
+        }
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.setMaxResults(3);
+        final AsyncQuerySubmission submission = new AsyncQuerySubmission(query, 3, "unit test user");
+        final MultiShardQuery multiShardQuery = new MultiShardQuery(new MatchAllDocsQuery(), submission.getResult(), 3, 2, Mockito.mock(IndexManager.class),
+            eventStore, EventAuthorizer.GRANT_ALL, EventTransformer.EMPTY_TRANSFORMER);
+
+        // The shard that completes first has fewer than the maximum number of hits, and they are published, but they are all displaced by the
+        // shard that completes later.
+        multiShardQuery.shardComplete(new File("index-1"), olderHits, olderHits.size(), true);
+        assertEquals(Arrays.asList(5L, 4L), getEventIds(submission.getResult().getMatchingEvents()));
+        assertFalse(submission.getResult().isFinished());
+
+        multiShardQuery.shardComplete(new File("index-2"), newerHits, newerHits.size(), true);
+        assertTrue(submission.getResult().isFinished());
+
+        final List<Long> eventIds = submission.getResult().getMatchingEvents().stream().map(ProvenanceEventRecord::getEventId).collect(Collectors.toList());
+        assertEquals(Arrays.asList(3L, 2L, 1L), eventIds);
+    }
+
+    @Test
+    public void testMultiShardQueryPublishesMergedTopHitsAsShardsComplete() {
+        final ArrayListEventStore eventStore = Mockito.spy(new ArrayListEventStore());
+
+        // Events are considered equal when one of them has an Event ID of 0, so start with an event that is never a hit.
+        eventStore.addEvent(createEvent(50L));
+        final List<MultiShardQuery.EventHit> hits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final ProvenanceEventRecord event = createEvent(100L + i);
+            eventStore.addEvent(event);
+            hits.add(new MultiShardQuery.EventHit(event.getEventId(), event.getEventTime()));
+        }
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.setMaxResults(3);
+        final AsyncQuerySubmission submission = new AsyncQuerySubmission(query, 4, "unit test user");
+        final MultiShardQuery multiShardQuery = new MultiShardQuery(new MatchAllDocsQuery(), submission.getResult(), 3, 3, Mockito.mock(IndexManager.class),
+            eventStore, EventAuthorizer.GRANT_ALL, EventTransformer.EMPTY_TRANSFORMER);
+
+        multiShardQuery.shardComplete(new File("index-1"), hits.subList(1, 3), 2, true);
+        assertEquals(Arrays.asList(3L, 2L), getEventIds(submission.getResult().getMatchingEvents()));
+        assertFalse(submission.getResult().isFinished());
+
+        // Reaching the maximum number of hits does not finish the query while shards remain, as their hits may still displace these
+        multiShardQuery.shardComplete(new File("index-2"), hits.subList(0, 1), 1, true);
+        assertEquals(Arrays.asList(3L, 2L, 1L), getEventIds(submission.getResult().getMatchingEvents()));
+        assertFalse(submission.getResult().isFinished());
+
+        multiShardQuery.shardComplete(new File("index-3"), hits.subList(3, 4), 1, true);
+        assertEquals(Arrays.asList(4L, 3L, 2L), getEventIds(submission.getResult().getMatchingEvents()));
+        assertTrue(submission.getResult().isFinished());
+
+        // Each event is read from the Event Store only once
+        verify(eventStore).getEvents(eq(Arrays.asList(2L, 3L)), any(EventAuthorizer.class), any(EventTransformer.class));
+        verify(eventStore).getEvents(eq(Collections.singletonList(1L)), any(EventAuthorizer.class), any(EventTransformer.class));
+        verify(eventStore).getEvents(eq(Collections.singletonList(4L)), any(EventAuthorizer.class), any(EventTransformer.class));
+    }
+
+    private List<Long> getEventIds(final List<ProvenanceEventRecord> events) {
+        return events.stream().map(ProvenanceEventRecord::getEventId).collect(Collectors.toList());
+    }
+
+    @Test(timeout = 60000)
+    public void testLineageReflectsNewEventsForFlowFile() throws InterruptedException {
+        final RepositoryConfiguration repoConfig = createConfig(1);
+        final IndexManager indexManager = new SimpleIndexManager(repoConfig);
+
+        final ArrayListEventStore eventStore = new ArrayListEventStore();
+        final LuceneEventIndex index = new LuceneEventIndex(repoConfig, indexManager, 1000, EventReporter.NO_OP);
+        index.initialize(eventStore);
+
+        // Events are considered equal when one of them has an Event ID of 0, so start with an event for some other FlowFile.
+        index.addEvents(eventStore.addEvent(createEvent()).getStorageLocations());
+
+        // The FlowFile was created after the index, so its lineage is computed from the events that the index has seen,
+        // without having to wait for Lucene to make them searchable.
+        final long creationTime = System.currentTimeMillis() + 60_000L;
+        for (int i = 0; i < 2; i++) {
+            final ProvenanceEventRecord event = createEvent(creationTime + i, "5555");
+            index.addEvents(eventStore.addEvent(event).getStorageLocations());
+        }
+
+        assertEquals(2L, getLineageEventCount(index, "5555"));
+
+        // The lineage is cached, but the cache must not hide a new event for the FlowFile.
+        assertEquals(2L, getLineageEventCount(index, "5555"));
+        final ProvenanceEventRecord event = createEvent(creationTime + 2, "5555");
+        index.addEvents(eventStore.addEvent(event).getStorageLocations());
+
+        assertEquals(3L, getLineageEventCount(index, "5555"));
+    }
+
+    @Test(timeout = 60000)
+    public void testLineageComputedWithLineageIndexDisabled() throws InterruptedException {
+        assumeFalse(isWindowsEnvironment());
+        final RepositoryConfiguration repoConfig = createConfig(1);
+        repoConfig.setLineageIndexMaxEventIds(0);
+        final IndexManager indexManager = new SimpleIndexManager(repoConfig);
+
+        final ArrayListEventStore eventStore = new ArrayListEventStore();
+        final LuceneEventIndex index = new LuceneEventIndex(repoConfig, indexManager, 1, EventReporter.NO_OP);
+        index.initialize(eventStore);
+
+        // Events are considered equal when one of them has an Event ID of 0, so start with an event for some other FlowFile.
+        index.addEvents(eventStore.addEvent(createEvent()).getStorageLocations());
+        for (int i = 0; i < 2; i++) {
+            index.addEvents(eventStore.addEvent(createEvent("6666")).getStorageLocations());
+        }
+
+        // Without the lineage index, lineage is computed by querying Lucene, once the events have been made searchable.
+        while (getLineageEventCount(index, "6666") < 2L) {
+            Thread.sleep(25L);
+        }
+        assertEquals(2L, getLineageEventCount(index, "6666"));
+    }
+
+    private long getLineageEventCount(final LuceneEventIndex index, final String flowFileUuid) throws InterruptedException {
+        final ComputeLineageSubmission submission = index.submitLineageComputation(flowFileUuid, createUser(), EventAuthorizer.GRANT_ALL);
+        assertTrue(submission.getResult().awaitCompletion(5, TimeUnit.SECONDS));
+        assertNull(submission.getResult().getError());
+
+        return submission.getResult().getNodes().stream()
+            .filter(node -> node.getNodeType() == LineageNodeType.PROVENANCE_EVENT_NODE)
+            .count();
+    }
+
     private RepositoryConfiguration createConfig() {
         return createConfig(1);
     }
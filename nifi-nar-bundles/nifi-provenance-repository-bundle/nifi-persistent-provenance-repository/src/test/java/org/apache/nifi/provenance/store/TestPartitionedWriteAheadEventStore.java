@@ -422,6 +422,46 @@ public class TestPartitionedWriteAheadEventStore {
     }
 
 
+    @Test(timeout = 30000)
+    public void testColumnarEventFilesAfterRollover() throws IOException, InterruptedException {
+        final RepositoryConfiguration config = createConfig(1);
+        config.setColumnarEventFiles(true);
+        config.setMaxEventFileCount(5);
+
+        final PartitionedWriteAheadEventStore store = new PartitionedWriteAheadEventStore(config, writerFactory, readerFactory, EventReporter.NO_OP, new EventFileManager());
+        store.initialize();
+
+        final List<ProvenanceEventRecord> events = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final List<ProvenanceEventRecord> batch = new ArrayList<>();
+            for (int j = 0; j < 5; j++) {
+                batch.add(createEvent());
+            }
+
+            store.addEvents(batch);
+            events.addAll(batch);
+        }
+
+        // Each batch fills an event file, so every file is rolled over and rewritten as a segment
+        final File storageDir = config.getStorageDirectories().values().iterator().next();
+        while (!new File(storageDir, "0.prov.col").exists() || new File(storageDir, "0.prov").exists()) {
+            Thread.sleep(10L);
+        }
+
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(events.get(i), store.getEvent(i).get());
+        }
+
+        final List<ProvenanceEventRecord> allEvents = store.getEvents(0, 100);
+        assertEquals(events.size(), allEvents.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i, allEvents.get(i).getEventId());
+            assertEquals(events.get(i), allEvents.get(i));
+        }
+
+        store.close();
+    }
+
     private RepositoryConfiguration createConfig() {
         return createConfig(2);
     }
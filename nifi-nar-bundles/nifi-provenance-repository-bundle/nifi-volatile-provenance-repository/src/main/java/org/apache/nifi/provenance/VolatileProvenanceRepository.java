@@ -35,15 +35,14 @@ import org.apache.nifi.provenance.search.QueryResult;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchTerm;
 import org.apache.nifi.provenance.search.SearchableField;
+import org.apache.nifi.provenance.slab.SlabEventStore;
 import org.apache.nifi.util.NiFiProperties;
-import org.apache.nifi.util.RingBuffer;
 import org.apache.nifi.util.RingBuffer.Filter;
-import org.apache.nifi.util.RingBuffer.ForEachEvaluator;
-import org.apache.nifi.util.RingBuffer.IterationDirection;
 import org.apache.nifi.web.ResourceNotFoundException;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -51,6 +50,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
@@ -60,20 +60,23 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
 import java.util.regex.Pattern;
 
 public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     // properties
     public static final String BUFFER_SIZE = "nifi.provenance.repository.buffer.size";
+    public static final String BUFFER_MEMORY_SIZE = "nifi.provenance.repository.buffer.memory.size";
 
     // default property values
     public static final int DEFAULT_BUFFER_SIZE = 10000;
+    public static final String DEFAULT_BUFFER_MEMORY_SIZE = "64 MB";
 
     public static String CONTAINER_NAME = "in-memory";
 
-    private final RingBuffer<ProvenanceEventRecord> ringBuffer;
+    private final SlabEventStore eventStore;
     private final int maxSize;
     private final List<SearchableField> searchableFields;
     private final List<SearchableField> searchableAttributes;
@@ -82,7 +85,6 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     private final ConcurrentMap<String, AsyncQuerySubmission> querySubmissionMap = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, AsyncLineageSubmission> lineageSubmissionMap = new ConcurrentHashMap<>();
-    private final AtomicLong idGenerator = new AtomicLong(0L);
     private final AtomicBoolean initialized = new AtomicBoolean(false);
 
     private Authorizer authorizer;  // effectively final
@@ -92,7 +94,7 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
      * Default no args constructor for service loading only
      */
     public VolatileProvenanceRepository() {
-        ringBuffer = null;
+        eventStore = null;
         searchableFields = null;
         searchableAttributes = null;
         queryExecService = null;
@@ -105,7 +107,8 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
     public VolatileProvenanceRepository(final NiFiProperties nifiProperties) {
 
         maxSize = nifiProperties.getIntegerProperty(BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
-        ringBuffer = new RingBuffer<>(maxSize);
+        final long maxBytes = DataUnit.parseDataSize(nifiProperties.getProperty(BUFFER_MEMORY_SIZE, DEFAULT_BUFFER_MEMORY_SIZE), DataUnit.B).longValue();
+        eventStore = new SlabEventStore(maxSize, maxBytes, (int) Math.min(maxBytes, SlabEventStore.DEFAULT_SLAB_SIZE));
 
         final String indexedFieldString = nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEXED_FIELDS);
         final String indexedAttrString = nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEXED_ATTRIBUTES);
@@ -153,8 +156,7 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     @Override
     public void registerEvent(final ProvenanceEventRecord event) {
-        final long id = idGenerator.getAndIncrement();
-        ringBuffer.add(new IdEnrichedProvEvent(event, id));
+        eventStore.add(event);
     }
 
     @Override
@@ -171,44 +173,40 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     @Override
     public List<ProvenanceEventRecord> getEvents(final long firstRecordId, final int maxRecords, final NiFiUser user) throws IOException {
-        return ringBuffer.getSelectedElements(new Filter<ProvenanceEventRecord>() {
-            @Override
-            public boolean select(final ProvenanceEventRecord value) {
-                if (!isAuthorized(value, user)) {
-                    return false;
-                }
-
-                return value.getEventId() >= firstRecordId;
+        final List<ProvenanceEventRecord> records = new ArrayList<>(Math.min(maxRecords, maxSize));
+        final long nextEventId = eventStore.getNextEventId();
+        for (long eventId = Math.max(firstRecordId, eventStore.getOldestEventId()); eventId < nextEventId && records.size() < maxRecords; eventId++) {
+            final ProvenanceEventRecord event = eventStore.getEvent(eventId);
+            if (event != null && isAuthorized(event, user)) {
+                records.add(event);
             }
-        }, maxRecords);
+        }
+
+        return records;
     }
 
     @Override
     public Long getMaxEventId() {
-        final ProvenanceEventRecord newest = ringBuffer.getNewestElement();
-        return (newest == null) ? null : newest.getEventId();
+        final long nextEventId = eventStore.getNextEventId();
+        return nextEventId == 0L ? null : nextEventId - 1;
     }
 
     public ProvenanceEventRecord getEvent(final String identifier) throws IOException {
-        final List<ProvenanceEventRecord> records = ringBuffer.getSelectedElements(new Filter<ProvenanceEventRecord>() {
-            @Override
-            public boolean select(final ProvenanceEventRecord event) {
-                return identifier.equals(event.getFlowFileUuid());
+        // Return the oldest event for the FlowFile. The index returns event IDs newest first.
+        final long[] eventIds = collectEventIds(consumer -> eventStore.forEachEventIdByFlowFileUuid(identifier, consumer));
+        for (int i = eventIds.length - 1; i >= 0; i--) {
+            final ProvenanceEventRecord event = eventStore.getEvent(eventIds[i]);
+            if (event != null && identifier.equals(event.getFlowFileUuid())) {
+                return event;
             }
-        }, 1);
-        return records.isEmpty() ? null : records.get(0);
+        }
+
+        return null;
     }
 
     @Override
     public ProvenanceEventRecord getEvent(final long id) {
-        final List<ProvenanceEventRecord> records = ringBuffer.getSelectedElements(new Filter<ProvenanceEventRecord>() {
-            @Override
-            public boolean select(final ProvenanceEventRecord event) {
-                return event.getEventId() == id;
-            }
-        }, 1);
-
-        return records.isEmpty() ? null : records.get(0);
+        return eventStore.getEvent(id);
     }
 
     @Override
@@ -436,14 +434,14 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
         final String userId = user == null ? null : user.getIdentity();
         if (query.getSearchTerms().isEmpty() && query.getStartDate() == null && query.getEndDate() == null) {
             final AsyncQuerySubmission result = new AsyncQuerySubmission(query, 1, userId);
-            queryExecService.submit(new QueryRunnable(ringBuffer, createFilter(query, user), query.getMaxResults(), result));
+            queryExecService.submit(new QueryRunnable(eventStore, query, createFilter(query, user), result));
             querySubmissionMap.put(query.getIdentifier(), result);
             return result;
         }
 
         final AsyncQuerySubmission result = new AsyncQuerySubmission(query, 1, userId);
         querySubmissionMap.put(query.getIdentifier(), result);
-        queryExecService.submit(new QueryRunnable(ringBuffer, createFilter(query, user), query.getMaxResults(), result));
+        queryExecService.submit(new QueryRunnable(eventStore, query, createFilter(query, user), result));
 
         return result;
     }
@@ -602,7 +600,7 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     @Override
     public long getContainerUsableSpace(String containerName) throws IOException {
-        return maxSize - ringBuffer.getSize();
+        return maxSize - eventStore.getEventCount();
     }
 
     public String getContainerFileStoreName(String containerName) {
@@ -642,64 +640,173 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
             }
         };
 
-        queryExecService.submit(new ComputeLineageRunnable(ringBuffer, filter, result));
+        queryExecService.submit(new ComputeLineageRunnable(eventStore, flowFileUuids, filter, result));
 
         return result;
     }
 
+    /**
+     * Collects the Event IDs that the given index lookup passes to its consumer, skipping repeated IDs
+     */
+    private static long[] collectEventIds(final Consumer<LongPredicate> lookup) {
+        final EventIdCollector collector = new EventIdCollector();
+        lookup.accept(collector);
+        return collector.toArray();
+    }
+
+    private static class EventIdCollector implements LongPredicate {
+        private long[] eventIds = new long[16];
+        private int count = 0;
+
+        @Override
+        public boolean test(final long eventId) {
+            // The index returns the IDs of an event that has several matching UUIDs one after the other.
+            if (count > 0 && eventIds[count - 1] == eventId) {
+                return true;
+            }
+
+            if (count == eventIds.length) {
+                eventIds = Arrays.copyOf(eventIds, count * 2);
+            }
+            eventIds[count++] = eventId;
+            return true;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(eventIds, count);
+        }
+    }
+
+    private static boolean isWildcard(final String searchValue) {
+        return searchValue.contains("?") || searchValue.contains("*");
+    }
+
     private static class QueryRunnable implements Runnable {
 
-        private final RingBuffer<ProvenanceEventRecord> ringBuffer;
+        private final SlabEventStore eventStore;
+        private final Query query;
         private final Filter<ProvenanceEventRecord> filter;
         private final AsyncQuerySubmission submission;
         private final int maxRecords;
 
-        public QueryRunnable(final RingBuffer<ProvenanceEventRecord> ringBuffer, final Filter<ProvenanceEventRecord> filter, final int maxRecords, final AsyncQuerySubmission submission) {
-            this.ringBuffer = ringBuffer;
+        public QueryRunnable(final SlabEventStore eventStore, final Query query, final Filter<ProvenanceEventRecord> filter, final AsyncQuerySubmission submission) {
+            this.eventStore = eventStore;
+            this.query = query;
             this.filter = filter;
             this.submission = submission;
-            this.maxRecords = maxRecords;
+            this.maxRecords = query.getMaxResults();
         }
 
         @Override
         public void run() {
-            // Retrieve the most recent results and count the total number of matches
-            final AtomicInteger matchingCount = new AtomicInteger(0);
-            final List<ProvenanceEventRecord> matchingRecords = new ArrayList<>(maxRecords);
-            ringBuffer.forEach(new ForEachEvaluator<ProvenanceEventRecord>() {
-                @Override
-                public boolean evaluate(final ProvenanceEventRecord record) {
-                    if (filter.select(record)) {
-                        if (matchingCount.incrementAndGet() <= maxRecords) {
-                            matchingRecords.add(record);
-                        }
+            try {
+                // Retrieve the most recent results. The hit count that is reported never exceeds the maximum number of results,
+                // so there is no need to look any further once that many matches have been found.
+                final long minEventTime = query.getStartDate() == null ? Long.MIN_VALUE : query.getStartDate().getTime();
+                final long maxEventTime = query.getEndDate() == null ? Long.MAX_VALUE : query.getEndDate().getTime();
+
+                final List<ProvenanceEventRecord> matchingRecords = new ArrayList<>(Math.min(maxRecords, eventStore.getMaxEvents()));
+                final long newestEventId = eventStore.getNextEventId() - 1;
+                final long[] candidates = findCandidates();
+                final int candidateCount = candidates == null ? (int) (newestEventId + 1 - eventStore.getOldestEventId()) : candidates.length;
+
+                for (int i = 0; i < candidateCount && matchingRecords.size() < maxRecords; i++) {
+                    // Candidates are ordered newest first; without an index, every event is a candidate
+                    final long eventId = candidates == null ? newestEventId - i : candidates[i];
+                    final ProvenanceEventRecord record = eventStore.getEvent(eventId, minEventTime, maxEventTime);
+                    if (record != null && filter.select(record)) {
+                        matchingRecords.add(record);
                     }
+                }
 
-                    return true;
+                submission.getResult().update(matchingRecords, matchingRecords.size());
+            } catch (final Exception e) {
+                submission.getResult().setError("Failed to query Provenance Events due to " + e);
+            }
+        }
+
+        /**
+         * @return the IDs of the events that may match the query, newest first, as found by the most selective index that the query can use,
+         *         or <code>null</code> if the query cannot use any index
+         */
+        private long[] findCandidates() {
+            String componentId = null;
+            ProvenanceEventType eventType = null;
+
+            for (final SearchTerm searchTerm : query.getSearchTerms()) {
+                final SearchableField field = searchTerm.getSearchableField();
+                final String searchValue = searchTerm.getValue();
+                if (field.isAttribute() || isWildcard(searchValue)) {
+                    continue;
                 }
 
-            }, IterationDirection.BACKWARD);
+                if (SearchableFields.FlowFileUUID.equals(field)) {
+                    return collectEventIds(consumer -> eventStore.forEachEventIdByFlowFileUuid(searchValue, consumer));
+                } else if (SearchableFields.ComponentID.equals(field)) {
+                    componentId = searchValue;
+                } else if (SearchableFields.EventType.equals(field) && eventType == null) {
+                    eventType = Arrays.stream(ProvenanceEventType.values())
+                        .filter(type -> type.name().equalsIgnoreCase(searchValue))
+                        .findFirst()
+                        .orElse(null);
+
+                    if (eventType == null) {
+                        return new long[0];
+                    }
+                }
+            }
+
+            if (componentId != null) {
+                final String id = componentId;
+                return collectEventIds(consumer -> eventStore.forEachEventIdByComponentId(id, consumer));
+            }
+            if (eventType != null) {
+                final ProvenanceEventType type = eventType;
+                return collectEventIds(consumer -> eventStore.forEachEventIdByEventType(type, consumer));
+            }
 
-            submission.getResult().update(matchingRecords, matchingCount.get());
+            return null;
         }
     }
 
     private static class ComputeLineageRunnable implements Runnable {
 
-        private final RingBuffer<ProvenanceEventRecord> ringBuffer;
+        private final SlabEventStore eventStore;
+        private final Collection<String> flowFileUuids;
         private final Filter<ProvenanceEventRecord> filter;
         private final AsyncLineageSubmission submission;
 
-        public ComputeLineageRunnable(final RingBuffer<ProvenanceEventRecord> ringBuffer, final Filter<ProvenanceEventRecord> filter, final AsyncLineageSubmission submission) {
-            this.ringBuffer = ringBuffer;
+        public ComputeLineageRunnable(final SlabEventStore eventStore, final Collection<String> flowFileUuids, final Filter<ProvenanceEventRecord> filter,
+                final AsyncLineageSubmission submission) {
+            this.eventStore = eventStore;
+            this.flowFileUuids = flowFileUuids;
             this.filter = filter;
             this.submission = submission;
         }
 
         @Override
         public void run() {
-            final List<ProvenanceEventRecord> records = ringBuffer.getSelectedElements(filter);
-            submission.getResult().update(records, records.size());
+            try {
+                final Set<Long> eventIds = new TreeSet<>();
+                for (final String flowFileUuid : flowFileUuids) {
+                    eventStore.forEachEventIdByFlowFileUuid(flowFileUuid, eventId -> {
+                        eventIds.add(eventId);
+                        return true;
+                    });
+                }
+
+                final List<ProvenanceEventRecord> records = new ArrayList<>(eventIds.size());
+                for (final Long eventId : eventIds) {
+                    final ProvenanceEventRecord record = eventStore.getEvent(eventId);
+                    if (record != null && filter.select(record)) {
+                        records.add(record);
+                    }
+                }
+
+                submission.getResult().update(records, records.size());
+            } catch (final Exception e) {
+                submission.getResult().setError("Failed to compute lineage due to " + e);
+            }
         }
     }
 
@@ -730,175 +837,4 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
             }
         }
     }
-
-    private static class IdEnrichedProvEvent implements ProvenanceEventRecord {
-
-        private final ProvenanceEventRecord record;
-        private final long id;
-
-        public IdEnrichedProvEvent(final ProvenanceEventRecord record, final long id) {
-            this.record = record;
-            this.id = id;
-        }
-
-        @Override
-        public long getEventId() {
-            return id;
-        }
-
-        @Override
-        public long getEventTime() {
-            return record.getEventTime();
-        }
-
-        @Override
-        public long getFlowFileEntryDate() {
-            return record.getFlowFileEntryDate();
-        }
-
-        @Override
-        public long getLineageStartDate() {
-            return record.getLineageStartDate();
-        }
-
-        @Override
-        public long getFileSize() {
-            return record.getFileSize();
-        }
-
-        @Override
-        public Long getPreviousFileSize() {
-            return record.getPreviousFileSize();
-        }
-
-        @Override
-        public long getEventDuration() {
-            return record.getEventDuration();
-        }
-
-        @Override
-        public ProvenanceEventType getEventType() {
-            return record.getEventType();
-        }
-
-        @Override
-        public Map<String, String> getAttributes() {
-            return record.getAttributes();
-        }
-
-        @Override
-        public Map<String, String> getPreviousAttributes() {
-            return record.getPreviousAttributes();
-        }
-
-        @Override
-        public Map<String, String> getUpdatedAttributes() {
-            return record.getUpdatedAttributes();
-        }
-
-        @Override
-        public String getComponentId() {
-            return record.getComponentId();
-        }
-
-        @Override
-        public String getComponentType() {
-            return record.getComponentType();
-        }
-
-        @Override
-        public String getTransitUri() {
-            return record.getTransitUri();
-        }
-
-        @Override
-        public String getSourceSystemFlowFileIdentifier() {
-            return record.getSourceSystemFlowFileIdentifier();
-        }
-
-        @Override
-        public String getFlowFileUuid() {
-            return record.getFlowFileUuid();
-        }
-
-        @Override
-        public List<String> getParentUuids() {
-            return record.getParentUuids();
-        }
-
-        @Override
-        public List<String> getChildUuids() {
-            return record.getChildUuids();
-        }
-
-        @Override
-        public String getAlternateIdentifierUri() {
-            return record.getAlternateIdentifierUri();
-        }
-
-        @Override
-        public String getDetails() {
-            return record.getDetails();
-        }
-
-        @Override
-        public String getRelationship() {
-            return record.getRelationship();
-        }
-
-        @Override
-        public String getSourceQueueIdentifier() {
-            return record.getSourceQueueIdentifier();
-        }
-
-        @Override
-        public String getContentClaimSection() {
-            return record.getContentClaimSection();
-        }
-
-        @Override
-        public String getPreviousContentClaimSection() {
-            return record.getPreviousContentClaimSection();
-        }
-
-        @Override
-        public String getContentClaimContainer() {
-            return record.getContentClaimContainer();
-        }
-
-        @Override
-        public String getPreviousContentClaimContainer() {
-            return record.getPreviousContentClaimContainer();
-        }
-
-        @Override
-        public String getContentClaimIdentifier() {
-            return record.getContentClaimIdentifier();
-        }
-
-        @Override
-        public String getPreviousContentClaimIdentifier() {
-            return record.getPreviousContentClaimIdentifier();
-        }
-
-        @Override
-        public Long getContentClaimOffset() {
-            return record.getContentClaimOffset();
-        }
-
-        @Override
-        public Long getPreviousContentClaimOffset() {
-            return record.getPreviousContentClaimOffset();
-        }
-
-        /**
-         * Returns the best event identifier for this event (eventId if available, descriptive identifier if not yet persisted to allow for traceability).
-         *
-         * @return a descriptive event ID to allow tracing
-         */
-        @Override
-        public String getBestEventIdentifier() {
-            return Long.toString(getEventId());
-        }
-    }
 }
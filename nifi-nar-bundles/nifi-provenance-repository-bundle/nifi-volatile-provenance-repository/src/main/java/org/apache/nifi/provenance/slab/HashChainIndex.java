@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.slab;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * <p>
+ * A fixed-size index from the hash of a key to the IDs of the events that have that key. Each bucket holds the most recent entry whose hash
+ * falls into it, and each entry points to the previous entry of the same bucket, so the entries for a key are found newest-first by following
+ * that chain. Entries are kept in a ring of primitive arrays; once the ring is full, each new entry replaces the oldest one, so adding an entry
+ * never allocates.
+ * </p>
+ *
+ * <p>
+ * Because only hashes are stored, the events that are found may have a different key with the same hash, and callers must check the events
+ * themselves. An event that was added with more keys than the ring can hold, or with keys that were added before an entry that has since
+ * been replaced, may have lost some of its entries; such events are never returned, and {@link #getOldestCompleteEventId()} tells callers
+ * which events they must find some other way. This class is not thread-safe.
+ * </p>
+ */
+public class HashChainIndex {
+    private static final long NO_ENTRY = -1L;
+
+    private final long[] buckets;
+    private final int bucketMask;
+    private final int[] entryHashes;
+    private final long[] entryEventIds;
+    private final long[] previousEntries;
+    private final int capacity;
+    private long nextEntry = 0L;
+    private long oldestCompleteEventId = Long.MIN_VALUE;
+
+    /**
+     * @param capacity the maximum number of entries to retain
+     * @param bucketCount the number of buckets; rounded up to a power of two
+     */
+    public HashChainIndex(final int capacity, final int bucketCount) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        this.buckets = new long[Integer.highestOneBit(Math.max(1, bucketCount - 1)) << 1];
+        this.bucketMask = buckets.length - 1;
+        this.entryHashes = new int[capacity];
+        this.entryEventIds = new long[capacity];
+        this.previousEntries = new long[capacity];
+        Arrays.fill(buckets, NO_ENTRY);
+    }
+
+    public void add(final int hash, final long eventId) {
+        final long entry = nextEntry++;
+        final int slot = (int) (entry % capacity);
+        final int bucket = spread(hash) & bucketMask;
+
+        if (entry >= capacity) {
+            // Entries are added in the order of their events, so every event up to the one whose entry is replaced may have lost entries.
+            oldestCompleteEventId = entryEventIds[slot] + 1;
+        }
+
+        entryHashes[slot] = hash;
+        entryEventIds[slot] = eventId;
+        previousEntries[slot] = buckets[bucket];
+        buckets[bucket] = entry;
+    }
+
+    /**
+     * Calls the given consumer with the ID of each event that was added with the given hash, newest first, until the consumer returns
+     * <code>false</code> or no more entries are found. An event ID is passed once for each time that it was added with the hash. Events older
+     * than {@link #getOldestCompleteEventId()} are not returned.
+     *
+     * @param hash the hash of the key
+     * @param oldestEventId the ID of the oldest event that still exists; entries for older events are not returned
+     * @param consumer the consumer of event IDs
+     * @return <code>false</code> if the consumer returned <code>false</code>, <code>true</code> otherwise
+     */
+    public boolean forEach(final int hash, final long oldestEventId, final LongPredicate consumer) {
+        final long oldestEntry = nextEntry - capacity;
+        final long oldestReturnedEventId = Math.max(oldestEventId, oldestCompleteEventId);
+
+        long entry = buckets[spread(hash) & bucketMask];
+        while (entry != NO_ENTRY && entry >= oldestEntry) {
+            final int slot = (int) (entry % capacity);
+            final long eventId = entryEventIds[slot];
+            if (eventId < oldestReturnedEventId) {
+                // Entries are added in the order of their events, so every older entry in the chain is also for an event that is not returned.
+                return true;
+            }
+
+            if (entryHashes[slot] == hash && !consumer.test(eventId)) {
+                return false;
+            }
+
+            entry = previousEntries[slot];
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the ID of the oldest event whose entries are all still held; every entry of this event and of all newer events can be found
+     */
+    public long getOldestCompleteEventId() {
+        return oldestCompleteEventId;
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.slab;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+
+/**
+ * <p>
+ * Encodes Provenance Events into a compact binary form and decodes them again. Numbers are written as fixed-width big-endian values and
+ * Strings as a 4-byte length (-1 for <code>null</code>) followed by their UTF-8 bytes.
+ * </p>
+ *
+ * <p>
+ * Encoding is done into a scratch buffer that is owned by the codec and only grows, and Strings are converted to UTF-8 one character at a time,
+ * so that encoding an event does not allocate. A codec is therefore not thread-safe. Decoding creates a new {@link StandardProvenanceEventRecord}.
+ * </p>
+ */
+public class SlabEventCodec {
+    private static final int NULL_LENGTH = -1;
+    private static final ProvenanceEventType[] EVENT_TYPES = ProvenanceEventType.values();
+
+    private byte[] buffer;
+    private int position;
+
+    private final BiConsumer<String, String> attributeWriter = (key, value) -> {
+        writeString(key);
+        writeString(value);
+    };
+
+    public SlabEventCodec() {
+        this(1024);
+    }
+
+    public SlabEventCodec(final int initialCapacity) {
+        buffer = new byte[initialCapacity];
+    }
+
+    /**
+     * Encodes the given event into the codec's buffer, replacing anything that was previously encoded
+     *
+     * @param event the event to encode
+     * @param eventId the ID to assign to the event
+     * @return the number of bytes that the encoded event occupies at the start of {@link #getBuffer()}
+     */
+    public int encode(final ProvenanceEventRecord event, final long eventId) {
+        position = 0;
+
+        writeLong(eventId);
+        writeLong(event.getEventTime());
+        writeLong(event.getFlowFileEntryDate());
+        writeLong(event.getLineageStartDate());
+        writeLong(event.getEventDuration());
+        writeByte(event.getEventType().ordinal());
+        writeLong(event.getFileSize());
+        writeNullableLong(event.getPreviousFileSize());
+
+        writeString(event.getComponentId());
+        writeString(event.getComponentType());
+        writeString(event.getFlowFileUuid());
+        writeString(event.getTransitUri());
+        writeString(event.getSourceSystemFlowFileIdentifier());
+        writeString(event.getAlternateIdentifierUri());
+        writeString(event.getDetails());
+        writeString(event.getRelationship());
+        writeString(event.getSourceQueueIdentifier());
+
+        writeString(event.getContentClaimContainer());
+        writeString(event.getContentClaimSection());
+        writeString(event.getContentClaimIdentifier());
+        writeNullableLong(event.getContentClaimOffset());
+        writeString(event.getPreviousContentClaimContainer());
+        writeString(event.getPreviousContentClaimSection());
+        writeString(event.getPreviousContentClaimIdentifier());
+        writeNullableLong(event.getPreviousContentClaimOffset());
+
+        writeStrings(event.getParentUuids());
+        writeStrings(event.getChildUuids());
+        writeAttributes(event.getPreviousAttributes());
+        writeAttributes(event.getUpdatedAttributes());
+
+        return position;
+    }
+
+    /**
+     * @return the buffer that holds the most recently encoded event. The buffer may be replaced by a larger one the next time that an event is encoded.
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    private void ensureCapacity(final int additionalBytes) {
+        final int required = position + additionalBytes;
+        if (required > buffer.length) {
+            final byte[] expanded = new byte[Math.max(required, buffer.length * 2)];
+            System.arraycopy(buffer, 0, expanded, 0, position);
+            buffer = expanded;
+        }
+    }
+
+    private void writeByte(final int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeInt(final int value) {
+        ensureCapacity(4);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeLong(final long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeNullableLong(final Long value) {
+        if (value == null) {
+            writeByte(0);
+        } else {
+            writeByte(1);
+            writeLong(value);
+        }
+    }
+
+    private void writeString(final String value) {
+        if (value == null) {
+            writeInt(NULL_LENGTH);
+            return;
+        }
+
+        final int length = value.length();
+        ensureCapacity(4 + length * 3);
+
+        final int lengthPosition = position;
+        position += 4;
+
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                // A surrogate pair takes up 2 chars, for which 6 bytes were reserved, and is encoded in 4 bytes
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates cannot be encoded; this is the same replacement that String.getBytes() makes.
+                buffer[position++] = (byte) '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        final int byteLength = position - lengthPosition - 4;
+        buffer[lengthPosition] = (byte) (byteLength >>> 24);
+        buffer[lengthPosition + 1] = (byte) (byteLength >>> 16);
+        buffer[lengthPosition + 2] = (byte) (byteLength >>> 8);
+        buffer[lengthPosition + 3] = (byte) byteLength;
+    }
+
+    private void writeStrings(final List<String> values) {
+        if (values == null) {
+            writeInt(0);
+            return;
+        }
+
+        final int size = values.size();
+        writeInt(size);
+        for (int i = 0; i < size; i++) {
+            writeString(values.get(i));
+        }
+    }
+
+    private void writeAttributes(final Map<String, String> attributes) {
+        if (attributes == null) {
+            writeInt(0);
+            return;
+        }
+
+        writeInt(attributes.size());
+        attributes.forEach(attributeWriter);
+    }
+
+    /**
+     * Decodes an event that was encoded by {@link #encode(ProvenanceEventRecord, long)}
+     *
+     * @param data the buffer that holds the encoded event, starting at index 0
+     * @return the decoded event
+     */
+    public static StandardProvenanceEventRecord decode(final byte[] data) {
+        final Decoder decoder = new Decoder(data);
+
+        final StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventId(decoder.readLong());
+        builder.setEventTime(decoder.readLong());
+        builder.setFlowFileEntryDate(decoder.readLong());
+        builder.setLineageStartDate(decoder.readLong());
+        builder.setEventDuration(decoder.readLong());
+        builder.setEventType(EVENT_TYPES[decoder.readByte()]);
+        final long fileSize = decoder.readLong();
+        final Long previousFileSize = decoder.readNullableLong();
+
+        builder.setComponentId(decoder.readString());
+        builder.setComponentType(decoder.readString());
+        builder.setFlowFileUUID(decoder.readString());
+        builder.setTransitUri(decoder.readString());
+        builder.setSourceSystemFlowFileIdentifier(decoder.readString());
+        builder.setAlternateIdentifierUri(decoder.readString());
+        builder.setDetails(decoder.readString());
+        builder.setRelationship(decoder.readString());
+        builder.setSourceQueueIdentifier(decoder.readString());
+
+        final String contentClaimContainer = decoder.readString();
+        final String contentClaimSection = decoder.readString();
+        final String contentClaimIdentifier = decoder.readString();
+        final Long contentClaimOffset = decoder.readNullableLong();
+        builder.setCurrentContentClaim(contentClaimContainer, contentClaimSection, contentClaimIdentifier, contentClaimOffset, fileSize);
+
+        final String previousClaimContainer = decoder.readString();
+        final String previousClaimSection = decoder.readString();
+        final String previousClaimIdentifier = decoder.readString();
+        final Long previousClaimOffset = decoder.readNullableLong();
+        if (previousFileSize != null) {
+            builder.setPreviousContentClaim(previousClaimContainer, previousClaimSection, previousClaimIdentifier, previousClaimOffset, previousFileSize);
+        }
+
+        builder.setParentUuids(decoder.readStrings());
+        builder.setChildUuids(decoder.readStrings());
+        final Map<String, String> previousAttributes = decoder.readAttributes();
+        final Map<String, String> updatedAttributes = decoder.readAttributes();
+        builder.setAttributes(previousAttributes, updatedAttributes);
+
+        return builder.build();
+    }
+
+    private static class Decoder {
+        private final byte[] data;
+        private int position;
+
+        Decoder(final byte[] data) {
+            this.data = data;
+        }
+
+        int readByte() {
+            return data[position++] & 0xFF;
+        }
+
+        int readInt() {
+            return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+        }
+
+        long readLong() {
+            long value = 0L;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        Long readNullableLong() {
+            return readByte() == 0 ? null : readLong();
+        }
+
+        String readString() {
+            final int length = readInt();
+            if (length == NULL_LENGTH) {
+                return null;
+            }
+
+            final String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        List<String> readStrings() {
+            final int size = readInt();
+            if (size == 0) {
+                return new ArrayList<>(0);
+            }
+
+            final List<String> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        Map<String, String> readAttributes() {
+            final int size = readInt();
+            if (size == 0) {
+                return Collections.emptyMap();
+            }
+
+            final Map<String, String> attributes = new HashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                attributes.put(readString(), readString());
+            }
+            return attributes;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.slab;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+
+/**
+ * <p>
+ * Holds Provenance Events in memory, outside of the Java heap. Events are encoded by a {@link SlabEventCodec} and appended to a circular log
+ * of bytes that is made up of direct {@link ByteBuffer} slabs. Slabs are allocated as the log first grows into them. When either the maximum
+ * number of events or the maximum number of bytes would be exceeded, the oldest events are evicted.
+ * </p>
+ *
+ * <p>
+ * The position, length and time of each event are kept in primitive arrays, indexed by Event ID modulo the maximum number of events, so that
+ * an event can be found by ID and a time range can be checked without decoding it. Events can also be found by Component ID, FlowFile UUID
+ * (including parent and child UUIDs) and Event Type through {@link HashChainIndex}es. Component IDs and UUIDs are hashed case-insensitively.
+ * Each event has exactly one Component ID and Event Type entry, but an event may have any number of UUIDs. When a fork, clone or join has
+ * so many UUIDs that the FlowFile UUID index wraps past events that are still held, those events are found by decoding and checking them.
+ * </p>
+ *
+ * <p>
+ * Appending an event encodes it into a reused buffer and copies it into the slabs, and so does not allocate once the slab that it is written
+ * to exists. Appends are serialized by a write lock. Reads hold the read lock only while copying an event's bytes or walking an index.
+ * </p>
+ */
+public class SlabEventStore {
+    public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+    // The FlowFile UUID index holds an entry for each FlowFile UUID, parent UUID and child UUID of an event. Allow for an average of 3 per event.
+    private static final int UUID_ENTRIES_PER_EVENT = 3;
+
+    private final int maxEvents;
+    private final long capacityBytes;
+    private final int slabSize;
+    private final ByteBuffer[] slabs;
+
+    private final long[] eventPositions;
+    private final int[] eventLengths;
+    private final long[] eventTimes;
+
+    private final HashChainIndex componentIdIndex;
+    private final HashChainIndex flowFileUuidIndex;
+    private final HashChainIndex eventTypeIndex;
+
+    private final SlabEventCodec codec = new SlabEventCodec();
+    private final Lock readLock;
+    private final Lock writeLock;
+
+    private long writePosition = 0L;
+    private volatile long oldestEventId = 0L;
+    private volatile long nextEventId = 0L;
+
+    /**
+     * @param maxEvents the maximum number of events to hold
+     * @param maxBytes the maximum number of bytes of encoded events to hold; rounded up to a whole number of slabs
+     * @param slabSize the number of bytes in each slab
+     */
+    public SlabEventStore(final int maxEvents, final long maxBytes, final int slabSize) {
+        if (maxEvents < 1) {
+            throw new IllegalArgumentException("Maximum number of events must be positive");
+        }
+        if (maxBytes < 1 || slabSize < 1) {
+            throw new IllegalArgumentException("Maximum number of bytes and slab size must be positive");
+        }
+
+        final long slabCount = (maxBytes + slabSize - 1) / slabSize;
+        if (slabCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cannot hold " + maxBytes + " bytes in slabs of " + slabSize + " bytes");
+        }
+
+        this.maxEvents = maxEvents;
+        this.slabSize = slabSize;
+        this.slabs = new ByteBuffer[(int) slabCount];
+        this.capacityBytes = slabCount * slabSize;
+
+        eventPositions = new long[maxEvents];
+        eventLengths = new int[maxEvents];
+        eventTimes = new long[maxEvents];
+
+        final int uuidEntries = (int) Math.min(Integer.MAX_VALUE - 8, (long) maxEvents * UUID_ENTRIES_PER_EVENT);
+        componentIdIndex = new HashChainIndex(maxEvents, maxEvents);
+        flowFileUuidIndex = new HashChainIndex(uuidEntries, uuidEntries);
+        eventTypeIndex = new HashChainIndex(maxEvents, ProvenanceEventType.values().length);
+
+        final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+        readLock = rwLock.readLock();
+        writeLock = rwLock.writeLock();
+    }
+
+    /**
+     * Assigns the next Event ID to the given event and stores it
+     *
+     * @param event the event to store
+     * @return the ID of the event
+     */
+    public long add(final ProvenanceEventRecord event) {
+        writeLock.lock();
+        try {
+            final long eventId = nextEventId;
+            final int length = codec.encode(event, eventId);
+            if (length > capacityBytes) {
+                throw new IllegalArgumentException("Cannot store Provenance Event for FlowFile " + event.getFlowFileUuid() + " because it requires "
+                    + length + " bytes, which is more than the " + capacityBytes + " bytes that are available");
+            }
+
+            evict(eventId, writePosition + length);
+
+            final int slot = slot(eventId);
+            eventPositions[slot] = writePosition;
+            eventLengths[slot] = length;
+            eventTimes[slot] = event.getEventTime();
+            write(writePosition, codec.getBuffer(), length);
+            writePosition += length;
+
+            componentIdIndex.add(hash(event.getComponentId()), eventId);
+            eventTypeIndex.add(event.getEventType().ordinal(), eventId);
+            flowFileUuidIndex.add(hash(event.getFlowFileUuid()), eventId);
+            addUuids(event.getParentUuids(), eventId);
+            addUuids(event.getChildUuids(), eventId);
+
+            nextEventId = eventId + 1;
+            return eventId;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void addUuids(final List<String> uuids, final long eventId) {
+        if (uuids == null) {
+            return;
+        }
+
+        for (int i = 0; i < uuids.size(); i++) {
+            flowFileUuidIndex.add(hash(uuids.get(i)), eventId);
+        }
+    }
+
+    /**
+     * Evicts the oldest events until there is room for the given event ID and until no remaining event would be overwritten by writing up to the given position
+     */
+    private void evict(final long eventId, final long endPosition) {
+        long oldest = oldestEventId;
+        while (oldest < eventId && (eventId - oldest >= maxEvents || eventPositions[slot(oldest)] < endPosition - capacityBytes)) {
+            oldest++;
+        }
+        oldestEventId = oldest;
+    }
+
+    private void write(final long position, final byte[] data, final int length) {
+        int written = 0;
+        long current = position;
+        while (written < length) {
+            final int slabIndex = (int) ((current % capacityBytes) / slabSize);
+            final int offset = (int) ((current % capacityBytes) % slabSize);
+            final int toWrite = Math.min(length - written, slabSize - offset);
+
+            ByteBuffer slab = slabs[slabIndex];
+            if (slab == null) {
+                slab = ByteBuffer.allocateDirect(slabSize);
+                slabs[slabIndex] = slab;
+            }
+
+            // Only the writer changes the position of a slab; readers use a duplicate.
+            slab.position(offset);
+            slab.put(data, written, toWrite);
+
+            written += toWrite;
+            current += toWrite;
+        }
+    }
+
+    private void read(final long position, final byte[] destination) {
+        int read = 0;
+        long current = position;
+        while (read < destination.length) {
+            final int slabIndex = (int) ((current % capacityBytes) / slabSize);
+            final int offset = (int) ((current % capacityBytes) % slabSize);
+            final int toRead = Math.min(destination.length - read, slabSize - offset);
+
+            final ByteBuffer slab = slabs[slabIndex].duplicate();
+            slab.position(offset);
+            slab.get(destination, read, toRead);
+
+            read += toRead;
+            current += toRead;
+        }
+    }
+
+    private int slot(final long eventId) {
+        return (int) (eventId % maxEvents);
+    }
+
+    /**
+     * @param eventId the ID of the event
+     * @return the event with the given ID, or <code>null</code> if there is no such event or it has been evicted
+     */
+    public ProvenanceEventRecord getEvent(final long eventId) {
+        return getEvent(eventId, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param eventId the ID of the event
+     * @param minEventTime the earliest event time to return an event for
+     * @param maxEventTime the latest event time to return an event for
+     * @return the event with the given ID, or <code>null</code> if there is no such event, it has been evicted, or its time is outside of the given range
+     */
+    public ProvenanceEventRecord getEvent(final long eventId, final long minEventTime, final long maxEventTime) {
+        final byte[] encoded;
+
+        readLock.lock();
+        try {
+            if (eventId < oldestEventId || eventId >= nextEventId) {
+                return null;
+            }
+
+            final int slot = slot(eventId);
+            final long eventTime = eventTimes[slot];
+            if (eventTime < minEventTime || eventTime > maxEventTime) {
+                return null;
+            }
+
+            encoded = new byte[eventLengths[slot]];
+            read(eventPositions[slot], encoded);
+        } finally {
+            readLock.unlock();
+        }
+
+        return SlabEventCodec.decode(encoded);
+    }
+
+    /**
+     * Calls the given consumer with the ID of each event that may have the given Component ID, newest first, until the consumer returns <code>false</code>
+     */
+    public void forEachEventIdByComponentId(final String componentId, final LongPredicate consumer) {
+        forEach(componentIdIndex, hash(componentId), consumer);
+    }
+
+    /**
+     * Calls the given consumer with the ID of each event that may have the given FlowFile UUID as its own, a parent or a child UUID, newest first,
+     * until the consumer returns <code>false</code>. An event ID may be returned more than once.
+     */
+    public void forEachEventIdByFlowFileUuid(final String flowFileUuid, final LongPredicate consumer) {
+        final long oldestCompleteEventId;
+
+        readLock.lock();
+        try {
+            if (!flowFileUuidIndex.forEach(hash(flowFileUuid), oldestEventId, consumer)) {
+                return;
+            }
+
+            oldestCompleteEventId = Math.max(oldestEventId, Math.min(flowFileUuidIndex.getOldestCompleteEventId(), nextEventId));
+        } finally {
+            readLock.unlock();
+        }
+
+        // The index no longer holds every entry of the events before the oldest complete one, so scan any of those that are still held.
+        for (long eventId = oldestCompleteEventId - 1; eventId >= oldestEventId; eventId--) {
+            final ProvenanceEventRecord event = getEvent(eventId);
+            if (event != null && hasFlowFileUuid(event, flowFileUuid) && !consumer.test(eventId)) {
+                return;
+            }
+        }
+    }
+
+    private static boolean hasFlowFileUuid(final ProvenanceEventRecord event, final String flowFileUuid) {
+        if (flowFileUuid == null) {
+            return event.getFlowFileUuid() == null;
+        }
+
+        return flowFileUuid.equalsIgnoreCase(event.getFlowFileUuid()) || containsIgnoreCase(event.getParentUuids(), flowFileUuid)
+            || containsIgnoreCase(event.getChildUuids(), flowFileUuid);
+    }
+
+    private static boolean containsIgnoreCase(final List<String> values, final String value) {
+        if (values == null) {
+            return false;
+        }
+
+        for (int i = 0; i < values.size(); i++) {
+            if (value.equalsIgnoreCase(values.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Calls the given consumer with the ID of each event of the given type, newest first, until the consumer returns <code>false</code>
+     */
+    public void forEachEventIdByEventType(final ProvenanceEventType eventType, final LongPredicate consumer) {
+        forEach(eventTypeIndex, eventType.ordinal(), consumer);
+    }
+
+    private void forEach(final HashChainIndex index, final int hash, final LongPredicate consumer) {
+        readLock.lock();
+        try {
+            index.forEach(hash, oldestEventId, consumer);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return the ID of the oldest event that is held
+     */
+    public long getOldestEventId() {
+        return oldestEventId;
+    }
+
+    /**
+     * @return the ID that will be assigned to the next event
+     */
+    public long getNextEventId() {
+        return nextEventId;
+    }
+
+    /**
+     * @return the number of events that are held
+     */
+    public int getEventCount() {
+        readLock.lock();
+        try {
+            return (int) (nextEventId - oldestEventId);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public int getMaxEvents() {
+        return maxEvents;
+    }
+
+    /**
+     * Computes the same hash for Strings that differ only in case, without allocating
+     */
+    static int hash(final String value) {
+        if (value == null) {
+            return 0;
+        }
+
+        int hash = 0;
+        for (int i = 0; i < value.length(); i++) {
+            hash = 31 * hash + Character.toLowerCase(value.charAt(i));
+        }
+        return hash;
+    }
+}
@@ -119,6 +119,51 @@ public class TestVolatileProvenanceRepository {
         }
     }
 
+    @Test
+    public void testQueryUsesIndexesAndOnlyRetainedEvents() throws InterruptedException {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(VolatileProvenanceRepository.BUFFER_SIZE, "20");
+        repo = new VolatileProvenanceRepository(NiFiProperties.createBasicNiFiProperties(null, properties));
+
+        final Map<String, String> attributes = new HashMap<>();
+        for (int i = 0; i < 30; i++) {
+            attributes.put("uuid", "00000000-0000-0000-0000-0000000000" + (10 + i));
+
+            final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+            builder.setEventTime(System.currentTimeMillis());
+            builder.setEventType(i % 3 == 0 ? ProvenanceEventType.SEND : ProvenanceEventType.RECEIVE);
+            builder.setTransitUri("nifi://unit-test");
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            builder.setComponentId(i % 2 == 0 ? "even" : "odd");
+            builder.setComponentType("dummy processor");
+            repo.registerEvent(builder.build());
+        }
+
+        // Events 10 through 29 are retained. Of those, the odd events of type SEND are 15, 21 and 27.
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "ODD"));
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.EventType, "send"));
+        query.setMaxResults(2);
+
+        final QuerySubmission submission = repo.submitQuery(query, createUser());
+        while (!submission.getResult().isFinished()) {
+            Thread.sleep(100L);
+        }
+
+        final List<ProvenanceEventRecord> matches = submission.getResult().getMatchingEvents();
+        assertEquals(2, matches.size());
+        assertEquals(27L, matches.get(0).getEventId());
+        assertEquals(21L, matches.get(1).getEventId());
+
+        final Query uuidQuery = new Query(UUID.randomUUID().toString());
+        uuidQuery.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.FlowFileUUID, "00000000-0000-0000-0000-000000000012"));
+        final QuerySubmission uuidSubmission = repo.submitQuery(uuidQuery, createUser());
+        while (!uuidSubmission.getResult().isFinished()) {
+            Thread.sleep(100L);
+        }
+        assertEquals(0, uuidSubmission.getResult().getTotalHitCount());
+    }
+
     private FlowFile createFlowFile(final long id, final long fileSize, final Map<String, String> attributes) {
         final Map<String, String> attrCopy = new HashMap<>(attributes);
 
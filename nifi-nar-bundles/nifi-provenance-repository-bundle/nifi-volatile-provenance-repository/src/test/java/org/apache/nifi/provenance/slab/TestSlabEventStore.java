@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.slab;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.junit.Test;
+
+public class TestSlabEventStore {
+
+    @Test
+    public void testCodecRoundTrip() {
+        final Map<String, String> previousAttributes = new HashMap<>();
+        previousAttributes.put("filename", "file.txt");
+        previousAttributes.put("uuid", "parent-uuid");
+        final Map<String, String> updatedAttributes = new HashMap<>();
+        updatedAttributes.put("filename", "für € 😀.txt");
+        updatedAttributes.put("empty", "");
+
+        final StandardProvenanceEventRecord event = new StandardProvenanceEventRecord.Builder()
+            .setEventType(ProvenanceEventType.FORK)
+            .setEventTime(1234L)
+            .setFlowFileEntryDate(1000L)
+            .setLineageStartDate(900L)
+            .setEventDuration(12L)
+            .setComponentId("component-1")
+            .setComponentType("UnitTest")
+            .setFlowFileUUID("parent-uuid")
+            .setDetails("split")
+            .setSourceQueueIdentifier("queue-1")
+            .setAttributes(previousAttributes, updatedAttributes)
+            .setCurrentContentClaim("container", "section", "claim-1", 10L, 100L)
+            .setPreviousContentClaim("container", "section", "claim-0", null, 50L)
+            .addParentUuid("parent-uuid")
+            .addChildUuid("child-1")
+            .addChildUuid("child-2")
+            .build();
+
+        final SlabEventCodec codec = new SlabEventCodec(16);
+        final int length = codec.encode(event, 42L);
+        final ProvenanceEventRecord decoded = SlabEventCodec.decode(Arrays.copyOf(codec.getBuffer(), length));
+
+        assertEquals(42L, decoded.getEventId());
+        assertEquals(ProvenanceEventType.FORK, decoded.getEventType());
+        assertEquals(1234L, decoded.getEventTime());
+        assertEquals(1000L, decoded.getFlowFileEntryDate());
+        assertEquals(900L, decoded.getLineageStartDate());
+        assertEquals(12L, decoded.getEventDuration());
+        assertEquals("component-1", decoded.getComponentId());
+        assertEquals("UnitTest", decoded.getComponentType());
+        assertEquals("parent-uuid", decoded.getFlowFileUuid());
+        assertNull(decoded.getTransitUri());
+        assertEquals("split", decoded.getDetails());
+        assertEquals("queue-1", decoded.getSourceQueueIdentifier());
+        assertEquals(event.getAttributes(), decoded.getAttributes());
+        assertEquals(previousAttributes, decoded.getPreviousAttributes());
+        assertEquals(updatedAttributes, decoded.getUpdatedAttributes());
+        assertEquals("claim-1", decoded.getContentClaimIdentifier());
+        assertEquals(Long.valueOf(10L), decoded.getContentClaimOffset());
+        assertEquals(100L, decoded.getFileSize());
+        assertEquals("claim-0", decoded.getPreviousContentClaimIdentifier());
+        assertNull(decoded.getPreviousContentClaimOffset());
+        assertEquals(Long.valueOf(50L), decoded.getPreviousFileSize());
+        assertEquals(Collections.singletonList("parent-uuid"), decoded.getParentUuids());
+        assertEquals(Arrays.asList("child-1", "child-2"), decoded.getChildUuids());
+    }
+
+    @Test
+    public void testOldestEventsEvictedByCount() {
+        final SlabEventStore store = new SlabEventStore(10, 1024 * 1024, 1024);
+        for (int i = 0; i < 25; i++) {
+            assertEquals(i, store.add(createEvent("component-" + (i % 2), "uuid-" + i, ProvenanceEventType.RECEIVE)));
+        }
+
+        assertEquals(15L, store.getOldestEventId());
+        assertEquals(25L, store.getNextEventId());
+        assertEquals(10, store.getEventCount());
+        assertNull(store.getEvent(14L));
+        assertEquals("uuid-15", store.getEvent(15L).getFlowFileUuid());
+        assertEquals("uuid-24", store.getEvent(24L).getFlowFileUuid());
+
+        assertArrayEquals(new long[] {23L, 21L, 19L, 17L, 15L}, getEventIdsByComponentId(store, "component-1"));
+        assertArrayEquals(new long[0], getEventIdsByFlowFileUuid(store, "uuid-3"));
+    }
+
+    @Test
+    public void testOldestEventsEvictedByBytes() {
+        // Events are larger than a slab, so they span slabs, and only a few of them fit
+        final SlabEventStore store = new SlabEventStore(1000, 4096, 512);
+        final char[] details = new char[700];
+        Arrays.fill(details, 'x');
+
+        for (int i = 0; i < 50; i++) {
+            final StandardProvenanceEventRecord event = new StandardProvenanceEventRecord.Builder()
+                .setEventType(ProvenanceEventType.CONTENT_MODIFIED)
+                .setComponentId("component")
+                .setComponentType("UnitTest")
+                .setFlowFileUUID("uuid-" + i)
+                .setDetails(new String(details) + i)
+                .setCurrentContentClaim(null, null, null, null, 0L)
+                .build();
+            store.add(event);
+        }
+
+        final long oldest = store.getOldestEventId();
+        assertTrue(store.getEventCount() < 6);
+        for (long eventId = oldest; eventId < 50; eventId++) {
+            final ProvenanceEventRecord event = store.getEvent(eventId);
+            assertEquals("uuid-" + eventId, event.getFlowFileUuid());
+            assertEquals(new String(details) + eventId, event.getDetails());
+        }
+        assertNull(store.getEvent(oldest - 1));
+    }
+
+    @Test
+    public void testIndexes() {
+        final SlabEventStore store = new SlabEventStore(100, 1024 * 1024, SlabEventStore.DEFAULT_SLAB_SIZE);
+        store.add(createEvent("A", "uuid-1", ProvenanceEventType.RECEIVE));
+        store.add(new StandardProvenanceEventRecord.Builder()
+            .setEventType(ProvenanceEventType.FORK)
+            .setComponentId("B")
+            .setComponentType("UnitTest")
+            .setFlowFileUUID("uuid-1")
+            .addParentUuid("uuid-1")
+            .addChildUuid("uuid-2")
+            .addChildUuid("uuid-3")
+            .setCurrentContentClaim(null, null, null, null, 0L)
+            .build());
+        store.add(createEvent("B", "uuid-2", ProvenanceEventType.SEND));
+        store.add(createEvent("a", "UUID-3", ProvenanceEventType.DROP));
+
+        assertArrayEquals(new long[] {3L, 0L}, getEventIdsByComponentId(store, "A"));
+        assertArrayEquals(new long[] {1L, 0L}, getEventIdsByFlowFileUuid(store, "uuid-1"));
+        assertArrayEquals(new long[] {2L, 1L}, getEventIdsByFlowFileUuid(store, "uuid-2"));
+        assertArrayEquals(new long[] {3L, 1L}, getEventIdsByFlowFileUuid(store, "uuid-3"));
+
+        final List<Long> sendEvents = new ArrayList<>();
+        store.forEachEventIdByEventType(ProvenanceEventType.SEND, eventId -> sendEvents.add(eventId));
+        assertEquals(Collections.singletonList(2L), sendEvents);
+    }
+
+    @Test
+    public void testFlowFileUuidLookupAfterIndexWraps() {
+        // The FlowFile UUID index of this store holds 30 entries, so the fork's children overwrite the entries of every earlier event
+        final SlabEventStore store = new SlabEventStore(10, 1024 * 1024, SlabEventStore.DEFAULT_SLAB_SIZE);
+        store.add(createEvent("A", "uuid-parent", ProvenanceEventType.RECEIVE));
+        store.add(createEvent("A", "uuid-other", ProvenanceEventType.RECEIVE));
+
+        final StandardProvenanceEventRecord.Builder forkBuilder = new StandardProvenanceEventRecord.Builder()
+            .setEventType(ProvenanceEventType.FORK)
+            .setComponentId("B")
+            .setComponentType("UnitTest")
+            .setFlowFileUUID("uuid-parent")
+            .addParentUuid("uuid-parent")
+            .setCurrentContentClaim(null, null, null, null, 0L);
+        for (int i = 0; i < 50; i++) {
+            forkBuilder.addChildUuid("uuid-child-" + i);
+        }
+        store.add(forkBuilder.build());
+        store.add(createEvent("C", "uuid-child-0", ProvenanceEventType.DROP));
+
+        assertEquals(4, store.getEventCount());
+        assertArrayEquals(new long[] {2L, 0L}, getEventIdsByFlowFileUuid(store, "uuid-parent"));
+        assertArrayEquals(new long[] {1L}, getEventIdsByFlowFileUuid(store, "uuid-other"));
+        assertArrayEquals(new long[] {3L, 2L}, getEventIdsByFlowFileUuid(store, "UUID-CHILD-0"));
+        assertArrayEquals(new long[] {2L}, getEventIdsByFlowFileUuid(store, "uuid-child-49"));
+        assertArrayEquals(new long[0], getEventIdsByFlowFileUuid(store, "uuid-unknown"));
+
+        // Once the events whose entries were overwritten are evicted, the index alone finds all remaining events again
+        for (int i = 0; i < 10; i++) {
+            store.add(createEvent("C", "uuid-child-0", ProvenanceEventType.DROP));
+        }
+        assertEquals(14L, store.getNextEventId());
+        assertEquals(4L, store.getOldestEventId());
+        assertEquals(10, getEventIdsByFlowFileUuid(store, "uuid-child-0").length);
+        assertArrayEquals(new long[0], getEventIdsByFlowFileUuid(store, "uuid-parent"));
+    }
+
+    private long[] getEventIdsByComponentId(final SlabEventStore store, final String componentId) {
+        final List<Long> eventIds = new ArrayList<>();
+        store.forEachEventIdByComponentId(componentId, eventId -> eventIds.add(eventId));
+        return eventIds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private long[] getEventIdsByFlowFileUuid(final SlabEventStore store, final String uuid) {
+        final List<Long> eventIds = new ArrayList<>();
+        store.forEachEventIdByFlowFileUuid(uuid, eventId -> {
+            if (eventIds.isEmpty() || eventIds.get(eventIds.size() - 1) != eventId) {
+                eventIds.add(eventId);
+            }
+            return true;
+        });
+        return eventIds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private ProvenanceEventRecord createEvent(final String componentId, final String uuid, final ProvenanceEventType eventType) {
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventType(eventType)
+            .setEventTime(System.currentTimeMillis())
+            .setComponentId(componentId)
+            .setComponentType("UnitTest")
+            .setFlowFileUUID(uuid)
+            .setTransitUri("nifi://unit-test")
+            .setCurrentContentClaim(null, null, null, null, 0L)
+            .build();
+    }
+}